@@ -58,7 +58,6 @@ import org.cleartk.ml.TreeFeature;
 import org.cleartk.ml.feature.extractor.CleartkExtractor;
 import org.cleartk.ml.feature.extractor.CoveredTextExtractor;
 import org.cleartk.ml.feature.extractor.FeatureExtractor1;
-import org.cleartk.ml.feature.extractor.TypePathExtractor;
 import org.cleartk.ml.feature.function.FeatureFunctionExtractor;
 //import org.chboston.cnlp.ctakes.relationextractor.ae.ModifierExtractorAnnotator;
 
@@ -228,34 +227,7 @@ public abstract class AssertionCleartkAnalysisEngine extends
     
     this.tokenCleartkExtractors = new ArrayList<>();
 
-    CleartkExtractor<IdentifiedAnnotation,BaseToken> tokenExtraction1 = 
-    		new CleartkExtractor<>(
-    				BaseToken.class, 
-//    				new FeatureFunctionExtractor(new CoveredTextExtractor(), new LowerCaseFeatureFunction()),
-//            new FeatureFunctionExtractor(new CoveredTextExtractor(), new BrownClusterFeatureFunction()),
-    				new CoveredTextExtractor<BaseToken>(),
-    				//new CleartkExtractor.Covered(),
-    				new CleartkExtractor.LastCovered(2),
-    				new CleartkExtractor.Preceding(5),
-    				new CleartkExtractor.Following(4),
-    				new CleartkExtractor.Bag(new CleartkExtractor.Preceding(3)),
-    				new CleartkExtractor.Bag(new CleartkExtractor.Following(3)),
-            new CleartkExtractor.Bag(new CleartkExtractor.Preceding(5)),
-            new CleartkExtractor.Bag(new CleartkExtractor.Following(5)),
-            new CleartkExtractor.Bag(new CleartkExtractor.Preceding(10)),
-            new CleartkExtractor.Bag(new CleartkExtractor.Following(10))
-    				);
-    
-    CleartkExtractor<IdentifiedAnnotation,BaseToken> posExtraction1 = 
-    		new CleartkExtractor<>(
-    				BaseToken.class,
-    				new TypePathExtractor<>(BaseToken.class, "partOfSpeech"),
-    				new CleartkExtractor.LastCovered(2),
-    				new CleartkExtractor.Preceding(3),
-    				new CleartkExtractor.Following(2)
-    				);
-
-    this.tokenCleartkExtractors.add(tokenExtraction1);
+    this.tokenCleartkExtractors.add(createTokenExtractor());
 //    this.tokenCleartkExtractors.add(posExtraction1);
     
 //    this.contextFeatureExtractors.add(new CleartkExtractor(IdentifiedAnnotation.class,
@@ -434,18 +406,8 @@ public abstract class AssertionCleartkAnalysisEngine extends
 //          cuePhraseInWindowExtractor.extract(jCas, entityOrEventMention);
           //cuePhraseInWindowExtractor.extractWithin(jCas, entityMention, firstCoveringSentence);
 //      List<Sentence> sents = new ArrayList<Sentence>(coveringSents.get(entityOrEventMention));
-        List<AssertionCuePhraseAnnotation> cues = JCasUtil.selectCovered(AssertionCuePhraseAnnotation.class, coveringSent);
-        int closest = Integer.MAX_VALUE;
-        AssertionCuePhraseAnnotation closestCue = null;
-        for(AssertionCuePhraseAnnotation cue : cues){
-          List<BaseToken> tokens = JCasUtil.selectBetween(BaseToken.class, cue, entityOrEventMention);
-          if(tokens.size() < closest){
-            closestCue = cue;
-            closest = tokens.size();
-          }
-//          instance.addAll(cuePhraseInWindowExtractor.extractBetween(jCas, cue, entityOrEventMention));
-        }
-        if(closestCue != null && closest < 21){
+        AssertionCuePhraseAnnotation closestCue = getClosestCue(entityOrEventMention, coveringSent);
+        if(closestCue != null){
           instance.add(new Feature("ClosestCue_Word", closestCue.getCoveredText()));
 //          instance.add(new Feature("ClosestCue_Phrase", closestCue.getCuePhrase()));
           instance.add(new Feature("ClosestCue_PhraseFamily", closestCue.getCuePhraseAssertionFamily()));
@@ -504,13 +466,7 @@ public abstract class AssertionCleartkAnalysisEngine extends
       List<Feature> feats = instance.getFeatures();
 //      List<Feature> lcFeats = new ArrayList<Feature>();
       
-      for(Feature feat : feats){
-    	  if(feat instanceof TreeFeature || (feat.getName() != null && (feat.getName().startsWith("TreeFrag") || feat.getName().startsWith("WORD") || feat.getName().startsWith("NEG")))) continue;
-    	  if(feat.getName() != null && (feat.getName().contains("_TreeFrag") || feat.getName().contains("_WORD") || feat.getName().contains("_NEG"))) continue;
-    	  if(feat.getValue() instanceof String){
-    		  feat.setValue(((String)feat.getValue()).toLowerCase());
-    	  }
-      }
+      lowerCaseFeatureValues(feats);
 
       if (!fileToDomain.isEmpty() && ffDomainAdaptor!=null) {
     	  for (FeatureFunctionExtractor<IdentifiedAnnotation> extractor : this.featureFunctionExtractors) {
@@ -540,6 +496,60 @@ public abstract class AssertionCleartkAnalysisEngine extends
     
   }
 
+  /**
+   * @return the token window extractor shared by all attribute engines
+   */
+  static CleartkExtractor<IdentifiedAnnotation,BaseToken> createTokenExtractor() {
+    return new CleartkExtractor<>(
+        BaseToken.class,
+        new CoveredTextExtractor<BaseToken>(),
+        new CleartkExtractor.LastCovered(2),
+        new CleartkExtractor.Preceding(5),
+        new CleartkExtractor.Following(4),
+        new CleartkExtractor.Bag(new CleartkExtractor.Preceding(3)),
+        new CleartkExtractor.Bag(new CleartkExtractor.Following(3)),
+        new CleartkExtractor.Bag(new CleartkExtractor.Preceding(5)),
+        new CleartkExtractor.Bag(new CleartkExtractor.Following(5)),
+        new CleartkExtractor.Bag(new CleartkExtractor.Preceding(10)),
+        new CleartkExtractor.Bag(new CleartkExtractor.Following(10))
+    );
+  }
+
+  /**
+   * @param entityOrEventMention -
+   * @param coveringSent sentence covering the mention
+   * @return the cue phrase in the sentence with the fewest tokens between it and the mention, or null if none is
+   * within 20 tokens
+   */
+  static AssertionCuePhraseAnnotation getClosestCue( final IdentifiedAnnotation entityOrEventMention,
+                                                     final Sentence coveringSent ) {
+    List<AssertionCuePhraseAnnotation> cues = JCasUtil.selectCovered(AssertionCuePhraseAnnotation.class, coveringSent);
+    int closest = Integer.MAX_VALUE;
+    AssertionCuePhraseAnnotation closestCue = null;
+    for(AssertionCuePhraseAnnotation cue : cues){
+      List<BaseToken> tokens = JCasUtil.selectBetween(BaseToken.class, cue, entityOrEventMention);
+      if(tokens.size() < closest){
+        closestCue = cue;
+        closest = tokens.size();
+      }
+    }
+    return closest < 21 ? closestCue : null;
+  }
+
+  /**
+   * Lower-cases string feature values, skipping tree features and tree fragment, word and negation features.
+   * @param feats features to normalize in place
+   */
+  static void lowerCaseFeatureValues( final List<Feature> feats ) {
+    for(Feature feat : feats){
+      if(feat instanceof TreeFeature || (feat.getName() != null && (feat.getName().startsWith("TreeFrag") || feat.getName().startsWith("WORD") || feat.getName().startsWith("NEG")))) continue;
+      if(feat.getName() != null && (feat.getName().contains("_TreeFrag") || feat.getName().contains("_WORD") || feat.getName().contains("_NEG"))) continue;
+      if(feat.getValue() instanceof String){
+        feat.setValue(((String)feat.getValue()).toLowerCase());
+      }
+    }
+  }
+
   /*
   public List<Feature> extractZoneFeatures(Map<IdentifiedAnnotation, Collection<Zone>> coveringZoneMap, IdentifiedAnnotation entityOrEventMention)
   {
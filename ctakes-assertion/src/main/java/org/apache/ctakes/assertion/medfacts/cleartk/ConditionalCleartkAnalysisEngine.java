@@ -65,13 +65,20 @@ public class ConditionalCleartkAnalysisEngine extends
 	      } else
 	      {
 	        String label = this.classifier.classify(instance.getFeatures());
-	        boolean conditional = false;
-	        if (label!= null){
-	        	conditional = Boolean.parseBoolean(label);
-	        }
-	        entityOrEventMention.setConditional(conditional);
+	        setAttribute(entityOrEventMention, label);
 	      }
 	}
+	/**
+	 * Sets the conditional status of the mention from a classifier outcome.
+	 */
+	static void setAttribute(final IdentifiedAnnotation entityOrEventMention, final String label) {
+		boolean conditional = false;
+		if (label!= null){
+			conditional = Boolean.parseBoolean(label);
+		}
+		entityOrEventMention.setConditional(conditional);
+	}
+
 	public static FeatureSelection<String> createFeatureSelection(double threshold) {
 		return new Chi2FeatureSelection<>(AssertionCleartkAnalysisEngine.FEATURE_SELECTION_NAME, threshold, false);
 	}
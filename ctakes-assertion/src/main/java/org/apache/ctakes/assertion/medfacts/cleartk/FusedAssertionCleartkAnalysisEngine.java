@@ -0,0 +1,314 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.assertion.medfacts.cleartk;
+
+import org.apache.ctakes.assertion.medfacts.cleartk.AssertionCleartkAnalysisEngine.FEATURE_CONFIG;
+import org.apache.ctakes.core.pipeline.PipeBitInfo;
+import org.apache.ctakes.core.resource.FileLocator;
+import org.apache.ctakes.typesystem.type.constants.CONST;
+import org.apache.ctakes.typesystem.type.syntax.BaseToken;
+import org.apache.ctakes.typesystem.type.temporary.assertion.AssertionCuePhraseAnnotation;
+import org.apache.ctakes.typesystem.type.textsem.EntityMention;
+import org.apache.ctakes.typesystem.type.textsem.EventMention;
+import org.apache.ctakes.typesystem.type.textsem.IdentifiedAnnotation;
+import org.apache.ctakes.typesystem.type.textspan.Sentence;
+import org.apache.log4j.Logger;
+import org.apache.uima.UimaContext;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.cleartk.ml.CleartkProcessingException;
+import org.cleartk.ml.Classifier;
+import org.cleartk.ml.Feature;
+import org.cleartk.ml.feature.extractor.CleartkExtractor;
+import org.cleartk.ml.feature.extractor.CleartkExtractorException;
+import org.cleartk.ml.feature.extractor.FeatureExtractor1;
+import org.cleartk.ml.jar.JarClassifierBuilder;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.jar.JarInputStream;
+
+/**
+ * Assigns polarity, uncertainty, history, conditional, generic and subject to every entity and event mention in a
+ * single pass over the cas.
+ * <p>
+ * The six attribute engines ({@link PolarityCleartkAnalysisEngine}, {@link UncertaintyCleartkAnalysisEngine},
+ * {@link HistoryCleartkAnalysisEngine}, {@link ConditionalCleartkAnalysisEngine},
+ * {@link GenericCleartkAnalysisEngine} and {@link SubjectCleartkAnalysisEngine}) each select every mention, look up
+ * the covering sentence, and extract the same token window and cue phrase features before adding their own.
+ * This engine does that shared work once per mention and hands the shared features plus each attribute's own
+ * features to that attribute's model.
+ * Attributes are classified in the same order as the default attribute sub-pipeline so that features that read
+ * earlier attributes (e.g. uncertainty's use of polarity) see the same values, and the output is identical.
+ * </p>
+ * This engine is for classification only.  Training must still use the individual attribute engines.
+ * The polarity and uncertainty features follow {@link AssertionCleartkAnalysisEngine#PARAM_FEATURE_CONFIG}
+ * as they do in those engines.
+ */
+@PipeBitInfo(
+      name = "Fused Attribute Annotator (ClearTK)",
+      description = "Annotates negation, uncertainty, history, conditional, generic and subject properties in one pass.",
+      dependencies = { PipeBitInfo.TypeProduct.SENTENCE, PipeBitInfo.TypeProduct.IDENTIFIED_ANNOTATION }
+)
+public class FusedAssertionCleartkAnalysisEngine extends JCasAnnotator_ImplBase {
+
+   static private final Logger LOGGER = Logger.getLogger( "FusedAssertionCleartkAnalysisEngine" );
+
+   static public final String PARAM_POLARITY_MODEL = "PolarityModel";
+   @ConfigurationParameter(
+         name = PARAM_POLARITY_MODEL,
+         mandatory = false,
+         description = "Path to the polarity model jar"
+   )
+   private String _polarityModel = "/org/apache/ctakes/assertion/models/polarity/sharpi2b2mipacqnegex/model.jar";
+
+   static public final String PARAM_UNCERTAINTY_MODEL = "UncertaintyModel";
+   @ConfigurationParameter(
+         name = PARAM_UNCERTAINTY_MODEL,
+         mandatory = false,
+         description = "Path to the uncertainty model jar"
+   )
+   private String _uncertaintyModel = "/org/apache/ctakes/assertion/models/uncertainty/model.jar";
+
+   static public final String PARAM_HISTORY_MODEL = "HistoryModel";
+   @ConfigurationParameter(
+         name = PARAM_HISTORY_MODEL,
+         mandatory = false,
+         description = "Path to the history of model jar"
+   )
+   private String _historyModel = "/org/apache/ctakes/assertion/models/historyOf/model.jar";
+
+   static public final String PARAM_CONDITIONAL_MODEL = "ConditionalModel";
+   @ConfigurationParameter(
+         name = PARAM_CONDITIONAL_MODEL,
+         mandatory = false,
+         description = "Path to the conditional model jar"
+   )
+   private String _conditionalModel = "/org/apache/ctakes/assertion/models/conditional/model.jar";
+
+   static public final String PARAM_GENERIC_MODEL = "GenericModel";
+   @ConfigurationParameter(
+         name = PARAM_GENERIC_MODEL,
+         mandatory = false,
+         description = "Path to the generic model jar"
+   )
+   private String _genericModel = "/org/apache/ctakes/assertion/models/generic/model.jar";
+
+   static public final String PARAM_SUBJECT_MODEL = "SubjectModel";
+   @ConfigurationParameter(
+         name = PARAM_SUBJECT_MODEL,
+         mandatory = false,
+         description = "Path to the subject model jar"
+   )
+   private String _subjectModel = "/org/apache/ctakes/assertion/models/subject/model.jar";
+
+   @ConfigurationParameter(
+         name = AssertionCleartkAnalysisEngine.PARAM_FEATURE_CONFIG,
+         mandatory = false,
+         description = "Feature configuration of the polarity and uncertainty models"
+   )
+   private FEATURE_CONFIG _featConfig = FEATURE_CONFIG.ALL_SYN;
+
+   private CleartkExtractor<IdentifiedAnnotation, BaseToken> _tokenExtractor;
+   private final List<AttributeModel> _attributeModels = new ArrayList<>();
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void initialize( final UimaContext context ) throws ResourceInitializationException {
+      super.initialize( context );
+      _tokenExtractor = AssertionCleartkAnalysisEngine.createTokenExtractor();
+      // Same order as AttributeCleartkSubPipe.piper and ClinicalPipelineFactory
+      // The polarity engine drops its token window features for NO_TOK
+      final AttributeModel polarity = new AttributeModel( "Polarity", loadClassifier( _polarityModel ),
+            PolarityCleartkAnalysisEngine::setAttribute, _featConfig != FEATURE_CONFIG.NO_TOK );
+      PolarityCleartkAnalysisEngine.addAttributeExtractors( _featConfig,
+            polarity._entityExtractors, polarity._treeExtractors );
+      _attributeModels.add( polarity );
+      final AttributeModel uncertainty = new AttributeModel( "Uncertainty", loadClassifier( _uncertaintyModel ),
+            UncertaintyCleartkAnalysisEngine::setAttribute, true );
+      UncertaintyCleartkAnalysisEngine.addAttributeExtractors( _featConfig,
+            uncertainty._entityExtractors, uncertainty._treeExtractors );
+      _attributeModels.add( uncertainty );
+      final AttributeModel history = new AttributeModel( "History", loadClassifier( _historyModel ),
+            HistoryCleartkAnalysisEngine::setAttribute, true );
+      HistoryCleartkAnalysisEngine.addAttributeExtractors( history._entityExtractors );
+      _attributeModels.add( history );
+      _attributeModels.add( new AttributeModel( "Conditional", loadClassifier( _conditionalModel ),
+            ConditionalCleartkAnalysisEngine::setAttribute, true ) );
+      final AttributeModel generic = new AttributeModel( "Generic", loadClassifier( _genericModel ),
+            GenericCleartkAnalysisEngine::setAttribute, true );
+      GenericCleartkAnalysisEngine.addAttributeExtractors( generic._entityExtractors );
+      _attributeModels.add( generic );
+      final AttributeModel subject = new AttributeModel( "Subject", loadClassifier( _subjectModel ),
+            SubjectCleartkAnalysisEngine::setAttribute, true );
+      SubjectCleartkAnalysisEngine.addAttributeExtractors( subject._entityExtractors );
+      _attributeModels.add( subject );
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void process( final JCas jCas ) throws AnalysisEngineProcessException {
+      final Map<IdentifiedAnnotation, Collection<Sentence>> coveringSentences
+            = JCasUtil.indexCovering( jCas, IdentifiedAnnotation.class, Sentence.class );
+      for ( IdentifiedAnnotation mention : JCasUtil.select( jCas, IdentifiedAnnotation.class ) ) {
+         if ( !(mention instanceof EntityMention || mention instanceof EventMention) ) {
+            continue;
+         }
+         final Collection<Sentence> sentences = coveringSentences.get( mention );
+         Sentence coveringSent = null;
+         if ( sentences != null && !sentences.isEmpty() ) {
+            coveringSent = sentences.iterator().next();
+         }
+         final List<Feature> tokenFeatures = extractTokenFeatures( jCas, mention, coveringSent );
+         final List<Feature> sharedFeatures = extractSharedFeatures( mention, coveringSent );
+         for ( AttributeModel model : _attributeModels ) {
+            model.classify( jCas, mention, tokenFeatures, sharedFeatures );
+         }
+      }
+   }
+
+   /**
+    * @param jCas         ye olde ...
+    * @param mention      entity or event mention
+    * @param coveringSent first sentence covering the mention, may be null
+    * @return the token window features
+    * @throws CleartkExtractorException -
+    */
+   private List<Feature> extractTokenFeatures( final JCas jCas,
+                                               final IdentifiedAnnotation mention,
+                                               final Sentence coveringSent ) throws CleartkExtractorException {
+      final List<Feature> features = coveringSent != null
+                                     ? _tokenExtractor.extractWithin( jCas, mention, coveringSent )
+                                     : _tokenExtractor.extract( jCas, mention );
+      AssertionCleartkAnalysisEngine.lowerCaseFeatureValues( features );
+      return features;
+   }
+
+   /**
+    * @param mention      entity or event mention
+    * @param coveringSent first sentence covering the mention, may be null
+    * @return the cue phrase and entity type features used by every attribute model
+    */
+   static private List<Feature> extractSharedFeatures( final IdentifiedAnnotation mention,
+                                                       final Sentence coveringSent ) {
+      final List<Feature> features = new ArrayList<>();
+      if ( coveringSent != null ) {
+         final AssertionCuePhraseAnnotation closestCue
+               = AssertionCleartkAnalysisEngine.getClosestCue( mention, coveringSent );
+         if ( closestCue != null ) {
+            features.add( new Feature( "ClosestCue_Word", closestCue.getCoveredText() ) );
+            features.add( new Feature( "ClosestCue_PhraseFamily", closestCue.getCuePhraseAssertionFamily() ) );
+            features.add( new Feature( "ClosestCue_PhraseCategory", closestCue.getCuePhraseCategory() ) );
+         }
+      }
+      if ( mention.getTypeID() == CONST.NE_TYPE_ID_ANATOMICAL_SITE ) {
+         features.add( new Feature( "ENTITY_TYPE_ANAT_SITE" ) );
+      }
+      AssertionCleartkAnalysisEngine.lowerCaseFeatureValues( features );
+      return features;
+   }
+
+   /**
+    * @param modelPath path to a classifier model jar
+    * @return the classifier packaged in the jar
+    * @throws ResourceInitializationException if the jar cannot be read
+    */
+   Classifier<String> loadClassifier( final String modelPath ) throws ResourceInitializationException {
+      LOGGER.info( "Loading model " + modelPath );
+      try ( InputStream stream = new BufferedInputStream( FileLocator.getAsStream( modelPath ) );
+            JarInputStream modelStream = new JarInputStream( stream ) ) {
+         final JarClassifierBuilder<?> builder = JarClassifierBuilder.fromManifest( modelStream.getManifest() );
+         @SuppressWarnings( "unchecked" )
+         final Classifier<String> classifier = (Classifier<String>)builder.loadClassifier( modelStream );
+         return classifier;
+      } catch ( IOException ioE ) {
+         throw new ResourceInitializationException( ioE );
+      }
+   }
+
+   /**
+    * A loaded attribute classifier with the feature extractors specific to its attribute.
+    */
+   static private final class AttributeModel {
+      private final String _name;
+      private final Classifier<String> _classifier;
+      private final BiConsumer<IdentifiedAnnotation, String> _attributeSetter;
+      private final boolean _useTokenFeatures;
+      private final List<FeatureExtractor1<IdentifiedAnnotation>> _entityExtractors = new ArrayList<>();
+      private final List<FeatureExtractor1<IdentifiedAnnotation>> _treeExtractors = new ArrayList<>();
+
+      private AttributeModel( final String name,
+                              final Classifier<String> classifier,
+                              final BiConsumer<IdentifiedAnnotation, String> attributeSetter,
+                              final boolean useTokenFeatures ) {
+         _name = name;
+         _classifier = classifier;
+         _attributeSetter = attributeSetter;
+         _useTokenFeatures = useTokenFeatures;
+      }
+
+      private void classify( final JCas jCas,
+                             final IdentifiedAnnotation mention,
+                             final List<Feature> tokenFeatures,
+                             final List<Feature> sharedFeatures ) throws AnalysisEngineProcessException {
+         final List<Feature> attributeFeatures = new ArrayList<>();
+         for ( FeatureExtractor1<IdentifiedAnnotation> extractor : _entityExtractors ) {
+            attributeFeatures.addAll( extractor.extract( jCas, mention ) );
+         }
+         for ( FeatureExtractor1<IdentifiedAnnotation> extractor : _treeExtractors ) {
+            attributeFeatures.addAll( extractor.extract( jCas, mention ) );
+         }
+         AssertionCleartkAnalysisEngine.lowerCaseFeatureValues( attributeFeatures );
+         final List<Feature> features
+               = new ArrayList<>( tokenFeatures.size() + sharedFeatures.size() + attributeFeatures.size() );
+         if ( _useTokenFeatures ) {
+            features.addAll( tokenFeatures );
+         }
+         features.addAll( sharedFeatures );
+         features.addAll( attributeFeatures );
+         try {
+            _attributeSetter.accept( mention, _classifier.classify( features ) );
+         } catch ( CleartkProcessingException cpE ) {
+            LOGGER.error( "Could not classify " + _name + " for " + mention.getCoveredText() );
+            throw cpE;
+         }
+      }
+   }
+
+   public static AnalysisEngineDescription createAnnotatorDescription() throws ResourceInitializationException {
+      return AnalysisEngineFactory.createEngineDescription( FusedAssertionCleartkAnalysisEngine.class );
+   }
+
+}
@@ -21,6 +21,7 @@ package org.apache.ctakes.assertion.medfacts.cleartk;
 import java.io.File;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.ctakes.assertion.attributes.features.GenericFeaturesExtractor;
 import org.apache.ctakes.assertion.attributes.features.selection.Chi2FeatureSelection;
@@ -34,6 +35,7 @@ import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.fit.factory.AnalysisEngineFactory;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.cleartk.ml.Instance;
+import org.cleartk.ml.feature.extractor.FeatureExtractor1;
 import org.cleartk.ml.jar.GenericJarClassifierFactory;
 
 @PipeBitInfo(
@@ -59,8 +61,15 @@ public class GenericCleartkAnalysisEngine extends
 		if(this.entityFeatureExtractors == null){
 			this.entityFeatureExtractors = new ArrayList<>();
 		}
-		this.entityFeatureExtractors.add(new ContextWordWindowExtractor("org/apache/ctakes/assertion/models/generic.txt"));
-		this.entityFeatureExtractors.add(new GenericFeaturesExtractor());
+		addAttributeExtractors(this.entityFeatureExtractors);
+	}
+
+	/**
+	 * Adds the generic-specific entity feature extractors.
+	 */
+	static void addAttributeExtractors(final List<FeatureExtractor1<IdentifiedAnnotation>> entityFeatureExtractors) {
+		entityFeatureExtractors.add(new ContextWordWindowExtractor("org/apache/ctakes/assertion/models/generic.txt"));
+		entityFeatureExtractors.add(new GenericFeaturesExtractor());
 	}
 	
 	@Override
@@ -79,9 +88,16 @@ public class GenericCleartkAnalysisEngine extends
 	      } else
 	      {
 	        String label = this.classifier.classify(instance.getFeatures());
-	        entityOrEventMention.setGeneric(Boolean.parseBoolean(label));
+	        setAttribute(entityOrEventMention, label);
 	      }
 	}
+	/**
+	 * Sets the generic status of the mention from a classifier outcome.
+	 */
+	static void setAttribute(final IdentifiedAnnotation entityOrEventMention, final String label) {
+		entityOrEventMention.setGeneric(Boolean.parseBoolean(label));
+	}
+
 	public static FeatureSelection<String> createFeatureSelection(double threshold) {
 		return new Chi2FeatureSelection<>(AssertionCleartkAnalysisEngine.FEATURE_SELECTION_NAME, threshold, false);
 	}
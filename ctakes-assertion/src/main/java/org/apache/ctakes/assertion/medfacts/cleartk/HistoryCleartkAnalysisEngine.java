@@ -21,6 +21,7 @@ package org.apache.ctakes.assertion.medfacts.cleartk;
 import java.io.File;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.ctakes.assertion.attributes.features.HistoryFeaturesExtractor;
 import org.apache.ctakes.assertion.attributes.features.selection.Chi2FeatureSelection;
@@ -35,6 +36,7 @@ import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.fit.factory.AnalysisEngineFactory;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.cleartk.ml.Instance;
+import org.cleartk.ml.feature.extractor.FeatureExtractor1;
 import org.cleartk.ml.jar.GenericJarClassifierFactory;
 
 @PipeBitInfo(
@@ -61,8 +63,15 @@ public class HistoryCleartkAnalysisEngine extends
 		if(this.entityFeatureExtractors == null){
 			this.entityFeatureExtractors = new ArrayList<>();
 		}
-		this.entityFeatureExtractors.add(new ContextWordWindowExtractor("org/apache/ctakes/assertion/models/history.txt"));
-		this.entityFeatureExtractors.add(new HistoryFeaturesExtractor());
+		addAttributeExtractors(this.entityFeatureExtractors);
+	}
+
+	/**
+	 * Adds the history-specific entity feature extractors.
+	 */
+	static void addAttributeExtractors(final List<FeatureExtractor1<IdentifiedAnnotation>> entityFeatureExtractors) {
+		entityFeatureExtractors.add(new ContextWordWindowExtractor("org/apache/ctakes/assertion/models/history.txt"));
+		entityFeatureExtractors.add(new HistoryFeaturesExtractor());
 	}
 	
 	@Override
@@ -82,9 +91,16 @@ public class HistoryCleartkAnalysisEngine extends
 	      } else
 	      {
 	        String label = this.classifier.classify(instance.getFeatures());
-	        entityOrEventMention.setHistoryOf(Integer.parseInt(label));
+	        setAttribute(entityOrEventMention, label);
 	      }
 	}
+	/**
+	 * Sets the history of the mention from a classifier outcome.
+	 */
+	static void setAttribute(final IdentifiedAnnotation entityOrEventMention, final String label) {
+		entityOrEventMention.setHistoryOf(Integer.parseInt(label));
+	}
+
 	public static FeatureSelection<String> createFeatureSelection(double threshold) {
 		return new Chi2FeatureSelection<>(AssertionCleartkAnalysisEngine.FEATURE_SELECTION_NAME, threshold, false);
 	}
@@ -21,6 +21,7 @@ package org.apache.ctakes.assertion.medfacts.cleartk;
 import java.io.File;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.ctakes.assertion.attributes.features.selection.Chi2FeatureSelection;
 import org.apache.ctakes.assertion.attributes.features.selection.FeatureSelection;
@@ -33,6 +34,7 @@ import org.apache.ctakes.assertion.medfacts.cleartk.extractors.NegationDependenc
 import org.apache.ctakes.core.pipeline.PipeBitInfo;
 import org.apache.ctakes.typesystem.type.constants.CONST;
 import org.apache.ctakes.typesystem.type.textsem.IdentifiedAnnotation;
+import org.apache.log4j.Logger;
 import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_engine.AnalysisEngineDescription;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
@@ -52,6 +54,8 @@ public class PolarityCleartkAnalysisEngine extends AssertionCleartkAnalysisEngin
   
   public static final String NEGATED = "NEGATED";
   public static final String NOT_NEGATED = "NOT_NEGATED";
+
+  static private final Logger LOGGER = Logger.getLogger( PolarityCleartkAnalysisEngine.class );
  
   
 	@Override
@@ -67,38 +71,8 @@ public class PolarityCleartkAnalysisEngine extends AssertionCleartkAnalysisEngin
 		  this.tokenCleartkExtractors = new ArrayList<>();
 		}
 		
-		// polarity keyword list:
-		if(featConfig != FEATURE_CONFIG.NO_SEM){
-		  this.entityFeatureExtractors.add(new ContextWordWindowExtractor("org/apache/ctakes/assertion/models/polarity.txt"));
-		}
-		
-		// stk frags feature:
-		if(featConfig == FEATURE_CONFIG.STK_FRAGS || featConfig == FEATURE_CONFIG.ALL_SYN || featConfig == FEATURE_CONFIG.NO_TOK){
-//		  this.entityFeatureExtractors.add(new AboveLeftFragmentExtractor("AL_Polarity","org/apache/ctakes/assertion/models/jbi_paper_polarity_sems_frags.txt"));
-		  this.entityFeatureExtractors.add(new AboveLeftFragmentExtractor("AL_Polarity","org/apache/ctakes/assertion/models/sharpPolarityFrags.txt"));
-//		  this.entityFeatureExtractors.add(new ConceptModifierPETFragmentExtractor("NegRel", "org/apache/ctakes/assertion/models/polarityRelnFragsStrat.txt"));
-		}
-		
-		if(featConfig == FEATURE_CONFIG.PTK_FRAGS || featConfig == FEATURE_CONFIG.DEP_REGEX_FRAGS || featConfig == FEATURE_CONFIG.ALL_SYN){
-//	     ptk frags feature:
-//		  this.entityFeatureExtractors.add(new DependencyWordsFragmentExtractor("DW_Polarity", "org/apache/ctakes/assertion/models/jbi_paper_polarity_dw_frags.txt"));		  
-		}
+		addAttributeExtractors(featConfig, this.entityFeatureExtractors, this.entityTreeExtractors);
 
-		if(featConfig == FEATURE_CONFIG.DEP_REGEX || featConfig == FEATURE_CONFIG.DEP_REGEX_FRAGS || featConfig == FEATURE_CONFIG.ALL_SYN || featConfig == FEATURE_CONFIG.NO_TOK){
-	    // dep regex feature:
-		  this.entityFeatureExtractors.add(new NegationDependencyFeatureExtractor());
-		}
-		
-		if(featConfig == FEATURE_CONFIG.STK){
-		  // stk constituency feature:
-		  this.entityTreeExtractors.add(new AssertionAboveLeftTreeExtractor());
-		}
-		
-		if(featConfig == FEATURE_CONFIG.PTK){
-		  // ptk dependency feature:
-		  this.entityTreeExtractors.add(new AssertionDependencyTreeExtractor());
-		}
-		
     // srl & non-effective stk frags feature:
 //  this.entityFeatureExtractors.add(new SRLFeatureExtractor());
 //  this.entityFeatureExtractors.add(new AboveRightFragmentExtractor("AR_Polarity","org/apache/ctakes/assertion/models/sharpArPolarityFrags.txt"));
@@ -126,18 +100,61 @@ public class PolarityCleartkAnalysisEngine extends AssertionCleartkAnalysisEngin
 	      {
 	        String label = this.classifier.classify(instance.getFeatures());
 	        this.lastLabel = label;
-	        int polarity = CONST.NE_POLARITY_NEGATION_ABSENT;
-	        if (NOT_NEGATED.equals(label))
-	        {
-	          polarity = CONST.NE_POLARITY_NEGATION_ABSENT;
-	        } else if (NEGATED.equals(label))
-	        {
-	          polarity = CONST.NE_POLARITY_NEGATION_PRESENT;
-            logger.debug(String.format("DECODING/EVAL: %s//%s [%d-%d] (%s)", label, polarity, entityOrEventMention.getBegin(), entityOrEventMention.getEnd(), entityOrEventMention.getClass().getName()));
-	        }
-	        entityOrEventMention.setPolarity(polarity);
+	        setAttribute(entityOrEventMention, label);
 	      }
 	}
+	/**
+	 * Adds the polarity-specific entity and tree feature extractors for the given feature configuration.
+	 */
+	static void addAttributeExtractors(final FEATURE_CONFIG featConfig,
+			final List<FeatureExtractor1<IdentifiedAnnotation>> entityFeatureExtractors,
+			final List<FeatureExtractor1<IdentifiedAnnotation>> entityTreeExtractors) throws ResourceInitializationException {
+		// polarity keyword list:
+		if(featConfig != FEATURE_CONFIG.NO_SEM){
+		  entityFeatureExtractors.add(new ContextWordWindowExtractor("org/apache/ctakes/assertion/models/polarity.txt"));
+		}
+		
+		// stk frags feature:
+		if(featConfig == FEATURE_CONFIG.STK_FRAGS || featConfig == FEATURE_CONFIG.ALL_SYN || featConfig == FEATURE_CONFIG.NO_TOK){
+//		  entityFeatureExtractors.add(new AboveLeftFragmentExtractor("AL_Polarity","org/apache/ctakes/assertion/models/jbi_paper_polarity_sems_frags.txt"));
+		  entityFeatureExtractors.add(new AboveLeftFragmentExtractor("AL_Polarity","org/apache/ctakes/assertion/models/sharpPolarityFrags.txt"));
+//		  entityFeatureExtractors.add(new ConceptModifierPETFragmentExtractor("NegRel", "org/apache/ctakes/assertion/models/polarityRelnFragsStrat.txt"));
+		}
+		
+		if(featConfig == FEATURE_CONFIG.PTK_FRAGS || featConfig == FEATURE_CONFIG.DEP_REGEX_FRAGS || featConfig == FEATURE_CONFIG.ALL_SYN){
+//	     ptk frags feature:
+//		  entityFeatureExtractors.add(new DependencyWordsFragmentExtractor("DW_Polarity", "org/apache/ctakes/assertion/models/jbi_paper_polarity_dw_frags.txt"));		  
+		}
+
+		if(featConfig == FEATURE_CONFIG.DEP_REGEX || featConfig == FEATURE_CONFIG.DEP_REGEX_FRAGS || featConfig == FEATURE_CONFIG.ALL_SYN || featConfig == FEATURE_CONFIG.NO_TOK){
+	    // dep regex feature:
+		  entityFeatureExtractors.add(new NegationDependencyFeatureExtractor());
+		}
+		
+		if(featConfig == FEATURE_CONFIG.STK){
+		  // stk constituency feature:
+		  entityTreeExtractors.add(new AssertionAboveLeftTreeExtractor());
+		}
+		
+		if(featConfig == FEATURE_CONFIG.PTK){
+		  // ptk dependency feature:
+		  entityTreeExtractors.add(new AssertionDependencyTreeExtractor());
+		}
+	}
+
+	/**
+	 * Sets the polarity of the mention from a classifier outcome.
+	 */
+	static void setAttribute(final IdentifiedAnnotation entityOrEventMention, final String label) {
+		int polarity = CONST.NE_POLARITY_NEGATION_ABSENT;
+		if (NEGATED.equals(label))
+		{
+			polarity = CONST.NE_POLARITY_NEGATION_PRESENT;
+			LOGGER.debug(String.format("DECODING/EVAL: %s//%s [%d-%d] (%s)", label, polarity, entityOrEventMention.getBegin(), entityOrEventMention.getEnd(), entityOrEventMention.getClass().getName()));
+		}
+		entityOrEventMention.setPolarity(polarity);
+	}
+
 	public static FeatureSelection<String> createFeatureSelection(double threshold) {
 		return new Chi2FeatureSelection<String>(AssertionCleartkAnalysisEngine.FEATURE_SELECTION_NAME, threshold, false);
 		//		  return new MutualInformationFeatureSelection<String>(AssertionCleartkAnalysisEngine.FEATURE_SELECTION_NAME);
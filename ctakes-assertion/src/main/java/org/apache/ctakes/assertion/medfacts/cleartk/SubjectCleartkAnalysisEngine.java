@@ -20,6 +20,7 @@ package org.apache.ctakes.assertion.medfacts.cleartk;
 
 import java.io.File;
 import java.net.URI;
+import java.util.List;
 
 import org.apache.ctakes.assertion.attributes.features.SubjectFeaturesExtractor;
 import org.apache.ctakes.assertion.attributes.features.selection.Chi2FeatureSelection;
@@ -32,6 +33,7 @@ import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.fit.factory.AnalysisEngineFactory;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.cleartk.ml.Instance;
+import org.cleartk.ml.feature.extractor.FeatureExtractor1;
 import org.cleartk.ml.jar.GenericJarClassifierFactory;
 
 public class SubjectCleartkAnalysisEngine extends
@@ -55,7 +57,14 @@ public class SubjectCleartkAnalysisEngine extends
 
 
   private void initialize_subject_extractor() {
-    this.entityFeatureExtractors.add( new SubjectFeaturesExtractor());
+    addAttributeExtractors(this.entityFeatureExtractors);
+  }
+
+  /**
+   * Adds the subject-specific entity feature extractors.
+   */
+  static void addAttributeExtractors(final List<FeatureExtractor1<IdentifiedAnnotation>> entityFeatureExtractors) {
+    entityFeatureExtractors.add( new SubjectFeaturesExtractor());
   }
   
   @Override
@@ -78,10 +87,17 @@ public class SubjectCleartkAnalysisEngine extends
         } else
         {
           String label = this.classifier.classify(instance.getFeatures());
-          entityOrEventMention.setSubject(label);
+          setAttribute(entityOrEventMention, label);
           logger.log(Level.DEBUG, "SUBJECT is being set on an IdentifiedAnnotation: "+label+" "+entityOrEventMention.getSubject());
         }
   }
+  /**
+   * Sets the subject of the mention from a classifier outcome.
+   */
+  static void setAttribute(final IdentifiedAnnotation entityOrEventMention, final String label) {
+    entityOrEventMention.setSubject(label);
+  }
+
   public static FeatureSelection<String> createFeatureSelection(double threshold) {
     return new Chi2FeatureSelection<>(AssertionCleartkAnalysisEngine.FEATURE_SELECTION_NAME, threshold, false);
   }
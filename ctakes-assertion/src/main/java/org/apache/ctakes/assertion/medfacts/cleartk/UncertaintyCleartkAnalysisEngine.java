@@ -27,6 +27,7 @@ import static org.apache.ctakes.assertion.medfacts.cleartk.AssertionCleartkAnaly
 import java.io.File;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.ctakes.assertion.attributes.features.selection.Chi2FeatureSelection;
 import org.apache.ctakes.assertion.attributes.features.selection.FeatureSelection;
@@ -44,6 +45,7 @@ import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.fit.factory.AnalysisEngineFactory;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.cleartk.ml.Instance;
+import org.cleartk.ml.feature.extractor.FeatureExtractor1;
 import org.cleartk.ml.jar.GenericJarClassifierFactory;
 
 public class UncertaintyCleartkAnalysisEngine extends AssertionCleartkAnalysisEngine {
@@ -55,30 +57,7 @@ public class UncertaintyCleartkAnalysisEngine extends AssertionCleartkAnalysisEn
 		if(this.entityFeatureExtractors == null){
 			this.entityFeatureExtractors = new ArrayList<>();
 		}
-		this.entityFeatureExtractors.add(new ContextWordWindowExtractor("org/apache/ctakes/assertion/models/uncertainty.txt"));
-		this.entityFeatureExtractors.add(new UncertaintyFeatureExtractor());
-		// TODO: Uncomment below when good features are found:
-//		try {
-//      this.entityFeatureExtractors.add(new DependencyPathRegexpFeatureExtractor());
-//    } catch (FileNotFoundException e) {
-//      e.printStackTrace();
-//      throw new ResourceInitializationException(e);
-//    }
-		
-		if(featConfig == STK_FRAGS){
-		  this.entityFeatureExtractors.add(new AboveLeftFragmentExtractor("AL_Unc", "org/apache/ctakes/assertion/models/jbi_paper_unc_seed_frags.txt"));
-		}
-		
-		if(featConfig == PTK_FRAGS){
-		  this.entityFeatureExtractors.add(new DependencyWordsFragmentExtractor("DW_Uncertainty", "org/apache/ctakes/assertion/models/jbi_paper_uncertainty_dw_frags.txt"));
-		}
-		if(featConfig == STK){
-		  this.entityTreeExtractors.add(new AssertionAboveLeftTreeExtractor());
-		}
-		
-		if(featConfig == PTK){
-		  this.entityTreeExtractors.add(new AssertionDependencyTreeExtractor());
-		}
+		addAttributeExtractors(featConfig, this.entityFeatureExtractors, this.entityTreeExtractors);
 
 		initializeFeatureSelection();
 		
@@ -99,18 +78,57 @@ public class UncertaintyCleartkAnalysisEngine extends AssertionCleartkAnalysisEn
 	      } else
 	      {
 	        String label = this.classifier.classify(instance.getFeatures());
-	        int uncertainty = 0;
-	        if (label!= null && label.equals("uncertain"))
-	        {
-	          uncertainty = CONST.NE_UNCERTAINTY_PRESENT;
-	        } else if (label != null && label.equals("certain"))
-	        {
-	          uncertainty = CONST.NE_UNCERTAINTY_ABSENT;
-	        }
-	        entityOrEventMention.setUncertainty(uncertainty);
+	        setAttribute(entityOrEventMention, label);
 	      }
 	}
 	
+	/**
+	 * Adds the uncertainty-specific entity and tree feature extractors for the given feature configuration.
+	 */
+	static void addAttributeExtractors(final FEATURE_CONFIG featConfig,
+			final List<FeatureExtractor1<IdentifiedAnnotation>> entityFeatureExtractors,
+			final List<FeatureExtractor1<IdentifiedAnnotation>> entityTreeExtractors) throws ResourceInitializationException {
+		entityFeatureExtractors.add(new ContextWordWindowExtractor("org/apache/ctakes/assertion/models/uncertainty.txt"));
+		entityFeatureExtractors.add(new UncertaintyFeatureExtractor());
+		// TODO: Uncomment below when good features are found:
+//		try {
+//      entityFeatureExtractors.add(new DependencyPathRegexpFeatureExtractor());
+//    } catch (FileNotFoundException e) {
+//      e.printStackTrace();
+//      throw new ResourceInitializationException(e);
+//    }
+		
+		if(featConfig == STK_FRAGS){
+		  entityFeatureExtractors.add(new AboveLeftFragmentExtractor("AL_Unc", "org/apache/ctakes/assertion/models/jbi_paper_unc_seed_frags.txt"));
+		}
+		
+		if(featConfig == PTK_FRAGS){
+		  entityFeatureExtractors.add(new DependencyWordsFragmentExtractor("DW_Uncertainty", "org/apache/ctakes/assertion/models/jbi_paper_uncertainty_dw_frags.txt"));
+		}
+		if(featConfig == STK){
+		  entityTreeExtractors.add(new AssertionAboveLeftTreeExtractor());
+		}
+		
+		if(featConfig == PTK){
+		  entityTreeExtractors.add(new AssertionDependencyTreeExtractor());
+		}
+	}
+
+	/**
+	 * Sets the uncertainty of the mention from a classifier outcome.
+	 */
+	static void setAttribute(final IdentifiedAnnotation entityOrEventMention, final String label) {
+		int uncertainty = 0;
+		if (label!= null && label.equals("uncertain"))
+		{
+			uncertainty = CONST.NE_UNCERTAINTY_PRESENT;
+		} else if (label != null && label.equals("certain"))
+		{
+			uncertainty = CONST.NE_UNCERTAINTY_ABSENT;
+		}
+		entityOrEventMention.setUncertainty(uncertainty);
+	}
+
 	public static FeatureSelection<String> createFeatureSelection(double threshold) {
 		return new Chi2FeatureSelection<>(AssertionCleartkAnalysisEngine.FEATURE_SELECTION_NAME, threshold, false);
 	}
@@ -0,0 +1,276 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.assertion.medfacts.cleartk;
+
+import org.apache.ctakes.assertion.medfacts.cleartk.AssertionCleartkAnalysisEngine.FEATURE_CONFIG;
+import org.apache.ctakes.typesystem.type.constants.CONST;
+import org.apache.ctakes.typesystem.type.syntax.ConllDependencyNode;
+import org.apache.ctakes.typesystem.type.syntax.WordToken;
+import org.apache.ctakes.typesystem.type.temporary.assertion.AssertionCuePhraseAnnotation;
+import org.apache.ctakes.typesystem.type.textsem.EntityMention;
+import org.apache.ctakes.typesystem.type.textsem.EventMention;
+import org.apache.ctakes.typesystem.type.textsem.IdentifiedAnnotation;
+import org.apache.ctakes.typesystem.type.textspan.Sentence;
+import org.apache.uima.UimaContext;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.factory.initializable.Initializable;
+import org.apache.uima.fit.pipeline.SimplePipeline;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.cleartk.ml.CleartkAnnotator;
+import org.cleartk.ml.Classifier;
+import org.cleartk.ml.ClassifierFactory;
+import org.cleartk.ml.Feature;
+import org.cleartk.ml.jar.GenericJarClassifierFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Checks that the fused engine hands every attribute model the same feature vectors, and sets the same attributes,
+ * as the individual attribute engines run one after another.
+ */
+public class FusedAssertionCleartkAnalysisEngineTest {
+
+   static private final String[] ATTRIBUTES = { "Polarity", "Uncertainty", "History",
+                                                "Conditional", "Generic", "Subject" };
+   static private final Map<String, String[]> OUTCOMES = new HashMap<>();
+
+   static {
+      OUTCOMES.put( "Polarity", new String[] { PolarityCleartkAnalysisEngine.NEGATED,
+                                               PolarityCleartkAnalysisEngine.NOT_NEGATED } );
+      OUTCOMES.put( "Uncertainty", new String[] { "certain", "uncertain" } );
+      OUTCOMES.put( "History", new String[] { "1", "0" } );
+      OUTCOMES.put( "Conditional", new String[] { "false", "true" } );
+      OUTCOMES.put( "Generic", new String[] { "true", "false" } );
+      OUTCOMES.put( "Subject", new String[] { "patient", "family_member" } );
+   }
+
+   // attribute to the feature vectors passed to its classifier, in call order
+   static private final Map<String, List<List<String>>> RECORDED = new HashMap<>();
+
+   @Before
+   public void clearRecorded() {
+      RECORDED.clear();
+   }
+
+   /**
+    * @return a document with entity and event mentions, an anatomical site, a mention outside any sentence,
+    * cue phrases near some mentions and a flat dependency tree for each sentence
+    */
+   static private JCas createDocument() throws Exception {
+      final JCas jCas = JCasFactory.createJCas();
+      final String[][] sentences = {
+            { "The", "patient", "denies", "chest", "pain", "and", "fever", "." },
+            { "Mother", "has", "a", "history", "of", "Diabetes", "." },
+            { "Possible", "infection", "of", "the", "left", "arm", "if", "swelling", "returns", "." } };
+      final StringBuilder text = new StringBuilder();
+      final List<WordToken> tokens = new ArrayList<>();
+      final List<Sentence> sentenceAnnotations = new ArrayList<>();
+      final List<ConllDependencyNode> nodes = new ArrayList<>();
+      for ( String[] words : sentences ) {
+         final int sentenceBegin = text.length();
+         final ConllDependencyNode root = new ConllDependencyNode( jCas, sentenceBegin, sentenceBegin );
+         root.setId( 0 );
+         nodes.add( root );
+         for ( String word : words ) {
+            tokens.add( new WordToken( jCas, text.length(), text.length() + word.length() ) );
+            final ConllDependencyNode node
+                  = new ConllDependencyNode( jCas, text.length(), text.length() + word.length() );
+            node.setId( nodes.size() - nodes.indexOf( root ) );
+            node.setHead( root );
+            node.setDeprel( "dep" );
+            node.setPostag( "NN" );
+            nodes.add( node );
+            text.append( word ).append( ' ' );
+         }
+         root.setEnd( text.length() - 1 );
+         sentenceAnnotations.add( new Sentence( jCas, sentenceBegin, text.length() - 1 ) );
+      }
+      text.append( "Cough" );
+      jCas.setDocumentText( text.toString() );
+      tokens.forEach( WordToken::addToIndexes );
+      sentenceAnnotations.forEach( Sentence::addToIndexes );
+      nodes.forEach( ConllDependencyNode::addToIndexes );
+      addCue( jCas, tokens.get( 2 ), "negation", "NEGATION" );
+      addCue( jCas, tokens.get( 11 ), "history", "HISTORY" );
+      addCue( jCas, tokens.get( 15 ), "uncertainty", "HEDGE" );
+      addCue( jCas, tokens.get( 21 ), "conditional", "CONDITIONAL" );
+      addMention( new EntityMention( jCas ), tokens.get( 3 ).getBegin(), tokens.get( 4 ).getEnd(),
+            CONST.NE_TYPE_ID_FINDING );
+      addMention( new EventMention( jCas ), tokens.get( 6 ).getBegin(), tokens.get( 6 ).getEnd(),
+            CONST.NE_TYPE_ID_FINDING );
+      addMention( new EntityMention( jCas ), tokens.get( 13 ).getBegin(), tokens.get( 13 ).getEnd(),
+            CONST.NE_TYPE_ID_DISORDER );
+      addMention( new EntityMention( jCas ), tokens.get( 16 ).getBegin(), tokens.get( 16 ).getEnd(),
+            CONST.NE_TYPE_ID_DISORDER );
+      addMention( new EntityMention( jCas ), tokens.get( 19 ).getBegin(), tokens.get( 20 ).getEnd(),
+            CONST.NE_TYPE_ID_ANATOMICAL_SITE );
+      addMention( new EventMention( jCas ), tokens.get( 22 ).getBegin(), tokens.get( 22 ).getEnd(),
+            CONST.NE_TYPE_ID_FINDING );
+      addMention( new EventMention( jCas ), text.length() - 5, text.length(), CONST.NE_TYPE_ID_FINDING );
+      return jCas;
+   }
+
+   static private void addCue( final JCas jCas, final WordToken token, final String family, final String category ) {
+      final AssertionCuePhraseAnnotation cue
+            = new AssertionCuePhraseAnnotation( jCas, token.getBegin(), token.getEnd() );
+      cue.setCuePhraseAssertionFamily( family );
+      cue.setCuePhraseCategory( category );
+      cue.addToIndexes();
+   }
+
+   static private void addMention( final IdentifiedAnnotation mention, final int begin, final int end,
+                                   final int typeId ) {
+      mention.setBegin( begin );
+      mention.setEnd( end );
+      mention.setTypeID( typeId );
+      mention.addToIndexes();
+   }
+
+   static private AnalysisEngineDescription createAttributeEngine(
+         final Class<? extends AssertionCleartkAnalysisEngine> engineClass,
+         final String attribute,
+         final FEATURE_CONFIG featConfig ) throws ResourceInitializationException {
+      return AnalysisEngineFactory.createEngineDescription( engineClass,
+            CleartkAnnotator.PARAM_CLASSIFIER_FACTORY_CLASS_NAME, RecordingClassifierFactory.class.getName(),
+            GenericJarClassifierFactory.PARAM_CLASSIFIER_JAR_PATH, attribute,
+            AssertionCleartkAnalysisEngine.PARAM_FEATURE_CONFIG, featConfig );
+   }
+
+   /**
+    * @return the attributes of each mention, in index order
+    */
+   static private List<String> getAttributes( final JCas jCas ) {
+      final List<String> attributes = new ArrayList<>();
+      for ( IdentifiedAnnotation mention : JCasUtil.select( jCas, IdentifiedAnnotation.class ) ) {
+         attributes.add( mention.getCoveredText() + " " + mention.getPolarity() + " " + mention.getUncertainty()
+                         + " " + mention.getHistoryOf() + " " + mention.getConditional()
+                         + " " + mention.getGeneric() + " " + mention.getSubject() );
+      }
+      return attributes;
+   }
+
+   private void assertFusedMatchesIndividual( final FEATURE_CONFIG featConfig ) throws Exception {
+      final JCas individualCas = createDocument();
+      SimplePipeline.runPipeline( individualCas,
+            createAttributeEngine( PolarityCleartkAnalysisEngine.class, "Polarity", featConfig ),
+            createAttributeEngine( UncertaintyCleartkAnalysisEngine.class, "Uncertainty", featConfig ),
+            createAttributeEngine( HistoryCleartkAnalysisEngine.class, "History", featConfig ),
+            createAttributeEngine( ConditionalCleartkAnalysisEngine.class, "Conditional", featConfig ),
+            createAttributeEngine( GenericCleartkAnalysisEngine.class, "Generic", featConfig ),
+            createAttributeEngine( SubjectCleartkAnalysisEngine.class, "Subject", featConfig ) );
+      final Map<String, List<List<String>>> individual = new HashMap<>( RECORDED );
+      RECORDED.clear();
+
+      final JCas fusedCas = createDocument();
+      SimplePipeline.runPipeline( fusedCas, AnalysisEngineFactory.createEngineDescription(
+            RecordingFusedEngine.class,
+            FusedAssertionCleartkAnalysisEngine.PARAM_POLARITY_MODEL, "Polarity",
+            FusedAssertionCleartkAnalysisEngine.PARAM_UNCERTAINTY_MODEL, "Uncertainty",
+            FusedAssertionCleartkAnalysisEngine.PARAM_HISTORY_MODEL, "History",
+            FusedAssertionCleartkAnalysisEngine.PARAM_CONDITIONAL_MODEL, "Conditional",
+            FusedAssertionCleartkAnalysisEngine.PARAM_GENERIC_MODEL, "Generic",
+            FusedAssertionCleartkAnalysisEngine.PARAM_SUBJECT_MODEL, "Subject",
+            AssertionCleartkAnalysisEngine.PARAM_FEATURE_CONFIG, featConfig ) );
+
+      for ( String attribute : ATTRIBUTES ) {
+         assertEquals( 7, individual.get( attribute ).size() );
+         assertEquals( attribute, individual.get( attribute ), RECORDED.get( attribute ) );
+      }
+      assertFalse( individual.get( "Polarity" ).get( 0 ).isEmpty() );
+      assertEquals( getAttributes( individualCas ), getAttributes( fusedCas ) );
+   }
+
+   @Test
+   public void testNoSyntaxFeatures() throws Exception {
+      assertFusedMatchesIndividual( FEATURE_CONFIG.NO_SYN );
+   }
+
+   @Test
+   public void testNoTokenFeatures() throws Exception {
+      assertFusedMatchesIndividual( FEATURE_CONFIG.NO_TOK );
+   }
+
+   /**
+    * Records the features it is given and alternates between two outcomes of its attribute.
+    */
+   static private final class RecordingClassifier implements Classifier<String> {
+      private final String _attribute;
+      private int _calls;
+
+      private RecordingClassifier( final String attribute ) {
+         _attribute = attribute;
+      }
+
+      @Override
+      public String classify( final List<Feature> features ) {
+         // some extractors collect their features in hash sets, so the order within a vector is not fixed
+         final List<String> vector = new ArrayList<>();
+         features.forEach( f -> vector.add( f.toString() ) );
+         Collections.sort( vector );
+         RECORDED.computeIfAbsent( _attribute, a -> new ArrayList<>() ).add( vector );
+         return OUTCOMES.get( _attribute )[ _calls++ % 2 ];
+      }
+
+      @Override
+      public Map<String, Double> score( final List<Feature> features ) {
+         return Collections.singletonMap( classify( features ), 1.0 );
+      }
+   }
+
+   /**
+    * Gives an attribute engine a recording classifier for the attribute named by its classifier jar path.
+    */
+   static public final class RecordingClassifierFactory implements ClassifierFactory<String>, Initializable {
+      private String _attribute;
+
+      @Override
+      public void initialize( final UimaContext context ) {
+         _attribute = (String)context.getConfigParameterValue( GenericJarClassifierFactory.PARAM_CLASSIFIER_JAR_PATH );
+      }
+
+      @Override
+      public Classifier<String> createClassifier() {
+         return new RecordingClassifier( _attribute );
+      }
+   }
+
+   /**
+    * Gives each attribute a recording classifier for the attribute named by its model path.
+    */
+   static public final class RecordingFusedEngine extends FusedAssertionCleartkAnalysisEngine {
+      @Override
+      Classifier<String> loadClassifier( final String modelPath ) {
+         return new RecordingClassifier( modelPath );
+      }
+   }
+
+}
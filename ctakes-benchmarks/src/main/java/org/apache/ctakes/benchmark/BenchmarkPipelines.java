@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.benchmark;
+
+import org.apache.ctakes.core.ae.SentenceDetector;
+import org.apache.ctakes.core.ae.SimpleSegmentAnnotator;
+import org.apache.ctakes.core.ae.TokenizerAnnotatorPTB;
+import org.apache.ctakes.postagger.POSTagger;
+import org.apache.ctakes.typesystem.type.textsem.EntityMention;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.fit.factory.AggregateBuilder;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
+
+/**
+ * Preprocessing engines shared by the benchmarks.
+ * Benchmarks run these in their setup so that only the engine or method under test is measured.
+ */
+final public class BenchmarkPipelines {
+
+   private BenchmarkPipelines() {
+   }
+
+   /**
+    * @return engine that annotates segments
+    * @throws ResourceInitializationException -
+    */
+   static public AnalysisEngine createSegmenter() throws ResourceInitializationException {
+      return AnalysisEngineFactory.createEngine( SimpleSegmentAnnotator.createAnnotatorDescription() );
+   }
+
+   /**
+    * @return engine that annotates segments and sentences
+    * @throws ResourceInitializationException -
+    */
+   static public AnalysisEngine createSentenceEngine() throws ResourceInitializationException {
+      final AggregateBuilder builder = new AggregateBuilder();
+      builder.add( SimpleSegmentAnnotator.createAnnotatorDescription() );
+      builder.add( SentenceDetector.createAnnotatorDescription() );
+      return builder.createAggregate();
+   }
+
+   /**
+    * @return engine that annotates segments, sentences and tokens
+    * @throws ResourceInitializationException -
+    */
+   static public AnalysisEngine createTokenEngine() throws ResourceInitializationException {
+      final AggregateBuilder builder = new AggregateBuilder();
+      builder.add( SimpleSegmentAnnotator.createAnnotatorDescription() );
+      builder.add( SentenceDetector.createAnnotatorDescription() );
+      builder.add( TokenizerAnnotatorPTB.createAnnotatorDescription() );
+      return builder.createAggregate();
+   }
+
+   /**
+    * @return engine that annotates segments, sentences, tokens and parts of speech
+    * @throws ResourceInitializationException -
+    */
+   static public AnalysisEngine createPosEngine() throws ResourceInitializationException {
+      final AggregateBuilder builder = new AggregateBuilder();
+      builder.add( SimpleSegmentAnnotator.createAnnotatorDescription() );
+      builder.add( SentenceDetector.createAnnotatorDescription() );
+      builder.add( TokenizerAnnotatorPTB.createAnnotatorDescription() );
+      builder.add( POSTagger.createAnnotatorDescription() );
+      return builder.createAggregate();
+   }
+
+   /**
+    * Reset the cas, set the note as its text and run the given preprocessing engine.
+    *
+    * @param jCas   cas to fill
+    * @param note   document text
+    * @param engine preprocessing engine
+    * @throws AnalysisEngineProcessException -
+    */
+   static public void prepare( final JCas jCas, final String note, final AnalysisEngine engine )
+         throws AnalysisEngineProcessException {
+      jCas.reset();
+      jCas.setDocumentText( note );
+      engine.process( jCas );
+   }
+
+   /**
+    * Add an entity mention for every occurrence of every synthetic dictionary term, as a cheap stand-in for
+    * dictionary lookup.
+    *
+    * @param jCas cas with document text
+    * @return number of mentions added
+    */
+   static public int addEntityMentions( final JCas jCas ) {
+      final String text = jCas.getDocumentText().toLowerCase();
+      int count = 0;
+      for ( String[] term : SyntheticNoteGenerator.getDictionaryTerms() ) {
+         int index = text.indexOf( term[ 1 ] );
+         while ( index >= 0 ) {
+            new EntityMention( jCas, index, index + term[ 1 ].length() ).addToIndexes();
+            count++;
+            index = text.indexOf( term[ 1 ], index + term[ 1 ].length() );
+         }
+      }
+      return count;
+   }
+
+}
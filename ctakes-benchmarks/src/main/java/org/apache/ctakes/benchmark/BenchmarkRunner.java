@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the cTAKES benchmarks with allocation profiling at increasing thread counts, saves the results as csv
+ * and optionally compares them against a saved baseline csv.
+ * <p>
+ * Usage: java -jar benchmarks.jar [-i includeRegex] [-t maxThreads] [-o resultsDir] [-b baseline.csv]
+ * </p>
+ * <ul>
+ * <li>-i  regular expression for the benchmarks to run.  Default is all benchmarks.</li>
+ * <li>-t  maximum thread count.  Benchmarks are run at 1, 2, 4 ... up to this count.  Default is 1.</li>
+ * <li>-o  directory for results.  One csv is written per thread count.  Default is "benchmark_results".</li>
+ * <li>-b  csv written by an earlier run.  Scores of matching benchmarks are compared and the change printed.</li>
+ * </ul>
+ * Per operation latency is the primary score.  Allocation rate is reported by the gc profiler as
+ * the secondary ·gc.alloc.rate and ·gc.alloc.rate.norm (bytes per operation) scores.
+ * To save a baseline, copy a results csv from a known good build.
+ */
+final public class BenchmarkRunner {
+
+   private BenchmarkRunner() {
+   }
+
+   public static void main( final String... args ) throws RunnerException, IOException {
+      String include = ".*Benchmark.*";
+      int maxThreads = 1;
+      String resultsDir = "benchmark_results";
+      String baseline = null;
+      for ( int i = 0; i < args.length - 1; i += 2 ) {
+         switch ( args[ i ] ) {
+            case "-i":
+               include = args[ i + 1 ];
+               break;
+            case "-t":
+               maxThreads = Integer.parseInt( args[ i + 1 ] );
+               break;
+            case "-o":
+               resultsDir = args[ i + 1 ];
+               break;
+            case "-b":
+               baseline = args[ i + 1 ];
+               break;
+            default:
+               System.err.println( "Unknown option " + args[ i ] );
+         }
+      }
+      final File dir = new File( resultsDir );
+      if ( !dir.exists() && !dir.mkdirs() ) {
+         throw new IOException( "Could not create results directory " + dir.getPath() );
+      }
+      final Map<String, Double> baselineScores = baseline == null ? new HashMap<>() : readScores( baseline );
+      for ( int threads = 1; threads <= maxThreads; threads *= 2 ) {
+         final File resultFile = new File( dir, "results_" + threads + "_threads.csv" );
+         final ChainedOptionsBuilder options = new OptionsBuilder()
+               .include( include )
+               .threads( threads )
+               .addProfiler( GCProfiler.class )
+               .resultFormat( ResultFormatType.CSV )
+               .result( resultFile.getPath() );
+         final Collection<RunResult> results = new Runner( options.build() ).run();
+         System.out.println( "Results for " + threads + " thread(s) written to " + resultFile.getPath() );
+         if ( !baselineScores.isEmpty() ) {
+            compare( results, threads, baselineScores );
+         }
+      }
+   }
+
+   /**
+    * @param results        benchmark results for this run
+    * @param threads        thread count for this run
+    * @param baselineScores scores from the baseline, keyed by benchmark, thread count and parameters
+    */
+   static private void compare( final Collection<RunResult> results, final int threads,
+                                final Map<String, Double> baselineScores ) {
+      System.out.println( String.format( "%-70s %14s %14s %9s", "Benchmark", "Baseline", "Current", "Change" ) );
+      for ( RunResult result : results ) {
+         final List<String> paramValues = new ArrayList<>();
+         for ( String param : result.getParams().getParamsKeys() ) {
+            paramValues.add( result.getParams().getParam( param ) );
+         }
+         final String key = createKey( result.getParams().getBenchmark(), threads, paramValues );
+         final Double baselineScore = baselineScores.get( key );
+         if ( baselineScore == null ) {
+            continue;
+         }
+         final double score = result.getPrimaryResult().getScore();
+         final double change = 100 * (score - baselineScore) / baselineScore;
+         System.out.println( String.format( "%-70s %14.3f %14.3f %+8.1f%%", key, baselineScore, score, change ) );
+      }
+   }
+
+   /**
+    * @param csvPath path to a jmh csv result file
+    * @return primary scores keyed by benchmark, thread count and parameters
+    * @throws IOException if the file cannot be read
+    */
+   static private Map<String, Double> readScores( final String csvPath ) throws IOException {
+      final Map<String, Double> scores = new HashMap<>();
+      try ( BufferedReader reader = new BufferedReader( new FileReader( csvPath ) ) ) {
+         // "Benchmark","Mode","Threads","Samples","Score","Score Error (99.9%)","Unit",["Param: x", ...]
+         String line = reader.readLine();
+         while ( (line = reader.readLine()) != null ) {
+            final String[] columns = line.replace( "\"", "" ).split( "," );
+            if ( columns.length < 7 || columns[ 0 ].contains( ":" ) ) {
+               // secondary results such as gc profiler scores
+               continue;
+            }
+            final List<String> paramValues = new ArrayList<>();
+            for ( int i = 7; i < columns.length; i++ ) {
+               paramValues.add( columns[ i ] );
+            }
+            scores.put( createKey( columns[ 0 ], Integer.parseInt( columns[ 2 ] ), paramValues ),
+                  Double.parseDouble( columns[ 4 ] ) );
+         }
+      }
+      return scores;
+   }
+
+   static private String createKey( final String benchmark, final int threads, final List<String> paramValues ) {
+      return benchmark + " t" + threads + " " + String.join( " ", paramValues );
+   }
+
+}
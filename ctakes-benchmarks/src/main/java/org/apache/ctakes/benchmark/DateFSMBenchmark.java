@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.benchmark;
+
+import org.apache.ctakes.core.ae.TokenizerAnnotator;
+import org.apache.ctakes.core.fsm.adapters.ContractionTokenAdapter;
+import org.apache.ctakes.core.fsm.adapters.DecimalTokenAdapter;
+import org.apache.ctakes.core.fsm.adapters.IntegerTokenAdapter;
+import org.apache.ctakes.core.fsm.adapters.PunctuationTokenAdapter;
+import org.apache.ctakes.core.fsm.adapters.SymbolTokenAdapter;
+import org.apache.ctakes.core.fsm.adapters.WordTokenAdapter;
+import org.apache.ctakes.core.fsm.machine.DateFSM;
+import org.apache.ctakes.core.fsm.output.DateToken;
+import org.apache.ctakes.core.fsm.token.BaseToken;
+import org.apache.ctakes.typesystem.type.syntax.ContractionToken;
+import org.apache.ctakes.typesystem.type.syntax.NumToken;
+import org.apache.ctakes.typesystem.type.syntax.PunctuationToken;
+import org.apache.ctakes.typesystem.type.syntax.SymbolToken;
+import org.apache.ctakes.typesystem.type.syntax.WordToken;
+import org.apache.ctakes.typesystem.type.textspan.Sentence;
+import org.apache.uima.UIMAException;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link DateFSM#execute(List)} over the sentence token lists of a synthetic note,
+ * adapted the same way as the context dependent tokenizer adapts them.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class DateFSMBenchmark {
+
+   @Param( { "10", "100" } )
+   public int sentences;
+
+   private DateFSM _dateFsm;
+   private final List<List<BaseToken>> _sentenceTokens = new ArrayList<>();
+
+   @Setup
+   public void setup() throws UIMAException {
+      _dateFsm = new DateFSM();
+      final AnalysisEngine tokenEngine = BenchmarkPipelines.createTokenEngine();
+      final JCas jCas = JCasFactory.createJCas();
+      BenchmarkPipelines.prepare( jCas, new SyntheticNoteGenerator( 42 ).createNote( sentences ), tokenEngine );
+      tokenEngine.destroy();
+      final Collection<Collection<org.apache.ctakes.typesystem.type.syntax.BaseToken>> sentenceTokens
+            = JCasUtil.indexCovered( jCas, Sentence.class, org.apache.ctakes.typesystem.type.syntax.BaseToken.class )
+                      .values();
+      for ( Collection<org.apache.ctakes.typesystem.type.syntax.BaseToken> tokens : sentenceTokens ) {
+         final List<BaseToken> adapted = new ArrayList<>( tokens.size() );
+         for ( org.apache.ctakes.typesystem.type.syntax.BaseToken token : tokens ) {
+            final BaseToken fsmToken = adapt( token );
+            if ( fsmToken != null ) {
+               adapted.add( fsmToken );
+            }
+         }
+         _sentenceTokens.add( adapted );
+      }
+   }
+
+   @Benchmark
+   public int execute() throws Exception {
+      int found = 0;
+      for ( List<BaseToken> tokens : _sentenceTokens ) {
+         final Set<DateToken> dates = _dateFsm.execute( tokens );
+         found += dates.size();
+      }
+      return found;
+   }
+
+   /**
+    * @param token cas token
+    * @return finite state machine token, or null for newlines and unknown token types
+    */
+   static private BaseToken adapt( final org.apache.ctakes.typesystem.type.syntax.BaseToken token ) {
+      if ( token instanceof WordToken ) {
+         return new WordTokenAdapter( (WordToken)token );
+      } else if ( token instanceof NumToken ) {
+         if ( ((NumToken)token).getNumType() == TokenizerAnnotator.TOKEN_NUM_TYPE_INTEGER ) {
+            return new IntegerTokenAdapter( (NumToken)token );
+         }
+         return new DecimalTokenAdapter( (NumToken)token );
+      } else if ( token instanceof PunctuationToken ) {
+         return new PunctuationTokenAdapter( (PunctuationToken)token );
+      } else if ( token instanceof ContractionToken ) {
+         return new ContractionTokenAdapter( (ContractionToken)token );
+      } else if ( token instanceof SymbolToken ) {
+         return new SymbolTokenAdapter( (SymbolToken)token );
+      }
+      return null;
+   }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.benchmark;
+
+import org.apache.ctakes.core.util.collection.CollectionMap;
+import org.apache.ctakes.core.util.collection.HashSetMap;
+import org.apache.ctakes.dictionary.lookup2.ae.DefaultJCasTermAnnotator;
+import org.apache.ctakes.dictionary.lookup2.dictionary.MemRareWordDictionary;
+import org.apache.ctakes.dictionary.lookup2.dictionary.RareWordDictionary;
+import org.apache.ctakes.dictionary.lookup2.dictionary.RareWordTermMapCreator;
+import org.apache.ctakes.dictionary.lookup2.dictionary.RareWordTermMapCreator.CuiTerm;
+import org.apache.ctakes.dictionary.lookup2.textspan.TextSpan;
+import org.apache.ctakes.dictionary.lookup2.util.FastLookupToken;
+import org.apache.ctakes.typesystem.type.syntax.BaseToken;
+import org.apache.ctakes.typesystem.type.syntax.NewlineToken;
+import org.apache.ctakes.typesystem.type.syntax.WordToken;
+import org.apache.ctakes.typesystem.type.textspan.Sentence;
+import org.apache.uima.UIMAException;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures rare word term lookup as done by {@link DefaultJCasTermAnnotator#findTerms} over a
+ * {@link MemRareWordDictionary} built from the synthetic note vocabulary, for every sentence window in a note.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class DictionaryLookupBenchmark {
+
+   @Param( { "10", "100" } )
+   public int sentences;
+
+   private DefaultJCasTermAnnotator _annotator;
+   private RareWordDictionary _dictionary;
+   private final List<List<FastLookupToken>> _windowTokens = new ArrayList<>();
+   private final List<List<Integer>> _windowLookupIndices = new ArrayList<>();
+
+   @Setup
+   public void setup() throws UIMAException {
+      final Collection<CuiTerm> cuiTerms = new ArrayList<>();
+      for ( String[] term : SyntheticNoteGenerator.getDictionaryTerms() ) {
+         cuiTerms.add( new CuiTerm( term[ 0 ], term[ 1 ] ) );
+      }
+      _dictionary = new MemRareWordDictionary( "Synthetic",
+            RareWordTermMapCreator.createRareWordTermMap( cuiTerms ) );
+      _annotator = new DefaultJCasTermAnnotator();
+      final AnalysisEngine tokenEngine = BenchmarkPipelines.createTokenEngine();
+      final JCas jCas = JCasFactory.createJCas();
+      BenchmarkPipelines.prepare( jCas, new SyntheticNoteGenerator( 42 ).createNote( sentences ), tokenEngine );
+      tokenEngine.destroy();
+      final Map<Sentence, Collection<BaseToken>> sentenceTokens
+            = JCasUtil.indexCovered( jCas, Sentence.class, BaseToken.class );
+      for ( Collection<BaseToken> baseTokens : sentenceTokens.values() ) {
+         final List<FastLookupToken> allTokens = new ArrayList<>();
+         final List<Integer> lookupIndices = new ArrayList<>();
+         for ( BaseToken baseToken : baseTokens ) {
+            if ( baseToken instanceof NewlineToken ) {
+               continue;
+            }
+            if ( baseToken instanceof WordToken ) {
+               lookupIndices.add( allTokens.size() );
+            }
+            allTokens.add( new FastLookupToken( baseToken ) );
+         }
+         _windowTokens.add( allTokens );
+         _windowLookupIndices.add( lookupIndices );
+      }
+   }
+
+   @Benchmark
+   public int findTerms() {
+      int found = 0;
+      for ( int i = 0; i < _windowTokens.size(); i++ ) {
+         final CollectionMap<TextSpan, Long, ? extends Collection<Long>> terms = new HashSetMap<>();
+         _annotator.findTerms( _dictionary, _windowTokens.get( i ), _windowLookupIndices.get( i ), terms );
+         found += terms.size();
+      }
+      return found;
+   }
+
+}
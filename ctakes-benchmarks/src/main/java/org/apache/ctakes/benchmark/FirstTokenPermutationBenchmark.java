@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.benchmark;
+
+import org.apache.ctakes.dictionary.lookup.DictionaryEngine;
+import org.apache.ctakes.dictionary.lookup.ae.LookupAnnotationToJCasAdapter;
+import org.apache.ctakes.dictionary.lookup.algorithms.FirstTokenPermutationImpl;
+import org.apache.ctakes.dictionary.lookup.phrasebuilder.VariantPhraseBuilderImpl;
+import org.apache.ctakes.dictionary.lookup.strtable.StringTable;
+import org.apache.ctakes.dictionary.lookup.strtable.StringTableDictionaryImpl;
+import org.apache.ctakes.dictionary.lookup.strtable.StringTableRow;
+import org.apache.ctakes.dictionary.lookup.vo.LookupAnnotation;
+import org.apache.ctakes.dictionary.lookup.vo.LookupToken;
+import org.apache.ctakes.typesystem.type.syntax.WordToken;
+import org.apache.ctakes.typesystem.type.textspan.Sentence;
+import org.apache.uima.UIMAException;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link FirstTokenPermutationImpl#lookup} over the word tokens of each sentence in a synthetic note,
+ * with a first word dictionary of the synthetic note vocabulary and the canonical variant phrase builder
+ * used by the first token permutation lookup initializer.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class FirstTokenPermutationBenchmark {
+
+   static private final String CANONICAL_VARIANT_ATTR = "canonicalATTR";
+   static private final String FIRST_WORD_FIELD = "first_word";
+   static private final String TEXT_FIELD = "text";
+   static private final String CODE_FIELD = "code";
+
+   @Param( { "10", "100" } )
+   public int sentences;
+
+   @Param( { "4", "7" } )
+   public int maxPermutationLevel;
+
+   private FirstTokenPermutationImpl _lookupAlgorithm;
+   private final List<List<LookupToken>> _sentenceTokens = new ArrayList<>();
+
+   @Setup
+   public void setup() throws UIMAException {
+      final StringTable stringTable = new StringTable( new String[]{ FIRST_WORD_FIELD } );
+      for ( String[] term : SyntheticNoteGenerator.getDictionaryTerms() ) {
+         final StringTableRow row = new StringTableRow();
+         row.addField( FIRST_WORD_FIELD, term[ 1 ].split( " " )[ 0 ] );
+         row.addField( TEXT_FIELD, term[ 1 ] );
+         row.addField( CODE_FIELD, term[ 0 ] );
+         stringTable.addRow( row );
+      }
+      final DictionaryEngine dictionaryEngine
+            = new DictionaryEngine( new StringTableDictionaryImpl( stringTable, FIRST_WORD_FIELD ), false );
+      _lookupAlgorithm = new FirstTokenPermutationImpl( dictionaryEngine,
+            new VariantPhraseBuilderImpl( new String[]{ CANONICAL_VARIANT_ATTR }, true ),
+            new String[]{ TEXT_FIELD }, maxPermutationLevel );
+      final AnalysisEngine tokenEngine = BenchmarkPipelines.createTokenEngine();
+      final JCas jCas = JCasFactory.createJCas();
+      BenchmarkPipelines.prepare( jCas, new SyntheticNoteGenerator( 42 ).createNote( sentences ), tokenEngine );
+      tokenEngine.destroy();
+      final Map<Sentence, Collection<WordToken>> sentenceTokens
+            = JCasUtil.indexCovered( jCas, Sentence.class, WordToken.class );
+      for ( Collection<WordToken> wordTokens : sentenceTokens.values() ) {
+         final List<LookupToken> lookupTokens = new ArrayList<>( wordTokens.size() );
+         for ( WordToken wordToken : wordTokens ) {
+            lookupTokens.add( createLookupToken( wordToken ) );
+         }
+         _sentenceTokens.add( lookupTokens );
+      }
+   }
+
+   @Benchmark
+   public int lookup() throws Exception {
+      final Map<String, List<LookupAnnotation>> contextMap = Collections.emptyMap();
+      int found = 0;
+      for ( List<LookupToken> lookupTokens : _sentenceTokens ) {
+         found += _lookupAlgorithm.lookup( lookupTokens, contextMap ).size();
+      }
+      return found;
+   }
+
+   /**
+    * @param token cas word token
+    * @return lookup token with the attributes set by the first token permutation lookup initializer
+    */
+   static private LookupToken createLookupToken( final WordToken token ) {
+      final LookupToken lookupToken = new LookupAnnotationToJCasAdapter( token );
+      lookupToken.addStringAttribute( FirstTokenPermutationImpl.LT_KEY_USE_FOR_LOOKUP, "true" );
+      if ( token.getCanonicalForm() != null ) {
+         lookupToken.addStringAttribute( CANONICAL_VARIANT_ATTR, token.getCanonicalForm() );
+      }
+      return lookupToken;
+   }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.benchmark;
+
+import org.apache.ctakes.core.ae.SentenceDetector;
+import org.apache.ctakes.core.ae.SentenceDetectorAnnotatorBIO;
+import org.apache.uima.UIMAException;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures sentence detector throughput when every benchmark thread runs its own detector replica.
+ * The replicas share one copy of the sentence model, so throughput should scale with the thread count.
+ * Run with increasing thread counts, e.g. "-i SentenceDetectorScaling -t 8" with the {@link BenchmarkRunner}.
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class SentenceDetectorScalingBenchmark {
+
+   @Param( { "opennlp", "bio" } )
+   public String detector;
+
+   @Param( { "100" } )
+   public int sentences;
+
+   private AnalysisEngine _segmenter;
+   private AnalysisEngine _sentenceDetector;
+   private JCas _jCas;
+   private String _note;
+
+   @Setup
+   public void setup() throws UIMAException {
+      _segmenter = BenchmarkPipelines.createSegmenter();
+      _sentenceDetector = AnalysisEngineFactory.createEngine( "bio".equals( detector )
+                                                              ? SentenceDetectorAnnotatorBIO.getDescription()
+                                                              : SentenceDetector.createAnnotatorDescription() );
+      _jCas = JCasFactory.createJCas();
+      _note = new SyntheticNoteGenerator( 42 ).createNote( sentences );
+   }
+
+   @Setup( Level.Invocation )
+   public void prepareCas() throws AnalysisEngineProcessException {
+      BenchmarkPipelines.prepare( _jCas, _note, _segmenter );
+   }
+
+   @Benchmark
+   public JCas detectSentences() throws AnalysisEngineProcessException {
+      _sentenceDetector.process( _jCas );
+      return _jCas;
+   }
+
+   @TearDown
+   public void tearDown() {
+      _sentenceDetector.destroy();
+      _segmenter.destroy();
+   }
+
+}
@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Creates reproducible clinical-looking notes so that benchmarks can run without licensed data.
+ * <p>
+ * Notes contain section headers, dates in several formats, vital signs, medication lines with doses,
+ * negated and hedged findings, contractions, hyphenated words and abbreviations.
+ * The same seed always produces the same text, so benchmark results are comparable across runs.
+ * The generator also supplies a small dictionary of the findings, procedures and drugs it writes,
+ * with synthetic cuis, for dictionary lookup benchmarks.
+ * </p>
+ */
+final public class SyntheticNoteGenerator {
+
+   static private final String[] SECTIONS = {
+         "CHIEF COMPLAINT:", "HISTORY OF PRESENT ILLNESS:", "PAST MEDICAL HISTORY:", "MEDICATIONS:",
+         "ALLERGIES:", "REVIEW OF SYSTEMS:", "PHYSICAL EXAMINATION:", "ASSESSMENT AND PLAN:" };
+
+   static private final String[] FINDINGS = {
+         "chest pain", "shortness of breath", "abdominal pain", "nausea", "vomiting", "fever", "chills",
+         "headache", "dizziness", "palpitations", "peripheral edema", "productive cough", "hemoptysis",
+         "weight loss", "night sweats", "dysuria", "hematuria", "back pain", "joint swelling", "rash",
+         "congestive heart failure", "atrial fibrillation", "type 2 diabetes mellitus", "hypertension",
+         "chronic obstructive pulmonary disease", "pneumonia", "deep vein thrombosis", "pulmonary embolism",
+         "myocardial infarction", "renal insufficiency", "urinary tract infection", "anemia",
+         "gastroesophageal reflux disease", "osteoarthritis", "hyperlipidemia", "breast cancer",
+         "colon cancer", "metastatic disease", "lymphadenopathy", "hepatomegaly" };
+
+   static private final String[] PROCEDURES = {
+         "chest x-ray", "CT scan of the abdomen", "echocardiogram", "colonoscopy", "MRI of the brain",
+         "cardiac catheterization", "upper endoscopy", "biopsy", "ultrasound", "electrocardiogram" };
+
+   static private final String[] DRUGS = {
+         "aspirin", "metoprolol", "lisinopril", "atorvastatin", "metformin", "insulin glargine", "warfarin",
+         "furosemide", "omeprazole", "albuterol", "prednisone", "amoxicillin", "levothyroxine", "heparin" };
+
+   static private final String[] DOSES = { "5 mg", "10 mg", "20 mg", "25 mg", "40 mg", "81 mg", "500 mg",
+         "1,000 mg", "2.5 mg", "0.125 mg" };
+
+   static private final String[] FREQUENCIES = { "daily", "b.i.d.", "t.i.d.", "q.i.d.", "q.h.s.", "p.r.n.",
+         "every 6 hours", "twice a day" };
+
+   static private final String[] MONTHS = { "January", "February", "March", "April", "May", "June", "July",
+         "August", "September", "October", "November", "December" };
+
+   static private final String[] NEGATED_TEMPLATES = {
+         "The patient denies %s.", "No evidence of %s.", "There is no %s.", "Negative for %s.",
+         "She doesn't report any %s.", "He has not had %s.", "%s was ruled out." };
+
+   static private final String[] HEDGED_TEMPLATES = {
+         "Possible %s.", "Cannot rule out %s.", "Findings may represent %s.", "Questionable %s on exam." };
+
+   static private final String[] AFFIRMED_TEMPLATES = {
+         "The patient reports %s.", "She has a history of %s.", "He was diagnosed with %s on %s.",
+         "Patient's mother had %s.", "%s, well-controlled on current regimen.", "Follow-up for %s in 2 weeks." };
+
+   private final Random _random;
+
+   /**
+    * @param seed random seed.  The same seed always generates the same notes.
+    */
+   public SyntheticNoteGenerator( final long seed ) {
+      _random = new Random( seed );
+   }
+
+   /**
+    * @param sentenceCount approximate number of sentences in the note
+    * @return the text of a single synthetic note
+    */
+   public String createNote( final int sentenceCount ) {
+      final StringBuilder sb = new StringBuilder( sentenceCount * 60 );
+      sb.append( "Date of Service: " ).append( createDate() ).append( '\n' );
+      int written = 0;
+      int section = 0;
+      while ( written < sentenceCount ) {
+         sb.append( '\n' ).append( SECTIONS[ section % SECTIONS.length ] ).append( '\n' );
+         final int sectionSize = 3 + _random.nextInt( 6 );
+         for ( int i = 0; i < sectionSize && written < sentenceCount; i++ ) {
+            if ( SECTIONS[ section % SECTIONS.length ].startsWith( "MEDICATIONS" ) ) {
+               sb.append( i + 1 ).append( ". " ).append( createMedication() ).append( '\n' );
+            } else {
+               sb.append( createSentence() ).append( i % 3 == 2 ? '\n' : ' ' );
+            }
+            written++;
+         }
+         sb.append( '\n' );
+         section++;
+      }
+      return sb.toString();
+   }
+
+   /**
+    * @param noteCount     number of notes
+    * @param sentenceCount approximate number of sentences per note
+    * @return synthetic notes
+    */
+   public List<String> createNotes( final int noteCount, final int sentenceCount ) {
+      final List<String> notes = new ArrayList<>( noteCount );
+      for ( int i = 0; i < noteCount; i++ ) {
+         notes.add( createNote( sentenceCount ) );
+      }
+      return notes;
+   }
+
+   /**
+    * @return a cui and term text for every finding, procedure and drug that may appear in a note.
+    * Each array holds { cui, text }.
+    */
+   static public List<String[]> getDictionaryTerms() {
+      final List<String[]> terms = new ArrayList<>();
+      int cui = 1;
+      cui = addTerms( terms, FINDINGS, cui );
+      cui = addTerms( terms, PROCEDURES, cui );
+      addTerms( terms, DRUGS, cui );
+      return Collections.unmodifiableList( terms );
+   }
+
+   static private int addTerms( final List<String[]> terms, final String[] texts, final int firstCui ) {
+      int cui = firstCui;
+      for ( String text : texts ) {
+         terms.add( new String[]{ String.format( "C%07d", cui ), text.toLowerCase() } );
+         cui++;
+      }
+      return cui;
+   }
+
+   private String createSentence() {
+      final int kind = _random.nextInt( 10 );
+      final String finding = pick( FINDINGS );
+      if ( kind < 3 ) {
+         return capitalize( String.format( pick( NEGATED_TEMPLATES ), finding ) );
+      } else if ( kind < 4 ) {
+         return capitalize( String.format( pick( HEDGED_TEMPLATES ), finding ) );
+      } else if ( kind < 5 ) {
+         return "Vitals: BP " + (100 + _random.nextInt( 60 )) + "/" + (60 + _random.nextInt( 30 ))
+                + ", HR " + (55 + _random.nextInt( 50 )) + ", T " + (36 + _random.nextInt( 3 )) + "."
+                + _random.nextInt( 10 ) + " C, SpO2 " + (88 + _random.nextInt( 12 )) + "% on room air.";
+      } else if ( kind < 6 ) {
+         return "A " + pick( PROCEDURES ) + " performed on " + createDate() + " showed " + finding + ".";
+      } else if ( kind < 7 ) {
+         return "Continue " + createMedication() + " and reassess at " + (1 + _random.nextInt( 11 ))
+                + ":" + (10 + _random.nextInt( 49 )) + " p.m.";
+      }
+      return capitalize( String.format( pick( AFFIRMED_TEMPLATES ), finding, createDate() ) );
+   }
+
+   private String createMedication() {
+      return pick( DRUGS ) + " " + pick( DOSES ) + " p.o. " + pick( FREQUENCIES );
+   }
+
+   private String createDate() {
+      final int month = _random.nextInt( 12 );
+      final int day = 1 + _random.nextInt( 28 );
+      final int year = 1995 + _random.nextInt( 25 );
+      switch ( _random.nextInt( 3 ) ) {
+         case 0:
+            return (month + 1) + "/" + day + "/" + year;
+         case 1:
+            return MONTHS[ month ] + " " + day + ", " + year;
+         default:
+            return day + " " + MONTHS[ month ].substring( 0, 3 ) + " " + year;
+      }
+   }
+
+   private String pick( final String[] values ) {
+      return values[ _random.nextInt( values.length ) ];
+   }
+
+   static private String capitalize( final String text ) {
+      return Character.toUpperCase( text.charAt( 0 ) ) + text.substring( 1 );
+   }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.benchmark;
+
+import org.apache.ctakes.core.nlp.tokenizer.FastTokenizerPTB;
+import org.apache.ctakes.core.nlp.tokenizer.TokenOffsetBuffer;
+import org.apache.ctakes.core.nlp.tokenizer.TokenizerPTB;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link TokenizerPTB#tokenize(String)} and the allocation-free {@link FastTokenizerPTB}
+ * over the text of a whole synthetic note.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class TokenizerPTBBenchmark {
+
+   @Param( { "10", "100" } )
+   public int sentences;
+
+   private TokenizerPTB _tokenizer;
+   private String _note;
+   private FastTokenizerPTB _fastTokenizer;
+   private TokenOffsetBuffer _buffer;
+   private char[] _noteChars;
+
+   @Setup
+   public void setup() {
+      _tokenizer = new TokenizerPTB();
+      _note = new SyntheticNoteGenerator( 42 ).createNote( sentences );
+      _fastTokenizer = new FastTokenizerPTB();
+      _buffer = new TokenOffsetBuffer();
+      _noteChars = _note.toCharArray();
+   }
+
+   @Benchmark
+   public List<?> tokenize() {
+      return _tokenizer.tokenize( _note );
+   }
+
+   @Benchmark
+   public int tokenizeFast() {
+      _buffer.clear();
+      _fastTokenizer.tokenize( _noteChars, 0, _noteChars.length, _buffer );
+      return _buffer.size();
+   }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.benchmark;
+
+import org.apache.ctakes.core.cc.FileTreeXmiWriter;
+import org.apache.uima.UIMAException;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures XMI serialization with {@link FileTreeXmiWriter#writeFile} of a tokenized synthetic note
+ * with entity mentions.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class XmiWriterBenchmark {
+
+   @Param( { "10", "100" } )
+   public int sentences;
+
+   private FileTreeXmiWriter _writer;
+   private JCas _jCas;
+   private File _outputDir;
+
+   @Setup
+   public void setup() throws UIMAException, IOException {
+      _writer = new FileTreeXmiWriter();
+      final AnalysisEngine tokenEngine = BenchmarkPipelines.createTokenEngine();
+      _jCas = JCasFactory.createJCas();
+      BenchmarkPipelines.prepare( _jCas, new SyntheticNoteGenerator( 42 ).createNote( sentences ), tokenEngine );
+      BenchmarkPipelines.addEntityMentions( _jCas );
+      tokenEngine.destroy();
+      _outputDir = Files.createTempDirectory( "ctakes_xmi_bench" ).toFile();
+   }
+
+   @Benchmark
+   public File writeXmi() throws IOException {
+      _writer.writeFile( _jCas, _outputDir.getPath(), "synthetic", "synthetic" );
+      return _outputDir;
+   }
+
+   @TearDown( Level.Trial )
+   public void tearDown() {
+      final File[] files = _outputDir.listFiles();
+      if ( files != null ) {
+         for ( File file : files ) {
+            file.delete();
+         }
+      }
+      _outputDir.delete();
+   }
+
+}
@@ -25,6 +25,7 @@ import opennlp.tools.parser.chunking.Parser;
 import org.apache.ctakes.constituency.parser.util.TreeUtils;
 import org.apache.ctakes.core.util.DocumentIDAnnotationUtil;
 import org.apache.ctakes.typesystem.type.syntax.BaseToken;
+import org.apache.ctakes.typesystem.type.syntax.NewlineToken;
 import org.apache.ctakes.typesystem.type.syntax.TopTreebankNode;
 import org.apache.ctakes.typesystem.type.textspan.Sentence;
 import org.apache.log4j.Logger;
@@ -38,7 +39,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class MaxentParserWrapper implements ParserWrapper {
 
@@ -46,18 +53,62 @@ public class MaxentParserWrapper implements ParserWrapper {
 	private String parseStr = "";
 	Logger logger = Logger.getLogger(this.getClass().getName());
 
+   /**
+    * Part of speech given to tokens without one in a flat parse
+    */
+   static private final String FLAT_POS = "NN";
+
+   private final int _maxSentenceTokens;
+   private final ExecutorService _executor;
+   private final ThreadLocal<Parser> _threadParsers;
 
 	public MaxentParserWrapper(InputStream is){
-		try {
-			if (is!=null) {
-				ParserModel model = new ParserModel(is);
-				parser = new Parser(model, AbstractBottomUpParser.defaultBeamSize, AbstractBottomUpParser.defaultAdvancePercentage);
-			}
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+		this( readModel( is ), 1, 0 );
 	}
 
+   /**
+    * @param model             parser model, shared by the parsers of every thread
+    * @param threadCount       number of threads parsing the sentences of each document.
+    *                          1 parses every sentence on the calling thread.
+    * @param maxSentenceTokens sentences with more tokens are not parsed, they are given a flat parse
+    *                          with each token under the top node.  0 for no limit.
+    */
+   public MaxentParserWrapper( final ParserModel model, final int threadCount, final int maxSentenceTokens ) {
+      _maxSentenceTokens = maxSentenceTokens;
+      if ( model != null ) {
+         parser = createParser( model );
+      }
+      if ( model != null && threadCount > 1 ) {
+         // opennlp parsers keep beam search state, so every pool thread gets its own parser for the shared model
+         _threadParsers = ThreadLocal.withInitial( () -> createParser( model ) );
+         final AtomicInteger threadNumber = new AtomicInteger( 1 );
+         _executor = Executors.newFixedThreadPool( threadCount, r -> {
+            final Thread thread = new Thread( r, "ConstituencyParser-" + threadNumber.getAndIncrement() );
+            thread.setDaemon( true );
+            return thread;
+         } );
+      } else {
+         _threadParsers = null;
+         _executor = null;
+      }
+   }
+
+   static private ParserModel readModel( final InputStream is ) {
+      if ( is == null ) {
+         return null;
+      }
+      try {
+         return new ParserModel( is );
+      } catch ( IOException e ) {
+         e.printStackTrace();
+         return null;
+      }
+   }
+
+   static private Parser createParser( final ParserModel model ) {
+      return new Parser( model, AbstractBottomUpParser.defaultBeamSize, AbstractBottomUpParser.defaultAdvancePercentage );
+   }
+
 	@Override
 	public String getParseString(FSIterator tokens) {
 		return parseStr;
@@ -75,31 +126,117 @@ public class MaxentParserWrapper implements ParserWrapper {
       final String docId = DocumentIDAnnotationUtil.getDocumentID( jcas );
       logger.info( "Started processing: " + docId );
       // iterate over sentences
-		Parse parse = null;
 //      final Collection<Sentence> allSentences = org.apache.uima.fit.util.JCasUtil.select( jcas, Sentence.class );
 //      for ( Sentence sentence : allSentences ) {
       final Map<Sentence, Collection<BaseToken>> sentenceTokenMap = JCasUtil.indexCovered( jcas, Sentence.class, BaseToken.class );
-      for ( Map.Entry<Sentence, Collection<BaseToken>> sentenceTokens : sentenceTokenMap.entrySet() ) {
-         final Sentence sentence = sentenceTokens.getKey();
-         final String text = sentence.getCoveredText();
-         if ( text.isEmpty() || isBorderOnly( text ) ) {
-            continue;
+      final List<SentenceParse> sentenceParses = new ArrayList<>( sentenceTokenMap.size() );
+      try {
+         for ( Map.Entry<Sentence, Collection<BaseToken>> sentenceTokens : sentenceTokenMap.entrySet() ) {
+            final Sentence sentence = sentenceTokens.getKey();
+            final String text = sentence.getCoveredText();
+            if ( text.isEmpty() || isBorderOnly( text ) ) {
+               continue;
+            }
+//            final FSArray terminalArray = TreeUtils.getTerminals( jcas, sentence );
+            final List<BaseToken> baseTokens = new ArrayList<>( sentenceTokens.getValue() );
+            final FSArray terminalArray = TreeUtils.getTerminals( jcas, baseTokens );
+            final String tokenString = TreeUtils.getSplitSentence( terminalArray );
+            final SentenceParse sentenceParse = new SentenceParse( sentence, terminalArray );
+            if ( !tokenString.isEmpty() ) {
+               // the cas is only read and written on this thread, pool threads only see the opennlp tokens
+               final Parse inputTokens = TreeUtils.ctakesTokensToOpennlpTokens( sentence.getBegin(), text, terminalArray );
+               if ( _maxSentenceTokens > 0 && terminalArray.size() > _maxSentenceTokens ) {
+                  sentenceParse._parse = createFlatParse( inputTokens, baseTokens );
+               } else if ( _executor == null ) {
+                  sentenceParse._parse = parser.parse( inputTokens );
+               } else {
+                  sentenceParse._futureParse = _executor.submit( () -> _threadParsers.get().parse( inputTokens ) );
+               }
+            }
+            sentenceParses.add( sentenceParse );
          }
-//         final FSArray terminalArray = TreeUtils.getTerminals( jcas, sentence );
-         final FSArray terminalArray = TreeUtils.getTerminals( jcas, new ArrayList<>( sentenceTokens.getValue() ) );
-         final String tokenString = TreeUtils.getSplitSentence( terminalArray );
-         if ( tokenString.isEmpty() ) {
-            parse = null;
-         } else {
-            final Parse inputTokens = TreeUtils.ctakesTokensToOpennlpTokens( sentence.getBegin(), text, terminalArray );
-            parse = parser.parse( inputTokens );
+         // add the trees in sentence order
+         for ( SentenceParse sentenceParse : sentenceParses ) {
+            final TopTreebankNode top = TreeUtils.buildAlignedTree( jcas, sentenceParse.getParse(),
+                  sentenceParse._terminalArray, sentenceParse._sentence );
+            top.addToIndexes();
          }
-         final TopTreebankNode top = TreeUtils.buildAlignedTree( jcas, parse, terminalArray, sentence );
-         top.addToIndexes();
-		}
+      } catch ( AnalysisEngineProcessException | RuntimeException e ) {
+         // don't leave parses of this document running on the pool, e.g. when a later submit is rejected
+         sentenceParses.forEach( SentenceParse::cancel );
+         throw e;
+      }
       logger.info( "Done parsing: " + docId );
    }
 
+   /**
+    * Stop the threads used to parse sentences.  The wrapper cannot be used afterwards.
+    */
+   public void destroy() {
+      if ( _executor != null ) {
+         _executor.shutdownNow();
+      }
+   }
+
+   /**
+    * A flat parse has the part of speech of each token directly under the top node.
+    *
+    * @param inputTokens opennlp tokens of the sentence
+    * @param baseTokens  tokens of the sentence, including newline tokens that are not terminals
+    * @return a flat parse of the sentence
+    */
+   static private Parse createFlatParse( final Parse inputTokens, final List<BaseToken> baseTokens ) {
+      inputTokens.setType( AbstractBottomUpParser.TOP_NODE );
+      final Parse[] words = inputTokens.getChildren();
+      int wordIndex = 0;
+      for ( BaseToken baseToken : baseTokens ) {
+         if ( baseToken instanceof NewlineToken ) {
+            continue;
+         }
+         final String pos = baseToken.getPartOfSpeech();
+         final Parse word = words[ wordIndex ];
+         inputTokens.insert( new Parse( word.getText(), word.getSpan(),
+               pos == null || pos.isEmpty() ? FLAT_POS : pos, 1, wordIndex ) );
+         wordIndex++;
+      }
+      return inputTokens;
+   }
+
+   /**
+    * A sentence with its terminals and its parse, which may still be running on a pool thread
+    */
+   static private final class SentenceParse {
+      private final Sentence _sentence;
+      private final FSArray _terminalArray;
+      private Parse _parse;
+      private Future<Parse> _futureParse;
+
+      private SentenceParse( final Sentence sentence, final FSArray terminalArray ) {
+         _sentence = sentence;
+         _terminalArray = terminalArray;
+      }
+
+      private Parse getParse() throws AnalysisEngineProcessException {
+         if ( _futureParse == null ) {
+            return _parse;
+         }
+         try {
+            return _futureParse.get();
+         } catch ( InterruptedException intE ) {
+            Thread.currentThread().interrupt();
+            throw new AnalysisEngineProcessException( intE );
+         } catch ( ExecutionException exE ) {
+            throw new AnalysisEngineProcessException( exE.getCause() );
+         }
+      }
+
+      private void cancel() {
+         if ( _futureParse != null ) {
+            _futureParse.cancel( true );
+         }
+      }
+   }
+
    /**
     * The parser has a really tough time dealing with text lines that act as borders
     *
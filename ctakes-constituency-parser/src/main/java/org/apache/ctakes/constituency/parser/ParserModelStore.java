@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.constituency.parser;
+
+
+import opennlp.tools.parser.ParserModel;
+import org.apache.ctakes.core.resource.FileLocator;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cache of parser models shared by every constituency parser in the jvm.
+ * A model is read once per path and is never modified afterwards.
+ * OpenNLP parsers keep their beam search state, so each thread must build its own parser from the shared model.
+ */
+public enum ParserModelStore {
+   INSTANCE;
+
+   public static ParserModelStore getInstance() {
+      return INSTANCE;
+   }
+
+
+   static private final Logger LOGGER = Logger.getLogger( "ParserModelStore" );
+
+   private final Map<String, ParserModel> _parserModels;
+
+   ParserModelStore() {
+      _parserModels = new HashMap<>();
+   }
+
+   /**
+    * @param modelPath path to an OpenNLP parser model
+    * @return the parser model, read only once per path
+    * @throws IOException if the model cannot be read
+    */
+   synchronized public ParserModel getParserModel( final String modelPath ) throws IOException {
+      ParserModel model = _parserModels.get( modelPath );
+      if ( model == null ) {
+         LOGGER.info( "Loading Parser model file: " + modelPath );
+         try ( InputStream is = FileLocator.getAsStream( modelPath ) ) {
+            model = new ParserModel( is );
+         }
+         _parserModels.put( modelPath, model );
+      }
+      return model;
+   }
+
+}
@@ -19,9 +19,9 @@
 package org.apache.ctakes.constituency.parser.ae;
 
 import org.apache.ctakes.constituency.parser.MaxentParserWrapper;
+import org.apache.ctakes.constituency.parser.ParserModelStore;
 import org.apache.ctakes.constituency.parser.ParserWrapper;
 import org.apache.ctakes.core.pipeline.PipeBitInfo;
-import org.apache.ctakes.core.resource.FileLocator;
 import org.apache.ctakes.core.util.DotLogger;
 import org.apache.log4j.Logger;
 import org.apache.uima.UimaContext;
@@ -52,6 +52,26 @@ public class ConstituencyParser extends JCasAnnotator_ImplBase {
 			defaultValue = "org/apache/ctakes/constituency/parser/models/sharpacq-3.1.bin"
 	)
 	private String modelFilename;
+
+	public static final String PARAM_PARSE_THREADS = "ParseThreads";
+
+	@ConfigurationParameter(
+			name = PARAM_PARSE_THREADS,
+			description = "Number of threads parsing the sentences of a document.  1 parses sentences one after another.",
+			mandatory = false,
+			defaultValue = "1"
+	)
+	private int parseThreads;
+
+	public static final String PARAM_MAX_SENTENCE_TOKENS = "MaxSentenceTokens";
+
+	@ConfigurationParameter(
+			name = PARAM_MAX_SENTENCE_TOKENS,
+			description = "Sentences with more tokens are given a flat parse instead of being parsed.  0 for no limit.",
+			mandatory = false,
+			defaultValue = "0"
+	)
+	private int maxSentenceTokens;
 	
 	
 	private ParserWrapper parser = null;
@@ -62,7 +82,8 @@ public class ConstituencyParser extends JCasAnnotator_ImplBase {
 		super.initialize( aContext );
 		logger.info( "Initializing ..." );
 		try ( DotLogger dotter = new DotLogger() ) {
-			parser = new MaxentParserWrapper( FileLocator.getAsStream( modelFilename ) );
+			parser = new MaxentParserWrapper( ParserModelStore.getInstance().getParserModel( modelFilename ),
+					parseThreads, maxSentenceTokens );
 		} catch ( IOException ioE ) {
 			logger.error( "Error reading parser model file/directory: " + ioE.getMessage() );
 			throw new ResourceInitializationException( ioE );
@@ -75,6 +96,14 @@ public class ConstituencyParser extends JCasAnnotator_ImplBase {
 	public void process(JCas jcas) throws AnalysisEngineProcessException {
 		parser.createAnnotations(jcas);
 	}
+
+	@Override
+	public void destroy() {
+		if ( parser instanceof MaxentParserWrapper ) {
+			((MaxentParserWrapper)parser).destroy();
+		}
+		super.destroy();
+	}
 	
 	  public static AnalysisEngineDescription createAnnotatorDescription(
 		      String modelPath) throws ResourceInitializationException {
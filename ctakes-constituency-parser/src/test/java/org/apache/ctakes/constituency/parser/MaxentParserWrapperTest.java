@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.constituency.parser;
+
+import opennlp.tools.parser.ParserModel;
+import org.apache.ctakes.typesystem.type.syntax.BaseToken;
+import org.apache.ctakes.typesystem.type.syntax.NewlineToken;
+import org.apache.ctakes.typesystem.type.syntax.PunctuationToken;
+import org.apache.ctakes.typesystem.type.syntax.TopTreebankNode;
+import org.apache.ctakes.typesystem.type.syntax.WordToken;
+import org.apache.ctakes.typesystem.type.textspan.Sentence;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that sentences parsed on several threads get the same trees as sentences parsed on the calling thread,
+ * and that sentences over the token limit get a flat parse.
+ */
+public class MaxentParserWrapperTest {
+
+   static private final String MODEL_PATH = "org/apache/ctakes/constituency/parser/models/sharpacq-3.1.bin";
+   static private final String[] WORDS = { "the", "patient", "was", "given", "aspirin", "for", "severe", "chest",
+                                           "pain", "and", "denies", "shortness", "of", "breath", "today", "with",
+                                           "no", "history", "fever", "mg", "10", "left", "arm", "is", "stable" };
+   static private final String[] TAGS = { "DT", "NN", "VBD", "VBN", "NN", "IN", "JJ", "NN",
+                                          "NN", "CC", "VBZ", "NN", "IN", "NN", "NN", "IN",
+                                          "DT", "NN", "NN", "NN", "CD", "JJ", "NN", "VBZ", "JJ" };
+
+   static private ParserModel _model;
+
+   private final Collection<MaxentParserWrapper> _wrappers = new ArrayList<>();
+
+   @BeforeClass
+   static public void readModel() throws Exception {
+      _model = ParserModelStore.getInstance().getParserModel( MODEL_PATH );
+   }
+
+   @After
+   public void destroyWrappers() {
+      _wrappers.forEach( MaxentParserWrapper::destroy );
+      _wrappers.clear();
+   }
+
+   private MaxentParserWrapper createWrapper( final int threadCount, final int maxSentenceTokens ) {
+      final MaxentParserWrapper wrapper = new MaxentParserWrapper( _model, threadCount, maxSentenceTokens );
+      _wrappers.add( wrapper );
+      return wrapper;
+   }
+
+   /**
+    * @return a document of sentences with random words, a few with a newline token or a token without part of speech
+    */
+   static private JCas createDocument( final long seed, final int sentenceCount ) throws Exception {
+      final Random random = new Random( seed );
+      final JCas jCas = JCasFactory.createJCas();
+      final StringBuilder text = new StringBuilder();
+      final List<BaseToken> tokens = new ArrayList<>();
+      final List<Sentence> sentences = new ArrayList<>();
+      for ( int i = 0; i < sentenceCount; i++ ) {
+         final int sentenceBegin = text.length();
+         final int wordCount = 2 + random.nextInt( 14 );
+         for ( int j = 0; j < wordCount; j++ ) {
+            if ( j > 0 && random.nextInt( 10 ) == 0 ) {
+               final NewlineToken newline = new NewlineToken( jCas, text.length(), text.length() + 1 );
+               text.append( "\n " );
+               tokens.add( newline );
+            }
+            final int wordIndex = random.nextInt( WORDS.length );
+            final WordToken word = new WordToken( jCas, text.length(), text.length() + WORDS[ wordIndex ].length() );
+            word.setPartOfSpeech( random.nextInt( 20 ) == 0 ? null : TAGS[ wordIndex ] );
+            text.append( WORDS[ wordIndex ] ).append( ' ' );
+            tokens.add( word );
+         }
+         final PunctuationToken period = new PunctuationToken( jCas, text.length(), text.length() + 1 );
+         period.setPartOfSpeech( "." );
+         text.append( '.' );
+         tokens.add( period );
+         sentences.add( new Sentence( jCas, sentenceBegin, text.length() ) );
+         text.append( ' ' );
+      }
+      jCas.setDocumentText( text.toString() );
+      tokens.forEach( BaseToken::addToIndexes );
+      sentences.forEach( Sentence::addToIndexes );
+      return jCas;
+   }
+
+   /**
+    * @return the parse string and terminal types of each tree, in index order
+    */
+   static private List<String> parse( final MaxentParserWrapper wrapper, final JCas jCas ) throws Exception {
+      wrapper.createAnnotations( jCas );
+      final List<String> trees = new ArrayList<>();
+      for ( TopTreebankNode top : JCasUtil.select( jCas, TopTreebankNode.class ) ) {
+         final StringBuilder sb = new StringBuilder( top.getTreebankParse() );
+         for ( int i = 0; i < top.getTerminals().size(); i++ ) {
+            sb.append( ' ' ).append( top.getTerminals( i ).getNodeType() );
+         }
+         trees.add( sb.toString() );
+      }
+      return trees;
+   }
+
+   /**
+    * @return the parse string that a flat parse of the sentence should have
+    */
+   static private String getFlatParse( final JCas jCas, final Sentence sentence ) {
+      final StringBuilder sb = new StringBuilder( "(TOP " );
+      int previousEnd = -1;
+      for ( BaseToken token : JCasUtil.selectCovered( jCas, BaseToken.class, sentence ) ) {
+         if ( token instanceof NewlineToken ) {
+            continue;
+         }
+         if ( previousEnd >= 0 ) {
+            sb.append( jCas.getDocumentText(), previousEnd, token.getBegin() );
+         }
+         final String pos = token.getPartOfSpeech();
+         sb.append( '(' ).append( pos == null ? "NN" : pos ).append( ' ' ).append( token.getCoveredText() ).append( ')' );
+         previousEnd = token.getEnd();
+      }
+      return sb.append( ')' ).toString();
+   }
+
+   static private int countTerminals( final JCas jCas, final Sentence sentence ) {
+      int count = 0;
+      for ( BaseToken token : JCasUtil.selectCovered( jCas, BaseToken.class, sentence ) ) {
+         if ( !(token instanceof NewlineToken) ) {
+            count++;
+         }
+      }
+      return count;
+   }
+
+   @Test
+   public void testParallelParseMatchesSerial() throws Exception {
+      final MaxentParserWrapper serialWrapper = createWrapper( 1, 0 );
+      final MaxentParserWrapper parallelWrapper = createWrapper( 4, 0 );
+      for ( long seed = 1; seed <= 3; seed++ ) {
+         final List<String> serial = parse( serialWrapper, createDocument( seed, 40 ) );
+         assertEquals( 40, serial.size() );
+         assertEquals( serial, parse( parallelWrapper, createDocument( seed, 40 ) ) );
+      }
+   }
+
+   @Test
+   public void testFlatParse() throws Exception {
+      final int maxSentenceTokens = 8;
+      final List<String> unlimited = parse( createWrapper( 1, 0 ), createDocument( 5, 40 ) );
+      final JCas jCas = createDocument( 5, 40 );
+      final List<String> serial = parse( createWrapper( 1, maxSentenceTokens ), jCas );
+      assertEquals( serial, parse( createWrapper( 4, maxSentenceTokens ), createDocument( 5, 40 ) ) );
+
+      final List<Sentence> sentences = new ArrayList<>( JCasUtil.select( jCas, Sentence.class ) );
+      final List<TopTreebankNode> tops = new ArrayList<>( JCasUtil.select( jCas, TopTreebankNode.class ) );
+      assertEquals( sentences.size(), tops.size() );
+      int flatCount = 0;
+      for ( int i = 0; i < sentences.size(); i++ ) {
+         final Sentence sentence = sentences.get( i );
+         final TopTreebankNode top = tops.get( i );
+         final int terminalCount = countTerminals( jCas, sentence );
+         assertEquals( terminalCount, top.getTerminals().size() );
+         if ( terminalCount > maxSentenceTokens ) {
+            assertEquals( getFlatParse( jCas, sentence ), top.getTreebankParse() );
+            assertEquals( terminalCount, top.getChildren().size() );
+            flatCount++;
+         } else {
+            // sentences within the limit are parsed as they are without one
+            assertEquals( unlimited.get( i ), serial.get( i ) );
+         }
+      }
+      assertTrue( flatCount > 5 );
+      assertTrue( flatCount < sentences.size() - 5 );
+   }
+
+}
@@ -19,15 +19,16 @@
 package org.apache.ctakes.core.ae;
 
 import opennlp.tools.dictionary.Dictionary;
+import opennlp.tools.ml.model.MaxentModel;
 import opennlp.tools.sentdetect.*;
 import opennlp.tools.util.MarkableFileInputStreamFactory;
 import opennlp.tools.util.ObjectStream;
 import opennlp.tools.util.PlainTextByLineStream;
 import opennlp.tools.util.TrainingParameters;
 import org.apache.ctakes.core.pipeline.PipeBitInfo;
-import org.apache.ctakes.core.resource.FileLocator;
 import org.apache.ctakes.core.sentence.EndOfSentenceScannerImpl;
 import org.apache.ctakes.core.sentence.SentenceDetectorCtakes;
+import org.apache.ctakes.core.sentence.SentenceModelStore;
 import org.apache.ctakes.core.sentence.SentenceSpan;
 import org.apache.ctakes.typesystem.type.textspan.Segment;
 import org.apache.ctakes.typesystem.type.textspan.Sentence;
@@ -46,7 +47,6 @@ import org.apache.uima.resource.ResourceInitializationException;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.util.*;
 
@@ -85,8 +85,6 @@ public class SentenceDetector extends JCasAnnotator_ImplBase {
    )
 	private String sdModelPath;
 	
-	private opennlp.tools.sentdetect.SentenceModel sdmodel;
-
 	private SentenceDetectorCtakes sentenceDetector;
 
 	private String NEWLINE = "\n";
@@ -98,12 +96,13 @@ public class SentenceDetector extends JCasAnnotator_ImplBase {
   public void initialize(UimaContext aContext)
 			throws ResourceInitializationException {
 		super.initialize(aContext);
-		try (InputStream is = FileLocator.getAsStream(sdModelPath)){
+		try {
 		  logger.info("Sentence detector model file: " + sdModelPath);
-		  sdmodel = new SentenceModel(is);
+		  // the model is immutable and shared by all instances, the detector and context generator hold per-instance state
+		  MaxentModel model = SentenceModelStore.getInstance().getMaxentModel(sdModelPath);
 		  EndOfSentenceScannerImpl eoss = new EndOfSentenceScannerImpl();
 		  DefaultSDContextGenerator cg = new DefaultSDContextGenerator(eoss.getEndOfSentenceCharacters());
-		  sentenceDetector = new SentenceDetectorCtakes(sdmodel.getMaxentModel(), cg, eoss);
+		  sentenceDetector = new SentenceDetectorCtakes(model, cg, eoss);
 
 		  skipSegmentsSet = new HashSet<>();
 		  if(skipSegmentsArray != null){
@@ -1,14 +1,14 @@
 package org.apache.ctakes.core.ae;
 
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Scanner;
 
-import org.apache.ctakes.core.resource.FileLocator;
+import org.apache.ctakes.core.cleartk.SharedJarClassifierFactory;
+import org.apache.ctakes.core.sentence.SentenceModelStore;
 import org.apache.ctakes.typesystem.type.textspan.Segment;
 import org.apache.ctakes.typesystem.type.textspan.Sentence;
 import org.apache.ctakes.utils.struct.CounterMap;
@@ -47,7 +47,8 @@ public class SentenceDetectorAnnotatorBIO extends CleartkAnnotator<String>{
   public static final String PARAM_TOKEN_FILE = "TokenFilename";
   @ConfigurationParameter(name=PARAM_TOKEN_FILE,mandatory=false)
   private String tokenCountFile = "org/apache/ctakes/core/sentdetect/tokenCounts.txt";
-  CounterMap<String> tokenCounts = new CounterMap<>();
+  // shared by all instances and never modified
+  CounterMap<String> tokenCounts;
 
   private HashMap<Integer,Double> endCounts = null;
   private double maxLineStrength = -1;
@@ -58,15 +59,8 @@ public class SentenceDetectorAnnotatorBIO extends CleartkAnnotator<String>{
       throws ResourceInitializationException {
     super.initialize(context);
     try{
-      Scanner scanner = new Scanner(FileLocator.getAsStream(tokenCountFile));
-      while(scanner.hasNextLine()){
-        String[] pair = scanner.nextLine().trim().split(" : ");
-        if(pair.length == 2){
-          tokenCounts.put(pair[0], Integer.parseInt(pair[1]));
-        }
-      }
-      scanner.close();
-    }catch(FileNotFoundException e){
+      tokenCounts = SentenceModelStore.getInstance().getTokenCounts(tokenCountFile);
+    }catch(IOException e){
       throw new ResourceInitializationException(e);
     }
   }
@@ -383,6 +377,8 @@ public class SentenceDetectorAnnotatorBIO extends CleartkAnnotator<String>{
         SentenceDetectorAnnotatorBIO.class,
         SentenceDetectorAnnotatorBIO.PARAM_IS_TRAINING,
         false,
+        CleartkAnnotator.PARAM_CLASSIFIER_FACTORY_CLASS_NAME,
+        SharedJarClassifierFactory.class.getName(),
         GenericJarClassifierFactory.PARAM_CLASSIFIER_JAR_PATH,
         modelPath,
         SentenceDetectorAnnotatorBIO.PARAM_FEAT_CONFIG,
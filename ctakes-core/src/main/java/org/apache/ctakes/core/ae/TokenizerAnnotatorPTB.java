@@ -18,6 +18,8 @@
  */
 package org.apache.ctakes.core.ae;
 
+import org.apache.ctakes.core.nlp.tokenizer.FastTokenizerPTB;
+import org.apache.ctakes.core.nlp.tokenizer.TokenOffsetBuffer;
 import org.apache.ctakes.core.nlp.tokenizer.TokenizerPTB;
 import org.apache.ctakes.core.pipeline.PipeBitInfo;
 import org.apache.ctakes.typesystem.type.syntax.BaseToken;
@@ -68,7 +70,28 @@ public class TokenizerAnnotatorPTB extends JCasAnnotator_ImplBase
   private String[] skipSegmentsArray;
   private Set<String> skipSegmentsSet;
 
+	/**
+	 * Value is "UseFastTokenizer".  When true, sentences are tokenized by the allocation-free {@link FastTokenizerPTB}
+	 * directly over the document characters.  Tokens are identical to those of the default tokenizer.
+	 */
+	public static final String PARAM_FAST_TOKENIZER = "UseFastTokenizer";
+  @ConfigurationParameter(
+      name = PARAM_FAST_TOKENIZER,
+      mandatory = false,
+      description = "Use the allocation-free tokenizer fast path",
+      defaultValue = "false"
+      )
+  private boolean useFastTokenizer;
+
 	private TokenizerPTB tokenizer;
+	private FastTokenizerPTB fastTokenizer;
+	private TokenOffsetBuffer tokenBuffer;
+	private final List<BaseToken> fastTokens = new ArrayList<>();
+	private char[] documentChars;
+	// tokens created by the fast path can be numbered without a pass over the cas index
+	// as long as no other token can begin within the range being annotated
+	private boolean canNumberFastTokens;
+	private int annotatedEnd;
 
 	private int tokenCount = 0;
 
@@ -77,6 +100,10 @@ public class TokenizerAnnotatorPTB extends JCasAnnotator_ImplBase
 		super.initialize(aContext);
 		logger.info("Initializing " + this.getClass().getName());
 		tokenizer = new TokenizerPTB();
+		if (useFastTokenizer) {
+			fastTokenizer = new FastTokenizerPTB();
+			tokenBuffer = new TokenOffsetBuffer();
+		}
 		skipSegmentsSet = new HashSet<>();
     if(skipSegmentsArray != null){
       Collections.addAll(skipSegmentsSet, skipSegmentsArray);
@@ -92,6 +119,11 @@ public class TokenizerAnnotatorPTB extends JCasAnnotator_ImplBase
 		logger.info("process(JCas) in " + this.getClass().getName());
 
 		tokenCount = 0;
+		if (useFastTokenizer) {
+			documentChars = jcas.getDocumentText().toCharArray();
+			canNumberFastTokens = !JCasUtil.exists(jcas, BaseToken.class);
+			annotatedEnd = 0;
+		}
 
 		Collection<Segment> segments = JCasUtil.select(jcas, Segment.class);
 		for(Segment sa : segments){
@@ -100,6 +132,7 @@ public class TokenizerAnnotatorPTB extends JCasAnnotator_ImplBase
 				annotateRange(jcas, sa.getBegin(), sa.getEnd());
 			}
 		}
+		documentChars = null;
 	}
 
 
@@ -114,6 +147,10 @@ public class TokenizerAnnotatorPTB extends JCasAnnotator_ImplBase
 	 * @throws AnalysisEngineProcessException 
 	 */
 	protected void annotateRange(JCas jcas, int rangeBegin, int rangeEnd) throws AnalysisEngineProcessException {
+		if (useFastTokenizer) {
+			annotateRangeFast(jcas, rangeBegin, rangeEnd);
+			return;
+		}
 
 		// int tokenCount = 0; // can't start with tokenCount=0 here because this method can be called multiple times
 
@@ -179,10 +216,78 @@ public class TokenizerAnnotatorPTB extends JCasAnnotator_ImplBase
 		}
 
 	}
+
+	/**
+	 * Tokenizes a range of text with the {@link FastTokenizerPTB}, adding the tokens to the CAS.
+	 * Produces the same tokens and token numbers as the default path.
+	 */
+	private void annotateRangeFast(JCas jcas, int rangeBegin, int rangeEnd) {
+		tokenBuffer.clear();
+		// First look for all newlines and carriage returns (which are not contained within sentences)
+		for (int i = rangeBegin; i<rangeEnd; i++) {
+			if (documentChars[i]==CR) {
+				if (i+1<rangeEnd && documentChars[i+1]==LF) {
+					// single NewlineToken for the 2 characters
+					tokenBuffer.add(i, i+2, FastTokenizerPTB.TYPE_NEWLINE);
+					i++; // skip past the LF
+				} else {
+					tokenBuffer.add(i, i+1, FastTokenizerPTB.TYPE_NEWLINE);
+				}
+			} else if (documentChars[i]==LF) {
+				tokenBuffer.add(i, i+1, FastTokenizerPTB.TYPE_NEWLINE);
+			}
+		}
+		// Now tokenize each sentence within the range
+		for (Sentence sentence : JCasUtil.selectCovered(jcas, Sentence.class, rangeBegin, rangeEnd)) {
+			fastTokenizer.tokenize(documentChars, sentence.getBegin(), sentence.getEnd(), tokenBuffer);
+		}
+		final boolean numberFastTokens = canNumberFastTokens && rangeBegin >= annotatedEnd;
+		annotatedEnd = Math.max(annotatedEnd, rangeEnd);
+		if (!numberFastTokens) {
+			// other tokens may begin within the range, so number everything in the order of the cas index
+			for (int i = 0; i < tokenBuffer.size(); i++) {
+				FastTokenizerPTB.createToken(jcas, documentChars,
+						tokenBuffer.getBegin(i), tokenBuffer.getEnd(i), tokenBuffer.getType(i)).addToIndexes();
+			}
+			Collection<BaseToken> tokens = JCasUtil.select(jcas, BaseToken.class);
+			for (BaseToken bta : tokens) {
+				if (bta.getBegin()>=rangeBegin && bta.getBegin()<rangeEnd) {
+					bta.setTokenNumber(tokenCount);
+					tokenCount++;
+				}
+			}
+			return;
+		}
+		// Add the tokenNumber in the order of offsets, as the annotation index would
+		fastTokens.clear();
+		for (int i = 0; i < tokenBuffer.size(); i++) {
+			fastTokens.add(FastTokenizerPTB.createToken(jcas, documentChars,
+					tokenBuffer.getBegin(i), tokenBuffer.getEnd(i), tokenBuffer.getType(i)));
+		}
+		fastTokens.sort(TOKEN_OFFSET_ORDER);
+		for (BaseToken bta : fastTokens) {
+			bta.setTokenNumber(tokenCount);
+			tokenCount++;
+			bta.addToIndexes();
+		}
+		fastTokens.clear();
+	}
+
+	static private final Comparator<BaseToken> TOKEN_OFFSET_ORDER = (t1, t2) -> {
+		if (t1.getBegin() != t2.getBegin()) {
+			return Integer.compare(t1.getBegin(), t2.getBegin());
+		}
+		return Integer.compare(t2.getEnd(), t1.getEnd());
+	};
 	
 	public static AnalysisEngineDescription createAnnotatorDescription() throws ResourceInitializationException{
 	  return AnalysisEngineFactory.createEngineDescription(TokenizerAnnotatorPTB.class);
 	}
+
+	public static AnalysisEngineDescription createAnnotatorDescription(boolean useFastTokenizer) throws ResourceInitializationException{
+	  return AnalysisEngineFactory.createEngineDescription(TokenizerAnnotatorPTB.class,
+	        PARAM_FAST_TOKENIZER, useFastTokenizer);
+	}
 }	
 
 
@@ -0,0 +1,65 @@
+package org.apache.ctakes.core.cleartk;
+
+
+import org.apache.log4j.Logger;
+import org.apache.uima.UimaContext;
+import org.apache.uima.fit.component.initialize.ConfigurationParameterInitializer;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
+import org.apache.uima.fit.factory.initializable.Initializable;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.cleartk.ml.Classifier;
+import org.cleartk.ml.ClassifierFactory;
+import org.cleartk.ml.jar.GenericJarClassifierFactory;
+import org.cleartk.ml.jar.JarClassifierFactory;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Classifier factory that loads each classifier jar only once per jvm.
+ * Every annotator configured with the same jar path receives the same classifier instance,
+ * so this factory should only be used with classifiers that keep no state while classifying,
+ * such as the liblinear classifiers.
+ * Use by setting {@link org.cleartk.ml.CleartkAnnotator#PARAM_CLASSIFIER_FACTORY_CLASS_NAME} to this class name.
+ */
+final public class SharedJarClassifierFactory<OUTCOME_TYPE> implements ClassifierFactory<OUTCOME_TYPE>, Initializable {
+
+   static private final Logger LOGGER = Logger.getLogger( "SharedJarClassifierFactory" );
+
+   static private final Map<String, Classifier<?>> CLASSIFIERS = new HashMap<>();
+
+   @ConfigurationParameter(
+         name = GenericJarClassifierFactory.PARAM_CLASSIFIER_JAR_PATH,
+         description = "Path to the jar file containing the classifier model"
+   )
+   private String _classifierJarPath;
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void initialize( final UimaContext context ) throws ResourceInitializationException {
+      ConfigurationParameterInitializer.initialize( this, context );
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   @SuppressWarnings( "unchecked" )
+   public Classifier<OUTCOME_TYPE> createClassifier() throws IOException {
+      synchronized ( CLASSIFIERS ) {
+         Classifier<?> classifier = CLASSIFIERS.get( _classifierJarPath );
+         if ( classifier == null ) {
+            LOGGER.info( "Loading shared classifier " + _classifierJarPath );
+            final JarClassifierFactory<OUTCOME_TYPE> factory = new JarClassifierFactory<>();
+            factory.setClassifierJarPath( _classifierJarPath );
+            classifier = factory.createClassifier();
+            CLASSIFIERS.put( _classifierJarPath, classifier );
+         }
+         return (Classifier<OUTCOME_TYPE>)classifier;
+      }
+   }
+
+}
@@ -383,7 +383,7 @@ public class ContractionsPTB {
 	// apostrophe followed by normal hyphen processing.
 
     
-    private static String [] fullWordsNotToBreakAtApostrophe = {
+    static String [] fullWordsNotToBreakAtApostrophe = {
 	"p'yongyang",
     };
     
@@ -0,0 +1,931 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.core.nlp.tokenizer;
+
+import static java.lang.Character.isDigit;
+import static java.lang.Character.isLetter;
+import static java.lang.Character.isLetterOrDigit;
+import static java.lang.Character.isWhitespace;
+import static java.lang.Character.toLowerCase;
+import static org.apache.ctakes.core.nlp.tokenizer.TokenizerHelper.APOSTROPHE;
+import static org.apache.ctakes.core.nlp.tokenizer.TokenizerHelper.COMMA;
+import static org.apache.ctakes.core.nlp.tokenizer.TokenizerHelper.CR;
+import static org.apache.ctakes.core.nlp.tokenizer.TokenizerHelper.HYPHEN_OR_MINUS_SIGN;
+import static org.apache.ctakes.core.nlp.tokenizer.TokenizerHelper.NEWLINE;
+import static org.apache.ctakes.core.nlp.tokenizer.TokenizerHelper.PERIOD;
+import static org.apache.ctakes.core.nlp.tokenizer.TokenizerHelper.isPunctuation;
+
+import org.apache.ctakes.core.ae.TokenizerAnnotator;
+import org.apache.ctakes.typesystem.type.syntax.BaseToken;
+import org.apache.ctakes.typesystem.type.syntax.ContractionToken;
+import org.apache.ctakes.typesystem.type.syntax.NewlineToken;
+import org.apache.ctakes.typesystem.type.syntax.NumToken;
+import org.apache.ctakes.typesystem.type.syntax.PunctuationToken;
+import org.apache.ctakes.typesystem.type.syntax.SymbolToken;
+import org.apache.ctakes.typesystem.type.syntax.WordToken;
+import org.apache.uima.jcas.JCas;
+
+/**
+ * Penn Treebank tokenizer that scans a character array once and writes token offsets and types
+ * into a reusable {@link TokenOffsetBuffer}.
+ * <p>
+ * Token boundaries and types are the same as those produced by {@link TokenizerPTB#tokenizeTextSegment},
+ * but no Strings, lower-cased copies, token objects or contraction results are created while scanning.
+ * Contraction, hyphenated affix, name and url checks are matched directly against the lookup tables in
+ * {@link ContractionsPTB}, {@link HyphenatedPTB} and {@link TokenizerPTB}, comparing characters in place.
+ * </p>
+ * Characters are lower-cased one at a time, so text whose lower case form has a different length than the
+ * original (a few rare characters such as the dotted capital I) may be tokenized differently than by TokenizerPTB.
+ * A single instance is stateless and may be shared by threads.
+ */
+final public class FastTokenizerPTB {
+
+   static public final int TYPE_NEWLINE = 0;
+   static public final int TYPE_NUM = 1;
+   static public final int TYPE_WORD = 2;
+   static public final int TYPE_PUNCTUATION = 3;
+   static public final int TYPE_SYMBOL = 4;
+   static public final int TYPE_CONTRACTION = 5;
+
+   static private final int NOT_SET = -999;
+   static private final int MAX_EMAIL_LOCAL_LENGTH = 64;
+   static private final int MAX_EMAIL_LENGTH = 320;
+   static private final char DASH = '-';
+   static private final char AT = '@';
+
+   /**
+    * Tokenize a sentence or other span of text.  Tokens are appended to the buffer, which is not cleared.
+    *
+    * @param text   characters of the complete document
+    * @param begin  begin offset of the span to tokenize
+    * @param end    end offset of the span to tokenize
+    * @param buffer buffer to which token offsets and types are added
+    */
+   public void tokenize( final char[] text, final int begin, final int end, final TokenOffsetBuffer buffer ) {
+      if ( end <= begin ) {
+         return;
+      }
+      int position = begin;
+      while ( (position = findFirstCharOfNextToken( text, position, end )) >= 0 ) {
+         position = addNextTokens( text, begin, end, position, buffer );
+      }
+   }
+
+   /**
+    * Create a cas token with the same features that {@link TokenizerPTB} sets.  The token is not added to indexes.
+    *
+    * @param jcas  ye olde ...
+    * @param text  characters of the complete document
+    * @param begin token begin offset
+    * @param end   token end offset
+    * @param type  one of the TYPE_ constants
+    * @return new token of the type's class
+    */
+   static public BaseToken createToken( final JCas jcas, final char[] text, final int begin, final int end,
+                                        final int type ) {
+      switch ( type ) {
+         case TYPE_NEWLINE:
+            return new NewlineToken( jcas, begin, end );
+         case TYPE_NUM:
+            final NumToken numToken = new NumToken( jcas, begin, end );
+            numToken.setNumType( isInteger( text, begin, end )
+                                 ? TokenizerAnnotator.TOKEN_NUM_TYPE_INTEGER
+                                 : TokenizerAnnotator.TOKEN_NUM_TYPE_DECIMAL );
+            return numToken;
+         case TYPE_WORD:
+            final WordToken wordToken = new WordToken( jcas, begin, end );
+            wordToken.setCapitalization( getCapitalization( text, begin, end ) );
+            wordToken.setNumPosition( getNumPosition( text, begin, end ) );
+            return wordToken;
+         case TYPE_PUNCTUATION:
+            return new PunctuationToken( jcas, begin, end );
+         case TYPE_SYMBOL:
+            return new SymbolToken( jcas, begin, end );
+         case TYPE_CONTRACTION:
+            return new ContractionToken( jcas, begin, end );
+         default:
+            return new BaseToken( jcas, begin, end );
+      }
+   }
+
+   /**
+    * @return true if the text is a number without a decimal point
+    * @see Tokenizer#isNumber(String)
+    */
+   static private boolean isInteger( final char[] text, final int begin, final int end ) {
+      int charsBeforeDecimal = 0;
+      for ( int i = end - 1; i >= begin; i-- ) {
+         final char c = text[ i ];
+         if ( isDigit( c ) ) {
+            charsBeforeDecimal++;
+         } else if ( c != COMMA || charsBeforeDecimal % 3 != 0 ) {
+            // a period, letter or misplaced comma
+            return false;
+         }
+      }
+      return true;
+   }
+
+   static private int getCapitalization( final char[] text, final int begin, final int end ) {
+      int upperCount = 0;
+      for ( int i = begin; i < end; i++ ) {
+         if ( Character.isUpperCase( text[ i ] ) ) {
+            upperCount++;
+         }
+      }
+      if ( upperCount == 0 ) {
+         return TokenizerAnnotator.TOKEN_CAP_NONE;
+      } else if ( upperCount == end - begin ) {
+         return TokenizerAnnotator.TOKEN_CAP_ALL;
+      } else if ( upperCount == 1 && Character.isUpperCase( text[ begin ] ) ) {
+         return TokenizerAnnotator.TOKEN_CAP_FIRST_ONLY;
+      }
+      return TokenizerAnnotator.TOKEN_CAP_MIXED;
+   }
+
+   static private int getNumPosition( final char[] text, final int begin, final int end ) {
+      if ( end <= begin ) {
+         return TokenizerAnnotator.TOKEN_NUM_POS_NONE;
+      }
+      if ( isDigit( text[ begin ] ) ) {
+         return TokenizerAnnotator.TOKEN_NUM_POS_FIRST;
+      } else if ( isDigit( text[ end - 1 ] ) ) {
+         return TokenizerAnnotator.TOKEN_NUM_POS_LAST;
+      }
+      for ( int i = begin + 1; i < end - 1; i++ ) {
+         if ( isDigit( text[ i ] ) ) {
+            return TokenizerAnnotator.TOKEN_NUM_POS_MIDDLE;
+         }
+      }
+      return TokenizerAnnotator.TOKEN_NUM_POS_NONE;
+   }
+
+   /**
+    * Adds one, two or three tokens starting at the given position.
+    *
+    * @return position after the last token added
+    */
+   private int addNextTokens( final char[] text, final int segBegin, final int segEnd, final int start,
+                              final TokenOffsetBuffer buffer ) {
+      int position = start;
+      final char firstChar = text[ position ];
+      int tokenLen = NOT_SET;
+      int type;
+      if ( position + 1 >= segEnd || isWhitespace( text[ position + 1 ] ) ) {
+         tokenLen = 1;
+         type = getSingleCharType( firstChar );
+      } else if ( firstChar == NEWLINE ) {
+         tokenLen = 1;
+         type = TYPE_NEWLINE;
+      } else if ( firstChar == CR ) {
+         tokenLen = text[ position + 1 ] != NEWLINE ? 1 : 2;
+         type = TYPE_NEWLINE;
+      } else if ( firstChar == PERIOD ) {
+         final int len = getLengthIfIsNumberThatStartsWithPeriod( text, position, segEnd );
+         if ( len > 0 ) {
+            tokenLen = len;
+            type = TYPE_NUM;
+         } else if ( isEllipsis( text, position, segEnd ) ) {
+            tokenLen = 3;
+            type = TYPE_PUNCTUATION;
+         } else {
+            tokenLen = 1;
+            type = TYPE_PUNCTUATION;
+         }
+      } else if ( firstChar == HYPHEN_OR_MINUS_SIGN ) {
+         tokenLen = 1;
+         type = TYPE_PUNCTUATION;
+      } else if ( firstChar == APOSTROPHE ) {
+         final int len = getLengthIfNameStartingWithApostrophe( text, position, segEnd );
+         if ( len > 0 ) {
+            tokenLen = len;
+            type = TYPE_WORD;
+         } else if ( isContractionThatStartsWithApostrophe( text, position, segEnd ) ) {
+            tokenLen = 2;
+            type = TYPE_CONTRACTION;
+         } else {
+            tokenLen = 1;
+            type = TYPE_PUNCTUATION;
+         }
+      } else if ( isPunctuation( firstChar ) ) {
+         tokenLen = 1;
+         type = TYPE_PUNCTUATION;
+      } else if ( isLetterOrDigit( firstChar ) ) {
+         boolean obviouslyIsWord = true;
+         boolean obviouslyIsNumber = true;
+         int nextWhitespace = -1;
+         int nextNonLetterOrDigit = -1;
+         int nextNonLetterDigitApostrophe = -1;
+         int nextNonTelephoneOrPostalChar = -1;
+         int nextNonNumericChar = -1;
+         int nextNonDigit = -1;
+         int i = position;
+         char ch;
+         do {
+            ch = text[ i ];
+            if ( isWhitespace( ch ) ) {
+               if ( nextNonLetterOrDigit < 0 ) nextNonLetterOrDigit = i;
+               if ( nextNonLetterDigitApostrophe < 0 ) nextNonLetterDigitApostrophe = i;
+               if ( nextNonDigit < 0 ) nextNonDigit = i;
+               if ( nextNonTelephoneOrPostalChar < 0 ) nextNonTelephoneOrPostalChar = i;
+               if ( nextNonNumericChar < 0 ) nextNonNumericChar = i;
+               nextWhitespace = i;
+            } else if ( !isLetterOrDigit( ch ) ) {
+               obviouslyIsWord = false;
+               obviouslyIsNumber = false;
+               if ( nextNonLetterOrDigit < 0 ) nextNonLetterOrDigit = i;
+               if ( nextNonLetterDigitApostrophe < 0 && ch != APOSTROPHE ) nextNonLetterDigitApostrophe = i;
+               if ( nextNonDigit < 0 ) nextNonDigit = i;
+               if ( nextNonTelephoneOrPostalChar < 0 && !isTelephoneNumberChar( ch ) ) nextNonTelephoneOrPostalChar = i;
+               if ( nextNonNumericChar < 0 && !isNumericChar( ch ) ) nextNonNumericChar = i;
+            } else if ( !isDigit( ch ) ) {
+               obviouslyIsNumber = false;
+               if ( nextNonDigit < 0 ) nextNonDigit = i;
+               if ( nextNonTelephoneOrPostalChar < 0 ) nextNonTelephoneOrPostalChar = i;
+               if ( nextNonNumericChar < 0 ) nextNonNumericChar = i;
+            }
+            i++;
+         } while ( i < segEnd && !isWhitespace( ch ) );
+         if ( i >= segEnd ) {
+            if ( nextWhitespace < 0 ) nextWhitespace = segEnd;
+            if ( nextNonLetterOrDigit < 0 ) nextNonLetterOrDigit = segEnd;
+            if ( nextNonLetterDigitApostrophe < 0 ) nextNonLetterDigitApostrophe = segEnd;
+            if ( nextNonTelephoneOrPostalChar < 0 ) nextNonTelephoneOrPostalChar = segEnd;
+            if ( nextNonNumericChar < 0 ) nextNonNumericChar = segEnd;
+         }
+
+         if ( obviouslyIsNumber ) {
+            tokenLen = nextWhitespace - position;
+            type = TYPE_NUM;
+         } else if ( obviouslyIsWord ) {
+            final int multiIndex = getMultiTokenWordIndex( text, position, nextWhitespace );
+            if ( multiIndex >= 0 ) {
+               // A contraction without an apostrophe, like "gonna"
+               tokenLen = ContractionsPTB.MultiTokenWordLenToken1[ multiIndex ];
+               buffer.add( position, position + tokenLen, TYPE_WORD );
+               position += tokenLen;
+               tokenLen = ContractionsPTB.MultiTokenWordLenToken2[ multiIndex ];
+               type = TYPE_CONTRACTION;
+               final int thirdLen = ContractionsPTB.MultiTokenWordLenToken3[ multiIndex ];
+               if ( thirdLen > 0 ) {
+                  buffer.add( position, position + tokenLen, TYPE_CONTRACTION );
+                  position += tokenLen;
+                  tokenLen = thirdLen;
+               }
+            } else {
+               tokenLen = nextWhitespace - position;
+               type = TYPE_WORD;
+            }
+         } else {
+            int len;
+            type = TYPE_WORD;
+            // Check for things like 80's before checking for contractions, or else 80's looks like a contraction
+            if ( nextNonLetterOrDigit < segEnd && text[ nextNonLetterOrDigit ] == APOSTROPHE ) {
+               len = tokenLengthCheckingForSingleQuoteWordsToKeepTogether( text, position, nextWhitespace );
+               if ( len > nextNonLetterOrDigit - position ) {
+                  tokenLen = len;
+                  type = getWordOrNumType( text, position, tokenLen );
+               }
+            }
+            if ( tokenLen == NOT_SET ) {
+               final long contraction
+                     = getLengthIfNextApostIsMiddleOfContraction( text, segBegin, segEnd, position, nextNonLetterOrDigit );
+               if ( contraction >= 0 ) {
+                  tokenLen = getWordTokenLen( contraction );
+                  final char c = toLowerCase( text[ position + tokenLen ] );
+                  if ( c != 'n' && c != APOSTROPHE ) {
+                     throw new RuntimeException( "ERROR: getLengthIfNextApostIsMiddleOfContraction returned "
+                                                 + tokenLen + " but the character (" + c
+                                                 + ") after that is not 'n' or apostrophe " );
+                  }
+                  if ( tokenLen > 0 ) {
+                     buffer.add( position, position + tokenLen, TYPE_WORD );
+                     position += tokenLen;
+                  }
+                  tokenLen = getContractionTokenLen( contraction );
+                  type = TYPE_CONTRACTION;
+               } else if ( (len = lenIfIsTelephoneNumber( text, position, nextNonTelephoneOrPostalChar )) > 0 ) {
+                  tokenLen = len;
+               } else if ( (len = lenIfIsPostalCode( text, position, nextNonTelephoneOrPostalChar )) > 0 ) {
+                  tokenLen = len;
+               } else if ( (len = lenIfIsUrl( text, position, nextWhitespace )) > 0 ) {
+                  tokenLen = len;
+               } else if ( (len = lenIfIsEmailAddress( text, position, nextWhitespace )) > 0 ) {
+                  tokenLen = len;
+               } else if ( (len = lenIfIsAbbreviation( text, segEnd, position, nextWhitespace )) > 0 ) {
+                  tokenLen = len;
+               } else if ( nextNonLetterOrDigit < segEnd && text[ nextNonLetterOrDigit ] == HYPHEN_OR_MINUS_SIGN ) {
+                  tokenLen = tokenLengthCheckingForHyphenatedTerms( text, position, nextWhitespace );
+                  if ( tokenLen < 0 ) {
+                     throw new RuntimeException( "tokenLen = " + tokenLen + " currentPosition = " + position
+                                                 + " nextNonLetterOrNonDigit = " + nextNonLetterOrDigit );
+                  }
+                  type = getWordOrNumType( text, position, tokenLen );
+               } else if ( nextNonNumericChar > segBegin
+                           && (len = lenIfIsNumberContainingComma( text, segEnd, position, nextNonNumericChar )) > 0 ) {
+                  tokenLen = len;
+                  type = TYPE_NUM;
+               } else if ( nextNonLetterDigitApostrophe < segEnd && text[ nextNonLetterDigitApostrophe ] == PERIOD ) {
+                  if ( nextNonDigit == segEnd - 1 ) {
+                     // end of sentence, the period is punctuation and not part of the number
+                     tokenLen = nextNonDigit - position;
+                     type = TYPE_NUM;
+                  } else if ( nextNonLetterDigitApostrophe == nextNonDigit ) {
+                     // decimal point
+                     tokenLen = nextNonDigit + 1 + getLenToNextNonDigit( text, nextNonDigit + 1, segEnd ) - position;
+                     type = TYPE_NUM;
+                  } else {
+                     // something like 2J3. which is not a number, or 2'3.
+                     tokenLen = nextNonLetterOrDigit - position;
+                     type = getWordOrNumType( text, position, tokenLen );
+                  }
+               } else {
+                  tokenLen = nextNonLetterOrDigit - position;
+                  type = getWordOrNumType( text, position, tokenLen );
+               }
+            }
+         }
+      } else {
+         tokenLen = 1;
+         type = TYPE_SYMBOL;
+      }
+      if ( tokenLen < 0 ) {
+         throw new RuntimeException( "tokenLen = " + tokenLen + " currentPosition = " + position );
+      }
+      buffer.add( position, position + tokenLen, type );
+      return position + tokenLen;
+   }
+
+   /**
+    * @return index of the first character of the next token at or after the given position, or -1 if there is none
+    */
+   static private int findFirstCharOfNextToken( final char[] text, final int position, final int end ) {
+      for ( int i = position; i < end; i++ ) {
+         final char c = text[ i ];
+         if ( !isWhitespace( c ) || c == NEWLINE || c == CR ) {
+            return i;
+         }
+      }
+      return -1;
+   }
+
+   static private int getSingleCharType( final char c ) {
+      if ( c == NEWLINE || c == CR ) {
+         return TYPE_NEWLINE;
+      }
+      if ( isDigit( c ) ) {
+         return TYPE_NUM;
+      }
+      if ( isLetter( c ) ) {
+         return TYPE_WORD;
+      }
+      if ( isPunctuation( c ) ) {
+         return TYPE_PUNCTUATION;
+      }
+      return TYPE_SYMBOL;
+   }
+
+   static private boolean isTelephoneNumberChar( final char c ) {
+      return isDigit( c ) || c == DASH;
+   }
+
+   static private boolean isNumericChar( final char c ) {
+      return isDigit( c ) || c == COMMA || c == PERIOD;
+   }
+
+   static private int getWordOrNumType( final char[] text, final int begin, final int length ) {
+      for ( int i = begin; i < begin + length; i++ ) {
+         if ( isLetter( toLowerCase( text[ i ] ) ) ) {
+            return TYPE_WORD;
+         }
+      }
+      return TYPE_NUM;
+   }
+
+   static private int getLenToNextNonDigit( final char[] text, final int start, final int end ) {
+      int i = start;
+      while ( i < end && isDigit( text[ i ] ) ) {
+         i++;
+      }
+      return Math.max( 0, i - start );
+   }
+
+   /**
+    * @return true if the given table entry matches the lower cased text at the given position
+    */
+   static private boolean regionMatches( final char[] text, final int position, final int end, final String entry ) {
+      final int length = entry.length();
+      if ( position < 0 || position + length > end ) {
+         return false;
+      }
+      for ( int i = 0; i < length; i++ ) {
+         if ( toLowerCase( text[ position + i ] ) != entry.charAt( i ) ) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * @return true if the lower cased text from begin to end is exactly the given table entry
+    */
+   static private boolean equalsEntry( final char[] text, final int begin, final int end, final String entry ) {
+      return end - begin == entry.length() && regionMatches( text, begin, end, entry );
+   }
+
+   /**
+    * @return true if the lower cased text from begin to end is exactly one of the given table entries
+    */
+   static private boolean isTableEntry( final char[] text, final int begin, final int end, final String[] table ) {
+      for ( String entry : table ) {
+         if ( equalsEntry( text, begin, end, entry ) ) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   static private int findNextNonAlphaNum( final char[] text, final int position, final int end ) {
+      for ( int i = position; i < end; i++ ) {
+         if ( !isLetterOrDigit( text[ i ] ) ) {
+            return i;
+         }
+      }
+      return end;
+   }
+
+   static private int indexOf( final char[] text, final char c, final int position, final int end ) {
+      for ( int i = Math.max( 0, position ); i < end; i++ ) {
+         if ( text[ i ] == c ) {
+            return i;
+         }
+      }
+      return -1;
+   }
+
+   static private boolean isEllipsis( final char[] text, final int position, final int end ) {
+      return position + 3 <= end && text[ position + 1 ] == PERIOD && text[ position + 2 ] == PERIOD;
+   }
+
+   static private int getLengthIfIsNumberThatStartsWithPeriod( final char[] text, final int position, final int end ) {
+      final int len = end - position;
+      if ( len < 2 || !isDigit( text[ position + 1 ] ) ) {
+         return -1;
+      }
+      for ( int i = position + 2; i < end; i++ ) {
+         if ( !isDigit( text[ i ] ) ) {
+            return i - position;
+         }
+      }
+      return len;
+   }
+
+   static private int getLengthIfNameStartingWithApostrophe( final char[] text, final int position, final int end ) {
+      if ( end - position == 1 || !isLetter( text[ position + 1 ] ) ) {
+         return -1;
+      }
+      for ( String name : TokenizerPTB.nameStartingWithApostrophe ) {
+         if ( regionMatches( text, position, end, name ) ) {
+            return name.length();
+         }
+      }
+      return -1;
+   }
+
+   static private boolean isContractionThatStartsWithApostrophe( final char[] text, final int position,
+                                                                 final int end ) {
+      for ( String contraction : ContractionsPTB.contractionsStartingWithApostrophe ) {
+         if ( regionMatches( text, position, end, contraction ) ) {
+            final int after = position + contraction.length();
+            if ( after == end || !isLetter( toLowerCase( text[ after ] ) ) ) {
+               return true;
+            }
+         }
+      }
+      return false;
+   }
+
+   static private int getMultiTokenWordIndex( final char[] text, final int begin, final int end ) {
+      final String[] words = ContractionsPTB.MultiTokenWords;
+      for ( int i = 0; i < words.length; i++ ) {
+         if ( equalsEntry( text, begin, end, words[ i ] ) ) {
+            return i;
+         }
+      }
+      return -1;
+   }
+
+   ////////////////////////////////////////////////////////////////////////////////////////
+   //
+   //    Contractions.  Character array versions of the methods in ContractionsPTB.
+   //
+   ////////////////////////////////////////////////////////////////////////////////////////
+
+   // Word and contraction token lengths are returned packed into a single long to avoid a result object.
+   static private long packContraction( final int wordTokenLen, final int contractionTokenLen ) {
+      return ((long)wordTokenLen << 32) | contractionTokenLen;
+   }
+
+   static private int getWordTokenLen( final long contraction ) {
+      return (int)(contraction >>> 32);
+   }
+
+   static private int getContractionTokenLen( final long contraction ) {
+      return (int)contraction;
+   }
+
+   /**
+    * @return packed word and contraction token lengths, or -1 if the next apostrophe is not within a contraction
+    * @see ContractionsPTB#getLengthIfNextApostIsMiddleOfContraction(int, int, String)
+    */
+   static private long getLengthIfNextApostIsMiddleOfContraction( final char[] text, final int segBegin,
+                                                                  final int segEnd, final int position,
+                                                                  final int nextNonLetterDigit ) {
+      final int segLength = segEnd - segBegin;
+      final int relativePosition = position - segBegin;
+      if ( segLength < relativePosition + 3 ) {
+         return -1;
+      }
+      final int apostrophe = indexOf( text, APOSTROPHE, position, segEnd );
+      if ( nextNonLetterDigit != apostrophe ) {
+         return -1;
+      }
+      final int relativeApostrophe = apostrophe - segBegin;
+      if ( relativeApostrophe < 1 || relativeApostrophe >= segLength - 1
+           || regionMatches( text, segBegin, segEnd, "n't" ) ) {
+         return -1;
+      }
+      final char letterAfter = toLowerCase( text[ apostrophe + 1 ] );
+      if ( ContractionsPTB.lettersAfterApostropheForMiddleOfContraction.indexOf( letterAfter ) < 0 ) {
+         return -1;
+      }
+      final int restEnd = findNextNonAlphaNum( text, apostrophe + 1, segEnd );
+      final int restLength = restEnd - apostrophe;
+      final char prev = toLowerCase( text[ apostrophe - 1 ] );
+      for ( String ending : ContractionsPTB.possibleContractionEndings ) {
+         final boolean isNt = ending.equals( "n't" );
+         int lenAfterApostrophe = ending.length() - 1;
+         if ( isNt ) {
+            lenAfterApostrophe--;
+         }
+         if ( segLength < relativeApostrophe + lenAfterApostrophe ) {
+            continue;
+         }
+         if ( isNt && prev == 'n' && toLowerCase( text[ apostrophe + 1 ] ) == 't'
+              && segLength == relativeApostrophe + 2 ) {
+            return packContraction( apostrophe - 1 - position, 3 );
+         } else if ( equalsEntry( text, apostrophe, restEnd, ending ) ) {
+            return packContraction( apostrophe - position, ending.length() );
+         }
+         if ( segLength == relativeApostrophe + lenAfterApostrophe + 1 ) {
+            continue;
+         }
+         // As in ContractionsPTB, the character after the contraction is indexed using the position in the sentence
+         final int afterIndex = relativePosition + lenAfterApostrophe + 1;
+         final char after = restLength <= afterIndex ? '\0' : toLowerCase( text[ apostrophe + afterIndex ] );
+         if ( regionMatches( text, apostrophe, restEnd, ending ) && isLetter( prev ) && !isLetter( after ) ) {
+            return packContraction( apostrophe - position, ending.length() );
+         } else if ( isNt && prev == 'n' && regionMatches( text, apostrophe, restEnd, "'t" ) && !isLetter( after ) ) {
+            return packContraction( apostrophe - 1 - position, 3 );
+         }
+      }
+      return -1;
+   }
+
+   /**
+    * @param begin begin of a lower cased word, 80's or P'yongyang or James' ...
+    * @param end   end of the word, which contains no whitespace
+    * @return length of the word to keep together, or -1
+    * @see ContractionsPTB#tokenLengthCheckingForSingleQuoteWordsToKeepTogether(String)
+    */
+   static private int tokenLengthCheckingForSingleQuoteWordsToKeepTogether( final char[] text, final int begin,
+                                                                           final int end ) {
+      final int apostrophe = indexOf( text, APOSTROPHE, begin, end );
+      if ( apostrophe < 0 ) {
+         throw new UnsupportedOperationException(
+               "no quote/apostrophe char found in '" + new String( text, begin, end - begin ) + "'" );
+      }
+      final int firstBreak = apostrophe - begin;
+      final int length = end - begin;
+      if ( firstBreak == 0 ) {
+         return -1;
+      }
+      if ( firstBreak + 1 == length ) {
+         return firstBreak;
+      }
+      final int secondBreak = findNextNonAlphaNum( text, apostrophe + 1, end ) - begin;
+      if ( breakAtApostrophe( text, begin, end, firstBreak ) ) {
+         return firstBreak;
+      }
+      if ( secondBreak == length || text[ begin + secondBreak ] != HYPHEN_OR_MINUS_SIGN ) {
+         return secondBreak;
+      }
+      final int len = lenIfHyphenatedSuffix( text, begin + secondBreak, end );
+      return len > 0 ? secondBreak + len : secondBreak;
+   }
+
+   /**
+    * @see ContractionsPTB#breakAtApostrophe(String, int)
+    */
+   static private boolean breakAtApostrophe( final char[] text, final int begin, final int end,
+                                             final int apostrophe ) {
+      final int length = end - begin;
+      if ( length == apostrophe + 1 ) {
+         return true;
+      }
+      // As in ContractionsPTB, the first character is not checked for allDigits
+      boolean allDigits = apostrophe >= 1;
+      for ( int i = 1; i < apostrophe && allDigits; i++ ) {
+         allDigits = isDigit( text[ begin + i ] );
+      }
+      if ( allDigits && toLowerCase( text[ begin + apostrophe + 1 ] ) == 's' ) {
+         if ( length < apostrophe + 3 ) {
+            return false;
+         }
+         return isLetterOrDigit( text[ begin + apostrophe + 2 ] );
+      }
+      return !isTableEntry( text, begin, end, ContractionsPTB.fullWordsNotToBreakAtApostrophe );
+   }
+
+   ////////////////////////////////////////////////////////////////////////////////////////
+   //
+   //    Hyphenated terms.  Character array versions of the methods in HyphenatedPTB.
+   //
+   ////////////////////////////////////////////////////////////////////////////////////////
+
+   /**
+    * @param begin begin of a word containing a hyphen
+    * @param end   end of the word, which contains no whitespace
+    * @return length of the word to keep together
+    * @see HyphenatedPTB#tokenLengthCheckingForHyphenatedTerms(String)
+    */
+   static private int tokenLengthCheckingForHyphenatedTerms( final char[] text, final int begin, final int end ) {
+      final int hyphen = indexOf( text, HYPHEN_OR_MINUS_SIGN, begin, end );
+      if ( hyphen < 0 ) {
+         throw new UnsupportedOperationException(
+               "no hyphen found in '" + new String( text, begin, end - begin ) + "'" );
+      }
+      if ( hyphen == begin ) {
+         return -1;
+      }
+      if ( hyphen + 1 == end ) {
+         return hyphen - begin;
+      }
+      final int secondBreak = findNextNonAlphaNum( text, hyphen + 1, end );
+      int thirdBreak = -1;
+      if ( secondBreak != end ) {
+         thirdBreak = findNextNonAlphaNum( text, secondBreak + 1, end );
+      }
+      final int hyphensToConsider = secondBreak != end && text[ secondBreak ] == HYPHEN_OR_MINUS_SIGN ? 2 : 1;
+      final int keep = lenIncludingHyphensToKeep( text, begin, hyphen, hyphensToConsider, secondBreak, thirdBreak );
+      return keep - begin;
+   }
+
+   /**
+    * All indices are absolute.
+    *
+    * @return absolute end of the text to keep together
+    * @see HyphenatedPTB#tokenLengthCheckingForHyphenatedTerms(String)
+    */
+   static private int lenIncludingHyphensToKeep( final char[] text, final int begin, final int firstHyphen,
+                                                 final int hyphensToConsider, final int secondBreak,
+                                                 final int thirdBreak ) {
+      final String[] suffixes = HyphenatedPTB.hyphenatedSuffixes;
+      final String[] words = HyphenatedPTB.hyphenatedWords;
+      // suffixes with 2 hyphens (-o-torium)
+      if ( hyphensToConsider == 2 && isTableEntry( text, firstHyphen, thirdBreak, suffixes ) ) {
+         return thirdBreak;
+      }
+      // one or two suffixes with 1 hyphen
+      if ( isTableEntry( text, firstHyphen, secondBreak, suffixes ) ) {
+         if ( thirdBreak > secondBreak && isTableEntry( text, secondBreak, thirdBreak, suffixes ) ) {
+            return thirdBreak;
+         }
+         return secondBreak;
+      }
+      // hyphenated word plus a suffix, uh-oh-X
+      if ( hyphensToConsider > 1
+           && isTableEntry( text, begin, secondBreak, words )
+           && isTableEntry( text, secondBreak, thirdBreak, suffixes ) ) {
+         return thirdBreak;
+      }
+      final boolean isPrefix = isTableEntry( text, begin, firstHyphen + 1, HyphenatedPTB.hyphenatedPrefixes );
+      // prefix plus hyphenated word
+      if ( isPrefix && hyphensToConsider > 1 && isTableEntry( text, firstHyphen + 1, thirdBreak, words ) ) {
+         return thirdBreak;
+      }
+      if ( isPrefix ) {
+         if ( hyphensToConsider == 2 && isTableEntry( text, secondBreak, thirdBreak, suffixes ) ) {
+            return thirdBreak;
+         }
+         return secondBreak;
+      }
+      // hyphenated word without an affix, uh-oh
+      if ( isTableEntry( text, begin, secondBreak, words ) ) {
+         return secondBreak;
+      }
+      return firstHyphen;
+   }
+
+   /**
+    * @param position position of a hyphen
+    * @return length of an exception suffix that should not be split from the rest of the word, or -1
+    * @see HyphenatedPTB#lenIfHyphenatedSuffix(String, int)
+    */
+   static private int lenIfHyphenatedSuffix( final char[] text, final int position, final int end ) {
+      int next = findNextNonAlphaNum( text, position + 1, end );
+      if ( regionMatches( text, position, end, "-o-" ) ) {
+         next = findNextNonAlphaNum( text, position + 3, end );
+      }
+      if ( isTableEntry( text, position, next, HyphenatedPTB.hyphenatedSuffixes ) ) {
+         return next - position;
+      }
+      return -1;
+   }
+
+   ////////////////////////////////////////////////////////////////////////////////////////
+   //
+   //    Numbers, telephone numbers, postal codes, urls, email addresses and abbreviations.
+   //    Character array versions of the methods in TokenizerPTB.
+   //
+   ////////////////////////////////////////////////////////////////////////////////////////
+
+   /**
+    * such as -4,012.67 or 5 or 5.5 or 4,000,153
+    */
+   static private int lenIfIsNumberContainingComma( final char[] text, final int segEnd, final int position,
+                                                    final int nextNonNumericChar ) {
+      final int comma = indexOf( text, COMMA, position, nextNonNumericChar );
+      if ( comma < 0 ) {
+         return -1;
+      }
+      final int period = indexOf( text, PERIOD, position, nextNonNumericChar );
+      final int endOfWholeNumberPart = period < 0 ? nextNonNumericChar : period;
+      if ( comma > endOfWholeNumberPart ) {
+         return -1;
+      }
+      int len = -1;
+      int i = comma;
+      boolean notThreeDigits = false;
+      while ( !notThreeDigits ) {
+         len = i - position;
+         if ( i < endOfWholeNumberPart && text[ i ] == COMMA ) {
+            i++;
+         }
+         for ( int d = 0; d < 3; d++ ) {
+            if ( i < endOfWholeNumberPart && isDigit( text[ i ] ) ) {
+               i++;
+            } else {
+               notThreeDigits = true;
+            }
+         }
+         if ( i < endOfWholeNumberPart && isDigit( text[ i ] ) ) {
+            notThreeDigits = true;
+         }
+      }
+      if ( len <= 0 ) {
+         return -1;
+      }
+      // A decimal point can continue the number, unless it is the final period of the sentence
+      if ( period != segEnd - 1 && period == position + len ) {
+         len++;
+         while ( len < nextNonNumericChar - position && isDigit( text[ position + len ] ) ) {
+            len++;
+         }
+      }
+      return len;
+   }
+
+   static private int lenIfIsPostalCode( final char[] text, final int position, final int nextNonPostalCodeChar ) {
+      // 55901-0001
+      if ( nextNonPostalCodeChar - position != 10 ) {
+         return -1;
+      }
+      return matchesDigitPattern( text, position, "#####-####" ) ? 10 : -1;
+   }
+
+   static private int lenIfIsTelephoneNumber( final char[] text, final int position,
+                                              final int nextNonTelephoneNumberChar ) {
+      final int len = nextNonTelephoneNumberChar - position;
+      switch ( len ) {
+         case 6:
+            return matchesDigitPattern( text, position, "#-####" ) ? len : -1;
+         case 8:
+            return matchesDigitPattern( text, position, "###-####" ) ? len : -1;
+         case 12:
+            // TokenizerPTB never accepts the second 12 character format 02-2348-2192
+            return matchesDigitPattern( text, position, "###-###-####" ) ? len : -1;
+         case 14:
+            return matchesDigitPattern( text, position, "#-###-###-####" ) ? len : -1;
+         default:
+            return -1;
+      }
+   }
+
+   /**
+    * @param pattern '#' for a digit, any other character for itself
+    */
+   static private boolean matchesDigitPattern( final char[] text, final int position, final String pattern ) {
+      for ( int i = 0; i < pattern.length(); i++ ) {
+         final char p = pattern.charAt( i );
+         final char c = text[ position + i ];
+         if ( p == '#' ? !isDigit( c ) : c != p ) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   static private int lenIfIsUrl( final char[] text, final int position, final int end ) {
+      for ( String starter : TokenizerPTB.urlStarters ) {
+         if ( end - position > starter.length() && regionMatches( text, position, end, starter ) ) {
+            return end - position;
+         }
+      }
+      return -1;
+   }
+
+   static private int lenIfIsEmailAddress( final char[] text, final int position, final int end ) {
+      final int at = indexOf( text, AT, position, end );
+      final int indexOfAt = at < 0 ? -1 : at - position;
+      if ( indexOfAt < 1 || at + 1 == end || indexOfAt > MAX_EMAIL_LOCAL_LENGTH ) {
+         return -1;
+      }
+      for ( int i = position; i < at; i++ ) {
+         final char ch = toLowerCase( text[ i ] );
+         if ( !isLetterOrDigit( ch ) && TokenizerPTB.validOtherEmailAddressCharacters.indexOf( ch ) < 0 ) {
+            return -1;
+         }
+         if ( ch == PERIOD && (i == position || i == at - 1) ) {
+            return -1;
+         }
+      }
+      // As in TokenizerPTB, the previous character used for domain checks is always '@'
+      for ( int i = at + 1; i < end; i++ ) {
+         final char ch = text[ i ];
+         if ( isLetterOrDigit( ch ) ) {
+            continue;
+         }
+         if ( (ch == HYPHEN_OR_MINUS_SIGN || ch == PERIOD) && i + 1 < end && isLetterOrDigit( text[ i + 1 ] ) ) {
+            continue;
+         }
+         return -1;
+      }
+      final int len = end - position;
+      return len > MAX_EMAIL_LENGTH ? -1 : len;
+   }
+
+   /**
+    * If the last character of a sentence is a period, then it is not part of the abbreviation.
+    *
+    * @see TokenizerPTB
+    */
+   static private int lenIfIsAbbreviation( final char[] text, final int segEnd, final int position,
+                                           final int afterEnd ) {
+      if ( afterEnd - position >= 4 && regionMatches( text, position, afterEnd, "www." ) ) {
+         return -1;
+      }
+      boolean containsLetter = false;
+      for ( int i = position; i < afterEnd; i++ ) {
+         final char ch = text[ i ];
+         final char peekAhead = i + 1 < afterEnd ? text[ i + 1 ] : ' ';
+         if ( isLetter( ch ) ) {
+            containsLetter = true;
+         } else if ( ch != PERIOD ) {
+            return -1;
+         } else if ( !containsLetter || i + 1 == segEnd ) {
+            return -1;
+         } else {
+            final int soFar = i + 1 - position;
+            final int len = lenIfIsAbbreviation( text, segEnd, i + 1, afterEnd );
+            if ( len > 0 ) {
+               return soFar + len;
+            }
+            if ( isWhitespace( peekAhead ) || TokenizerPTB.possibleFinalPunctuation.indexOf( peekAhead ) > -1 ) {
+               return soFar;
+            } else if ( !isLetterOrDigit( peekAhead ) ) {
+               return soFar - 1;
+            }
+            return -1;
+         }
+      }
+      return -1;
+   }
+
+}
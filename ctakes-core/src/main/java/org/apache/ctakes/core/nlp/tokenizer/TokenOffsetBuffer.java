@@ -0,0 +1,100 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.core.nlp.tokenizer;
+
+import java.util.Arrays;
+
+/**
+ * Reusable growable buffer of token begin offset, end offset and token type triples.
+ * Clearing the buffer keeps its capacity, so a single buffer can be used for every sentence in a run.
+ * Token types are the TYPE_ constants in {@link FastTokenizerPTB}.
+ */
+final public class TokenOffsetBuffer {
+
+   static private final int DEFAULT_TOKEN_CAPACITY = 256;
+
+   private int[] _data;
+   private int _size;
+
+   public TokenOffsetBuffer() {
+      this( DEFAULT_TOKEN_CAPACITY );
+   }
+
+   /**
+    * @param tokenCapacity initial number of tokens that can be held without growing
+    */
+   public TokenOffsetBuffer( final int tokenCapacity ) {
+      _data = new int[ Math.max( 1, tokenCapacity ) * 3 ];
+   }
+
+   /**
+    * @param begin token begin offset
+    * @param end   token end offset
+    * @param type  one of the FastTokenizerPTB TYPE_ constants
+    */
+   public void add( final int begin, final int end, final int type ) {
+      final int index = _size * 3;
+      if ( index + 3 > _data.length ) {
+         _data = Arrays.copyOf( _data, _data.length * 2 );
+      }
+      _data[ index ] = begin;
+      _data[ index + 1 ] = end;
+      _data[ index + 2 ] = type;
+      _size++;
+   }
+
+   /**
+    * @return number of tokens in the buffer
+    */
+   public int size() {
+      return _size;
+   }
+
+   /**
+    * @param index token index
+    * @return begin offset of the token
+    */
+   public int getBegin( final int index ) {
+      return _data[ index * 3 ];
+   }
+
+   /**
+    * @param index token index
+    * @return end offset of the token
+    */
+   public int getEnd( final int index ) {
+      return _data[ index * 3 + 1 ];
+   }
+
+   /**
+    * @param index token index
+    * @return type of the token, one of the FastTokenizerPTB TYPE_ constants
+    */
+   public int getType( final int index ) {
+      return _data[ index * 3 + 2 ];
+   }
+
+   /**
+    * Empty the buffer without releasing its capacity
+    */
+   public void clear() {
+      _size = 0;
+   }
+
+}
@@ -831,13 +831,13 @@ public class TokenizerPTB {
 
 	}
 
-	private String possibleFinalPunctuation = "?!:";
+	static final String possibleFinalPunctuation = "?!:";
 	private boolean isPossibleFinalPunctuation(char c) {
 		if (possibleFinalPunctuation.indexOf(c) > -1) return true;
 		return false;
 	}
 
-	private String validOtherEmailAddressCharacters = "!#$%&'*+/=?^_`{|}~-"; // those that can be used without quoting or escaping them
+	static final String validOtherEmailAddressCharacters = "!#$%&'*+/=?^_`{|}~-"; // those that can be used without quoting or escaping them
 
 	/**
 	 * Assumes no white space between currentPosition and endOfInputToConsider
@@ -911,7 +911,7 @@ public class TokenizerPTB {
 	}
 
 
-	private static String [] urlStarters = { "http://", "https://", "ftp://", "mailto:" };
+	static String [] urlStarters = { "http://", "https://", "ftp://", "mailto:" };
 
 	private int lenIfIsUrl(int currentPosition, String lowerCasedText, int endOfInputToConsider) {
 
@@ -0,0 +1,83 @@
+package org.apache.ctakes.core.pipeline;
+
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe histogram of latencies with power-of-two microsecond buckets.
+ * Bucket 0 holds everything under 1 microsecond, bucket n holds [2^(n-1), 2^n) microseconds,
+ * and the last bucket holds everything longer.  Percentiles are therefore estimates within a factor of two,
+ * which is plenty for finding regressions without allocating anything while recording.
+ */
+final class LatencyHistogram {
+
+   static private final int BUCKET_COUNT = 40;
+
+   private final AtomicLongArray _buckets = new AtomicLongArray( BUCKET_COUNT );
+   private final AtomicLong _count = new AtomicLong();
+   private final AtomicLong _totalNanos = new AtomicLong();
+   private final AtomicLong _maxNanos = new AtomicLong();
+
+   /**
+    * @param nanos latency to record, in nanoseconds
+    */
+   void record( final long nanos ) {
+      final long micros = Math.max( 0, nanos / 1000 );
+      final int bucket = Math.min( BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros( micros ) );
+      _buckets.incrementAndGet( bucket );
+      _count.incrementAndGet();
+      _totalNanos.addAndGet( nanos );
+      long max = _maxNanos.get();
+      while ( nanos > max && !_maxNanos.compareAndSet( max, nanos ) ) {
+         max = _maxNanos.get();
+      }
+   }
+
+   long getCount() {
+      return _count.get();
+   }
+
+   long getTotalNanos() {
+      return _totalNanos.get();
+   }
+
+   double getMeanMillis() {
+      final long count = _count.get();
+      return count == 0 ? 0 : _totalNanos.get() / 1000000d / count;
+   }
+
+   double getMaxMillis() {
+      return _maxNanos.get() / 1000000d;
+   }
+
+   /**
+    * @param percentile between 0 and 100
+    * @return upper bound of the bucket holding the given percentile, in milliseconds
+    */
+   double getPercentileMillis( final double percentile ) {
+      final long count = _count.get();
+      if ( count == 0 ) {
+         return 0;
+      }
+      final long target = (long)Math.ceil( count * percentile / 100d );
+      long seen = 0;
+      for ( int i = 0; i < BUCKET_COUNT; i++ ) {
+         seen += _buckets.get( i );
+         if ( seen >= target ) {
+            return Math.min( (1L << i) / 1000d, getMaxMillis() );
+         }
+      }
+      return getMaxMillis();
+   }
+
+   void reset() {
+      for ( int i = 0; i < BUCKET_COUNT; i++ ) {
+         _buckets.set( i, 0 );
+      }
+      _count.set( 0 );
+      _totalNanos.set( 0 );
+      _maxNanos.set( 0 );
+   }
+
+}
@@ -22,7 +22,9 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Creates a pipeline using a small set of simple methods.
@@ -50,6 +52,11 @@ final public class PipelineBuilder {
    private AnalysisEngineDescription _analysisEngineDesc;
    private boolean _pipelineChanged;
 
+   // Wrap every ae with PipelineMetrics start and finish markers when enabled.
+   private boolean _metricsEnabled;
+   private String _metricsDir = "";
+   private int _metricsPeriod;
+
 
    public PipelineBuilder() {
       _aeNameList = new ArrayList<>();
@@ -305,6 +312,23 @@ final public class PipelineBuilder {
             ConfigParameterConstants.PARAM_OUTPUTDIR, outputDirectory );
    }
 
+   /**
+    * Records per-document and per-annotator latency, cas heap size and annotation counts in {@link PipelineMetrics}.
+    * Metrics are available through JMX, and are written as json and csv to the given directory if it is not empty.
+    * Use of this method is not order-specific.
+    *
+    * @param metricsDir    directory for metrics files, may be empty
+    * @param periodSeconds seconds between metrics file writes, 0 to write only at the end of the run
+    * @return this PipelineBuilder
+    */
+   public PipelineBuilder metrics( final String metricsDir, final int periodSeconds ) {
+      _metricsEnabled = true;
+      _metricsDir = metricsDir == null ? "" : metricsDir;
+      _metricsPeriod = periodSeconds;
+      _pipelineChanged = true;
+      return this;
+   }
+
    /**
     * Initialize a pipeline that can be used repeatedly using {@link #run} and {@link #run(String)}.
     * A pipeline can be extended between builds, but the full pipeline will be rebuilt on each call.
@@ -316,11 +340,15 @@ final public class PipelineBuilder {
    public PipelineBuilder build() throws IOException, UIMAException {
       if ( _analysisEngineDesc == null || _pipelineChanged ) {
          final AggregateBuilder builder = new AggregateBuilder();
-         for ( int i = 0; i < _descList.size(); i++ ) {
-            builder.add( _descList.get( i ), _aeViewList.get( i ) );
-         }
-         for ( int i = 0; i < _descEndList.size(); i++ ) {
-            builder.add( _descEndList.get( i ), _aeEndViewList.get( i ) );
+         if ( _metricsEnabled ) {
+            addMeasured( builder );
+         } else {
+            for ( int i = 0; i < _descList.size(); i++ ) {
+               builder.add( _descList.get( i ), _aeViewList.get( i ) );
+            }
+            for ( int i = 0; i < _descEndList.size(); i++ ) {
+               builder.add( _descEndList.get( i ), _aeEndViewList.get( i ) );
+            }
          }
 //         _descList.forEach( builder::add );
 //         _descEndList.forEach( builder::add );
@@ -381,6 +409,46 @@ final public class PipelineBuilder {
       return _analysisEngineDesc;
    }
 
+   /**
+    * Surrounds each ae with metrics markers, and the whole pipeline with document metrics markers.
+    *
+    * @param builder aggregate builder for the pipeline
+    * @throws ResourceInitializationException if a metrics marker cannot be created
+    */
+   private void addMeasured( final AggregateBuilder builder ) throws ResourceInitializationException {
+      final List<String> names = getMetricsNames();
+      builder.add( PipelineMetrics.MetricsEngine.createDocumentStartDescription( _metricsDir, _metricsPeriod ) );
+      for ( int i = 0; i < _descList.size(); i++ ) {
+         addMeasured( builder, names.get( i ), _descList.get( i ), _aeViewList.get( i ) );
+      }
+      for ( int i = 0; i < _descEndList.size(); i++ ) {
+         addMeasured( builder, names.get( _descList.size() + i ), _descEndList.get( i ), _aeEndViewList.get( i ) );
+      }
+      builder.add( PipelineMetrics.MetricsEngine.createDescription( PipelineMetrics.DOCUMENT_METRICS_NAME, false ) );
+   }
+
+   static private void addMeasured( final AggregateBuilder builder, final String name,
+                                    final AnalysisEngineDescription description, final String[] views )
+         throws ResourceInitializationException {
+      builder.add( PipelineMetrics.MetricsEngine.createDescription( name, true ) );
+      builder.add( description, views );
+      builder.add( PipelineMetrics.MetricsEngine.createDescription( name, false ) );
+   }
+
+   /**
+    * @return simple class names of the annotation engines in the pipeline, numbered if they appear more than once
+    */
+   private List<String> getMetricsNames() {
+      final List<String> names = new ArrayList<>();
+      final Map<String, Integer> nameCounts = new HashMap<>();
+      for ( String aeName : getAeNames() ) {
+         final String simpleName = aeName == null ? "Aggregate" : aeName.substring( aeName.lastIndexOf( '.' ) + 1 );
+         final int count = nameCounts.merge( simpleName, 1, Integer::sum );
+         names.add( count == 1 ? simpleName : simpleName + "#" + count );
+      }
+      return names;
+   }
+
    static private String[] toStringArray( final Collection<String> things ) {
       return new ArrayList<>( things ).toArray( new String[ things.size() ] );
    }
@@ -0,0 +1,568 @@
+package org.apache.ctakes.core.pipeline;
+
+
+import org.apache.log4j.Logger;
+import org.apache.uima.UimaContext;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.impl.CASImpl;
+import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stores per-document and per-annotator latency, cas heap size and annotation counts for a run.
+ * <p>
+ * Metrics are recorded by pairs of {@link MetricsEngine} placed around each annotator by
+ * {@link PipelineBuilder#metrics(String, int)} or the piper command "metrics".
+ * They are available through JMX as {@link #OBJECT_NAME}, through {@link #toJson()} and {@link #toCsv()},
+ * and can be periodically written to files in an output directory.
+ * </p>
+ * Recording is thread-safe, so a single set of metrics covers every copy of a pipeline running in a process.
+ */
+public enum PipelineMetrics implements PipelineMetricsMBean {
+   INSTANCE;
+
+   static public PipelineMetrics getInstance() {
+      return INSTANCE;
+   }
+
+   static private final Logger LOGGER = Logger.getLogger( "PipelineMetrics" );
+
+   static public final String OBJECT_NAME = "org.apache.ctakes:type=PipelineMetrics";
+   static public final String DOCUMENT_METRICS_NAME = "Document";
+   static public final String JSON_FILE_NAME = "pipeline_metrics.json";
+   static public final String CSV_FILE_NAME = "pipeline_metrics.csv";
+
+   // Heap cells are 4-byte ints in uima 2
+   static private final int BYTES_PER_HEAP_CELL = 4;
+
+   private final Map<String, AnnotatorMetrics> _annotatorMetrics = new ConcurrentHashMap<>();
+   private final List<String> _annotatorOrder = new CopyOnWriteArrayList<>();
+   private final LatencyHistogram _documentLatency = new LatencyHistogram();
+   private final AtomicLong _casHeapTotal = new AtomicLong();
+   private final AtomicLong _casHeapMax = new AtomicLong();
+   private final AtomicLong _firstStartNanos = new AtomicLong();
+   private final AtomicLong _lastFinishNanos = new AtomicLong();
+   private final ThreadLocal<Map<String, long[]>> _threadStarts = ThreadLocal.withInitial( HashMap::new );
+
+   private boolean _mbeanRegistered;
+   private ScheduledExecutorService _dumpExecutor;
+   private String _dumpDirectory;
+
+   /**
+    * @param name name of an annotator or {@link #DOCUMENT_METRICS_NAME}
+    * @param jCas cas about to be processed
+    */
+   public void start( final String name, final JCas jCas ) {
+      final long now = System.nanoTime();
+      _firstStartNanos.compareAndSet( 0, now );
+      final long[] start = _threadStarts.get().computeIfAbsent( name, n -> new long[ 2 ] );
+      start[ 0 ] = now;
+      start[ 1 ] = DOCUMENT_METRICS_NAME.equals( name ) ? 0 : countAnnotations( jCas );
+   }
+
+   /**
+    * @param name name of an annotator or {@link #DOCUMENT_METRICS_NAME}
+    * @param jCas cas that has just been processed
+    */
+   public void finish( final String name, final JCas jCas ) {
+      final long now = System.nanoTime();
+      final long[] start = _threadStarts.get().get( name );
+      if ( start == null ) {
+         LOGGER.warn( "No start recorded for " + name );
+         return;
+      }
+      _lastFinishNanos.set( now );
+      if ( DOCUMENT_METRICS_NAME.equals( name ) ) {
+         _documentLatency.record( now - start[ 0 ] );
+         final long heapBytes = getCasHeapBytes( jCas );
+         _casHeapTotal.addAndGet( heapBytes );
+         long max = _casHeapMax.get();
+         while ( heapBytes > max && !_casHeapMax.compareAndSet( max, heapBytes ) ) {
+            max = _casHeapMax.get();
+         }
+         return;
+      }
+      final AnnotatorMetrics metrics = getAnnotatorMetrics( name );
+      metrics._latency.record( now - start[ 0 ] );
+      metrics._annotations.addAndGet( countAnnotations( jCas ) - start[ 1 ] );
+   }
+
+   /**
+    * Register with the platform MBean server.  Calling more than once has no effect.
+    */
+   synchronized public void registerMBean() {
+      if ( _mbeanRegistered ) {
+         return;
+      }
+      try {
+         final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+         final ObjectName objectName = new ObjectName( OBJECT_NAME );
+         if ( !server.isRegistered( objectName ) ) {
+            server.registerMBean( this, objectName );
+         }
+         _mbeanRegistered = true;
+      } catch ( JMException jmE ) {
+         LOGGER.warn( "Could not register Pipeline Metrics MBean " + jmE.getMessage() );
+      }
+   }
+
+   /**
+    * Periodically write {@link #JSON_FILE_NAME} and {@link #CSV_FILE_NAME}.  Calling more than once has no effect.
+    *
+    * @param directory     directory for the metrics files
+    * @param periodSeconds seconds between writes, or 0 to only write when the run is complete
+    */
+   synchronized public void startDump( final String directory, final int periodSeconds ) {
+      if ( directory == null || directory.isEmpty() || _dumpDirectory != null ) {
+         return;
+      }
+      _dumpDirectory = directory;
+      new File( directory ).mkdirs();
+      if ( periodSeconds <= 0 ) {
+         return;
+      }
+      _dumpExecutor = Executors.newSingleThreadScheduledExecutor( r -> {
+         final Thread thread = new Thread( r, "PipelineMetricsDump" );
+         thread.setDaemon( true );
+         return thread;
+      } );
+      _dumpExecutor.scheduleAtFixedRate( this::writeDump, periodSeconds, periodSeconds, TimeUnit.SECONDS );
+   }
+
+   /**
+    * Stop any periodic dump, write the final metrics files and log a summary.
+    */
+   synchronized public void complete() {
+      if ( _dumpExecutor != null ) {
+         _dumpExecutor.shutdown();
+         _dumpExecutor = null;
+      }
+      writeDump();
+      _dumpDirectory = null;
+      LOGGER.info( "Pipeline Metrics:\n" + toString() );
+   }
+
+   /**
+    * Write {@link #JSON_FILE_NAME} and {@link #CSV_FILE_NAME} to the dump directory, if there is one.
+    */
+   synchronized public void writeDump() {
+      if ( _dumpDirectory == null ) {
+         return;
+      }
+      writeFile( new File( _dumpDirectory, JSON_FILE_NAME ), toJson() );
+      writeFile( new File( _dumpDirectory, CSV_FILE_NAME ), toCsv() );
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public long getDocumentCount() {
+      return _documentLatency.getCount();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public double getElapsedSeconds() {
+      final long first = _firstStartNanos.get();
+      final long last = _lastFinishNanos.get();
+      return first == 0 || last < first ? 0 : (last - first) / 1000000000d;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public double getDocumentsPerSecond() {
+      final double seconds = getElapsedSeconds();
+      return seconds == 0 ? 0 : getDocumentCount() / seconds;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public double getMeanDocumentMillis() {
+      return _documentLatency.getMeanMillis();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public double getP95DocumentMillis() {
+      return _documentLatency.getPercentileMillis( 95 );
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public long getMeanCasHeapBytes() {
+      final long count = getDocumentCount();
+      return count == 0 ? 0 : _casHeapTotal.get() / count;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public long getMaxCasHeapBytes() {
+      return _casHeapMax.get();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public String[] getAnnotatorNames() {
+      return _annotatorOrder.toArray( new String[ _annotatorOrder.size() ] );
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public String[] getAnnotatorSummaries() {
+      final long pipelineNanos = getTotalAnnotatorNanos();
+      final String[] summaries = new String[ _annotatorOrder.size() ];
+      for ( int i = 0; i < summaries.length; i++ ) {
+         final AnnotatorMetrics metrics = _annotatorMetrics.get( _annotatorOrder.get( i ) );
+         summaries[ i ] = String.format( "%s mean %.3f ms, p95 %.3f ms, max %.3f ms, %.1f%% of time, %.1f annotations",
+               metrics._name,
+               metrics._latency.getMeanMillis(),
+               metrics._latency.getPercentileMillis( 95 ),
+               metrics._latency.getMaxMillis(),
+               getPercent( metrics._latency.getTotalNanos(), pipelineNanos ),
+               metrics.getAnnotationsPerDocument() );
+      }
+      return summaries;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public String toJson() {
+      final StringBuilder sb = new StringBuilder();
+      sb.append( "{\n" );
+      sb.append( "  \"documents\": " ).append( getDocumentCount() ).append( ",\n" );
+      sb.append( "  \"elapsedSeconds\": " ).append( format( getElapsedSeconds() ) ).append( ",\n" );
+      sb.append( "  \"documentsPerSecond\": " ).append( format( getDocumentsPerSecond() ) ).append( ",\n" );
+      sb.append( "  \"meanCasHeapBytes\": " ).append( getMeanCasHeapBytes() ).append( ",\n" );
+      sb.append( "  \"maxCasHeapBytes\": " ).append( getMaxCasHeapBytes() ).append( ",\n" );
+      sb.append( "  \"documentLatency\": " );
+      appendJsonLatency( sb, _documentLatency );
+      sb.append( ",\n  \"annotators\": [" );
+      final long pipelineNanos = getTotalAnnotatorNanos();
+      boolean first = true;
+      for ( String name : _annotatorOrder ) {
+         final AnnotatorMetrics metrics = _annotatorMetrics.get( name );
+         sb.append( first ? "\n" : ",\n" );
+         first = false;
+         sb.append( "    { \"name\": \"" ).append( escapeJson( name ) ).append( "\"" );
+         sb.append( ", \"percentOfTime\": " )
+           .append( format( getPercent( metrics._latency.getTotalNanos(), pipelineNanos ) ) );
+         sb.append( ", \"annotationsPerDocument\": " ).append( format( metrics.getAnnotationsPerDocument() ) );
+         sb.append( ", \"latency\": " );
+         appendJsonLatency( sb, metrics._latency );
+         sb.append( " }" );
+      }
+      sb.append( "\n  ]\n}\n" );
+      return sb.toString();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public String toCsv() {
+      final StringBuilder sb = new StringBuilder();
+      sb.append( "Name,Count,MeanMs,P50Ms,P95Ms,P99Ms,MaxMs,TotalSeconds,PercentOfTime,AnnotationsPerDocument\n" );
+      appendCsvRow( sb, DOCUMENT_METRICS_NAME, _documentLatency, 100, 0 );
+      final long pipelineNanos = getTotalAnnotatorNanos();
+      for ( String name : _annotatorOrder ) {
+         final AnnotatorMetrics metrics = _annotatorMetrics.get( name );
+         appendCsvRow( sb, name, metrics._latency,
+               getPercent( metrics._latency.getTotalNanos(), pipelineNanos ),
+               metrics.getAnnotationsPerDocument() );
+      }
+      return sb.toString();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void reset() {
+      _annotatorMetrics.values().forEach( AnnotatorMetrics::reset );
+      _documentLatency.reset();
+      _casHeapTotal.set( 0 );
+      _casHeapMax.set( 0 );
+      _firstStartNanos.set( 0 );
+      _lastFinishNanos.set( 0 );
+   }
+
+   /**
+    * @return table of document throughput and annotator statistics
+    */
+   @Override
+   public String toString() {
+      final StringBuilder sb = new StringBuilder();
+      sb.append( String.format( "%d documents in %.1f seconds, %.2f documents per second, mean %.1f ms, p95 %.1f ms,"
+                                + " mean cas heap %d KB, max cas heap %d KB\n",
+            getDocumentCount(), getElapsedSeconds(), getDocumentsPerSecond(),
+            getMeanDocumentMillis(), getP95DocumentMillis(),
+            getMeanCasHeapBytes() / 1024, getMaxCasHeapBytes() / 1024 ) );
+      for ( String summary : getAnnotatorSummaries() ) {
+         sb.append( "  " ).append( summary ).append( "\n" );
+      }
+      return sb.toString();
+   }
+
+   private AnnotatorMetrics getAnnotatorMetrics( final String name ) {
+      final AnnotatorMetrics metrics = _annotatorMetrics.get( name );
+      if ( metrics != null ) {
+         return metrics;
+      }
+      synchronized ( _annotatorOrder ) {
+         return _annotatorMetrics.computeIfAbsent( name, n -> {
+            _annotatorOrder.add( n );
+            return new AnnotatorMetrics( n );
+         } );
+      }
+   }
+
+   private long getTotalAnnotatorNanos() {
+      long total = 0;
+      for ( AnnotatorMetrics metrics : _annotatorMetrics.values() ) {
+         total += metrics._latency.getTotalNanos();
+      }
+      return total;
+   }
+
+   private void appendCsvRow( final StringBuilder sb, final String name, final LatencyHistogram latency,
+                              final double percent, final double annotations ) {
+      sb.append( name.replace( ',', ';' ) ).append( ',' )
+        .append( latency.getCount() ).append( ',' )
+        .append( format( latency.getMeanMillis() ) ).append( ',' )
+        .append( format( latency.getPercentileMillis( 50 ) ) ).append( ',' )
+        .append( format( latency.getPercentileMillis( 95 ) ) ).append( ',' )
+        .append( format( latency.getPercentileMillis( 99 ) ) ).append( ',' )
+        .append( format( latency.getMaxMillis() ) ).append( ',' )
+        .append( format( latency.getTotalNanos() / 1000000000d ) ).append( ',' )
+        .append( format( percent ) ).append( ',' )
+        .append( format( annotations ) ).append( '\n' );
+   }
+
+   static private void appendJsonLatency( final StringBuilder sb, final LatencyHistogram latency ) {
+      sb.append( "{ \"count\": " ).append( latency.getCount() )
+        .append( ", \"meanMs\": " ).append( format( latency.getMeanMillis() ) )
+        .append( ", \"p50Ms\": " ).append( format( latency.getPercentileMillis( 50 ) ) )
+        .append( ", \"p95Ms\": " ).append( format( latency.getPercentileMillis( 95 ) ) )
+        .append( ", \"p99Ms\": " ).append( format( latency.getPercentileMillis( 99 ) ) )
+        .append( ", \"maxMs\": " ).append( format( latency.getMaxMillis() ) )
+        .append( " }" );
+   }
+
+   static private String format( final double value ) {
+      return String.format( Locale.ROOT, "%.3f", value );
+   }
+
+   static private String escapeJson( final String text ) {
+      return text.replace( "\\", "\\\\" ).replace( "\"", "\\\"" );
+   }
+
+   static private double getPercent( final long part, final long total ) {
+      return total == 0 ? 0 : 100d * part / total;
+   }
+
+   static private void writeFile( final File file, final String text ) {
+      try ( Writer writer = new FileWriter( file ) ) {
+         writer.write( text );
+      } catch ( IOException ioE ) {
+         LOGGER.error( "Could not write " + file.getPath() + " " + ioE.getMessage() );
+      }
+   }
+
+   /**
+    * @param jCas ye olde ...
+    * @return number of annotations in all views of the cas
+    */
+   static private long countAnnotations( final JCas jCas ) {
+      long count = 0;
+      final Iterator<CAS> views = jCas.getCas().getViewIterator();
+      while ( views.hasNext() ) {
+         count += views.next().getAnnotationIndex().size();
+      }
+      return count;
+   }
+
+   /**
+    * @param jCas ye olde ...
+    * @return estimated bytes used by the cas feature structure heap, shared by all views
+    */
+   static private long getCasHeapBytes( final JCas jCas ) {
+      final CASImpl casImpl = jCas.getCasImpl();
+      // the next free cell of the heap is the number of cells in use
+      return (long)casImpl.getHeap().getNextId() * BYTES_PER_HEAP_CELL;
+   }
+
+
+   /**
+    * Latency and annotation counts for a single annotator
+    */
+   static private final class AnnotatorMetrics {
+      private final String _name;
+      private final LatencyHistogram _latency = new LatencyHistogram();
+      private final AtomicLong _annotations = new AtomicLong();
+
+      private AnnotatorMetrics( final String name ) {
+         _name = name;
+      }
+
+      private double getAnnotationsPerDocument() {
+         final long count = _latency.getCount();
+         return count == 0 ? 0 : (double)_annotations.get() / count;
+      }
+
+      private void reset() {
+         _latency.reset();
+         _annotations.set( 0 );
+      }
+   }
+
+
+   /**
+    * Analysis Engine that marks the start or finish of an annotator, or of the whole pipeline, in the PipelineMetrics
+    */
+   @PipeBitInfo(
+         name = "Pipeline Metrics",
+         description = "Records annotator and document latency, cas heap size and annotation counts.",
+         role = PipeBitInfo.Role.SPECIAL
+   )
+   static public final class MetricsEngine extends JCasAnnotator_ImplBase {
+
+      static public final String PARAM_METRICS_NAME = "MetricsName";
+      @ConfigurationParameter(
+            name = PARAM_METRICS_NAME,
+            description = "Name of the annotator being measured, or Document for the whole pipeline."
+      )
+      private String _metricsName;
+
+      static public final String PARAM_IS_START = "MetricsIsStart";
+      @ConfigurationParameter(
+            name = PARAM_IS_START,
+            description = "Indicates whether this marks the start of the measured work."
+      )
+      private Boolean _isStart;
+
+      static public final String PARAM_METRICS_DIR = "MetricsDirectory";
+      @ConfigurationParameter(
+            name = PARAM_METRICS_DIR,
+            mandatory = false,
+            description = "Directory for periodic json and csv metrics files.  Used by the Document start."
+      )
+      private String _metricsDir;
+
+      static public final String PARAM_METRICS_PERIOD = "MetricsPeriod";
+      @ConfigurationParameter(
+            name = PARAM_METRICS_PERIOD,
+            mandatory = false,
+            description = "Seconds between metrics file writes, 0 to write only at the end of the run.",
+            defaultValue = "60"
+      )
+      private int _metricsPeriod;
+
+      private boolean _isDocument;
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public void initialize( final UimaContext context ) throws ResourceInitializationException {
+         super.initialize( context );
+         _isDocument = DOCUMENT_METRICS_NAME.equals( _metricsName );
+         if ( _isDocument && _isStart ) {
+            getInstance().registerMBean();
+            getInstance().startDump( _metricsDir, _metricsPeriod );
+         }
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public void process( final JCas jCas ) throws AnalysisEngineProcessException {
+         if ( _isStart ) {
+            getInstance().start( _metricsName, jCas );
+         } else {
+            getInstance().finish( _metricsName, jCas );
+         }
+      }
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override
+      public void collectionProcessComplete() throws AnalysisEngineProcessException {
+         super.collectionProcessComplete();
+         if ( _isDocument && !_isStart ) {
+            getInstance().complete();
+         }
+      }
+
+      /**
+       * @param metricsName name of the annotator being measured, or {@link #DOCUMENT_METRICS_NAME}
+       * @param isStart     true to mark the start of the work, false to mark the finish
+       * @return Simple metrics marker Engine
+       * @throws ResourceInitializationException if UimaFit has a problem
+       */
+      static public AnalysisEngineDescription createDescription( final String metricsName, final boolean isStart )
+            throws ResourceInitializationException {
+         return AnalysisEngineFactory.createEngineDescription( MetricsEngine.class,
+               PARAM_METRICS_NAME, metricsName,
+               PARAM_IS_START, isStart );
+      }
+
+      /**
+       * @param metricsDir    directory for metrics files, may be empty
+       * @param periodSeconds seconds between metrics file writes
+       * @return metrics marker Engine for the start of the pipeline
+       * @throws ResourceInitializationException if UimaFit has a problem
+       */
+      static public AnalysisEngineDescription createDocumentStartDescription( final String metricsDir,
+                                                                             final int periodSeconds )
+            throws ResourceInitializationException {
+         return AnalysisEngineFactory.createEngineDescription( MetricsEngine.class,
+               PARAM_METRICS_NAME, DOCUMENT_METRICS_NAME,
+               PARAM_IS_START, true,
+               PARAM_METRICS_DIR, metricsDir,
+               PARAM_METRICS_PERIOD, periodSeconds );
+      }
+   }
+
+}
@@ -0,0 +1,70 @@
+package org.apache.ctakes.core.pipeline;
+
+
+/**
+ * JMX view of {@link PipelineMetrics}.
+ * Registered as {@link PipelineMetrics#OBJECT_NAME} when metrics are enabled for a pipeline.
+ */
+public interface PipelineMetricsMBean {
+
+   /**
+    * @return number of documents that have passed through the full pipeline
+    */
+   long getDocumentCount();
+
+   /**
+    * @return seconds since metrics were first recorded or last reset
+    */
+   double getElapsedSeconds();
+
+   /**
+    * @return documents completed per second of elapsed time
+    */
+   double getDocumentsPerSecond();
+
+   /**
+    * @return mean full pipeline latency per document in milliseconds
+    */
+   double getMeanDocumentMillis();
+
+   /**
+    * @return estimated 95th percentile of full pipeline latency per document in milliseconds
+    */
+   double getP95DocumentMillis();
+
+   /**
+    * @return mean estimated size of the cas heap at the end of the pipeline, in bytes
+    */
+   long getMeanCasHeapBytes();
+
+   /**
+    * @return largest estimated size of the cas heap at the end of the pipeline, in bytes
+    */
+   long getMaxCasHeapBytes();
+
+   /**
+    * @return names of the instrumented annotators in pipeline order
+    */
+   String[] getAnnotatorNames();
+
+   /**
+    * @return one line of latency and annotation statistics for each annotator
+    */
+   String[] getAnnotatorSummaries();
+
+   /**
+    * @return all metrics as json
+    */
+   String toJson();
+
+   /**
+    * @return all metrics as csv, one row per annotator
+    */
+   String toCsv();
+
+   /**
+    * Clear all recorded metrics
+    */
+   void reset();
+
+}
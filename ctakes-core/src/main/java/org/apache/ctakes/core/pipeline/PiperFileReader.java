@@ -38,6 +38,9 @@ import java.util.regex.Pattern;
  * writeXmis <i>output_directory</i>
  *    <i>output_directory</i> can be empty if
  *    {@link XmiWriterCasConsumerCtakes#PARAM_OUTPUTDIR} ("OutputDirectory") was specified
+ * metrics <i>metrics_directory period_seconds</i>
+ *    records annotator and document latency, cas heap size and annotation counts, available through JMX.
+ *    <i>metrics_directory</i> and <i>period_seconds</i> are optional, json and csv files are only written with a directory.
  * // and # and ! may be used to mark line comments
  * </p>
  * class names must be fully-specified with package unless they are in standard ctakes cr ae or cc packages,
@@ -273,12 +276,37 @@ final public class PiperFileReader {
                _builder.writeXMIs( info );
             }
             return true;
+         case "metrics":
+            return addMetrics( info );
          default:
             LOGGER.error( "Unknown Piper Command: " + command );
             return false;
       }
    }
 
+   /**
+    * @param info optional metrics directory followed by optional seconds between metrics file writes
+    * @return true if the metrics parameters are valid
+    */
+   private boolean addMetrics( final String info ) {
+      if ( info.isEmpty() ) {
+         _builder.metrics( "", 0 );
+         return true;
+      }
+      final String[] dir_period = SPACE_PATTERN.split( info );
+      int period = 60;
+      if ( dir_period.length > 1 ) {
+         try {
+            period = Integer.parseInt( dir_period[ 1 ] );
+         } catch ( NumberFormatException nfE ) {
+            LOGGER.error( "Invalid metrics period " + dir_period[ 1 ] );
+            return false;
+         }
+      }
+      _builder.metrics( dir_period[ 0 ], period );
+      return true;
+   }
+
    /**
     * @param className fully-specified or simple name of an ae or cc component class
     * @return discovered class for ae or cc
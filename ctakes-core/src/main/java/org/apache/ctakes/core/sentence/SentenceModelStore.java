@@ -0,0 +1,79 @@
+package org.apache.ctakes.core.sentence;
+
+
+import opennlp.tools.ml.model.MaxentModel;
+import opennlp.tools.sentdetect.SentenceModel;
+import org.apache.ctakes.core.resource.FileLocator;
+import org.apache.ctakes.utils.struct.CounterMap;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Scanner;
+
+/**
+ * Cache of sentence detection models shared by every sentence detector in the jvm.
+ * Each model is read once per path and is never modified afterwards,
+ * so it can be used concurrently by annotators that keep their own decoder state.
+ */
+public enum SentenceModelStore {
+   INSTANCE;
+
+   public static SentenceModelStore getInstance() {
+      return INSTANCE;
+   }
+
+
+   static private final Logger LOGGER = Logger.getLogger( "SentenceModelStore" );
+
+   private final Map<String, MaxentModel> _maxentModels;
+   private final Map<String, CounterMap<String>> _tokenCounts;
+
+   SentenceModelStore() {
+      _maxentModels = new HashMap<>();
+      _tokenCounts = new HashMap<>();
+   }
+
+   /**
+    * @param modelPath path to an OpenNLP sentence model
+    * @return the maximum entropy model of the sentence model, read only once per path
+    * @throws IOException if the model cannot be read
+    */
+   synchronized public MaxentModel getMaxentModel( final String modelPath ) throws IOException {
+      MaxentModel model = _maxentModels.get( modelPath );
+      if ( model == null ) {
+         LOGGER.info( "Loading Sentence detector model file: " + modelPath );
+         try ( InputStream is = FileLocator.getAsStream( modelPath ) ) {
+            model = new SentenceModel( is ).getMaxentModel();
+         }
+         _maxentModels.put( modelPath, model );
+      }
+      return model;
+   }
+
+   /**
+    * @param countsPath path to a file of "token : count" lines
+    * @return token counts, read only once per path.  The map must not be modified.
+    * @throws IOException if the file cannot be read
+    */
+   synchronized public CounterMap<String> getTokenCounts( final String countsPath ) throws IOException {
+      CounterMap<String> tokenCounts = _tokenCounts.get( countsPath );
+      if ( tokenCounts == null ) {
+         LOGGER.info( "Loading Sentence detector token counts: " + countsPath );
+         tokenCounts = new CounterMap<>();
+         try ( Scanner scanner = new Scanner( FileLocator.getAsStream( countsPath ) ) ) {
+            while ( scanner.hasNextLine() ) {
+               final String[] pair = scanner.nextLine().trim().split( " : " );
+               if ( pair.length == 2 ) {
+                  tokenCounts.put( pair[ 0 ], Integer.parseInt( pair[ 1 ] ) );
+               }
+            }
+         }
+         _tokenCounts.put( countsPath, tokenCounts );
+      }
+      return tokenCounts;
+   }
+
+}
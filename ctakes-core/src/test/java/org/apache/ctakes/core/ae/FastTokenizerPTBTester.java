@@ -0,0 +1,73 @@
+package org.apache.ctakes.core.ae;
+
+import org.apache.ctakes.typesystem.type.syntax.BaseToken;
+import org.apache.ctakes.typesystem.type.syntax.NumToken;
+import org.apache.ctakes.typesystem.type.syntax.WordToken;
+import org.apache.ctakes.typesystem.type.textspan.Segment;
+import org.apache.ctakes.typesystem.type.textspan.Sentence;
+import org.apache.uima.UIMAException;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FastTokenizerPTBTester {
+
+   static private final String[] SENTENCES = {
+         "The patient's BP was 120/80 mm Hg and he can't recall the e-mail sent to j.doe@example.org.",
+         "Call (555) 123-4567 or visit http://www.example.com/notes?id=3 before 10:30 a.m. today...",
+         "Aspirin 81mg, 1,000.5 units; re-evaluate the non-small cell mass -- 'O'Brien' said it's 3.5x4 cm!",
+         "Y'all won't gonna take 2-3 tabs of ASA q.i.d. p.r.n. (i.e. as needed)."
+   };
+
+   @Test
+   public void testSameTokensAsDefault() throws UIMAException {
+      final List<String> expected = getTokens( false );
+      final List<String> actual = getTokens( true );
+      assertTrue( expected.size() > 50 );
+      assertEquals( expected, actual );
+   }
+
+   static private List<String> getTokens( final boolean useFastTokenizer ) throws UIMAException {
+      final JCas jCas = JCasFactory.createJCas();
+      final StringBuilder sb = new StringBuilder();
+      final List<int[]> sentenceSpans = new ArrayList<>();
+      for ( String sentence : SENTENCES ) {
+         final int begin = sb.length();
+         sb.append( sentence );
+         sentenceSpans.add( new int[]{ begin, sb.length() } );
+         sb.append( "\r\n\n" );
+      }
+      jCas.setDocumentText( sb.toString() );
+      final Segment segment = new Segment( jCas, 0, sb.length() );
+      segment.setId( "SIMPLE_SEGMENT" );
+      segment.addToIndexes();
+      for ( int[] span : sentenceSpans ) {
+         new Sentence( jCas, span[ 0 ], span[ 1 ] ).addToIndexes();
+      }
+      final AnalysisEngine engine = AnalysisEngineFactory.createEngine(
+            TokenizerAnnotatorPTB.createAnnotatorDescription( useFastTokenizer ) );
+      engine.process( jCas );
+      final List<String> tokens = new ArrayList<>();
+      for ( BaseToken token : JCasUtil.select( jCas, BaseToken.class ) ) {
+         String features = "";
+         if ( token instanceof NumToken ) {
+            features = " " + ((NumToken)token).getNumType();
+         } else if ( token instanceof WordToken ) {
+            features = " " + ((WordToken)token).getCapitalization() + " " + ((WordToken)token).getNumPosition();
+         }
+         tokens.add( token.getTokenNumber() + " " + token.getClass().getSimpleName()
+                     + " " + token.getBegin() + " " + token.getEnd() + features );
+      }
+      return tokens;
+   }
+
+}
@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.core.ae;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import opennlp.tools.ml.model.MaxentModel;
+import opennlp.tools.sentdetect.DefaultSDContextGenerator;
+import opennlp.tools.sentdetect.SentenceModel;
+import org.apache.ctakes.core.resource.FileLocator;
+import org.apache.ctakes.core.sentence.EndOfSentenceScannerImpl;
+import org.apache.ctakes.core.sentence.SentenceDetectorCtakes;
+import org.apache.ctakes.core.sentence.SentenceModelStore;
+import org.apache.ctakes.typesystem.type.textspan.Sentence;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.fit.factory.AggregateBuilder;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.cleartk.ml.jar.GenericJarClassifierFactory;
+import org.junit.Test;
+
+/**
+ * Checks that sentence detectors sharing one model find the same sentences as a detector that loads its own model,
+ * as every detector did before the models were shared, including when the shared detectors run on several threads.
+ */
+public class SharedSentenceModelTest {
+
+  private static final String SD_MODEL_PATH = "org/apache/ctakes/core/sentdetect/sd-med-model.zip";
+  private static final String BIO_MODEL_PATH = "/org/apache/ctakes/core/sentdetect/model.jar";
+  private static final int THREAD_COUNT = 4;
+
+  private static final String[] SENTENCES = {
+      "Patient is doing fine but probably taking too many fictional drugs.",
+      "Cholesterol is acceptable.",
+      "Heartrate is elevated at 110 b.p.m. today.",
+      "Dr. Smith saw the pt. on 3/14 and ordered labs",
+      "No acute distress; lungs clear to auscultation.",
+      "Hibernol, jamitol, triopenin, sproingo",
+      "Patient should quit smoking and taunting sharks.",
+      "Follow up in 2 wks. with Cardiology?",
+      "BP 120/80, HR 72, T 98.6 F."
+  };
+
+  /**
+   * @return documents of random sentences joined by spaces, newlines and blank lines
+   */
+  private static List<String> createDocuments(long seed, int count) {
+    Random random = new Random(seed);
+    List<String> documents = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      StringBuilder sb = new StringBuilder();
+      for (int j = 3 + random.nextInt(8); j > 0; j--) {
+        sb.append(SENTENCES[random.nextInt(SENTENCES.length)]);
+        int separator = random.nextInt(4);
+        sb.append(separator == 0 ? "\n" : separator == 1 ? "\n\n" : " ");
+      }
+      documents.add(sb.toString());
+    }
+    return documents;
+  }
+
+  private static SentenceDetectorCtakes createDetector(MaxentModel model) {
+    EndOfSentenceScannerImpl eoss = new EndOfSentenceScannerImpl();
+    DefaultSDContextGenerator cg = new DefaultSDContextGenerator(eoss.getEndOfSentenceCharacters());
+    return new SentenceDetectorCtakes(model, cg, eoss);
+  }
+
+  /**
+   * @return sentence spans of each document, in document order
+   */
+  private static List<String> detect(SentenceDetectorCtakes detector, List<String> documents) {
+    List<String> spans = new ArrayList<>();
+    for (String document : documents) {
+      spans.add(Arrays.toString(detector.sentPosDetect(document)));
+    }
+    return spans;
+  }
+
+  /**
+   * @return sentence spans found by the engine in each document, in document order
+   */
+  private static List<String> annotate(AnalysisEngine engine, List<String> documents) throws Exception {
+    List<String> spans = new ArrayList<>();
+    JCas jcas = JCasFactory.createJCas();
+    for (String document : documents) {
+      jcas.reset();
+      jcas.setDocumentText(document);
+      engine.process(jcas);
+      StringBuilder sb = new StringBuilder();
+      for (Sentence sentence : JCasUtil.select(jcas, Sentence.class)) {
+        sb.append(sentence.getBegin()).append('-').append(sentence.getEnd()).append(' ');
+      }
+      spans.add(sb.toString());
+    }
+    return spans;
+  }
+
+  /**
+   * Runs the documents on several threads, each thread with its own engine, as pipeline replicas do.
+   */
+  private static List<String> annotateInParallel(AnalysisEngineDescription description, List<String> documents)
+      throws Exception {
+    List<AnalysisEngine> engines = new ArrayList<>();
+    for (int i = 0; i < THREAD_COUNT; i++) {
+      engines.add(AnalysisEngineFactory.createEngine(description));
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+    try {
+      List<Future<List<String>>> futures = new ArrayList<>();
+      for (int i = 0; i < THREAD_COUNT; i++) {
+        AnalysisEngine engine = engines.get(i);
+        List<String> part = new ArrayList<>();
+        for (int j = i; j < documents.size(); j += THREAD_COUNT) {
+          part.add(documents.get(j));
+        }
+        futures.add(executor.submit(() -> annotate(engine, part)));
+      }
+      List<List<String>> parts = new ArrayList<>();
+      for (Future<List<String>> future : futures) {
+        parts.add(future.get());
+      }
+      List<String> spans = new ArrayList<>();
+      for (int j = 0; j < documents.size(); j++) {
+        spans.add(parts.get(j % THREAD_COUNT).get(j / THREAD_COUNT));
+      }
+      return spans;
+    } finally {
+      executor.shutdown();
+      engines.forEach(AnalysisEngine::destroy);
+    }
+  }
+
+  private static AnalysisEngineDescription withSegments(AnalysisEngineDescription sentenceDescription)
+      throws Exception {
+    AggregateBuilder builder = new AggregateBuilder();
+    builder.add(SimpleSegmentAnnotator.createAnnotatorDescription());
+    builder.add(sentenceDescription);
+    return builder.createAggregateDescription();
+  }
+
+  @Test
+  public void testSharedMaxentModelMatchesOwnModel() throws Exception {
+    List<String> documents = createDocuments(7, 40);
+    SentenceModel ownModel;
+    try (InputStream is = FileLocator.getAsStream(SD_MODEL_PATH)) {
+      ownModel = new SentenceModel(is);
+    }
+    List<String> expected = detect(createDetector(ownModel.getMaxentModel()), documents);
+
+    SentenceModelStore store = SentenceModelStore.getInstance();
+    assertSame(store.getMaxentModel(SD_MODEL_PATH), store.getMaxentModel(SD_MODEL_PATH));
+    ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+    try {
+      List<Future<List<String>>> futures = new ArrayList<>();
+      for (int i = 0; i < THREAD_COUNT; i++) {
+        futures.add(executor.submit(() -> detect(createDetector(store.getMaxentModel(SD_MODEL_PATH)), documents)));
+      }
+      for (Future<List<String>> future : futures) {
+        assertEquals(expected, future.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testSharedSentenceDetectorsMatchSingleDetector() throws Exception {
+    List<String> documents = createDocuments(11, 40);
+    AnalysisEngineDescription description = withSegments(SentenceDetector.createAnnotatorDescription());
+    AnalysisEngine engine = AnalysisEngineFactory.createEngine(description);
+    List<String> expected = annotate(engine, documents);
+    engine.destroy();
+    assertEquals(expected, annotateInParallel(description, documents));
+  }
+
+  @Test
+  public void testSharedBioClassifierMatchesOwnClassifier() throws Exception {
+    List<String> documents = createDocuments(13, 16);
+    // each annotator loaded its own classifier jar with the default factory before the classifiers were shared
+    AnalysisEngineDescription ownDescription = withSegments(AnalysisEngineFactory.createEngineDescription(
+        SentenceDetectorAnnotatorBIO.class,
+        SentenceDetectorAnnotatorBIO.PARAM_IS_TRAINING,
+        false,
+        GenericJarClassifierFactory.PARAM_CLASSIFIER_JAR_PATH,
+        BIO_MODEL_PATH,
+        SentenceDetectorAnnotatorBIO.PARAM_FEAT_CONFIG,
+        SentenceDetectorAnnotatorBIO.FEAT_CONFIG.CHAR));
+    AnalysisEngine engine = AnalysisEngineFactory.createEngine(ownDescription);
+    List<String> expected = annotate(engine, documents);
+    engine.destroy();
+    assertTrue(expected.stream().anyMatch(spans -> !spans.isEmpty()));
+
+    assertEquals(expected,
+        annotateInParallel(withSegments(SentenceDetectorAnnotatorBIO.getDescription(BIO_MODEL_PATH)), documents));
+  }
+
+}
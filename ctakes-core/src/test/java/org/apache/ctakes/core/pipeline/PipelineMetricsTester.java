@@ -0,0 +1,64 @@
+package org.apache.ctakes.core.pipeline;
+
+import org.apache.uima.UIMAException;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PipelineMetricsTester {
+
+   @Before
+   public void resetMetrics() {
+      PipelineMetrics.getInstance().reset();
+   }
+
+   @Test
+   public void testHistogramPercentiles() {
+      final LatencyHistogram histogram = new LatencyHistogram();
+      for ( int i = 0; i < 99; i++ ) {
+         histogram.record( 500000 );
+      }
+      histogram.record( 40000000 );
+      assertEquals( 100, histogram.getCount() );
+      // 500 microseconds falls in the [256,512) bucket
+      assertEquals( 0.512, histogram.getPercentileMillis( 50 ), 0.0001 );
+      assertEquals( 0.512, histogram.getPercentileMillis( 99 ), 0.0001 );
+      assertEquals( 40, histogram.getPercentileMillis( 100 ), 0.0001 );
+      assertEquals( 40, histogram.getMaxMillis(), 0.0001 );
+      histogram.reset();
+      assertEquals( 0, histogram.getCount() );
+      assertEquals( 0, histogram.getPercentileMillis( 95 ), 0.0001 );
+   }
+
+   @Test
+   public void testAnnotatorMetrics() throws UIMAException {
+      final PipelineMetrics metrics = PipelineMetrics.getInstance();
+      final JCas jCas = JCasFactory.createJCas();
+      jCas.setDocumentText( "Some text" );
+      metrics.start( PipelineMetrics.DOCUMENT_METRICS_NAME, jCas );
+      metrics.start( "FirstAnnotator", jCas );
+      new Annotation( jCas, 0, 4 ).addToIndexes();
+      new Annotation( jCas, 5, 9 ).addToIndexes();
+      metrics.finish( "FirstAnnotator", jCas );
+      metrics.start( "SecondAnnotator", jCas );
+      metrics.finish( "SecondAnnotator", jCas );
+      metrics.finish( PipelineMetrics.DOCUMENT_METRICS_NAME, jCas );
+
+      assertEquals( 1, metrics.getDocumentCount() );
+      assertTrue( metrics.getMaxCasHeapBytes() > 0 );
+      assertArrayEquals( new String[]{ "FirstAnnotator", "SecondAnnotator" }, metrics.getAnnotatorNames() );
+      final String[] csvRows = metrics.toCsv().split( "\n" );
+      assertEquals( 4, csvRows.length );
+      assertTrue( csvRows[ 2 ].startsWith( "FirstAnnotator,1," ) );
+      assertTrue( csvRows[ 2 ].endsWith( ",2.000" ) );
+      assertTrue( csvRows[ 3 ].endsWith( ",0.000" ) );
+      assertTrue( metrics.toJson().contains( "\"name\": \"SecondAnnotator\"" ) );
+   }
+
+}
@@ -6,6 +6,7 @@ import org.apache.ctakes.core.util.DotLogger;
 import org.apache.ctakes.core.util.ListFactory;
 import org.apache.ctakes.coreference.ae.features.cluster.*;
 import org.apache.ctakes.coreference.ae.pairing.cluster.*;
+import org.apache.ctakes.coreference.util.ClusterIndex;
 import org.apache.ctakes.coreference.util.ClusterMentionFetcher;
 import org.apache.ctakes.coreference.util.MarkableUtilities;
 import org.apache.ctakes.relationextractor.ae.features.RelationFeaturesExtractor;
@@ -129,6 +130,8 @@ public class MentionClusterCoreferenceAnnotator extends CleartkAnnotator<String>
   private List<RelationFeaturesExtractor<CollectionTextRelation,IdentifiedAnnotation>> relationExtractors = this.getFeatureExtractors();
   private List<FeatureExtractor1<Markable>> mentionExtractors = this.getMentionExtractors();
   private List<ClusterMentionPairer_ImplBase> pairExtractors = this.getPairExtractors();
+  // clusters of the document being processed, updated as mentions are clustered
+  private ClusterIndex clusterIndex = null;
   
 //  private Set<String> markableStrings = null;
   
@@ -199,8 +202,9 @@ public class MentionClusterCoreferenceAnnotator extends CleartkAnnotator<String>
   }
   
   private void resetPairers(JCas jcas){
+    this.clusterIndex = new ClusterIndex(jcas);
     for(ClusterMentionPairer_ImplBase pairer : this.pairExtractors){
-      pairer.reset(jcas);
+      pairer.reset(jcas, this.clusterIndex);
     }
   }
    
@@ -397,10 +401,12 @@ public class MentionClusterCoreferenceAnnotator extends CleartkAnnotator<String>
           chain.addToIndexes();
           list.addToIndexes();
           list.getTail().addToIndexes();
+          this.clusterIndex.addCluster( chain );
         }
       }
     }
 
+    this.clusterIndex = null;
     removeSingletonClusters( jCas );
 
     createEventClusters( jCas );
@@ -476,6 +482,9 @@ public class MentionClusterCoreferenceAnnotator extends CleartkAnnotator<String>
 //    RelationArgument arg = new RelationArgument(jCas);
 //    arg.setArgument(mention);
     ListFactory.append(jCas, cluster.getMembers(), mention);    
+    if(this.clusterIndex != null){
+      this.clusterIndex.addMember(cluster, mention);
+    }
   }
 
   /**
@@ -2,6 +2,7 @@ package org.apache.ctakes.coreference.ae.pairing.cluster;
 
 //import org.apache.ctakes.coreference.ae.MentionClusterCoreferenceAnnotator.CollectionTextRelationIdentifiedAnnotationPair;
 import org.apache.ctakes.coreference.ae.pairing.AnnotationPairer;
+import org.apache.ctakes.coreference.util.ClusterIndex;
 import org.apache.ctakes.typesystem.type.relation.CollectionTextRelation;
 import org.apache.ctakes.typesystem.type.syntax.ConllDependencyNode;
 import org.apache.ctakes.typesystem.type.textsem.IdentifiedAnnotation;
@@ -21,10 +22,27 @@ import static org.apache.ctakes.coreference.util.ClusterMentionFetcher.Collectio
 public abstract class ClusterMentionPairer_ImplBase implements AnnotationPairer<Markable, CollectionTextRelationIdentifiedAnnotationPair> {
   public abstract List<CollectionTextRelationIdentifiedAnnotationPair> getPairs(JCas jcas, Markable m);
   private Map<ConllDependencyNode,Collection<IdentifiedAnnotation>> nodeEntMap = null;
+  private ClusterIndex clusterIndex = null;
 
   @Override
   public void reset(JCas jcas){
     nodeEntMap = JCasUtil.indexCovering(jcas, ConllDependencyNode.class, IdentifiedAnnotation.class);
+    clusterIndex = null;
+  }
+
+  /**
+   * Resets the pairer for a document whose clusters are kept in the given index by the caller.
+   */
+  public void reset(JCas jcas, ClusterIndex clusterIndex){
+    reset(jcas);
+    this.clusterIndex = clusterIndex;
+  }
+
+  /**
+   * @return the cluster index given at reset, or a new index of the clusters in the cas if there is none
+   */
+  protected ClusterIndex getClusterIndex(JCas jcas){
+    return clusterIndex != null ? clusterIndex : new ClusterIndex(jcas);
   }
   
   public Set<String> getBestEnt(JCas jcas, CollectionTextRelation cluster){
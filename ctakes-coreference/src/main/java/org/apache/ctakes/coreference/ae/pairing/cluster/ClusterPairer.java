@@ -1,13 +1,8 @@
 package org.apache.ctakes.coreference.ae.pairing.cluster;
 
-import org.apache.ctakes.coreference.ae.EventCoreferenceAnnotator;
-import org.apache.ctakes.coreference.util.ClusterUtils;
-import org.apache.ctakes.typesystem.type.relation.CollectionTextRelation;
-import org.apache.ctakes.typesystem.type.textsem.IdentifiedAnnotation;
+import org.apache.ctakes.coreference.util.ClusterIndex;
 import org.apache.ctakes.typesystem.type.textsem.Markable;
-import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JCas;
-import org.apache.uima.jcas.cas.NonEmptyFSList;
 import org.apache.uima.jcas.tcas.Annotation;
 
 import java.util.ArrayList;
@@ -35,24 +30,20 @@ public class ClusterPairer extends ClusterMentionPairer_ImplBase {
   @Override
   public List<CollectionTextRelationIdentifiedAnnotationPair> getPairs(JCas jcas, Markable mention) {
     List<CollectionTextRelationIdentifiedAnnotationPair> pairs = new ArrayList<>();
-    for(CollectionTextRelation cluster : JCasUtil.select(jcas, CollectionTextRelation.class)){
-      NonEmptyFSList members = ((NonEmptyFSList)cluster.getMembers());
-      Annotation first = (Annotation) members.getHead();
+    ClusterIndex clusterIndex = getClusterIndex(jcas);
+    for(ClusterIndex.Cluster cluster : clusterIndex.getClusters()){
+      Annotation first = cluster.getFirst();
       if(first == null || mention.getBegin() <= first.getEnd()){
         continue;
       }
 
-      IdentifiedAnnotation mostRecent = (IdentifiedAnnotation) ClusterUtils.getMostRecent((NonEmptyFSList)cluster.getMembers(), mention);
-      if(mostRecent == null || EventCoreferenceAnnotator.sentDist(jcas, mostRecent, mention) > sentDist){
+      int mostRecent = cluster.getMostRecent(mention);
+      if(mostRecent < 0 || (sentDist < Integer.MAX_VALUE && clusterIndex.sentDist(cluster.getMember(mostRecent), mention) > sentDist)){
         continue;
       }
-      int numMembers=0;
-      for(Markable m : JCasUtil.select(cluster.getMembers(), Markable.class)){
-        numMembers++;
-        if(m == mostRecent) break;
-      }
-      if(numMembers > 1){
-        pairs.add(new CollectionTextRelationIdentifiedAnnotationPair(cluster, mention));
+      // more than one member up to the most recent one
+      if(cluster.getMember(mostRecent) != first){
+        pairs.add(new CollectionTextRelationIdentifiedAnnotationPair(cluster.getRelation(), mention));
       }
     }
     
@@ -1,19 +1,19 @@
 package org.apache.ctakes.coreference.ae.pairing.cluster;
 
-import org.apache.ctakes.coreference.ae.EventCoreferenceAnnotator;
-import org.apache.ctakes.coreference.util.ClusterUtils;
+import org.apache.ctakes.coreference.util.ClusterIndex;
 import org.apache.ctakes.typesystem.type.relation.CollectionTextRelation;
 import org.apache.ctakes.typesystem.type.textsem.AnatomicalSiteMention;
 import org.apache.ctakes.typesystem.type.textsem.IdentifiedAnnotation;
 import org.apache.ctakes.typesystem.type.textsem.Markable;
 import org.apache.ctakes.typesystem.type.textsem.MedicationEventMention;
-import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JCas;
-import org.apache.uima.jcas.cas.NonEmptyFSList;
 import org.apache.uima.jcas.tcas.Annotation;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.apache.ctakes.coreference.util.ClusterMentionFetcher.CollectionTextRelationIdentifiedAnnotationPair;
@@ -23,10 +23,18 @@ import static org.apache.ctakes.coreference.util.ClusterMentionFetcher.Collectio
 public class SentenceDistancePairer extends ClusterMentionPairer_ImplBase {
 
   private int sentDistance;
+  // named entity types of the members of each cluster seen so far
+  private Map<CollectionTextRelation, ClusterTypes> clusterTypes = new HashMap<>();
   
   public SentenceDistancePairer(int distance){
     this.sentDistance = distance;
   }
+
+  @Override
+  public void reset(JCas jcas){
+    super.reset(jcas);
+    clusterTypes = new HashMap<>();
+  }
   /*
    * Here we want to add only things that are nearby. First we check the semantic types
    * of the cluster we're comparing against. If any member is an Anatomical Site or Medication,
@@ -38,17 +46,17 @@ public class SentenceDistancePairer extends ClusterMentionPairer_ImplBase {
     List<CollectionTextRelationIdentifiedAnnotationPair> pairs = new ArrayList<>();
     Set<String> bestAnaTypes = getBestEnt(jcas, (Markable) mention);
     
-    for(CollectionTextRelation cluster : JCasUtil.select(jcas, CollectionTextRelation.class)){
-      NonEmptyFSList members = ((NonEmptyFSList)cluster.getMembers());
-      Annotation first = (Annotation) members.getHead();
+    ClusterIndex clusterIndex = getClusterIndex(jcas);
+    for(ClusterIndex.Cluster cluster : clusterIndex.getClusters()){
+      Annotation first = cluster.getFirst();
       if(first == null || mention.getBegin() <= first.getEnd()) continue;
       
       // check for distance if they are not anatomical site or medication
       if(!(bestAnaTypes.contains(AnatomicalSiteMention.class.getSimpleName()) ||
           bestAnaTypes.contains(MedicationEventMention.class.getSimpleName()))){
   
-        IdentifiedAnnotation mostRecent = (IdentifiedAnnotation) ClusterUtils.getMostRecent(members, mention);
-        if(mostRecent == null || EventCoreferenceAnnotator.sentDist(jcas, mostRecent, mention) > this.sentDistance) continue;
+        int mostRecent = cluster.getMostRecent(mention);
+        if(mostRecent < 0 || clusterIndex.sentDist(cluster.getMember(mostRecent), mention) > this.sentDistance) continue;
       }
   
       // check for types of cluster
@@ -65,9 +73,29 @@ public class SentenceDistancePairer extends ClusterMentionPairer_ImplBase {
           continue;
         }
       }
-      pairs.add(new CollectionTextRelationIdentifiedAnnotationPair(cluster, mention));      
+      pairs.add(new CollectionTextRelationIdentifiedAnnotationPair(cluster.getRelation(), mention));      
     }
     return pairs;
   }
 
+  /*
+   * The types of a cluster are those of its members, so they are only looked up for the members
+   * added since the last time.
+   */
+  private Set<String> getBestEnt(JCas jcas, ClusterIndex.Cluster cluster){
+    ClusterTypes types = clusterTypes.computeIfAbsent(cluster.getRelation(), c -> new ClusterTypes());
+    for(; types.numMembers < cluster.size(); types.numMembers++){
+      Annotation member = cluster.getMember(types.numMembers);
+      if(member instanceof Markable){
+        types.semTypes.addAll(getBestEnt(jcas, (Markable) member));
+      }
+    }
+    return types.semTypes;
+  }
+
+  private static class ClusterTypes {
+    private final Set<String> semTypes = new HashSet<>();
+    private int numMembers = 0;
+  }
+
 }
@@ -0,0 +1,287 @@
+package org.apache.ctakes.coreference.util;
+
+import org.apache.ctakes.temporal.utils.PatientViewsUtil;
+import org.apache.ctakes.typesystem.type.relation.CollectionTextRelation;
+import org.apache.ctakes.typesystem.type.textspan.Paragraph;
+import org.apache.ctakes.typesystem.type.textspan.Sentence;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.cas.FSList;
+import org.apache.uima.jcas.cas.NonEmptyFSList;
+import org.apache.uima.jcas.tcas.Annotation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * In-memory index of the coreference clusters of a document, for the cluster pairers.
+ * Cluster members are kept in arrays with their offsets, and sentences and section header paragraphs
+ * in offset arrays, so that finding the most recent mention of a cluster and the sentence distance to it
+ * does not walk the cas lists and indexes for every mention.
+ * The index has to be told about every cluster and member added to the cas after it is created,
+ * see {@link #addCluster(CollectionTextRelation)} and {@link #addMember(CollectionTextRelation, Annotation)}.
+ */
+public class ClusterIndex {
+
+  private final List<Cluster> clusters = new ArrayList<>();
+  private final Map<CollectionTextRelation,Cluster> relationClusters = new HashMap<>();
+  private final Map<Annotation,List<Cluster>> memberClusters = new HashMap<>();
+
+  // sentences in annotation index order
+  private final int[] sentenceBegins;
+  private final int[] sentenceEnds;
+  private final boolean sentenceEndsSorted;
+
+  // paragraphs covering a single sentence, which is how section headers are modeled
+  private final int[] headerBegins;
+  private final int[] headerEnds;
+  private final boolean headerEndsSorted;
+
+  public ClusterIndex(JCas jcas){
+    Collection<Sentence> sentences = JCasUtil.select(jcas, Sentence.class);
+    sentenceBegins = new int[sentences.size()];
+    sentenceEnds = new int[sentences.size()];
+    int i = 0;
+    for(Sentence sentence : sentences){
+      sentenceBegins[i] = sentence.getBegin();
+      sentenceEnds[i] = sentence.getEnd();
+      i++;
+    }
+    sentenceEndsSorted = isSorted(sentenceEnds, 0, sentenceEnds.length);
+
+    int[] begins = new int[16];
+    int[] ends = new int[16];
+    int numHeaders = 0;
+    for(Paragraph par : JCasUtil.select(jcas, Paragraph.class)){
+      if(countSentences(par.getBegin(), par.getEnd()) == 1){
+        if(numHeaders == begins.length){
+          begins = Arrays.copyOf(begins, numHeaders * 2);
+          ends = Arrays.copyOf(ends, numHeaders * 2);
+        }
+        begins[numHeaders] = par.getBegin();
+        ends[numHeaders] = par.getEnd();
+        numHeaders++;
+      }
+    }
+    headerBegins = Arrays.copyOf(begins, numHeaders);
+    headerEnds = Arrays.copyOf(ends, numHeaders);
+    headerEndsSorted = isSorted(headerEnds, 0, numHeaders);
+
+    for(CollectionTextRelation cluster : JCasUtil.select(jcas, CollectionTextRelation.class)){
+      addCluster(cluster);
+    }
+  }
+
+  /**
+   * Indexes a cluster and its current members, after the clusters already indexed.
+   */
+  public void addCluster(CollectionTextRelation relation){
+    Cluster cluster = new Cluster(relation, clusters.size());
+    clusters.add(cluster);
+    relationClusters.put(relation, cluster);
+    FSList members = relation.getMembers();
+    while(members instanceof NonEmptyFSList){
+      NonEmptyFSList node = (NonEmptyFSList) members;
+      if(node.getHead() == null){
+        break;
+      }
+      addMember(cluster, (Annotation) node.getHead());
+      members = node.getTail();
+    }
+  }
+
+  /**
+   * Indexes a member appended to the end of the members of a cluster.
+   */
+  public void addMember(CollectionTextRelation relation, Annotation member){
+    Cluster cluster = relationClusters.get(relation);
+    if(cluster == null){
+      // the cluster is already in the cas with the new member
+      addCluster(relation);
+    }else{
+      addMember(cluster, member);
+    }
+  }
+
+  private void addMember(Cluster cluster, Annotation member){
+    cluster.add(member, getHeaderEnd(member));
+    memberClusters.computeIfAbsent(member, m -> new ArrayList<>(1)).add(cluster);
+  }
+
+  /**
+   * @return all the clusters, in the order of the cas index
+   */
+  public List<Cluster> getClusters(){
+    return Collections.unmodifiableList(clusters);
+  }
+
+  /**
+   * @return the clusters with any of the given members, in the order of the cas index
+   */
+  public List<Cluster> getClusters(Collection<? extends Annotation> members){
+    TreeSet<Cluster> found = new TreeSet<>(Comparator.comparingInt(c -> c.ordinal));
+    for(Annotation member : members){
+      List<Cluster> withMember = memberClusters.get(member);
+      if(withMember != null){
+        found.addAll(withMember);
+      }
+    }
+    return new ArrayList<>(found);
+  }
+
+  /**
+   * Same as {@link org.apache.ctakes.coreference.ae.EventCoreferenceAnnotator#sentDist}
+   * for the cas of this index.
+   * @return the number of sentences from the start of arg1 to the end of arg2
+   */
+  public int sentDist(Annotation arg1, Annotation arg2){
+    return countSentences(arg1.getBegin(), arg2.getEnd());
+  }
+
+  // number of sentences covered by the span, as JCasUtil.selectCovered finds them
+  private int countSentences(int begin, int end){
+    int from = lowerBound(sentenceBegins, 0, sentenceBegins.length, begin);
+    int to = lowerBound(sentenceBegins, from, sentenceBegins.length, end + 1);
+    if(sentenceEndsSorted){
+      return lowerBound(sentenceEnds, from, to, end + 1) - from;
+    }
+    int count = 0;
+    for(int i = from; i < to; i++){
+      if(sentenceEnds[i] <= end){
+        count++;
+      }
+    }
+    return count;
+  }
+
+  // smallest end of a section header dominating the member, Integer.MAX_VALUE if there is none
+  private int getHeaderEnd(Annotation member){
+    int to = lowerBound(headerBegins, 0, headerBegins.length, member.getBegin() + 1);
+    if(headerEndsSorted){
+      int first = lowerBound(headerEnds, 0, to, member.getEnd());
+      return first < to ? headerEnds[first] : Integer.MAX_VALUE;
+    }
+    int headerEnd = Integer.MAX_VALUE;
+    for(int i = 0; i < to; i++){
+      if(headerEnds[i] >= member.getEnd() && headerEnds[i] < headerEnd){
+        headerEnd = headerEnds[i];
+      }
+    }
+    return headerEnd;
+  }
+
+  // first index in [from,to) with a value >= key, to if there is none
+  private static int lowerBound(int[] values, int from, int to, int key){
+    int low = from;
+    int high = to;
+    while(low < high){
+      int mid = (low + high) >>> 1;
+      if(values[mid] < key){
+        low = mid + 1;
+      }else{
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private static boolean isSorted(int[] values, int from, int to){
+    for(int i = from + 1; i < to; i++){
+      if(values[i] < values[i - 1]){
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * The members of a cluster in list order, with their offsets.
+   */
+  public static class Cluster {
+    private final CollectionTextRelation relation;
+    private final int ordinal;
+    private Annotation[] members = new Annotation[4];
+    private int[] ends = new int[4];
+    private int size = 0;
+    // whether the ends after the first member never decrease, then the most recent member is a binary search
+    private boolean tailEndsSorted = true;
+    private int headerEnd = Integer.MAX_VALUE;
+
+    private Cluster(CollectionTextRelation relation, int ordinal){
+      this.relation = relation;
+      this.ordinal = ordinal;
+    }
+
+    private void add(Annotation member, int memberHeaderEnd){
+      if(size == members.length){
+        members = Arrays.copyOf(members, size * 2);
+        ends = Arrays.copyOf(ends, size * 2);
+      }
+      if(size > 1 && member.getEnd() < ends[size - 1]){
+        tailEndsSorted = false;
+      }
+      members[size] = member;
+      ends[size] = member.getEnd();
+      size++;
+      headerEnd = Math.min(headerEnd, memberHeaderEnd);
+    }
+
+    public CollectionTextRelation getRelation(){
+      return relation;
+    }
+
+    public int size(){
+      return size;
+    }
+
+    public Annotation getMember(int i){
+      if(i < 0 || i >= size){
+        throw new ArrayIndexOutOfBoundsException(i);
+      }
+      return members[i];
+    }
+
+    /**
+     * @return the first member, null if there is none
+     */
+    public Annotation getFirst(){
+      return size > 0 ? members[0] : null;
+    }
+
+    /**
+     * Same as {@link ClusterUtils#getMostRecent} on the cluster members.
+     * @return the index of the most recent member before the focus, -1 if the focus precedes the first member
+     */
+    public int getMostRecent(Annotation focus){
+      if(size == 0){
+        return -1;
+      }
+      int focusEnd = focus.getEnd();
+      if(ends[0] > focusEnd && PatientViewsUtil.isSameDocument(members[0], focus)){
+        return -1;
+      }
+      if(tailEndsSorted){
+        return lowerBound(ends, 1, size, focusEnd) - 1;
+      }
+      int recent = 0;
+      while(recent + 1 < size && ends[recent + 1] < focusEnd){
+        recent++;
+      }
+      return recent;
+    }
+
+    /**
+     * @return the smallest end of the section headers dominating any member, Integer.MAX_VALUE if there is none
+     */
+    public int getHeaderEnd(){
+      return headerEnd;
+    }
+  }
+}
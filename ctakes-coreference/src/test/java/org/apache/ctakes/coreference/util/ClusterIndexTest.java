@@ -0,0 +1,309 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.coreference.util;
+
+import org.apache.ctakes.core.util.ListFactory;
+import org.apache.ctakes.coreference.ae.EventCoreferenceAnnotator;
+import org.apache.ctakes.coreference.ae.pairing.cluster.ClusterMentionPairer_ImplBase;
+import org.apache.ctakes.coreference.ae.pairing.cluster.ClusterPairer;
+import org.apache.ctakes.coreference.ae.pairing.cluster.SectionHeaderPairer;
+import org.apache.ctakes.coreference.ae.pairing.cluster.SentenceDistancePairer;
+import org.apache.ctakes.typesystem.type.relation.CollectionTextRelation;
+import org.apache.ctakes.typesystem.type.textsem.IdentifiedAnnotation;
+import org.apache.ctakes.typesystem.type.textsem.Markable;
+import org.apache.ctakes.typesystem.type.textspan.Paragraph;
+import org.apache.ctakes.typesystem.type.textspan.Sentence;
+import org.apache.uima.UIMAException;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.cas.EmptyFSList;
+import org.apache.uima.jcas.cas.NonEmptyFSList;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.apache.ctakes.coreference.util.ClusterMentionFetcher.CollectionTextRelationIdentifiedAnnotationPair;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the cluster pairers, which find clusters through a {@link ClusterIndex}, pair each mention
+ * with the same clusters as a plain walk over the clusters, sentences and paragraphs of the cas,
+ * while clusters grow as they do in the coreference annotator.
+ */
+public class ClusterIndexTest {
+
+  private static final Comparator<Annotation> BY_OFFSETS = (a1, a2) -> a1.getBegin() != a2.getBegin()
+      ? Integer.compare(a1.getBegin(), a2.getBegin()) : Integer.compare(a2.getEnd(), a1.getEnd());
+
+  /*
+   * Pairs as the cluster pairer did before the cluster index: clusters with more than one member
+   * up to the most recent one, which is within the sentence distance.
+   */
+  private static List<CollectionTextRelation> pairByCluster(JCas jcas, Markable mention, int dist){
+    List<CollectionTextRelation> pairs = new ArrayList<>();
+    for(CollectionTextRelation cluster : JCasUtil.select(jcas, CollectionTextRelation.class)){
+      NonEmptyFSList members = (NonEmptyFSList) cluster.getMembers();
+      Annotation first = (Annotation) members.getHead();
+      if(first == null || mention.getBegin() <= first.getEnd()){
+        continue;
+      }
+      IdentifiedAnnotation mostRecent = (IdentifiedAnnotation) ClusterUtils.getMostRecent(members, mention);
+      if(mostRecent == null || EventCoreferenceAnnotator.sentDist(jcas, mostRecent, mention) > dist){
+        continue;
+      }
+      int numMembers = 0;
+      for(Markable m : JCasUtil.select(members, Markable.class)){
+        numMembers++;
+        if(m == mostRecent) break;
+      }
+      if(numMembers > 1){
+        pairs.add(cluster);
+      }
+    }
+    return pairs;
+  }
+
+  /*
+   * Pairs as the sentence distance pairer did before the cluster index, for mentions without entity types.
+   */
+  private static List<CollectionTextRelation> pairBySentence(JCas jcas, Markable mention, int dist){
+    List<CollectionTextRelation> pairs = new ArrayList<>();
+    for(CollectionTextRelation cluster : JCasUtil.select(jcas, CollectionTextRelation.class)){
+      NonEmptyFSList members = (NonEmptyFSList) cluster.getMembers();
+      Annotation first = (Annotation) members.getHead();
+      if(first == null || mention.getBegin() <= first.getEnd()){
+        continue;
+      }
+      IdentifiedAnnotation mostRecent = (IdentifiedAnnotation) ClusterUtils.getMostRecent(members, mention);
+      if(mostRecent == null || EventCoreferenceAnnotator.sentDist(jcas, mostRecent, mention) > dist){
+        continue;
+      }
+      pairs.add(cluster);
+    }
+    return pairs;
+  }
+
+  /*
+   * Pairs as the section header pairer did before the cluster index: clusters beyond the sentence distance
+   * with a member in a paragraph of a single sentence before the mention.
+   */
+  private static List<CollectionTextRelation> pairBySectionHeader(JCas jcas, Markable mention, int dist){
+    List<CollectionTextRelation> pairs = new ArrayList<>();
+    for(CollectionTextRelation cluster : JCasUtil.select(jcas, CollectionTextRelation.class)){
+      NonEmptyFSList members = (NonEmptyFSList) cluster.getMembers();
+      Annotation first = (Annotation) members.getHead();
+      if(first == null || mention.getBegin() <= first.getEnd()){
+        continue;
+      }
+      IdentifiedAnnotation mostRecent = (IdentifiedAnnotation) ClusterUtils.getMostRecent(members, mention);
+      if(mostRecent == null || EventCoreferenceAnnotator.sentDist(jcas, mostRecent, mention) <= dist){
+        continue;
+      }
+      boolean match = false;
+      for(Paragraph par : JCasUtil.selectCovered(jcas, Paragraph.class, 0, mention.getBegin())){
+        if(JCasUtil.selectCovered(jcas, Sentence.class, par).size() != 1){
+          continue;
+        }
+        for(Markable m : JCasUtil.select(members, Markable.class)){
+          if(par.getBegin() <= m.getBegin() && par.getEnd() >= m.getEnd()){
+            match = true;
+            break;
+          }
+        }
+        if(match) break;
+      }
+      if(match){
+        pairs.add(cluster);
+      }
+    }
+    return pairs;
+  }
+
+  /*
+   * Clusters of the index whose most recent member before the mention has the same head, as the headword pairer
+   * finds them.
+   */
+  private static List<CollectionTextRelation> pairByHead(ClusterIndex index, Markable mention, Set<Markable> headSet){
+    List<CollectionTextRelation> pairs = new ArrayList<>();
+    for(ClusterIndex.Cluster cluster : index.getClusters(headSet)){
+      int mostRecent = cluster.getMostRecent(mention);
+      if(mostRecent >= 0 && headSet.contains(cluster.getMember(mostRecent))){
+        pairs.add(cluster.getRelation());
+      }
+    }
+    return pairs;
+  }
+
+  private static List<CollectionTextRelation> getClusters(List<CollectionTextRelationIdentifiedAnnotationPair> pairs){
+    List<CollectionTextRelation> clusters = new ArrayList<>(pairs.size());
+    for(CollectionTextRelationIdentifiedAnnotationPair pair : pairs){
+      clusters.add(pair.getCluster());
+    }
+    return clusters;
+  }
+
+  private static String createText(int length){
+    char[] text = new char[length];
+    Arrays.fill(text, 'x');
+    return new String(text);
+  }
+
+  /*
+   * Adds a singleton cluster as the coreference annotator does.
+   */
+  private static CollectionTextRelation addCluster(JCas jcas, Markable mention){
+    CollectionTextRelation chain = new CollectionTextRelation(jcas);
+    NonEmptyFSList list = new NonEmptyFSList(jcas);
+    list.setHead(mention);
+    list.setTail(new EmptyFSList(jcas));
+    chain.setMembers(list);
+    chain.addToIndexes();
+    list.addToIndexes();
+    list.getTail().addToIndexes();
+    return chain;
+  }
+
+  /**
+   * Creates a document of random sentences, some of them overlapping, paragraphs of one or more sentences,
+   * markables and a few gold clusters with unsorted members, some from another view.
+   * Each markable is paired in turn by the pairers and by the plain walks,
+   * and then appended to one of the clusters it was paired with or made a new cluster.
+   * @return the number of pairs found
+   */
+  private static int comparePairs(Random random, boolean sharedIndex) throws UIMAException {
+    JCas jcas = JCasFactory.createJCas();
+    JCas previous = jcas.createView("PreviousDocument");
+
+    int length = 0;
+    boolean overlap = random.nextInt(4) == 0;
+    List<Sentence> sentences = new ArrayList<>();
+    for(int i = 5 + random.nextInt(60); i > 0; i--){
+      int sentenceLength = 5 + random.nextInt(40);
+      sentences.add(new Sentence(jcas, length, length + sentenceLength));
+      if(overlap && random.nextInt(5) == 0){
+        new Sentence(jcas, length + 1, length + sentenceLength + random.nextInt(30)).addToIndexes();
+      }
+      length += sentenceLength + random.nextInt(3);
+    }
+    length += 30;
+    jcas.setDocumentText(createText(length));
+    previous.setDocumentText(createText(2 * length));
+    for(Sentence sentence : sentences){
+      sentence.addToIndexes();
+    }
+    for(int i = 0; i < sentences.size(); ){
+      int end = Math.min(sentences.size(), i + 1 + (random.nextInt(3) == 0 ? 0 : random.nextInt(4)));
+      new Paragraph(jcas, sentences.get(i).getBegin(), sentences.get(end - 1).getEnd()).addToIndexes();
+      i = end;
+    }
+
+    List<Markable> markables = new ArrayList<>();
+    for(int i = 20 + random.nextInt(150); i > 0; i--){
+      int begin = random.nextInt(length - 20);
+      Markable markable = new Markable(jcas, begin, begin + 1 + random.nextInt(12));
+      markable.addToIndexes();
+      markables.add(markable);
+    }
+    markables.sort(BY_OFFSETS);
+
+    for(int i = random.nextInt(6); i > 0; i--){
+      List<Markable> members = new ArrayList<>();
+      for(int j = 1 + random.nextInt(6); j > 0; j--){
+        if(random.nextInt(6) == 0){
+          int begin = random.nextInt(length);
+          members.add(new Markable(previous, begin, begin + random.nextInt(length)));
+        }else{
+          members.add(markables.get(random.nextInt(markables.size())));
+        }
+      }
+      if(random.nextBoolean()){
+        members.sort(Comparator.comparingInt(Annotation::getEnd));
+      }
+      CollectionTextRelation cluster = addCluster(jcas, members.get(0));
+      for(Markable member : members.subList(1, members.size())){
+        ListFactory.append(jcas, cluster.getMembers(), member);
+      }
+    }
+
+    int dist = 1 + random.nextInt(6);
+    ClusterMentionPairer_ImplBase[] pairers = { new SentenceDistancePairer(dist), new SectionHeaderPairer(dist),
+        new ClusterPairer(Integer.MAX_VALUE), new ClusterPairer(dist) };
+    ClusterIndex index = new ClusterIndex(jcas);
+    for(ClusterMentionPairer_ImplBase pairer : pairers){
+      if(sharedIndex){
+        pairer.reset(jcas, index);
+      }else{
+        pairer.reset(jcas);
+      }
+    }
+
+    int numPairs = 0;
+    Set<Markable> headSet = new HashSet<>();
+    for(Markable mention : markables){
+      List<CollectionTextRelation> sentencePairs = pairBySentence(jcas, mention, dist);
+      assertEquals(sentencePairs, getClusters(pairers[0].getPairs(jcas, mention)));
+      List<CollectionTextRelation> headerPairs = pairBySectionHeader(jcas, mention, dist);
+      assertEquals(headerPairs, getClusters(pairers[1].getPairs(jcas, mention)));
+      List<CollectionTextRelation> clusterPairs = pairByCluster(jcas, mention, Integer.MAX_VALUE);
+      assertEquals(clusterPairs, getClusters(pairers[2].getPairs(jcas, mention)));
+      assertEquals(pairByCluster(jcas, mention, dist), getClusters(pairers[3].getPairs(jcas, mention)));
+
+      // markables with the same head word
+      if(random.nextInt(3) == 0){
+        headSet.add(mention);
+      }
+      List<CollectionTextRelationIdentifiedAnnotationPair> headPairs = new ArrayList<>();
+      ClusterMentionFetcher.populatePairs(jcas, mention, headSet, headPairs);
+      assertEquals(getClusters(headPairs), pairByHead(index, mention, headSet));
+
+      List<CollectionTextRelation> paired = new ArrayList<>(sentencePairs);
+      paired.addAll(headerPairs);
+      paired.addAll(clusterPairs);
+      numPairs += paired.size();
+      if(!paired.isEmpty() && random.nextBoolean()){
+        CollectionTextRelation cluster = paired.get(random.nextInt(paired.size()));
+        ListFactory.append(jcas, cluster.getMembers(), mention);
+        index.addMember(cluster, mention);
+      }else{
+        index.addCluster(addCluster(jcas, mention));
+      }
+    }
+    return numPairs;
+  }
+
+  @Test
+  public void testPairsMatchCasWalk() throws UIMAException {
+    Random random = new Random(41);
+    int numPairs = 0;
+    for(int i = 0; i < 100; i++){
+      numPairs += comparePairs(random, i % 2 == 0);
+    }
+    assertTrue(numPairs > 5000);
+  }
+
+}
@@ -20,15 +20,14 @@ package org.apache.ctakes.dictionary.lookup2.ae;
 
 import org.apache.ctakes.core.config.ConfigParameterConstants;
 import org.apache.ctakes.core.fsm.token.NumberToken;
-import org.apache.ctakes.core.resource.FileLocator;
 import org.apache.ctakes.core.util.collection.CollectionMap;
 import org.apache.ctakes.core.util.collection.HashSetMap;
 import org.apache.ctakes.dictionary.lookup2.concept.Concept;
 import org.apache.ctakes.dictionary.lookup2.concept.ConceptFactory;
-import org.apache.ctakes.dictionary.lookup2.dictionary.DictionaryDescriptorParser;
 import org.apache.ctakes.dictionary.lookup2.dictionary.RareWordDictionary;
 import org.apache.ctakes.dictionary.lookup2.textspan.TextSpan;
 import org.apache.ctakes.dictionary.lookup2.util.DictionarySpec;
+import org.apache.ctakes.dictionary.lookup2.util.DictionarySpecRegistry;
 import org.apache.ctakes.dictionary.lookup2.util.FastLookupToken;
 import org.apache.ctakes.typesystem.type.syntax.*;
 import org.apache.log4j.Logger;
@@ -41,9 +40,8 @@ import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.tcas.Annotation;
 import org.apache.uima.resource.ResourceInitializationException;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.Future;
 
 /**
  * Performs the basic initialization with uima context, including the parse of the dictionary specifications file.
@@ -61,7 +59,7 @@ abstract public class AbstractJCasTermAnnotator extends JCasAnnotator_ImplBase
 
    //   private int _lookupWindowType;
    private Class<? extends Annotation> _lookupClass;
-   private DictionarySpec _dictionarySpec;
+   private DictionarySpecRegistry _dictionaryRegistry;
    private final Set<String> _exclusionPartsOfSpeech = new HashSet<>();
 
    @ConfigurationParameter( name = ConfigParameterConstants.PARAM_LOOKUP_XML, mandatory = false,
@@ -91,6 +89,12 @@ abstract public class AbstractJCasTermAnnotator extends JCasAnnotator_ImplBase
          description = "Minimum number of characters for a term" )
    protected int _minimumLookupSpan = DEFAULT_MINIMUM_SPAN;
 
+   // seconds between checks of the descriptor and the dictionary files that it names for changes, 0 to never reload
+   @ConfigurationParameter( name = JCasTermAnnotator.PARAM_RELOAD_SECONDS_KEY, mandatory = false,
+         description = "Seconds between checks of the Dictionary Descriptor and its dictionary files for changes,"
+                       + " 0 to never reload" )
+   private int _reloadSeconds = 0;
+
    /**
     * {@inheritDoc}
     */
@@ -134,11 +138,40 @@ abstract public class AbstractJCasTermAnnotator extends JCasAnnotator_ImplBase
          descriptorFilePath = _lookupXml;
       }
       LOGGER.info( "Using Dictionary Descriptor: " + descriptorFilePath );
-      try ( InputStream descriptorStream = FileLocator.getAsStream( descriptorFilePath ) ) {
-         _dictionarySpec = DictionaryDescriptorParser.parseDescriptor( descriptorStream, uimaContext );
-      } catch ( IOException | AnnotatorContextException multE ) {
-         throw new ResourceInitializationException( multE );
+      _dictionaryRegistry = new DictionarySpecRegistry( descriptorFilePath, uimaContext );
+      try {
+         _dictionaryRegistry.load();
+      } catch ( AnnotatorContextException acE ) {
+         throw new ResourceInitializationException( acE );
+      }
+      _dictionaryRegistry.watchDescriptor( _reloadSeconds );
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void destroy() {
+      if ( _dictionaryRegistry != null ) {
+         _dictionaryRegistry.close();
       }
+      super.destroy();
+   }
+
+   /**
+    * @return registry holding the loaded dictionaries, which can be used to reload them
+    */
+   protected DictionarySpecRegistry getDictionaryRegistry() {
+      return _dictionaryRegistry;
+   }
+
+   /**
+    * Loads the dictionaries again in the background.  Documents use the current dictionaries until they are loaded.
+    *
+    * @return the new version, which is null if it could not be loaded
+    */
+   public Future<DictionarySpecRegistry.Version> reloadDictionaries() {
+      return _dictionaryRegistry.reload();
    }
 
 
@@ -147,6 +180,16 @@ abstract public class AbstractJCasTermAnnotator extends JCasAnnotator_ImplBase
     */
    @Override
    public void process( final JCas jcas ) throws AnalysisEngineProcessException {
+      // The whole document uses one version of the dictionaries, even if a new version is swapped in meanwhile
+      final DictionarySpecRegistry.Version version = _dictionaryRegistry.acquire();
+      try {
+         process( jcas, version.getDictionarySpec() );
+      } finally {
+         _dictionaryRegistry.release( version );
+      }
+   }
+
+   private void process( final JCas jcas, final DictionarySpec dictionarySpec ) throws AnalysisEngineProcessException {
       LOGGER.info( "Finding Named Entities ..." );
 //      final JFSIndexRepository indexes = jcas.getJFSIndexRepository();
 //      final AnnotationIndex<Annotation> lookupWindows = indexes.getAnnotationIndex( _lookupWindowType );
@@ -155,8 +198,8 @@ abstract public class AbstractJCasTermAnnotator extends JCasAnnotator_ImplBase
 //      }
       final Map<Annotation, Collection<BaseToken>> windowTokens = org.apache.uima.fit.util.JCasUtil.indexCovered( jcas, _lookupClass, BaseToken.class );
       final Map<RareWordDictionary, CollectionMap<TextSpan, Long, ? extends Collection<Long>>> dictionaryTermsMap
-            = new HashMap<>( getDictionaries().size() );
-      for ( RareWordDictionary dictionary : getDictionaries() ) {
+            = new HashMap<>( dictionarySpec.getDictionaries().size() );
+      for ( RareWordDictionary dictionary : dictionarySpec.getDictionaries() ) {
          final CollectionMap<TextSpan, Long, ? extends Collection<Long>> textSpanCuis = new HashSetMap<>();
          dictionaryTermsMap.put( dictionary, textSpanCuis );
       }
@@ -187,13 +230,13 @@ abstract public class AbstractJCasTermAnnotator extends JCasAnnotator_ImplBase
             allDictionaryCuis.addAll( cuiCodes );
          }
          final Collection<ConceptFactory> conceptFactories
-               = _dictionarySpec.getPairedConceptFactories( dictionary.getName() );
+               = dictionarySpec.getPairedConceptFactories( dictionary.getName() );
          allConceptsMap.clear();
          for ( ConceptFactory conceptFactory : conceptFactories ) {
             final Map<Long, Concept> conceptMap = conceptFactory.createConcepts( allDictionaryCuis );
             allConceptsMap.placeMap( conceptMap );
          }
-         _dictionarySpec.getConsumer().consumeHits( jcas, dictionary, textSpanCuis, allConceptsMap );
+         dictionarySpec.getConsumer().consumeHits( jcas, dictionary, textSpanCuis, allConceptsMap );
       }
       LOGGER.info( "Finished processing" );
    }
@@ -204,7 +247,12 @@ abstract public class AbstractJCasTermAnnotator extends JCasAnnotator_ImplBase
     */
    @Override
    public Collection<RareWordDictionary> getDictionaries() {
-      return _dictionarySpec.getDictionaries();
+      final DictionarySpecRegistry.Version version = _dictionaryRegistry.getCurrentVersion();
+      if ( version == null ) {
+         // Closed
+         return Collections.emptyList();
+      }
+      return version.getDictionarySpec().getDictionaries();
    }
 
 //   /**
@@ -243,7 +291,8 @@ abstract public class AbstractJCasTermAnnotator extends JCasAnnotator_ImplBase
       final List<FastLookupToken> allTokens = new ArrayList<>();
       final List<Integer> lookupTokenIndices = new ArrayList<>();
       getAnnotationsInWindow( jcas, windowBaseTokens, allTokens, lookupTokenIndices );
-      findTerms( getDictionaries(), allTokens, lookupTokenIndices, dictionaryTerms );
+      // Use the dictionaries of the version that the document started with
+      findTerms( dictionaryTerms.keySet(), allTokens, lookupTokenIndices, dictionaryTerms );
    }
 
    /**
@@ -55,6 +55,11 @@ public interface JCasTermAnnotator extends AnalysisComponent {
     * optional minimum span for tokens that should not be used for lookup
     */
    String PARAM_MIN_SPAN_KEY = "minimumSpan";
+   /**
+    * optional seconds between checks of the dictionary descriptor and its dictionary files for changes,
+    * which are then reloaded
+    */
+   String PARAM_RELOAD_SECONDS_KEY = "reloadSeconds";
 
 
    String DEFAULT_LOOKUP_WINDOW = "org.apache.ctakes.typesystem.type.textspan.Sentence";
@@ -18,7 +18,7 @@ import static org.apache.ctakes.dictionary.lookup2.util.JdbcConnectionFactory.*;
  * Affiliation: CHIP-NLP
  * Date: 11/20/13
  */
-public class JdbcConceptFactory extends AbstractConceptFactory {
+public class JdbcConceptFactory extends AbstractConceptFactory implements AutoCloseable {
 
    // LOG4J logger based on class name
    static final private Logger LOGGER = Logger.getLogger( "JdbcConceptFactory" );
@@ -31,6 +31,7 @@ public class JdbcConceptFactory extends AbstractConceptFactory {
    static private final String PREFTERM_CLASS = Concept.PREFTERM;
 
 
+   private final Connection _connection;
    private final Collection<ConceptTableInfo> _conceptTableInfos;
 
 
@@ -121,22 +122,37 @@ public class JdbcConceptFactory extends AbstractConceptFactory {
                               final Map<String, String> conceptTables )
          throws SQLException {
       super( name );
-      boolean connected = false;
+      Connection connection = null;
       try {
          // DO NOT use try with resources here.
          // Try with resources uses a closable and closes it when exiting the try block
-         final Connection connection
-               = JdbcConnectionFactory.getInstance().getConnection( jdbcDriver, jdbcUrl, jdbcUser, jdbcPass );
-         connected = connection != null;
+         connection = JdbcConnectionFactory.getInstance().getConnection( jdbcDriver, jdbcUrl, jdbcUser, jdbcPass );
          _conceptTableInfos = createTableInfos( connection, conceptTables );
       } catch ( SQLException sqlE ) {
-         if ( !connected ) {
+         if ( connection == null ) {
             LOGGER.error( "Could not Connect to Concept Factory " + name );
          } else {
             LOGGER.error( "Could not create Concept Data Selection Call", sqlE );
+            JdbcConnectionFactory.getInstance().releaseConnection( connection );
          }
          throw sqlE;
       }
+      _connection = connection;
+   }
+
+   /**
+    * Closes the concept lookup calls and gives back the Connection, which is closed once no other resource uses it
+    */
+   @Override
+   public void close() {
+      for ( ConceptTableInfo conceptTableInfo : _conceptTableInfos ) {
+         try {
+            conceptTableInfo.__preparedStatement.close();
+         } catch ( SQLException sqlE ) {
+            LOGGER.warn( "Could not close Concept Data Selection Call " + sqlE.getMessage() );
+         }
+      }
+      JdbcConnectionFactory.getInstance().releaseConnection( _connection );
    }
 
    /**
@@ -14,11 +14,11 @@ import java.util.Properties;
  * @version %I%
  * @since 9/23/2014
  */
-final public class UmlsJdbcConceptFactory implements ConceptFactory {
+final public class UmlsJdbcConceptFactory implements ConceptFactory, AutoCloseable {
 
    static private final Logger LOGGER = Logger.getLogger( "UmlsJdbcConceptFactory" );
 
-   final private ConceptFactory _delegateConceptFactory;
+   final private JdbcConceptFactory _delegateConceptFactory;
 
 
    public UmlsJdbcConceptFactory( final String name, final UimaContext uimaContext, final Properties properties )
@@ -55,4 +55,12 @@ final public class UmlsJdbcConceptFactory implements ConceptFactory {
       return _delegateConceptFactory.createConcepts( cuiCodes );
    }
 
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public void close() {
+      _delegateConceptFactory.close();
+   }
+
 }
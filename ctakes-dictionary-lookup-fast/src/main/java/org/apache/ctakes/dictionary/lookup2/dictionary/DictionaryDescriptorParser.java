@@ -28,6 +28,7 @@ import org.apache.uima.analysis_engine.annotator.AnnotatorContextException;
 import org.jdom.Document;
 import org.jdom.Element;
 import org.jdom.JDOMException;
+import org.jdom.filter.ElementFilter;
 import org.jdom.input.SAXBuilder;
 
 import java.io.IOException;
@@ -136,6 +137,35 @@ final public class DictionaryDescriptorParser {
             consumer );
    }
 
+   /**
+    * Finds resources such as bsv files and database urls that are named in the descriptor, without creating anything
+    *
+    * @param descriptorFile XML-formatted file
+    * @param propertyKey    key of the properties to find, for instance {@code bsvPath} or {@code jdbcUrl}
+    * @return values of the properties with the key in all dictionaries, concept factories and the consumer
+    * @throws AnnotatorContextException if the xml could not be parsed
+    */
+   static public Collection<String> parsePropertyValues( final InputStream descriptorFile, final String propertyKey )
+         throws AnnotatorContextException {
+      final SAXBuilder saxBuilder = new SAXBuilder();
+      Document doc;
+      try {
+         doc = saxBuilder.build( descriptorFile );
+      } catch ( JDOMException | IOException jdomioE ) {
+         throw new AnnotatorContextException(
+               "Could not parse ", EMPTY_OBJECT_ARRAY, jdomioE );
+      }
+      final Collection<String> values = new LinkedHashSet<>();
+      final Iterator propertyElements = doc.getRootElement().getDescendants( new ElementFilter( "property" ) );
+      while ( propertyElements.hasNext() ) {
+         final Element propertyElement = (Element)propertyElements.next();
+         if ( propertyKey.equals( propertyElement.getAttributeValue( "key" ) ) ) {
+            values.add( propertyElement.getAttributeValue( "value" ) );
+         }
+      }
+      return values;
+   }
+
    /**
     * Creates dictionary engines by parsing the section defined by {@link this.DICTIONARIES_KEY}
     *
@@ -27,6 +27,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -42,7 +43,7 @@ import static org.apache.ctakes.dictionary.lookup2.util.JdbcConnectionFactory.*;
  * Affiliation: CHIP-NLP
  * Date: 3/26/13
  */
-final public class JdbcRareWordDictionary extends AbstractRareWordDictionary {
+final public class JdbcRareWordDictionary extends AbstractRareWordDictionary implements AutoCloseable {
 
    /**
     * Column (field) indices in the database.  Notice that these are constant and not configurable.
@@ -64,7 +65,9 @@ final public class JdbcRareWordDictionary extends AbstractRareWordDictionary {
    static public final String RARE_WORD_TABLE = "rareWordTable";
 
 
+   private Connection _connection;
    private PreparedStatement _selectTermCall;
+   final private String _tableName;
 
 
    public JdbcRareWordDictionary( final String name, final UimaContext uimaContext, final Properties properties )
@@ -84,18 +87,20 @@ final public class JdbcRareWordDictionary extends AbstractRareWordDictionary {
                                   final String tableName )
          throws SQLException {
       super( name );
+      _tableName = tableName;
       boolean connected = false;
       try {
          // DO NOT use try with resources here.  Try with resources uses a closable and closes it when exiting the try
-         final Connection connection = JdbcConnectionFactory.getInstance()
+         _connection = JdbcConnectionFactory.getInstance()
                .getConnection( jdbcDriver, jdbcUrl, jdbcUser, jdbcPass );
-         connected = connection != null;
-         _selectTermCall = createSelectCall( connection, tableName );
+         connected = _connection != null;
+         _selectTermCall = createSelectCall( _connection, tableName );
       } catch ( SQLException sqlE ) {
          if ( !connected ) {
             LOGGER.error( "Could not Connect to Dictionary " + name );
          } else {
             LOGGER.error( "Could not create Term Data Selection Call", sqlE );
+            JdbcConnectionFactory.getInstance().releaseConnection( _connection );
          }
          throw sqlE;
       }
@@ -129,6 +134,35 @@ final public class JdbcRareWordDictionary extends AbstractRareWordDictionary {
       return rareWordTerms;
    }
 
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public long getTermCount() {
+      final String countSql = "SELECT COUNT(*) FROM " + _tableName;
+      try ( Statement statement = _connection.createStatement();
+            ResultSet resultSet = statement.executeQuery( countSql ) ) {
+         return resultSet.next() ? resultSet.getLong( 1 ) : 0;
+      } catch ( SQLException sqlE ) {
+         LOGGER.warn( "Could not count terms in " + _tableName + " " + sqlE.getMessage() );
+      }
+      return -1;
+   }
+
+   /**
+    * Closes the term lookup call and gives back the Connection, which is closed once no other resource uses it
+    *
+    * @throws SQLException if the term lookup call could not be closed
+    */
+   @Override
+   public void close() throws SQLException {
+      try {
+         _selectTermCall.close();
+      } finally {
+         JdbcConnectionFactory.getInstance().releaseConnection( _connection );
+      }
+   }
+
    /**
     * @return an sql call to use for term lookup
     * @throws SQLException if the {@code PreparedStatement} could not be created or changed
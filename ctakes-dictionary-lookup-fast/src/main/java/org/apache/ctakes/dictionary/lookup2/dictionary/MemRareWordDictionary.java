@@ -54,4 +54,16 @@ final public class MemRareWordDictionary extends AbstractRareWordDictionary {
       return _rareWordTermMap.getCollection( rareWordText );
    }
 
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public long getTermCount() {
+      long termCount = 0;
+      for ( Collection<RareWordTerm> terms : _rareWordTermMap.getAllCollections() ) {
+         termCount += terms.size();
+      }
+      return termCount;
+   }
+
 }
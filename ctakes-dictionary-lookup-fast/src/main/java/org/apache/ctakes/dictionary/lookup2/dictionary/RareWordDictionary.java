@@ -56,4 +56,11 @@ public interface RareWordDictionary {
     */
    public Collection<RareWordTerm> getRareWordHits( final String rareWordText );
 
+   /**
+    * @return number of terms in the dictionary, or -1 if the dictionary cannot count its terms
+    */
+   default public long getTermCount() {
+      return -1;
+   }
+
 }
@@ -0,0 +1,370 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.dictionary.lookup2.util;
+
+import org.apache.ctakes.core.resource.FileLocator;
+import org.apache.ctakes.dictionary.lookup2.dictionary.DictionaryDescriptorParser;
+import org.apache.ctakes.dictionary.lookup2.dictionary.RareWordDictionary;
+import org.apache.log4j.Logger;
+import org.apache.uima.UimaContext;
+import org.apache.uima.analysis_engine.annotator.AnnotatorContextException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds versions of the dictionaries, concept factories and consumer specified by a dictionary descriptor,
+ * so that a long-running pipeline can pick up changed dictionaries without being restarted.
+ * <p/>
+ * A new version is loaded in the background while documents continue to use the current version,
+ * and is swapped in between documents.  Each document holds on to the version that it started with,
+ * and an old version is released once the last document using it has finished.
+ * <p/>
+ * Resources that implement {@link AutoCloseable} are closed on release.  A reload drops the connections that the
+ * {@link JdbcConnectionFactory} reuses for the database urls of the descriptor, so the next version opens new ones.
+ * An in-process hsql database is loaded once per process, so the next version opens a copy of its files
+ * while the previous version keeps using the data that it loaded.  If the next version cannot be loaded
+ * then the current version stays in use.
+ */
+final public class DictionarySpecRegistry {
+
+   static private final Logger LOGGER = Logger.getLogger( "DictionarySpecRegistry" );
+
+   static private final Object[] EMPTY_OBJECT_ARRAY = new Object[ 0 ];
+
+   // Descriptor property keys of files and databases used by dictionaries and concept factories
+   static private final String BSV_PATH_KEY = "bsvPath";
+
+   /**
+    * A single load of the dictionary descriptor, with some statistics on the load
+    */
+   static public final class Version {
+      private final int __number;
+      private final DictionarySpec __dictionarySpec;
+      private final long __loadMillis;
+      private final long __heapBytes;
+      private final Map<String, Long> __termCounts;
+      // Documents using this version, plus one while this is the current version
+      private final AtomicInteger __holds = new AtomicInteger( 1 );
+      private final CountDownLatch __released = new CountDownLatch( 1 );
+
+      private Version( final int number, final DictionarySpec dictionarySpec,
+                       final long loadMillis, final long heapBytes ) {
+         __number = number;
+         __dictionarySpec = dictionarySpec;
+         __loadMillis = loadMillis;
+         __heapBytes = heapBytes;
+         final Map<String, Long> termCounts = new TreeMap<>();
+         for ( RareWordDictionary dictionary : dictionarySpec.getDictionaries() ) {
+            termCounts.put( dictionary.getName(), dictionary.getTermCount() );
+         }
+         __termCounts = Collections.unmodifiableMap( termCounts );
+      }
+
+      public int getNumber() {
+         return __number;
+      }
+
+      public DictionarySpec getDictionarySpec() {
+         return __dictionarySpec;
+      }
+
+      /**
+       * @return milliseconds taken to load the dictionaries and concept factories
+       */
+      public long getLoadMillis() {
+         return __loadMillis;
+      }
+
+      /**
+       * @return growth of the used heap during the load.
+       * This is approximate, as other threads may allocate and the garbage collector may run during the load
+       */
+      public long getHeapBytes() {
+         return __heapBytes;
+      }
+
+      /**
+       * @return dictionary names and their term counts, -1 for dictionaries that cannot count their terms
+       */
+      public Map<String, Long> getTermCounts() {
+         return __termCounts;
+      }
+
+      /**
+       * @return true once the last document using this version has finished and its resources have been closed
+       */
+      public boolean isReleased() {
+         return __released.getCount() == 0;
+      }
+   }
+
+
+   private final String _descriptorFilePath;
+   private final UimaContext _uimaContext;
+   private final AtomicReference<Version> _currentVersion = new AtomicReference<>();
+   private final AtomicInteger _versionCount = new AtomicInteger();
+   private ScheduledExecutorService _loadExecutor;
+   // Watched files and their modification times when last loaded
+   private volatile Map<File, Long> _watchedFiles = Collections.emptyMap();
+
+   /**
+    * @param descriptorFilePath path to the dictionary descriptor xml
+    * @param uimaContext        context handed to the dictionaries, concept factories and consumer of every version
+    */
+   public DictionarySpecRegistry( final String descriptorFilePath, final UimaContext uimaContext ) {
+      _descriptorFilePath = descriptorFilePath;
+      _uimaContext = uimaContext;
+   }
+
+   /**
+    * Loads a version on the calling thread and makes it the current version
+    *
+    * @throws AnnotatorContextException if the descriptor could not be read or its resources could not be loaded
+    */
+   public void load() throws AnnotatorContextException {
+      setCurrentVersion( loadVersion() );
+   }
+
+   /**
+    * Loads a version in the background.  Documents use the current version until the new version is ready.
+    *
+    * @return the new version, which is null if it could not be loaded and the current version was kept
+    */
+   public Future<Version> reload() {
+      return getLoadExecutor().submit( this::reloadVersion );
+   }
+
+   /**
+    * Reloads in the background whenever the descriptor file or a file that it names is modified.
+    * Watched files are the descriptor, bsv files of {@code bsvPath} properties and the script files of
+    * in-process hsql databases of {@code jdbcUrl} properties.  Files within a jar cannot be watched.
+    *
+    * @param periodSeconds seconds between checks of the files, 0 to never check
+    */
+   public void watchDescriptor( final int periodSeconds ) {
+      if ( periodSeconds <= 0 ) {
+         return;
+      }
+      _watchedFiles = getWatchableFiles();
+      if ( _watchedFiles.isEmpty() ) {
+         LOGGER.warn( "Cannot watch Dictionary Descriptor " + _descriptorFilePath + " for changes" );
+         return;
+      }
+      getLoadExecutor().scheduleWithFixedDelay( this::checkWatchedFiles,
+            periodSeconds, periodSeconds, TimeUnit.SECONDS );
+      LOGGER.info( "Checking " + _watchedFiles.size() + " dictionary files for changes every "
+                   + periodSeconds + " seconds" );
+   }
+
+   /**
+    * @return the version that new documents will use
+    */
+   public Version getCurrentVersion() {
+      return _currentVersion.get();
+   }
+
+   /**
+    * Holds the current version for a document.  Every call must be followed by {@link #release(Version)}
+    *
+    * @return the version to use for the whole document
+    */
+   public Version acquire() {
+      while ( true ) {
+         final Version version = _currentVersion.get();
+         if ( version == null ) {
+            throw new IllegalStateException( "No dictionaries are loaded from " + _descriptorFilePath );
+         }
+         // A version without holds has been swapped out and released, so the current version has already changed
+         final int holds = version.__holds.get();
+         if ( holds > 0 && version.__holds.compareAndSet( holds, holds + 1 ) ) {
+            return version;
+         }
+      }
+   }
+
+   /**
+    * @param version version acquired for a document that is done
+    */
+   public void release( final Version version ) {
+      if ( version.__holds.decrementAndGet() == 0 ) {
+         releaseVersion( version );
+      }
+   }
+
+   /**
+    * Stops watching and reloading, and releases the current version once documents using it are done
+    */
+   synchronized public void close() {
+      if ( _loadExecutor != null ) {
+         _loadExecutor.shutdownNow();
+         _loadExecutor = null;
+      }
+      final Version version = _currentVersion.getAndSet( null );
+      if ( version != null ) {
+         release( version );
+      }
+   }
+
+   synchronized private ScheduledExecutorService getLoadExecutor() {
+      if ( _loadExecutor == null ) {
+         _loadExecutor = Executors.newSingleThreadScheduledExecutor( r -> {
+            final Thread thread = new Thread( r, "DictionaryLoader" );
+            thread.setDaemon( true );
+            return thread;
+         } );
+      }
+      return _loadExecutor;
+   }
+
+   private void checkWatchedFiles() {
+      for ( Map.Entry<File, Long> watchedFile : _watchedFiles.entrySet() ) {
+         if ( watchedFile.getKey().lastModified() != watchedFile.getValue() ) {
+            LOGGER.info( "Dictionary file " + watchedFile.getKey().getPath() + " has changed" );
+            reloadVersion();
+            return;
+         }
+      }
+   }
+
+   /**
+    * @return the descriptor and the files that it names which exist outside of jars, with their modification times
+    */
+   private Map<File, Long> getWatchableFiles() {
+      final Collection<String> filePaths = new ArrayList<>();
+      filePaths.add( _descriptorFilePath );
+      filePaths.addAll( getPropertyValues( BSV_PATH_KEY ) );
+      for ( String jdbcUrl : getPropertyValues( JdbcConnectionFactory.JDBC_URL ) ) {
+         final String databaseFilePath = JdbcConnectionFactory.getDatabaseFilePath( jdbcUrl );
+         if ( databaseFilePath != null ) {
+            filePaths.add( databaseFilePath );
+         }
+      }
+      final Map<File, Long> watchableFiles = new LinkedHashMap<>();
+      for ( String filePath : filePaths ) {
+         final File file = FileLocator.getFileQuiet( filePath );
+         if ( file != null && file.isFile() ) {
+            watchableFiles.put( file, file.lastModified() );
+         }
+      }
+      return Collections.unmodifiableMap( watchableFiles );
+   }
+
+   /**
+    * @param propertyKey key of properties in the descriptor
+    * @return values of the properties, empty if the descriptor could not be read
+    */
+   private Collection<String> getPropertyValues( final String propertyKey ) {
+      try ( InputStream descriptorStream = FileLocator.getAsStream( _descriptorFilePath ) ) {
+         return DictionaryDescriptorParser.parsePropertyValues( descriptorStream, propertyKey );
+      } catch ( IOException | AnnotatorContextException multE ) {
+         LOGGER.warn( "Could not read " + propertyKey + " from " + _descriptorFilePath + " " + multE.getMessage() );
+      }
+      return Collections.emptyList();
+   }
+
+   /**
+    * @return the new current version, or null if it could not be loaded
+    */
+   private Version reloadVersion() {
+      final JdbcConnectionFactory connectionFactory = JdbcConnectionFactory.getInstance();
+      try {
+         for ( String jdbcUrl : new LinkedHashSet<>( getPropertyValues( JdbcConnectionFactory.JDBC_URL ) ) ) {
+            if ( JdbcConnectionFactory.isInProcessDatabase( jdbcUrl ) ) {
+               connectionFactory.copyDatabase( jdbcUrl );
+            } else {
+               connectionFactory.dropConnection( jdbcUrl );
+            }
+         }
+         final Version version = loadVersion();
+         setCurrentVersion( version );
+         return version;
+      } catch ( AnnotatorContextException | IOException | RuntimeException multE ) {
+         LOGGER.error( "Could not reload dictionaries, keeping the current version", multE );
+      } finally {
+         if ( !_watchedFiles.isEmpty() ) {
+            _watchedFiles = getWatchableFiles();
+         }
+      }
+      return null;
+   }
+
+   private Version loadVersion() throws AnnotatorContextException {
+      final int number = _versionCount.incrementAndGet();
+      LOGGER.info( "Loading dictionary version " + number + " from " + _descriptorFilePath );
+      final Runtime runtime = Runtime.getRuntime();
+      final long startHeap = runtime.totalMemory() - runtime.freeMemory();
+      final long startMillis = System.currentTimeMillis();
+      final DictionarySpec dictionarySpec;
+      try ( InputStream descriptorStream = FileLocator.getAsStream( _descriptorFilePath ) ) {
+         dictionarySpec = DictionaryDescriptorParser.parseDescriptor( descriptorStream, _uimaContext );
+      } catch ( IOException ioE ) {
+         throw new AnnotatorContextException( "Could not read " + _descriptorFilePath, EMPTY_OBJECT_ARRAY, ioE );
+      }
+      final long loadMillis = System.currentTimeMillis() - startMillis;
+      final long heapBytes = Math.max( 0, runtime.totalMemory() - runtime.freeMemory() - startHeap );
+      final Version version = new Version( number, dictionarySpec, loadMillis, heapBytes );
+      LOGGER.info( "Loaded dictionary version " + number + " in " + loadMillis + " ms using about "
+                   + heapBytes / ( 1024 * 1024 ) + " MB of heap" );
+      for ( Map.Entry<String, Long> termCount : version.__termCounts.entrySet() ) {
+         LOGGER.info( "   " + termCount.getKey() + " terms: "
+                      + ( termCount.getValue() < 0 ? "unknown" : termCount.getValue() ) );
+      }
+      return version;
+   }
+
+   private void setCurrentVersion( final Version version ) {
+      final Version previous = _currentVersion.getAndSet( version );
+      if ( previous == null ) {
+         LOGGER.info( "Using dictionary version " + version.__number );
+      } else {
+         LOGGER.info( "Switched from dictionary version " + previous.__number + " to version " + version.__number );
+         // Drop the hold of the current version.  Documents still using the previous version keep their own holds
+         release( previous );
+      }
+   }
+
+   static private void releaseVersion( final Version version ) {
+      final DictionarySpec dictionarySpec = version.__dictionarySpec;
+      final Collection<Object> resources = new ArrayList<>( dictionarySpec.getDictionaries() );
+      resources.addAll( dictionarySpec.getConceptFactories() );
+      resources.add( dictionarySpec.getConsumer() );
+      for ( Object resource : resources ) {
+         if ( resource instanceof AutoCloseable ) {
+            try {
+               ((AutoCloseable)resource).close();
+            } catch ( Exception e ) {
+               LOGGER.warn( "Could not close " + resource.getClass().getSimpleName() + " " + e.getMessage() );
+            }
+         }
+      }
+      version.__released.countDown();
+      LOGGER.info( "Released dictionary version " + version.__number );
+   }
+
+}
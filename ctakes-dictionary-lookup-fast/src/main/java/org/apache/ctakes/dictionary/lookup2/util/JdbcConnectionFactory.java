@@ -3,17 +3,29 @@ package org.apache.ctakes.dictionary.lookup2.util;
 import org.apache.ctakes.core.resource.FileLocator;
 import org.apache.log4j.Logger;
 
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.nio.file.Files;
 import java.sql.Connection;
 import java.sql.Driver;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.*;
 
 /**
  * Some JDBC Connections can be reused, for instance by a Dictionary and Concept Factory.
- * This Singleton keeps a map of JDBC URLs to open and reusable Connections
+ * This Singleton keeps a map of JDBC URLs to open and reusable Connections.
+ * <p/>
+ * Users that are done with a Connection can give it back with {@link #releaseConnection(Connection)}.
+ * A Connection is closed once every user that obtained it has given it back.
+ * <p/>
+ * An in-process hsql database is loaded once per process, and Connections opened while it is loaded share its data.
+ * To read changed database files while the database is still in use, {@link #copyDatabase(String)} makes later
+ * Connections open a private copy of the files.
  *
  * @author SPF , chip-nlp
  * @version %I%
@@ -35,7 +47,28 @@ public enum JdbcConnectionFactory {
    static private final String FILE_PREFIX = "file:";
    static private final String HSQL_FILE_PREFIX = HSQL_PREFIX + FILE_PREFIX;
    static private final String HSQL_DB_EXT = ".script";
+   // Files of an hsql database, the script first as it is the only one that must exist
+   static private final String[] HSQL_FILE_EXTS = { HSQL_DB_EXT, ".properties", ".data", ".backup", ".log" };
    private final Map<String, Connection> CONNECTIONS = Collections.synchronizedMap( new HashMap<String, Connection>() );
+   // Open Connections and their users, including Connections that have been dropped from the url map
+   private final Map<Connection, ConnectionHolds> HOLDS = new IdentityHashMap<>();
+   // Directories with copies of in-process hsql databases that new Connections open, by url
+   private final Map<String, File> DATABASE_COPIES = new HashMap<>();
+
+   static private final class ConnectionHolds {
+      private final String __jdbcUrl;
+      // Url of the database that was actually opened, which differs for copies and relative paths
+      private final String __databaseUrl;
+      // Directory of the copy of the database files that was opened, null for the original files
+      private final File __databaseCopy;
+      private int __count;
+
+      private ConnectionHolds( final String jdbcUrl, final String databaseUrl, final File databaseCopy ) {
+         __jdbcUrl = jdbcUrl;
+         __databaseUrl = databaseUrl;
+         __databaseCopy = databaseCopy;
+      }
+   }
 
    public static JdbcConnectionFactory getInstance() {
       return INSTANCE;
@@ -52,16 +85,20 @@ public enum JdbcConnectionFactory {
     * @throws SQLException if a JDBC Driver could not be created or registered,
     *                      or if a Connection could not be made to the given <code>jdbcUrl</code>
     */
-   public Connection getConnection( final String jdbcDriver,
-                                    final String jdbcUrl,
-                                    final String jdbcUser,
-                                    final String jdbcPass ) throws SQLException {
+   synchronized public Connection getConnection( final String jdbcDriver,
+                                                 final String jdbcUrl,
+                                                 final String jdbcUser,
+                                                 final String jdbcPass ) throws SQLException {
       Connection connection = CONNECTIONS.get( jdbcUrl );
       if ( connection != null ) {
+         HOLDS.get( connection ).__count++;
          return connection;
       }
       String trueJdbcUrl = jdbcUrl;
-      if ( jdbcUrl.startsWith( HSQL_FILE_PREFIX ) ) {
+      final File databaseCopy = DATABASE_COPIES.get( jdbcUrl );
+      if ( databaseCopy != null ) {
+         trueJdbcUrl = HSQL_PREFIX + getCopyFile( jdbcUrl, databaseCopy ).toURI().toString();
+      } else if ( jdbcUrl.startsWith( HSQL_FILE_PREFIX ) ) {
          // Hack for hsqldb file needing to be absolute or relative to current working directory
 //         trueJdbcUrl = HSQL_FILE_PREFIX + getConnectionUrl( jdbcUrl );
          trueJdbcUrl = HSQL_PREFIX + getConnectionUrl( jdbcUrl );
@@ -78,6 +115,10 @@ public enum JdbcConnectionFactory {
          LOGGER.error( "Could not create Driver " + jdbcDriver, multE );
          throw new SQLException( multE );
       }
+      if ( isInProcessDatabase( jdbcUrl ) && countDatabaseHolders( trueJdbcUrl ) > 0 ) {
+         LOGGER.warn( "Previous Connections to " + jdbcUrl + " are still in use, so a new Connection reads the data"
+                      + " that they loaded, not the current database files" );
+      }
       LOGGER.info( "Connecting to " + jdbcUrl + ":" );
       final Timer timer = new Timer();
       timer.scheduleAtFixedRate( new DotPlotter(), 333, 333 );
@@ -96,9 +137,161 @@ public enum JdbcConnectionFactory {
       EOL_LOGGER.info( "" );
       LOGGER.info( " Database connected" );
       CONNECTIONS.put( jdbcUrl, connection );
+      final ConnectionHolds holds = new ConnectionHolds( jdbcUrl, trueJdbcUrl, databaseCopy );
+      holds.__count = 1;
+      HOLDS.put( connection, holds );
       return connection;
    }
 
+   /**
+    * Gives back a Connection obtained with {@link #getConnection(String, String, String, String)}.
+    * The Connection is closed when every user has given it back.  If no other Connection is open to an in-process
+    * hsql database then the database is shut down, so that the next Connection reads its files again, and a copy of
+    * the database files is deleted.
+    *
+    * @param connection a Connection that the caller no longer uses
+    */
+   synchronized public void releaseConnection( final Connection connection ) {
+      final ConnectionHolds holds = HOLDS.get( connection );
+      if ( holds == null ) {
+         return;
+      }
+      holds.__count--;
+      if ( holds.__count > 0 ) {
+         return;
+      }
+      HOLDS.remove( connection );
+      CONNECTIONS.remove( holds.__jdbcUrl, connection );
+      boolean shutdown = isInProcessDatabase( holds.__jdbcUrl );
+      if ( shutdown && countDatabaseHolders( holds.__databaseUrl ) > 0 ) {
+         LOGGER.warn( "Not shutting down " + holds.__jdbcUrl + " as other Connections still use it.  Until they are"
+                      + " given back new Connections read the data loaded then, not the current database files" );
+         shutdown = false;
+      }
+      try {
+         if ( shutdown && !connection.isClosed() ) {
+            // Lookups do not change the database, so there is nothing to write back to files that may have changed
+            try ( Statement statement = connection.createStatement() ) {
+               statement.execute( "SHUTDOWN IMMEDIATELY" );
+            }
+         }
+         connection.close();
+         LOGGER.info( "Closed Connection to " + holds.__jdbcUrl );
+      } catch ( SQLException sqlE ) {
+         LOGGER.warn( "Could not close Connection to " + holds.__jdbcUrl + " " + sqlE.getMessage() );
+      }
+      if ( shutdown && holds.__databaseCopy != null ) {
+         DATABASE_COPIES.remove( holds.__jdbcUrl, holds.__databaseCopy );
+         deleteCopy( holds.__databaseCopy );
+      }
+   }
+
+   /**
+    * Makes later Connections to an in-process hsql database open a copy of its current files.
+    * Connections that are already open keep the data that they loaded, and the files can change again meanwhile.
+    * The copy is deleted when the database is shut down.
+    *
+    * @param jdbcUrl url of an in-process hsql database
+    * @throws IOException if the database files could not be copied
+    */
+   synchronized public void copyDatabase( final String jdbcUrl ) throws IOException {
+      if ( !isInProcessDatabase( jdbcUrl ) ) {
+         throw new IOException( jdbcUrl + " is not an in-process hsql database" );
+      }
+      final String urlDbPath = jdbcUrl.substring( HSQL_FILE_PREFIX.length() );
+      final String urlString = FileLocator.getResource( urlDbPath + HSQL_DB_EXT ).toExternalForm();
+      final String databaseUrl = urlString.substring( 0, urlString.length() - HSQL_DB_EXT.length() );
+      final File databaseCopy = Files.createTempDirectory( "ctakes-hsqldb-" ).toFile();
+      final File copyFile = getCopyFile( jdbcUrl, databaseCopy );
+      try {
+         for ( String extension : HSQL_FILE_EXTS ) {
+            try ( InputStream stream = new URL( databaseUrl + extension ).openStream() ) {
+               Files.copy( stream, new File( copyFile.getPath() + extension ).toPath() );
+            } catch ( FileNotFoundException fnfE ) {
+               if ( extension.equals( HSQL_DB_EXT ) ) {
+                  throw fnfE;
+               }
+            }
+         }
+      } catch ( IOException ioE ) {
+         deleteCopy( databaseCopy );
+         throw ioE;
+      }
+      LOGGER.info( "Copied " + jdbcUrl + " to " + databaseCopy.getPath() );
+      final File previousCopy = DATABASE_COPIES.put( jdbcUrl, databaseCopy );
+      dropConnection( jdbcUrl );
+      if ( previousCopy != null
+           && countDatabaseHolders( HSQL_PREFIX + getCopyFile( jdbcUrl, previousCopy ).toURI().toString() ) == 0 ) {
+         deleteCopy( previousCopy );
+      }
+   }
+
+   /**
+    * Stops reusing the open Connection for a url, so that the next request opens a new Connection.
+    * The previous Connection stays open until its users have given it back.
+    *
+    * @param jdbcUrl -
+    */
+   synchronized public void dropConnection( final String jdbcUrl ) {
+      if ( CONNECTIONS.remove( jdbcUrl ) != null ) {
+         LOGGER.info( "Dropped reusable Connection to " + jdbcUrl );
+      }
+   }
+
+   /**
+    * @param jdbcUrl -
+    * @return true if the url is for an hsql database in files, which is opened within this process
+    */
+   static public boolean isInProcessDatabase( final String jdbcUrl ) {
+      return jdbcUrl != null && jdbcUrl.startsWith( HSQL_FILE_PREFIX );
+   }
+
+   /**
+    * @param jdbcUrl -
+    * @return path to the script file of an in-process hsql database, or null if the url is not for one
+    */
+   static public String getDatabaseFilePath( final String jdbcUrl ) {
+      if ( !isInProcessDatabase( jdbcUrl ) ) {
+         return null;
+      }
+      return jdbcUrl.substring( HSQL_FILE_PREFIX.length() ) + HSQL_DB_EXT;
+   }
+
+   /**
+    * @param databaseUrl url of a database that was actually opened
+    * @return the number of open Connections to the database
+    */
+   private int countDatabaseHolders( final String databaseUrl ) {
+      int count = 0;
+      for ( ConnectionHolds holds : HOLDS.values() ) {
+         if ( holds.__databaseUrl.equals( databaseUrl ) ) {
+            count++;
+         }
+      }
+      return count;
+   }
+
+   /**
+    * @return the database path within a copy directory, without extension
+    */
+   static private File getCopyFile( final String jdbcUrl, final File databaseCopy ) {
+      return new File( databaseCopy, new File( jdbcUrl.substring( HSQL_FILE_PREFIX.length() ) ).getName() );
+   }
+
+   static private void deleteCopy( final File databaseCopy ) {
+      final File[] files = databaseCopy.listFiles();
+      if ( files != null ) {
+         for ( File file : files ) {
+            if ( !file.delete() ) {
+               LOGGER.warn( "Could not delete database copy file " + file.getPath() );
+            }
+         }
+      }
+      if ( !databaseCopy.delete() ) {
+         LOGGER.warn( "Could not delete database copy " + databaseCopy.getPath() );
+      }
+   }
+
    /**
     * Uses {@link org.apache.ctakes.core.resource.FileLocator} to get the canonical path to the database file
     *
@@ -0,0 +1,306 @@
+package org.apache.ctakes.dictionary.lookup2.util;
+
+import org.apache.ctakes.core.util.collection.CollectionMap;
+import org.apache.ctakes.dictionary.lookup2.concept.Concept;
+import org.apache.ctakes.dictionary.lookup2.consumer.TermConsumer;
+import org.apache.ctakes.dictionary.lookup2.dictionary.JdbcRareWordDictionary;
+import org.apache.ctakes.dictionary.lookup2.dictionary.RareWordDictionary;
+import org.apache.ctakes.dictionary.lookup2.term.RareWordTerm;
+import org.apache.ctakes.dictionary.lookup2.textspan.TextSpan;
+import org.apache.uima.UimaContext;
+import org.apache.uima.jcas.JCas;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that documents keep the version of the dictionaries that they started with,
+ * and that every version is released exactly once.
+ */
+final public class DictionarySpecRegistryTest {
+
+   /**
+    * Dictionary that counts how often it is closed
+    */
+   static public final class ClosingDictionary implements RareWordDictionary, AutoCloseable {
+      static private final Collection<ClosingDictionary> CREATED = new ConcurrentLinkedQueue<>();
+      private final String _name;
+      private final AtomicInteger _closeCount = new AtomicInteger();
+
+      public ClosingDictionary( final String name, final UimaContext uimaContext, final Properties properties ) {
+         _name = name;
+         CREATED.add( this );
+      }
+
+      @Override
+      public String getName() {
+         return _name;
+      }
+
+      @Override
+      public Collection<RareWordTerm> getRareWordHits( final FastLookupToken fastLookupToken ) {
+         return getRareWordHits( fastLookupToken.getText() );
+      }
+
+      @Override
+      public Collection<RareWordTerm> getRareWordHits( final String rareWordText ) {
+         if ( _closeCount.get() > 0 ) {
+            throw new IllegalStateException( "Lookup in closed dictionary " + _name );
+         }
+         return Collections.emptyList();
+      }
+
+      @Override
+      public void close() {
+         _closeCount.incrementAndGet();
+      }
+   }
+
+   /**
+    * Consumer that does nothing
+    */
+   static public final class NoTermConsumer implements TermConsumer {
+      public NoTermConsumer( final UimaContext uimaContext, final Properties properties ) {
+      }
+
+      @Override
+      public void consumeHits( final JCas jcas, final RareWordDictionary dictionary,
+                               final CollectionMap<TextSpan, Long, ? extends Collection<Long>> textSpanCuis,
+                               final CollectionMap<Long, Concept, ? extends Collection<Concept>> cuiConcepts ) {
+      }
+
+      @Override
+      public void consumeTypeIdHits( final JCas jcas, final String codingScheme, final int cTakesSemantic,
+                                     final CollectionMap<TextSpan, Long, ? extends Collection<Long>> textSpanCuis,
+                                     final CollectionMap<Long, Concept, ? extends Collection<Concept>> cuiConcepts ) {
+      }
+   }
+
+   @Rule
+   public TemporaryFolder _folder = new TemporaryFolder();
+
+   private File _termFile;
+   private DictionarySpecRegistry _registry;
+
+   @Before
+   public void loadDescriptor() throws Exception {
+      ClosingDictionary.CREATED.clear();
+      _termFile = _folder.newFile( "terms.bsv" );
+      final File descriptor = _folder.newFile( "descriptor.xml" );
+      final String xml = "<lookupSpecification>\n"
+                         + "<dictionaries><dictionary><name>Closing</name>\n"
+                         + "<implementationName>" + ClosingDictionary.class.getName() + "</implementationName>\n"
+                         + "<properties><property key=\"bsvPath\" value=\"" + _termFile.getAbsolutePath() + "\"/>"
+                         + "</properties>\n"
+                         + "</dictionary></dictionaries>\n"
+                         + "<conceptFactories/>\n"
+                         + "<dictionaryConceptPairs/>\n"
+                         + "<rareWordConsumer><name>None</name>\n"
+                         + "<implementationName>" + NoTermConsumer.class.getName() + "</implementationName>\n"
+                         + "<properties/></rareWordConsumer>\n"
+                         + "</lookupSpecification>\n";
+      Files.write( descriptor.toPath(), xml.getBytes( StandardCharsets.UTF_8 ) );
+      _registry = new DictionarySpecRegistry( descriptor.getAbsolutePath(), null );
+      _registry.load();
+   }
+
+   @After
+   public void closeRegistry() {
+      _registry.close();
+   }
+
+   static private ClosingDictionary getDictionary( final DictionarySpecRegistry.Version version ) {
+      return (ClosingDictionary)version.getDictionarySpec().getDictionaries().iterator().next();
+   }
+
+   @Test
+   public void testHeldVersionSurvivesSwap() throws Exception {
+      final DictionarySpecRegistry.Version first = _registry.acquire();
+      final DictionarySpecRegistry.Version second = _registry.reload().get();
+      assertNotNull( "Reload failed", second );
+      assertNotSame( first, second );
+      assertSame( second, _registry.getCurrentVersion() );
+
+      // The document holding the first version can still use it
+      assertFalse( first.isReleased() );
+      assertEquals( 0, getDictionary( first )._closeCount.get() );
+      getDictionary( first ).getRareWordHits( "word" );
+
+      final DictionarySpecRegistry.Version next = _registry.acquire();
+      assertSame( "New documents should use the new version", second, next );
+      _registry.release( next );
+
+      _registry.release( first );
+      assertTrue( first.isReleased() );
+      assertEquals( 1, getDictionary( first )._closeCount.get() );
+      assertFalse( second.isReleased() );
+
+      _registry.close();
+      assertTrue( second.isReleased() );
+      assertEquals( 1, getDictionary( second )._closeCount.get() );
+      try {
+         _registry.acquire();
+         fail( "Acquired a version after close" );
+      } catch ( IllegalStateException isE ) {
+         // expected
+      }
+   }
+
+   @Test
+   public void testEveryVersionReleasedOnce() throws Exception {
+      final ExecutorService documents = Executors.newFixedThreadPool( 4 );
+      final AtomicInteger processed = new AtomicInteger();
+      final Collection<Future<?>> futures = new ArrayList<>();
+      for ( int i = 0; i < 4; i++ ) {
+         futures.add( documents.submit( () -> {
+            for ( int j = 0; j < 500; j++ ) {
+               final DictionarySpecRegistry.Version version = _registry.acquire();
+               try {
+                  getDictionary( version ).getRareWordHits( "word" );
+                  processed.incrementAndGet();
+               } finally {
+                  _registry.release( version );
+               }
+            }
+            return null;
+         } ) );
+      }
+      for ( int i = 0; i < 10; i++ ) {
+         assertNotNull( "Reload failed", _registry.reload().get() );
+      }
+      for ( Future<?> future : futures ) {
+         future.get();
+      }
+      documents.shutdown();
+      assertEquals( 2000, processed.get() );
+
+      _registry.close();
+      assertEquals( 11, ClosingDictionary.CREATED.size() );
+      for ( ClosingDictionary dictionary : ClosingDictionary.CREATED ) {
+         assertEquals( "Dictionary " + dictionary.getName() + " closed", 1, dictionary._closeCount.get() );
+      }
+   }
+
+   /**
+    * Writes an in-process hsql database with a rare word table holding the given words, and shuts it down
+    */
+   static private void writeDatabase( final File databasePath, final String... words ) throws Exception {
+      final String url = "jdbc:hsqldb:file:" + databasePath.getAbsolutePath();
+      try ( Connection connection = DriverManager.getConnection( url, "sa", "" );
+            Statement statement = connection.createStatement() ) {
+         statement.execute( "CREATE TABLE CUI_TERMS ( CUI BIGINT, RINDEX INTEGER, TCOUNT INTEGER,"
+                            + " TEXT VARCHAR(48), RWORD VARCHAR(48) )" );
+         for ( int i = 0; i < words.length; i++ ) {
+            statement.execute( "INSERT INTO CUI_TERMS VALUES ( " + ( i + 1 ) + ", 0, 1, '" + words[ i ] + "', '"
+                               + words[ i ] + "' )" );
+         }
+         statement.execute( "SHUTDOWN" );
+      }
+   }
+
+   static private DictionarySpecRegistry createJdbcRegistry( final File descriptor, final File databasePath )
+         throws Exception {
+      final String xml = "<lookupSpecification>\n"
+                         + "<dictionaries><dictionary><name>Jdbc</name>\n"
+                         + "<implementationName>" + JdbcRareWordDictionary.class.getName() + "</implementationName>\n"
+                         + "<properties>"
+                         + "<property key=\"jdbcDriver\" value=\"org.hsqldb.jdbc.JDBCDriver\"/>"
+                         + "<property key=\"jdbcUrl\" value=\"jdbc:hsqldb:file:" + databasePath.getAbsolutePath()
+                         + "\"/>"
+                         + "<property key=\"jdbcUser\" value=\"sa\"/>"
+                         + "<property key=\"jdbcPass\" value=\"\"/>"
+                         + "<property key=\"rareWordTable\" value=\"cui_terms\"/>"
+                         + "</properties>\n"
+                         + "</dictionary></dictionaries>\n"
+                         + "<conceptFactories/>\n"
+                         + "<dictionaryConceptPairs/>\n"
+                         + "<rareWordConsumer><name>None</name>\n"
+                         + "<implementationName>" + NoTermConsumer.class.getName() + "</implementationName>\n"
+                         + "<properties/></rareWordConsumer>\n"
+                         + "</lookupSpecification>\n";
+      Files.write( descriptor.toPath(), xml.getBytes( StandardCharsets.UTF_8 ) );
+      final DictionarySpecRegistry registry = new DictionarySpecRegistry( descriptor.getAbsolutePath(), null );
+      registry.load();
+      return registry;
+   }
+
+   static private int countHits( final DictionarySpecRegistry.Version version, final String word ) {
+      return version.getDictionarySpec().getDictionaries().iterator().next().getRareWordHits( word ).size();
+   }
+
+   @Test
+   public void testReloadsChangedHsqlDatabase() throws Exception {
+      final File databasePath = new File( _folder.newFolder( "db" ), "terms" );
+      writeDatabase( databasePath, "aspirin" );
+      final DictionarySpecRegistry registry = createJdbcRegistry( _folder.newFile( "jdbc.xml" ), databasePath );
+      try {
+         final DictionarySpecRegistry.Version first = registry.acquire();
+         assertEquals( 1, countHits( first, "aspirin" ) );
+         assertEquals( 0, countHits( first, "ibuprofen" ) );
+
+         // Rebuild the database files while the first version still has the database open
+         final File rebuiltPath = new File( _folder.newFolder( "rebuilt" ), "terms" );
+         writeDatabase( rebuiltPath, "aspirin", "ibuprofen" );
+         for ( String extension : new String[]{ ".script", ".properties" } ) {
+            Files.copy( new File( rebuiltPath.getPath() + extension ).toPath(),
+                  new File( databasePath.getPath() + extension ).toPath(), StandardCopyOption.REPLACE_EXISTING );
+         }
+
+         final DictionarySpecRegistry.Version second = registry.reload().get();
+         assertNotNull( "Reload failed", second );
+         assertSame( second, registry.getCurrentVersion() );
+         assertEquals( 1, countHits( second, "ibuprofen" ) );
+         // The document holding the first version keeps the data that it started with
+         assertFalse( first.isReleased() );
+         assertEquals( 1, countHits( first, "aspirin" ) );
+         assertEquals( 0, countHits( first, "ibuprofen" ) );
+
+         registry.release( first );
+         assertTrue( first.isReleased() );
+         // Shutting down the first version's database must not write its old data over the rebuilt files
+         final String script = new String( Files.readAllBytes( new File( databasePath.getPath() + ".script" ).toPath() ),
+               StandardCharsets.UTF_8 );
+         assertTrue( script.contains( "ibuprofen" ) );
+
+         // A failed reload keeps the current version in use
+         assertTrue( new File( databasePath.getPath() + ".script" ).delete() );
+         assertNull( registry.reload().get() );
+         final DictionarySpecRegistry.Version kept = registry.acquire();
+         assertSame( second, kept );
+         assertFalse( second.isReleased() );
+         assertEquals( 1, countHits( kept, "ibuprofen" ) );
+         registry.release( kept );
+      } finally {
+         registry.close();
+      }
+   }
+
+   @Test
+   public void testReloadsChangedDictionaryFile() throws Exception {
+      final DictionarySpecRegistry.Version first = _registry.getCurrentVersion();
+      _registry.watchDescriptor( 1 );
+      assertTrue( _termFile.setLastModified( _termFile.lastModified() + 10000 ) );
+      final long giveUp = System.currentTimeMillis() + 20000;
+      while ( _registry.getCurrentVersion() == first && System.currentTimeMillis() < giveUp ) {
+         Thread.sleep( 100 );
+      }
+      assertNotSame( "Changed dictionary file was not reloaded", first, _registry.getCurrentVersion() );
+      assertTrue( first.isReleased() );
+   }
+
+}
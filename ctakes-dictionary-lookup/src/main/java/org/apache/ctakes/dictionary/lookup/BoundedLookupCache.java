@@ -0,0 +1,257 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.dictionary.lookup;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * A lookup cache bounded by the total weight of its results.
+ * The least recently used results are evicted first.
+ * With frequency admission (TinyLFU) a new result only replaces the least recently used result
+ * when its text has been looked up more often, which keeps rare phrases from flushing common ones.
+ *
+ * @param <V> type of cached lookup result
+ */
+final public class BoundedLookupCache<V> implements LookupCache<V> {
+
+   private final long _maxWeight;
+   private final ToIntFunction<V> _weigher;
+   private final FrequencySketch _sketch;
+   // access order, eldest entry is the least recently used
+   private final Map<String, WeightedValue<V>> _values;
+   private long _weight;
+   private long _hitCount;
+   private long _missCount;
+   private long _evictionCount;
+
+   /**
+    * @param maxWeight          maximum total weight of cached results
+    * @param weigher            weight of a single result, at least 1
+    * @param frequencyAdmission true to refuse new results whose text is looked up less often than the eviction victim
+    */
+   public BoundedLookupCache( final long maxWeight, final ToIntFunction<V> weigher, final boolean frequencyAdmission ) {
+      _maxWeight = maxWeight;
+      _weigher = weigher;
+      _sketch = frequencyAdmission ? new FrequencySketch( maxWeight ) : null;
+      _values = new LinkedHashMap<>( 16, 0.75f, true );
+   }
+
+   /**
+    * @param maxSize maximum number of cached results
+    * @param <V>     type of cached lookup result
+    * @return a cache evicting the least recently used results
+    */
+   static public <V> BoundedLookupCache<V> createLruCache( final int maxSize ) {
+      return new BoundedLookupCache<>( maxSize, v -> 1, false );
+   }
+
+   /**
+    * @param maxSize maximum number of cached results
+    * @param <V>     type of cached lookup result
+    * @return a cache evicting the least recently used results and only admitting frequently used results when full
+    */
+   static public <V> BoundedLookupCache<V> createTinyLfuCache( final int maxSize ) {
+      return new BoundedLookupCache<>( maxSize, v -> 1, true );
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   synchronized public V get( final String text ) {
+      if ( _sketch != null ) {
+         _sketch.increment( text );
+      }
+      final WeightedValue<V> value = _values.get( text );
+      if ( value == null ) {
+         _missCount++;
+         return null;
+      }
+      _hitCount++;
+      return value._value;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   synchronized public void put( final String text, final V value ) {
+      final int weight = Math.max( 1, _weigher.applyAsInt( value ) );
+      final WeightedValue<V> previous = _values.remove( text );
+      if ( previous != null ) {
+         _weight -= previous._weight;
+      }
+      if ( weight > _maxWeight ) {
+         _evictionCount++;
+         return;
+      }
+      final Iterator<Map.Entry<String, WeightedValue<V>>> eldestIterator = _values.entrySet().iterator();
+      while ( _weight + weight > _maxWeight ) {
+         final Map.Entry<String, WeightedValue<V>> eldest = eldestIterator.next();
+         if ( _sketch != null && previous == null
+              && _sketch.frequency( text ) <= _sketch.frequency( eldest.getKey() ) ) {
+            // the new result is not used more often than the result it would replace
+            _evictionCount++;
+            return;
+         }
+         eldestIterator.remove();
+         _weight -= eldest.getValue()._weight;
+         _evictionCount++;
+      }
+      _values.put( text, new WeightedValue<>( value, weight ) );
+      _weight += weight;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   synchronized public void clear() {
+      _values.clear();
+      _weight = 0;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   synchronized public int size() {
+      return _values.size();
+   }
+
+   /**
+    * @return total weight of cached results
+    */
+   synchronized public long getWeight() {
+      return _weight;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   synchronized public long getHitCount() {
+      return _hitCount;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   synchronized public long getMissCount() {
+      return _missCount;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   synchronized public long getEvictionCount() {
+      return _evictionCount;
+   }
+
+   /**
+    * @return the size and counters of the cache
+    */
+   @Override
+   synchronized public String toString() {
+      return "size=" + _values.size() + " weight=" + _weight + "/" + _maxWeight
+             + " hits=" + _hitCount + " misses=" + _missCount + " evictions=" + _evictionCount;
+   }
+
+
+   static private final class WeightedValue<V> {
+      private final V _value;
+      private final int _weight;
+
+      private WeightedValue( final V value, final int weight ) {
+         _value = value;
+         _weight = weight;
+      }
+   }
+
+
+   /**
+    * Approximate lookup counts of texts in a count-min sketch of 4 bit counters.
+    * All counts are halved periodically so that the sketch follows recent lookups.
+    */
+   static private final class FrequencySketch {
+      static private final int[] SEEDS = { 0x97cb3127, 0xb3f9d1c5, 0x5bd1e995, 0x7feb352d };
+      static private final int MAX_COUNT = 15;
+      static private final int MAX_WIDTH = 1 << 24;
+
+      private final byte[][] _counts;
+      private final int _mask;
+      private final int _sampleSize;
+      private int _additions;
+
+      private FrequencySketch( final long capacity ) {
+         int width = 16;
+         while ( width < capacity && width < MAX_WIDTH ) {
+            width <<= 1;
+         }
+         _counts = new byte[ SEEDS.length ][ width ];
+         _mask = width - 1;
+         _sampleSize = 10 * width;
+      }
+
+      private void increment( final String text ) {
+         final int hash = text.hashCode();
+         boolean added = false;
+         for ( int row = 0; row < SEEDS.length; row++ ) {
+            final int index = indexOf( hash, row );
+            if ( _counts[ row ][ index ] < MAX_COUNT ) {
+               _counts[ row ][ index ]++;
+               added = true;
+            }
+         }
+         if ( added && ++_additions >= _sampleSize ) {
+            age();
+         }
+      }
+
+      private int frequency( final String text ) {
+         final int hash = text.hashCode();
+         int frequency = MAX_COUNT;
+         for ( int row = 0; row < SEEDS.length; row++ ) {
+            frequency = Math.min( frequency, _counts[ row ][ indexOf( hash, row ) ] );
+         }
+         return frequency;
+      }
+
+      private int indexOf( final int hash, final int row ) {
+         int h = (hash ^ SEEDS[ row ]) * 0x9e3779b9;
+         h ^= h >>> 16;
+         return h & _mask;
+      }
+
+      private void age() {
+         for ( byte[] row : _counts ) {
+            for ( int i = 0; i < row.length; i++ ) {
+               row[ i ] >>= 1;
+            }
+         }
+         _additions /= 2;
+      }
+   }
+
+}
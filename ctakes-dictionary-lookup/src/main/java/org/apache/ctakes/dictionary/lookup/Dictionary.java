@@ -19,6 +19,8 @@
 package org.apache.ctakes.dictionary.lookup;
 
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  *
@@ -48,4 +50,21 @@ public interface Dictionary
      * @throws DictionaryException
      */
     public Collection<MetaDataHit> getEntries(String text) throws DictionaryException;
+
+    /**
+     * Gets the meta data entries of many input texts at once.  Implementations can override this
+     * to read the entries of all the texts in a single pass over the dictionary.
+     * @param texts The input texts.
+     * @return Map of each input text to its Collection of MetaDataHit objects.
+     * @throws DictionaryException
+     */
+    default Map<String, Collection<MetaDataHit>> getEntries(final Collection<String> texts) throws DictionaryException
+    {
+        final Map<String, Collection<MetaDataHit>> textEntries = new HashMap<>( texts.size() );
+        for ( String text : texts )
+        {
+            textEntries.put( text, getEntries( text ) );
+        }
+        return textEntries;
+    }
 }
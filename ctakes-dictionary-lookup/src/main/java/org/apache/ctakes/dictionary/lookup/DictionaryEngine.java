@@ -22,7 +22,10 @@ import org.apache.ctakes.dictionary.lookup.filter.CollectionFilter;
 import org.apache.ctakes.dictionary.lookup.filter.FilterException;
 import org.apache.ctakes.dictionary.lookup.filter.PostLookupFilter;
 import org.apache.ctakes.dictionary.lookup.filter.PreLookupFilter;
+import org.apache.log4j.Logger;
 
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -33,13 +36,24 @@ import java.util.*;
  * metadata.</li>
  * <li>Collection filtering. Filters the collection of dictionary hits based on
  * metadata and/or collection information.</li>
- * <li>Caching. Caches dictionary hits.</li>
+ * <li>Caching. Caches dictionary hits in {@link LookupCache}s.  By default only the
+ * texts added with {@link #addCacheEntry(String)} are cached; an engine created with
+ * caches also caches the hits of each lookup.</li>
  * <li>Case Sensitivity. Keeps case or makes case irrelevant to lookup.</li>
  * </ol>
  */
 public class DictionaryEngine {
+   /**
+    * Default maximum number of results in each cache of a dictionary with a cache element in its lookup descriptor
+    */
+   static public final int DEFAULT_CACHE_SIZE = 50000;
+
+   static private final Logger LOGGER = Logger.getLogger( "DictionaryEngine" );
+
    final private Dictionary _dictionary;
    final private boolean _keepCase;
+   // true to cache the results of lookups, false to only cache added entries
+   final private boolean _cacheLookups;
 
    // use Lists to store filters to maintain order
    private List<PreLookupFilter> _preLookupFilterList = new ArrayList<>();
@@ -48,9 +62,9 @@ public class DictionaryEngine {
 
    // cache objs
    // key = String text, value = Boolean
-   private Map<String, Boolean> _binaryLookupCacheMap = new HashMap<>();
-   // key = String text, value = Collection of MetaDataHits
-   private Map<String, Collection<MetaDataHit>> _metaLookupCacheMap = new HashMap<>();
+   final private LookupCache<Boolean> _binaryLookupCache;
+   // key = String text, value = unmodifiable Collection of MetaDataHits
+   final private LookupCache<Collection<MetaDataHit>> _metaLookupCache;
 
 
    /**
@@ -58,10 +72,58 @@ public class DictionaryEngine {
     * @param keepCase   Determines whether to keep character Upper or Lower casing.
     *                   False indicates that casing will be ignored by lower casing
     *                   all lookups.
+    *                   Only texts added with {@link #addCacheEntry(String)} are cached, and they are never evicted.
     */
    public DictionaryEngine( final Dictionary dictionary, final boolean keepCase ) {
+      this( dictionary, keepCase, BoundedLookupCache.createLruCache( Integer.MAX_VALUE ),
+            BoundedLookupCache.createLruCache( Integer.MAX_VALUE ), false );
+   }
+
+   /**
+    * @param dictionary        Dictionary to use for lookup operations.
+    * @param keepCase          Determines whether to keep character Upper or Lower casing.
+    * @param binaryLookupCache cache of results for {@link #binaryLookup(String)}, which caches each looked up text
+    * @param metaLookupCache   cache of results for {@link #metaLookup(String)}, which caches each looked up text
+    */
+   public DictionaryEngine( final Dictionary dictionary, final boolean keepCase,
+                            final LookupCache<Boolean> binaryLookupCache,
+                            final LookupCache<Collection<MetaDataHit>> metaLookupCache ) {
+      this( dictionary, keepCase, binaryLookupCache, metaLookupCache, true );
+   }
+
+   private DictionaryEngine( final Dictionary dictionary, final boolean keepCase,
+                             final LookupCache<Boolean> binaryLookupCache,
+                             final LookupCache<Collection<MetaDataHit>> metaLookupCache,
+                             final boolean cacheLookups ) {
       _dictionary = dictionary;
       _keepCase = keepCase;
+      _binaryLookupCache = binaryLookupCache;
+      _metaLookupCache = metaLookupCache;
+      _cacheLookups = cacheLookups;
+   }
+
+   /**
+    * @param maxWeight          maximum weight of the cache.  Each text weighs 1 plus its number of hits.
+    * @param frequencyAdmission true to only replace cached hits with hits for more frequently used text
+    * @return a cache for meta lookups bounded by the number of hits that it holds
+    */
+   static public LookupCache<Collection<MetaDataHit>> createMetaLookupCache( final long maxWeight,
+                                                                            final boolean frequencyAdmission ) {
+      return new BoundedLookupCache<>( maxWeight, hits -> 1 + hits.size(), frequencyAdmission );
+   }
+
+   /**
+    * @return cache of results for {@link #binaryLookup(String)}, e.g. to read its counters
+    */
+   public LookupCache<Boolean> getBinaryLookupCache() {
+      return _binaryLookupCache;
+   }
+
+   /**
+    * @return cache of results for {@link #metaLookup(String)}, e.g. to read its counters
+    */
+   public LookupCache<Collection<MetaDataHit>> getMetaLookupCache() {
+      return _metaLookupCache;
    }
 
    /**
@@ -96,8 +158,8 @@ public class DictionaryEngine {
 
    /**
     * Adds an entry to the dictionary lookup cache. The given text will be
-    * cached immediately when this method is invoked. This cache does not
-    * expire.
+    * cached immediately when this method is invoked. The entry may later be
+    * evicted to keep the cache within its bounds.
     *
     * @param text to add to the caches as a hit or miss
     */
@@ -105,11 +167,72 @@ public class DictionaryEngine {
       if ( !_keepCase ) {
          text = text.toLowerCase();
       }
-      final boolean isHit = binaryLookup( text );
-      _binaryLookupCacheMap.put( text, isHit );
+      _binaryLookupCache.put( text, _dictionary.contains( text ) );
+      cacheMetaLookup( text );
+   }
 
-      final Collection<MetaDataHit> metaDataHits = metaLookup( text );
-      _metaLookupCacheMap.put( text, metaDataHits );
+   /**
+    * Adds the most frequent texts of a corpus to the dictionary lookup cache.
+    * Each line of the corpus is a text, optionally followed by a tab and its frequency.
+    * Texts without a frequency are counted once per line.  Lines with an invalid frequency are skipped.
+    *
+    * @param reader corpus of texts
+    * @param count  maximum number of texts to cache
+    * @return number of texts cached
+    * @throws IOException         if the corpus cannot be read
+    * @throws DictionaryException if the dictionary cannot be read
+    * @throws FilterException     -
+    */
+   public int preloadCache( final BufferedReader reader, final int count )
+         throws IOException, DictionaryException, FilterException {
+      final Map<String, Long> frequencies = new HashMap<>();
+      int lineNumber = 0;
+      String line = reader.readLine();
+      while ( line != null ) {
+         lineNumber++;
+         final int tab = line.indexOf( '\t' );
+         String text = (tab < 0 ? line : line.substring( 0, tab )).trim();
+         final long frequency = tab < 0 ? 1 : parseFrequency( line.substring( tab + 1 ) );
+         if ( frequency < 0 ) {
+            LOGGER.warn( "Skipping preload line " + lineNumber + " with invalid frequency: " + line );
+         } else if ( !text.isEmpty() ) {
+            if ( !_keepCase ) {
+               text = text.toLowerCase();
+            }
+            frequencies.merge( text, frequency, Long::sum );
+         }
+         line = reader.readLine();
+      }
+      final List<Map.Entry<String, Long>> sortedFrequencies = new ArrayList<>( frequencies.entrySet() );
+      sortedFrequencies.sort( ( e1, e2 ) -> Long.compare( e2.getValue(), e1.getValue() ) );
+      final int cacheCount = Math.min( count, sortedFrequencies.size() );
+      for ( int i = 0; i < cacheCount; i++ ) {
+         addCacheEntry( sortedFrequencies.get( i ).getKey() );
+      }
+      return cacheCount;
+   }
+
+   /**
+    * @param frequency text of a frequency
+    * @return the frequency, or -1 if the text is not a non-negative number
+    */
+   static private long parseFrequency( final String frequency ) {
+      try {
+         return Math.max( -1, Long.parseLong( frequency.trim() ) );
+      } catch ( NumberFormatException nfE ) {
+         return -1;
+      }
+   }
+
+   /**
+    * @param text text to look up, possible case change must have already been accounted for by calling method.
+    * @return unmodifiable dictionary hits for the text, which are now cached
+    */
+   private Collection<MetaDataHit> cacheMetaLookup( final String text ) throws DictionaryException {
+      final Collection<MetaDataHit> metaDataHits
+            = Collections.unmodifiableCollection( new ArrayList<>( _dictionary.getEntries( text ) ) );
+      _metaLookupCache.put( text, metaDataHits );
+      return metaDataHits;
    }
 
    /**
@@ -131,11 +254,72 @@ public class DictionaryEngine {
          return Collections.emptySet();
       }
       // not part of filter
-      Collection<MetaDataHit> metaDataHitCol = _metaLookupCacheMap.get( text );
+      Collection<MetaDataHit> metaDataHitCol = _metaLookupCache.get( text );
       if ( metaDataHitCol == null ) {
          // not part of cache, go ahead and do lookup
-         metaDataHitCol = _dictionary.getEntries( text );
+         metaDataHitCol = _cacheLookups ? cacheMetaLookup( text ) : _dictionary.getEntries( text );
+      }
+      return applyHitFilters( metaDataHitCol );
+   }
+
+   /**
+    * Gets the MetaDataHits of many texts.  Texts that are not cached are read from the Dictionary
+    * with a single call.  Both Pre-lookup and Post-lookup filtering are applied.
+    *
+    * @param texts texts to look up
+    * @return map of each text to its Collection of MetaDataHit objects
+    * @throws DictionaryException
+    * @throws FilterException
+    */
+   public Map<String, Collection<MetaDataHit>> metaLookup( final Collection<String> texts )
+         throws DictionaryException, FilterException {
+      final Map<String, Collection<MetaDataHit>> lookupTextHits = new HashMap<>( texts.size() );
+      final Set<String> uncachedTexts = new LinkedHashSet<>();
+      for ( String text : texts ) {
+         final String lookupText = _keepCase ? text : text.toLowerCase();
+         if ( lookupTextHits.containsKey( lookupText ) || uncachedTexts.contains( lookupText )
+              || isFilteredByPreLookup( lookupText ) ) {
+            continue;
+         }
+         final Collection<MetaDataHit> metaDataHits = _metaLookupCache.get( lookupText );
+         if ( metaDataHits == null ) {
+            uncachedTexts.add( lookupText );
+         } else {
+            lookupTextHits.put( lookupText, metaDataHits );
+         }
+      }
+      if ( !uncachedTexts.isEmpty() ) {
+         final Map<String, Collection<MetaDataHit>> entries = _dictionary.getEntries( uncachedTexts );
+         for ( String lookupText : uncachedTexts ) {
+            final Collection<MetaDataHit> entryHits = entries.get( lookupText );
+            final Collection<MetaDataHit> metaDataHits = entryHits == null
+                                                         ? Collections.<MetaDataHit>emptyList()
+                                                         : Collections.unmodifiableCollection( new ArrayList<>( entryHits ) );
+            if ( _cacheLookups ) {
+               _metaLookupCache.put( lookupText, metaDataHits );
+            }
+            lookupTextHits.put( lookupText, metaDataHits );
+         }
       }
+      final Map<String, Collection<MetaDataHit>> textHits = new HashMap<>( texts.size() );
+      for ( String text : texts ) {
+         final Collection<MetaDataHit> metaDataHits = lookupTextHits.get( _keepCase ? text : text.toLowerCase() );
+         // texts removed by pre-filtering have no hits
+         textHits.put( text, metaDataHits == null ? Collections.<MetaDataHit>emptySet() : applyHitFilters( metaDataHits ) );
+      }
+      return textHits;
+   }
+
+   /**
+    * Helper method that applies Post-lookup and Collection filtering to dictionary hits.
+    *
+    * @param metaDataHits hits to filter, which are not modified
+    * @return the hits that pass all filters
+    * @throws FilterException
+    */
+   private Collection<MetaDataHit> applyHitFilters( final Collection<MetaDataHit> metaDataHits )
+         throws FilterException {
+      Collection<MetaDataHit> metaDataHitCol = metaDataHits;
       // apply post-filtering
       if ( !_postLookupFilterList.isEmpty() ) {
          final Set<MetaDataHit> mdhRemovalSet = new HashSet<>();
@@ -149,7 +333,11 @@ public class DictionaryEngine {
                }
             }
          }
-         metaDataHitCol.removeAll( mdhRemovalSet );
+         if ( !mdhRemovalSet.isEmpty() ) {
+            // cached hits are shared, remove from a copy
+            metaDataHitCol = new ArrayList<>( metaDataHitCol );
+            metaDataHitCol.removeAll( mdhRemovalSet );
+         }
       }
       // apply collection filtering
       if ( !_collectionFilterList.isEmpty() ) {
@@ -178,12 +366,16 @@ public class DictionaryEngine {
          return false;
       }
       // not part of filter, go ahead and do lookup
-      final Boolean isHit = _binaryLookupCacheMap.get( text );
+      final Boolean isHit = _binaryLookupCache.get( text );
       if ( isHit != null ) {
          return isHit;
       }
       // not part of cache, go ahead and do lookup
-      return _dictionary.contains( text );
+      final boolean contains = _dictionary.contains( text );
+      if ( _cacheLookups ) {
+         _binaryLookupCache.put( text, contains );
+      }
+      return contains;
    }
 
    /**
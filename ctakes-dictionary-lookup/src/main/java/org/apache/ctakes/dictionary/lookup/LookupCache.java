@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.dictionary.lookup;
+
+/**
+ * Cache of dictionary lookup results used by a {@link DictionaryEngine}.
+ * Implementations must be safe for use by multiple threads.
+ *
+ * @param <V> type of cached lookup result
+ */
+public interface LookupCache<V> {
+
+   /**
+    * @param text lookup text
+    * @return the cached result for the text, or null if there is none
+    */
+   V get( String text );
+
+   /**
+    * @param text  lookup text
+    * @param value result of looking up the text
+    */
+   void put( String text, V value );
+
+   /**
+    * Remove all cached results.  Counters are not reset.
+    */
+   void clear();
+
+   /**
+    * @return number of cached results
+    */
+   int size();
+
+   /**
+    * @return number of calls to {@link #get(String)} that found a result
+    */
+   long getHitCount();
+
+   /**
+    * @return number of calls to {@link #get(String)} that did not find a result
+    */
+   long getMissCount();
+
+   /**
+    * @return number of results removed or refused to keep the cache within its bounds
+    */
+   long getEvictionCount();
+
+}
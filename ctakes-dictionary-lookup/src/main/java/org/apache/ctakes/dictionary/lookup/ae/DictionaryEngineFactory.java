@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.dictionary.lookup.ae;
+
+import org.apache.ctakes.core.resource.FileLocator;
+import org.apache.ctakes.dictionary.lookup.BoundedLookupCache;
+import org.apache.ctakes.dictionary.lookup.Dictionary;
+import org.apache.ctakes.dictionary.lookup.DictionaryEngine;
+import org.apache.ctakes.dictionary.lookup.DictionaryException;
+import org.apache.ctakes.dictionary.lookup.LookupCache;
+import org.apache.ctakes.dictionary.lookup.MetaDataHit;
+import org.apache.ctakes.dictionary.lookup.filter.FilterException;
+import org.apache.log4j.Logger;
+import org.jdom.Element;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Collection;
+
+/**
+ * Creates dictionary engines with the caches set by the optional cache element of a dictionary in a lookup descriptor:
+ * <pre>
+ * &lt;cache maxSize="50000" policy="tinylfu" preloadFile="path/to/phrases.txt" preloadCount="10000"/&gt;
+ * </pre>
+ * The policy is "lru" (default) or "tinylfu".  The preload file has a phrase per line,
+ * optionally followed by a tab and its frequency.
+ */
+final class DictionaryEngineFactory {
+
+   static private final Logger LOGGER = Logger.getLogger( "DictionaryEngineFactory" );
+
+   private DictionaryEngineFactory() {
+   }
+
+   /**
+    * @param dictionary dictionary for the engine
+    * @param keepCase   true to keep the case of looked up text
+    * @param rootDictEl dictionary element of the lookup descriptor
+    * @return an engine with caches set by the cache element, or an engine that does not cache lookups if there is none
+    * @throws IOException         if the preload file cannot be read
+    * @throws DictionaryException if the dictionary cannot be read while preloading
+    * @throws FilterException     -
+    */
+   static DictionaryEngine createDictionaryEngine( final Dictionary dictionary, final boolean keepCase,
+                                                   final Element rootDictEl )
+         throws IOException, DictionaryException, FilterException {
+      final Element cacheEl = rootDictEl.getChild( "cache" );
+      if ( cacheEl == null ) {
+         return new DictionaryEngine( dictionary, keepCase );
+      }
+      final int maxSize = getIntAttribute( cacheEl, "maxSize", DictionaryEngine.DEFAULT_CACHE_SIZE );
+      final boolean tinyLfu = "tinylfu".equalsIgnoreCase( cacheEl.getAttributeValue( "policy" ) );
+      final LookupCache<Boolean> binaryLookupCache = tinyLfu
+                                                     ? BoundedLookupCache.createTinyLfuCache( maxSize )
+                                                     : BoundedLookupCache.createLruCache( maxSize );
+      final LookupCache<Collection<MetaDataHit>> metaLookupCache
+            = DictionaryEngine.createMetaLookupCache( maxSize, tinyLfu );
+      final DictionaryEngine dictionaryEngine
+            = new DictionaryEngine( dictionary, keepCase, binaryLookupCache, metaLookupCache );
+      final String preloadFile = cacheEl.getAttributeValue( "preloadFile" );
+      if ( preloadFile != null && !preloadFile.isEmpty() ) {
+         final int preloadCount = getIntAttribute( cacheEl, "preloadCount", maxSize );
+         try ( BufferedReader reader = new BufferedReader(
+               new InputStreamReader( FileLocator.getAsStream( preloadFile ) ) ) ) {
+            final int cached = dictionaryEngine.preloadCache( reader, preloadCount );
+            LOGGER.info( "Preloaded " + cached + " phrases from " + preloadFile );
+         }
+      }
+      return dictionaryEngine;
+   }
+
+   static private int getIntAttribute( final Element element, final String name, final int defaultValue ) {
+      final String value = element.getAttributeValue( name );
+      if ( value == null || value.trim().isEmpty() ) {
+         return defaultValue;
+      }
+      return Integer.parseInt( value.trim() );
+   }
+
+}
@@ -128,7 +128,7 @@ public class LookupParseUtilities
 						+ LuceneIndexReaderResource.class);
 			}
 			IndexReader indexReader = ((LuceneIndexReaderResource) extResrc).getIndexReader();
-			IndexSearcher indexSearcher = new IndexSearcher(indexReader);
+			IndexSearcher indexSearcher = LuceneDictionaryImpl.getSharedSearcher(indexReader);
 			// Added 'MaxListSize' ohnlp-Bugs-3296301
 			dict = new LuceneDictionaryImpl(indexSearcher, lookupFieldName, maxSizeList);
 		}
@@ -186,7 +186,7 @@ public class LookupParseUtilities
 			dict.retainMetaData(metaFieldName);
 		}
 
-		DictionaryEngine dictEngine = new DictionaryEngine(dict, keepCase.booleanValue()); 
+		DictionaryEngine dictEngine = DictionaryEngineFactory.createDictionaryEngine(dict, keepCase.booleanValue(), rootDictEl);
 
 	    Element excludeList = rootDictEl.getChild("excludeList");
 	    
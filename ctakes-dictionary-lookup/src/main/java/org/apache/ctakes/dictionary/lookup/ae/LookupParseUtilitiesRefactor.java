@@ -23,7 +23,9 @@ import org.apache.ctakes.core.resource.JdbcConnectionResource;
 import org.apache.ctakes.core.resource.LuceneIndexReaderResource;
 import org.apache.ctakes.dictionary.lookup.Dictionary;
 import org.apache.ctakes.dictionary.lookup.DictionaryEngine;
+import org.apache.ctakes.dictionary.lookup.DictionaryException;
 import org.apache.ctakes.dictionary.lookup.algorithms.LookupAlgorithm;
+import org.apache.ctakes.dictionary.lookup.filter.FilterException;
 import org.apache.ctakes.dictionary.lookup.filter.StringPreLookupFilterImpl;
 import org.apache.ctakes.dictionary.lookup.jdbc.JdbcDictionaryImpl;
 import org.apache.ctakes.dictionary.lookup.lucene.LuceneDictionaryImpl;
@@ -118,7 +120,7 @@ final public class LookupParseUtilitiesRefactor {
                                           + LuceneIndexReaderResource.class, new Object[]{extResrc} );
             }
             final IndexReader indexReader = ((LuceneIndexReaderResource) extResrc).getIndexReader();
-            final IndexSearcher indexSearcher = new IndexSearcher( indexReader );
+            final IndexSearcher indexSearcher = LuceneDictionaryImpl.getSharedSearcher( indexReader );
             // Added 'MaxListSize' ohnlp-Bugs-3296301
             dict = new LuceneDictionaryImpl( indexSearcher, lookupFieldName, MAX_LIST_SIZE );
          } else if ( implType.equals( "jdbcImpl" ) ) {
@@ -168,7 +170,12 @@ final public class LookupParseUtilitiesRefactor {
          throw new ResourceAccessException( npE );
       }
       final boolean keepCase = Boolean.parseBoolean( rootDictEl.getAttributeValue( "caseSensitive" ) );
-      final DictionaryEngine dictEngine = new DictionaryEngine( dict, keepCase );
+      final DictionaryEngine dictEngine;
+      try {
+         dictEngine = DictionaryEngineFactory.createDictionaryEngine( dict, keepCase, rootDictEl );
+      } catch ( IOException | DictionaryException | FilterException cacheE ) {
+         throw new ResourceAccessException( cacheE );
+      }
       final Element excludeList = rootDictEl.getChild( "excludeList" );
       if ( excludeList != null && excludeList.getChildren() != null && !excludeList.getChildren().isEmpty() ) {
          addExcludeList( dictEngine, excludeList.getChildren() );
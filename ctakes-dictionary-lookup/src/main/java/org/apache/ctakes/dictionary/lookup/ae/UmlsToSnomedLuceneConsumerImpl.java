@@ -20,6 +20,7 @@ package org.apache.ctakes.dictionary.lookup.ae;
 
 
 import org.apache.ctakes.core.resource.FileResource;
+import org.apache.ctakes.dictionary.lookup.DictionaryEngine;
 import org.apache.ctakes.dictionary.lookup.DictionaryException;
 import org.apache.ctakes.dictionary.lookup.MetaDataHit;
 import org.apache.ctakes.dictionary.lookup.lucene.LuceneDictionaryImpl;
@@ -98,6 +99,8 @@ public class UmlsToSnomedLuceneConsumerImpl extends UmlsToSnomedConsumerImpl {
 
          // We will lookup entries based on lookupFieldName
          snomedLikeCodesIndex = new LuceneDictionaryImpl( indexSearcher, lookupFieldName, iv_maxListSize );
+         // the same cuis are mapped over and over
+         snomedLikeCodesIndex.setResultCacheSize( DictionaryEngine.DEFAULT_CACHE_SIZE );
 
          logger.info( "Loaded Lucene index with " + indexReader.numDocs() + " entries." );
 
@@ -19,6 +19,7 @@
 package org.apache.ctakes.dictionary.lookup.algorithms;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
@@ -90,9 +91,11 @@ public class DirectPassThroughImpl implements LookupAlgorithm
     private Collection<MetaDataHit> getHits(String[] phrases) throws Exception
     {
         Collection<MetaDataHit> mdhCol = new ArrayList<>();
+        // look up all phrases with a single dictionary call
+        Map<String, Collection<MetaDataHit>> phraseMdhCols = iv_dictEngine.metaLookup(Arrays.asList(phrases));
         for (int i = 0; i < phrases.length; i++)
         {
-            Collection<MetaDataHit> curMdhCol = iv_dictEngine.metaLookup(phrases[i]);
+            Collection<MetaDataHit> curMdhCol = phraseMdhCols.get(phrases[i]);
             if (curMdhCol.size() > 0)
             {
                 mdhCol.addAll(curMdhCol);
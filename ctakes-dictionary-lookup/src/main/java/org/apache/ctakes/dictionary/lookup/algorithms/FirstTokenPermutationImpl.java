@@ -21,6 +21,7 @@ package org.apache.ctakes.dictionary.lookup.algorithms;
 import org.apache.ctakes.dictionary.lookup.DictionaryEngine;
 import org.apache.ctakes.dictionary.lookup.MetaDataHit;
 import org.apache.ctakes.dictionary.lookup.phrasebuilder.PhraseBuilder;
+import org.apache.ctakes.dictionary.lookup.phrasebuilder.VariantPhraseBuilderImpl;
 import org.apache.ctakes.dictionary.lookup.vo.LookupAnnotation;
 import org.apache.ctakes.dictionary.lookup.vo.LookupHit;
 import org.apache.ctakes.dictionary.lookup.vo.LookupToken;
@@ -66,8 +67,11 @@ public class FirstTokenPermutationImpl implements LookupAlgorithm {
    final private PhraseBuilder iv_phrBuilder;
 
    final private int iv_maxPermutationLevel;
-   // key = level Integer, value = Permutation list
-   final private Map<Integer, List<List<Integer>>> iv_permCacheMap;
+   // index = level, value = permutations of token indices for the level
+   final private int[][][] iv_permutations;
+   // index = level, value = smallest and largest token index of each permutation, or -1 for an empty permutation
+   final private int[][] iv_permutationMins;
+   final private int[][] iv_permutationMaxs;
 
    private String[] iv_textMetaFieldNames;
 
@@ -88,10 +92,26 @@ public class FirstTokenPermutationImpl implements LookupAlgorithm {
       iv_textMetaFieldNames = textMetaFieldNames;
 
       iv_maxPermutationLevel = maxPermutationLevel;
-      iv_permCacheMap = new HashMap<>( maxPermutationLevel );
+      iv_permutations = new int[ maxPermutationLevel + 1 ][][];
+      iv_permutationMins = new int[ maxPermutationLevel + 1 ][];
+      iv_permutationMaxs = new int[ maxPermutationLevel + 1 ][];
       for ( int i = 0; i <= maxPermutationLevel; i++ ) {
          final List<List<Integer>> permList = PermutationUtil.getPermutationList( i );
-         iv_permCacheMap.put( i, permList );
+         iv_permutations[ i ] = new int[ permList.size() ][];
+         iv_permutationMins[ i ] = new int[ permList.size() ];
+         iv_permutationMaxs[ i ] = new int[ permList.size() ];
+         for ( int p = 0; p < permList.size(); p++ ) {
+            final List<Integer> permutation = permList.get( p );
+            final int[] indices = new int[ permutation.size() ];
+            for ( int j = 0; j < indices.length; j++ ) {
+               indices[ j ] = permutation.get( j );
+            }
+            final int[] sortedIndices = indices.clone();
+            Arrays.sort( sortedIndices );
+            iv_permutations[ i ][ p ] = indices;
+            iv_permutationMins[ i ][ p ] = sortedIndices.length == 0 ? -1 : sortedIndices[ 0 ];
+            iv_permutationMaxs[ i ][ p ] = sortedIndices.length == 0 ? -1 : sortedIndices[ sortedIndices.length - 1 ];
+         }
       }
    }
 
@@ -115,6 +135,9 @@ public class FirstTokenPermutationImpl implements LookupAlgorithm {
       // map of all the token end indices as keys and the tokens with those indices as values
       final Map<Integer, List<LookupToken>> ltEndOffsetMap = getMultipleEndOffsetMap( lookupTokenList );
 
+      // map of first token phrases and the named phrases of their first token hits, first tokens often repeat
+      final Map<List<String>, PhraseTable> firstTokenPhraseTables = new HashMap<>();
+
       final List<LookupHit> lookupHits = new ArrayList<>();
       for ( int currentIndex = 0; currentIndex < lookupTokenList.size(); currentIndex++ ) {
          final LookupToken lookupToken = lookupTokenList.get( currentIndex );
@@ -123,8 +146,16 @@ public class FirstTokenPermutationImpl implements LookupAlgorithm {
          if ( !useForLookup ) {
             continue;
          }
-         final Collection<MetaDataHit> firstTokenHits = getFirstTokenHits( lookupToken );
-         if ( firstTokenHits == null || firstTokenHits.isEmpty() ) {
+         final List<String> firstTokenPhrases
+               = Arrays.asList( iv_phrBuilder.getPhrases( Collections.singletonList( lookupToken ) ) );
+         PhraseTable phraseTable = firstTokenPhraseTables.get( firstTokenPhrases );
+         if ( phraseTable == null ) {
+            final Collection<MetaDataHit> firstTokenHits = getFirstTokenHits( firstTokenPhrases );
+            phraseTable = firstTokenHits.isEmpty() ? PhraseTable.EMPTY_TABLE
+                                                   : new PhraseTable( getNamedMetaDataHits( firstTokenHits ) );
+            firstTokenPhraseTables.put( firstTokenPhrases, phraseTable );
+         }
+         if ( phraseTable == PhraseTable.EMPTY_TABLE ) {
             continue;
          }
          int wEndOffset = -1;
@@ -154,7 +185,7 @@ public class FirstTokenPermutationImpl implements LookupAlgorithm {
          final List<LookupToken> wLookupTokenList = lookupTokenList.subList( startTokenIndex, endTokenIndex + 1 );
          // use permutation algorithm to find any hits inside the window
          // Note: currentIndex - startTokenIndex is always = 0. What was the intention?  12-26-2012 SPF
-         final Collection<LookupHit> lhCol = getLookupHits( firstTokenHits, wLookupTokenList,
+         final Collection<LookupHit> lhCol = getLookupHits( phraseTable, wLookupTokenList,
                                                             currentIndex - startTokenIndex );
          lookupHits.addAll( lhCol );
       }
@@ -184,14 +215,13 @@ public class FirstTokenPermutationImpl implements LookupAlgorithm {
       return namedMetaDataHits;
    }
 
-   private Collection<LookupHit> getLookupHits( final Collection<MetaDataHit> firstTokenHits,
+   private Collection<LookupHit> getLookupHits( final PhraseTable phraseTable,
                                                 final List<LookupToken> wLookupTokenList,
                                                 final int firstTokenIndex ) throws Exception {
       if ( wLookupTokenList.size() - 1 > iv_maxPermutationLevel ) {
          iv_logger.debug( "Beyond permutation cache size." );
          return Collections.emptyList();
       }
-      final Map<String,Set<MetaDataHit>> namedMetaDataHits = getNamedMetaDataHits( firstTokenHits );
 
       final List<LookupHit> lookupHits = new ArrayList<>();
       final LookupToken firstWordLookupToken = wLookupTokenList.get( firstTokenIndex );
@@ -207,54 +237,48 @@ public class FirstTokenPermutationImpl implements LookupAlgorithm {
       if ( firstTokenIndex < wLookupTokenList.size() && permutationIndex > 0 ) {
          permutationIndex--;
       }
-      final List<List<Integer>> permutationList = iv_permCacheMap.get( permutationIndex );
-      for ( List<Integer> permutations : permutationList ) {
-         // Moved sort and offset calculation from inner (per MetaDataHit) iteration 2-21-2013 spf
-         List<Integer> permutationsSorted = (List) ((ArrayList)permutations).clone();
-         Collections.sort( permutationsSorted );
+      final int[][] permutations = iv_permutations[ permutationIndex ];
+      final int[] permutationMins = iv_permutationMins[ permutationIndex ];
+      final int[] permutationMaxs = iv_permutationMaxs[ permutationIndex ];
+      // permutations with a token that is in none of the named phrases cannot match, skip them before building phrases
+      final boolean[] usableTokens = getUsableTokens( wLookupTokenList, phraseTable );
+      final List<LookupToken> tempLookupTokens = new ArrayList<>( permutationIndex );
+      final StringBuilder phraseSB = new StringBuilder();
+      for ( int p = 0; p < permutations.length; p++ ) {
+         final int[] permutation = permutations[ p ];
+         if ( !isUsablePermutation( permutation, firstTokenIndex, usableTokens ) ) {
+            continue;
+         }
          int startOffset = firstWordStartOffset;
          int endOffset = firstWordEndOffset;
-         if ( !permutationsSorted.isEmpty() ) {
-            int firstIdx = permutationsSorted.get( 0 );
-            if ( firstIdx <= firstTokenIndex ) {
-               firstIdx--;
-            }
-            final LookupToken firstToken = wLookupTokenList.get( firstIdx );
+         if ( permutation.length > 0 ) {
+            final LookupToken firstToken = wLookupTokenList.get( getTokenIndex( permutationMins[ p ], firstTokenIndex ) );
             if ( firstToken.getStartOffset() < firstWordStartOffset ) {
                startOffset = firstToken.getStartOffset();
             }
-            int lastIdx = permutationsSorted.get( permutationsSorted.size() - 1 );
-            if ( lastIdx <= firstTokenIndex ) {
-               lastIdx--;
-            }
-            final LookupToken lastToken = wLookupTokenList.get( lastIdx );
+            final LookupToken lastToken = wLookupTokenList.get( getTokenIndex( permutationMaxs[ p ], firstTokenIndex ) );
             if ( lastToken.getEndOffset() > firstWordEndOffset ) {
                endOffset = lastToken.getEndOffset();
             }
          }
          // convert permutation idx back into LookupTokens
-         final List<LookupToken> tempLookupTokens = new ArrayList<>();
-         for ( Integer idx : permutations ) {
-            if ( idx <= firstTokenIndex ) {
-               idx--;
-            }
-            final LookupToken lookupToken = wLookupTokenList.get( idx );
-            tempLookupTokens.add( lookupToken );
+         tempLookupTokens.clear();
+         for ( int idx : permutation ) {
+            tempLookupTokens.add( wLookupTokenList.get( getTokenIndex( idx, firstTokenIndex ) ) );
          }
          final String[] lookupTokenPhrases = iv_phrBuilder.getPhrases( tempLookupTokens );
          for ( String lookupTokenPhrase : lookupTokenPhrases ) {
             // perform toLowerCase() here instead of repeating in each inner loop
             lookupTokenPhrase = lookupTokenPhrase.toLowerCase();
             for ( String firstWordPhrase : firstWordPhrases ) {
-               // perform toLowerCase() here so it isn't done for the whole concatenated string
-//               firstWordPhrase = firstWordPhrase.toLowerCase();
-               final StringBuilder phraseSB = new StringBuilder();
+               phraseSB.setLength( 0 );
                phraseSB.append( firstWordPhrase ).append( ' ' ).append( lookupTokenPhrase );
-               final String fullPhrase = phraseSB.toString().trim();
-               final Set<MetaDataHit> mdhSet = namedMetaDataHits.get( fullPhrase );
-               if ( mdhSet == null ) {
+               // only named phrases are created as strings, so misses do not create any
+               final String fullPhrase = phraseTable.getTrimmedPhrase( phraseSB );
+               if ( fullPhrase == null ) {
                   continue;
                }
+               final Set<MetaDataHit> mdhSet = phraseTable.getMetaDataHits( fullPhrase );
                for ( MetaDataHit mdh : mdhSet ) {
                   final LookupHit lh = new LookupHit( mdh, startOffset, endOffset );
                   lookupHits.add( lh );
@@ -265,6 +289,156 @@ public class FirstTokenPermutationImpl implements LookupAlgorithm {
       return lookupHits;
    }
 
+   /**
+    * @param permutationIdx  index in a permutation
+    * @param firstTokenIndex index of the first token in the window
+    * @return index of the token in the window
+    */
+   static private int getTokenIndex( final int permutationIdx, final int firstTokenIndex ) {
+      return permutationIdx <= firstTokenIndex ? permutationIdx - 1 : permutationIdx;
+   }
+
+   static private boolean isUsablePermutation( final int[] permutation, final int firstTokenIndex,
+                                               final boolean[] usableTokens ) {
+      for ( int idx : permutation ) {
+         if ( !usableTokens[ getTokenIndex( idx, firstTokenIndex ) ] ) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * A variant phrase is made of one variant of each token, so a token can only be part of a named phrase
+    * if one of its variants is in a named phrase.  Lower casing is only done per token for ascii text,
+    * where it gives the same characters as lower casing the whole phrase.
+    *
+    * @param wLookupTokenList tokens in the window
+    * @param phraseTable      lower case named phrases
+    * @return true at the index of each token that may be part of a named phrase
+    */
+   private boolean[] getUsableTokens( final List<LookupToken> wLookupTokenList, final PhraseTable phraseTable ) {
+      final boolean[] usableTokens = new boolean[ wLookupTokenList.size() ];
+      if ( !(iv_phrBuilder instanceof VariantPhraseBuilderImpl) ) {
+         Arrays.fill( usableTokens, true );
+         return usableTokens;
+      }
+      for ( int i = 0; i < usableTokens.length; i++ ) {
+         final String[] variants = iv_phrBuilder.getPhrases( Collections.singletonList( wLookupTokenList.get( i ) ) );
+         for ( String variant : variants ) {
+            if ( !isAscii( variant ) || phraseTable.containsText( variant.toLowerCase() ) ) {
+               usableTokens[ i ] = true;
+               break;
+            }
+         }
+      }
+      return usableTokens;
+   }
+
+   static private boolean isAscii( final String text ) {
+      for ( int i = 0; i < text.length(); i++ ) {
+         if ( text.charAt( i ) > 127 ) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Named phrases of first token hits sorted by hash code,
+    * so that the trimmed text of a builder can be found without creating a string
+    */
+   static private final class PhraseTable {
+      static private final PhraseTable EMPTY_TABLE = new PhraseTable( Collections.emptyMap() );
+
+      private final Map<String, Set<MetaDataHit>> _namedMetaDataHits;
+      private final int[] _hashes;
+      private final String[] _phrases;
+
+      private PhraseTable( final Map<String, Set<MetaDataHit>> namedMetaDataHits ) {
+         _namedMetaDataHits = namedMetaDataHits;
+         final String[] phrases = namedMetaDataHits.keySet().toArray( new String[ namedMetaDataHits.size() ] );
+         // sort primitive hash and index pairs
+         final long[] hashIndices = new long[ phrases.length ];
+         for ( int i = 0; i < phrases.length; i++ ) {
+            hashIndices[ i ] = ((long)phrases[ i ].hashCode() << 32) | i;
+         }
+         Arrays.sort( hashIndices );
+         _hashes = new int[ phrases.length ];
+         _phrases = new String[ phrases.length ];
+         for ( int i = 0; i < phrases.length; i++ ) {
+            _hashes[ i ] = (int)(hashIndices[ i ] >> 32);
+            _phrases[ i ] = phrases[ (int)hashIndices[ i ] ];
+         }
+      }
+
+      /**
+       * @param phrase named phrase
+       * @return first token hits with the name
+       */
+      private Set<MetaDataHit> getMetaDataHits( final String phrase ) {
+         return _namedMetaDataHits.get( phrase );
+      }
+
+      /**
+       * @param text text to find
+       * @return true if the text is within any phrase
+       */
+      private boolean containsText( final String text ) {
+         for ( String phrase : _phrases ) {
+            if ( phrase.contains( text ) ) {
+               return true;
+            }
+         }
+         return false;
+      }
+
+      /**
+       * @param sb phrase builder
+       * @return the phrase equal to the builder text as trimmed by {@link String#trim()}, or null if there is none
+       */
+      private String getTrimmedPhrase( final StringBuilder sb ) {
+         int begin = 0;
+         int end = sb.length();
+         while ( begin < end && sb.charAt( begin ) <= ' ' ) {
+            begin++;
+         }
+         while ( end > begin && sb.charAt( end - 1 ) <= ' ' ) {
+            end--;
+         }
+         int hash = 0;
+         for ( int i = begin; i < end; i++ ) {
+            hash = 31 * hash + sb.charAt( i );
+         }
+         int index = Arrays.binarySearch( _hashes, hash );
+         if ( index < 0 ) {
+            return null;
+         }
+         while ( index > 0 && _hashes[ index - 1 ] == hash ) {
+            index--;
+         }
+         for ( ; index < _hashes.length && _hashes[ index ] == hash; index++ ) {
+            final String phrase = _phrases[ index ];
+            if ( isEqual( phrase, sb, begin, end ) ) {
+               return phrase;
+            }
+         }
+         return null;
+      }
+
+      static private boolean isEqual( final String phrase, final StringBuilder sb, final int begin, final int end ) {
+         if ( phrase.length() != end - begin ) {
+            return false;
+         }
+         for ( int i = 0; i < phrase.length(); i++ ) {
+            if ( phrase.charAt( i ) != sb.charAt( begin + i ) ) {
+               return false;
+            }
+         }
+         return true;
+      }
+   }
+
    /**
     * Extracts the list of LookupAnnotation objects representing noun phrases
     * from the context map.
@@ -516,18 +690,19 @@ public class FirstTokenPermutationImpl implements LookupAlgorithm {
 
 
    /**
-    * Gets the hits for the specified LookupToken. This uses the first token Dictionary.
+    * Gets the hits for the phrases of a LookupToken. This uses the first token Dictionary.
     *
-    * @param firstLookupToken -
+    * @param phrases phrases built for the first LookupToken
     * @return -
     * @throws Exception
     */
-   private Collection<MetaDataHit> getFirstTokenHits( final LookupToken firstLookupToken ) throws Exception {
-      final List<LookupToken> singleTokenList = Arrays.asList( firstLookupToken );
-      final String[] phrases = iv_phrBuilder.getPhrases( singleTokenList );
+   private Collection<MetaDataHit> getFirstTokenHits( final List<String> phrases ) throws Exception {
       final List<MetaDataHit> metaDataHits = new ArrayList<>();
+      // look up all phrases with a single dictionary call
+      final Map<String, Collection<MetaDataHit>> phrasesMetaDataHits
+            = iv_firstTokenDictEngine.metaLookup( phrases );
       for ( String phrase : phrases ) {
-         final Collection<MetaDataHit> phraseMetaDataHits = iv_firstTokenDictEngine.metaLookup( phrase );
+         final Collection<MetaDataHit> phraseMetaDataHits = phrasesMetaDataHits.get( phrase );
          if ( !phraseMetaDataHits.isEmpty() ) {
             metaDataHits.addAll( phraseMetaDataHits );
          }
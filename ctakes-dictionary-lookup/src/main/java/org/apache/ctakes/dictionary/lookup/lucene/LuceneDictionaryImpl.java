@@ -19,36 +19,56 @@
 package org.apache.ctakes.dictionary.lookup.lucene;
 
 import org.apache.ctakes.dictionary.lookup.AbstractBaseDictionary;
+import org.apache.ctakes.dictionary.lookup.BoundedLookupCache;
 import org.apache.ctakes.dictionary.lookup.Dictionary;
 import org.apache.ctakes.dictionary.lookup.DictionaryException;
+import org.apache.ctakes.dictionary.lookup.LookupCache;
 import org.apache.ctakes.dictionary.lookup.MetaDataHit;
 import org.apache.log4j.Logger;
 import org.apache.lucene.analysis.core.KeywordAnalyzer;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DocsEnum;
+import org.apache.lucene.index.Fields;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.queryparser.classic.QueryParserBase;
 import org.apache.lucene.search.*;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.Version;
 
 import java.io.IOException;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
+import java.lang.ref.WeakReference;
+import java.util.*;
 
 
 /**
+ * Entries are read by seeking the lookup terms directly in the terms of the lookup field.
+ * All the terms of a batch of texts are sorted so that each index segment is read in a single forward pass.
+ * Only the retained meta data fields of matching documents are loaded.
+ * Texts with a hyphen, and terms with more documents than the maximum number of hits, are searched with a query.
+ *
  * @author Mayo Clinic
  */
 public class LuceneDictionaryImpl extends AbstractBaseDictionary {
+   // one searcher per open index reader, searchers are thread safe.
+   // A searcher references its reader, so it is held weakly to let unused readers be collected.
+   static private final Map<IndexReader, WeakReference<IndexSearcher>> SHARED_SEARCHERS = new WeakHashMap<>();
+
    final private IndexSearcher iv_searcher;
    final private String iv_lookupFieldName;
    //ohnlp-Bugs-3296301 limits the search results to fixed 100 records.
-   private int iv_maxHits;
+   final private int iv_maxHits;
    // LOG4J logger based on class name
    private Logger iv_logger = Logger.getLogger( getClass().getName() );
+   // results of getEntries, only used when a cache size is set
+   private volatile LookupCache<Collection<MetaDataHit>> iv_resultCache;
 
    /**
     * Constructor
@@ -66,62 +86,110 @@ public class LuceneDictionaryImpl extends AbstractBaseDictionary {
       iv_searcher = searcher;
       iv_lookupFieldName = lookupFieldName;
       // Added 'maxListHits'
-      iv_maxHits = maxListHits;
+      if ( maxListHits == 0 ) {
+         iv_logger.warn( "iv_maxHits was 0, using Integer.MAX_VALUE instead" );
+         iv_maxHits = Integer.MAX_VALUE;
+      } else {
+         iv_maxHits = maxListHits;
+      }
       // TODO Only take perfect matches?
    }
 
+   /**
+    * @param indexReader reader of a lucene index
+    * @return a searcher for the reader, shared by all dictionaries using the same reader until the reader is closed
+    */
+   static public IndexSearcher getSharedSearcher( final IndexReader indexReader ) {
+      synchronized ( SHARED_SEARCHERS ) {
+         final WeakReference<IndexSearcher> searcherReference = SHARED_SEARCHERS.get( indexReader );
+         IndexSearcher searcher = searcherReference == null ? null : searcherReference.get();
+         if ( searcher == null ) {
+            searcher = new IndexSearcher( indexReader );
+            if ( searcherReference == null ) {
+               indexReader.addReaderClosedListener( new IndexReader.ReaderClosedListener() {
+                  @Override
+                  public void onClose( final IndexReader reader ) {
+                     synchronized ( SHARED_SEARCHERS ) {
+                        SHARED_SEARCHERS.remove( reader );
+                     }
+                  }
+               } );
+            }
+            SHARED_SEARCHERS.put( indexReader, new WeakReference<>( searcher ) );
+         }
+         return searcher;
+      }
+   }
+
+   /**
+    * Keep the entries of recently looked up texts.  Dictionaries used through a
+    * {@link org.apache.ctakes.dictionary.lookup.DictionaryEngine} are already cached by the engine.
+    *
+    * @param cacheSize maximum number of texts with cached entries, 0 for no cache
+    */
+   public void setResultCacheSize( final int cacheSize ) {
+      iv_resultCache = cacheSize > 0 ? BoundedLookupCache.createLruCache( cacheSize ) : null;
+   }
+
    /**
     * {@inheritDoc}
     */
    @Override
    public Collection<MetaDataHit> getEntries( final String text ) throws DictionaryException {
-      final Set<MetaDataHit> metaDataHitSet = new HashSet<>();
+      return getEntries( Collections.singletonList( text ) ).get( text );
+   }
 
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public Map<String, Collection<MetaDataHit>> getEntries( final Collection<String> texts ) throws DictionaryException {
+      final Map<String, Collection<MetaDataHit>> textEntries = new HashMap<>( texts.size() );
+      final LookupCache<Collection<MetaDataHit>> resultCache = iv_resultCache;
+      final Map<String, Collection<MetaDataHit>> cachedEntries = new HashMap<>();
+      final Set<String> termTexts = new HashSet<>();
       try {
-         Query q = null;
-         TopDocs topDoc = null;
-         if ( text.indexOf( '-' ) == -1 ) {
-            q = new TermQuery( new Term( iv_lookupFieldName, text ) );
-            topDoc = iv_searcher.search( q, iv_maxHits );
-         } else {  // needed the KeyworkAnalyzer for situations where the hypen was included in the f-word
-            final QueryParser query = new QueryParser( Version.LUCENE_40, iv_lookupFieldName, new KeywordAnalyzer() );
-            try {
-               //CTAKES-63 - I believe all of the chars in the str token should be escaped to avoid issues such as a token ending with ']'
-               //topDoc = iv_searcher.search(query.parse(text.replace('-', ' ')), iv_maxHits);
-               final String escaped = QueryParserBase.escape( text.replace( '-', ' ' ) );
-               topDoc = iv_searcher.search( query.parse( escaped ), iv_maxHits );
-            } catch ( ParseException e ) {
-               // thrown by QueryParser.parse()
-               // TODO Auto-generated catch block
-               e.printStackTrace();
+         for ( String text : texts ) {
+            final Collection<MetaDataHit> cached = resultCache == null ? null : resultCache.get( text );
+            if ( cached != null ) {
+               cachedEntries.put( text, cached );
+            } else if ( text.indexOf( '-' ) == -1 ) {
+               termTexts.add( text );
+            } else {
+               textEntries.put( text, searchEntries( text ) );
             }
          }
-         if ( topDoc == null ) {
-            // avoids possible NPE on topDoc.scoreDocs 12-26-2012 SPF
-            iv_logger.warn( getClass().getName() + " getEntries(..) topDoc is null, returning empty collection" );
-            return Collections.emptySet();
-         }
-         if ( iv_maxHits == 0 ) {
-            iv_maxHits = Integer.MAX_VALUE;
-            iv_logger.warn( "iv_maxHits was 0, using Integer.MAX_VALUE instead" );
-         }
-         final ScoreDoc[] hits = topDoc.scoreDocs;
-         if ( hits.length == iv_maxHits ) {
-            iv_logger.warn( "'iv_maxHits' equals the list length returned by the lucene query (" + hits.length + ")." );
-            iv_logger.warn(
-                  "You may want to consider setting a higher value, since there may be more entries not being returned in the event greater than "
-                        + iv_maxHits + " exist." );
-         }
-         for ( ScoreDoc scoreDoc : hits ) {
-            final Document luceneDoc = iv_searcher.doc( scoreDoc.doc );
-            final MetaDataHit mdh = new LuceneDocumentMetaDataHitImpl( luceneDoc );
-            metaDataHitSet.add( mdh );
+         if ( !termTexts.isEmpty() ) {
+            final Set<String> fieldsToLoad = getFieldsToLoad();
+            final Map<String, List<Integer>> termDocs = getTermDocs( termTexts );
+            for ( String text : termTexts ) {
+               final List<Integer> docIds = termDocs.get( text );
+               if ( docIds == null ) {
+                  textEntries.put( text, new HashSet<MetaDataHit>() );
+               } else if ( docIds.size() >= iv_maxHits ) {
+                  // keep the best scoring documents, as a search would
+                  textEntries.put( text, searchEntries( text ) );
+               } else {
+                  final Set<MetaDataHit> metaDataHitSet = new HashSet<>( docIds.size() );
+                  for ( int docId : docIds ) {
+                     metaDataHitSet.add( new LuceneDocumentMetaDataHitImpl( loadDocument( docId, fieldsToLoad ) ) );
+                  }
+                  textEntries.put( text, metaDataHitSet );
+               }
+            }
          }
-         return metaDataHitSet;
       } catch ( IOException ioe ) {
-         // thrown by IndexSearcher.search(), IndexSearcher.doc()
+         // thrown by IndexSearcher.search(), IndexSearcher.doc(), TermsEnum
          throw new DictionaryException( ioe );
       }
+      if ( resultCache != null ) {
+         for ( Map.Entry<String, Collection<MetaDataHit>> entries : textEntries.entrySet() ) {
+            entries.setValue( Collections.unmodifiableCollection( entries.getValue() ) );
+            resultCache.put( entries.getKey(), entries.getValue() );
+         }
+         textEntries.putAll( cachedEntries );
+      }
+      return textEntries;
    }
 
    /**
@@ -130,15 +198,149 @@ public class LuceneDictionaryImpl extends AbstractBaseDictionary {
    @Override
    public boolean contains( final String text ) throws DictionaryException {
       try {
-         final Query q = new TermQuery( new Term( iv_lookupFieldName, text ) );
-
-         final TopDocs topDoc = iv_searcher.search( q, iv_maxHits );
-         final ScoreDoc[] hits = topDoc.scoreDocs;
-         return hits != null && hits.length > 0;
+         final BytesRef term = new BytesRef( text );
+         for ( AtomicReaderContext leaf : iv_searcher.getIndexReader().getContext().leaves() ) {
+            final TermsEnum termsEnum = getTermsEnum( leaf.reader() );
+            if ( termsEnum != null && termsEnum.seekExact( term, false ) ) {
+               final DocsEnum docsEnum = termsEnum.docs( leaf.reader().getLiveDocs(), null );
+               if ( docsEnum != null && docsEnum.nextDoc() != DocIdSetIterator.NO_MORE_DOCS ) {
+                  return true;
+               }
+            }
+         }
+         return false;
       } catch ( IOException ioe ) {
-         // thrown by IndexSearcher.search()
+         // thrown by TermsEnum
          throw new DictionaryException( ioe );
       }
+   }
+
+   /**
+    * @param termTexts texts that are each a single term of the lookup field
+    * @return ids of the live documents with each term, for terms with at least one document
+    * @throws IOException if the index cannot be read
+    */
+   private Map<String, List<Integer>> getTermDocs( final Collection<String> termTexts ) throws IOException {
+      final List<BytesRef> sortedTerms = new ArrayList<>( termTexts.size() );
+      for ( String text : termTexts ) {
+         sortedTerms.add( new BytesRef( text ) );
+      }
+      // seeking terms in order lets each terms enum move forward through the terms dictionary
+      Collections.sort( sortedTerms );
+      final Map<String, List<Integer>> termDocs = new HashMap<>();
+      DocsEnum docsEnum = null;
+      for ( AtomicReaderContext leaf : iv_searcher.getIndexReader().getContext().leaves() ) {
+         final TermsEnum termsEnum = getTermsEnum( leaf.reader() );
+         if ( termsEnum == null ) {
+            continue;
+         }
+         final Bits liveDocs = leaf.reader().getLiveDocs();
+         for ( BytesRef term : sortedTerms ) {
+            if ( !termsEnum.seekExact( term, false ) ) {
+               continue;
+            }
+            docsEnum = termsEnum.docs( liveDocs, docsEnum );
+            if ( docsEnum == null ) {
+               continue;
+            }
+            int doc = docsEnum.nextDoc();
+            if ( doc == DocIdSetIterator.NO_MORE_DOCS ) {
+               continue;
+            }
+            final String text = term.utf8ToString();
+            List<Integer> docIds = termDocs.get( text );
+            if ( docIds == null ) {
+               docIds = new ArrayList<>();
+               termDocs.put( text, docIds );
+            }
+            while ( doc != DocIdSetIterator.NO_MORE_DOCS ) {
+               docIds.add( leaf.docBase + doc );
+               doc = docsEnum.nextDoc();
+            }
+         }
+      }
+      return termDocs;
+   }
+
+   /**
+    * @param reader reader of an index segment
+    * @return terms enum of the lookup field in the segment, or null if the segment does not have the field
+    * @throws IOException if the index cannot be read
+    */
+   private TermsEnum getTermsEnum( final AtomicReader reader ) throws IOException {
+      final Fields fields = reader.fields();
+      if ( fields == null ) {
+         return null;
+      }
+      final Terms terms = fields.terms( iv_lookupFieldName );
+      return terms == null ? null : terms.iterator( null );
+   }
+
+   /**
+    * @return stored fields needed for the hits, or null to load every field when no meta data is retained
+    */
+   private Set<String> getFieldsToLoad() {
+      final Iterator<String> metaFieldNames = getMetaFieldNames();
+      if ( !metaFieldNames.hasNext() ) {
+         return null;
+      }
+      final Set<String> fieldsToLoad = new HashSet<>();
+      fieldsToLoad.add( iv_lookupFieldName );
+      while ( metaFieldNames.hasNext() ) {
+         fieldsToLoad.add( metaFieldNames.next() );
+      }
+      return fieldsToLoad;
+   }
+
+   private Document loadDocument( final int docId, final Set<String> fieldsToLoad ) throws IOException {
+      return fieldsToLoad == null ? iv_searcher.doc( docId ) : iv_searcher.doc( docId, fieldsToLoad );
+   }
 
+   /**
+    * Search for the entries of a text with a lucene query
+    *
+    * @param text lookup text
+    * @return entries for the text
+    * @throws IOException if the index cannot be searched
+    */
+   private Collection<MetaDataHit> searchEntries( final String text ) throws IOException {
+      final Set<MetaDataHit> metaDataHitSet = new HashSet<>();
+      Query q = null;
+      TopDocs topDoc = null;
+      if ( text.indexOf( '-' ) == -1 ) {
+         q = new TermQuery( new Term( iv_lookupFieldName, text ) );
+         topDoc = iv_searcher.search( q, iv_maxHits );
+      } else {  // needed the KeyworkAnalyzer for situations where the hypen was included in the f-word
+         final QueryParser query = new QueryParser( Version.LUCENE_40, iv_lookupFieldName, new KeywordAnalyzer() );
+         try {
+            //CTAKES-63 - I believe all of the chars in the str token should be escaped to avoid issues such as a token ending with ']'
+            //topDoc = iv_searcher.search(query.parse(text.replace('-', ' ')), iv_maxHits);
+            final String escaped = QueryParserBase.escape( text.replace( '-', ' ' ) );
+            topDoc = iv_searcher.search( query.parse( escaped ), iv_maxHits );
+         } catch ( ParseException e ) {
+            // thrown by QueryParser.parse()
+            // TODO Auto-generated catch block
+            e.printStackTrace();
+         }
+      }
+      if ( topDoc == null ) {
+         // avoids possible NPE on topDoc.scoreDocs 12-26-2012 SPF
+         iv_logger.warn( getClass().getName() + " getEntries(..) topDoc is null, returning empty collection" );
+         return Collections.emptySet();
+      }
+      final ScoreDoc[] hits = topDoc.scoreDocs;
+      if ( hits.length == iv_maxHits ) {
+         iv_logger.warn( "'iv_maxHits' equals the list length returned by the lucene query (" + hits.length + ")." );
+         iv_logger.warn(
+               "You may want to consider setting a higher value, since there may be more entries not being returned in the event greater than "
+                     + iv_maxHits + " exist." );
+      }
+      final Set<String> fieldsToLoad = getFieldsToLoad();
+      for ( ScoreDoc scoreDoc : hits ) {
+         final Document luceneDoc = loadDocument( scoreDoc.doc, fieldsToLoad );
+         final MetaDataHit mdh = new LuceneDocumentMetaDataHitImpl( luceneDoc );
+         metaDataHitSet.add( mdh );
+      }
+      return metaDataHitSet;
    }
 }
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.dictionary.lookup;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the eviction, admission and counters of bounded lookup caches.
+ */
+public class BoundedLookupCacheTest {
+
+   @Test
+   public void testLruEviction() {
+      final BoundedLookupCache<Integer> cache = BoundedLookupCache.createLruCache( 3 );
+      cache.put( "a", 1 );
+      cache.put( "b", 2 );
+      cache.put( "c", 3 );
+      // a is now more recently used than b
+      assertEquals( Integer.valueOf( 1 ), cache.get( "a" ) );
+      cache.put( "d", 4 );
+      assertEquals( 3, cache.size() );
+      assertNull( cache.get( "b" ) );
+      assertEquals( Integer.valueOf( 1 ), cache.get( "a" ) );
+      assertEquals( Integer.valueOf( 3 ), cache.get( "c" ) );
+      assertEquals( Integer.valueOf( 4 ), cache.get( "d" ) );
+      assertEquals( 4, cache.getHitCount() );
+      assertEquals( 1, cache.getMissCount() );
+      assertEquals( 1, cache.getEvictionCount() );
+   }
+
+   @Test
+   public void testReplaceDoesNotEvict() {
+      final BoundedLookupCache<Integer> cache = BoundedLookupCache.createLruCache( 2 );
+      cache.put( "a", 1 );
+      cache.put( "b", 2 );
+      cache.put( "a", 10 );
+      assertEquals( 2, cache.size() );
+      assertEquals( 0, cache.getEvictionCount() );
+      assertEquals( Integer.valueOf( 10 ), cache.get( "a" ) );
+      assertEquals( Integer.valueOf( 2 ), cache.get( "b" ) );
+   }
+
+   @Test
+   public void testWeightBound() {
+      final BoundedLookupCache<Collection<String>> cache = new BoundedLookupCache<>( 10, Collection::size, false );
+      cache.put( "a", Collections.nCopies( 4, "a" ) );
+      cache.put( "b", Collections.nCopies( 4, "b" ) );
+      assertEquals( 8, cache.getWeight() );
+      // the least recently used result makes room for the new one
+      cache.put( "c", Collections.nCopies( 5, "c" ) );
+      assertEquals( 9, cache.getWeight() );
+      assertNull( cache.get( "a" ) );
+      assertNotNull( cache.get( "b" ) );
+      assertNotNull( cache.get( "c" ) );
+      // a result heavier than the cache is not cached and evicts nothing
+      cache.put( "d", Collections.nCopies( 11, "d" ) );
+      assertNull( cache.get( "d" ) );
+      assertEquals( 2, cache.size() );
+      assertEquals( 2, cache.getEvictionCount() );
+      // empty results still weigh 1
+      cache.put( "e", Collections.<String>emptyList() );
+      assertEquals( 10, cache.getWeight() );
+      cache.clear();
+      assertEquals( 0, cache.size() );
+      assertEquals( 0, cache.getWeight() );
+   }
+
+   @Test
+   public void testFrequencyAdmission() {
+      final BoundedLookupCache<Integer> cache = BoundedLookupCache.createTinyLfuCache( 2 );
+      for ( int i = 0; i < 5; i++ ) {
+         assertNull( cache.get( "common" ) );
+         cache.get( "usual" );
+      }
+      cache.put( "common", 1 );
+      cache.put( "usual", 2 );
+      // a text looked up once does not replace results looked up more often
+      assertNull( cache.get( "rare" ) );
+      cache.put( "rare", 3 );
+      assertNull( cache.get( "rare" ) );
+      assertEquals( Integer.valueOf( 1 ), cache.get( "common" ) );
+      assertEquals( Integer.valueOf( 2 ), cache.get( "usual" ) );
+      assertEquals( 1, cache.getEvictionCount() );
+      // once it is looked up more often than the least recently used result it is admitted
+      for ( int i = 0; i < 10; i++ ) {
+         cache.get( "rare" );
+      }
+      cache.put( "rare", 3 );
+      assertEquals( Integer.valueOf( 3 ), cache.get( "rare" ) );
+      assertNull( cache.get( "common" ) );
+      assertEquals( Integer.valueOf( 2 ), cache.get( "usual" ) );
+      // cached results can always be replaced
+      cache.put( "usual", 20 );
+      assertEquals( Integer.valueOf( 20 ), cache.get( "usual" ) );
+   }
+
+   @Test
+   public void testLruAdmitsRareTexts() {
+      final BoundedLookupCache<Integer> cache = BoundedLookupCache.createLruCache( 2 );
+      for ( int i = 0; i < 5; i++ ) {
+         cache.get( "common" );
+      }
+      cache.put( "common", 1 );
+      cache.put( "usual", 2 );
+      cache.put( "rare", 3 );
+      assertEquals( Integer.valueOf( 3 ), cache.get( "rare" ) );
+      assertNull( cache.get( "common" ) );
+   }
+
+   @Test
+   public void testConcurrentUse() throws Exception {
+      final BoundedLookupCache<Integer> cache = BoundedLookupCache.createTinyLfuCache( 100 );
+      final ExecutorService executor = Executors.newFixedThreadPool( 4 );
+      try {
+         final List<Future<?>> futures = new ArrayList<>();
+         for ( int t = 0; t < 4; t++ ) {
+            final int seed = t;
+            futures.add( executor.submit( () -> {
+               for ( int i = 0; i < 20000; i++ ) {
+                  final String text = Integer.toString( (i * 31 + seed) % 500 );
+                  if ( cache.get( text ) == null ) {
+                     cache.put( text, i );
+                  }
+               }
+            } ) );
+         }
+         for ( Future<?> future : futures ) {
+            future.get();
+         }
+      } finally {
+         executor.shutdown();
+      }
+      assertTrue( cache.size() <= 100 );
+      assertEquals( cache.size(), cache.getWeight() );
+      assertEquals( 4 * 20000, cache.getHitCount() + cache.getMissCount() );
+   }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.dictionary.lookup;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks which lookups of a dictionary engine are cached, and the preloading of its caches.
+ */
+public class DictionaryEngineTest {
+
+   /**
+    * Dictionary of a few texts that counts its lookups
+    */
+   static private final class CountingDictionary implements Dictionary {
+      private final Map<String, Collection<MetaDataHit>> _entries = new HashMap<>();
+      private int _lookupCount;
+
+      private CountingDictionary( final String... texts ) {
+         for ( String text : texts ) {
+            _entries.put( text, Collections.singletonList(
+                  new GenericMetaDataHitImpl( Collections.singletonMap( "text", text ) ) ) );
+         }
+      }
+
+      @Override
+      public void retainMetaData( final String metaFieldName ) {
+      }
+
+      @Override
+      public boolean contains( final String text ) {
+         _lookupCount++;
+         return _entries.containsKey( text );
+      }
+
+      @Override
+      public Collection<MetaDataHit> getEntries( final String text ) {
+         _lookupCount++;
+         final Collection<MetaDataHit> entries = _entries.get( text );
+         return entries == null ? new ArrayList<>() : new ArrayList<>( entries );
+      }
+   }
+
+   @Test
+   public void testDefaultCachesAddedEntriesOnly() throws Exception {
+      final CountingDictionary dictionary = new CountingDictionary( "pain", "chest pain" );
+      final DictionaryEngine engine = new DictionaryEngine( dictionary, false );
+      assertTrue( engine.binaryLookup( "Pain" ) );
+      assertEquals( 1, engine.metaLookup( "pain" ).size() );
+      assertEquals( 1, engine.metaLookup( Arrays.asList( "pain", "back" ) ).get( "pain" ).size() );
+      assertEquals( 0, engine.getBinaryLookupCache().size() );
+      assertEquals( 0, engine.getMetaLookupCache().size() );
+
+      engine.addCacheEntry( "Chest Pain" );
+      final int lookupCount = dictionary._lookupCount;
+      assertTrue( engine.binaryLookup( "chest pain" ) );
+      assertEquals( 1, engine.metaLookup( "CHEST PAIN" ).size() );
+      assertEquals( lookupCount, dictionary._lookupCount );
+   }
+
+   @Test
+   public void testConfiguredCachesCacheLookups() throws Exception {
+      final CountingDictionary dictionary = new CountingDictionary( "pain" );
+      final DictionaryEngine engine = new DictionaryEngine( dictionary, false,
+            BoundedLookupCache.createLruCache( 10 ), DictionaryEngine.createMetaLookupCache( 10, false ) );
+      assertTrue( engine.binaryLookup( "pain" ) );
+      assertFalse( engine.binaryLookup( "back" ) );
+      assertEquals( 1, engine.metaLookup( "pain" ).size() );
+      assertEquals( 0, engine.metaLookup( "back" ).size() );
+      final int lookupCount = dictionary._lookupCount;
+      assertTrue( engine.binaryLookup( "pain" ) );
+      assertFalse( engine.binaryLookup( "back" ) );
+      assertEquals( 1, engine.metaLookup( "pain" ).size() );
+      assertEquals( 0, engine.metaLookup( "back" ).size() );
+      assertEquals( lookupCount, dictionary._lookupCount );
+      assertEquals( 2, engine.getBinaryLookupCache().size() );
+      assertEquals( 2, engine.getMetaLookupCache().size() );
+   }
+
+   @Test
+   public void testPreloadSkipsInvalidFrequencies() throws Exception {
+      final DictionaryEngine engine = new DictionaryEngine( new CountingDictionary( "pain" ), false,
+            BoundedLookupCache.createLruCache( 10 ), DictionaryEngine.createMetaLookupCache( 10, false ) );
+      final String corpus = "pain\t7\n"
+                            + "back\tmany\n"
+                            + "\n"
+                            + "chest\t-3\n"
+                            + "Chest\n"
+                            + "head\t\n"
+                            + "  \t2\n"
+                            + "leg\t 2 \n";
+      // the 2 most frequent valid texts are pain and leg
+      assertEquals( 2, engine.preloadCache( new BufferedReader( new StringReader( corpus ) ), 2 ) );
+      assertNotNull( engine.getMetaLookupCache().get( "pain" ) );
+      assertNotNull( engine.getMetaLookupCache().get( "leg" ) );
+      assertNull( engine.getMetaLookupCache().get( "back" ) );
+      assertNull( engine.getMetaLookupCache().get( "chest" ) );
+      assertEquals( 3, engine.preloadCache( new BufferedReader( new StringReader( corpus ) ), 10 ) );
+      assertNotNull( engine.getMetaLookupCache().get( "chest" ) );
+   }
+
+}
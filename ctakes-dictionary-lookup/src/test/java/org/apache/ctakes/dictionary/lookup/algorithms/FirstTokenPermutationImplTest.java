@@ -0,0 +1,279 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.dictionary.lookup.algorithms;
+
+import org.apache.ctakes.dictionary.lookup.AbstractBaseDictionary;
+import org.apache.ctakes.dictionary.lookup.DictionaryEngine;
+import org.apache.ctakes.dictionary.lookup.GenericMetaDataHitImpl;
+import org.apache.ctakes.dictionary.lookup.MetaDataHit;
+import org.apache.ctakes.dictionary.lookup.phrasebuilder.PhraseBuilder;
+import org.apache.ctakes.dictionary.lookup.phrasebuilder.VariantPhraseBuilderImpl;
+import org.apache.ctakes.dictionary.lookup.vo.LookupAnnotation;
+import org.apache.ctakes.dictionary.lookup.vo.LookupHit;
+import org.apache.ctakes.dictionary.lookup.vo.LookupToken;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the hits of the first token permutation lookup with the hits of a plain lookup that builds a phrase string
+ * for every permutation of the tokens that follow each first token.
+ */
+public class FirstTokenPermutationImplTest {
+
+   static private final String CANONICAL = "canonical";
+   static private final String[] TEXT_NAMES = { "text" };
+   static private final String[] WORDS = { "heart", "attack", "Pain", "chest", "left", "arm", "\u00d6lung", "of",
+                                           "the", "acute", "failure", "renal", "x", "a-b" };
+
+   static private final class TestToken implements LookupToken {
+      final private int __start;
+      final private String __text;
+      final private Map<String, String> __attributes = new HashMap<>();
+
+      private TestToken( final int start, final String text ) {
+         __start = start;
+         __text = text;
+         addStringAttribute( FirstTokenPermutationImpl.LT_KEY_USE_FOR_LOOKUP, "true" );
+      }
+
+      @Override
+      public int getStartOffset() {
+         return __start;
+      }
+
+      @Override
+      public int getEndOffset() {
+         return __start + __text.length();
+      }
+
+      @Override
+      public int getLength() {
+         return __text.length();
+      }
+
+      @Override
+      public String getText() {
+         return __text;
+      }
+
+      @Override
+      public void addStringAttribute( final String attrKey, final String attrVal ) {
+         __attributes.put( attrKey, attrVal );
+      }
+
+      @Override
+      public String getStringAttribute( final String attrKey ) {
+         return __attributes.get( attrKey );
+      }
+   }
+
+   /**
+    * Dictionary of texts by their lower case first word
+    */
+   static private final class FirstWordDictionary extends AbstractBaseDictionary {
+      final private Map<String, List<MetaDataHit>> __hits = new HashMap<>();
+
+      private void addText( final String firstWord, final String text, final String cui ) {
+         final Map<String, String> metaFields = new HashMap<>();
+         metaFields.put( TEXT_NAMES[ 0 ], text );
+         metaFields.put( "cui", cui );
+         __hits.computeIfAbsent( firstWord.toLowerCase(), w -> new ArrayList<>() )
+               .add( new GenericMetaDataHitImpl( metaFields ) );
+      }
+
+      @Override
+      public boolean contains( final String text ) {
+         return __hits.containsKey( text );
+      }
+
+      @Override
+      public Collection<MetaDataHit> getEntries( final String text ) {
+         final List<MetaDataHit> hits = __hits.get( text );
+         return hits == null ? new ArrayList<>() : new ArrayList<>( hits );
+      }
+   }
+
+   /**
+    * Without window annotations the window of each first token holds the following tokens up to the permutation level.
+    * The tokens of these tests have distinct end offsets, so the window can be found by token index.
+    *
+    * @return hits found by building the phrase of every permutation of every window
+    */
+   static private List<LookupHit> lookupPlainly( final List<LookupToken> tokens,
+                                                 final DictionaryEngine dictionaryEngine,
+                                                 final PhraseBuilder phraseBuilder,
+                                                 final int maxPermutationLevel ) throws Exception {
+      final List<LookupHit> lookupHits = new ArrayList<>();
+      for ( int tokenIndex = 0; tokenIndex < tokens.size(); tokenIndex++ ) {
+         final LookupToken firstToken = tokens.get( tokenIndex );
+         final String useForLookup = firstToken.getStringAttribute( FirstTokenPermutationImpl.LT_KEY_USE_FOR_LOOKUP );
+         if ( !Boolean.valueOf( useForLookup ) ) {
+            continue;
+         }
+         final String[] firstPhrases = phraseBuilder.getPhrases( Collections.singletonList( firstToken ) );
+         final Map<String, Collection<MetaDataHit>> phraseHits
+               = dictionaryEngine.metaLookup( Arrays.asList( firstPhrases ) );
+         final Map<String, Set<MetaDataHit>> namedHits = new HashMap<>();
+         for ( String phrase : firstPhrases ) {
+            for ( MetaDataHit hit : phraseHits.get( phrase ) ) {
+               for ( String name : TEXT_NAMES ) {
+                  namedHits.computeIfAbsent( hit.getMetaFieldValue( name ).toLowerCase(), t -> new HashSet<>() )
+                           .add( hit );
+               }
+            }
+         }
+         if ( namedHits.isEmpty() ) {
+            continue;
+         }
+         final List<LookupToken> windowTokens
+               = tokens.subList( tokenIndex, Math.min( tokenIndex + maxPermutationLevel, tokens.size() ) );
+         for ( List<Integer> permutation : PermutationUtil.getPermutationList( windowTokens.size() - 1 ) ) {
+            final List<LookupToken> permutationTokens = new ArrayList<>();
+            int startOffset = firstToken.getStartOffset();
+            int endOffset = firstToken.getEndOffset();
+            for ( Integer index : permutation ) {
+               final LookupToken token = windowTokens.get( index );
+               permutationTokens.add( token );
+               startOffset = Math.min( startOffset, token.getStartOffset() );
+               endOffset = Math.max( endOffset, token.getEndOffset() );
+            }
+            for ( String phrase : phraseBuilder.getPhrases( permutationTokens ) ) {
+               for ( String firstPhrase : firstPhrases ) {
+                  final String fullPhrase = (firstPhrase.toLowerCase() + ' ' + phrase.toLowerCase()).trim();
+                  final Set<MetaDataHit> hits = namedHits.get( fullPhrase );
+                  if ( hits != null ) {
+                     for ( MetaDataHit hit : hits ) {
+                        lookupHits.add( new LookupHit( hit, startOffset, endOffset ) );
+                     }
+                  }
+               }
+            }
+         }
+      }
+      return lookupHits;
+   }
+
+   static private FirstWordDictionary createDictionary( final Random random, final int textCount ) {
+      final FirstWordDictionary dictionary = new FirstWordDictionary();
+      for ( int i = 0; i < textCount; i++ ) {
+         final String firstWord = WORDS[ random.nextInt( WORDS.length ) ];
+         final StringBuilder text = new StringBuilder( random.nextBoolean() ? firstWord : firstWord.toUpperCase() );
+         for ( int j = random.nextInt( 5 ); j > 0; j-- ) {
+            // now and then two words without a space, which no permutation can match
+            text.append( random.nextInt( 8 ) == 0 ? "" : " " );
+            final String word = WORDS[ random.nextInt( WORDS.length ) ];
+            text.append( random.nextBoolean() ? word : word.toUpperCase() );
+         }
+         dictionary.addText( firstWord, text.toString(), "C" + i );
+      }
+      return dictionary;
+   }
+
+   /**
+    * @param denseTokens true if every token is a word of the dictionary
+    * @return tokens with adjoining and separated offsets, some with a canonical variant
+    */
+   static private List<LookupToken> createTokens( final Random random, final int tokenCount,
+                                                  final boolean denseTokens ) {
+      final List<LookupToken> tokens = new ArrayList<>( tokenCount );
+      int offset = 0;
+      for ( int i = 0; i < tokenCount; i++ ) {
+         String word = denseTokens || random.nextInt( 3 ) == 0
+                       ? WORDS[ random.nextInt( WORDS.length ) ]
+                       : "w" + Integer.toString( random.nextInt( 600 ) * 7919, 36 );
+         if ( random.nextInt( 5 ) == 0 ) {
+            word = word.toUpperCase();
+         }
+         offset += random.nextInt( 6 ) == 0 ? 0 : 1;
+         final TestToken token = new TestToken( offset, word );
+         offset = token.getEndOffset();
+         if ( random.nextInt( 3 ) == 0 ) {
+            token.addStringAttribute( CANONICAL, word.toLowerCase() + (random.nextBoolean() ? "" : " ") );
+         }
+         if ( random.nextInt( 20 ) == 0 ) {
+            token.addStringAttribute( FirstTokenPermutationImpl.LT_KEY_USE_FOR_LOOKUP, "false" );
+         }
+         tokens.add( token );
+      }
+      return tokens;
+   }
+
+   static private void assertSameHits( final List<LookupHit> expected, final Collection<LookupHit> actual ) {
+      assertEquals( expected.size(), actual.size() );
+      int i = 0;
+      for ( LookupHit hit : actual ) {
+         assertSame( expected.get( i ).getDictMetaDataHit(), hit.getDictMetaDataHit() );
+         assertEquals( expected.get( i ).getStartOffset(), hit.getStartOffset() );
+         assertEquals( expected.get( i ).getEndOffset(), hit.getEndOffset() );
+         i++;
+      }
+   }
+
+   /**
+    * @return number of hits
+    */
+   static private int compareLookups( final long seed, final int maxPermutationLevel, final boolean useOriginalText,
+                                      final boolean denseTokens ) throws Exception {
+      final Random random = new Random( seed );
+      final DictionaryEngine dictionaryEngine = new DictionaryEngine( createDictionary( random, 3000 ), false );
+      final PhraseBuilder phraseBuilder = new VariantPhraseBuilderImpl( new String[] { CANONICAL }, useOriginalText );
+      final FirstTokenPermutationImpl lookup
+            = new FirstTokenPermutationImpl( dictionaryEngine, phraseBuilder, TEXT_NAMES, maxPermutationLevel );
+      final Map<String, List<LookupAnnotation>> contextMap = new HashMap<>();
+      int hitCount = 0;
+      for ( int i = 0; i < 30; i++ ) {
+         final List<LookupToken> tokens = createTokens( random, 40, denseTokens );
+         final List<LookupHit> expected = lookupPlainly( tokens, dictionaryEngine, phraseBuilder, maxPermutationLevel );
+         assertSameHits( expected, lookup.lookup( tokens, contextMap ) );
+         hitCount += expected.size();
+      }
+      return hitCount;
+   }
+
+   @Test
+   public void testSimplePermutation() throws Exception {
+      final FirstWordDictionary dictionary = new FirstWordDictionary();
+      dictionary.addText( "chest", "chest pain", "C0008031" );
+      final FirstTokenPermutationImpl lookup = new FirstTokenPermutationImpl( new DictionaryEngine( dictionary, false ),
+            new VariantPhraseBuilderImpl( new String[ 0 ], true ), TEXT_NAMES, 3 );
+      final List<LookupToken> tokens = Arrays.asList( new TestToken( 0, "Chest" ), new TestToken( 6, "left" ),
+            new TestToken( 11, "PAIN" ) );
+      final Collection<LookupHit> hits = lookup.lookup( tokens, new HashMap<>() );
+      assertEquals( 1, hits.size() );
+      final LookupHit hit = hits.iterator().next();
+      assertEquals( "C0008031", hit.getDictMetaDataHit().getMetaFieldValue( "cui" ) );
+      assertEquals( 0, hit.getStartOffset() );
+      assertEquals( 15, hit.getEndOffset() );
+   }
+
+   @Test
+   public void testMixedTokens() throws Exception {
+      assertTrue( compareLookups( 42, 5, true, false ) > 100 );
+      assertTrue( compareLookups( 7, 3, false, false ) > 0 );
+   }
+
+   @Test
+   public void testDenseTokens() throws Exception {
+      assertTrue( compareLookups( 11, 4, true, true ) > 1000 );
+   }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.dictionary.lookup.lucene;
+
+import org.apache.ctakes.dictionary.lookup.MetaDataHit;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that dictionaries sharing a searcher find the same entries as dictionaries with their own searcher.
+ */
+public class LuceneDictionaryImplTest {
+
+   static private final String LOOKUP_FIELD = "first_word";
+   static private final String[] LOOKUP_TEXTS = { "aspirin", "chest", "x-ray", "pain", "unknown", "aspirin" };
+
+   private Directory _directory;
+   private IndexReader _indexReader;
+
+   @Before
+   public void createIndex() throws Exception {
+      _directory = new RAMDirectory();
+      final IndexWriter writer
+            = new IndexWriter( _directory, new IndexWriterConfig( Version.LUCENE_40, new KeywordAnalyzer() ) );
+      addDocument( writer, "aspirin", "C0004057", "aspirin" );
+      addDocument( writer, "chest", "C0817096", "chest" );
+      // a commit per batch of documents gives the index several segments
+      writer.commit();
+      addDocument( writer, "aspirin", "C0004057", "aspirin tablet" );
+      addDocument( writer, "chest", "C0008031", "chest pain" );
+      addDocument( writer, "x ray", "C0043299", "x-ray" );
+      writer.commit();
+      addDocument( writer, "aspirin", "C0004058", "aspirin powder" );
+      addDocument( writer, "pain", "C0030193", "pain" );
+      writer.close();
+      _indexReader = DirectoryReader.open( _directory );
+   }
+
+   @After
+   public void closeIndex() throws Exception {
+      _indexReader.close();
+      _directory.close();
+   }
+
+   static private void addDocument( final IndexWriter writer, final String firstWord, final String cui,
+                                    final String text ) throws Exception {
+      final Document document = new Document();
+      document.add( new StringField( LOOKUP_FIELD, firstWord, Field.Store.YES ) );
+      document.add( new StringField( "cui", cui, Field.Store.YES ) );
+      document.add( new StringField( "text", text, Field.Store.YES ) );
+      writer.addDocument( document );
+   }
+
+   static private LuceneDictionaryImpl createDictionary( final IndexSearcher searcher, final int maxHits,
+                                                         final boolean retainMetaData ) {
+      final LuceneDictionaryImpl dictionary = new LuceneDictionaryImpl( searcher, LOOKUP_FIELD, maxHits );
+      if ( retainMetaData ) {
+         dictionary.retainMetaData( "cui" );
+         dictionary.retainMetaData( "text" );
+      }
+      return dictionary;
+   }
+
+   /**
+    * @return the cui and text of each hit, sorted so that hits can be compared regardless of order
+    */
+   static private List<String> toStrings( final Collection<MetaDataHit> hits ) {
+      final List<String> strings = new ArrayList<>();
+      for ( MetaDataHit hit : hits ) {
+         strings.add( hit.getMetaFieldValue( "cui" ) + '|' + hit.getMetaFieldValue( "text" ) );
+      }
+      Collections.sort( strings );
+      return strings;
+   }
+
+   private void assertSameEntries( final int maxHits, final boolean retainMetaData ) throws Exception {
+      final LuceneDictionaryImpl shared
+            = createDictionary( LuceneDictionaryImpl.getSharedSearcher( _indexReader ), maxHits, retainMetaData );
+      final LuceneDictionaryImpl own
+            = createDictionary( new IndexSearcher( _indexReader ), maxHits, retainMetaData );
+      final Map<String, Collection<MetaDataHit>> sharedEntries = shared.getEntries( Arrays.asList( LOOKUP_TEXTS ) );
+      for ( String text : LOOKUP_TEXTS ) {
+         final List<String> expected = toStrings( own.getEntries( text ) );
+         assertEquals( text, expected, toStrings( shared.getEntries( text ) ) );
+         assertEquals( text, expected, toStrings( sharedEntries.get( text ) ) );
+         assertEquals( text, own.contains( text ), shared.contains( text ) );
+      }
+   }
+
+   @Test
+   public void testSharedSearcherFindsSameEntries() throws Exception {
+      assertSameEntries( Integer.MAX_VALUE, true );
+      assertSameEntries( Integer.MAX_VALUE, false );
+      // more documents than the maximum number of hits are searched with a query
+      assertSameEntries( 2, true );
+      assertEquals( 3, toStrings( createDictionary( LuceneDictionaryImpl.getSharedSearcher( _indexReader ),
+            Integer.MAX_VALUE, true ).getEntries( "aspirin" ) ).size() );
+   }
+
+   @Test
+   public void testSearcherSharedPerReader() throws Exception {
+      final IndexSearcher searcher = LuceneDictionaryImpl.getSharedSearcher( _indexReader );
+      assertSame( searcher, LuceneDictionaryImpl.getSharedSearcher( _indexReader ) );
+
+      final IndexReader otherReader = DirectoryReader.open( _directory );
+      final IndexSearcher otherSearcher = LuceneDictionaryImpl.getSharedSearcher( otherReader );
+      assertNotSame( searcher, otherSearcher );
+      assertSame( otherReader, otherSearcher.getIndexReader() );
+
+      otherReader.close();
+      assertSame( searcher, LuceneDictionaryImpl.getSharedSearcher( _indexReader ) );
+   }
+
+}
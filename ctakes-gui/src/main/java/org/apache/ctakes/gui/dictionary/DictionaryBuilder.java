@@ -4,12 +4,14 @@ package org.apache.ctakes.gui.dictionary;
 import org.apache.ctakes.core.util.collection.CollectionMap;
 import org.apache.ctakes.core.util.collection.HashSetMap;
 import org.apache.ctakes.gui.dictionary.umls.*;
+import org.apache.ctakes.gui.dictionary.util.BsvChunkParser;
 import org.apache.ctakes.gui.dictionary.util.HsqlUtil;
 import org.apache.ctakes.gui.dictionary.util.JdbcUtil;
 import org.apache.ctakes.gui.dictionary.util.RareWordDbWriter;
 import org.apache.log4j.Logger;
 
 import java.io.File;
+import java.io.UncheckedIOException;
 import java.sql.Connection;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -33,6 +35,7 @@ final class DictionaryBuilder {
    static private final int MAX_SYM_COUNT = 7;
    static private final int WSD_DIVISOR = 2;
    static private final int ANAT_MULTIPLIER = 2;
+   static private final String FINGERPRINT_EXTENSION = ".fingerprint";
 
 
    private DictionaryBuilder() {
@@ -46,11 +49,107 @@ final class DictionaryBuilder {
                                    final Collection<String> wantedSources,
                                    final Collection<String> wantedTargets,
                                    final Collection<Tui> wantedTuis ) {
+      return buildDictionary( umlsDirPath, ctakesDirPath, dictionaryName, wantedLanguages, wantedSources,
+            wantedTargets, wantedTuis, BsvChunkParser.getDefaultThreadCount() );
+   }
+
+   /**
+    * @param threadCount number of threads parsing the umls rrf files
+    */
+   static boolean buildDictionary( final String umlsDirPath,
+                                   final String ctakesDirPath,
+                                   final String dictionaryName,
+                                   final Collection<String> wantedLanguages,
+                                   final Collection<String> wantedSources,
+                                   final Collection<String> wantedTargets,
+                                   final Collection<Tui> wantedTuis,
+                                   final int threadCount ) {
+      return buildDictionary( umlsDirPath, ctakesDirPath, dictionaryName, wantedLanguages, wantedSources,
+            wantedTargets, wantedTuis, threadCount, false );
+   }
+
+   /**
+    * An incremental build of a dictionary that was built before is skipped when the umls files and settings have not
+    * changed.  Otherwise only the concepts that were added, changed or removed are written to the existing database.
+    * The database is written from scratch if the vocabulary code tables have changed or its script file is missing.
+    * An update that changes no concepts leaves the database files untouched.  A lookup with a reload period watches
+    * the script file of its in-process hsql dictionary and picks up a rebuilt or updated dictionary without a restart.
+    *
+    * @param threadCount number of threads parsing the umls rrf files
+    * @param incremental true to update an existing dictionary rather than build it from scratch
+    */
+   static boolean buildDictionary( final String umlsDirPath,
+                                   final String ctakesDirPath,
+                                   final String dictionaryName,
+                                   final Collection<String> wantedLanguages,
+                                   final Collection<String> wantedSources,
+                                   final Collection<String> wantedTargets,
+                                   final Collection<Tui> wantedTuis,
+                                   final int threadCount,
+                                   final boolean incremental ) {
+      final String databaseDirPath = getDatabaseDirPath( ctakesDirPath );
+      final File fingerprintFile = new File( databaseDirPath + "/" + dictionaryName,
+            dictionaryName + FINGERPRINT_EXTENSION );
+      final DictionaryFingerprint fingerprint
+            = createFingerprint( umlsDirPath, wantedLanguages, wantedSources, wantedTargets, wantedTuis );
+      // A fingerprint is meaningless without the database that it describes, e.g. after the database was deleted
+      final File scriptFile = new File( databaseDirPath + "/" + dictionaryName, dictionaryName + ".script" );
+      final DictionaryFingerprint previousFingerprint
+            = incremental && scriptFile.isFile() ? DictionaryFingerprint.readFile( fingerprintFile ) : null;
+      if ( previousFingerprint != null && previousFingerprint.hasSameInputs( fingerprint ) ) {
+         LOGGER.info( "Dictionary " + dictionaryName + " is up to date with its UMLS files and settings" );
+         return true;
+      }
       // Set up the term utility
       final UmlsTermUtil umlsTermUtil = new UmlsTermUtil( DEFAULT_DATA_DIR );
-      final Map<Long, Concept> conceptMap
-            = parseAll( umlsTermUtil, umlsDirPath, wantedLanguages, wantedSources, wantedTargets, wantedTuis );
-      return writeDatabase( ctakesDirPath, dictionaryName, conceptMap );
+      final Map<Long, Concept> conceptMap;
+      try {
+         conceptMap = parseAll( umlsTermUtil, umlsDirPath, wantedLanguages, wantedSources, wantedTargets, wantedTuis,
+               threadCount );
+      } catch ( UncheckedIOException uioE ) {
+         // Concepts from part of a file would remove the rest from the dictionary
+         LOGGER.error( uioE.getMessage() + ".  Dictionary " + dictionaryName + " is unchanged", uioE.getCause() );
+         return false;
+      }
+      fingerprint.setVocabularies();
+      // A build that fails part way must not leave a fingerprint claiming the database is up to date
+      if ( fingerprintFile.isFile() && !fingerprintFile.delete() ) {
+         LOGGER.error( "Could not remove previous fingerprint " + fingerprintFile.getPath() );
+         return false;
+      }
+      final boolean written;
+      if ( previousFingerprint != null && previousFingerprint.hasSameVocabularies( fingerprint ) ) {
+         LOGGER.info( "Updating Concepts in existing Dictionary " + dictionaryName );
+         written = updateDatabase( databaseDirPath, dictionaryName, conceptMap );
+         if ( !written ) {
+            LOGGER.error( "Dictionary " + dictionaryName + " could not be updated.  The next build will write it"
+                          + " from scratch" );
+         }
+      } else {
+         written = writeDatabase( databaseDirPath, dictionaryName, conceptMap, incremental );
+      }
+      return written && fingerprint.writeFile( fingerprintFile );
+   }
+
+   static private DictionaryFingerprint createFingerprint( final String umlsDirPath,
+                                                           final Collection<String> wantedLanguages,
+                                                           final Collection<String> wantedSources,
+                                                           final Collection<String> wantedTargets,
+                                                           final Collection<Tui> wantedTuis ) {
+      return new DictionaryFingerprint()
+            .addFile( "MRCONSO", new File( umlsDirPath, "META/MRCONSO.RRF" ) )
+            .addFile( "MRSTY", new File( umlsDirPath, "META/MRSTY.RRF" ) )
+            .addSetting( "languages", wantedLanguages )
+            .addSetting( "sources", wantedSources )
+            .addSetting( "targets", wantedTargets )
+            .addSetting( "tuis", wantedTuis )
+            .addSetting( "dataDir", DEFAULT_DATA_DIR )
+            .addSetting( "minCharLength", MIN_CHAR_LENGTH )
+            .addSetting( "maxCharLength", MAX_CHAR_LENGTH )
+            .addSetting( "maxWordCount", MAX_WORD_COUNT )
+            .addSetting( "maxSymCount", MAX_SYM_COUNT )
+            .addSetting( "wsdDivisor", WSD_DIVISOR )
+            .addSetting( "anatMultiplier", ANAT_MULTIPLIER );
    }
 
 
@@ -59,14 +158,15 @@ final class DictionaryBuilder {
                                                final Collection<String> wantedLanguages,
                                                final Collection<String> wantedSources,
                                                final Collection<String> wantedTargets,
-                                               final Collection<Tui> wantedTuis ) {
+                                               final Collection<Tui> wantedTuis,
+                                               final int threadCount ) {
       LOGGER.info( "Parsing Concepts" );
       // Create a map of Cuis to empty Concepts for all wanted Tuis and source vocabularies
       final Map<Long, Concept> conceptMap
-            = ConceptMapFactory.createInitialConceptMap( umlsDirPath, wantedSources, wantedTuis );
+            = ConceptMapFactory.createInitialConceptMap( umlsDirPath, wantedSources, wantedTuis, threadCount );
       // Fill in information for all valid concepts
       MrconsoParser.parseAllConcepts( umlsDirPath, conceptMap, wantedSources, wantedTargets, umlsTermUtil,
-            wantedLanguages, true, MIN_CHAR_LENGTH, MAX_CHAR_LENGTH, MAX_WORD_COUNT, MAX_SYM_COUNT );
+            wantedLanguages, true, MIN_CHAR_LENGTH, MAX_CHAR_LENGTH, MAX_WORD_COUNT, MAX_SYM_COUNT, threadCount );
       removeWsdRarities( conceptMap, wantedTuis, WSD_DIVISOR, ANAT_MULTIPLIER );
 //      removeUnwantedDrugs( conceptMap, wantedTuis );
       // Cull non-ANAT texts by ANAT texts as determined by ANAT tuis
@@ -81,8 +181,9 @@ final class DictionaryBuilder {
       final Collection<Tui> wantedAnatTuis = new ArrayList<>( wantedTuis );
       wantedAnatTuis.retainAll( Arrays.asList( TuiTableModel.CTAKES_ANAT ) );
       final CollectionMap<String, Concept, Set<Concept>> synonymCodeMap = new HashSetMap<>( 500000 );
+      // Culling only touches each concept's own texts, so it can be done in parallel
+      conceptMap.values().parallelStream().forEach( Concept::cullExtensions );
       for ( Concept concept : conceptMap.values() ) {
-         concept.cullExtensions();
          concept.getTexts().forEach( t -> synonymCodeMap.placeValue( t, concept ) );
       }
       // Poor man's WSD
@@ -193,17 +294,39 @@ final class DictionaryBuilder {
    }
 
 
-   static private boolean writeDatabase( final String ctakesDirPath,
-                                         final String dictionaryName,
-                                         final Map<Long, Concept> conceptMap ) {
+   static private String getDatabaseDirPath( final String ctakesDirPath ) {
       final File ctakesRoot = new File( ctakesDirPath );
       String databaseDirPath = ctakesDirPath + "/" + CTAKES_APP_DB_PATH;
       if ( Arrays.asList( ctakesRoot.list() ).contains( CTAKES_RES_MODULE ) ) {
          databaseDirPath = ctakesDirPath + "/" + CTAKES_RES_DB_PATH;
       }
+      return databaseDirPath;
+   }
+
+   static private Connection createDatabaseConnection( final String databaseDirPath, final String dictionaryName ) {
       final String url = HsqlUtil.URL_PREFIX + databaseDirPath.replace( '\\', '/' ) + "/" + dictionaryName + "/" +
                          dictionaryName;
-      final Connection connection = JdbcUtil.createDatabaseConnection( url, "SA", "" );
+      return JdbcUtil.createDatabaseConnection( url, "SA", "" );
+   }
+
+   static private boolean updateDatabase( final String databaseDirPath,
+                                          final String dictionaryName,
+                                          final Map<Long, Concept> conceptMap ) {
+      final Connection connection = createDatabaseConnection( databaseDirPath, dictionaryName );
+      return RareWordDbWriter.updateConcepts( connection, conceptMap );
+   }
+
+   /**
+    * @param clearDatabase true to drop the tables of any database from a previous build
+    */
+   static private boolean writeDatabase( final String databaseDirPath,
+                                         final String dictionaryName,
+                                         final Map<Long, Concept> conceptMap,
+                                         final boolean clearDatabase ) {
+      final Connection connection = createDatabaseConnection( databaseDirPath, dictionaryName );
+      if ( clearDatabase && !HsqlUtil.clearDatabase( connection ) ) {
+         return false;
+      }
       if ( !HsqlUtil.createDatabase( connection ) ) {
          return false;
       }
@@ -0,0 +1,69 @@
+package org.apache.ctakes.gui.dictionary;
+
+import com.lexicalscope.jewel.cli.Option;
+
+import java.util.List;
+
+/**
+ * Options for building a dictionary without the gui.
+ * For instance; -u UmlsDir, -c CtakesDir, -n DictionaryName.
+ */
+interface DictionaryBuilderOptions {
+
+   @Option(
+         shortName = "u",
+         longName = "umlsDir",
+         description = "path to the UMLS root directory, containing META/MRCONSO.RRF and META/MRSTY.RRF." )
+   String getUmlsDirPath();
+
+   @Option(
+         shortName = "c",
+         longName = "ctakesDir",
+         description = "path to the Apache cTAKES root directory.  It can be a binary installation"
+                       + " or a developer sandbox." )
+   String getCtakesDirPath();
+
+   @Option(
+         shortName = "n",
+         longName = "name",
+         description = "name of the dictionary." )
+   String getDictionaryName();
+
+   @Option(
+         longName = "sources",
+         description = "source vocabularies for valid cuis.",
+         defaultValue = { "SNOMEDCT_US", "RXNORM" } )
+   List<String> getSources();
+
+   @Option(
+         longName = "targets",
+         description = "source vocabularies whose codes are stored in the dictionary.",
+         defaultValue = { "SNOMEDCT_US", "RXNORM" } )
+   List<String> getTargets();
+
+   @Option(
+         longName = "languages",
+         description = "languages of the dictionary terms.",
+         defaultValue = { "ENG" } )
+   List<String> getLanguages();
+
+   @Option(
+         longName = "tuis",
+         description = "semantic types for valid cuis, for instance T047.  The cTAKES semantic types by default.",
+         defaultToNull = true )
+   List<String> getTuis();
+
+   @Option(
+         shortName = "t",
+         longName = "threads",
+         description = "number of threads parsing the UMLS files.  All available processors by default.",
+         defaultValue = "0" )
+   int getThreadCount();
+
+   @Option(
+         longName = "incremental",
+         description = "update an existing dictionary with only the concepts that have changed since it was built."
+                       + "  All rows of the existing dictionary are read into memory to find the changes." )
+   boolean getIncremental();
+
+}
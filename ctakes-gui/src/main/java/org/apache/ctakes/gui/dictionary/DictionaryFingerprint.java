@@ -0,0 +1,115 @@
+package org.apache.ctakes.gui.dictionary;
+
+
+import org.apache.ctakes.gui.dictionary.umls.VocabularyStore;
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Records what a dictionary was built from: the umls files, the builder settings and the vocabulary code tables.
+ * A dictionary with the same inputs does not need to be built again,
+ * and a dictionary with the same code tables can be updated in place instead of being rewritten.
+ */
+final class DictionaryFingerprint {
+
+   static private final Logger LOGGER = Logger.getLogger( "DictionaryFingerprint" );
+
+   static private final String INPUT_PREFIX = "input.";
+   static private final String VOCABULARY_PREFIX = "vocabulary.";
+
+   private final Map<String, String> _inputs = new TreeMap<>();
+   private final Map<String, String> _vocabularies = new TreeMap<>();
+
+   /**
+    * A file is identified by its length and modification time, as reading a multi-gigabyte rrf file would take
+    * about as long as parsing it.
+    *
+    * @param name name of the input
+    * @param file some input file
+    * @return this fingerprint
+    */
+   DictionaryFingerprint addFile( final String name, final File file ) {
+      _inputs.put( name, file.getAbsolutePath() + " " + file.length() + " " + file.lastModified() );
+      return this;
+   }
+
+   DictionaryFingerprint addSetting( final String name, final Object value ) {
+      _inputs.put( name, String.valueOf( value ) );
+      return this;
+   }
+
+   /**
+    * @param name   name of the setting
+    * @param values values of the setting, in any order
+    * @return this fingerprint
+    */
+   DictionaryFingerprint addSetting( final String name, final Collection<?> values ) {
+      _inputs.put( name, values.stream().map( String::valueOf ).sorted().collect( Collectors.joining( "," ) ) );
+      return this;
+   }
+
+   /**
+    * Records the code tables for all vocabularies currently in the {@link VocabularyStore}
+    */
+   void setVocabularies() {
+      _vocabularies.clear();
+      for ( String vocabulary : VocabularyStore.getInstance().getAllVocabularies() ) {
+         _vocabularies.put( vocabulary, VocabularyStore.getInstance().getJdbcClass( vocabulary ) );
+      }
+   }
+
+   boolean hasSameInputs( final DictionaryFingerprint other ) {
+      return _inputs.equals( other._inputs );
+   }
+
+   boolean hasSameVocabularies( final DictionaryFingerprint other ) {
+      return _vocabularies.equals( other._vocabularies );
+   }
+
+   boolean writeFile( final File file ) {
+      final Properties properties = new Properties();
+      _inputs.forEach( ( k, v ) -> properties.setProperty( INPUT_PREFIX + k, v ) );
+      _vocabularies.forEach( ( k, v ) -> properties.setProperty( VOCABULARY_PREFIX + k, v ) );
+      try ( final Writer writer = new BufferedWriter( new FileWriter( file ) ) ) {
+         properties.store( writer, "cTAKES dictionary build fingerprint" );
+      } catch ( IOException ioE ) {
+         LOGGER.error( "Could not write fingerprint " + file.getPath() );
+         LOGGER.error( ioE.getMessage() );
+         return false;
+      }
+      return true;
+   }
+
+   /**
+    * @param file fingerprint file of a previous build
+    * @return the fingerprint of the previous build, or null if there is none
+    */
+   static DictionaryFingerprint readFile( final File file ) {
+      if ( !file.isFile() ) {
+         return null;
+      }
+      final Properties properties = new Properties();
+      try ( final Reader reader = new BufferedReader( new FileReader( file ) ) ) {
+         properties.load( reader );
+      } catch ( IOException ioE ) {
+         LOGGER.warn( "Could not read fingerprint " + file.getPath() + " " + ioE.getMessage() );
+         return null;
+      }
+      final DictionaryFingerprint fingerprint = new DictionaryFingerprint();
+      for ( String key : properties.stringPropertyNames() ) {
+         if ( key.startsWith( INPUT_PREFIX ) ) {
+            fingerprint._inputs.put( key.substring( INPUT_PREFIX.length() ), properties.getProperty( key ) );
+         } else if ( key.startsWith( VOCABULARY_PREFIX ) ) {
+            fingerprint._vocabularies.put( key.substring( VOCABULARY_PREFIX.length() ), properties.getProperty( key ) );
+         }
+      }
+      return fingerprint;
+   }
+
+}
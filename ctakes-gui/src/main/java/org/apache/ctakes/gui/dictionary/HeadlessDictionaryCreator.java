@@ -0,0 +1,86 @@
+package org.apache.ctakes.gui.dictionary;
+
+
+import com.lexicalscope.jewel.cli.ArgumentValidationException;
+import com.lexicalscope.jewel.cli.CliFactory;
+import org.apache.ctakes.gui.dictionary.umls.Tui;
+import org.apache.ctakes.gui.dictionary.umls.TuiTableModel;
+import org.apache.ctakes.gui.dictionary.util.BsvChunkParser;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+
+/**
+ * Builds a dictionary from the command line, with the same steps as the gui {@link DictionaryCreator}.
+ * Useful for repeated builds of a custom dictionary and for builds on machines without a display.
+ */
+final public class HeadlessDictionaryCreator {
+
+   static private final Logger LOGGER = Logger.getLogger( "HeadlessDictionaryCreator" );
+
+   private HeadlessDictionaryCreator() {
+   }
+
+   /**
+    * @param args dictionary build options, see {@link DictionaryBuilderOptions}
+    */
+   public static void main( final String... args ) {
+      if ( !run( args ) ) {
+         System.exit( 1 );
+      }
+   }
+
+   /**
+    * @param args dictionary build options, see {@link DictionaryBuilderOptions}
+    * @return true if the dictionary was built
+    */
+   public static boolean run( final String... args ) {
+      final DictionaryBuilderOptions options;
+      try {
+         options = CliFactory.parseArguments( DictionaryBuilderOptions.class, args );
+      } catch ( ArgumentValidationException avE ) {
+         LOGGER.error( avE.getMessage() );
+         return false;
+      }
+      final Collection<Tui> wantedTuis = getWantedTuis( options );
+      if ( wantedTuis == null ) {
+         return false;
+      }
+      final int threadCount = options.getThreadCount() > 0
+                              ? options.getThreadCount()
+                              : BsvChunkParser.getDefaultThreadCount();
+      final String dictionaryName = options.getDictionaryName().toLowerCase();
+      final long startMillis = System.currentTimeMillis();
+      if ( !DictionaryBuilder.buildDictionary( options.getUmlsDirPath(), options.getCtakesDirPath(), dictionaryName,
+            options.getLanguages(), options.getSources(), options.getTargets(), wantedTuis, threadCount,
+            options.getIncremental() ) ) {
+         LOGGER.error( "Dictionary " + dictionaryName + " could not be built in " + options.getCtakesDirPath() );
+         return false;
+      }
+      LOGGER.info( "Dictionary " + dictionaryName + " successfully built in " + options.getCtakesDirPath()
+                   + " in " + (System.currentTimeMillis() - startMillis) / 1000 + " seconds" );
+      return true;
+   }
+
+   /**
+    * @return the wanted tuis, the cTAKES tuis if none were given, or null if a given tui is not valid
+    */
+   static private Collection<Tui> getWantedTuis( final DictionaryBuilderOptions options ) {
+      if ( options.getTuis() == null ) {
+         return new ArrayList<>( new TuiTableModel().getWantedTuis() );
+      }
+      final Collection<Tui> wantedTuis = EnumSet.noneOf( Tui.class );
+      for ( String tui : options.getTuis() ) {
+         try {
+            wantedTuis.add( Tui.valueOf( tui.toUpperCase() ) );
+         } catch ( IllegalArgumentException iaE ) {
+            LOGGER.error( "Unknown Semantic Type " + tui );
+            return null;
+         }
+      }
+      return new ArrayList<>( wantedTuis );
+   }
+
+}
@@ -1,6 +1,7 @@
 package org.apache.ctakes.gui.dictionary.umls;
 
 
+import org.apache.ctakes.gui.dictionary.util.BsvChunkParser;
 import org.apache.log4j.Logger;
 
 import java.util.Collection;
@@ -22,6 +23,18 @@ final public class ConceptMapFactory {
    static public Map<Long, Concept> createInitialConceptMap( final String umlsDirPath,
                                                              final Collection<String> wantedSources,
                                                              final Collection<Tui> wantedTuis ) {
+      return createInitialConceptMap( umlsDirPath, wantedSources, wantedTuis,
+            BsvChunkParser.getDefaultThreadCount() );
+   }
+
+   /**
+    * @param threadCount number of threads parsing the rrf files
+    * @throws java.io.UncheckedIOException if an rrf file could not be read
+    */
+   static public Map<Long, Concept> createInitialConceptMap( final String umlsDirPath,
+                                                             final Collection<String> wantedSources,
+                                                             final Collection<Tui> wantedTuis,
+                                                             final int threadCount ) {
       if ( wantedSources.isEmpty() ) {
          LOGGER.warn( "No source vocabularies specified" );
          return Collections.emptyMap();
@@ -31,9 +44,10 @@ final public class ConceptMapFactory {
          return Collections.emptyMap();
       }
       // get the valid Cuis for all wanted Tuis
-      final Map<Long, Concept> concepts = MrstyParser.createConceptsForTuis( umlsDirPath, wantedTuis );
+      final Map<Long, Concept> concepts = MrstyParser.createConceptsForTuis( umlsDirPath, wantedTuis, threadCount );
       // filter out the Cuis that do not belong to the given sources
-      final Collection<Long> validVocabularyCuis = MrconsoParser.getValidVocabularyCuis( umlsDirPath, wantedSources );
+      final Collection<Long> validVocabularyCuis
+            = MrconsoParser.getValidVocabularyCuis( umlsDirPath, wantedSources, threadCount );
       concepts.keySet().retainAll( validVocabularyCuis );
       LOGGER.info( "Total Valid Cuis " + concepts.size() + "\t from wanted Tuis and Vocabularies" );
       return concepts;
@@ -3,9 +3,9 @@ package org.apache.ctakes.gui.dictionary.umls;
 
 import org.apache.log4j.Logger;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Author: SPF
@@ -22,7 +22,9 @@ public enum CuiCodeUtil {
    static private final Logger LOGGER = Logger.getLogger( "CuiCodeUtil" );
    static private final long PREFIX_MULTIPLIER = 100000000;
 
-   final private List<PrefixerPair> _prefixerPairList = new ArrayList<>();
+   // Read by every parsing thread.  New prefixes are only added by getCuiCode, which the rrf parsers call
+   // on the reading thread in file order, so the index of each prefix does not depend on thread scheduling
+   final private List<PrefixerPair> _prefixerPairList = new CopyOnWriteArrayList<>();
 
    CuiCodeUtil() {
       // Add the standard C as the default encoding prefix
@@ -43,12 +45,36 @@ public enum CuiCodeUtil {
       final PrefixerPair prefixerPair = new PrefixerPair( cui );
       int prefixerIndex = _prefixerPairList.indexOf( prefixerPair );
       if ( prefixerIndex < 0 ) {
-         prefixerIndex = _prefixerPairList.size();
-         _prefixerPairList.add( prefixerPair );
+         prefixerIndex = addPrefixerPair( prefixerPair );
       }
       return prefixerPair.getCuiCode( cui, prefixerIndex );
    }
 
+   /**
+    * Unlike {@link #getCuiCode(String)} this never adds a prefix,
+    * so it can be called on a parsing thread without changing the index of any prefix.
+    *
+    * @param cui some cui
+    * @return code for the cui, or null if no cui with the same prefix has been coded
+    */
+   public Long getKnownCuiCode( final String cui ) {
+      final PrefixerPair prefixerPair = new PrefixerPair( cui );
+      final int prefixerIndex = _prefixerPairList.indexOf( prefixerPair );
+      if ( prefixerIndex < 0 ) {
+         return null;
+      }
+      return prefixerPair.getCuiCode( cui, prefixerIndex );
+   }
+
+   synchronized private int addPrefixerPair( final PrefixerPair prefixerPair ) {
+      final int prefixerIndex = _prefixerPairList.indexOf( prefixerPair );
+      if ( prefixerIndex >= 0 ) {
+         return prefixerIndex;
+      }
+      _prefixerPairList.add( prefixerPair );
+      return _prefixerPairList.size() - 1;
+   }
+
 
    static private final class PrefixerPair {
       final private int __digitCount;
@@ -1,13 +1,14 @@
 package org.apache.ctakes.gui.dictionary.umls;
 
 
-import org.apache.ctakes.gui.dictionary.util.FileUtil;
+import org.apache.ctakes.gui.dictionary.util.BsvChunkParser;
+import org.apache.ctakes.gui.dictionary.util.BsvLine;
 import org.apache.ctakes.gui.dictionary.util.TextTokenizer;
 import org.apache.log4j.Logger;
 
-import java.io.BufferedReader;
-import java.io.IOException;
 import java.util.*;
+import java.util.function.Function;
+import java.util.function.ObjLongConsumer;
 import java.util.stream.Collectors;
 
 import static org.apache.ctakes.gui.dictionary.umls.MrconsoIndex.*;
@@ -118,107 +119,223 @@ final public class MrconsoParser {
                                                       final int maxCharLength,
                                                       final int maxWordCount,
                                                       final int maxSymCount ) {
+      return parseAllConcepts( umlsDirPath, conceptMap, wantedSources, wantedTargets, umlsTermUtil, languages,
+            extractAbbreviations, minCharLength, maxCharLength, maxWordCount, maxSymCount,
+            BsvChunkParser.getDefaultThreadCount() );
+   }
+
+   /**
+    * Rows are filtered, tokenized and formatted on several threads.
+    * Texts, codes and preferred terms are added to the concepts in file order.
+    *
+    * @param threadCount number of threads parsing MRCONSO
+    * @throws java.io.UncheckedIOException if MRCONSO could not be read.  The concepts are then partly filled
+    */
+   static public Map<Long, Concept> parseAllConcepts( final String umlsDirPath,
+                                                      final Map<Long, Concept> conceptMap,
+                                                      final Collection<String> wantedSources,
+                                                      final Collection<String> wantedTargets,
+                                                      final UmlsTermUtil umlsTermUtil,
+                                                      final Collection<String> languages,
+                                                      final boolean extractAbbreviations,
+                                                      final int minCharLength,
+                                                      final int maxCharLength,
+                                                      final int maxWordCount,
+                                                      final int maxSymCount,
+                                                      final int threadCount ) {
       final String mrconsoPath = umlsDirPath + MR_CONSO_SUB_PATH;
       final Collection<String> invalidTypeSet = new HashSet<>( Arrays.asList( getNonRxnormExclusions() ) );
       LOGGER.info( "Compiling map of Concepts from " + mrconsoPath );
-      long lineCount = 0;
-      long textCount = 0;
-      try ( final BufferedReader reader = FileUtil.createReader( mrconsoPath ) ) {
-         List<String> tokens = FileUtil.readBsvTokens( reader, mrconsoPath );
-         while ( tokens != null ) {
-            lineCount++;
-            if ( lineCount % 100000 == 0 ) {
-               LOGGER.info( "File Line " + lineCount + "   Texts " + textCount );
-            }
-            if ( !isRowLengthOk( tokens )
-                 || !isLanguageOk( tokens, languages )
-                 || !isTermTypeOk( tokens, invalidTypeSet ) ) {
-               tokens = FileUtil.readBsvTokens( reader, mrconsoPath );
+      final ConceptRowParser rowParser = new ConceptRowParser( conceptMap, wantedTargets, umlsTermUtil, languages,
+            invalidTypeSet, extractAbbreviations, minCharLength, maxCharLength, maxWordCount, maxSymCount );
+      final ConceptRowCollector rowCollector = new ConceptRowCollector();
+      final long lineCount = BsvChunkParser.parseFile( mrconsoPath, threadCount, rowParser, rowCollector );
+      final Collection<Long> empties = conceptMap.entrySet().stream()
+            .filter( e -> e.getValue().isEmpty() )
+            .map( Map.Entry::getKey )
+            .collect( Collectors.toList() );
+      conceptMap.keySet().removeAll( empties );
+      LOGGER.info( "File Lines: " + lineCount + " Concepts: " + conceptMap.size()
+                   + "  Texts: " + rowCollector._textCount );
+      return conceptMap;
+   }
+
+   /**
+    * The wanted content of a single MRCONSO row
+    */
+   static private final class ConceptRow {
+      final private Concept __concept;
+      final private String __preferredText;
+      final private Collection<String> __texts;
+      final private String __source;
+      final private String __code;
+
+      private ConceptRow( final Concept concept, final String preferredText, final Collection<String> texts,
+                          final String source, final String code ) {
+         __concept = concept;
+         __preferredText = preferredText;
+         __texts = texts;
+         __source = source;
+         __code = code;
+      }
+   }
+
+   /**
+    * Does the expensive filtering and text formatting of a chunk of MRCONSO lines.  Thread safe.
+    */
+   static private final class ConceptRowParser implements Function<List<String>, List<ConceptRow>> {
+      final private Map<Long, Concept> __conceptMap;
+      final private Collection<String> __wantedTargets;
+      final private UmlsTermUtil __umlsTermUtil;
+      final private Collection<String> __languages;
+      final private Collection<String> __invalidTypeSet;
+      final private boolean __extractAbbreviations;
+      final private int __minCharLength;
+      final private int __maxCharLength;
+      final private int __maxWordCount;
+      final private int __maxSymCount;
+
+      private ConceptRowParser( final Map<Long, Concept> conceptMap,
+                                final Collection<String> wantedTargets,
+                                final UmlsTermUtil umlsTermUtil,
+                                final Collection<String> languages,
+                                final Collection<String> invalidTypeSet,
+                                final boolean extractAbbreviations,
+                                final int minCharLength,
+                                final int maxCharLength,
+                                final int maxWordCount,
+                                final int maxSymCount ) {
+         __conceptMap = conceptMap;
+         __wantedTargets = wantedTargets;
+         __umlsTermUtil = umlsTermUtil;
+         __languages = languages;
+         __invalidTypeSet = invalidTypeSet;
+         __extractAbbreviations = extractAbbreviations;
+         __minCharLength = minCharLength;
+         __maxCharLength = maxCharLength;
+         __maxWordCount = maxWordCount;
+         __maxSymCount = maxSymCount;
+      }
+
+      @Override
+      public List<ConceptRow> apply( final List<String> lines ) {
+         final List<ConceptRow> rows = new ArrayList<>();
+         final BsvLine bsvLine = new BsvLine();
+         for ( String line : lines ) {
+            bsvLine.setLine( line );
+            if ( !isRowLengthOk( bsvLine )
+                 || !isLanguageOk( bsvLine, __languages )
+                 || !isTermTypeOk( bsvLine, __invalidTypeSet ) ) {
                continue;
             }
-            final Long cuiCode = CuiCodeUtil.getInstance().getCuiCode( getToken( tokens, CUI ) );
-            final Concept concept = conceptMap.get( cuiCode );
+            // Every wanted cui has already been coded, so an unknown prefix belongs to an unwanted cui
+            final Long cuiCode = CuiCodeUtil.getInstance().getKnownCuiCode( getToken( bsvLine, CUI ) );
+            // the concept map is not changed while MRCONSO is parsed, so concurrent lookups are safe
+            final Concept concept = cuiCode == null ? null : __conceptMap.get( cuiCode );
             if ( concept == null ) {
                // cui for current row is unwanted
-               tokens = FileUtil.readBsvTokens( reader, mrconsoPath );
-               continue;
-            }
-            final String text = getToken( tokens, TEXT );
-            if ( !umlsTermUtil.isTextValid( text.toLowerCase() ) ) {
-               tokens = FileUtil.readBsvTokens( reader, mrconsoPath );
                continue;
             }
-            if ( isPreferredTerm( tokens ) ) {
-               concept.setPreferredText( text );
-            }
-            // Get tokenized text
-            final String tokenizedText = TextTokenizer.getTokenizedText( text );
-            if ( tokenizedText == null || tokenizedText.isEmpty()
-                 || !umlsTermUtil.isTextValid( tokenizedText )
-                 || DoseUtil.hasUnit( tokenizedText ) ) {
-               tokens = FileUtil.readBsvTokens( reader, mrconsoPath );
-               continue;
+            final ConceptRow row = parseRow( bsvLine, concept );
+            if ( row != null ) {
+               rows.add( row );
             }
-            // Remove unwanted prefixes and suffixes
-            final String strippedText = umlsTermUtil.getStrippedText( tokenizedText );
-            if ( strippedText == null || strippedText.isEmpty()
-                 || UmlsTermUtil.isTextTooShort( strippedText, minCharLength )
-                 || UmlsTermUtil.isTextTooLong( strippedText, maxCharLength, maxWordCount, maxSymCount ) ) {
-               tokens = FileUtil.readBsvTokens( reader, mrconsoPath );
-               continue;
+         }
+         return rows;
+      }
+
+      private ConceptRow parseRow( final BsvLine bsvLine, final Concept concept ) {
+         final String text = getToken( bsvLine, TEXT );
+         if ( !__umlsTermUtil.isTextValid( text.toLowerCase() ) ) {
+            return null;
+         }
+         final String preferredText = isPreferredTerm( bsvLine ) ? text : null;
+         // Get tokenized text
+         final String tokenizedText = TextTokenizer.getTokenizedText( text );
+         if ( tokenizedText == null || tokenizedText.isEmpty()
+              || !__umlsTermUtil.isTextValid( tokenizedText )
+              || DoseUtil.hasUnit( tokenizedText ) ) {
+            return createRow( concept, preferredText, null, bsvLine );
+         }
+         // Remove unwanted prefixes and suffixes
+         final String strippedText = __umlsTermUtil.getStrippedText( tokenizedText );
+         if ( strippedText == null || strippedText.isEmpty()
+              || UmlsTermUtil.isTextTooShort( strippedText, __minCharLength )
+              || UmlsTermUtil.isTextTooLong( strippedText, __maxCharLength, __maxWordCount, __maxSymCount ) ) {
+            return createRow( concept, preferredText, null, bsvLine );
+         }
+         final Collection<String> formattedTexts
+               = __umlsTermUtil.getFormattedTexts( strippedText, __extractAbbreviations, __minCharLength,
+               __maxCharLength, __maxWordCount, __maxSymCount );
+         return createRow( concept, preferredText, formattedTexts, bsvLine );
+      }
+
+      private ConceptRow createRow( final Concept concept, final String preferredText,
+                                    final Collection<String> formattedTexts, final BsvLine bsvLine ) {
+         if ( formattedTexts == null || formattedTexts.isEmpty() ) {
+            return preferredText == null ? null : new ConceptRow( concept, preferredText, null, null, null );
+         }
+         // Add secondary codes
+         if ( !bsvLine.isFieldIn( SOURCE._index, __wantedTargets )
+              || bsvLine.isField( SOURCE_CODE._index, "NOCODE" ) ) {
+            return new ConceptRow( concept, preferredText, formattedTexts, null, null );
+         }
+         return new ConceptRow( concept, preferredText, formattedTexts,
+               getToken( bsvLine, SOURCE ), getToken( bsvLine, SOURCE_CODE ) );
+      }
+   }
+
+   /**
+    * Adds parsed rows to their concepts, in file order, on a single thread.
+    */
+   static private final class ConceptRowCollector implements ObjLongConsumer<List<ConceptRow>> {
+      private long _textCount = 0;
+      private long _loggedLines = 0;
+
+      @Override
+      public void accept( final List<ConceptRow> rows, final long lineCount ) {
+         for ( ConceptRow row : rows ) {
+            if ( row.__preferredText != null ) {
+               row.__concept.setPreferredText( row.__preferredText );
             }
-            final Collection<String> formattedTexts
-                  = umlsTermUtil.getFormattedTexts( strippedText, extractAbbreviations, minCharLength,
-                  maxCharLength, maxWordCount, maxSymCount );
-            if ( formattedTexts != null && !formattedTexts.isEmpty() ) {
-               textCount += concept.addTexts( formattedTexts );
-               // Add secondary codes
-               final String source = getToken( tokens, SOURCE );
-               final String code = getToken( tokens, SOURCE_CODE );
-               if ( wantedTargets.contains( source ) && !code.equals( "NOCODE" ) ) {
-                  concept.addCode( source, code );
+            if ( row.__texts != null ) {
+               _textCount += row.__concept.addTexts( row.__texts );
+               if ( row.__source != null ) {
+                  row.__concept.addCode( row.__source, row.__code );
                }
             }
-            tokens = FileUtil.readBsvTokens( reader, mrconsoPath );
          }
-      } catch ( IOException ioE ) {
-         LOGGER.error( ioE.getMessage() );
+         if ( lineCount - _loggedLines >= 100000 ) {
+            LOGGER.info( "File Line " + lineCount + "   Texts " + _textCount );
+            _loggedLines = lineCount;
+         }
       }
-      final Collection<Long> empties = conceptMap.entrySet().stream()
-            .filter( e -> e.getValue().isEmpty() )
-            .map( Map.Entry::getKey )
-            .collect( Collectors.toList() );
-      conceptMap.keySet().removeAll( empties );
-      LOGGER.info( "File Lines: " + lineCount + " Concepts: " + conceptMap.size() + "  Texts: " + textCount );
-      return conceptMap;
    }
 
-   static private boolean isRowLengthOk( final List<String> tokens ) {
-      return tokens.size() >= TEXT._index;
+   static private boolean isRowLengthOk( final BsvLine bsvLine ) {
+      return bsvLine.getFieldCount() > TEXT._index;
    }
 
-   static private boolean isLanguageOk( final List<String> tokens,
+   static private boolean isLanguageOk( final BsvLine bsvLine,
                                         final Collection<String> languages ) {
-      return languages.contains( getToken( tokens, LANGUAGE ) );
+      return bsvLine.isFieldIn( LANGUAGE._index, languages );
    }
 
-   static private boolean isTermTypeOk( final List<String> tokens,
+   static private boolean isTermTypeOk( final BsvLine bsvLine,
                                         final Collection<String> invalidTypeSet ) {
-      final String type = getToken( tokens, TERM_TYPE );
-      if ( invalidTypeSet.contains( type ) ) {
+      if ( bsvLine.isFieldIn( TERM_TYPE._index, invalidTypeSet ) ) {
          return false;
       }
       // "Synonyms" are actually undesirable in the rxnorm vocabulary
-      final String source = getToken( tokens, SOURCE );
-      return !(source.equals( "RXNORM" ) && type.equals( "SY" ));
+      return !(bsvLine.isField( SOURCE._index, "RXNORM" ) && bsvLine.isField( TERM_TYPE._index, "SY" ));
    }
 
-   static private boolean isSourceOk( final List<String> tokens, final Collection<String> wantedSources ) {
-      return wantedSources.contains( getToken( tokens, SOURCE ) );
+   static private boolean isSourceOk( final BsvLine bsvLine, final Collection<String> wantedSources ) {
+      return bsvLine.isFieldIn( SOURCE._index, wantedSources );
    }
 
-   static private boolean isPreferredTerm( final List<String> tokens ) {
-      return getToken( tokens, STATUS ).equals( "P" ) && getToken( tokens, FORM ).equals( "PF" );
+   static private boolean isPreferredTerm( final BsvLine bsvLine ) {
+      return bsvLine.isField( STATUS._index, "P" ) && bsvLine.isField( FORM._index, "PF" );
    }
 
 
@@ -231,7 +348,22 @@ final public class MrconsoParser {
     */
    static public Collection<Long> getValidVocabularyCuis( final String umlsDirPath,
                                                           final Collection<String> sourceVocabularies ) {
-      return getValidVocabularyCuis( umlsDirPath, sourceVocabularies, getNonRxnormExclusions() );
+      return getValidVocabularyCuis( umlsDirPath, sourceVocabularies, BsvChunkParser.getDefaultThreadCount() );
+   }
+
+   /**
+    * Can cull the given collection of cuis
+    *
+    * @param umlsDirPath        path to the UMLS_ROOT Meta/MRCONSO.RRF file
+    * @param sourceVocabularies desired source type names as appear in rrf: RXNORM, SNOMEDCT, MSH, etc.
+    * @param threadCount        number of threads parsing MRCONSO
+    * @return Subset of cuis that exist in in the given sources
+    * @throws java.io.UncheckedIOException if MRCONSO could not be read
+    */
+   static public Collection<Long> getValidVocabularyCuis( final String umlsDirPath,
+                                                          final Collection<String> sourceVocabularies,
+                                                          final int threadCount ) {
+      return getValidVocabularyCuis( umlsDirPath, sourceVocabularies, threadCount, getNonRxnormExclusions() );
    }
 
 //   /**
@@ -249,11 +381,13 @@ final public class MrconsoParser {
     *
     * @param umlsDirPath        path to the UMLS_ROOT Meta/MRCONSO.RRF file
     * @param sourceVocabularies desired source type names as appear in rrf: RXNORM, SNOMEDCT, MSH, etc.
+    * @param threadCount        number of threads parsing MRCONSO
     * @param invalidTypes       term type names as appear in rrf: FN, CCS, etc. that are not valid
     * @return Subset of cuis that exist in in the given sources
     */
    static private Collection<Long> getValidVocabularyCuis( final String umlsDirPath,
                                                            final Collection<String> sourceVocabularies,
+                                                           final int threadCount,
                                                            final String... invalidTypes ) {
       final String mrconsoPath = umlsDirPath + MR_CONSO_SUB_PATH;
       LOGGER.info( "Compiling list of Cuis with wanted Vocabularies using " + mrconsoPath );
@@ -261,32 +395,26 @@ final public class MrconsoParser {
       for ( String target : sourceVocabularies ) {
          sourceCuis.put( target, 0L );
       }
+      final Collection<String> invalidTypeList = Arrays.asList( invalidTypes );
       final Collection<Long> validCuis = new HashSet<>();
-      long lineCount = 0;
-      try ( final BufferedReader reader = FileUtil.createReader( mrconsoPath ) ) {
-         List<String> tokens = FileUtil.readBsvTokens( reader, mrconsoPath );
-         while ( tokens != null ) {
-            lineCount++;
-            if ( lineCount % 100000 == 0 ) {
-               final String cuis = sourceCuis.entrySet().stream().map( e -> e.getKey() + " " + e.getValue() )
-                     .collect( Collectors.joining( ", " ) );
-               LOGGER.info( "File Lines " + lineCount + "\t Cuis: " + cuis );
-            }
-            if ( tokens.size() > SOURCE._index
-                 && sourceVocabularies.stream().anyMatch( getToken( tokens, SOURCE )::equals )
-                 && Arrays.stream( invalidTypes ).noneMatch( getToken( tokens, TERM_TYPE )::equals ) ) {
-               final Long cuiCode = CuiCodeUtil.getInstance().getCuiCode( getToken( tokens, CUI ) );
-               if ( validCuis.add( cuiCode ) ) {
-                  final String source = getToken( tokens, SOURCE );
-                  final long cuis = sourceCuis.get( source );
-                  sourceCuis.put( source, (cuis + 1) );
+      final long[] loggedLines = { 0 };
+      final long lineCount = BsvChunkParser.parseFile( mrconsoPath, threadCount,
+            lines -> parseSourceCuis( lines, sourceVocabularies, invalidTypeList ),
+            ( sourceCuiRows, chunkLineCount ) -> {
+               for ( SourceCui sourceCui : sourceCuiRows ) {
+                  // Cuis are coded here in file order, so new cui prefixes are numbered as in a single pass
+                  if ( validCuis.add( CuiCodeUtil.getInstance().getCuiCode( sourceCui.__cui ) ) ) {
+                     final long cuis = sourceCuis.get( sourceCui.__source );
+                     sourceCuis.put( sourceCui.__source, (cuis + 1) );
+                  }
                }
-            }
-            tokens = FileUtil.readBsvTokens( reader, mrconsoPath );
-         }
-      } catch ( IOException ioE ) {
-         LOGGER.error( ioE.getMessage() );
-      }
+               if ( chunkLineCount - loggedLines[ 0 ] >= 100000 ) {
+                  final String cuis = sourceCuis.entrySet().stream().map( e -> e.getKey() + " " + e.getValue() )
+                        .collect( Collectors.joining( ", " ) );
+                  LOGGER.info( "File Lines " + chunkLineCount + "\t Cuis: " + cuis );
+                  loggedLines[ 0 ] = chunkLineCount;
+               }
+            } );
       final String cuis = sourceCuis.entrySet().stream().map( e -> e.getKey() + " " + e.getValue() )
             .collect( Collectors.joining( ", " ) );
       LOGGER.info( "File Lines " + lineCount + "\t Cuis: " + cuis );
@@ -295,9 +423,35 @@ final public class MrconsoParser {
       return validCuis;
    }
 
+   static private final class SourceCui {
+      final private String __cui;
+      final private String __source;
+
+      private SourceCui( final String cui, final String source ) {
+         __cui = cui;
+         __source = source;
+      }
+   }
+
+   static private List<SourceCui> parseSourceCuis( final List<String> lines,
+                                                   final Collection<String> sourceVocabularies,
+                                                   final Collection<String> invalidTypes ) {
+      final List<SourceCui> sourceCuis = new ArrayList<>();
+      final BsvLine bsvLine = new BsvLine();
+      for ( String line : lines ) {
+         bsvLine.setLine( line );
+         if ( bsvLine.getFieldCount() > TERM_TYPE._index
+              && isSourceOk( bsvLine, sourceVocabularies )
+              && !bsvLine.isFieldIn( TERM_TYPE._index, invalidTypes ) ) {
+            sourceCuis.add( new SourceCui( getToken( bsvLine, CUI ), getToken( bsvLine, SOURCE ) ) );
+         }
+      }
+      return sourceCuis;
+   }
+
 
-   static private String getToken( final List<String> tokens, final MrconsoIndex mrconsoIndex ) {
-      return tokens.get( mrconsoIndex._index );
+   static private String getToken( final BsvLine bsvLine, final MrconsoIndex mrconsoIndex ) {
+      return bsvLine.getField( mrconsoIndex._index );
    }
 
 
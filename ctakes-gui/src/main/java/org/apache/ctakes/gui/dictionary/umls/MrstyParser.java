@@ -1,11 +1,10 @@
 package org.apache.ctakes.gui.dictionary.umls;
 
 
-import org.apache.ctakes.gui.dictionary.util.FileUtil;
+import org.apache.ctakes.gui.dictionary.util.BsvChunkParser;
+import org.apache.ctakes.gui.dictionary.util.BsvLine;
 import org.apache.log4j.Logger;
 
-import java.io.BufferedReader;
-import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -29,47 +28,49 @@ final public class MrstyParser {
 
    static public Map<Long, Concept> createConceptsForTuis( final String umlsPath,
                                                            final Collection<Tui> wantedTuis ) {
+      return createConceptsForTuis( umlsPath, wantedTuis, BsvChunkParser.getDefaultThreadCount() );
+   }
+
+   /**
+    * @param threadCount number of threads parsing MRSTY
+    * @throws java.io.UncheckedIOException if MRSTY could not be read
+    */
+   static public Map<Long, Concept> createConceptsForTuis( final String umlsPath,
+                                                           final Collection<Tui> wantedTuis,
+                                                           final int threadCount ) {
       final String mrstyPath = umlsPath + MRSTY_SUB_PATH;
       LOGGER.info( "Compiling list of Cuis with wanted Tuis using " + mrstyPath );
-      long lineCount = 0;
       final Map<Long, Concept> wantedConcepts = new HashMap<>();
       final Collection<Tui> usedTuis = EnumSet.noneOf( Tui.class );
       final Map<Tui, Long> tuiCodeCount = new EnumMap<>( Tui.class );
       for ( Tui tui : wantedTuis ) {
          tuiCodeCount.put( tui, 0L );
       }
-      try ( final BufferedReader reader = FileUtil.createReader( mrstyPath ) ) {
-         List<String> tokens = FileUtil.readBsvTokens( reader, mrstyPath );
-         while ( tokens != null ) {
-            lineCount++;
-            if ( tokens.size() > TUI._index ) {
-               final Tui tuiEnum = Tui.valueOf( tokens.get( TUI._index ) );
-               if ( !wantedTuis.contains( tuiEnum ) ) {
-                  tokens = FileUtil.readBsvTokens( reader, mrstyPath );
-                  continue;
+      final long[] loggedLines = { 0 };
+      final long lineCount = BsvChunkParser.parseFile( mrstyPath, threadCount,
+            lines -> parseCuiTuis( lines, wantedTuis ),
+            ( cuiTuis, chunkLineCount ) -> {
+               for ( CuiTui cuiTui : cuiTuis ) {
+                  // Cuis are coded here in file order, so new cui prefixes are numbered as in a single pass
+                  final Long cuiCode = CuiCodeUtil.getInstance().getCuiCode( cuiTui.__cui );
+                  Concept concept = wantedConcepts.get( cuiCode );
+                  if ( concept == null ) {
+                     concept = new Concept();
+                     wantedConcepts.put( cuiCode, concept );
+                  }
+                  concept.addTui( cuiTui.__tui );
+                  usedTuis.add( cuiTui.__tui );
+                  final long count = tuiCodeCount.get( cuiTui.__tui );
+                  tuiCodeCount.put( cuiTui.__tui, (count + 1) );
                }
-               final Long cuiCode = CuiCodeUtil.getInstance().getCuiCode( tokens.get( CUI._index ) );
-               Concept concept = wantedConcepts.get( cuiCode );
-               if ( concept == null ) {
-                  concept = new Concept();
-                  wantedConcepts.put( cuiCode, concept );
+               if ( chunkLineCount - loggedLines[ 0 ] >= 100000 ) {
+                  final String counts = tuiCodeCount.entrySet().stream()
+                        .map( e -> e.getKey().name() + " " + e.getValue() )
+                        .collect( Collectors.joining( ", " ) );
+                  LOGGER.info( "File Line " + chunkLineCount + "\t Cuis: " + counts );
+                  loggedLines[ 0 ] = chunkLineCount;
                }
-               concept.addTui( tuiEnum );
-               usedTuis.add( tuiEnum );
-               final long count = tuiCodeCount.get( tuiEnum );
-               tuiCodeCount.put( tuiEnum, (count + 1) );
-            }
-            if ( lineCount % 100000 == 0 ) {
-//               LOGGER.info( "File Line " + lineCount + "\t Valid Cuis " + wantedConcepts.size() );
-               final String counts = tuiCodeCount.entrySet().stream().map( e -> e.getKey().name() + " " + e.getValue() )
-                     .collect( Collectors.joining( ", " ) );
-               LOGGER.info( "File Line " + lineCount + "\t Cuis: " + counts );
-            }
-            tokens = FileUtil.readBsvTokens( reader, mrstyPath );
-         }
-      } catch ( IOException ioE ) {
-         LOGGER.error( ioE.getMessage() );
-      }
+            } );
 //      LOGGER.info( "File Lines " + lineCount + "\t Valid Cuis " + wantedConcepts.size() + "\t for wanted Tuis" );
       final String counts = tuiCodeCount.entrySet().stream().map( e -> e.getKey().name() + " " + e.getValue() )
             .collect( Collectors.joining( ", " ) );
@@ -83,4 +84,30 @@ final public class MrstyParser {
       return wantedConcepts;
    }
 
+   static private final class CuiTui {
+      final private String __cui;
+      final private Tui __tui;
+
+      private CuiTui( final String cui, final Tui tui ) {
+         __cui = cui;
+         __tui = tui;
+      }
+   }
+
+   static private List<CuiTui> parseCuiTuis( final List<String> lines, final Collection<Tui> wantedTuis ) {
+      final List<CuiTui> cuiTuis = new ArrayList<>();
+      final BsvLine bsvLine = new BsvLine();
+      for ( String line : lines ) {
+         bsvLine.setLine( line );
+         if ( bsvLine.getFieldCount() <= TUI._index ) {
+            continue;
+         }
+         final Tui tuiEnum = Tui.valueOf( bsvLine.getField( TUI._index ) );
+         if ( wantedTuis.contains( tuiEnum ) ) {
+            cuiTuis.add( new CuiTui( bsvLine.getField( CUI._index ), tuiEnum ) );
+         }
+      }
+      return cuiTuis;
+   }
+
 }
@@ -0,0 +1,104 @@
+package org.apache.ctakes.gui.dictionary.util;
+
+
+import org.apache.ctakes.core.resource.FileLocator;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Reads a large rrf file in chunks of lines and parses the chunks on a pool of threads.
+ * The parsed chunks are handed back on the reading thread in file order, so whatever accumulates them
+ * does not need to be thread safe and ends up exactly as it would with a single line by line pass.
+ */
+final public class BsvChunkParser {
+
+   static private final int CHUNK_LINES = 10000;
+
+   private BsvChunkParser() {
+   }
+
+   static public int getDefaultThreadCount() {
+      return Runtime.getRuntime().availableProcessors();
+   }
+
+   /**
+    * @param filePath       path to the bar-separated file
+    * @param threadCount    number of threads parsing chunks
+    * @param chunkParser    parses a chunk of lines.  Called concurrently, so it must be thread safe
+    * @param chunkCollector accepts a parsed chunk and the number of file lines read through that chunk.
+    *                       Called on the calling thread, in file order
+    * @param <T>            parsed chunk type
+    * @return number of file lines read
+    * @throws UncheckedIOException if the file could not be read.  Chunks read before the failure have been collected,
+    *                              so callers must discard what they collected
+    */
+   static public <T> long parseFile( final String filePath,
+                                     final int threadCount,
+                                     final Function<List<String>, T> chunkParser,
+                                     final ObjLongConsumer<T> chunkCollector ) {
+      final ExecutorService executor = threadCount > 1 ? Executors.newFixedThreadPool( threadCount ) : null;
+      // Futures of parsed chunks, in file order, with the line count through each chunk
+      final Deque<Future<T>> parsedChunks = new ArrayDeque<>();
+      final Deque<Long> chunkLineCounts = new ArrayDeque<>();
+      long lineCount = 0;
+      try ( final BufferedReader reader = new BufferedReader( new FileReader( FileLocator.getFile( filePath ) ) ) ) {
+         List<String> lines = FileUtil.readLines( reader, CHUNK_LINES );
+         while ( !lines.isEmpty() ) {
+            lineCount += lines.size();
+            if ( executor == null ) {
+               chunkCollector.accept( chunkParser.apply( lines ), lineCount );
+            } else {
+               final List<String> chunk = lines;
+               parsedChunks.add( executor.submit( () -> chunkParser.apply( chunk ) ) );
+               chunkLineCounts.add( lineCount );
+               // Keep a few chunks in flight per thread without reading the whole file into memory
+               while ( parsedChunks.size() > threadCount * 2 ) {
+                  chunkCollector.accept( getParsed( parsedChunks.remove() ), chunkLineCounts.remove() );
+               }
+            }
+            lines = FileUtil.readLines( reader, CHUNK_LINES );
+         }
+         while ( !parsedChunks.isEmpty() ) {
+            chunkCollector.accept( getParsed( parsedChunks.remove() ), chunkLineCounts.remove() );
+         }
+      } catch ( IOException ioE ) {
+         throw new UncheckedIOException( "Could not read " + filePath, ioE );
+      } finally {
+         if ( executor != null ) {
+            executor.shutdownNow();
+         }
+      }
+      return lineCount;
+   }
+
+   static private <T> T getParsed( final Future<T> parsedChunk ) {
+      try {
+         return parsedChunk.get();
+      } catch ( InterruptedException intE ) {
+         Thread.currentThread().interrupt();
+         throw new IllegalStateException( "Interrupted while parsing", intE );
+      } catch ( ExecutionException execE ) {
+         final Throwable cause = execE.getCause();
+         if ( cause instanceof RuntimeException ) {
+            throw (RuntimeException)cause;
+         }
+         if ( cause instanceof Error ) {
+            throw (Error)cause;
+         }
+         throw new IllegalStateException( cause );
+      }
+   }
+
+}
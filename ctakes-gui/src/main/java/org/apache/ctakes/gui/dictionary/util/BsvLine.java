@@ -0,0 +1,95 @@
+package org.apache.ctakes.gui.dictionary.util;
+
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A bar-separated line whose fields are located by their bounds in the line instead of being split into new strings.
+ * Fields can be tested in place, so only the fields of wanted rows ever need to be copied with {@link #getField(int)}.
+ * An instance is meant to be reused for every line read by a single thread.
+ */
+final public class BsvLine {
+
+   private String _line = "";
+   private int[] _fieldStarts = new int[ 32 ];
+   private int[] _fieldEnds = new int[ 32 ];
+   private int _fieldCount = 0;
+
+   /**
+    * Fields are split exactly as {@link TokenUtil#getBsvItems(String)} splits them, oddities included:
+    * a blank line has no fields, a line starting with a bar is a single field
+    * and a last field of a single character is empty.
+    *
+    * @param line bar-separated line
+    * @return this line
+    */
+   public BsvLine setLine( final String line ) {
+      _line = line == null ? "" : line;
+      _fieldCount = 0;
+      if ( _line.trim().isEmpty() ) {
+         return this;
+      }
+      int startIndex = 0;
+      int stopIndex = _line.indexOf( '|' );
+      while ( stopIndex > 0 ) {
+         addField( startIndex, stopIndex );
+         startIndex = stopIndex + 1;
+         stopIndex = _line.indexOf( '|', startIndex );
+      }
+      if ( startIndex < _line.length() - 1 ) {
+         addField( startIndex, _line.length() );
+      } else {
+         addField( startIndex, startIndex );
+      }
+      return this;
+   }
+
+   private void addField( final int fieldStart, final int fieldEnd ) {
+      if ( _fieldCount == _fieldEnds.length ) {
+         _fieldStarts = Arrays.copyOf( _fieldStarts, _fieldCount * 2 );
+         _fieldEnds = Arrays.copyOf( _fieldEnds, _fieldCount * 2 );
+      }
+      _fieldStarts[ _fieldCount ] = fieldStart;
+      _fieldEnds[ _fieldCount ] = fieldEnd;
+      _fieldCount++;
+   }
+
+   public int getFieldCount() {
+      return _fieldCount;
+   }
+
+   /**
+    * @param index field index
+    * @return a copy of the field text
+    */
+   public String getField( final int index ) {
+      return _line.substring( _fieldStarts[ index ], _fieldEnds[ index ] );
+   }
+
+   /**
+    * @param index field index
+    * @param value some value
+    * @return true if the field text equals the given value
+    */
+   public boolean isField( final int index, final String value ) {
+      final int start = _fieldStarts[ index ];
+      return _fieldEnds[ index ] - start == value.length()
+             && _line.regionMatches( start, value, 0, value.length() );
+   }
+
+   /**
+    * @param index  field index
+    * @param values some values
+    * @return true if the field text equals any of the given values
+    */
+   public boolean isFieldIn( final int index, final Collection<String> values ) {
+      for ( String value : values ) {
+         if ( isField( index, value ) ) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+}
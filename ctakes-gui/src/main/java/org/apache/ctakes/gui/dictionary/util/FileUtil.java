@@ -102,6 +102,28 @@ final public class FileUtil {
       return null;
    }
 
+   /**
+    * Unlike the other read methods this does not take a read error for the end of the file.
+    *
+    * @param reader   -
+    * @param maxLines maximum number of lines to read
+    * @return up to maxLines non-empty, non-comment lines.  An empty list when the file has been read
+    * @throws IOException if the file could not be read
+    */
+   static public List<String> readLines( final BufferedReader reader, final int maxLines ) throws IOException {
+      final List<String> lines = new ArrayList<>( maxLines );
+      while ( lines.size() < maxLines ) {
+         final String line = reader.readLine();
+         if ( line == null ) {
+            break;
+         }
+         if ( !line.trim().isEmpty() && !line.trim().startsWith( "//" ) ) {
+            lines.add( line );
+         }
+      }
+      return lines;
+   }
+
    static public List<String> readBsvTokens( final BufferedReader reader, final String filePath ) {
       final String line = readLine( reader, filePath );
       if ( line == null ) {
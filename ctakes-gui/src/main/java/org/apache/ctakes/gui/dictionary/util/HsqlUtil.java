@@ -52,6 +52,22 @@ final public class HsqlUtil {
       return true;
    }
 
+   /**
+    * Drops all tables of an existing database so that it can be created again.
+    *
+    * @param connection connection to the existing database
+    * @return true if the tables were dropped
+    */
+   static public boolean clearDatabase( final Connection connection ) {
+      try {
+         executeStatement( connection, "DROP SCHEMA PUBLIC CASCADE" );
+      } catch ( SQLException sqlE ) {
+         LOGGER.error( sqlE.getMessage() );
+         return false;
+      }
+      return true;
+   }
+
    static private void createTable( final Connection connection, final String tableName, final String... fieldNames )
          throws SQLException {
       final String fields = Arrays.stream( fieldNames ).collect( Collectors.joining( "," ) );
@@ -7,11 +7,10 @@ import org.apache.log4j.Logger;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -25,6 +24,8 @@ final public class RareWordDbWriter {
 
    static private final Logger LOGGER = Logger.getLogger( "RareWordDbWriter" );
 
+   static private final int CONCEPT_BATCH_SIZE = 10000;
+
 
    private RareWordDbWriter() {
    }
@@ -45,114 +46,411 @@ final public class RareWordDbWriter {
    static public boolean writeConcepts( final Connection connection, final Map<Long, Concept> concepts ) {
       // Get Count of appearance in dictionary per term token
       final Map<String, Long> tokenCounts = RareWordUtil.getTokenCounts( concepts.values() );
-      // Create insert sql statements
-      final String mainTableSql = JdbcUtil.createRowInsertSql( "CUI_TERMS", CuiTermsField.values() );
-      final String tuiTableSql = JdbcUtil.createCodeInsertSql( "TUI" );
-      final String preftermTableSql = JdbcUtil.createCodeInsertSql( "PREFTERM" );
-      final Map<String, String> insertCodeSqls = createCodeInsertSqls();
-
-      long mainTableCount = 0;
-      long tuiTableCount = 0;
-      long preftermTableCount = 0;
-      final Map<String, Long> codeTableCounts = createCodeCounts();
       try {
-         // Create PreparedStatements from insert sql statements
-         final PreparedStatement mainTableStatement = connection.prepareStatement( mainTableSql );
-         final PreparedStatement tuiStatement = connection.prepareStatement( tuiTableSql );
-         final PreparedStatement preftermStatement = connection.prepareStatement( preftermTableSql );
-         final Map<String, PreparedStatement> codeStatements = createCodeStatements( connection, insertCodeSqls );
-
-         for ( Map.Entry<Long, Concept> conceptEntry : concepts.entrySet() ) {
-            final long cui = conceptEntry.getKey();
-            final Concept concept = conceptEntry.getValue();
-            // write main term table
-            boolean conceptOk = false;
-            for ( String text : conceptEntry.getValue().getTexts() ) {
-               if ( text.length() >= 255 ) {
-                  continue;
-               }
-               final RareWordUtil.IndexedRareWord indexedRareWord = RareWordUtil.getIndexedRareWord( text,
-                     tokenCounts );
-               if ( RareWordUtil.NULL_RARE_WORD.equals( indexedRareWord ) ) {
-                  continue;
-               }
-               conceptOk = true;
-               mainTableStatement.setLong( CuiTermsField.CUI.__index, cui );
-               mainTableStatement.setInt( CuiTermsField.RINDEX.__index, indexedRareWord.__index );
-               mainTableStatement.setInt( CuiTermsField.TCOUNT.__index, indexedRareWord.__tokenCount );
-               mainTableStatement.setString( CuiTermsField.TEXT.__index, text );
-               mainTableStatement.setString( CuiTermsField.RWORD.__index, indexedRareWord.__word );
-               mainTableStatement.executeUpdate();
-               mainTableCount = incrementCount( "Main", mainTableCount );
+         // Rows are sent in jdbc batches and committed per batch of concepts
+         connection.setAutoCommit( false );
+         final ConceptInserter inserter = new ConceptInserter( connection );
+         final List<Map.Entry<Long, Concept>> conceptEntries = new ArrayList<>( concepts.entrySet() );
+         for ( int batchStart = 0; batchStart < conceptEntries.size(); batchStart += CONCEPT_BATCH_SIZE ) {
+            final List<Map.Entry<Long, Concept>> batchEntries
+                  = conceptEntries.subList( batchStart,
+                  Math.min( batchStart + CONCEPT_BATCH_SIZE, conceptEntries.size() ) );
+            // Rare words are found for all concepts of the batch in parallel, in concept order
+            final List<ConceptRows> batchRows = batchEntries.parallelStream()
+                  .map( e -> createConceptRows( e.getValue(), tokenCounts ) )
+                  .collect( Collectors.toList() );
+            for ( int i = 0; i < batchEntries.size(); i++ ) {
+               inserter.addRows( batchEntries.get( i ).getKey(), batchRows.get( i ) );
+            }
+            inserter.executeBatches();
+            connection.commit();
+         }
+         inserter.close();
+         shutdown( connection );
+         inserter.logCounts();
+      } catch ( SQLException sqlE ) {
+         LOGGER.error( sqlE.getMessage() );
+         return false;
+      }
+      return true;
+   }
+
+   /**
+    * Brings the tables of an existing dictionary up to date with the given concepts.
+    * The rows of every concept are compared with the rows already in the database, and only the rows of
+    * added, changed and removed concepts are deleted and inserted.
+    * All rows already in the database are read into memory for the comparison,
+    * so the heap must hold the existing dictionary as well as the new concepts.
+    * The deletes and inserts are made in a single transaction.  If the update fails it is rolled back,
+    * and the database keeps the concepts that it had before.
+    * The database must already have a code table for every vocabulary in the {@link VocabularyStore}.
+    *
+    * @param connection connection to the existing dictionary database
+    * @param concepts   all concepts that the dictionary should contain
+    * @return true if the database was updated, false if it was left as it was
+    */
+   static public boolean updateConcepts( final Connection connection, final Map<Long, Concept> concepts ) {
+      final Map<String, Long> tokenCounts = RareWordUtil.getTokenCounts( concepts.values() );
+      // Rare words can change with the token counts, so the rows of every concept are created again
+      final Map<Long, ConceptRows> newRows = concepts.entrySet().parallelStream()
+            .map( e -> new AbstractMap.SimpleEntry<>( e.getKey(), createConceptRows( e.getValue(), tokenCounts ) ) )
+            .filter( e -> !e.getValue().isEmpty() )
+            .collect( Collectors.toMap( Map.Entry::getKey, Map.Entry::getValue ) );
+      try {
+         connection.setAutoCommit( false );
+         final Map<Long, ConceptRows> oldRows = readConceptRows( connection );
+         final Collection<Long> deletedCuis = new ArrayList<>();
+         long removedCount = 0;
+         for ( Map.Entry<Long, ConceptRows> oldEntry : oldRows.entrySet() ) {
+            final ConceptRows conceptRows = newRows.get( oldEntry.getKey() );
+            if ( conceptRows == null ) {
+               removedCount++;
+               deletedCuis.add( oldEntry.getKey() );
+            } else if ( !conceptRows.equals( oldEntry.getValue() ) ) {
+               deletedCuis.add( oldEntry.getKey() );
+            }
+         }
+         final Map<Long, ConceptRows> insertedRows = newRows.entrySet().stream()
+               .filter( e -> !e.getValue().equals( oldRows.get( e.getKey() ) ) )
+               .collect( Collectors.toMap( Map.Entry::getKey, Map.Entry::getValue ) );
+         final long changedCount = deletedCuis.size() - removedCount;
+         LOGGER.info( "Concepts Added " + (insertedRows.size() - changedCount) + "  Changed " + changedCount
+                      + "  Removed " + removedCount + "  Unchanged " + (newRows.size() - insertedRows.size()) );
+         if ( deletedCuis.isEmpty() && insertedRows.isEmpty() ) {
+            // Leave the database files untouched so that lookups watching them do not reload an identical dictionary
+            shutdownImmediately( connection );
+            return true;
+         }
+         // Rows are sent in jdbc batches, but only committed once all concepts are written
+         deleteConcepts( connection, deletedCuis );
+         final ConceptInserter inserter = new ConceptInserter( connection );
+         int batchCount = 0;
+         for ( Map.Entry<Long, ConceptRows> rows : insertedRows.entrySet() ) {
+            inserter.addRows( rows.getKey(), rows.getValue() );
+            batchCount++;
+            if ( batchCount % CONCEPT_BATCH_SIZE == 0 ) {
+               inserter.executeBatches();
+            }
+         }
+         inserter.executeBatches();
+         inserter.close();
+         connection.commit();
+         shutdown( connection );
+         inserter.logCounts();
+      } catch ( SQLException sqlE ) {
+         LOGGER.error( "Could not update Concepts: " + sqlE.getMessage() );
+         rollback( connection );
+         return false;
+      }
+      return true;
+   }
+
+   /**
+    * Discards the changes of a failed update and closes the database.
+    */
+   static private void rollback( final Connection connection ) {
+      try {
+         connection.rollback();
+         LOGGER.error( "The update was rolled back, the Dictionary is unchanged" );
+         shutdown( connection );
+      } catch ( SQLException sqlE ) {
+         LOGGER.error( "Could not roll back the update, the Dictionary must be built from scratch: "
+                       + sqlE.getMessage() );
+      }
+   }
+
+   static private void shutdown( final Connection connection ) throws SQLException {
+      final Statement setBinaryStatement = connection.createStatement();
+      // Compressed has a slow loading time
+//      setBinaryStatement.execute( "SET FILES SCRIPT FORMAT COMPRESSED" );
+      // text is the default
+//      setBinaryStatement.execute( "SET FILES SCRIPT FORMAT TEXT" );
+      setBinaryStatement.close();
+      connection.commit();
+      final Statement shutdownStatement = connection.createStatement();
+      shutdownStatement.execute( "SHUTDOWN" );
+      shutdownStatement.close();
+      connection.commit();
+      connection.close();
+   }
+
+   /**
+    * Closes the database without a checkpoint, which would rewrite the script file.
+    */
+   static private void shutdownImmediately( final Connection connection ) throws SQLException {
+      connection.rollback();
+      final Statement shutdownStatement = connection.createStatement();
+      shutdownStatement.execute( "SHUTDOWN IMMEDIATELY" );
+      shutdownStatement.close();
+      connection.close();
+   }
+
+   static private final class TermRow {
+      final private String __text;
+      final private int __rareWordIndex;
+      final private int __tokenCount;
+      final private String __rareWord;
+
+      private TermRow( final String text, final int rareWordIndex, final int tokenCount, final String rareWord ) {
+         __text = text;
+         __rareWordIndex = rareWordIndex;
+         __tokenCount = tokenCount;
+         __rareWord = rareWord;
+      }
+
+      public int hashCode() {
+         return __text.hashCode();
+      }
+
+      public boolean equals( final Object other ) {
+         return other instanceof TermRow
+                && __text.equals( ((TermRow)other).__text )
+                && __rareWordIndex == ((TermRow)other).__rareWordIndex
+                && __tokenCount == ((TermRow)other).__tokenCount
+                && Objects.equals( __rareWord, ((TermRow)other).__rareWord );
+      }
+   }
+
+   /**
+    * All rows in all tables for a single concept.  Equal rows mean that the concept is unchanged in the database.
+    */
+   static private final class ConceptRows {
+      final private Collection<TermRow> __termRows = new HashSet<>();
+      final private Collection<Integer> __tuis = new HashSet<>();
+      private String __preferredText = null;
+      final private Map<String, Collection<Object>> __codes = new HashMap<>();
+
+      private boolean isEmpty() {
+         return __termRows.isEmpty();
+      }
+
+      private Collection<Object> getCodes( final String vocabulary ) {
+         return __codes.computeIfAbsent( vocabulary, v -> new HashSet<>() );
+      }
+
+      public int hashCode() {
+         return __termRows.hashCode();
+      }
+
+      public boolean equals( final Object other ) {
+         return other instanceof ConceptRows
+                && __termRows.equals( ((ConceptRows)other).__termRows )
+                && __tuis.equals( ((ConceptRows)other).__tuis )
+                && Objects.equals( __preferredText, ((ConceptRows)other).__preferredText )
+                && __codes.equals( ((ConceptRows)other).__codes );
+      }
+   }
+
+   /**
+    * @return rows for the concept that can be written, empty if the concept should not be written
+    */
+   static private ConceptRows createConceptRows( final Concept concept, final Map<String, Long> tokenCounts ) {
+      final ConceptRows conceptRows = new ConceptRows();
+      for ( String text : concept.getTexts() ) {
+         if ( text.length() >= 255 ) {
+            continue;
+         }
+         final RareWordUtil.IndexedRareWord indexedRareWord = RareWordUtil.getIndexedRareWord( text, tokenCounts );
+         if ( RareWordUtil.NULL_RARE_WORD.equals( indexedRareWord ) ) {
+            continue;
+         }
+         conceptRows.__termRows.add( new TermRow( text, indexedRareWord.__index, indexedRareWord.__tokenCount,
+               indexedRareWord.__word ) );
+      }
+      if ( conceptRows.isEmpty() ) {
+         return conceptRows;
+      }
+      for ( Tui tui : concept.getTuis() ) {
+         conceptRows.__tuis.add( tui.getIntValue() );
+      }
+      String preferredText = concept.getPreferredText();
+      if ( preferredText != null
+           && !preferredText.isEmpty()
+           && !preferredText.equals( Concept.PREFERRED_TERM_UNKNOWN ) ) {
+         if ( preferredText.length() > 511 ) {
+            preferredText = preferredText.substring( 0, 510 );
+         }
+         conceptRows.__preferredText = preferredText;
+      }
+      for ( String vocabulary : concept.getVocabularies() ) {
+         final Class<?> type = VocabularyStore.getInstance().getVocabularyClass( vocabulary );
+         final Collection<Object> codes = conceptRows.getCodes( vocabulary );
+         for ( String code : concept.getCodes( vocabulary ) ) {
+            codes.add( getCodeValue( code, type ) );
+         }
+      }
+      return conceptRows;
+   }
+
+   /**
+    * @return the rows of all concepts in the database
+    */
+   static private Map<Long, ConceptRows> readConceptRows( final Connection connection ) throws SQLException {
+      final Map<Long, ConceptRows> conceptRows = new HashMap<>();
+      final Function<Long, ConceptRows> rowsCreator = c -> new ConceptRows();
+      try ( final Statement statement = connection.createStatement() ) {
+         try ( final ResultSet resultSet = statement.executeQuery(
+               "SELECT CUI, RINDEX, TCOUNT, TEXT, RWORD FROM CUI_TERMS" ) ) {
+            while ( resultSet.next() ) {
+               conceptRows.computeIfAbsent( resultSet.getLong( 1 ), rowsCreator ).__termRows
+                     .add( new TermRow( resultSet.getString( 4 ), resultSet.getInt( 2 ), resultSet.getInt( 3 ),
+                           resultSet.getString( 5 ) ) );
             }
-            if ( !conceptOk ) {
-               continue;
+         }
+         try ( final ResultSet resultSet = statement.executeQuery( "SELECT CUI, TUI FROM TUI" ) ) {
+            while ( resultSet.next() ) {
+               conceptRows.computeIfAbsent( resultSet.getLong( 1 ), rowsCreator ).__tuis.add( resultSet.getInt( 2 ) );
             }
-            // write tui table
-            for ( Tui tui : concept.getTuis() ) {
-               tuiStatement.setLong( CuiTermsField.CUI.__index, cui );
-               tuiStatement.setInt( 2, tui.getIntValue() );
-               tuiStatement.executeUpdate();
-               tuiTableCount = incrementCount( "Tui", tuiTableCount );
+         }
+         try ( final ResultSet resultSet = statement.executeQuery( "SELECT CUI, PREFTERM FROM PREFTERM" ) ) {
+            while ( resultSet.next() ) {
+               conceptRows.computeIfAbsent( resultSet.getLong( 1 ), rowsCreator ).__preferredText
+                     = resultSet.getString( 2 );
             }
-            // write preferred term table
-            String preferredText = concept.getPreferredText();
-            if ( preferredText != null
-                 && !preferredText.isEmpty()
-                 && !preferredText.equals( Concept.PREFERRED_TERM_UNKNOWN ) ) {
-               preftermStatement.setLong( CuiTermsField.CUI.__index, cui );
-               if ( preferredText.length() > 511 ) {
-                  preferredText = preferredText.substring( 0, 510 );
+         }
+         for ( String vocabulary : VocabularyStore.getInstance().getAllVocabularies() ) {
+            final String tableName = getCodeTableName( vocabulary );
+            try ( final ResultSet resultSet = statement.executeQuery(
+                  "SELECT CUI, " + tableName + " FROM " + tableName ) ) {
+               while ( resultSet.next() ) {
+                  conceptRows.computeIfAbsent( resultSet.getLong( 1 ), rowsCreator ).getCodes( vocabulary )
+                        .add( resultSet.getObject( 2 ) );
                }
-               preftermStatement.setString( 2, preferredText );
-               preftermStatement.executeUpdate();
-               preftermTableCount = incrementCount( "Preferred Term", preftermTableCount );
             }
-            // write extra vocabulary code tables
-            final Collection<String> vocabularies = concept.getVocabularies();
-            for ( String vocabulary : vocabularies ) {
-               final PreparedStatement statement = codeStatements.get( vocabulary );
-               statement.setLong( CuiTermsField.CUI.__index, cui );
-               for ( String code : concept.getCodes( vocabulary ) ) {
-                  setCodeAppropriately( statement, code, VocabularyStore.getInstance()
-                        .getVocabularyClass( vocabulary ) );
-                  statement.executeUpdate();
-                  codeTableCounts.put( vocabulary, incrementCount( vocabulary, codeTableCounts.get( vocabulary ) ) );
+         }
+      }
+      LOGGER.info( "Existing Concepts " + conceptRows.size() );
+      return conceptRows;
+   }
+
+   static private void deleteConcepts( final Connection connection, final Collection<Long> cuis )
+         throws SQLException {
+      if ( cuis.isEmpty() ) {
+         return;
+      }
+      final Collection<String> tableNames = new ArrayList<>( Arrays.asList( "CUI_TERMS", "TUI", "PREFTERM" ) );
+      VocabularyStore.getInstance().getAllVocabularies().stream()
+            .map( RareWordDbWriter::getCodeTableName )
+            .forEach( tableNames::add );
+      for ( String tableName : tableNames ) {
+         try ( final PreparedStatement statement
+                     = connection.prepareStatement( "DELETE FROM " + tableName + " WHERE CUI = ?" ) ) {
+            int batchCount = 0;
+            for ( Long cui : cuis ) {
+               statement.setLong( 1, cui );
+               statement.addBatch();
+               batchCount++;
+               if ( batchCount % CONCEPT_BATCH_SIZE == 0 ) {
+                  statement.executeBatch();
                }
             }
+            // hsql throws on a batch without rows
+            if ( batchCount % CONCEPT_BATCH_SIZE != 0 ) {
+               statement.executeBatch();
+            }
          }
-         connection.commit();
-         mainTableStatement.close();
-         tuiStatement.close();
-         preftermStatement.close();
-         preftermStatement.close();
-         for ( PreparedStatement codeStatement : codeStatements.values() ) {
+      }
+   }
+
+   /**
+    * Adds concept rows to jdbc batches for all tables
+    */
+   static private final class ConceptInserter {
+      final private PreparedStatement __mainTableStatement;
+      final private PreparedStatement __tuiStatement;
+      final private PreparedStatement __preftermStatement;
+      final private Map<String, PreparedStatement> __codeStatements;
+      private long _mainTableCount = 0;
+      private long _tuiTableCount = 0;
+      private long _preftermTableCount = 0;
+      final private Map<String, Long> _codeTableCounts = createCodeCounts();
+      // hsql throws on a batch without rows, so only statements with added rows are executed
+      final private Collection<PreparedStatement> _batchedStatements = new LinkedHashSet<>();
+
+      private ConceptInserter( final Connection connection ) throws SQLException {
+         // Create PreparedStatements from insert sql statements
+         __mainTableStatement
+               = connection.prepareStatement( JdbcUtil.createRowInsertSql( "CUI_TERMS", CuiTermsField.values() ) );
+         __tuiStatement = connection.prepareStatement( JdbcUtil.createCodeInsertSql( "TUI" ) );
+         __preftermStatement = connection.prepareStatement( JdbcUtil.createCodeInsertSql( "PREFTERM" ) );
+         __codeStatements = createCodeStatements( connection, createCodeInsertSqls() );
+      }
+
+      private void addRows( final long cui, final ConceptRows conceptRows ) throws SQLException {
+         if ( conceptRows.isEmpty() ) {
+            return;
+         }
+         // write main term table
+         for ( TermRow termRow : conceptRows.__termRows ) {
+            __mainTableStatement.setLong( CuiTermsField.CUI.__index, cui );
+            __mainTableStatement.setInt( CuiTermsField.RINDEX.__index, termRow.__rareWordIndex );
+            __mainTableStatement.setInt( CuiTermsField.TCOUNT.__index, termRow.__tokenCount );
+            __mainTableStatement.setString( CuiTermsField.TEXT.__index, termRow.__text );
+            __mainTableStatement.setString( CuiTermsField.RWORD.__index, termRow.__rareWord );
+            addBatch( __mainTableStatement );
+            _mainTableCount = incrementCount( "Main", _mainTableCount );
+         }
+         // write tui table
+         for ( Integer tui : conceptRows.__tuis ) {
+            __tuiStatement.setLong( CuiTermsField.CUI.__index, cui );
+            __tuiStatement.setInt( 2, tui );
+            addBatch( __tuiStatement );
+            _tuiTableCount = incrementCount( "Tui", _tuiTableCount );
+         }
+         // write preferred term table
+         if ( conceptRows.__preferredText != null ) {
+            __preftermStatement.setLong( CuiTermsField.CUI.__index, cui );
+            __preftermStatement.setString( 2, conceptRows.__preferredText );
+            addBatch( __preftermStatement );
+            _preftermTableCount = incrementCount( "Preferred Term", _preftermTableCount );
+         }
+         // write extra vocabulary code tables
+         for ( Map.Entry<String, Collection<Object>> vocabularyCodes : conceptRows.__codes.entrySet() ) {
+            final String vocabulary = vocabularyCodes.getKey();
+            final PreparedStatement statement = __codeStatements.get( vocabulary );
+            statement.setLong( CuiTermsField.CUI.__index, cui );
+            for ( Object code : vocabularyCodes.getValue() ) {
+               statement.setObject( 2, code );
+               addBatch( statement );
+               _codeTableCounts.put( vocabulary, incrementCount( vocabulary, _codeTableCounts.get( vocabulary ) ) );
+            }
+         }
+      }
+
+      private void addBatch( final PreparedStatement statement ) throws SQLException {
+         statement.addBatch();
+         _batchedStatements.add( statement );
+      }
+
+      private void executeBatches() throws SQLException {
+         for ( PreparedStatement statement : _batchedStatements ) {
+            statement.executeBatch();
+         }
+         _batchedStatements.clear();
+      }
+
+      private void close() throws SQLException {
+         __mainTableStatement.close();
+         __tuiStatement.close();
+         __preftermStatement.close();
+         for ( PreparedStatement codeStatement : __codeStatements.values() ) {
             codeStatement.close();
          }
-         final Statement setBinaryStatement = connection.createStatement();
-         // Compressed has a slow loading time
-//         setBinaryStatement.execute( "SET FILES SCRIPT FORMAT COMPRESSED" );
-         // text is the default
-//         setBinaryStatement.execute( "SET FILES SCRIPT FORMAT TEXT" );
-         setBinaryStatement.close();
-         connection.commit();
-         final Statement shutdownStatement = connection.createStatement();
-         shutdownStatement.execute( "SHUTDOWN" );
-         shutdownStatement.close();
-         connection.commit();
-         connection.close();
-      } catch ( SQLException sqlE ) {
-         LOGGER.error( sqlE.getMessage() );
-         return false;
       }
-      LOGGER.info( "Main Table Rows " + mainTableCount );
-      LOGGER.info( "Tui Table Rows " + tuiTableCount );
-      LOGGER.info( "Preferred Term Table Rows " + preftermTableCount );
-      final Function<String, String> vocabCount = v -> v + " Table Rows " + codeTableCounts.get( v );
-      VocabularyStore.getInstance().getAllVocabularies().stream()
-            .map( vocabCount )
-            .forEach( LOGGER::info );
-      return true;
+
+      private void logCounts() {
+         LOGGER.info( "Main Table Rows " + _mainTableCount );
+         LOGGER.info( "Tui Table Rows " + _tuiTableCount );
+         LOGGER.info( "Preferred Term Table Rows " + _preftermTableCount );
+         final Function<String, String> vocabCount = v -> v + " Table Rows " + _codeTableCounts.get( v );
+         VocabularyStore.getInstance().getAllVocabularies().stream()
+               .map( vocabCount )
+               .forEach( LOGGER::info );
+      }
+   }
+
+   static private String getCodeTableName( final String vocabulary ) {
+      return vocabulary.toLowerCase().replace( '.', '_' ).replace( '-', '_' );
    }
 
    static private Map<String, String> createCodeInsertSqls() {
@@ -175,20 +473,21 @@ final public class RareWordDbWriter {
             .collect( Collectors.toMap( Function.identity(), v -> 0L ) );
    }
 
-   static private void setCodeAppropriately( final PreparedStatement statement, final String code,
-                                             final Class<?> type ) throws SQLException {
+   /**
+    * @return the code as the java type of its vocabulary column
+    */
+   static private Object getCodeValue( final String code, final Class<?> type ) {
       if ( String.class.equals( type ) ) {
-         statement.setString( 2, code );
+         return code;
       } else if ( Double.class.equals( type ) ) {
-         statement.setDouble( 2, Double.valueOf( code ) );
+         return Double.valueOf( code );
       } else if ( Long.class.equals( type ) ) {
-         statement.setLong( 2, Long.valueOf( code ) );
+         return Long.valueOf( code );
       } else if ( Integer.class.equals( type ) ) {
-         statement.setInt( 2, Integer.valueOf( code ) );
-      } else {
-         LOGGER.error( "Could not set code for " + type.getName() );
-         statement.setString( 2, code );
+         return Integer.valueOf( code );
       }
+      LOGGER.error( "Could not set code for " + type.getName() );
+      return code;
    }
 
    static private long incrementCount( final String name, long count ) {
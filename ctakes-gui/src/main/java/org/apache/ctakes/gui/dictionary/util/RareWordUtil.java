@@ -97,14 +97,20 @@ final public class RareWordUtil {
    }
 
 
+   /**
+    * Counts are made on several threads, so the concept texts must not change while they are counted.
+    *
+    * @param concepts -
+    * @return the number of times each rarable token appears in the concept texts
+    */
    static public Map<String, Long> getTokenCounts( final Collection<Concept> concepts ) {
-      return concepts.stream()
+      return concepts.parallelStream()
             .map( Concept::getTexts )
             .flatMap( Collection::stream )
             .map( SPACE_PATTERN::split )
             .flatMap( Arrays::stream )
             .filter( RareWordUtil::isRarableToken )
-            .collect( Collectors.groupingBy( Function.identity(), Collectors.counting() ) );
+            .collect( Collectors.groupingByConcurrent( Function.identity(), Collectors.counting() ) );
    }
 
    static private void incrementCount( final Map<String, Integer> tokenCounts, final String token ) {
@@ -0,0 +1,150 @@
+package org.apache.ctakes.gui.dictionary.umls;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that concepts parsed from rrf files on several threads are the same as concepts parsed on a single thread.
+ */
+public class MrconsoParserTest {
+
+   static private final String[] WORDS = { "acute", "chronic", "pain", "chest", "back", "fracture", "left", "right",
+                                           "tablet", "aspirin", "oral", "renal", "failure", "heart", "disease",
+                                           "10", "mg", "(finding)", "of", "NOS" };
+   static private final String[] TUIS = { "T047", "T121", "T023", "T033" };
+   static private final String[] SOURCES = { "SNOMEDCT_US", "RXNORM", "MSH" };
+   static private final String[] TERM_TYPES = { "PT", "SY", "FN", "IN" };
+   static private final List<String> WANTED_SOURCES = Arrays.asList( "SNOMEDCT_US", "RXNORM" );
+   static private final int CUI_COUNT = 15000;
+   // Cuis with new prefixes, first met near the end of the first chunk of MRSTY and at the start of the second
+   static private final int FIRST_PREFIX_INDEX = 9990;
+   static private final int SECOND_PREFIX_INDEX = 10001;
+
+   @Rule
+   public TemporaryFolder _folder = new TemporaryFolder();
+
+   static private String getCui( final int index ) {
+      final String number = String.format( "%07d", index );
+      if ( index >= FIRST_PREFIX_INDEX && (index - FIRST_PREFIX_INDEX) % 1000 == 0 ) {
+         return "CL" + number;
+      } else if ( index >= SECOND_PREFIX_INDEX && (index - SECOND_PREFIX_INDEX) % 1000 == 0 ) {
+         return "CN" + number;
+      }
+      return "C" + number;
+   }
+
+   static private String createText( final Random random ) {
+      final StringBuilder text = new StringBuilder( WORDS[ random.nextInt( WORDS.length ) ] );
+      for ( int i = random.nextInt( 4 ); i > 0; i-- ) {
+         text.append( ' ' ).append( WORDS[ random.nextInt( WORDS.length ) ] );
+      }
+      return text.toString();
+   }
+
+   /**
+    * @return path to a umls directory with MRSTY and MRCONSO files of several chunks each
+    */
+   private String writeUmls() throws IOException {
+      final Random random = new Random( 5 );
+      final List<String> mrsty = new ArrayList<>();
+      final List<String> mrconso = new ArrayList<>();
+      for ( int i = 1; i <= CUI_COUNT; i++ ) {
+         final String cui = getCui( i );
+         final boolean newPrefix = !cui.startsWith( "C0" );
+         mrsty.add( cui + '|' + (newPrefix ? "T047" : TUIS[ random.nextInt( TUIS.length ) ]) + "|A1.2|Name|AT1|256|" );
+         for ( int j = random.nextInt( 3 ); j >= 0; j-- ) {
+            final boolean wanted = newPrefix && j == 0;
+            final String language = wanted || random.nextInt( 8 ) > 0 ? "ENG" : "SPA";
+            final String status = random.nextBoolean() ? "P" : "S";
+            final String form = random.nextBoolean() ? "PF" : "VO";
+            final String source = wanted ? "SNOMEDCT_US" : SOURCES[ random.nextInt( SOURCES.length ) ];
+            final String termType = wanted ? "PT" : TERM_TYPES[ random.nextInt( TERM_TYPES.length ) ];
+            final String code = random.nextInt( 5 ) == 0 ? "NOCODE" : Integer.toString( 100000 + random.nextInt( 50 ) );
+            mrconso.add( cui + '|' + language + '|' + status + "|L0000000|" + form + "|S0000000|Y|A00000000||||"
+                         + source + '|' + termType + '|' + code + '|'
+                         + (wanted ? "chronic heart failure" : createText( random )) + "|0|N|256|" );
+         }
+      }
+      final File metaDir = _folder.newFolder( "META" );
+      Files.write( new File( metaDir, "MRSTY.RRF" ).toPath(), mrsty, StandardCharsets.UTF_8 );
+      Files.write( new File( metaDir, "MRCONSO.RRF" ).toPath(), mrconso, StandardCharsets.UTF_8 );
+      return _folder.getRoot().getPath();
+   }
+
+   private UmlsTermUtil createTermUtil() throws IOException {
+      final String empty = _folder.newFile().getPath();
+      return new UmlsTermUtil( empty, empty, empty, empty, empty, empty, empty, empty, empty, empty );
+   }
+
+   static private Map<Long, Concept> parseConcepts( final String umlsDir, final UmlsTermUtil umlsTermUtil,
+                                                    final int threadCount ) {
+      final Collection<Tui> tuis = new ArrayList<>( Arrays.asList( Tui.T047, Tui.T121, Tui.T023 ) );
+      final Map<Long, Concept> concepts
+            = ConceptMapFactory.createInitialConceptMap( umlsDir, WANTED_SOURCES, tuis, threadCount );
+      return MrconsoParser.parseAllConcepts( umlsDir, concepts, WANTED_SOURCES, WANTED_SOURCES, umlsTermUtil,
+            Collections.singletonList( "ENG" ), true, 2, 48, 12, 7, threadCount );
+   }
+
+   /**
+    * @return one line per concept with its preferred text, tuis, texts with their counts and codes
+    */
+   static private List<String> describe( final Map<Long, Concept> concepts ) {
+      final List<String> descriptions = new ArrayList<>( concepts.size() );
+      for ( Map.Entry<Long, Concept> entry : new TreeMap<>( concepts ).entrySet() ) {
+         final Concept concept = entry.getValue();
+         final StringBuilder sb = new StringBuilder();
+         sb.append( entry.getKey() ).append( ' ' ).append( concept.getPreferredText() )
+           .append( ' ' ).append( concept.getTuis() );
+         for ( String text : new TreeSet<>( concept.getTexts() ) ) {
+            sb.append( " [" ).append( text ).append( ':' ).append( concept.getCount( text ) ).append( ']' );
+         }
+         for ( String vocabulary : new TreeSet<>( concept.getVocabularies() ) ) {
+            sb.append( ' ' ).append( vocabulary ).append( new TreeSet<>( concept.getCodes( vocabulary ) ) );
+         }
+         descriptions.add( sb.toString() );
+      }
+      return descriptions;
+   }
+
+   @Test
+   public void testParallelParseMatchesSequential() throws IOException {
+      final String umlsDir = writeUmls();
+      final UmlsTermUtil umlsTermUtil = createTermUtil();
+      final Map<Long, Concept> parallel = parseConcepts( umlsDir, umlsTermUtil, 4 );
+
+      // New cui prefixes are numbered in the order that they are first met in MRSTY, whichever chunk is parsed first
+      final String firstCui = getCui( FIRST_PREFIX_INDEX );
+      final String secondCui = getCui( SECOND_PREFIX_INDEX );
+      final Long firstCode = CuiCodeUtil.getInstance().getKnownCuiCode( firstCui );
+      final Long secondCode = CuiCodeUtil.getInstance().getKnownCuiCode( secondCui );
+      assertNotNull( firstCode );
+      assertNotNull( secondCode );
+      assertTrue( firstCode < secondCode );
+      assertEquals( firstCui, CuiCodeUtil.getInstance().getAsCui( firstCode ) );
+      assertEquals( secondCui, CuiCodeUtil.getInstance().getAsCui( secondCode ) );
+      assertTrue( parallel.containsKey( firstCode ) );
+      assertTrue( parallel.containsKey( secondCode ) );
+      assertTrue( parallel.size() > CUI_COUNT / 3 );
+
+      final Map<Long, Concept> sequential = parseConcepts( umlsDir, umlsTermUtil, 1 );
+      assertEquals( describe( sequential ), describe( parallel ) );
+   }
+
+   @Test( expected = UncheckedIOException.class )
+   public void testUnreadableFileAbortsParse() throws IOException {
+      final String umlsDir = writeUmls();
+      assertTrue( new File( umlsDir, "META/MRCONSO.RRF" ).delete() );
+      parseConcepts( umlsDir, createTermUtil(), 4 );
+   }
+
+}
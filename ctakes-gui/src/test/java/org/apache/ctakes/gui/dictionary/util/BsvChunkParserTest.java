@@ -0,0 +1,122 @@
+package org.apache.ctakes.gui.dictionary.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that chunks parsed on several threads are collected exactly as chunks parsed on a single thread.
+ */
+public class BsvChunkParserTest {
+
+   @Rule
+   public TemporaryFolder _folder = new TemporaryFolder();
+
+   /**
+    * Chunks and the line counts through them in the order that they were collected
+    */
+   static private final class Collected {
+      final private List<List<String>> __chunks = new ArrayList<>();
+      final private List<Long> __lineCounts = new ArrayList<>();
+   }
+
+   private File writeFile( final int lineCount ) throws IOException {
+      final List<String> lines = new ArrayList<>( lineCount );
+      for ( int i = 0; i < lineCount; i++ ) {
+         lines.add( "C" + (1000000 + i) + "|ENG|" + (i % 7 == 0 ? "" : "text " + i) + "|" );
+      }
+      final File file = _folder.newFile();
+      Files.write( file.toPath(), lines, StandardCharsets.UTF_8 );
+      return file;
+   }
+
+   static private Collected parse( final File file, final int threadCount,
+                                   final Function<List<String>, List<String>> chunkParser ) {
+      final Collected collected = new Collected();
+      final long lineCount = BsvChunkParser.parseFile( file.getPath(), threadCount, chunkParser,
+            ( chunk, chunkLineCount ) -> {
+               collected.__chunks.add( chunk );
+               collected.__lineCounts.add( chunkLineCount );
+            } );
+      assertEquals( collected.__lineCounts.get( collected.__lineCounts.size() - 1 ).longValue(), lineCount );
+      return collected;
+   }
+
+   /**
+    * @return the cui and text of lines with a text.  The first two chunks are parsed slowly
+    */
+   static private List<String> parseTexts( final List<String> lines ) {
+      final List<String> texts = new ArrayList<>();
+      final BsvLine bsvLine = new BsvLine();
+      for ( String line : lines ) {
+         bsvLine.setLine( line );
+         if ( !bsvLine.isField( 2, "" ) ) {
+            texts.add( bsvLine.getField( 0 ) + ' ' + bsvLine.getField( 2 ) );
+         }
+      }
+      if ( lines.get( 0 ).compareTo( "C1020000" ) < 0 ) {
+         // so that later chunks finish first
+         try {
+            Thread.sleep( 50 );
+         } catch ( InterruptedException intE ) {
+            Thread.currentThread().interrupt();
+         }
+      }
+      return texts;
+   }
+
+   @Test
+   public void testParallelMatchesSequential() throws IOException {
+      final File file = writeFile( 85001 );
+      final Collected sequential = parse( file, 1, BsvChunkParserTest::parseTexts );
+      assertEquals( 9, sequential.__chunks.size() );
+      assertEquals( Long.valueOf( 10000 ), sequential.__lineCounts.get( 0 ) );
+      assertEquals( Long.valueOf( 85001 ), sequential.__lineCounts.get( 8 ) );
+      assertEquals( "C1000001 text 1", sequential.__chunks.get( 0 ).get( 0 ) );
+      for ( int threadCount : new int[] { 2, 4, 8 } ) {
+         final Collected parallel = parse( file, threadCount, BsvChunkParserTest::parseTexts );
+         assertEquals( sequential.__chunks, parallel.__chunks );
+         assertEquals( sequential.__lineCounts, parallel.__lineCounts );
+      }
+   }
+
+   @Test
+   public void testShortFile() throws IOException {
+      final File file = writeFile( 3 );
+      final Collected sequential = parse( file, 1, BsvChunkParserTest::parseTexts );
+      final Collected parallel = parse( file, 4, BsvChunkParserTest::parseTexts );
+      assertEquals( 1, parallel.__chunks.size() );
+      assertEquals( sequential.__chunks, parallel.__chunks );
+      assertEquals( sequential.__lineCounts, parallel.__lineCounts );
+   }
+
+   @Test( expected = IllegalArgumentException.class )
+   public void testParseErrorIsThrown() throws IOException {
+      final File file = writeFile( 50000 );
+      parse( file, 4, lines -> {
+         if ( lines.contains( "C1035001|ENG|text 35001|" ) ) {
+            throw new IllegalArgumentException( "Bad line" );
+         }
+         return parseTexts( lines );
+      } );
+   }
+
+   @Test( expected = UncheckedIOException.class )
+   public void testReadErrorIsThrown() throws IOException {
+      final File file = new File( _folder.getRoot(), "missing.rrf" );
+      BsvChunkParser.parseFile( file.getPath(), 4, BsvChunkParserTest::parseTexts, ( chunk, chunkLineCount ) -> {
+      } );
+   }
+
+}
@@ -0,0 +1,93 @@
+package org.apache.ctakes.gui.dictionary.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a bsv line has the same fields as the split of {@link TokenUtil#getBsvItems(String)}.
+ */
+public class BsvLineTest {
+
+   static private final String[] PIECES = { "|", "|", "||", "C0000005", "ENG", "P", " ", "a", "bc", "SNOMEDCT_US" };
+
+   static private List<String> getFields( final BsvLine bsvLine ) {
+      final List<String> fields = new ArrayList<>( bsvLine.getFieldCount() );
+      for ( int i = 0; i < bsvLine.getFieldCount(); i++ ) {
+         fields.add( bsvLine.getField( i ) );
+      }
+      return fields;
+   }
+
+   static private void assertSameFields( final BsvLine bsvLine, final String line ) {
+      final List<String> items = TokenUtil.getBsvItems( line );
+      bsvLine.setLine( line );
+      assertEquals( "Fields of \"" + line + "\"", items, getFields( bsvLine ) );
+      for ( int i = 0; i < items.size(); i++ ) {
+         assertTrue( bsvLine.isField( i, items.get( i ) ) );
+         assertFalse( bsvLine.isField( i, items.get( i ) + "x" ) );
+         assertTrue( bsvLine.isFieldIn( i, new ArrayList<>( items.subList( i, items.size() ) ) ) );
+      }
+   }
+
+   @Test
+   public void testRrfLines() {
+      final BsvLine bsvLine = new BsvLine();
+      final String line = "C0000005|ENG|P|L0270109|PF|S0007492|Y|A26634265||M0019694|D012711|MSH|PEP|D012711"
+                          + "|(131)I-Macroaggregated Albumin|0|N|256|";
+      assertSameFields( bsvLine, line );
+      assertEquals( 19, bsvLine.getFieldCount() );
+      assertTrue( bsvLine.isField( 8, "" ) );
+      assertTrue( bsvLine.isField( 18, "" ) );
+      assertTrue( bsvLine.isFieldIn( 11, Collections.singletonList( "MSH" ) ) );
+      assertSameFields( bsvLine, "C0000039|T119|A1.4.1.2.1.7|Lipid|AT17648347|256|" );
+   }
+
+   @Test
+   public void testEmptyFields() {
+      final BsvLine bsvLine = new BsvLine();
+      assertSameFields( bsvLine, "a||b" );
+      assertSameFields( bsvLine, "a|||" );
+      assertSameFields( bsvLine, "ab|cd|" );
+      assertSameFields( bsvLine, "ab|cd||" );
+      assertSameFields( bsvLine, "ab| |cd" );
+   }
+
+   @Test
+   public void testSplitOddities() {
+      final BsvLine bsvLine = new BsvLine();
+      // blank lines have no fields
+      assertSameFields( bsvLine, "" );
+      assertSameFields( bsvLine, "   " );
+      assertEquals( 0, bsvLine.getFieldCount() );
+      // a line that starts with a bar is not split
+      assertSameFields( bsvLine, "|a|bc" );
+      assertEquals( 1, bsvLine.getFieldCount() );
+      // a last field of a single character is empty
+      assertSameFields( bsvLine, "ab|c" );
+      assertTrue( bsvLine.isField( 1, "" ) );
+      assertSameFields( bsvLine, "a" );
+      assertSameFields( bsvLine, "ab|cd" );
+      assertTrue( bsvLine.isField( 1, "cd" ) );
+   }
+
+   @Test
+   public void testRandomLines() {
+      final Random random = new Random( 3 );
+      final BsvLine bsvLine = new BsvLine();
+      for ( int i = 0; i < 10000; i++ ) {
+         final StringBuilder line = new StringBuilder();
+         // more than the initial field capacity now and then
+         for ( int j = random.nextInt( i % 10 == 0 ? 60 : 12 ); j > 0; j-- ) {
+            line.append( PIECES[ random.nextInt( PIECES.length ) ] );
+         }
+         assertSameFields( bsvLine, line.toString() );
+      }
+   }
+
+}
@@ -0,0 +1,319 @@
+package org.apache.ctakes.gui.dictionary.util;
+
+import org.apache.ctakes.gui.dictionary.umls.Concept;
+import org.apache.ctakes.gui.dictionary.umls.Tui;
+import org.apache.ctakes.gui.dictionary.umls.VocabularyStore;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a dictionary database written in batches has the same rows as one written row by row,
+ * that an updated dictionary database has the same rows as a dictionary database built from scratch,
+ * and that an update without changes leaves the script file of a file database untouched.
+ */
+public class RareWordDbWriterTest {
+
+   static private final String[] WORDS = { "acute", "chronic", "pain", "chest", "back", "fracture", "left", "right",
+                                           "tablet", "aspirin", "oral", "renal", "failure", "heart", "disease" };
+   static private final Tui[] TUIS = { Tui.T023, Tui.T047, Tui.T121 };
+   static private final String[] TABLES = { "CUI_TERMS", "TUI", "PREFTERM", "SNOMEDCT_US", "MSH" };
+
+   static private int _databaseCount = 0;
+
+   private final Collection<Connection> _connections = new ArrayList<>();
+
+   @Rule
+   public TemporaryFolder _folder = new TemporaryFolder();
+
+   @After
+   public void closeDatabases() throws SQLException {
+      for ( Connection connection : _connections ) {
+         try ( final Statement statement = connection.createStatement() ) {
+            statement.execute( "SHUTDOWN" );
+         }
+      }
+   }
+
+   /**
+    * The writer shuts the database down when it is done, which would discard an in-memory database.
+    *
+    * @return connection to a new in-memory database that stays open until the end of the test
+    */
+   private Connection createDatabase() {
+      final Connection connection = JdbcUtil.createDatabaseConnection(
+            "jdbc:hsqldb:mem:rareword" + _databaseCount++, "SA", "" );
+      _connections.add( connection );
+      assertTrue( HsqlUtil.createDatabase( connection ) );
+      return connection;
+   }
+
+   /**
+    * @return connection that ignores shutdown and close
+    */
+   static private Connection keepOpen( final Connection connection ) {
+      return (Connection)Proxy.newProxyInstance( Connection.class.getClassLoader(), new Class[] { Connection.class },
+            ( proxy, method, args ) -> {
+               if ( method.getName().equals( "close" ) ) {
+                  return null;
+               }
+               final Object result = invoke( connection, method, args );
+               if ( method.getName().equals( "createStatement" ) ) {
+                  return keepOpen( (Statement)result );
+               }
+               return result;
+            } );
+   }
+
+   static private Statement keepOpen( final Statement statement ) {
+      return (Statement)Proxy.newProxyInstance( Statement.class.getClassLoader(), new Class[] { Statement.class },
+            ( proxy, method, args ) -> {
+               if ( args != null && args.length > 0 && String.valueOf( args[ 0 ] ).startsWith( "SHUTDOWN" ) ) {
+                  return false;
+               }
+               return invoke( statement, method, args );
+            } );
+   }
+
+   static private Object invoke( final Object target, final Method method, final Object[] args ) throws Throwable {
+      try {
+         return method.invoke( target, args );
+      } catch ( InvocationTargetException itE ) {
+         throw itE.getCause();
+      }
+   }
+
+   static private Concept createConcept( final Random random, final long cui ) {
+      final Concept concept = new Concept();
+      final Collection<String> texts = new ArrayList<>();
+      for ( int i = random.nextInt( 3 ); i >= 0; i-- ) {
+         final StringBuilder text = new StringBuilder( WORDS[ random.nextInt( WORDS.length ) ] );
+         for ( int j = random.nextInt( 3 ); j > 0; j-- ) {
+            text.append( ' ' ).append( WORDS[ random.nextInt( WORDS.length ) ] );
+         }
+         texts.add( text.toString() );
+      }
+      concept.addTexts( texts );
+      concept.addTui( TUIS[ random.nextInt( TUIS.length ) ] );
+      if ( random.nextBoolean() ) {
+         concept.setPreferredText( texts.iterator().next() + " (disorder)" );
+      }
+      concept.addCode( "SNOMEDCT_US", Long.toString( 100000 + cui ) );
+      if ( random.nextBoolean() ) {
+         concept.addCode( "MSH", "D" + (cui * 7) );
+      }
+      return concept;
+   }
+
+   static private Map<Long, Concept> createConcepts( final int count, final long seed ) {
+      final Random random = new Random( seed );
+      final Map<Long, Concept> concepts = new HashMap<>();
+      for ( long cui = 1; cui <= count; cui++ ) {
+         concepts.put( cui, createConcept( random, cui ) );
+      }
+      return concepts;
+   }
+
+   /**
+    * @return the first concepts with some changed, some removed and some added
+    */
+   static private Map<Long, Concept> changeConcepts( final Map<Long, Concept> concepts, final long seed ) {
+      final Random random = new Random( seed );
+      final Map<Long, Concept> changed = new HashMap<>( concepts );
+      for ( long cui = 1; cui <= concepts.size(); cui++ ) {
+         final int change = random.nextInt( 10 );
+         if ( change == 0 ) {
+            changed.remove( cui );
+         } else if ( change == 1 ) {
+            changed.put( cui, createConcept( random, cui ) );
+         }
+      }
+      for ( long cui = concepts.size() + 1; cui <= concepts.size() + 20; cui++ ) {
+         changed.put( cui, createConcept( random, cui ) );
+      }
+      // Changed token counts can move the rare word of concepts that are otherwise unchanged
+      final Concept rareConcept = new Concept();
+      rareConcept.addTexts( Collections.singletonList( "chronic renal disease" ) );
+      rareConcept.addTui( Tui.T047 );
+      changed.put( 1000L, rareConcept );
+      return changed;
+   }
+
+   /**
+    * @return sorted rows of all tables
+    */
+   static private List<String> readRows( final Connection connection ) throws SQLException {
+      final List<String> rows = new ArrayList<>();
+      try ( final Statement statement = connection.createStatement() ) {
+         for ( String table : TABLES ) {
+            try ( final ResultSet resultSet = statement.executeQuery( "SELECT * FROM " + table ) ) {
+               final int columnCount = resultSet.getMetaData().getColumnCount();
+               while ( resultSet.next() ) {
+                  final StringBuilder row = new StringBuilder( table );
+                  for ( int i = 1; i <= columnCount; i++ ) {
+                     row.append( '|' ).append( resultSet.getObject( i ) );
+                  }
+                  rows.add( row.toString() );
+               }
+            }
+         }
+      }
+      Collections.sort( rows );
+      return rows;
+   }
+
+   private List<String> buildRows( final Map<Long, Concept> concepts ) throws SQLException {
+      final Connection connection = createDatabase();
+      assertTrue( RareWordDbWriter.writeConcepts( keepOpen( connection ), concepts ) );
+      return readRows( connection );
+   }
+
+   /**
+    * Writes the rows of each concept one at a time, as the writer did before it sent batches.
+    */
+   static private void writeRowByRow( final Connection connection, final Map<Long, Concept> concepts )
+         throws SQLException {
+      final Map<String, Long> tokenCounts = RareWordUtil.getTokenCounts( concepts.values() );
+      final String termSql = JdbcUtil.createRowInsertSql( "CUI_TERMS", "CUI", "RINDEX", "TCOUNT", "TEXT", "RWORD" );
+      for ( Map.Entry<Long, Concept> conceptEntry : concepts.entrySet() ) {
+         final long cui = conceptEntry.getKey();
+         final Concept concept = conceptEntry.getValue();
+         boolean conceptOk = false;
+         for ( String text : concept.getTexts() ) {
+            final RareWordUtil.IndexedRareWord indexedRareWord
+                  = RareWordUtil.getIndexedRareWord( text, tokenCounts );
+            if ( text.length() >= 255 || RareWordUtil.NULL_RARE_WORD.equals( indexedRareWord ) ) {
+               continue;
+            }
+            conceptOk = true;
+            insertRow( connection, termSql, cui, indexedRareWord.__index, indexedRareWord.__tokenCount, text,
+                  indexedRareWord.__word );
+         }
+         if ( !conceptOk ) {
+            continue;
+         }
+         for ( Tui tui : concept.getTuis() ) {
+            insertRow( connection, JdbcUtil.createCodeInsertSql( "TUI" ), cui, tui.getIntValue() );
+         }
+         final String preferredText = concept.getPreferredText();
+         if ( preferredText != null && !preferredText.isEmpty()
+              && !preferredText.equals( Concept.PREFERRED_TERM_UNKNOWN ) ) {
+            insertRow( connection, JdbcUtil.createCodeInsertSql( "PREFTERM" ), cui, preferredText );
+         }
+         for ( String vocabulary : concept.getVocabularies() ) {
+            final boolean isLong = Long.class.equals( VocabularyStore.getInstance().getVocabularyClass( vocabulary ) );
+            for ( String code : concept.getCodes( vocabulary ) ) {
+               insertRow( connection, JdbcUtil.createCodeInsertSql( vocabulary ), cui,
+                     isLong ? Long.valueOf( code ) : code );
+            }
+         }
+      }
+   }
+
+   static private void insertRow( final Connection connection, final String sql, final Object... values )
+         throws SQLException {
+      try ( final PreparedStatement statement = connection.prepareStatement( sql ) ) {
+         for ( int i = 0; i < values.length; i++ ) {
+            statement.setObject( i + 1, values[ i ] );
+         }
+         statement.executeUpdate();
+      }
+   }
+
+   @Test
+   public void testBatchedWriteMatchesRowByRow() throws SQLException {
+      // More concepts than fit in a single batch
+      final Map<Long, Concept> concepts = createConcepts( 12000, 17 );
+      final Connection connection = createDatabase();
+      writeRowByRow( connection, concepts );
+      final List<String> rows = readRows( connection );
+      assertTrue( rows.size() > 24000 );
+      assertEquals( rows, buildRows( concepts ) );
+   }
+
+   @Test
+   public void testUpdateMatchesRebuild() throws SQLException {
+      final Map<Long, Concept> concepts = createConcepts( 200, 3 );
+      final Map<Long, Concept> changedConcepts = changeConcepts( concepts, 5 );
+
+      final Connection connection = createDatabase();
+      assertTrue( RareWordDbWriter.writeConcepts( keepOpen( connection ), concepts ) );
+      final List<String> firstRows = readRows( connection );
+      assertEquals( buildRows( concepts ), firstRows );
+
+      assertTrue( RareWordDbWriter.updateConcepts( keepOpen( connection ), changedConcepts ) );
+      final List<String> updatedRows = readRows( connection );
+      assertNotEquals( firstRows, updatedRows );
+      assertEquals( buildRows( changedConcepts ), updatedRows );
+
+      // An update without changes leaves the rows as they are
+      assertTrue( RareWordDbWriter.updateConcepts( keepOpen( connection ), changedConcepts ) );
+      assertEquals( updatedRows, readRows( connection ) );
+   }
+
+   @Test
+   public void testFailedUpdateIsRolledBack() throws SQLException {
+      final Map<Long, Concept> concepts = createConcepts( 100, 7 );
+      final Connection connection = createDatabase();
+      assertTrue( RareWordDbWriter.writeConcepts( keepOpen( connection ), concepts ) );
+      final List<String> firstRows = readRows( connection );
+
+      final Map<Long, Concept> changedConcepts = changeConcepts( concepts, 11 );
+      // A code longer than its column fails the insert after the changed concepts have been deleted
+      final Concept badConcept = createConcept( new Random( 13 ), 1 );
+      final StringBuilder longCode = new StringBuilder( "D" );
+      while ( longCode.length() < 60 ) {
+         longCode.append( '0' );
+      }
+      badConcept.addCode( "MSH", longCode.toString() );
+      changedConcepts.put( 1L, badConcept );
+      assertEquals( String.class, VocabularyStore.getInstance().getVocabularyClass( "MSH" ) );
+
+      assertFalse( RareWordDbWriter.updateConcepts( keepOpen( connection ), changedConcepts ) );
+      assertEquals( firstRows, readRows( connection ) );
+   }
+
+   @Test
+   public void testUpdateOfFileDatabase() throws SQLException, IOException {
+      final Map<Long, Concept> concepts = createConcepts( 100, 19 );
+      final Map<Long, Concept> changedConcepts = changeConcepts( concepts, 23 );
+      final File databaseDir = _folder.newFolder( "rareword" );
+      final String url = HsqlUtil.URL_PREFIX + databaseDir.getPath().replace( '\\', '/' ) + "/rareword";
+      final File scriptFile = new File( databaseDir, "rareword.script" );
+
+      final Connection writeConnection = JdbcUtil.createDatabaseConnection( url, "SA", "" );
+      assertTrue( HsqlUtil.createDatabase( writeConnection ) );
+      assertTrue( RareWordDbWriter.writeConcepts( writeConnection, concepts ) );
+      final byte[] script = Files.readAllBytes( scriptFile.toPath() );
+      final long lastModified = scriptFile.lastModified();
+
+      // The writer shuts the database down, so each update opens it again from its files
+      assertTrue( RareWordDbWriter.updateConcepts( JdbcUtil.createDatabaseConnection( url, "SA", "" ), concepts ) );
+      assertArrayEquals( script, Files.readAllBytes( scriptFile.toPath() ) );
+      assertEquals( lastModified, scriptFile.lastModified() );
+
+      assertTrue( RareWordDbWriter.updateConcepts( JdbcUtil.createDatabaseConnection( url, "SA", "" ),
+            changedConcepts ) );
+      assertFalse( Arrays.equals( script, Files.readAllBytes( scriptFile.toPath() ) ) );
+      final Connection readConnection = JdbcUtil.createDatabaseConnection( url, "SA", "" );
+      _connections.add( readConnection );
+      assertEquals( buildRows( changedConcepts ), readRows( readConnection ) );
+   }
+
+}
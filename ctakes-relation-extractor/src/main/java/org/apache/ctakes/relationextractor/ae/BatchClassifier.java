@@ -0,0 +1,41 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.relationextractor.ae;
+
+import java.util.List;
+
+import org.cleartk.ml.CleartkProcessingException;
+import org.cleartk.ml.Feature;
+
+/**
+ * A classifier that can classify many instances with a single call.
+ * Relation annotators running with {@link RelationExtractorAnnotator#PARAM_BATCH_CLASSIFY} collect the
+ * candidate pairs of a whole document and pass them to a classifier implementing this interface at once,
+ * so that it can encode and score them together.
+ */
+public interface BatchClassifier<OUTCOME_TYPE> {
+
+  /**
+   * @param instances
+   *          the features of each instance to classify
+   * @return the predicted outcome of each instance, in the order of the instances
+   */
+  List<OUTCOME_TYPE> classifyAll(List<List<Feature>> instances) throws CleartkProcessingException;
+
+}
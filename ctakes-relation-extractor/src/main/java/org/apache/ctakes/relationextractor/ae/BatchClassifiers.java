@@ -0,0 +1,105 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.relationextractor.ae;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.uima.UimaContext;
+import org.apache.uima.UimaContextAdmin;
+import org.apache.uima.resource.ConfigurationManager;
+import org.cleartk.ml.Classifier;
+import org.cleartk.ml.CleartkAnnotator;
+import org.cleartk.ml.CleartkProcessingException;
+import org.cleartk.ml.Feature;
+import org.cleartk.ml.jar.JarClassifierFactory;
+
+/**
+ * Classification of the collected instances of a document, shared by the annotators that can classify
+ * candidate pairs together.
+ */
+public final class BatchClassifiers {
+
+  private BatchClassifiers() {
+  }
+
+  /**
+   * @return true if the classifier scores many instances with one {@link BatchClassifier#classifyAll(List)} call.
+   *         Collecting the instances of a document only pays off for such classifiers.
+   */
+  public static boolean canClassifyAll(Classifier<?> classifier) {
+    return classifier instanceof BatchClassifier;
+  }
+
+  /**
+   * @param classifier
+   *          the classifier to ask
+   * @param instances
+   *          the features of each instance to classify
+   * @return the predicted outcome of each instance, in the order of the instances. A {@link BatchClassifier}
+   *         is asked once for all of them, any other classifier once per instance.
+   */
+  @SuppressWarnings("unchecked")
+  public static <OUTCOME_TYPE> List<OUTCOME_TYPE> classifyAll(
+      Classifier<OUTCOME_TYPE> classifier,
+      List<List<Feature>> instances) throws CleartkProcessingException {
+    if (canClassifyAll(classifier)) {
+      return ((BatchClassifier<OUTCOME_TYPE>) classifier).classifyAll(instances);
+    }
+    List<OUTCOME_TYPE> outcomes = new ArrayList<>(instances.size());
+    for (List<Feature> features : instances) {
+      outcomes.add(classifier.classify(features));
+    }
+    return outcomes;
+  }
+
+  /**
+   * Makes a cleartk annotator that loads its model with the default {@link JarClassifierFactory} use
+   * {@link BatchJarClassifierFactory} instead, so that liblinear and libsvm models can classify instances together.
+   * Annotators given another classifier factory keep it.  Must be called before
+   * {@link CleartkAnnotator#initialize(UimaContext)}.
+   */
+  public static void useBatchClassifierFactory(UimaContext context) {
+    String factoryParam = CleartkAnnotator.PARAM_CLASSIFIER_FACTORY_CLASS_NAME;
+    Object factoryName = context.getConfigParameterValue(factoryParam);
+    if (factoryName == null || JarClassifierFactory.class.getName().equals(factoryName)) {
+      UimaContextAdmin contextAdmin = (UimaContextAdmin) context;
+      ConfigurationManager manager = contextAdmin.getConfigurationManager();
+      String qualifiedFactoryParam = contextAdmin.getQualifiedContextName() + factoryParam;
+      manager.setConfigParameterValue(qualifiedFactoryParam, BatchJarClassifierFactory.class.getName());
+    }
+  }
+
+  /**
+   * @return true if the type, or a superclass of it below the base class, declares the method.  Annotators use
+   *         this to tell whether a subclass replaced the per-instance classify that batching would bypass.
+   */
+  public static boolean isOverridden(Class<?> type, Class<?> base, String methodName, Class<?>... parameterTypes) {
+    for (Class<?> declaring = type; declaring != null && declaring != base; declaring = declaring.getSuperclass()) {
+      try {
+        declaring.getDeclaredMethod(methodName, parameterTypes);
+        return true;
+      } catch (NoSuchMethodException e) {
+        // not declared at this level
+      }
+    }
+    return false;
+  }
+
+}
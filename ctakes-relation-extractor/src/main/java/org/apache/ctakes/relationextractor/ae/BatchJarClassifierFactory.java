@@ -0,0 +1,97 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.relationextractor.ae;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.jar.JarInputStream;
+
+import org.apache.uima.UimaContext;
+import org.apache.uima.fit.component.initialize.ConfigurationParameterInitializer;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
+import org.apache.uima.fit.factory.initializable.Initializable;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.cleartk.ml.Classifier;
+import org.cleartk.ml.ClassifierFactory;
+import org.cleartk.ml.jar.GenericJarClassifierFactory;
+import org.cleartk.ml.jar.JarClassifierBuilder;
+import org.cleartk.ml.jar.JarClassifierFactory;
+import org.cleartk.ml.liblinear.LibLinearStringOutcomeClassifierBuilder;
+import org.cleartk.ml.libsvm.LibSvmStringOutcomeClassifierBuilder;
+
+/**
+ * Loads a classifier from a model jar like {@link JarClassifierFactory}, but loads liblinear and libsvm string
+ * outcome models as {@link LibLinearBatchClassifier} and {@link LibSvmBatchClassifier} so that they can classify
+ * the instances of a document together.  Other models are loaded by the builder named in their manifest.
+ */
+public class BatchJarClassifierFactory implements ClassifierFactory<String>, Initializable {
+
+  @ConfigurationParameter(
+      name = GenericJarClassifierFactory.PARAM_CLASSIFIER_JAR_PATH,
+      mandatory = true,
+      description = "provides the path to the jar file that should be used to instantiate the classifier.")
+  private String classifierJarPath;
+
+  public void setClassifierJarPath(String classifierJarPath) {
+    this.classifierJarPath = classifierJarPath;
+  }
+
+  @Override
+  public void initialize(UimaContext context) throws ResourceInitializationException {
+    ConfigurationParameterInitializer.initialize(this, context);
+  }
+
+  @Override
+  public Classifier<String> createClassifier() throws IOException {
+    // the same lookup as GenericJarClassifierFactory: the classpath, then a url, then a file
+    InputStream stream = this.getClass().getResourceAsStream(this.classifierJarPath);
+    if (stream == null) {
+      try {
+        stream = new URL(this.classifierJarPath).openStream();
+      } catch (MalformedURLException e) {
+        stream = new FileInputStream(this.classifierJarPath);
+      }
+    }
+    try (JarInputStream jarStream = new JarInputStream(new BufferedInputStream(stream))) {
+      JarClassifierBuilder<?> builder = getBatchBuilder(JarClassifierBuilder.fromManifest(jarStream.getManifest()));
+      @SuppressWarnings("unchecked")
+      Classifier<String> classifier = (Classifier<String>) builder.loadClassifier(jarStream);
+      return classifier;
+    }
+  }
+
+  /**
+   * @return a builder of a batch classifier for the stock liblinear and libsvm string outcome builders, else the
+   *         given builder.  Subclasses of the stock builders may build other classifiers and are kept.
+   */
+  static JarClassifierBuilder<?> getBatchBuilder(JarClassifierBuilder<?> builder) {
+    if (builder.getClass() == LibLinearStringOutcomeClassifierBuilder.class) {
+      return new LibLinearBatchClassifier.Builder();
+    }
+    if (builder.getClass() == LibSvmStringOutcomeClassifierBuilder.class) {
+      return new LibSvmBatchClassifier.Builder();
+    }
+    return builder;
+  }
+
+}
@@ -0,0 +1,76 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.relationextractor.ae;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cleartk.ml.CleartkProcessingException;
+import org.cleartk.ml.Feature;
+import org.cleartk.ml.encoder.features.FeaturesEncoder;
+import org.cleartk.ml.encoder.outcome.OutcomeEncoder;
+import org.cleartk.ml.liblinear.LibLinearStringOutcomeClassifier;
+import org.cleartk.ml.liblinear.LibLinearStringOutcomeClassifierBuilder;
+
+import de.bwaldvogel.liblinear.FeatureNode;
+import de.bwaldvogel.liblinear.Linear;
+import de.bwaldvogel.liblinear.Model;
+
+/**
+ * A liblinear string outcome classifier that scores the instances of a batch with one decision value buffer,
+ * where {@link LibLinearStringOutcomeClassifier#classify(List)} allocates one per instance.
+ * Its predictions are those of {@link LibLinearStringOutcomeClassifier#classify(List)}.
+ */
+public class LibLinearBatchClassifier extends LibLinearStringOutcomeClassifier implements BatchClassifier<String> {
+
+  // the model of the superclass is private
+  private final Model model;
+
+  public LibLinearBatchClassifier(
+      FeaturesEncoder<FeatureNode[]> featuresEncoder,
+      OutcomeEncoder<String, Integer> outcomeEncoder,
+      Model model) {
+    super(featuresEncoder, outcomeEncoder, model);
+    this.model = model;
+  }
+
+  @Override
+  public List<String> classifyAll(List<List<Feature>> instances) throws CleartkProcessingException {
+    double[] decisionValues = new double[this.model.getNrClass()];
+    List<String> outcomes = new ArrayList<>(instances.size());
+    for (List<Feature> features : instances) {
+      FeatureNode[] encodedFeatures = this.featuresEncoder.encodeAll(features);
+      int encodedOutcome = (int) Linear.predictValues(this.model, encodedFeatures, decisionValues);
+      outcomes.add(this.outcomeEncoder.decode(encodedOutcome));
+    }
+    return outcomes;
+  }
+
+  /**
+   * Loads a model packaged by {@link LibLinearStringOutcomeClassifierBuilder} as a {@link LibLinearBatchClassifier}.
+   */
+  public static class Builder extends LibLinearStringOutcomeClassifierBuilder {
+
+    @Override
+    protected LibLinearBatchClassifier newClassifier() {
+      return new LibLinearBatchClassifier(this.featuresEncoder, this.outcomeEncoder, this.model);
+    }
+  }
+
+}
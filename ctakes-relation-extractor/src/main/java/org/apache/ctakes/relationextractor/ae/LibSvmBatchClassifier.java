@@ -0,0 +1,87 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.relationextractor.ae;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import libsvm.svm;
+import libsvm.svm_model;
+import libsvm.svm_node;
+import libsvm.svm_parameter;
+
+import org.cleartk.ml.CleartkProcessingException;
+import org.cleartk.ml.Feature;
+import org.cleartk.ml.encoder.features.FeaturesEncoder;
+import org.cleartk.ml.encoder.outcome.OutcomeEncoder;
+import org.cleartk.ml.libsvm.LibSvmStringOutcomeClassifier;
+import org.cleartk.ml.libsvm.LibSvmStringOutcomeClassifierBuilder;
+import org.cleartk.ml.util.featurevector.FeatureVector;
+
+/**
+ * A libsvm string outcome classifier that scores the instances of a batch with one decision value buffer,
+ * where svm.svm_predict allocates one per instance.
+ * Its predictions are those of {@link LibSvmStringOutcomeClassifier#classify(List)}.
+ */
+public class LibSvmBatchClassifier extends LibSvmStringOutcomeClassifier implements BatchClassifier<String> {
+
+  public LibSvmBatchClassifier(
+      FeaturesEncoder<FeatureVector> featuresEncoder,
+      OutcomeEncoder<String, Integer> outcomeEncoder,
+      svm_model model) {
+    super(featuresEncoder, outcomeEncoder, model);
+  }
+
+  @Override
+  public List<String> classifyAll(List<List<Feature>> instances) throws CleartkProcessingException {
+    double[] decisionValues = new double[getDecisionValueCount(this.model)];
+    List<String> outcomes = new ArrayList<>(instances.size());
+    for (List<Feature> features : instances) {
+      svm_node[] encodedFeatures = convertToLIBSVM(this.featuresEncoder.encodeAll(features));
+      double prediction = svm.svm_predict_values(this.model, encodedFeatures, decisionValues);
+      outcomes.add(this.outcomeEncoder.decode(this.decodePrediction(prediction)));
+    }
+    return outcomes;
+  }
+
+  /**
+   * @return the number of decision values svm.svm_predict allocates for the model
+   */
+  private static int getDecisionValueCount(svm_model model) {
+    int svmType = svm.svm_get_svm_type(model);
+    if (svmType == svm_parameter.ONE_CLASS || svmType == svm_parameter.EPSILON_SVR
+        || svmType == svm_parameter.NU_SVR) {
+      return 1;
+    }
+    int classCount = svm.svm_get_nr_class(model);
+    return classCount * (classCount - 1) / 2;
+  }
+
+  /**
+   * Loads a model packaged by {@link LibSvmStringOutcomeClassifierBuilder} as a {@link LibSvmBatchClassifier}.
+   */
+  public static class Builder extends LibSvmStringOutcomeClassifierBuilder {
+
+    @Override
+    protected LibSvmBatchClassifier newClassifier() {
+      return new LibSvmBatchClassifier(this.featuresEncoder, this.outcomeEncoder, this.model);
+    }
+  }
+
+}
@@ -33,6 +33,7 @@ import org.apache.ctakes.relationextractor.ae.features.NamedEntityFeaturesExtrac
 import org.apache.ctakes.relationextractor.ae.features.PartOfSpeechFeaturesExtractor;
 import org.apache.ctakes.relationextractor.ae.features.PhraseChunkingExtractor;
 import org.apache.ctakes.relationextractor.ae.features.RelationFeaturesExtractor;
+import org.apache.ctakes.relationextractor.ae.features.SentenceFeatureContext;
 import org.apache.ctakes.relationextractor.ae.features.TokenFeaturesExtractor;
 import org.apache.ctakes.typesystem.type.relation.BinaryTextRelation;
 import org.apache.ctakes.typesystem.type.relation.RelationArgument;
@@ -70,6 +71,18 @@ public abstract class RelationExtractorAnnotator extends CleartkAnnotator<String
 			description = "probability that a negative example should be retained for training")
 	protected double probabilityOfKeepingANegativeExample = 1.0;
 
+	public static final String PARAM_BATCH_CLASSIFY = "BatchClassify";
+
+	@ConfigurationParameter(
+			name = PARAM_BATCH_CLASSIFY,
+			mandatory = false,
+			description = "classify all candidate pairs of a document together with classifyAll(List); liblinear and"
+					+ " libsvm models are then loaded as BatchClassifiers. Pairs are still classified one at a time"
+					+ " when the classifier cannot batch, or when a subclass overrides classify(List) but not classifyAll(List)")
+	protected boolean batchClassify = false;
+
+	private boolean classifyBatches = false;
+
 	protected Random coin = new Random(0);
 
 	private List<RelationFeaturesExtractor<IdentifiedAnnotation,IdentifiedAnnotation>> featureExtractors = this.getFeatureExtractors();
@@ -132,7 +145,17 @@ public abstract class RelationExtractorAnnotator extends CleartkAnnotator<String
 	@Override
 	public void initialize(UimaContext context) throws ResourceInitializationException {
 		allowClassifierModelOnClasspath(context);
+		if (Boolean.TRUE.equals(context.getConfigParameterValue(PARAM_BATCH_CLASSIFY))) {
+			BatchClassifiers.useBatchClassifierFactory(context);
+		}
 		super.initialize(context);
+		// batching would bypass a subclass's own classify(List) unless it also says how to classify a batch
+		Class<?> type = this.getClass();
+		Class<?> base = RelationExtractorAnnotator.class;
+		this.classifyBatches = this.batchClassify && !this.isTraining()
+				&& (BatchClassifiers.isOverridden(type, base, "classifyAll", List.class)
+				|| (BatchClassifiers.canClassifyAll(this.classifier)
+				&& !BatchClassifiers.isOverridden(type, base, "classify", List.class)));
 	}
 
 	/*
@@ -160,8 +183,29 @@ public abstract class RelationExtractorAnnotator extends CleartkAnnotator<String
 			}
 		}
 
+		try {
+			extractRelations(jCas, relationLookup);
+		} finally {
+			// the sentence contexts stay with the document for the relation annotators that follow
+			SentenceFeatureContext.deselect();
+		}
+	}
+
+	@Override
+	public void collectionProcessComplete() throws AnalysisEngineProcessException {
+		super.collectionProcessComplete();
+		SentenceFeatureContext.clear();
+	}
+
+	private void extractRelations(JCas jCas, Map<List<Annotation>, BinaryTextRelation> relationLookup)
+			throws AnalysisEngineProcessException {
+		// candidate pairs and their features, kept until the whole document can be classified
+		List<IdentifiedAnnotationPair> batchPairs = new ArrayList<>();
+		List<List<Feature>> batchFeatures = new ArrayList<>();
 		// walk through each sentence in the text
 		for (Annotation coveringAnnotation : JCasUtil.select(jCas, coveringClass)) {
+			// dependencies and mention features of the sentence are shared by all of its pairs
+			SentenceFeatureContext.select(jCas, coveringAnnotation);
 
 			// walk through the pairs of annotations
 			for (IdentifiedAnnotationPair pair : this.getCandidateRelationArgumentPairs(jCas, coveringAnnotation)) {
@@ -175,9 +219,11 @@ public abstract class RelationExtractorAnnotator extends CleartkAnnotator<String
 				}
 
 				// sanity check on feature values
-				for (Feature feature : features) {
+				for (int i = 0; i < features.size(); i++) {
+					Feature feature = features.get(i);
 					if (feature.getValue() == null) {
-						feature.setValue("NULL");
+						// features of a mention are shared by its pairs, so replace rather than change them
+						features.set(i, new Feature(feature.getName(), "NULL"));
 						String message = String.format("Null value found in %s", feature);
 						System.err.println(message);
 						//            throw new IllegalArgumentException(String.format(message, feature, features));
@@ -202,28 +248,48 @@ public abstract class RelationExtractorAnnotator extends CleartkAnnotator<String
 					this.dataWriter.write(new Instance<>(category, features));
 				}
 
+				else if (this.classifyBatches) {
+					batchPairs.add(pair);
+					batchFeatures.add(features);
+				}
+
 				// during classification feed the features to the classifier and create
 				// annotations
 				else {
 					String predictedCategory = this.classify(features);
-
-					// add a relation annotation if a true relation was predicted
-					if (!predictedCategory.equals(NO_RELATION_CATEGORY)) {
-
-						// if we predict an inverted relation, reverse the order of the
-						// arguments
-						if (predictedCategory.endsWith("-1")) {
-							predictedCategory = predictedCategory.substring(0, predictedCategory.length() - 2);
-							IdentifiedAnnotation temp = arg1;
-							arg1 = arg2;
-							arg2 = temp;
-						}
-
-						createRelation(jCas, arg1, arg2, predictedCategory);
-					}
+					addPredictedRelation(jCas, arg1, arg2, predictedCategory);
 				}
 			} // end pair in pairs
 		} // end for(Sentence)
+
+		if (!batchPairs.isEmpty()) {
+			List<String> predictedCategories = this.classifyAll(batchFeatures);
+			for (int i = 0; i < batchPairs.size(); i++) {
+				IdentifiedAnnotationPair pair = batchPairs.get(i);
+				addPredictedRelation(jCas, pair.getArg1(), pair.getArg2(), predictedCategories.get(i));
+			}
+		}
+	}
+
+	private void addPredictedRelation(
+			JCas jCas,
+			IdentifiedAnnotation arg1,
+			IdentifiedAnnotation arg2,
+			String predictedCategory) {
+		// add a relation annotation if a true relation was predicted
+		if (!predictedCategory.equals(NO_RELATION_CATEGORY)) {
+
+			// if we predict an inverted relation, reverse the order of the
+			// arguments
+			if (predictedCategory.endsWith("-1")) {
+				predictedCategory = predictedCategory.substring(0, predictedCategory.length() - 2);
+				IdentifiedAnnotation temp = arg1;
+				arg1 = arg2;
+				arg2 = temp;
+			}
+
+			createRelation(jCas, arg1, arg2, predictedCategory);
+		}
 	}
 
 	/**
@@ -262,6 +328,21 @@ public abstract class RelationExtractorAnnotator extends CleartkAnnotator<String
 		return this.classifier.classify(features);
 	}
 
+	/**
+	 * Predict the outcomes of all candidate pairs of a document when
+	 * {@link #PARAM_BATCH_CLASSIFY} is set. By default, this delegates to the
+	 * <code>classifier</code>'s {@link BatchClassifier#classifyAll(List)}.
+	 * Subclasses that override {@link #classify(List)} are only given batches
+	 * if they override this method too.
+	 * 
+	 * @param featureLists
+	 *          The features of each pair, in document order.
+	 * @return The predicted outcome (label) of each pair.
+	 */
+	protected List<String> classifyAll(List<List<Feature>> featureLists) throws CleartkProcessingException {
+		return BatchClassifiers.classifyAll(this.classifier, featureLists);
+	}
+
 	/**
 	 * Create a UIMA relation type based on arguments and the relation label. This
 	 * allows subclasses to create/define their own types: e.g. coreference can
@@ -37,6 +37,21 @@ public class DependencyPathFeaturesExtractor implements RelationFeaturesExtracto
 		
 		List<Feature> features = new ArrayList<Feature>();
 		
+	    SentenceFeatureContext context = SentenceFeatureContext.getCurrent(jCas, arg1, arg2);
+	    if (context != null) {
+	    	ConllDependencyNode node1 = context.getAnnotationHead(arg1);
+	    	ConllDependencyNode node2 = context.getAnnotationHead(arg2);
+	    	if (node1 == null || node2 == null) { return features; }
+	    	SentenceFeatureContext.DependencyPath path = context.getDependencyPath(node1, node2);
+	    	if (path != null) {
+	    		features.add(new Feature("DEPENDENCY_PATH_MEAN_DISTANCE_TO_COMMON_ANCESTOR", (path.getDistance1() + path.getDistance2()) / 2.0));
+	    		features.add(new Feature("DEPENDENCY_PATH_MAX_DISTANCE_TO_COMMON_ANCESTOR", Math.max(path.getDistance1(), path.getDistance2())));
+	    		features.add(new Feature("DEPENDENCY_PATH_MIN_DISTANCE_TO_COMMON_ANCESTOR", Math.min(path.getDistance1(), path.getDistance2())));
+	    		features.add(new Feature("DEPENDENCY_PATH", path.getPath()));
+	    		return features;
+	    	}
+	    }
+	    
 	    ConllDependencyNode node1 = DependencyParseUtils.findAnnotationHead(jCas, arg1);
 	    ConllDependencyNode node2 = DependencyParseUtils.findAnnotationHead(jCas, arg2);
 	    if (node1 == null || node2 == null) { return features; }
@@ -34,14 +34,25 @@ public class DependencyTreeFeaturesExtractor implements RelationFeaturesExtracto
 			IdentifiedAnnotation arg2) throws AnalysisEngineProcessException {
 		
 	    List<Feature> features = new ArrayList<Feature>();
+	    SentenceFeatureContext context = SentenceFeatureContext.getCurrent(jCas, arg1, arg2);
+	    if (context != null) {
+	    	features.addAll(context.getMentionValue(this, "MENTION1", arg1,
+	    			m -> extractForHead(arg1, context.getAnnotationHead(arg1), "MENTION1")));
+	    	features.addAll(context.getMentionValue(this, "MENTION2", arg2,
+	    			m -> extractForHead(arg2, context.getAnnotationHead(arg2), "MENTION2")));
+	    	return features;
+	    }
 	    features.addAll(extractForNode(jCas, arg1, "MENTION1"));
 	    features.addAll(extractForNode(jCas, arg2, "MENTION2"));
 	    return features;
 	}
 	
 	public static List<Feature> extractForNode(JCas jCas, IdentifiedAnnotation mention, String ftrPrefix) {
+	    return extractForHead(mention, DependencyParseUtils.findAnnotationHead(jCas, mention), ftrPrefix);
+	}
+
+	private static List<Feature> extractForHead(IdentifiedAnnotation mention, ConllDependencyNode mentionHeadNode, String ftrPrefix) {
 	    List<Feature> features = new ArrayList<Feature>();
-	    ConllDependencyNode mentionHeadNode = DependencyParseUtils.findAnnotationHead(jCas, mention);
 		
 	    if (mentionHeadNode != null) {
 	    	ConllDependencyNode dependsOn = mentionHeadNode.getHead();
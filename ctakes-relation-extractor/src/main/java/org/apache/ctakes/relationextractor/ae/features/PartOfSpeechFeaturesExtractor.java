@@ -63,6 +63,14 @@ public class PartOfSpeechFeaturesExtractor implements RelationFeaturesExtractor<
   public List<Feature> extract(JCas jCas, IdentifiedAnnotation arg1, IdentifiedAnnotation arg2)
       throws AnalysisEngineProcessException {
     List<Feature> features = new ArrayList<Feature>();
+    SentenceFeatureContext context = SentenceFeatureContext.getCurrent(jCas, arg1, arg2);
+    if(context != null){
+      features.addAll(context.getMentionValue(this, "mention1", arg1,
+          m -> this.mention1FeaturesExtractor.extract(jCas, m)));
+      features.addAll(context.getMentionValue(this, "mention2", arg2,
+          m -> this.mention2FeaturesExtractor.extract(jCas, m)));
+      return features;
+    }
     features.addAll(this.mention1FeaturesExtractor.extract(jCas, arg1));
     features.addAll(this.mention2FeaturesExtractor.extract(jCas, arg2));
     return features;
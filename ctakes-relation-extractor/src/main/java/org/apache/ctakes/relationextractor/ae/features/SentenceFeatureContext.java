@@ -0,0 +1,306 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.relationextractor.ae.features;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ctakes.typesystem.type.syntax.BaseToken;
+import org.apache.ctakes.typesystem.type.syntax.ConllDependencyNode;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
+
+/**
+ * Features of a covering annotation (usually a sentence) that are shared by every candidate pair within it.
+ * <p>
+ * The tokens and dependency nodes of the sentence are selected once, heads of mentions and dependency paths
+ * between nodes are computed once, and per-mention feature lists are kept so that a mention appearing in many
+ * candidate pairs is only extracted once.  Heads and paths are computed when first asked for, as most pairs of
+ * nodes in a sentence are never on a candidate pair.
+ * </p>
+ * Contexts are kept per thread for the document being processed, so that every relation annotator of a pipeline
+ * shares the tokens, dependency nodes, heads and paths of a sentence.  They are dropped when a different cas or
+ * document is selected, or with {@link #clear()}.  They do not notice changes to tokens or dependency nodes, which
+ * must not be changed while the document is processed by relation annotators.
+ */
+public class SentenceFeatureContext {
+
+  /**
+   * Computes a value for a single mention
+   */
+  public interface MentionFunction<T> {
+    T apply(Annotation mention) throws AnalysisEngineProcessException;
+  }
+
+  private static final ThreadLocal<CasContexts> CAS_CONTEXTS = new ThreadLocal<CasContexts>() {
+    @Override
+    protected CasContexts initialValue() {
+      return new CasContexts();
+    }
+  };
+
+  /**
+   * Contexts for the cas that is being processed by this thread
+   */
+  private static final class CasContexts {
+    private JCas jCas;
+    // a reused cas keeps its jcas, but gets a new document text
+    private String documentText;
+    private final Map<Long, SentenceFeatureContext> contexts = new HashMap<>();
+    private SentenceFeatureContext current;
+  }
+
+  private final Annotation covering;
+  private final BaseToken[] tokens;
+  private final ConllDependencyNode[] nodes;
+  private final Map<ConllDependencyNode, Integer> nodeIndices;
+  private final Map<Annotation, ConllDependencyNode> mentionHeads = new IdentityHashMap<>();
+  private final Map<Long, DependencyPath> paths = new HashMap<>();
+  // values of each extractor instance, by name and then by mention
+  private final Map<Object, Map<String, Map<Annotation, Object>>> mentionValues = new IdentityHashMap<>();
+
+  private SentenceFeatureContext(JCas jCas, Annotation covering) {
+    this.covering = covering;
+    List<BaseToken> tokenList = JCasUtil.selectCovered(jCas, BaseToken.class, covering);
+    tokens = tokenList.toArray(new BaseToken[tokenList.size()]);
+    List<ConllDependencyNode> nodeList = JCasUtil.selectCovered(jCas, ConllDependencyNode.class, covering);
+    nodes = nodeList.toArray(new ConllDependencyNode[nodeList.size()]);
+    nodeIndices = new IdentityHashMap<>(nodes.length);
+    for (int i = 0; i < nodes.length; i++) {
+      nodeIndices.put(nodes[i], i);
+    }
+  }
+
+  /**
+   * Make the context of the covering annotation the current context for the cas, creating it if needed.
+   *
+   * @param jCas
+   *          the cas being processed
+   * @param covering
+   *          the covering annotation, usually a sentence
+   * @return the context of the covering annotation
+   */
+  public static SentenceFeatureContext select(JCas jCas, Annotation covering) {
+    CasContexts casContexts = CAS_CONTEXTS.get();
+    if (!isDocument(casContexts, jCas)) {
+      casContexts.contexts.clear();
+      casContexts.jCas = jCas;
+      casContexts.documentText = jCas.getDocumentText();
+    }
+    Long key = spanKey(covering.getBegin(), covering.getEnd());
+    SentenceFeatureContext context = casContexts.contexts.get(key);
+    if (context == null || context.covering != covering) {
+      context = new SentenceFeatureContext(jCas, covering);
+      casContexts.contexts.put(key, context);
+    }
+    casContexts.current = context;
+    return context;
+  }
+
+  /**
+   * @param jCas
+   *          the cas being processed
+   * @param mentions
+   *          mentions that must be within the current context
+   * @return the current context, or null if there is none or it does not cover all the mentions
+   */
+  public static SentenceFeatureContext getCurrent(JCas jCas, Annotation... mentions) {
+    CasContexts casContexts = CAS_CONTEXTS.get();
+    SentenceFeatureContext context = casContexts.current;
+    if (context == null || !isDocument(casContexts, jCas)) {
+      return null;
+    }
+    for (Annotation mention : mentions) {
+      if (!context.covers(mention)) {
+        return null;
+      }
+    }
+    return context;
+  }
+
+  /**
+   * Stop using the current context when an annotator is done with the document.  The contexts are kept for the
+   * next annotator that selects them for the same document.
+   */
+  public static void deselect() {
+    CAS_CONTEXTS.get().current = null;
+  }
+
+  /**
+   * Drop all contexts held for this thread.
+   */
+  public static void clear() {
+    CAS_CONTEXTS.remove();
+  }
+
+  private static boolean isDocument(CasContexts casContexts, JCas jCas) {
+    return casContexts.jCas == jCas && casContexts.documentText == jCas.getDocumentText();
+  }
+
+  public Annotation getCovering() {
+    return covering;
+  }
+
+  public boolean covers(Annotation annotation) {
+    return annotation.getBegin() >= covering.getBegin() && annotation.getEnd() <= covering.getEnd();
+  }
+
+  /**
+   * @return the tokens of this context with the same begin and end bounds as
+   *         {@link JCasUtil#selectCovered(JCas, Class, int, int)}
+   */
+  public List<BaseToken> getTokensCovered(int begin, int end) {
+    int first = 0;
+    int last = tokens.length;
+    // the first token beginning at or after begin
+    while (first < last) {
+      int middle = (first + last) >>> 1;
+      if (tokens[middle].getBegin() < begin) {
+        first = middle + 1;
+      } else {
+        last = middle;
+      }
+    }
+    List<BaseToken> covered = new ArrayList<>();
+    for (int i = first; i < tokens.length && tokens[i].getBegin() <= end; i++) {
+      if (tokens[i].getEnd() <= end) {
+        covered.add(tokens[i]);
+      }
+    }
+    return covered;
+  }
+
+  /**
+   * Same as {@link DependencyParseUtils#findAnnotationHead(JCas, Annotation)}, computed once per mention
+   */
+  public ConllDependencyNode getAnnotationHead(Annotation annotation) {
+    if (mentionHeads.containsKey(annotation)) {
+      return mentionHeads.get(annotation);
+    }
+    ConllDependencyNode annotationHead = null;
+    for (ConllDependencyNode depNode : nodes) {
+      if (depNode.getBegin() < annotation.getBegin() || depNode.getEnd() > annotation.getEnd()) {
+        continue;
+      }
+      ConllDependencyNode head = depNode.getHead();
+      if (head == null || head.getEnd() <= annotation.getBegin() || head.getBegin() > annotation.getEnd()) {
+        annotationHead = depNode;
+        break;
+      }
+    }
+    mentionHeads.put(annotation, annotationHead);
+    return annotationHead;
+  }
+
+  /**
+   * @return the path between two dependency nodes of this context, computed once per pair of nodes,
+   *         or null if either node is not within the context
+   */
+  public DependencyPath getDependencyPath(ConllDependencyNode node1, ConllDependencyNode node2) {
+    Integer index1 = nodeIndices.get(node1);
+    Integer index2 = nodeIndices.get(node2);
+    if (index1 == null || index2 == null) {
+      return null;
+    }
+    Long key = spanKey(index1, index2);
+    DependencyPath path = paths.get(key);
+    if (path == null) {
+      path = new DependencyPath(node1, node2);
+      paths.put(key, path);
+    }
+    return path;
+  }
+
+  /**
+   * @param extractor
+   *          the extractor computing the value, so that differently configured extractors keep separate values
+   * @param name
+   *          name of the value, unique within the extractor
+   * @param mention
+   *          mention within this context
+   * @param function
+   *          computes the value when it is not yet known for the mention
+   * @return the value for the mention, computed once per mention
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T getMentionValue(Object extractor, String name, Annotation mention, MentionFunction<T> function)
+      throws AnalysisEngineProcessException {
+    Map<String, Map<Annotation, Object>> extractorValues = mentionValues.get(extractor);
+    if (extractorValues == null) {
+      extractorValues = new HashMap<>();
+      mentionValues.put(extractor, extractorValues);
+    }
+    Map<Annotation, Object> values = extractorValues.get(name);
+    if (values == null) {
+      values = new IdentityHashMap<>();
+      extractorValues.put(name, values);
+    }
+    if (values.containsKey(mention)) {
+      return (T) values.get(mention);
+    }
+    T value = function.apply(mention);
+    values.put(mention, value);
+    return value;
+  }
+
+  private static Long spanKey(int begin, int end) {
+    return ((long) begin << 32) | (end & 0xffffffffL);
+  }
+
+  /**
+   * Distances to the common ancestor and the path string between two dependency nodes
+   */
+  public static final class DependencyPath {
+    private final int distance1;
+    private final int distance2;
+    private final String path;
+
+    private DependencyPath(ConllDependencyNode node1, ConllDependencyNode node2) {
+      List<LinkedList<ConllDependencyNode>> ancestorPaths = DependencyParseUtils.getPathsToCommonAncestor(node1, node2);
+      distance1 = ancestorPaths.get(0).size();
+      distance2 = ancestorPaths.get(1).size();
+      path = DependencyParseUtils.pathToString(DependencyParseUtils.getPathBetweenNodes(node1, node2));
+    }
+
+    /**
+     * @return number of nodes on the path from the first node to the common ancestor
+     */
+    public int getDistance1() {
+      return distance1;
+    }
+
+    /**
+     * @return number of nodes on the path from the second node to the common ancestor
+     */
+    public int getDistance2() {
+      return distance2;
+    }
+
+    public String getPath() {
+      return path;
+    }
+  }
+
+}
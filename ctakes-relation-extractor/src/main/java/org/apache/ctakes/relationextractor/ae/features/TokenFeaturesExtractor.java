@@ -95,18 +95,25 @@ public class TokenFeaturesExtractor implements RelationFeaturesExtractor<Identif
   public List<Feature> extract(JCas jCas, IdentifiedAnnotation mention1, IdentifiedAnnotation mention2)
       throws AnalysisEngineProcessException {
     List<Feature> features = new ArrayList<Feature>();
-    Annotation arg1 = mention1;
-    Annotation arg2 = mention2;
-    
-    if(arg1 instanceof EventMention){
-      arg1 = getExpandedEvent(jCas, mention1);
-      if(arg1 == null) arg1 = mention1;
-    }
-    
-    if(arg2 instanceof EventMention){
-      arg2 = getExpandedEvent(jCas, mention2);
-      if(arg2 == null) arg2 = mention2;
+    SentenceFeatureContext context = SentenceFeatureContext.getCurrent(jCas, mention1, mention2);
+    if(context != null){
+      // mention features do not depend upon the other mention, so extract them once per mention
+      Annotation arg1 = context.getMentionValue(this, "expanded", mention1, m -> getExpandedMention(jCas, m));
+      Annotation arg2 = context.getMentionValue(this, "expanded", mention2, m -> getExpandedMention(jCas, m));
+      features.addAll(context.getMentionValue(this, "mention1", mention1,
+          m -> this.mention1FeaturesExtractor.extract(jCas, arg1)));
+      features.addAll(context.getMentionValue(this, "mention2", mention2,
+          m -> this.mention2FeaturesExtractor.extract(jCas, arg2)));
+      features.addAll(this.tokensBetween.extractBetween(jCas, arg1, arg2));
+      if (context.covers(arg1) && context.covers(arg2)) {
+        features.add(getTokenDistance(context, arg1, arg2));
+      } else {
+        features.addAll(this.nTokensBetween.extract(jCas, arg1, arg2));
+      }
+      return features;
     }
+    Annotation arg1 = getExpandedMention(jCas, mention1);
+    Annotation arg2 = getExpandedMention(jCas, mention2);
     
     features.addAll(this.mention1FeaturesExtractor.extract(jCas, arg1));
     features.addAll(this.mention2FeaturesExtractor.extract(jCas, arg2));
@@ -115,6 +122,26 @@ public class TokenFeaturesExtractor implements RelationFeaturesExtractor<Identif
     return features;
   }
 
+  /**
+   * Same as {@link #nTokensBetween}, counting the tokens of the context instead of selecting them from the cas
+   */
+  private static Feature getTokenDistance(SentenceFeatureContext context, Annotation arg1, Annotation arg2) {
+    Annotation first = arg1.getBegin() <= arg2.getBegin() ? arg1 : arg2;
+    Annotation second = first == arg1 ? arg2 : arg1;
+    int distance = second.getBegin() <= first.getEnd()
+        ? 0
+        : context.getTokensCovered(first.getEnd(), second.getBegin()).size();
+    return new Feature(Feature.createName(null, "Distance", BaseToken.class.getSimpleName()), distance);
+  }
+
+  private static Annotation getExpandedMention(JCas jCas, Annotation mention){
+    if(mention instanceof EventMention){
+      Annotation expanded = getExpandedEvent(jCas, (IdentifiedAnnotation) mention);
+      if(expanded != null) return expanded;
+    }
+    return mention;
+  }
+
   private static TreebankNode getExpandedEvent(JCas jCas, IdentifiedAnnotation mention){
     // since events are single words, we are at a terminal node:
     List<TerminalTreebankNode> terms = JCasUtil.selectCovered(TerminalTreebankNode.class, mention);
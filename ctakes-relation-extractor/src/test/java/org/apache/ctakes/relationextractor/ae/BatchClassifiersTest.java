@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.relationextractor.ae;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.ctakes.relationextractor.ae.baselines.Baseline1EntityMentionPairRelationExtractorAnnotator;
+import org.cleartk.ml.Classifier;
+import org.cleartk.ml.CleartkProcessingException;
+import org.cleartk.ml.DataWriter;
+import org.cleartk.ml.Feature;
+import org.cleartk.ml.Instance;
+import org.cleartk.ml.jar.Classifier_ImplBase;
+import org.cleartk.ml.jar.JarClassifierBuilder;
+import org.cleartk.ml.liblinear.LibLinearStringOutcomeClassifierBuilder;
+import org.cleartk.ml.liblinear.LibLinearStringOutcomeDataWriter;
+import org.cleartk.ml.libsvm.LibSvmStringOutcomeClassifierBuilder;
+import org.cleartk.ml.libsvm.LibSvmStringOutcomeDataWriter;
+import org.cleartk.ml.util.featurevector.FeatureVector;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BatchClassifiersTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Predicts the relation of a pair from its features, counting the calls it gets.
+   */
+  private static class PairClassifier extends Classifier_ImplBase<FeatureVector, String, Integer> {
+
+    int classifyCalls = 0;
+
+    PairClassifier() {
+      super(null, null);
+    }
+
+    @Override
+    public String classify(List<Feature> features) throws CleartkProcessingException {
+      this.classifyCalls++;
+      int sum = 0;
+      for (Feature feature : features) {
+        if (feature.getValue() instanceof Integer) {
+          sum += (Integer) feature.getValue();
+        }
+      }
+      return sum % 3 == 0 ? RelationExtractorAnnotator.NO_RELATION_CATEGORY : "location_of" + (sum % 2 == 0 ? "" : "-1");
+    }
+  }
+
+  /**
+   * Scores all instances in one call and must predict what the per-instance classifier predicts.
+   */
+  private static class BatchPairClassifier extends PairClassifier implements BatchClassifier<String> {
+
+    int classifyAllCalls = 0;
+
+    @Override
+    public List<String> classifyAll(List<List<Feature>> instances) throws CleartkProcessingException {
+      this.classifyAllCalls++;
+      PairClassifier scorer = new PairClassifier();
+      List<String> outcomes = new ArrayList<>(instances.size());
+      for (List<Feature> features : instances) {
+        outcomes.add(scorer.classify(features));
+      }
+      return outcomes;
+    }
+  }
+
+  private static List<List<Feature>> randomInstances(int count) {
+    Random random = new Random(42);
+    List<List<Feature>> instances = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      List<Feature> features = new ArrayList<>();
+      for (int j = random.nextInt(5); j >= 0; j--) {
+        features.add(new Feature("f" + j, random.nextInt(100)));
+      }
+      instances.add(features);
+    }
+    return instances;
+  }
+
+  @Test
+  public void testBatchMatchesPerInstance() throws Exception {
+    List<List<Feature>> instances = randomInstances(200);
+
+    PairClassifier perInstance = new PairClassifier();
+    List<String> expected = new ArrayList<>();
+    for (List<Feature> features : instances) {
+      expected.add(perInstance.classify(features));
+    }
+
+    BatchPairClassifier batch = new BatchPairClassifier();
+    assertTrue(BatchClassifiers.canClassifyAll(batch));
+    assertEquals(expected, BatchClassifiers.classifyAll(batch, instances));
+    assertEquals(1, batch.classifyAllCalls);
+    assertEquals(0, batch.classifyCalls);
+  }
+
+  @Test
+  public void testFallsBackToPerInstance() throws Exception {
+    List<List<Feature>> instances = randomInstances(50);
+    PairClassifier classifier = new PairClassifier();
+    assertFalse(BatchClassifiers.canClassifyAll(classifier));
+
+    List<String> outcomes = BatchClassifiers.classifyAll(classifier, instances);
+    assertEquals(instances.size(), classifier.classifyCalls);
+    List<String> expected = new ArrayList<>();
+    for (List<Feature> features : instances) {
+      expected.add(new PairClassifier().classify(features));
+    }
+    assertEquals(expected, outcomes);
+    assertEquals(Arrays.<String>asList(), BatchClassifiers.classifyAll(classifier, new ArrayList<List<Feature>>()));
+  }
+
+  /**
+   * @return instances with numeric and string features, some of which the training instances never had
+   */
+  private static List<List<Feature>> randomMixedInstances(long seed, int count, int featureCount) {
+    Random random = new Random(seed);
+    List<List<Feature>> instances = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      List<Feature> features = new ArrayList<>();
+      for (int j = 0; j < 4; j++) {
+        features.add(new Feature("f" + random.nextInt(featureCount), random.nextInt(5)));
+      }
+      features.add(new Feature("word", "w" + random.nextInt(featureCount)));
+      instances.add(features);
+    }
+    return instances;
+  }
+
+  /**
+   * Trains a model on instances labeled by the stub classifier and returns its training directory.
+   */
+  private File train(DataWriter<String> dataWriter, File directory, String... trainingArguments) throws Exception {
+    PairClassifier labeler = new PairClassifier();
+    for (List<Feature> features : randomMixedInstances(1, 300, 8)) {
+      dataWriter.write(new Instance<>(labeler.classify(features), features));
+    }
+    dataWriter.finish();
+    JarClassifierBuilder.trainAndPackage(directory, trainingArguments);
+    return directory;
+  }
+
+  private static List<String> classifyEach(Classifier<String> classifier, List<List<Feature>> instances)
+      throws CleartkProcessingException {
+    List<String> outcomes = new ArrayList<>(instances.size());
+    for (List<Feature> features : instances) {
+      outcomes.add(classifier.classify(features));
+    }
+    return outcomes;
+  }
+
+  private static void assertBatchMatchesModel(
+      Classifier<String> classifier,
+      Classifier<String> batchClassifier,
+      Class<?> batchClass) throws Exception {
+    assertEquals(batchClass, batchClassifier.getClass());
+    assertTrue(BatchClassifiers.canClassifyAll(batchClassifier));
+    List<List<Feature>> instances = randomMixedInstances(2, 200, 12);
+    List<String> expected = classifyEach(classifier, instances);
+    assertTrue(new HashSet<>(expected).size() > 1);
+    assertEquals(expected, classifyEach(batchClassifier, instances));
+    assertEquals(expected, BatchClassifiers.classifyAll(batchClassifier, instances));
+  }
+
+  @Test
+  public void testLibLinearBatchMatchesPerInstance() throws Exception {
+    File directory = folder.newFolder("liblinear");
+    train(new LibLinearStringOutcomeDataWriter(directory), directory);
+    Classifier<String> classifier =
+        new LibLinearStringOutcomeClassifierBuilder().loadClassifierFromTrainingDirectory(directory);
+    assertFalse(BatchClassifiers.canClassifyAll(classifier));
+    assertBatchMatchesModel(
+        classifier,
+        new LibLinearBatchClassifier.Builder().loadClassifierFromTrainingDirectory(directory),
+        LibLinearBatchClassifier.class);
+
+    BatchJarClassifierFactory factory = new BatchJarClassifierFactory();
+    factory.setClassifierJarPath(JarClassifierBuilder.getModelJarFile(directory).getPath());
+    assertBatchMatchesModel(classifier, factory.createClassifier(), LibLinearBatchClassifier.class);
+  }
+
+  @Test
+  public void testLibSvmBatchMatchesPerInstance() throws Exception {
+    File directory = folder.newFolder("libsvm");
+    train(new LibSvmStringOutcomeDataWriter(directory), directory, "-t", "0");
+    Classifier<String> classifier =
+        new LibSvmStringOutcomeClassifierBuilder().loadClassifierFromTrainingDirectory(directory);
+    assertFalse(BatchClassifiers.canClassifyAll(classifier));
+    assertBatchMatchesModel(
+        classifier,
+        new LibSvmBatchClassifier.Builder().loadClassifierFromTrainingDirectory(directory),
+        LibSvmBatchClassifier.class);
+
+    BatchJarClassifierFactory factory = new BatchJarClassifierFactory();
+    factory.setClassifierJarPath(JarClassifierBuilder.getModelJarFile(directory).getPath());
+    assertBatchMatchesModel(classifier, factory.createClassifier(), LibSvmBatchClassifier.class);
+  }
+
+  @Test
+  public void testClassifyOverrides() {
+    Class<?> base = RelationExtractorAnnotator.class;
+    assertFalse(BatchClassifiers.isOverridden(LocationOfRelationExtractorAnnotator.class, base, "classify", List.class));
+    assertTrue(BatchClassifiers.isOverridden(
+        Baseline1EntityMentionPairRelationExtractorAnnotator.class, base, "classify", List.class));
+    assertFalse(BatchClassifiers.isOverridden(
+        Baseline1EntityMentionPairRelationExtractorAnnotator.class, base, "classifyAll", List.class));
+    assertTrue(BatchClassifiers.isOverridden(
+        RelationExtractorAnnotatorsTest.RecordingLocationOfAnnotator.class, base, "classifyAll", List.class));
+  }
+
+}
@@ -22,8 +22,10 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 
 import org.apache.ctakes.typesystem.type.constants.CONST;
 import org.apache.ctakes.typesystem.type.relation.BinaryTextRelation;
@@ -32,6 +34,7 @@ import org.apache.ctakes.typesystem.type.relation.LocationOfTextRelation;
 import org.apache.ctakes.typesystem.type.syntax.BaseToken;
 import org.apache.ctakes.typesystem.type.textsem.AnatomicalSiteMention;
 import org.apache.ctakes.typesystem.type.textsem.DiseaseDisorderMention;
+import org.apache.ctakes.typesystem.type.textsem.IdentifiedAnnotation;
 import org.apache.ctakes.typesystem.type.textsem.Modifier;
 import org.apache.ctakes.typesystem.type.textspan.Sentence;
 import org.apache.uima.UIMAFramework;
@@ -39,11 +42,15 @@ import org.apache.uima.analysis_engine.AnalysisEngine;
 import org.apache.uima.analysis_engine.AnalysisEngineDescription;
 import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
 import org.apache.uima.fit.factory.AggregateBuilder;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
 import org.apache.uima.fit.testing.factory.TokenBuilder;
 import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.util.XMLInputSource;
 import org.apache.uima.util.XMLParser;
+import org.cleartk.ml.CleartkProcessingException;
+import org.cleartk.ml.Feature;
+import org.cleartk.ml.jar.GenericJarClassifierFactory;
 import org.junit.Test;
 
 public class RelationExtractorAnnotatorsTest {
@@ -112,6 +119,68 @@ public class RelationExtractorAnnotatorsTest {
     assertEquals(fibula, fractureFibula.getArg2().getArgument());
   }
 
+  /**
+   * Records the classifier that the location_of model was loaded as.
+   */
+  public static class RecordingLocationOfAnnotator extends LocationOfRelationExtractorAnnotator {
+
+    static Class<?> batchClassifierClass;
+
+    @Override
+    protected List<String> classifyAll(List<List<Feature>> featureLists) throws CleartkProcessingException {
+      batchClassifierClass = this.classifier.getClass();
+      return super.classifyAll(featureLists);
+    }
+  }
+
+  @Test
+  public void testBatchClassify() throws Exception {
+    String modelPath = "/org/apache/ctakes/relationextractor/models/location_of/model.jar";
+    List<String> expected = findLocations(AnalysisEngineFactory.createEngine(
+        LocationOfRelationExtractorAnnotator.class,
+        GenericJarClassifierFactory.PARAM_CLASSIFIER_JAR_PATH,
+        modelPath));
+    assertEquals(4, expected.size());
+
+    List<String> batched = findLocations(AnalysisEngineFactory.createEngine(
+        RecordingLocationOfAnnotator.class,
+        GenericJarClassifierFactory.PARAM_CLASSIFIER_JAR_PATH,
+        modelPath,
+        RelationExtractorAnnotator.PARAM_BATCH_CLASSIFY,
+        true));
+    assertEquals(LibLinearBatchClassifier.class, RecordingLocationOfAnnotator.batchClassifierClass);
+    assertEquals(expected, batched);
+  }
+
+  private static List<String> findLocations(AnalysisEngine engine) throws Exception {
+    JCas jCas = engine.newJCas();
+    TokenBuilder<BaseToken, Sentence> tokenBuilder =
+        new TokenBuilder<BaseToken, Sentence>(BaseToken.class, Sentence.class, "partOfSpeech", null);
+    tokenBuilder.buildTokens(
+        jCas,
+        "He had a slight fracture in the proximal right fibula and pain in his left knee.",
+        "He had a slight fracture in the proximal right fibula and pain in his left knee .",
+        "PRP VBD DT JJ NN IN DT JJ JJ NN CC NN IN PRP$ JJ NN .");
+    addMention(new DiseaseDisorderMention(jCas, 16, 24), CONST.NE_TYPE_ID_DISORDER);
+    addMention(new AnatomicalSiteMention(jCas, 32, 53), CONST.NE_TYPE_ID_ANATOMICAL_SITE);
+    addMention(new DiseaseDisorderMention(jCas, 58, 62), CONST.NE_TYPE_ID_DISORDER);
+    addMention(new AnatomicalSiteMention(jCas, 70, 79), CONST.NE_TYPE_ID_ANATOMICAL_SITE);
+    engine.process(jCas);
+    engine.collectionProcessComplete();
+
+    List<String> locations = new ArrayList<>();
+    for (BinaryTextRelation relation : JCasUtil.select(jCas, BinaryTextRelation.class)) {
+      locations.add(relation.getCategory() + "(" + relation.getArg1().getArgument().getCoveredText() + ", "
+          + relation.getArg2().getArgument().getCoveredText() + ")");
+    }
+    return locations;
+  }
+
+  private static void addMention(IdentifiedAnnotation mention, int typeId) {
+    mention.setTypeID(typeId);
+    mention.addToIndexes();
+  }
+
   private static AnalysisEngineDescription findDescription(
       Class<? extends JCasAnnotator_ImplBase> cls) throws Exception {
     File directory = new File("desc/analysis_engine");
@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.relationextractor.ae;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.ctakes.relationextractor.ae.features.DependencyPathFeaturesExtractor;
+import org.apache.ctakes.relationextractor.ae.features.DependencyTreeFeaturesExtractor;
+import org.apache.ctakes.relationextractor.ae.features.PartOfSpeechFeaturesExtractor;
+import org.apache.ctakes.relationextractor.ae.features.RelationFeaturesExtractor;
+import org.apache.ctakes.relationextractor.ae.features.SentenceFeatureContext;
+import org.apache.ctakes.relationextractor.ae.features.TokenFeaturesExtractor;
+import org.apache.ctakes.typesystem.type.syntax.BaseToken;
+import org.apache.ctakes.typesystem.type.syntax.ConllDependencyNode;
+import org.apache.ctakes.typesystem.type.syntax.WordToken;
+import org.apache.ctakes.typesystem.type.textspan.Sentence;
+import org.apache.ctakes.typesystem.type.textsem.EntityMention;
+import org.apache.ctakes.typesystem.type.textsem.EventMention;
+import org.apache.ctakes.typesystem.type.textsem.IdentifiedAnnotation;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.cleartk.ml.Feature;
+import org.junit.After;
+import org.junit.Test;
+
+public class SentenceFeatureContextTest {
+
+  private static final String[] WORDS = { "The", "patient", "took", "aspirin", "for", "severe", "chest", "pain", "." };
+
+  private static final String[] TAGS = { "DT", "NN", "VBD", "NN", "IN", "JJ", "NN", "NN", "." };
+
+  // index of the head of each word, -1 for the root of the sentence
+  private static final int[] HEADS = { 1, 2, -1, 2, 2, 7, 7, 4, 2 };
+
+  private static final String[] RELATIONS = { "det", "nsubj", "root", "dobj", "prep", "amod", "nn", "pobj", "punct" };
+
+  private final List<IdentifiedAnnotation> mentions = new ArrayList<>();
+
+  @After
+  public void clearContexts() {
+    SentenceFeatureContext.clear();
+  }
+
+  private JCas createSentence() throws Exception {
+    JCas jCas = JCasFactory.createJCas();
+    fillSentence(jCas);
+    return jCas;
+  }
+
+  private void fillSentence(JCas jCas) {
+    StringBuilder text = new StringBuilder();
+    int[] begins = new int[WORDS.length];
+    for (int i = 0; i < WORDS.length; i++) {
+      if (i > 0) {
+        text.append(' ');
+      }
+      begins[i] = text.length();
+      text.append(WORDS[i]);
+    }
+    jCas.setDocumentText(text.toString());
+    new Sentence(jCas, 0, text.length()).addToIndexes();
+
+    ConllDependencyNode[] nodes = new ConllDependencyNode[WORDS.length];
+    for (int i = 0; i < WORDS.length; i++) {
+      int end = begins[i] + WORDS[i].length();
+      WordToken token = new WordToken(jCas, begins[i], end);
+      token.setPartOfSpeech(TAGS[i]);
+      token.addToIndexes();
+      nodes[i] = new ConllDependencyNode(jCas, begins[i], end);
+      nodes[i].setId(i + 1);
+      nodes[i].setForm(WORDS[i]);
+      nodes[i].setPostag(TAGS[i]);
+      nodes[i].setDeprel(RELATIONS[i]);
+    }
+    for (int i = 0; i < WORDS.length; i++) {
+      if (HEADS[i] >= 0) {
+        nodes[i].setHead(nodes[HEADS[i]]);
+      }
+      nodes[i].addToIndexes();
+    }
+
+    mentions.clear();
+    addMention(new EntityMention(jCas, begins[1], begins[1] + WORDS[1].length()));
+    addMention(new EventMention(jCas, begins[2], begins[2] + WORDS[2].length()));
+    addMention(new EntityMention(jCas, begins[3], begins[3] + WORDS[3].length()));
+    addMention(new EntityMention(jCas, begins[6], begins[7] + WORDS[7].length()));
+    addMention(new EntityMention(jCas, begins[5], begins[7] + WORDS[7].length()));
+  }
+
+  private void addMention(IdentifiedAnnotation mention) {
+    mention.addToIndexes();
+    mentions.add(mention);
+  }
+
+  private List<List<Feature>> extractAllPairs(JCas jCas, List<RelationFeaturesExtractor<IdentifiedAnnotation, IdentifiedAnnotation>> extractors)
+      throws Exception {
+    List<List<Feature>> pairFeatures = new ArrayList<>();
+    for (IdentifiedAnnotation arg1 : mentions) {
+      for (IdentifiedAnnotation arg2 : mentions) {
+        if (arg1 == arg2) {
+          continue;
+        }
+        List<Feature> features = new ArrayList<>();
+        for (RelationFeaturesExtractor<IdentifiedAnnotation, IdentifiedAnnotation> extractor : extractors) {
+          features.addAll(extractor.extract(jCas, arg1, arg2));
+        }
+        pairFeatures.add(features);
+      }
+    }
+    return pairFeatures;
+  }
+
+  private static List<RelationFeaturesExtractor<IdentifiedAnnotation, IdentifiedAnnotation>> createExtractors() {
+    return Arrays.<RelationFeaturesExtractor<IdentifiedAnnotation, IdentifiedAnnotation>>asList(
+        new TokenFeaturesExtractor(),
+        new PartOfSpeechFeaturesExtractor(),
+        new DependencyTreeFeaturesExtractor(),
+        new DependencyPathFeaturesExtractor());
+  }
+
+  @Test
+  public void testSameFeaturesWithContext() throws Exception {
+    JCas jCas = createSentence();
+    List<RelationFeaturesExtractor<IdentifiedAnnotation, IdentifiedAnnotation>> extractors = createExtractors();
+
+    assertNull(SentenceFeatureContext.getCurrent(jCas));
+    List<List<Feature>> expected = extractAllPairs(jCas, extractors);
+
+    Sentence sentence = JCasUtil.selectSingle(jCas, Sentence.class);
+    SentenceFeatureContext context = SentenceFeatureContext.select(jCas, sentence);
+    assertSame(context, SentenceFeatureContext.getCurrent(jCas, mentions.get(0), mentions.get(1)));
+    assertEquals(expected, extractAllPairs(jCas, extractors));
+    // a second pass uses the values kept by the context
+    assertEquals(expected, extractAllPairs(jCas, extractors));
+    // new extractors do not see the values of the old ones
+    assertEquals(expected, extractAllPairs(jCas, createExtractors()));
+    assertFalse(expected.get(0).isEmpty());
+
+    // the next annotator on the document gets the same context
+    SentenceFeatureContext.deselect();
+    assertNull(SentenceFeatureContext.getCurrent(jCas));
+    assertSame(context, SentenceFeatureContext.select(jCas, sentence));
+    assertEquals(expected, extractAllPairs(jCas, createExtractors()));
+
+    SentenceFeatureContext.clear();
+    assertNull(SentenceFeatureContext.getCurrent(jCas));
+  }
+
+  @Test
+  public void testContextsDoNotOutliveCas() throws Exception {
+    JCas jCas = createSentence();
+    Sentence sentence = JCasUtil.selectSingle(jCas, Sentence.class);
+    assertNotNull(SentenceFeatureContext.select(jCas, sentence));
+
+    JCas next = createSentence();
+    assertNull(SentenceFeatureContext.getCurrent(next));
+    List<List<Feature>> expected = extractAllPairs(next, createExtractors());
+    Sentence nextSentence = JCasUtil.selectSingle(next, Sentence.class);
+    SentenceFeatureContext.select(next, nextSentence);
+    assertEquals(expected, extractAllPairs(next, createExtractors()));
+  }
+
+  @Test
+  public void testContextsDoNotOutliveDocumentOfReusedCas() throws Exception {
+    JCas jCas = createSentence();
+    List<List<Feature>> expected = extractAllPairs(jCas, createExtractors());
+    SentenceFeatureContext context = SentenceFeatureContext.select(jCas, JCasUtil.selectSingle(jCas, Sentence.class));
+
+    jCas.reset();
+    fillSentence(jCas);
+    assertNull(SentenceFeatureContext.getCurrent(jCas));
+    assertNotSame(context, SentenceFeatureContext.select(jCas, JCasUtil.selectSingle(jCas, Sentence.class)));
+    assertEquals(expected, extractAllPairs(jCas, createExtractors()));
+  }
+
+  @Test
+  public void testTokensAndPathsComputedOnce() throws Exception {
+    JCas jCas = createSentence();
+    SentenceFeatureContext context = SentenceFeatureContext.select(jCas, JCasUtil.selectSingle(jCas, Sentence.class));
+    String text = jCas.getDocumentText();
+    for (int begin = 0; begin <= text.length(); begin++) {
+      for (int end = begin; end <= text.length(); end++) {
+        assertEquals(JCasUtil.selectCovered(jCas, BaseToken.class, begin, end), context.getTokensCovered(begin, end));
+      }
+    }
+
+    List<ConllDependencyNode> nodes = new ArrayList<>(JCasUtil.select(jCas, ConllDependencyNode.class));
+    SentenceFeatureContext.DependencyPath path = context.getDependencyPath(nodes.get(0), nodes.get(7));
+    assertNotNull(path);
+    // a pair of nodes shared by many candidate pairs reuses the path computed for the first of them
+    extractAllPairs(jCas, createExtractors());
+    assertSame(path, context.getDependencyPath(nodes.get(0), nodes.get(7)));
+    for (IdentifiedAnnotation mention : mentions) {
+      ConllDependencyNode head = context.getAnnotationHead(mention);
+      assertSame(head, context.getAnnotationHead(mention));
+      assertSame(context.getDependencyPath(head, nodes.get(2)), context.getDependencyPath(head, nodes.get(2)));
+    }
+  }
+
+  @Test
+  public void testMentionValuesKeptPerExtractor() throws Exception {
+    JCas jCas = createSentence();
+    Sentence sentence = JCasUtil.selectSingle(jCas, Sentence.class);
+    SentenceFeatureContext context = SentenceFeatureContext.select(jCas, sentence);
+    Object extractor1 = new Object();
+    Object extractor2 = new Object();
+    IdentifiedAnnotation mention = mentions.get(0);
+    assertEquals("first", context.getMentionValue(extractor1, "name", mention, m -> "first"));
+    assertEquals("second", context.getMentionValue(extractor2, "name", mention, m -> "second"));
+    assertEquals("first", context.getMentionValue(extractor1, "name", mention, m -> "changed"));
+  }
+
+}
@@ -30,6 +30,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 
+import org.apache.ctakes.relationextractor.ae.BatchClassifier;
+import org.apache.ctakes.relationextractor.ae.BatchClassifiers;
+import org.apache.ctakes.relationextractor.ae.RelationExtractorAnnotator;
 import org.apache.ctakes.relationextractor.ae.features.DependencyPathFeaturesExtractor;
 import org.apache.ctakes.relationextractor.ae.features.DependencyTreeFeaturesExtractor;
 import org.apache.ctakes.relationextractor.ae.features.NamedEntityFeaturesExtractor;
@@ -82,6 +85,18 @@ public abstract class TemporalRelationExtractorAnnotator extends CleartkAnnotato
 			description = "probability that a negative example should be retained for training")
 	protected double probabilityOfKeepingANegativeExample = 1.0;
 
+	public static final String PARAM_BATCH_CLASSIFY = RelationExtractorAnnotator.PARAM_BATCH_CLASSIFY;
+
+	@ConfigurationParameter(
+			name = PARAM_BATCH_CLASSIFY,
+			mandatory = false,
+			description = "classify all candidate pairs of a document together with classifyAll(List); liblinear and"
+					+ " libsvm models are then loaded as BatchClassifiers. Pairs are still classified one at a time"
+					+ " when the classifier cannot batch, or when a subclass overrides classify(List) but not classifyAll(List)")
+	protected boolean batchClassify = false;
+
+	private boolean classifyBatches = false;
+
 	protected Random coin = new Random(0);
 
 	private List<RelationFeaturesExtractor<IdentifiedAnnotation,IdentifiedAnnotation>> featureExtractors = this.getFeatureExtractors();
@@ -161,7 +176,17 @@ public abstract class TemporalRelationExtractorAnnotator extends CleartkAnnotato
 	@Override
 	public void initialize(UimaContext context) throws ResourceInitializationException {
 		allowClassifierModelOnClasspath(context);
+		if (Boolean.TRUE.equals(context.getConfigParameterValue(PARAM_BATCH_CLASSIFY))) {
+			BatchClassifiers.useBatchClassifierFactory(context);
+		}
 		super.initialize(context);
+		// batching would bypass a subclass's own classify(List) unless it also says how to classify a batch
+		Class<?> type = this.getClass();
+		Class<?> base = TemporalRelationExtractorAnnotator.class;
+		this.classifyBatches = this.batchClassify && !this.isTraining()
+				&& (BatchClassifiers.isOverridden(type, base, "classifyAll", List.class)
+				|| (BatchClassifiers.canClassifyAll(this.classifier)
+				&& !BatchClassifiers.isOverridden(type, base, "classify", List.class)));
 		//		minmaxExtractor = createMinMaxNormalizationExtractor();
 		/**for normalization
 		if (this.minmaxExtractorURI != null) {
@@ -200,6 +225,10 @@ public abstract class TemporalRelationExtractorAnnotator extends CleartkAnnotato
 			}
 		}
 
+		// candidate pairs and their features, kept until the whole document can be classified
+		List<IdentifiedAnnotationPair> batchPairs = new ArrayList<>();
+		List<List<Feature>> batchFeatures = new ArrayList<>();
+
 		// walk through each sentence in the text
 		for (Annotation coveringAnnotation : JCasUtil.select(jCas, coveringClass)) {
 
@@ -262,6 +291,11 @@ public abstract class TemporalRelationExtractorAnnotator extends CleartkAnnotato
 					this.dataWriter.write(new Instance<>(category, features));
 				}
 
+				else if (this.classifyBatches) {
+					batchPairs.add(pair);
+					batchFeatures.add(features);
+				}
+
 				// during classification feed the features to the classifier and create
 				// annotations
 				else {
@@ -299,23 +333,39 @@ public abstract class TemporalRelationExtractorAnnotator extends CleartkAnnotato
 						}
 					}*/
 
-					// add a relation annotation if a true relation was predicted
-					if (predictedCategory != null && !predictedCategory.equals(NO_RELATION_CATEGORY)) {
-
-						// if we predict an inverted relation, reverse the order of the
-						// arguments
-						if (predictedCategory.endsWith("-1")) {
-							predictedCategory = predictedCategory.substring(0, predictedCategory.length() - 2);
-							IdentifiedAnnotation temp = arg1;
-							arg1 = arg2;
-							arg2 = temp;
-						}
-
-						createRelation(jCas, arg1, arg2, predictedCategory, 0.0);
-					}
+					addPredictedRelation(jCas, arg1, arg2, predictedCategory);
 				}
 			} // end pair in pairs
 		} // end for(Sentence)
+
+		if (!batchPairs.isEmpty()) {
+			List<String> predictedCategories = this.classifyAll(batchFeatures);
+			for (int i = 0; i < batchPairs.size(); i++) {
+				IdentifiedAnnotationPair pair = batchPairs.get(i);
+				addPredictedRelation(jCas, pair.getArg1(), pair.getArg2(), predictedCategories.get(i));
+			}
+		}
+	}
+
+	private void addPredictedRelation(
+			JCas jCas,
+			IdentifiedAnnotation arg1,
+			IdentifiedAnnotation arg2,
+			String predictedCategory) {
+		// add a relation annotation if a true relation was predicted
+		if (predictedCategory != null && !predictedCategory.equals(NO_RELATION_CATEGORY)) {
+
+			// if we predict an inverted relation, reverse the order of the
+			// arguments
+			if (predictedCategory.endsWith("-1")) {
+				predictedCategory = predictedCategory.substring(0, predictedCategory.length() - 2);
+				IdentifiedAnnotation temp = arg1;
+				arg1 = arg2;
+				arg2 = temp;
+			}
+
+			createRelation(jCas, arg1, arg2, predictedCategory, 0.0);
+		}
 	}
 
 	/**
@@ -354,6 +404,21 @@ public abstract class TemporalRelationExtractorAnnotator extends CleartkAnnotato
 		return this.classifier.classify(features);
 	}
 
+	/**
+	 * Predict the outcomes of all candidate pairs of a document when
+	 * {@link #PARAM_BATCH_CLASSIFY} is set. By default, this delegates to the
+	 * <code>classifier</code>'s {@link BatchClassifier#classifyAll(List)}.
+	 * Subclasses that override {@link #classify(List)} are only given batches
+	 * if they override this method too.
+	 * 
+	 * @param featureLists
+	 *          The features of each pair, in document order.
+	 * @return The predicted outcome (label) of each pair.
+	 */
+	protected List<String> classifyAll(List<List<Feature>> featureLists) throws CleartkProcessingException {
+		return BatchClassifiers.classifyAll(this.classifier, featureLists);
+	}
+
 	/**
 	 * Create a UIMA relation type based on arguments and the relation label. This
 	 * allows subclasses to create/define their own types: e.g. coreference can
@@ -96,6 +96,30 @@ Evaluation_ImplBase<AnnotationStatistics<String>> {
 		this(baseDirectory,rawTextDirectory, xmlDirectory, xmlFormat, subcorpus, xmiDirectory, null, annotationClass);
 	}
 
+	/**
+	 * Prints the statistics of each fold and of all the folds together, or the single statistics of a test
+	 */
+	protected static void printStatistics(List<AnnotationStatistics<String>> stats) {
+		if (stats.size() > 1) {
+			for (int fold = 0; fold < stats.size(); ++fold) {
+				System.err.printf("===== fold-%d =====\n", fold);
+				System.err.println(stats.get(fold));
+			}
+			System.err.println("===== all folds =====");
+			System.err.println(AnnotationStatistics.addAll(stats));
+		} else {
+			System.err.println(stats.get(0));
+		}
+	}
+
+	/**
+	 * Span evaluations keep their state in the evaluation and write only to the given directories
+	 */
+	@Override
+	protected boolean isThreadSafe() {
+		return true;
+	}
+
 	protected abstract AnalysisEngineDescription getDataWriterDescription(File directory)
 			throws ResourceInitializationException;
 
@@ -34,7 +34,6 @@ import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.tcas.Annotation;
 import org.apache.uima.resource.ResourceInitializationException;
-import org.cleartk.eval.AnnotationStatistics;
 import org.cleartk.opennlp.tools.PosTaggerAnnotator;
 import org.cleartk.opennlp.tools.SentenceAnnotator;
 import org.cleartk.snowball.DefaultSnowballStemmer;
@@ -47,7 +46,7 @@ import com.lexicalscope.jewel.cli.CliFactory;
 public class EvaluationOfClearTKTimeSpans extends EvaluationOfAnnotationSpans_ImplBase {
  
   public static void main(String[] args) throws Exception {
-    Options options = CliFactory.parseArguments(Options.class, args);
+    ParallelOptions options = CliFactory.parseArguments(ParallelOptions.class, args);
     List<Integer> patientSets = options.getPatients().getList();
     List<Integer> trainItems = getTrainItems(options);
     List<Integer> testItems = getTestItems(options);
@@ -61,8 +60,7 @@ public class EvaluationOfClearTKTimeSpans extends EvaluationOfAnnotationSpans_Im
         options.getXMIDirectory());
     evaluation.prepareXMIsFor(patientSets);
     evaluation.setLogging(Level.FINE, new File("target/eval/cleartk-time-errors.log"));
-    AnnotationStatistics<String> stats = evaluation.trainAndTest(trainItems, testItems);
-    System.err.println(stats);
+    printStatistics(evaluation.trainAndTest(options, trainItems, testItems));
   }
 
   public EvaluationOfClearTKTimeSpans(
@@ -32,7 +32,6 @@ import org.apache.uima.analysis_engine.AnalysisEngineDescription;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.tcas.Annotation;
 import org.apache.uima.resource.ResourceInitializationException;
-import org.cleartk.eval.AnnotationStatistics;
 import org.cleartk.ml.Instance;
 import org.cleartk.ml.feature.transform.InstanceDataWriter;
 import org.cleartk.ml.feature.transform.InstanceStream;
@@ -44,7 +43,7 @@ import com.lexicalscope.jewel.cli.Option;
 
 public class EvaluationOfEventSpans extends EvaluationOfAnnotationSpans_ImplBase {
 
-  static interface Options extends Evaluation_ImplBase.Options {
+  static interface Options extends Evaluation_ImplBase.ParallelOptions {
 
     @Option(longName = "downratio", defaultValue = "1")
     public float getProbabilityOfKeepingANegativeExample();
@@ -94,8 +93,7 @@ public class EvaluationOfEventSpans extends EvaluationOfAnnotationSpans_ImplBase
     evaluation.prepareXMIsFor(patientSets);
     evaluation.setLogging(Level.FINE, new File("target/eval/ctakes-event-errors.log"));
     if(options.getI2B2Output()!=null) evaluation.setI2B2Output(options.getI2B2Output() + "/event-spans");
-    AnnotationStatistics<String> stats = evaluation.trainAndTest(allTraining, allTest);
-    System.err.println(stats);
+    printStatistics(evaluation.trainAndTest(options, allTraining, allTest));
   }
 
   private float probabilityOfKeepingANegativeExample;
@@ -21,8 +21,11 @@ package org.apache.ctakes.temporal.eval;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.logging.Level;
 
 import org.apache.ctakes.temporal.ae.BackwardsTimeAnnotator;
@@ -63,7 +66,7 @@ import com.lexicalscope.jewel.cli.Option;
 
 public class EvaluationOfTimeSpans extends EvaluationOfAnnotationSpans_ImplBase {
 
-	static interface Options extends Evaluation_ImplBase.Options {
+	static interface Options extends Evaluation_ImplBase.ParallelOptions {
 
 	  @Option(longName = "featureSelectionThreshold", defaultValue = "1")
 		public float getFeatureSelectionThreshold();
@@ -137,11 +140,21 @@ public class EvaluationOfTimeSpans extends EvaluationOfAnnotationSpans_ImplBase
 		annotatorTrainingArguments.put(ConstituencyBasedTimeAnnotator.class, new String[]{"-c", "0.3"});
 		annotatorTrainingArguments.put(CRFTimeAnnotator.class, new String[]{"-p", "c2=" + "0.3"});
 
-		// run one evaluation per annotator class
-		final Map<Class<?>, AnnotationStatistics<?>> annotatorStats = Maps.newHashMap();
+		// run one evaluation per annotator class, each in its own directory when several run at once
+		final int threads = options.getThreads();
+		final int folds = options.getFolds();
+		// several annotators already share the threads, so the folds of each one then run in turn
+		final int foldThreads = annotatorClasses.size() > 1 ? 1 : threads;
+		final List<Integer> runTrainItems = allTrain;
+		final List<Integer> runTestItems = allTest;
+		Map<String, Callable<AnnotationStatistics<String>>> runs = new LinkedHashMap<>();
 		for (Class<? extends JCasAnnotator_ImplBase> annotatorClass : annotatorClasses) {
-			EvaluationOfTimeSpans evaluation = new EvaluationOfTimeSpans(
-					new File("target/eval/time-spans"),
+			File baseDirectory = new File("target/eval/time-spans");
+			if (threads > 1 && annotatorClasses.size() > 1) {
+				baseDirectory = new File(baseDirectory, annotatorClass.getSimpleName());
+			}
+			final EvaluationOfTimeSpans evaluation = new EvaluationOfTimeSpans(
+					baseDirectory,
 					options.getRawTextDirectory(),
 					options.getXMLDirectory(),
 					options.getXMLFormat(),
@@ -159,8 +172,17 @@ public class EvaluationOfTimeSpans extends EvaluationOfAnnotationSpans_ImplBase
 			if(options.getI2B2Output()!=null) evaluation.setI2B2Output(options.getI2B2Output() + "/" + annotatorClass.getSimpleName());
 			String name = String.format("%s.errors", annotatorClass.getSimpleName());
 			evaluation.setLogging(Level.FINE, new File("target/eval", name));
-			AnnotationStatistics<String> stats = evaluation.trainAndTest(allTrain, allTest);
-			annotatorStats.put(annotatorClass, stats);
+			runs.put(annotatorClass.getSimpleName(), () -> {
+				List<AnnotationStatistics<String>> stats = folds > 1
+						? evaluation.crossValidation(runTrainItems, folds, foldThreads)
+						: Collections.singletonList(evaluation.trainAndTest(runTrainItems, runTestItems));
+				return stats.size() > 1 ? AnnotationStatistics.addAll(stats) : stats.get(0);
+			});
+		}
+		List<AnnotationStatistics<String>> results = runInParallel(runs, threads);
+		final Map<Class<?>, AnnotationStatistics<?>> annotatorStats = Maps.newHashMap();
+		for (int i = 0; i < annotatorClasses.size(); ++i) {
+			annotatorStats.put(annotatorClasses.get(i), results.get(i));
 		}
 
 		// allow ordering of models by F1
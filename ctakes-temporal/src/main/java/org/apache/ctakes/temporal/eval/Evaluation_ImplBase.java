@@ -35,9 +35,15 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -138,9 +144,9 @@ org.cleartk.eval.Evaluation_ImplBase<Integer, STATISTICS_TYPE> {
 
 	private static final String LOOKUP_PATH = "/org/apache/ctakes/temporal/badEEContainNotes.txt";
 
-	private static boolean isTraining;
+	private boolean isTraining;
 
-	public static HashSet<String> badNotes;
+	protected final Set<String> badNotes;
 
 	public static final String GOLD_VIEW_NAME = "GoldView";
 
@@ -224,6 +230,25 @@ org.cleartk.eval.Evaluation_ImplBase<Integer, STATISTICS_TYPE> {
 		public boolean getSkipDataWriting();
 	}
 
+	/**
+	 * Options of the evaluations that can cross validate and run their folds on several threads,
+	 * see {@link Evaluation_ImplBase#trainAndTest(ParallelOptions, List, List)}
+	 */
+	public static interface ParallelOptions extends Options {
+
+		@Option(
+				longName = "folds",
+				defaultValue = "0",
+				description = "cross validate the training items with this many folds" )
+		public int getFolds();
+
+		@Option(
+				longName = "threads",
+				defaultValue = "1",
+				description = "number of folds or models run at the same time" )
+		public int getThreads();
+	}
+
 	public static List<Integer> getTrainItems( Options options ) {
 		List<Integer> patientSets = options.getPatients().getList();
 		List<Integer> trainItems = THYMEData.getPatientSets( patientSets, options.getTrainRemainders().getList() );
@@ -286,12 +311,13 @@ org.cleartk.eval.Evaluation_ImplBase<Integer, STATISTICS_TYPE> {
 		this.treebankDirectory = treebankDirectory;
 
 		this.isTraining = true;
-		this.badNotes = new HashSet<>();
+		Set<String> notes = new HashSet<>();
+		this.badNotes = Collections.unmodifiableSet( notes );
 		URL url = TimeWordsExtractor.class.getResource( LOOKUP_PATH );
 		try ( BufferedReader br = new BufferedReader( new FileReader( url.getFile() ) ) ) {
 			String line;
 			while ( (line = br.readLine()) != null ) {
-				badNotes.add( line.trim() );
+				notes.add( line.trim() );
 			}
 		} catch ( FileNotFoundException e ) {
 			// TODO Auto-generated catch block
@@ -322,6 +348,116 @@ org.cleartk.eval.Evaluation_ImplBase<Integer, STATISTICS_TYPE> {
 		this.xmiExists = true;
 	}
 
+	/**
+	 * @return true if {@link #train(CollectionReader, File)} and {@link #test(CollectionReader, File)} keep all
+	 * their state in this evaluation and the given directory, so that folds can run on several threads at once.
+	 * Evaluations that count or collect results in static fields must return false.
+	 */
+	protected boolean isThreadSafe() {
+		return false;
+	}
+
+	/**
+	 * With --folds cross validates the training items, otherwise trains on the training items and tests on
+	 * the test items
+	 *
+	 * @return the statistics of each fold in fold order, or the single statistics of the test items
+	 */
+	public List<STATISTICS_TYPE> trainAndTest( ParallelOptions options, List<Integer> trainItems, List<Integer> testItems )
+			throws Exception {
+		if ( options.getFolds() > 1 ) {
+			return this.crossValidation( trainItems, options.getFolds(), options.getThreads() );
+		}
+		return Collections.singletonList( this.trainAndTest( trainItems, testItems ) );
+	}
+
+	/**
+	 * Runs the folds of a cross validation at the same time on the given number of threads. Like
+	 * {@link #crossValidation(List, int)}, fold N trains on the items at positions not congruent to N and tests
+	 * on the others, with its models in the fold-N directory. The XMIs are prepared first, so the folds only
+	 * read them, and the wall time of each fold is logged.
+	 *
+	 * @return the statistics of each fold, in fold order
+	 * @throws IllegalArgumentException if threads is more than 1 and the evaluation is not {@link #isThreadSafe()}
+	 */
+	public List<STATISTICS_TYPE> crossValidation( List<Integer> items, int numFolds, int threads ) throws Exception {
+		checkThreads( threads, this.isThreadSafe(), this.getClass() );
+		this.prepareXMIsFor( items );
+		Map<String, Callable<STATISTICS_TYPE>> folds = new LinkedHashMap<>();
+		for ( int fold = 0; fold < numFolds; ++fold ) {
+			final File subDirectory = new File( this.baseDirectory, "fold-" + fold );
+			subDirectory.mkdirs();
+			final List<Integer> trainItems = new ArrayList<>();
+			final List<Integer> testItems = new ArrayList<>();
+			for ( int i = 0; i < items.size(); ++i ) {
+				if ( i % numFolds == fold ) {
+					testItems.add( items.get( i ) );
+				} else {
+					trainItems.add( items.get( i ) );
+				}
+			}
+			folds.put( "fold-" + fold, () -> {
+				this.train( this.getCollectionReader( trainItems ), subDirectory );
+				return this.test( this.getCollectionReader( testItems ), subDirectory );
+			} );
+		}
+		return runInParallel( folds, threads );
+	}
+
+	/**
+	 * @throws IllegalArgumentException if threads is more than 1 and the evaluation is not thread safe
+	 */
+	protected static void checkThreads( int threads, boolean threadSafe, Class<?> evaluationClass ) {
+		if ( threads > 1 && !threadSafe ) {
+			throw new IllegalArgumentException( evaluationClass.getSimpleName()
+					+ " shares state between its runs and cannot run them on " + threads + " threads" );
+		}
+	}
+
+	/**
+	 * Runs independent evaluation tasks, e.g. cross validation folds or the points of a parameter grid
+	 * each with its own evaluation and base directory, at the same time and logs the wall time of each task.
+	 * Callers must only pass tasks of thread safe evaluations, see {@link #isThreadSafe()}.
+	 *
+	 * @param tasks   tasks by name, the names are used in the log
+	 * @param threads number of tasks run at the same time, e.g. the number of available processors
+	 * @return the results of the tasks, in the order of the map
+	 * @throws Exception the exception of the first failed task, the tasks not started yet are then skipped
+	 */
+	public static <T> List<T> runInParallel( Map<String, ? extends Callable<T>> tasks, int threads )
+			throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool( Math.max( 1, Math.min( threads, tasks.size() ) ) );
+		try {
+			List<Future<T>> futures = new ArrayList<>( tasks.size() );
+			for ( Map.Entry<String, ? extends Callable<T>> task : tasks.entrySet() ) {
+				final String name = task.getKey();
+				final Callable<T> callable = task.getValue();
+				futures.add( executor.submit( () -> {
+					long start = System.nanoTime();
+					LOGGER.info( "Starting " + name );
+					T result = callable.call();
+					LOGGER.info( String.format( "Finished %s in %.1f seconds", name, (System.nanoTime() - start) / 1e9 ) );
+					return result;
+				} ) );
+			}
+			List<T> results = new ArrayList<>( futures.size() );
+			for ( Future<T> future : futures ) {
+				try {
+					results.add( future.get() );
+				} catch ( ExecutionException e ) {
+					executor.shutdownNow();
+					if ( e.getCause() instanceof Exception ) {
+						throw (Exception)e.getCause();
+					}
+					throw e;
+				}
+			}
+			return results;
+		} finally {
+			executor.shutdown();
+		}
+	}
+
 	private List<File> getFilesFor( List<Integer> patientSets ) throws FileNotFoundException {
 		List<File> files = new ArrayList<>();
 		if ( this.xmlFormat == XMLFormat.Anafora ) {
@@ -809,16 +945,32 @@ org.cleartk.eval.Evaluation_ImplBase<Integer, STATISTICS_TYPE> {
 		@ConfigurationParameter( name = PARAM_XMI_DIRECTORY, mandatory = true )
 		private File xmiDirectory;
 
+		public static final String PARAM_USE_CACHE = "UseCache";
+
+		@ConfigurationParameter(
+				name = PARAM_USE_CACHE,
+				mandatory = false,
+				description = "Keep the CASes read in a binary cache shared by all the XMI readers of the JVM",
+				defaultValue = "true" )
+		private boolean useCache;
+
 		@Override
 		public void process( JCas jCas ) throws AnalysisEngineProcessException {
 			File xmiFile = getXMIFile( this.xmiDirectory, jCas );
+			PreprocessedCasCache cache = PreprocessedCasCache.getInstance();
 			try {
+				if ( this.useCache && cache.load( xmiFile, jCas.getCas() ) ) {
+					return;
+				}
 				FileInputStream inputStream = new FileInputStream( xmiFile );
 				try {
 					XmiCasDeserializer.deserialize( inputStream, jCas.getCas() );
 				} finally {
 					inputStream.close();
 				}
+				if ( this.useCache ) {
+					cache.store( xmiFile, jCas.getCas() );
+				}
 			} catch ( SAXException e ) {
 				throw new AnalysisEngineProcessException( e );
 			} catch ( IOException e ) {
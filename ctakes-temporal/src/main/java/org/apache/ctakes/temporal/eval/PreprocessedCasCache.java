@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.temporal.eval;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.SerialFormat;
+import org.apache.uima.util.CasIOUtils;
+
+/**
+ * Keeps the preprocessed CASes read from xmi files in the compressed binary cas format, so that the folds,
+ * grid points and train / test passes of an evaluation parse each xmi file once and then restore the cas
+ * from memory. The bytes are never modified once stored, so they are shared by all the pipelines of the jvm;
+ * every pipeline restores them into its own cas. The type system is stored with the bytes, so a cas can be
+ * restored into pipelines with a different type system.
+ * <p>
+ * Entries are dropped when their xmi file changes, and the least recently used entries are dropped when
+ * the cache grows over its size.
+ */
+final class PreprocessedCasCache {
+
+	private static final PreprocessedCasCache INSTANCE = new PreprocessedCasCache( Runtime.getRuntime().maxMemory() / 4 );
+
+	private final long maxBytes;
+
+	private long numBytes = 0;
+
+	// access order, eldest first
+	private final Map<String, Entry> entries = new LinkedHashMap<>( 64, 0.75f, true );
+
+	static PreprocessedCasCache getInstance() {
+		return INSTANCE;
+	}
+
+	PreprocessedCasCache( long maxBytes ) {
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * @return true if the cas has been restored from the cache, false if the xmi file has to be read
+	 */
+	boolean load( File xmiFile, CAS cas ) throws IOException {
+		Entry entry;
+		synchronized ( this ) {
+			entry = this.entries.get( getKey( xmiFile ) );
+		}
+		if ( entry == null || !entry.isFor( xmiFile ) ) {
+			return false;
+		}
+		CasIOUtils.load( new ByteArrayInputStream( entry.bytes ), cas );
+		return true;
+	}
+
+	/**
+	 * Stores the cas read from the xmi file, replacing any previous cas of the file.
+	 */
+	void store( File xmiFile, CAS cas ) throws IOException {
+		long lastModified = xmiFile.lastModified();
+		long length = xmiFile.length();
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream( (int)Math.min( length / 4 + 1024, 1 << 24 ) );
+		CasIOUtils.save( cas, outputStream, SerialFormat.COMPRESSED_FILTERED_TS );
+		Entry entry = new Entry( lastModified, length, outputStream.toByteArray() );
+		if ( entry.bytes.length > this.maxBytes ) {
+			return;
+		}
+		synchronized ( this ) {
+			Entry previous = this.entries.put( getKey( xmiFile ), entry );
+			if ( previous != null ) {
+				this.numBytes -= previous.bytes.length;
+			}
+			this.numBytes += entry.bytes.length;
+			Iterator<Entry> eldest = this.entries.values().iterator();
+			while ( this.numBytes > this.maxBytes && eldest.hasNext() ) {
+				this.numBytes -= eldest.next().bytes.length;
+				eldest.remove();
+			}
+		}
+	}
+
+	synchronized int size() {
+		return this.entries.size();
+	}
+
+	synchronized long getNumBytes() {
+		return this.numBytes;
+	}
+
+	synchronized void clear() {
+		this.entries.clear();
+		this.numBytes = 0;
+	}
+
+	private static String getKey( File xmiFile ) {
+		return xmiFile.getAbsolutePath();
+	}
+
+	private static final class Entry {
+		private final long lastModified;
+		private final long length;
+		private final byte[] bytes;
+
+		private Entry( long lastModified, long length, byte[] bytes ) {
+			this.lastModified = lastModified;
+			this.length = length;
+			this.bytes = bytes;
+		}
+
+		private boolean isFor( File xmiFile ) {
+			return xmiFile.lastModified() == this.lastModified && xmiFile.length() == this.length;
+		}
+	}
+}
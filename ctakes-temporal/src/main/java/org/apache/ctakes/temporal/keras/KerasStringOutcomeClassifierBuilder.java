@@ -74,7 +74,8 @@ public class KerasStringOutcomeClassifierBuilder extends ScriptStringOutcomeClas
   
   @Override
   protected KerasStringOutcomeClassifier newClassifier() {
-    return new KerasStringOutcomeClassifier(this.featuresEncoder, this.outcomeEncoder, this.modelDir, this.scriptDir);
+    return new KerasStringOutcomeClassifier(this.featuresEncoder, this.outcomeEncoder, this.modelDir, this.scriptDir,
+        this.numWorkers, this.batchSize);
   }
 
   private static String getArchFilename(int num){
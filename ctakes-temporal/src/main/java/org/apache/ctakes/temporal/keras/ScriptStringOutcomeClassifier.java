@@ -1,13 +1,13 @@
 package org.apache.ctakes.temporal.keras;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.ctakes.relationextractor.ae.BatchClassifier;
 import org.apache.uima.UIMAFramework;
 import org.apache.uima.util.Level;
 import org.apache.uima.util.Logger;
@@ -30,12 +30,21 @@ import com.google.common.annotations.Beta;
  * 
  */
 @Beta
-public abstract class ScriptStringOutcomeClassifier extends Classifier_ImplBase<FeatureVector, String, Integer> {
+public abstract class ScriptStringOutcomeClassifier extends Classifier_ImplBase<FeatureVector, String, Integer>
+    implements BatchClassifier<String> {
+  public static final int DEFAULT_NUM_WORKERS = 1;
+  public static final int DEFAULT_BATCH_SIZE = 64;
+  // instances sent to a script process and not answered yet
+  public static final int DEFAULT_MAX_PENDING = 1024;
+  public static final int DEFAULT_TIMEOUT_MILLIS = (int) TimeUnit.MINUTES.toMillis(10);
+
   File modelDir = null;
-  Process classifierProcess = null;
-  PrintStream toClassifier = null;
-  BufferedReader reader = null;
-  BufferedReader errReader = null;
+  volatile ScriptWorkerPool workerPool = null;
+  private final String[] command;
+  private final int numWorkers;
+  private final int batchSize;
+  private int maxPending = DEFAULT_MAX_PENDING;
+  private int timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
   Logger logger = UIMAFramework.getLogger(ScriptStringOutcomeClassifier.class);
 
   public ScriptStringOutcomeClassifier(
@@ -43,6 +52,20 @@ public abstract class ScriptStringOutcomeClassifier extends Classifier_ImplBase<
       OutcomeEncoder<String, Integer> outcomeEncoder,
       File modelDir,
       File scriptDir) {
+    this(featuresEncoder, outcomeEncoder, modelDir, scriptDir, DEFAULT_NUM_WORKERS, DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * @param numWorkers number of classify script processes instances are spread over
+   * @param batchSize maximum number of instances written to a script process at once
+   */
+  public ScriptStringOutcomeClassifier(
+      FeaturesEncoder<FeatureVector> featuresEncoder,
+      OutcomeEncoder<String, Integer> outcomeEncoder,
+      File modelDir,
+      File scriptDir,
+      int numWorkers,
+      int batchSize) {
     super(featuresEncoder, outcomeEncoder);
     this.modelDir = modelDir;
     
@@ -60,28 +83,81 @@ public abstract class ScriptStringOutcomeClassifier extends Classifier_ImplBase<
       throw new RuntimeException("There are no files named classify.*");
     }
     
+    this.command = new String[]{
+        classifyScript.getAbsolutePath(),
+        modelDir.getAbsolutePath()};
+    this.numWorkers = numWorkers;
+    this.batchSize = batchSize;
     try {
-      this.classifierProcess = Runtime.getRuntime().exec(new String[]{
-          classifyScript.getAbsolutePath(),
-          modelDir.getAbsolutePath()});
-      // start the classifier process running, give it a chance to read the model, and
-      // set classifierProcess to the running classifier
-      toClassifier = new PrintStream(classifierProcess.getOutputStream());
-      reader = new BufferedReader(new InputStreamReader(classifierProcess.getInputStream()));
-      errReader = new BufferedReader(new InputStreamReader(classifierProcess.getErrorStream()));
-      errReader.readLine(); // read line about which backend it is using.
+      // start the classifier processes running, they read the model while the first instances are written
+      this.workerPool = new ScriptWorkerPool(this.command, numWorkers, batchSize, this.maxPending, this.timeoutMillis);
     } catch (IOException e) {
       e.printStackTrace();
       throw new RuntimeException(e);
     }
   }
 
+  /**
+   * Restarts the classify script processes with other limits, if they differ from the current ones.
+   * Called by annotators when they are initialized, before the first instance is classified.
+   * 
+   * @param maxPending maximum number of instances sent to a script process and not answered yet
+   * @param timeoutMillis time to wait for the outcomes of a batch before the process is considered hung
+   */
+  public synchronized void setPoolLimits(int maxPending, int timeoutMillis) throws IOException {
+    if(maxPending == this.maxPending && timeoutMillis == this.timeoutMillis){
+      return;
+    }
+    ScriptWorkerPool pool = new ScriptWorkerPool(this.command, this.numWorkers, this.batchSize, maxPending, timeoutMillis);
+    this.workerPool.close();
+    this.workerPool = pool;
+    this.maxPending = maxPending;
+    this.timeoutMillis = timeoutMillis;
+  }
+
   public String classify(List<Feature> features)
       throws CleartkProcessingException {
-    // Encode the features and pass them to the standard input of the classifier process
-    // and then read the standard output prediction, which will be in the string format expected by
-    // the annotator.    
+    return this.classifyAll(Collections.singletonList(features)).get(0);
+  }
 
+  /**
+   * Writes the instances to the classify script processes in batches and reads back the prediction
+   * of each, which will be in the string format expected by the annotator.
+   * Instances without features are not sent, their prediction is null.
+   */
+  @Override
+  public List<String> classifyAll(List<List<Feature>> instances)
+      throws CleartkProcessingException {
+    String[] instanceLines = new String[instances.size()];
+    List<String> lines = new ArrayList<>(instances.size());
+    for(int i = 0; i < instanceLines.length; i++){
+      instanceLines[i] = toLine(instances.get(i));
+      if(instanceLines[i] != null){
+        lines.add(instanceLines[i]);
+      }
+    }
+
+    List<String> outcomes;
+    try {
+      outcomes = this.workerPool.classifyAll(lines);
+    } catch (IOException e) {
+      logger.log(Level.SEVERE, e.getMessage());
+      throw new CleartkProcessingException(e);
+    }
+    if(lines.size() == instanceLines.length){
+      return outcomes;
+    }
+    List<String> predictions = new ArrayList<>(instanceLines.length);
+    int next = 0;
+    for(String line : instanceLines){
+      predictions.add(line == null ? null : outcomes.get(next++));
+    }
+    return predictions;
+  }
+
+  // The feature values separated by spaces, or null if there are none: a line break would end
+  // the instance early and an empty line makes the script exit.
+  private static String toLine(List<Feature> features){
     StringBuilder buf = new StringBuilder();
     
 //    for (FeatureVector.Entry featureNode : this.featuresEncoder.encodeAll(features)) {
@@ -93,31 +169,19 @@ public abstract class ScriptStringOutcomeClassifier extends Classifier_ImplBase<
     		buf.append(" ");
     	}
     }
-
-    this.toClassifier.println(buf);
-    this.toClassifier.flush();
-    
-    String line = "";
-    String eLine = "";
-    try {
-      line = reader.readLine();
-      if(line == null){
-         while((eLine = errReader.readLine()) != null){
-           logger.log(Level.SEVERE, eLine);
-         }
+    for (int i = 0; i < buf.length(); i++){
+      if(buf.charAt(i) == '\n' || buf.charAt(i) == '\r'){
+        buf.setCharAt(i, ' ');
       }
-    } catch (IOException e) {
-      throw new RuntimeException(e);
     }
-    
-    return line;
+    String line = buf.toString();
+    return line.trim().isEmpty() ? null : line;
   }
 
   @Override
   protected void finalize() throws Throwable {
     super.finalize();
     
-    this.toClassifier.print('\n');
-    classifierProcess.waitFor();
+    this.workerPool.close();
   }
 }
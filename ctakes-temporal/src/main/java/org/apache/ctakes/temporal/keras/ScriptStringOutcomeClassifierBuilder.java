@@ -18,15 +18,48 @@ import org.cleartk.ml.util.featurevector.FeatureVector;
 
 public abstract class ScriptStringOutcomeClassifierBuilder<T extends ScriptStringOutcomeClassifier> extends ClassifierBuilder_ImplBase<T, FeatureVector, String, Integer> {
   public static final Attributes.Name SCRIPT_DIR_PARAM = new Attributes.Name("ScriptDirectory");
+  public static final Attributes.Name SCRIPT_WORKERS_PARAM = new Attributes.Name("ScriptWorkers");
+  public static final Attributes.Name SCRIPT_BATCH_SIZE_PARAM = new Attributes.Name("ScriptBatchSize");
   protected static final Logger logger = UIMAFramework.getLogger(ScriptStringOutcomeClassifierBuilder.class);
   
   protected File modelDir = null;
   protected File scriptDir = null;
+  protected int numWorkers = ScriptStringOutcomeClassifier.DEFAULT_NUM_WORKERS;
+  protected int batchSize = ScriptStringOutcomeClassifier.DEFAULT_BATCH_SIZE;
   
   public void setScriptDirectory(String scriptDir){
     Attributes atts = this.manifest.getMainAttributes();
     atts.put(SCRIPT_DIR_PARAM, scriptDir); 
   }
+
+  /**
+   * Sets the number of classify script processes the packaged classifier runs, each loads the model.
+   */
+  public void setNumWorkers(int numWorkers){
+    Attributes atts = this.manifest.getMainAttributes();
+    atts.put(SCRIPT_WORKERS_PARAM, Integer.toString(numWorkers));
+  }
+
+  /**
+   * Sets the maximum number of instances the packaged classifier writes to a classify script process at once.
+   */
+  public void setBatchSize(int batchSize){
+    Attributes atts = this.manifest.getMainAttributes();
+    atts.put(SCRIPT_BATCH_SIZE_PARAM, Integer.toString(batchSize));
+  }
+
+  @Override
+  protected void unpackageClassifier(JarInputStream modelStream) throws IOException {
+    super.unpackageClassifier(modelStream);
+    Attributes atts = modelStream.getManifest().getMainAttributes();
+    this.numWorkers = getIntAttribute(atts, SCRIPT_WORKERS_PARAM, this.numWorkers);
+    this.batchSize = getIntAttribute(atts, SCRIPT_BATCH_SIZE_PARAM, this.batchSize);
+  }
+
+  private static int getIntAttribute(Attributes atts, Attributes.Name name, int defaultValue){
+    String value = atts.getValue(name);
+    return value == null ? defaultValue : Integer.parseInt(value.trim());
+  }
   
   @Override
   public File getTrainingDataFile(File dir) {
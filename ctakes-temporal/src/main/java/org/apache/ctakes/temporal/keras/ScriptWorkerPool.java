@@ -0,0 +1,338 @@
+package org.apache.ctakes.temporal.keras;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.util.Level;
+import org.apache.uima.util.Logger;
+
+/**
+ * A pool of classifier script processes.
+ * The scripts read one instance per line on their standard input and write the outcome of each instance,
+ * one line per instance and in the same order, on their standard output. An empty line asks a script to exit.
+ * <p>
+ * Instances are sent in batches of lines with a single flush, and a reader thread per process collects
+ * the outcomes, so a process receives the next batch while it is classifying the previous one instead of
+ * waiting for a round trip per instance. Each process has a bound on its pending instances: batches go to
+ * the process with the fewest pending instances and wait when all of them are at the bound.
+ * Processes that have exited or did not answer in time are restarted before the next batch.
+ */
+class ScriptWorkerPool implements Closeable {
+  private static final Logger logger = UIMAFramework.getLogger(ScriptWorkerPool.class);
+  // stderr lines kept to report why a script failed
+  private static final int ERROR_LINES = 20;
+
+  private final String[] command;
+  private final int batchSize;
+  private final int maxPending;
+  private final long timeoutMillis;
+  private final Worker[] workers;
+  private volatile boolean closed = false;
+
+  /**
+   * @param command the script and its arguments
+   * @param numWorkers number of script processes
+   * @param batchSize maximum number of instances sent to a process at once
+   * @param maxPending maximum number of instances sent to a process and not answered yet
+   * @param timeoutMillis time to wait for the outcomes of a batch before the process is considered hung
+   */
+  ScriptWorkerPool(String[] command, int numWorkers, int batchSize, int maxPending, long timeoutMillis)
+      throws IOException {
+    if(numWorkers < 1 || batchSize < 1 || maxPending < 1 || timeoutMillis < 1){
+      throw new IllegalArgumentException("Script workers, batch size, pending instances and timeout must be positive");
+    }
+    this.command = command.clone();
+    this.batchSize = Math.min(batchSize, maxPending);
+    this.maxPending = maxPending;
+    this.timeoutMillis = timeoutMillis;
+    this.workers = new Worker[numWorkers];
+    try{
+      for(int i = 0; i < numWorkers; i++){
+        workers[i] = new Worker(i);
+      }
+    }catch(IOException e){
+      close();
+      throw e;
+    }
+  }
+
+  /**
+   * @param instances one line per instance, without line breaks
+   * @return the outcome line of each instance, in the order of the instances
+   * @throws IOException if a script exits, fails or does not answer in time
+   */
+  List<String> classifyAll(List<String> instances) throws IOException {
+    List<Batch> batches = new ArrayList<>((instances.size() + batchSize - 1) / batchSize);
+    for(int start = 0; start < instances.size(); start += batchSize){
+      Batch batch = new Batch(instances.subList(start, Math.min(start + batchSize, instances.size())));
+      getWorker().send(batch);
+      batches.add(batch);
+    }
+    List<String> outcomes = new ArrayList<>(instances.size());
+    for(Batch batch : batches){
+      outcomes.addAll(batch.await());
+    }
+    return outcomes;
+  }
+
+  /**
+   * @return a running worker with the fewest pending instances, restarting the workers that failed
+   */
+  private synchronized Worker getWorker() throws IOException {
+    if(closed){
+      throw new IOException("The classifier script processes have been closed");
+    }
+    Worker best = null;
+    for(int i = 0; i < workers.length; i++){
+      if(!workers[i].isHealthy()){
+        workers[i].destroy();
+        logger.log(Level.WARNING, "Restarting classifier script process " + i);
+        workers[i] = new Worker(i);
+      }
+      if(best == null || workers[i].getPending() < best.getPending()){
+        best = workers[i];
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Asks every script to exit and waits for them a little before killing them.
+   */
+  @Override
+  public synchronized void close() {
+    closed = true;
+    for(Worker worker : workers){
+      if(worker != null){
+        worker.close();
+      }
+    }
+  }
+
+  /**
+   * Instances sent to a worker together, with their outcomes as they are read.
+   */
+  private class Batch {
+    private final List<String> instances;
+    private final String[] outcomes;
+    private final CountDownLatch done = new CountDownLatch(1);
+    private int numRead = 0;
+    private Worker worker = null;
+    private IOException failure = null;
+
+    private Batch(List<String> instances){
+      this.instances = instances;
+      this.outcomes = new String[instances.size()];
+    }
+
+    // called by the reader thread of the worker
+    private boolean add(String outcome){
+      outcomes[numRead++] = outcome;
+      if(numRead == outcomes.length){
+        done.countDown();
+        return true;
+      }
+      return false;
+    }
+
+    private void fail(IOException e){
+      failure = e;
+      done.countDown();
+    }
+
+    private List<String> await() throws IOException {
+      try{
+        if(!done.await(timeoutMillis, TimeUnit.MILLISECONDS)){
+          worker.fail(new IOException("No outcome from classifier script process " + worker.id + " in "
+              + timeoutMillis + " ms"));
+        }
+      }catch(InterruptedException e){
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while waiting for the classifier script", e);
+      }
+      if(failure != null){
+        throw failure;
+      }
+      return Arrays.asList(outcomes);
+    }
+  }
+
+  /**
+   * A script process, with a thread reading its outcomes and a thread logging its standard error.
+   */
+  private class Worker {
+    private final int id;
+    private final Process process;
+    private final Writer toScript;
+    private final Semaphore pendingPermits;
+    // batches sent and not fully answered, oldest first
+    private final Deque<Batch> sent = new ArrayDeque<>();
+    private final Deque<String> errorLines = new ArrayDeque<>();
+    private volatile boolean failed = false;
+
+    private Worker(int id) throws IOException {
+      this.id = id;
+      this.process = new ProcessBuilder(command).start();
+      this.toScript = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+      this.pendingPermits = new Semaphore(maxPending);
+      startThread("classifier-script-" + id + "-out", this::readOutcomes);
+      startThread("classifier-script-" + id + "-err", this::readErrors);
+    }
+
+    private void startThread(String name, Runnable runnable){
+      Thread thread = new Thread(runnable, name);
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    private boolean isHealthy(){
+      return !failed && process.isAlive();
+    }
+
+    private int getPending(){
+      return maxPending - pendingPermits.availablePermits();
+    }
+
+    private void send(Batch batch) throws IOException {
+      try{
+        if(!pendingPermits.tryAcquire(batch.outcomes.length, timeoutMillis, TimeUnit.MILLISECONDS)){
+          IOException e = new IOException("Classifier script process " + id + " did not make room for more instances in "
+              + timeoutMillis + " ms");
+          fail(e);
+          throw e;
+        }
+      }catch(InterruptedException e){
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while waiting for the classifier script", e);
+      }
+      batch.worker = this;
+      // batches are queued in the order they are written, which is the order of the outcomes
+      synchronized(toScript){
+        synchronized(this){
+          if(failed){
+            pendingPermits.release(batch.outcomes.length);
+            throw new IOException("Classifier script process " + id + " failed" + getErrors());
+          }
+          sent.addLast(batch);
+        }
+        try{
+          for(String instance : batch.instances){
+            toScript.write(instance);
+            toScript.write('\n');
+          }
+          toScript.flush();
+        }catch(IOException e){
+          IOException failure = new IOException("Could not write to classifier script process " + id + getErrors(), e);
+          fail(failure);
+          throw failure;
+        }
+      }
+    }
+
+    private void readOutcomes(){
+      try(BufferedReader reader = new BufferedReader(
+          new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))){
+        String line;
+        while((line = reader.readLine()) != null){
+          Batch batch;
+          synchronized(this){
+            batch = sent.peekFirst();
+            if(batch == null){
+              logger.log(Level.WARNING, "Unexpected output from classifier script process " + id + ": " + line);
+              continue;
+            }
+            if(batch.add(line)){
+              sent.removeFirst();
+            }
+          }
+          pendingPermits.release();
+        }
+        fail(new IOException("Classifier script process " + id + " exited" + getErrors()));
+      }catch(IOException e){
+        fail(new IOException("Could not read from classifier script process " + id + getErrors(), e));
+      }
+    }
+
+    private void readErrors(){
+      try(BufferedReader reader = new BufferedReader(
+          new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8))){
+        String line;
+        while((line = reader.readLine()) != null){
+          logger.log(Level.FINE, line);
+          synchronized(errorLines){
+            if(errorLines.size() == ERROR_LINES){
+              errorLines.removeFirst();
+            }
+            errorLines.addLast(line);
+          }
+        }
+      }catch(IOException e){
+        // the process is gone, its outcome reader reports it
+      }
+    }
+
+    private String getErrors(){
+      synchronized(errorLines){
+        return errorLines.isEmpty() ? "" : ":\n" + String.join("\n", errorLines);
+      }
+    }
+
+    /**
+     * Fails the batches waiting for this worker, which is restarted before the next batch.
+     */
+    private void fail(IOException e){
+      List<Batch> failedBatches;
+      synchronized(this){
+        if(failed){
+          return;
+        }
+        failed = true;
+        failedBatches = new ArrayList<>(sent);
+        sent.clear();
+      }
+      if(!failedBatches.isEmpty() && !closed){
+        logger.log(Level.SEVERE, e.getMessage());
+      }
+      for(Batch batch : failedBatches){
+        batch.fail(e);
+      }
+      process.destroy();
+    }
+
+    private void close(){
+      try{
+        synchronized(toScript){
+          toScript.write('\n');
+          toScript.close();
+        }
+        if(!process.waitFor(10, TimeUnit.SECONDS)){
+          logger.log(Level.WARNING, "Classifier script process " + id + " did not exit");
+        }
+      }catch(IOException e){
+        // already exited
+      }catch(InterruptedException e){
+        Thread.currentThread().interrupt();
+      }
+      destroy();
+    }
+
+    private void destroy(){
+      failed = true;
+      process.destroy();
+    }
+  }
+}
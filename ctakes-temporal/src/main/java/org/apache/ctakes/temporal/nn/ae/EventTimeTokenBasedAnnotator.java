@@ -16,7 +16,9 @@ import java.util.Map.Entry;
 
 import org.apache.ctakes.core.pipeline.PipeBitInfo;
 import org.apache.ctakes.core.resource.FileLocator;
+import org.apache.ctakes.relationextractor.ae.BatchClassifiers;
 import org.apache.ctakes.temporal.ae.TemporalRelationExtractorAnnotator.IdentifiedAnnotationPair;
+import org.apache.ctakes.temporal.keras.ScriptStringOutcomeClassifier;
 import org.apache.ctakes.temporal.nn.data.ArgContextProvider;
 import org.apache.ctakes.typesystem.type.relation.BinaryTextRelation;
 import org.apache.ctakes.typesystem.type.relation.RelationArgument;
@@ -26,10 +28,13 @@ import org.apache.ctakes.typesystem.type.textsem.EventMention;
 import org.apache.ctakes.typesystem.type.textsem.IdentifiedAnnotation;
 import org.apache.ctakes.typesystem.type.textsem.TimeMention;
 import org.apache.ctakes.typesystem.type.textspan.Sentence;
+import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
 import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.tcas.Annotation;
+import org.apache.uima.resource.ResourceInitializationException;
 import org.cleartk.ml.CleartkAnnotator;
 import org.cleartk.ml.Feature;
 import org.cleartk.ml.Instance;
@@ -64,6 +69,22 @@ public class EventTimeTokenBasedAnnotator extends CleartkAnnotator<String> {
 	public enum OutputMode {TokenSeq, TokenTimeclass, TokenTimeclassPosSeq, Timeclass, TimeclassPosSeq, PosSeq, SingleTag, IndexTags, NoTag}
 	public static OutputMode timexMode;
 
+	public static final String PARAM_SCRIPT_MAX_PENDING = "ScriptMaxPending";
+
+	@ConfigurationParameter(
+			name = PARAM_SCRIPT_MAX_PENDING,
+			mandatory = false,
+			description = "maximum number of instances sent to a classify script process and not answered yet")
+	private int scriptMaxPending = ScriptStringOutcomeClassifier.DEFAULT_MAX_PENDING;
+
+	public static final String PARAM_SCRIPT_TIMEOUT_MILLIS = "ScriptTimeoutMillis";
+
+	@ConfigurationParameter(
+			name = PARAM_SCRIPT_TIMEOUT_MILLIS,
+			mandatory = false,
+			description = "milliseconds to wait for the outcomes of a batch before a classify script process is restarted")
+	private int scriptTimeoutMillis = ScriptStringOutcomeClassifier.DEFAULT_TIMEOUT_MILLIS;
+
 	private BufferedReader reader;
 	private static FileWriter fstream;
 	private static BufferedWriter out;
@@ -75,6 +96,18 @@ public class EventTimeTokenBasedAnnotator extends CleartkAnnotator<String> {
 		}
 	}
 
+	@Override
+	public void initialize(UimaContext context) throws ResourceInitializationException {
+		super.initialize(context);
+		if(this.classifier instanceof ScriptStringOutcomeClassifier) {
+			try {
+				((ScriptStringOutcomeClassifier) this.classifier).setPoolLimits(this.scriptMaxPending, this.scriptTimeoutMillis);
+			} catch (IOException e) {
+				throw new ResourceInitializationException(e);
+			}
+		}
+	}
+
 	public Map<String, Integer> TimexIdxReader(InputStream in) throws IOException{
 		reader = new BufferedReader(new InputStreamReader(in));
 		Map<String, Integer> timex_index = new HashMap<>();
@@ -136,6 +169,8 @@ public class EventTimeTokenBasedAnnotator extends CleartkAnnotator<String> {
 			}
 		}
 
+		List<IdentifiedAnnotationPair> classifyPairs = new ArrayList<>();
+		List<List<Feature>> classifyFeatures = new ArrayList<>();
 		// go over sentences, extracting event-time relation instances
 		for(Sentence sentence : JCasUtil.select(jCas, Sentence.class)) {
 			// collect all relevant relation arguments from the sentence
@@ -184,32 +219,42 @@ public class EventTimeTokenBasedAnnotator extends CleartkAnnotator<String> {
 
 				// during classification feed the features to the classifier and create annotations
 				else {
-					String predictedCategory = this.classifier.classify(features);
-
-					// add a relation annotation if a true relation was predicted
-					if(predictedCategory != null && !predictedCategory.equals(NO_RELATION_CATEGORY)) {
-
-						// if we predict an inverted relation, reverse the order of the arguments
-						if(predictedCategory.endsWith("-1")) {
-							predictedCategory = predictedCategory.substring(0, predictedCategory.length() - 2);
-							if(arg1 instanceof TimeMention){
-								IdentifiedAnnotation temp = arg1;
-								arg1 = arg2;
-								arg2 = temp;
-							}
-						} else {
-							if(arg1 instanceof EventMention){
-								IdentifiedAnnotation temp = arg1;
-								arg1 = arg2;
-								arg2 = temp;
-							}
-						}
+					// classified with the other pairs of the document, which the classifier can do in one batch
+					classifyPairs.add(pair);
+					classifyFeatures.add(features);
+				}
+			}
 
-						createRelation(jCas, arg1, arg2, predictedCategory.toUpperCase(), 0.0);
+		}
+		if(!this.isTraining()) {
+			List<String> predictedCategories = BatchClassifiers.classifyAll(this.classifier, classifyFeatures);
+			for(int i = 0; i < classifyPairs.size(); i++) {
+				IdentifiedAnnotation arg1 = classifyPairs.get(i).getArg1();
+				IdentifiedAnnotation arg2 = classifyPairs.get(i).getArg2();
+				String predictedCategory = predictedCategories.get(i);
+
+				// add a relation annotation if a true relation was predicted
+				if(predictedCategory != null && !predictedCategory.equals(NO_RELATION_CATEGORY)) {
+
+					// if we predict an inverted relation, reverse the order of the arguments
+					if(predictedCategory.endsWith("-1")) {
+						predictedCategory = predictedCategory.substring(0, predictedCategory.length() - 2);
+						if(arg1 instanceof TimeMention){
+							IdentifiedAnnotation temp = arg1;
+							arg1 = arg2;
+							arg2 = temp;
+						}
+					} else {
+						if(arg1 instanceof EventMention){
+							IdentifiedAnnotation temp = arg1;
+							arg1 = arg2;
+							arg2 = temp;
+						}
 					}
+
+					createRelation(jCas, arg1, arg2, predictedCategory.toUpperCase(), 0.0);
 				}
 			}
-
 		}
 		if(timexMode== OutputMode.IndexTags && !this.isTraining()){//in test time update the hashmap file for each cas
 			try {
@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.temporal.eval;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.junit.Test;
+
+public class Evaluation_ImplBaseTest {
+
+	@Test
+	public void testRunInParallelKeepsOrder() throws Exception {
+		Map<String, Callable<Integer>> tasks = new LinkedHashMap<>();
+		for ( int i = 0; i < 8; i++ ) {
+			final int value = i;
+			tasks.put( "task-" + i, () -> {
+				Thread.sleep( 8 - value );
+				return value;
+			} );
+		}
+		List<Integer> results = Evaluation_ImplBase.runInParallel( tasks, 4 );
+		assertEquals( Arrays.asList( 0, 1, 2, 3, 4, 5, 6, 7 ), results );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testRefusesThreadsWithSharedState() {
+		Evaluation_ImplBase.checkThreads( 2, false, EvaluationOfEventTimeRelations.class );
+	}
+
+	@Test
+	public void testAllowsThreadsWithoutSharedState() {
+		Evaluation_ImplBase.checkThreads( 1, false, EvaluationOfEventTimeRelations.class );
+		Evaluation_ImplBase.checkThreads( 4, true, EvaluationOfEventSpans.class );
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.temporal.eval;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.ctakes.typesystem.type.textspan.Sentence;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PreprocessedCasCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static JCas createJCas( String text ) throws Exception {
+		JCas jCas = JCasFactory.createJCas();
+		jCas.setDocumentText( text );
+		new Sentence( jCas, 0, text.length() ).addToIndexes();
+		return jCas;
+	}
+
+	@Test
+	public void testRestoresStoredCas() throws Exception {
+		File xmiFile = folder.newFile( "note.xmi" );
+		Files.write( xmiFile.toPath(), "<xmi/>".getBytes( StandardCharsets.UTF_8 ) );
+		PreprocessedCasCache cache = new PreprocessedCasCache( 1 << 20 );
+
+		JCas restored = JCasFactory.createJCas();
+		assertFalse( cache.load( xmiFile, restored.getCas() ) );
+
+		cache.store( xmiFile, createJCas( "The patient was seen today." ).getCas() );
+		assertEquals( 1, cache.size() );
+		assertTrue( cache.load( xmiFile, restored.getCas() ) );
+		assertEquals( "The patient was seen today.", restored.getDocumentText() );
+		assertEquals( 1, JCasUtil.select( restored, Sentence.class ).size() );
+
+		// a changed xmi file has to be read again
+		Files.write( xmiFile.toPath(), "<xmi></xmi>".getBytes( StandardCharsets.UTF_8 ) );
+		assertFalse( cache.load( xmiFile, JCasFactory.createJCas().getCas() ) );
+	}
+
+	@Test
+	public void testDropsLeastRecentlyUsed() throws Exception {
+		File first = folder.newFile( "first.xmi" );
+		File second = folder.newFile( "second.xmi" );
+		PreprocessedCasCache probe = new PreprocessedCasCache( Long.MAX_VALUE );
+		probe.store( first, createJCas( "first" ).getCas() );
+		PreprocessedCasCache cache = new PreprocessedCasCache( probe.getNumBytes() * 3 / 2 );
+
+		cache.store( first, createJCas( "first" ).getCas() );
+		cache.store( second, createJCas( "second" ).getCas() );
+		assertEquals( 1, cache.size() );
+		assertFalse( cache.load( first, JCasFactory.createJCas().getCas() ) );
+		assertTrue( cache.load( second, JCasFactory.createJCas().getCas() ) );
+	}
+}
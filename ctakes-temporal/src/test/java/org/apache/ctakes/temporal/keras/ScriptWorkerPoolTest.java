@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.temporal.keras;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.cleartk.ml.CleartkProcessingException;
+import org.cleartk.ml.Feature;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Runs the classify script protocol against stub scripts that answer with the first word of each instance.
+ */
+public class ScriptWorkerPoolTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Before
+	public void checkShell() {
+		Assume.assumeTrue(new File("/bin/sh").canExecute());
+	}
+
+	private File writeScript(File dir, String body) throws IOException {
+		File script = new File(dir, "classify.sh");
+		Files.write(script.toPath(), ("#!/bin/sh\n" + body).getBytes(StandardCharsets.UTF_8));
+		script.setExecutable(true);
+		return script;
+	}
+
+	private static final String FIRST_WORD = "echo loading model >&2\n"
+			+ "while IFS= read -r line; do\n"
+			+ "  if [ -z \"$line\" ]; then exit 0; fi\n"
+			+ "  if [ \"$line\" = die ]; then exit 1; fi\n"
+			+ "  if [ \"$line\" = hang ]; then sleep 30; fi\n"
+			+ "  echo \"${line%% *}\"\n"
+			+ "done\n";
+
+	@Test
+	public void testClassifyAllInOrder() throws Exception {
+		File scriptDir = folder.newFolder("scripts");
+		writeScript(scriptDir, FIRST_WORD);
+		KerasStringOutcomeClassifier classifier = new KerasStringOutcomeClassifier(null, null,
+				folder.newFolder("model"), scriptDir, 3, 16);
+
+		List<List<Feature>> instances = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			instances.add(Arrays.asList(new Feature("label" + i), new Feature("a"), new Feature("b\nc")));
+		}
+		instances.add(Collections.<Feature>emptyList());
+		List<String> outcomes = classifier.classifyAll(instances);
+		assertEquals(instances.size(), outcomes.size());
+		for (int i = 0; i < 500; i++) {
+			assertEquals("label" + i, outcomes.get(i));
+		}
+		assertNull(outcomes.get(500));
+
+		assertEquals("single", classifier.classify(Arrays.asList(new Feature("single"), new Feature("x"))));
+		classifier.workerPool.close();
+	}
+
+	@Test
+	public void testClassifyAllMatchesClassify() throws Exception {
+		File scriptDir = folder.newFolder("scripts");
+		writeScript(scriptDir, FIRST_WORD);
+		KerasStringOutcomeClassifier classifier = new KerasStringOutcomeClassifier(null, null,
+				folder.newFolder("model"), scriptDir, 2, 8);
+
+		List<List<Feature>> instances = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			instances.add(Arrays.asList(new Feature(i % 7 == 0 ? "-none-" : "contains" + (i % 3)), new Feature("t" + i)));
+		}
+		List<String> expected = new ArrayList<>();
+		for (List<Feature> features : instances) {
+			expected.add(classifier.classify(features));
+		}
+		assertEquals(expected, classifier.classifyAll(instances));
+		classifier.workerPool.close();
+	}
+
+	@Test
+	public void testPoolLimits() throws Exception {
+		File scriptDir = folder.newFolder("scripts");
+		writeScript(scriptDir, FIRST_WORD);
+		KerasStringOutcomeClassifier classifier = new KerasStringOutcomeClassifier(null, null,
+				folder.newFolder("model"), scriptDir, 1, 4);
+		ScriptWorkerPool defaultPool = classifier.workerPool;
+		classifier.setPoolLimits(ScriptStringOutcomeClassifier.DEFAULT_MAX_PENDING,
+				ScriptStringOutcomeClassifier.DEFAULT_TIMEOUT_MILLIS);
+		assertSame(defaultPool, classifier.workerPool);
+
+		// with a short timeout a hung script fails the batch instead of blocking for the default ten minutes
+		classifier.setPoolLimits(8, 500);
+		long start = System.currentTimeMillis();
+		try {
+			classifier.classifyAll(Arrays.asList(Collections.singletonList(new Feature("hang")),
+					Collections.singletonList(new Feature("a"))));
+			fail("The script did not answer in time");
+		} catch (CleartkProcessingException e) {
+			// expected
+		}
+		assertTrue(System.currentTimeMillis() - start < 20000);
+		assertEquals("b", classifier.classify(Arrays.asList(new Feature("b"), new Feature("c"))));
+		try {
+			defaultPool.classifyAll(Collections.singletonList("x"));
+			fail("The pool with the default limits was not closed");
+		} catch (IOException e) {
+			// expected
+		}
+		classifier.workerPool.close();
+	}
+
+	@Test
+	public void testRestartAfterExit() throws Exception {
+		File script = writeScript(folder.newFolder("scripts"), FIRST_WORD);
+		try (ScriptWorkerPool pool = new ScriptWorkerPool(new String[] { script.getAbsolutePath() }, 1, 4, 8, 10000)) {
+			try {
+				pool.classifyAll(Arrays.asList("a", "die", "b"));
+				fail("The script exited without answering");
+			} catch (IOException e) {
+				// expected
+			}
+			assertEquals(Arrays.asList("x", "y"), pool.classifyAll(Arrays.asList("x 1", "y 2")));
+		}
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		File script = writeScript(folder.newFolder("scripts"), FIRST_WORD);
+		try (ScriptWorkerPool pool = new ScriptWorkerPool(new String[] { script.getAbsolutePath() }, 1, 4, 8, 500)) {
+			try {
+				pool.classifyAll(Arrays.asList("a", "hang"));
+				fail("The script did not answer in time");
+			} catch (IOException e) {
+				// expected
+			}
+			assertEquals(Collections.singletonList("z"), pool.classifyAll(Collections.singletonList("z")));
+		}
+	}
+
+}
@@ -2,67 +2,186 @@ package org.apache.ctakes.utils.distsem;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Word vectors stored in one float matrix with a row per word, and the inverse length of each row
+ * so that cosine similarities are a single dot product.
+ */
 public class WordEmbeddings {
 
-  private Map<String,WordVector> vectors = null;
+  // rows scanned per block by the similar words search, small enough for the block to stay in cache
+  private static final int BLOCK_ROWS = 256;
+
+  private Map<String,Integer> rows = null;
+  private String[] words = null;
+  private float[] matrix = null;
+  private double[] inverseLengths = null;
+  private int numWords = 0;
   private int dimensionality = 0;
   private WordVector meanVector = null;
   private WordVector rawMeanVector = null;
-  
+
   public WordEmbeddings(int dim){
-    this.vectors = new HashMap<>();
+    this(dim, 16);
+  }
+
+  /**
+   * @param dim dimensionality of the vectors
+   * @param capacity expected number of words
+   */
+  public WordEmbeddings(int dim, int capacity){
+    this.rows = new HashMap<>();
     this.dimensionality = dim;
+    this.words = new String[Math.max(capacity, 1)];
+    this.matrix = new float[words.length * dim];
+    this.inverseLengths = new double[words.length];
     this.meanVector = new WordVector("_mean_", new double[this.dimensionality]);
     this.rawMeanVector = new WordVector("_mean_raw", new double[this.dimensionality]);
   }
-  
+
   public WordEmbeddings(Map<String,WordVector> vectors){
-    this.vectors = vectors;
+    this(vectors.isEmpty() ? 0 : vectors.values().iterator().next().size(), vectors.size());
+    for(Map.Entry<String,WordVector> entry : vectors.entrySet()){
+      WordVector vector = entry.getValue();
+      double[] values = new double[vector.size()];
+      for(int i = 0; i < values.length; i++){
+        values[i] = vector.getValue(i);
+      }
+      add(entry.getKey(), values);
+    }
+  }
+
+  /**
+   * @param words word of each row
+   * @param matrix rows of the vectors of the words
+   * @param dim dimensionality of the vectors
+   */
+  WordEmbeddings(String[] words, float[] matrix, int dim){
+    this.rows = new HashMap<>(words.length * 4 / 3 + 1);
+    this.dimensionality = dim;
+    this.words = words;
+    this.matrix = matrix;
+    this.inverseLengths = new double[words.length];
+    this.numWords = words.length;
+    this.meanVector = new WordVector("_mean_", new double[this.dimensionality]);
+    this.rawMeanVector = new WordVector("_mean_raw", new double[this.dimensionality]);
+    for(int row = 0; row < numWords; row++){
+      rows.put(words[row], row);
+      int offset = row * dim;
+      for(int i = 0; i < dim; i++){
+        meanVector.vector[i] += matrix[offset + i];
+      }
+      updateInverseLength(row);
+    }
   }
 
   public double getSimilarity(String word1, String word2){
-    WordVector vec1 = getVector(word1);
-    WordVector vec2 = getVector(word2);
-    
-    assert vec1.size() == vec2.size();
+    int row1 = getRow(word1);
+    int row2 = getRow(word2);
+    int offset1 = row1 * dimensionality;
+    int offset2 = row2 * dimensionality;
     double sim = 0.0;
-    for(int i = 0; i < vec1.size(); i++){
-      sim += (vec1.getValue(i) * vec2.getValue(i));
+    for(int i = 0; i < dimensionality; i++){
+      sim += ((double) matrix[offset1 + i] * matrix[offset2 + i]);
     }
-    
-    sim = sim / (vec1.getLength()*vec2.getLength());
+
+    sim = sim * inverseLengths[row1] * inverseLengths[row2];
     return sim;
   }
 
   public void add(String line){
     int wordBreak = line.indexOf(' ');
     String word = line.substring(0, wordBreak);
-    String[] dims = line.substring(wordBreak+1).split(" ");
-    
-    if(this.meanVector == null){
-      this.meanVector = new WordVector("_mean_", new double[dims.length]);
-      this.rawMeanVector = new WordVector("_mean_raw", new double[dims.length]);
-    }
-    
-    double[] vector = new double[dims.length];
-    for(int i = 0; i < dims.length; i++){
-      vector[i] = Double.valueOf(dims[i]);
+    double[] vector = new double[dimensionality > 0 ? dimensionality : line.length()];
+    int dims = 0;
+    int start = wordBreak + 1;
+    while(start <= line.length()){
+      int end = line.indexOf(' ', start);
+      if(end < 0){
+        end = line.length();
+      }
+      if(dims == vector.length){
+        throw new IllegalArgumentException("More than " + dims + " dimensions for " + word);
+      }
+      vector[dims++] = Double.parseDouble(line.substring(start, end));
+      start = end + 1;
+    }
+    add(word, dims == vector.length ? vector : Arrays.copyOf(vector, dims));
+  }
+
+  private void add(String word, double[] vector){
+    if(this.dimensionality == 0){
+      this.dimensionality = vector.length;
+      this.matrix = new float[words.length * dimensionality];
+      this.meanVector = new WordVector("_mean_", new double[dimensionality]);
+      this.rawMeanVector = new WordVector("_mean_raw", new double[dimensionality]);
+    }else if(vector.length != this.dimensionality){
+      throw new IllegalArgumentException(vector.length + " dimensions for " + word + ", expected " + dimensionality);
+    }
+
+    Integer existing = rows.get(word);
+    int row;
+    if(existing == null){
+      ensureCapacity(numWords + 1);
+      row = numWords++;
+      words[row] = word;
+      rows.put(word, row);
+    }else{
+      row = existing;
+    }
+    int offset = row * dimensionality;
+    for(int i = 0; i < vector.length; i++){
+      matrix[offset + i] = (float) vector[i];
       meanVector.vector[i] += vector[i];
     }
-    vectors.put(word, new WordVector(word, vector));
+    updateInverseLength(row);
   }
-  
+
+  private void ensureCapacity(int capacity){
+    if(capacity <= words.length){
+      return;
+    }
+    long grown = Math.max(capacity, words.length + (words.length >> 1));
+    if(grown * dimensionality > Integer.MAX_VALUE - 8){
+      grown = (Integer.MAX_VALUE - 8) / Math.max(dimensionality, 1);
+      if(grown < capacity){
+        throw new IllegalStateException("Too many vectors for one matrix: " + capacity);
+      }
+    }
+    words = Arrays.copyOf(words, (int) grown);
+    matrix = Arrays.copyOf(matrix, (int) grown * dimensionality);
+    inverseLengths = Arrays.copyOf(inverseLengths, (int) grown);
+  }
+
+  private void updateInverseLength(int row){
+    int offset = row * dimensionality;
+    double len = 0;
+    for(int i = 0; i < dimensionality; i++){
+      len += (double) matrix[offset + i] * matrix[offset + i];
+    }
+    inverseLengths[row] = len > 0 ? 1 / Math.sqrt(len) : 0;
+  }
+
+  private int getRow(String word){
+    Integer row = rows.get(word);
+    if(row == null){
+      throw new IllegalArgumentException("No vector for " + word);
+    }
+    return row;
+  }
+
   public boolean containsKey(String word){
-    return vectors.containsKey(word);
+    return rows.containsKey(word);
   }
-  
+
   public WordVector getVector(String word){
-    if(vectors != null){
-      return vectors.get(word);
+    Integer row = rows.get(word);
+    if(row != null){
+      return new WordVector(word, matrix, row * dimensionality, dimensionality);
     }
     return null;
   }
@@ -70,53 +189,147 @@ public class WordEmbeddings {
   public int getDimensionality(){
     return this.dimensionality;
   }
-  
+
+  /**
+   * @return number of words with a vector
+   */
+  public int size(){
+    return this.numWords;
+  }
+
+  String getWord(int row){
+    return words[row];
+  }
+
+  float[] getMatrix(){
+    return matrix;
+  }
+
   public List<String> getSimilarWords(String word, int maxWords) {
-    double[] sims = new double[maxWords];
-    List<String> words = new ArrayList<>(20);
-    Arrays.fill(sims, -1);
-    for(String comp : vectors.keySet()){
-      double sim = getSimilarity(word, comp);
-      if(word.equals(comp)){
-        continue;
-      }else if(words.size() == 0){
-        words.add(comp);
-        sims[0] = sim;
-        continue;
-      }else if(sim < sims[maxWords-1]){
-        // most words won't be greater than the minimum similarity -- quit right away
-        continue;
+    return getSimilarWords(Collections.singletonList(word), maxWords).get(0);
+  }
+
+  /**
+   * Finds the most similar words of several words in one pass over the matrix:
+   * each block of rows is compared to every query word while it is in cache.
+   *
+   * @param queryWords words with a vector
+   * @param maxWords maximum number of similar words per query word
+   * @return for each query word, the most similar other words, most similar first
+   */
+  public List<List<String>> getSimilarWords(List<String> queryWords, int maxWords) {
+    int numQueries = queryWords.size();
+    int[] queryRows = new int[numQueries];
+    float[] queries = new float[numQueries * dimensionality];
+    TopWords[] tops = new TopWords[numQueries];
+    for(int q = 0; q < numQueries; q++){
+      int row = getRow(queryWords.get(q));
+      queryRows[q] = row;
+      for(int i = 0; i < dimensionality; i++){
+        queries[q * dimensionality + i] = (float) (matrix[row * dimensionality + i] * inverseLengths[row]);
       }
-      for(int i = Math.min(maxWords-1, words.size()); i >= 0; i--){
-        // compare the similarity.
-        // if we're here we know that sim > sims[i], just seeing if we can keep going backwards
-        if(i > 0 && sim > sims[i-1]){
-          // shift over the score and the word
-          sims[i] = sims[i-1];
-          if(words.size() <= i){
-            words.add(words.get(i-1));
-          }else{
-            words.set(i, words.get(i-1));
-          }
-        }else{
-          // found our position for our new word:
-          sims[i] = sim;
-          if(words.size() <= i){
-            words.add(comp);
-          }else{
-            words.set(i, comp);
+      tops[q] = new TopWords(maxWords);
+    }
+    for(int blockStart = 0; blockStart < numWords; blockStart += BLOCK_ROWS){
+      int blockEnd = Math.min(blockStart + BLOCK_ROWS, numWords);
+      for(int q = 0; q < numQueries; q++){
+        TopWords top = tops[q];
+        int queryOffset = q * dimensionality;
+        for(int row = blockStart; row < blockEnd; row++){
+          if(row == queryRows[q]){
+            continue;
           }
-          break;
+          float sim = (float) (dot(queries, queryOffset, matrix, row * dimensionality, dimensionality) * inverseLengths[row]);
+          top.offer(row, sim);
         }
       }
     }
-    return words;
+    List<List<String>> similarWords = new ArrayList<>(numQueries);
+    for(TopWords top : tops){
+      similarWords.add(top.getWords());
+    }
+    return similarWords;
+  }
+
+  // four accumulators so that the multiplications are independent and can be pipelined
+  private static float dot(float[] a, int aOffset, float[] b, int bOffset, int length){
+    float sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+    int i = 0;
+    for(; i + 3 < length; i += 4){
+      sum0 += a[aOffset + i] * b[bOffset + i];
+      sum1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+      sum2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+      sum3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+    }
+    for(; i < length; i++){
+      sum0 += a[aOffset + i] * b[bOffset + i];
+    }
+    return (sum0 + sum1) + (sum2 + sum3);
   }
-  
+
   public WordVector getMeanVector(){
     for(int i = 0; i < this.rawMeanVector.getLength(); i++){
-      this.meanVector.vector[i] = this.rawMeanVector.vector[i] / vectors.size();
+      this.meanVector.vector[i] = this.rawMeanVector.vector[i] / rows.size();
     }
     return this.meanVector;
   }
+
+  /**
+   * Min heap of the most similar rows seen so far.
+   */
+  private class TopWords {
+    private final int[] heapRows;
+    private final float[] heapSims;
+    private int size = 0;
+
+    private TopWords(int maxWords){
+      heapRows = new int[Math.max(maxWords, 0)];
+      heapSims = new float[heapRows.length];
+    }
+
+    private void offer(int row, float sim){
+      if(size < heapRows.length){
+        int i = size++;
+        while(i > 0 && heapSims[(i - 1) / 2] > sim){
+          heapRows[i] = heapRows[(i - 1) / 2];
+          heapSims[i] = heapSims[(i - 1) / 2];
+          i = (i - 1) / 2;
+        }
+        heapRows[i] = row;
+        heapSims[i] = sim;
+      }else if(size > 0 && sim > heapSims[0]){
+        int i = 0;
+        while(true){
+          int child = 2 * i + 1;
+          if(child >= size){
+            break;
+          }
+          if(child + 1 < size && heapSims[child + 1] < heapSims[child]){
+            child++;
+          }
+          if(heapSims[child] >= sim){
+            break;
+          }
+          heapRows[i] = heapRows[child];
+          heapSims[i] = heapSims[child];
+          i = child;
+        }
+        heapRows[i] = row;
+        heapSims[i] = sim;
+      }
+    }
+
+    private List<String> getWords(){
+      Integer[] order = new Integer[size];
+      for(int i = 0; i < size; i++){
+        order[i] = i;
+      }
+      Arrays.sort(order, (i1, i2) -> Float.compare(heapSims[i2], heapSims[i1]));
+      List<String> topWords = new ArrayList<>(size);
+      for(int i : order){
+        topWords.add(words[heapRows[i]]);
+      }
+      return topWords;
+    }
+  }
 }
@@ -4,31 +4,42 @@ public class WordVector {
 
   String word;
   double[] vector;
+  // row of an embeddings matrix, when there is no vector
+  float[] matrix;
+  int offset;
   int size;
-  
+
   public WordVector(String word, double[] vector){
     this.word = word;
     this.vector = vector;
     this.size = vector.length;
   }
-  
+
+  WordVector(String word, float[] matrix, int offset, int size){
+    this.word = word;
+    this.matrix = matrix;
+    this.offset = offset;
+    this.size = size;
+  }
+
   public double getValue(int i){
-    if(i >= 0 && i < vector.length){
-      return vector[i];
+    if(i >= 0 && i < size){
+      return vector != null ? vector[i] : matrix[offset + i];
     }else{
       throw new ArrayIndexOutOfBoundsException();
     }
   }
-  
+
   public double getLength(){
     double len = 0;
     for(int i = 0; i < size; i++){
-      len += vector[i]*vector[i];
+      double value = getValue(i);
+      len += value*value;
     }
-    
+
     return Math.sqrt(len);
   }
-  
+
   public int size(){
     return size;
   }
@@ -1,41 +1,100 @@
 package org.apache.ctakes.utils.distsem;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
 import java.util.Scanner;
 
+/**
+ * Reads word vectors in the text format, a line with the number of words and the dimensionality
+ * followed by a line per word with the word and its values separated by spaces,
+ * or in the binary format written by {@link WordVectorWriter}.
+ */
 public class WordVectorReader {
+  // "CTWV"
+  static final int BINARY_MAGIC = 0x43545756;
+  static final int BINARY_VERSION = 1;
+
   private WordEmbeddings embeddings = null;
   private int dimensionality = 0;
   private int numWords = 0;
-  
+
   public WordVectorReader(InputStream in) throws IOException{
-    BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+    BufferedInputStream buffered = new BufferedInputStream(in, 1 << 16);
+    buffered.mark(4);
+    // a text file can be shorter than the magic number
+    byte[] magic = new byte[4];
+    int length = 0;
+    int count;
+    while(length < magic.length && (count = buffered.read(magic, length, magic.length - length)) > 0){
+      length += count;
+    }
+    if(length == magic.length && ByteBuffer.wrap(magic).getInt() == BINARY_MAGIC){
+      DataInputStream data = new DataInputStream(buffered);
+      readBinary(data);
+      data.close();
+      return;
+    }
+    buffered.reset();
+    BufferedReader reader = new BufferedReader(new InputStreamReader(buffered));
     String line = reader.readLine();
     Scanner scanner = new Scanner(line);
     numWords = scanner.nextInt();
     dimensionality = scanner.nextInt();
     scanner.close();
-    embeddings = new WordEmbeddings(dimensionality);
-    
+    // the count is only a capacity hint, some files have a wrong count
+    embeddings = new WordEmbeddings(dimensionality,
+        Math.max(0, Math.min(numWords, Math.min(1 << 20, (Integer.MAX_VALUE - 8) / Math.max(dimensionality, 1)))));
+
     while((line = reader.readLine()) != null){
       embeddings.add(line.trim());
     }
     reader.close();
   }
-  
+
+  private void readBinary(DataInputStream data) throws IOException{
+    int version = data.readInt();
+    if(version != BINARY_VERSION){
+      throw new IOException("Unknown word vector format version " + version);
+    }
+    numWords = data.readInt();
+    dimensionality = data.readInt();
+    long values = (long) numWords * dimensionality;
+    if(numWords < 0 || dimensionality < 0 || values > Integer.MAX_VALUE - 8){
+      throw new IOException("Invalid word vector header: " + numWords + " words of " + dimensionality + " dimensions");
+    }
+    float[] matrix = new float[(int) values];
+    byte[] buffer = new byte[1 << 16];
+    ByteBuffer bytes = ByteBuffer.wrap(buffer);
+    int read = 0;
+    while(read < matrix.length){
+      int count = Math.min(buffer.length / 4, matrix.length - read);
+      data.readFully(buffer, 0, count * 4);
+      bytes.clear();
+      bytes.asFloatBuffer().get(matrix, read, count);
+      read += count;
+    }
+    String[] words = new String[numWords];
+    for(int i = 0; i < numWords; i++){
+      words[i] = data.readUTF();
+    }
+    embeddings = new WordEmbeddings(words, matrix, dimensionality);
+  }
+
   public WordEmbeddings getEmbeddings(){
     return this.embeddings;
   }
-  
+
   public static WordEmbeddings getEmbeddings(String fn) throws IOException{
     WordVectorReader reader = new WordVectorReader(new FileInputStream(fn));
     return reader.getEmbeddings();
   }
-  
+
   public static WordEmbeddings getEmbeddings(InputStream in) throws IOException {
     WordVectorReader reader = new WordVectorReader(in);
     return reader.getEmbeddings();
@@ -0,0 +1,62 @@
+package org.apache.ctakes.utils.distsem;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes word vectors in a binary format that loads without parsing: a header with a magic number,
+ * the format version, the number of words and the dimensionality, the float matrix of the vectors
+ * (big-endian, a row per word) and then the words.
+ * {@link WordVectorReader} reads both this format and the text format.
+ */
+public class WordVectorWriter {
+
+  public static void write(WordEmbeddings embeddings, OutputStream out) throws IOException{
+    DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+    int numWords = embeddings.size();
+    int dimensionality = embeddings.getDimensionality();
+    data.writeInt(WordVectorReader.BINARY_MAGIC);
+    data.writeInt(WordVectorReader.BINARY_VERSION);
+    data.writeInt(numWords);
+    data.writeInt(dimensionality);
+    float[] matrix = embeddings.getMatrix();
+    byte[] buffer = new byte[1 << 16];
+    ByteBuffer bytes = ByteBuffer.wrap(buffer);
+    int length = numWords * dimensionality;
+    for(int written = 0; written < length; ){
+      int count = Math.min(buffer.length / 4, length - written);
+      bytes.clear();
+      bytes.asFloatBuffer().put(matrix, written, count);
+      data.write(buffer, 0, count * 4);
+      written += count;
+    }
+    for(int row = 0; row < numWords; row++){
+      data.writeUTF(embeddings.getWord(row));
+    }
+    data.flush();
+  }
+
+  public static void write(WordEmbeddings embeddings, String fn) throws IOException{
+    try(OutputStream out = new FileOutputStream(fn)){
+      write(embeddings, out);
+    }
+  }
+
+  /**
+   * Converts word vectors to the binary format.
+   * @param args text or binary word vectors file, binary word vectors file to write
+   */
+  public static void main(String[] args) throws IOException{
+    if(args.length != 2){
+      System.err.println("Usage: WordVectorWriter <input vectors> <output binary vectors>");
+      System.exit(1);
+    }
+    WordEmbeddings embeddings = WordVectorReader.getEmbeddings(args[0]);
+    write(embeddings, args[1]);
+    System.out.println("Wrote " + embeddings.size() + " vectors of " + embeddings.getDimensionality() + " dimensions to " + args[1]);
+  }
+}
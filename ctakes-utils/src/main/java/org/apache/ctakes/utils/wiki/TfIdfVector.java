@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.utils.wiki;
+
+/**
+ * A sparse tf-idf vector with its terms in sorted order,
+ * so that the dot product of two vectors is a merge of their term arrays.
+ */
+final class TfIdfVector {
+
+  static final TfIdfVector EMPTY = new TfIdfVector(new String[0], new double[0]);
+
+  private final String[] terms;
+  private final double[] weights;
+  private final double norm;
+
+  /**
+   * @param terms terms in sorted order
+   * @param weights tf-idf weight of each term
+   */
+  TfIdfVector(String[] terms, double[] weights) {
+  	this.terms = terms;
+  	this.weights = weights;
+  	double sumOfSquares = 0;
+  	for(double tfidf : weights) {
+  		sumOfSquares = sumOfSquares + tfidf*tfidf;
+  	}
+  	this.norm = ApproximateMath.asqrt(sumOfSquares);
+  }
+
+  int size() {
+  	return terms.length;
+  }
+
+  double getDotProduct(TfIdfVector other) {
+  	double dotProduct = 0;
+  	int i = 0;
+  	int j = 0;
+  	while(i < terms.length && j < other.terms.length) {
+  		int cmp = terms[i].compareTo(other.terms[j]);
+  		if(cmp == 0) {
+  			dotProduct = dotProduct + weights[i] * other.weights[j];
+  			i++;
+  			j++;
+  		} else if(cmp < 0) {
+  			i++;
+  		} else {
+  			j++;
+  		}
+  	}
+  	return dotProduct;
+  }
+
+  double getCosineSimilarity(TfIdfVector other) {
+  	return getDotProduct(other) / (norm * other.norm);
+  }
+}
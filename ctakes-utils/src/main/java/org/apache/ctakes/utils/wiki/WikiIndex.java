@@ -21,7 +21,11 @@ package org.apache.ctakes.utils.wiki;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.ctakes.utils.struct.CounterMap;
@@ -46,6 +50,9 @@ import org.apache.lucene.util.Version;
 
 /**
  * A wrapper for a wikipedia lucene index.
+ * <p>
+ * The tf-idf vectors of query texts are cached, and indexes opened on the same path
+ * share one index reader and searcher.  Similarities can be computed by several threads at once.
  * 
  * @author dmitriy dligach
  *
@@ -55,20 +62,27 @@ public class WikiIndex {
 	public static int defaultMaxHits = 10;
 	public static String defaultIndexPath = "/home/dima/i2b2/wiki-index/index_nometa";
 	public static String defaultSearchField = "text";
+	// total number of terms in the cached tf-idf vectors
+	public static int defaultMaxCachedTerms = 1000000;
+
+	// readers shared by the indexes opened on the same path
+	private static final Map<String, SharedReader> sharedReaders = new HashMap<String, SharedReader>();
 
 	private int maxHits;
 	private String indexPath;
 	private String searchField;
 
+	private String sharedPath;
 	private IndexReader indexReader;
 	private IndexSearcher indexSearcher;
 	private Analyzer standardAnalyzer;
-	private QueryParser queryParser;
+	// query parsers are not thread safe
+	private ThreadLocal<QueryParser> queryParser;
+	private ThreadLocal<QueryParser> redirectQueryParser;
 	private DefaultSimilarity similarity;
 	private int numDocs;
   	
-  private boolean useCache = true;
-  private Cache lastQuery = null;
+  private VectorCache cache = new VectorCache(defaultMaxCachedTerms);
   
   public WikiIndex(int maxHits, String indexPath, String searchField, boolean approximate) {
   	this.maxHits = maxHits;
@@ -85,16 +99,36 @@ public class WikiIndex {
   	maxHits = defaultMaxHits;
   	indexPath = defaultIndexPath;
   	searchField = defaultSearchField;
+  	similarity = new DefaultSimilarity();
   }
   
   public void initialize() throws CorruptIndexException, IOException {
 
-  	indexReader = IndexReader.open(FSDirectory.open(new File(indexPath)));
+  	sharedPath = new File(indexPath).getCanonicalPath();
+  	SharedReader sharedReader = acquireReader(sharedPath);
+  	indexReader = sharedReader.indexReader;
+  	indexSearcher = sharedReader.indexSearcher;
   	numDocs = indexReader.numDocs();
-  	indexSearcher = new IndexSearcher(indexReader);
   	standardAnalyzer = new StandardAnalyzer(Version.LUCENE_40);
-  	queryParser = new QueryParser(Version.LUCENE_40, searchField, standardAnalyzer);
-  	lastQuery = new Cache();
+  	queryParser = new ThreadLocal<QueryParser>() {
+  		@Override
+  		protected QueryParser initialValue() {
+  			return new QueryParser(Version.LUCENE_40, searchField, standardAnalyzer);
+  		}
+  	};
+  	redirectQueryParser = new ThreadLocal<QueryParser>() {
+  		@Override
+  		protected QueryParser initialValue() {
+  			return new QueryParser(Version.LUCENE_30, "title", standardAnalyzer);
+  		}
+  	};
+  }
+
+  /**
+   * @param maxCachedTerms maximum total number of terms in the cached tf-idf vectors, 0 to disable the cache
+   */
+  public void setMaxCachedTerms(int maxCachedTerms) {
+  	cache = maxCachedTerms > 0 ? new VectorCache(maxCachedTerms) : null;
   }
   
   /**
@@ -106,7 +140,7 @@ public class WikiIndex {
   	ArrayList<SearchResult> articleTitles = new ArrayList<SearchResult>();
   	
   	String escaped = QueryParser.escape(queryText);
-  	Query query = queryParser.parse(escaped);
+  	Query query = queryParser.get().parse(escaped);
   	
   	ScoreDoc[] scoreDocs = indexSearcher.search(query, null, maxHits).scoreDocs;
   	for(ScoreDoc scoreDoc : scoreDocs) {
@@ -145,54 +179,72 @@ public class WikiIndex {
    * Return cosine similarity between the two tfidf vectors.
    */
   public double getCosineSimilarity(String queryText1, String queryText2) throws ParseException, IOException {
-	  HashMap<String, Double> vector1  = null;
-	  if(useCache && lastQuery.t1 != null && lastQuery.t1.equals(queryText1)){
-		  vector1 = lastQuery.v1;
-	  }else if(useCache && lastQuery.t2 != null && lastQuery.t2.equals(queryText1)){
-		  vector1 = lastQuery.v2;
-	  }else{
-		  // start from scratch
-		  ArrayList<Terms> termFreqVectors1 = getTermFreqVectors(queryText1);
-		  if(termFreqVectors1.size() == 0) return 0;
-		  vector1 = makeTfIdfVector(termFreqVectors1);
-	  }
-	  
+	  TfIdfVector vector1 = getTfIdfVector(queryText1);
 	  if(vector1.size() == 0) {
-		  return 0; // e.g. redirects to a non-existent page
+		  return 0; // no hits, or e.g. redirects to a non-existent page
 	  }
-	  
-	  HashMap<String, Double> vector2 = null;
-	  if(useCache && lastQuery.t1 != null && lastQuery.t1.equals(queryText2)){
-		  vector2 = lastQuery.v1;
-	  }else if(useCache && lastQuery.t2 != null && lastQuery.t2.equals(queryText2)){
-		  vector2 = lastQuery.v2;
-	  }else{	  
-		  ArrayList<Terms> termFreqVectors2 = getTermFreqVectors(queryText2);
-		  if(termFreqVectors2.size() == 0) return 0;
-		  vector2 = makeTfIdfVector(termFreqVectors2);
-	  }
-	  
+
+	  TfIdfVector vector2 = getTfIdfVector(queryText2);
 	  if(vector2.size() == 0) {
-		  return 0; // e.g. redirects to a non-existent page
+		  return 0; // no hits, or e.g. redirects to a non-existent page
 	  }
 
-	  if(useCache){
-		  lastQuery.t1 = queryText1;
-		  lastQuery.v1 = vector1;
-		  lastQuery.t2 = queryText2;
-		  lastQuery.v2 = vector2;
+	  return vector1.getCosineSimilarity(vector2);
+  }
+
+  /**
+   * Compute the cosine similarities of many pairs of queries.
+   * The tfidf vector of each distinct query text is formed once.
+   * Return the similarity of each pair, in the order of the pairs.
+   */
+  public double[] getCosineSimilarities(List<String> queryTexts1, List<String> queryTexts2) throws ParseException, IOException {
+	  if(queryTexts1.size() != queryTexts2.size()) {
+		  throw new IllegalArgumentException("Different numbers of queries: " + queryTexts1.size() + " and " + queryTexts2.size());
+	  }
+	  Map<String, TfIdfVector> vectors = new HashMap<String, TfIdfVector>();
+	  double[] similarities = new double[queryTexts1.size()];
+	  for(int i = 0; i < similarities.length; i++) {
+		  TfIdfVector vector1 = getTfIdfVector(queryTexts1.get(i), vectors);
+		  if(vector1.size() == 0) {
+			  continue;
+		  }
+		  TfIdfVector vector2 = getTfIdfVector(queryTexts2.get(i), vectors);
+		  if(vector2.size() == 0) {
+			  continue;
+		  }
+		  similarities[i] = vector1.getCosineSimilarity(vector2);
 	  }
+	  return similarities;
+  }
 
-	  double dotProduct = computeDotProduct(vector1, vector2);
-	  double norm1 = computeEuclideanNorm(vector1);
-	  double norm2 = computeEuclideanNorm(vector2);
+  private TfIdfVector getTfIdfVector(String queryText, Map<String, TfIdfVector> vectors) throws ParseException, IOException {
+	  TfIdfVector vector = vectors.get(queryText);
+	  if(vector == null) {
+		  vector = getTfIdfVector(queryText);
+		  vectors.put(queryText, vector);
+	  }
+	  return vector;
+  }
 
-	  return dotProduct / (norm1 * norm2);
+  /**
+   * Form the tfidf vector of the N top matching documents of a query, or take it from the cache.
+   */
+  private TfIdfVector getTfIdfVector(String queryText) throws ParseException, IOException {
+	  VectorCache vectorCache = cache;
+	  TfIdfVector vector = vectorCache == null ? null : vectorCache.getVector(queryText);
+	  if(vector == null) {
+		  ArrayList<Terms> termFreqVectors = getTermFreqVectors(queryText);
+		  vector = termFreqVectors.size() == 0 ? TfIdfVector.EMPTY : makeTfIdfVector(termFreqVectors);
+		  if(vectorCache != null) {
+			  vectorCache.putVector(queryText, vector);
+		  }
+	  }
+	  return vector;
   }
 
   public ArrayList<Terms> getTermFreqVectors(String queryString) throws ParseException, IOException{
 	  	String escaped = QueryParser.escape(queryString);
-	  	Query query = queryParser.parse(escaped);
+	  	Query query = queryParser.get().parse(escaped);
 	  	ScoreDoc[] scoreDocs = indexSearcher.search(query, maxHits).scoreDocs;
 
 	  	ArrayList<Terms> termFreqVectors = new ArrayList<Terms>();
@@ -290,12 +342,10 @@ public class WikiIndex {
   		return scoreDoc; 
   	}
   	
-  	QueryParser redirectQueryParser = new QueryParser(Version.LUCENE_30, "title", standardAnalyzer);
-
   	String redirectTitleNoUnderscores = redirectTitle.replaceAll("_", " ");
   	String redirectTitleQuoted = '"' + redirectTitleNoUnderscores + '"';
   	String redirectTitleEscaped = QueryParser.escape(redirectTitleQuoted);
-  	Query redirectQuery  = redirectQueryParser.parse(redirectTitleEscaped);
+  	Query redirectQuery  = redirectQueryParser.get().parse(redirectTitleEscaped);
 
   	ScoreDoc[] redirectScoreDocs = indexSearcher.search(redirectQuery, null, 1).scoreDocs; 
   	if(redirectScoreDocs.length < 1) {
@@ -309,23 +359,19 @@ public class WikiIndex {
   }
   
   /**
-   * Return a hash table that maps terms to their tfidf values.
-   * The input is a list of TermFreqVector objects. The return
-   * value is formed by summing up individual tfidf vectors.
+   * Return a sparse vector of terms and their tfidf values.
+   * The input is a list of TermFreqVector objects. The tf of a term
+   * is the number of documents in the list that contain it.
    */
-  private HashMap<String, Double> makeTfIdfVector(ArrayList<Terms> termFreqVectors) throws IOException {
+  private TfIdfVector makeTfIdfVector(ArrayList<Terms> termFreqVectors) throws IOException {
 
-  	// map terms to their tfidf values
 	  CounterMap<String> countVector = new CounterMap<String>();
-  	HashMap<String, Double> tfIdfVector = new HashMap<String, Double>(); 
 
   	for(Terms terms : termFreqVectors) {
   		if(terms == null) {
   			continue; // some documents are empty
   		}
   		
-//  		String[] terms = termFreqVector.getTerms();
-//  		int[] freqs = termFreqVector.getTermFrequencies();
   		TermsEnum termsEnum = terms.iterator(null);
 
   		while(termsEnum.next() != null){
@@ -333,60 +379,19 @@ public class WikiIndex {
   			String termStr = term.utf8ToString();
   			countVector.add(termStr);
   		}
-  		
-  		for(String key : countVector.keySet()){
-  			double tf = similarity.tf((long)countVector.get(key));
-  			double idf = similarity.idf(indexReader.docFreq(new Term("text", key)), numDocs);
-  			tfIdfVector.put(key, tf*idf);
-  		}
-/*  		for(int i = 0; i < terms.length; i++) {
-  			double tf = similarity.tf(freqs[i]); // defaultSimilarity.tf(freqs[i]);
-  			double idf = similarity.idf(indexReader.docFreq(new Term("text", terms[i])), numDocs);
-  			
-  			if(tfIdfVector.containsKey(terms[i])) {
-  				tfIdfVector.put(terms[i], tfIdfVector.get(terms[i]) + tf * idf);
-  			}
-  			else {
-  				tfIdfVector.put(terms[i], tf * idf);
-  			}
-  		} */
   	}
-  	return tfIdfVector;
-  }
-  
-  private double computeEuclideanNorm(HashMap<String, Double> tfIdfVector) {
-  	
-  	double sumOfSquares = 0;
-  	
-  	for(double tfidf : tfIdfVector.values()) {
-  		sumOfSquares = sumOfSquares + tfidf*tfidf;  //Math.pow(tfidf, 2);
+
+  	String[] terms = countVector.keySet().toArray(new String[countVector.size()]);
+  	Arrays.sort(terms);
+  	double[] tfIdfs = new double[terms.length];
+  	for(int i = 0; i < terms.length; i++){
+  		double tf = similarity.tf((long)countVector.get(terms[i]));
+  		double idf = similarity.idf(indexReader.docFreq(new Term("text", terms[i])), numDocs);
+  		tfIdfs[i] = tf*idf;
   	}
-  	
-  	return ApproximateMath.asqrt(sumOfSquares);
+  	return new TfIdfVector(terms, tfIdfs);
   }
   
-  private double computeDotProduct(HashMap<String, Double> vector1, HashMap<String, Double> vector2) {
-  	
-  	double dotProduct = 0;
-  	Map<String, Double> smallSet = null;
-  	Map<String, Double> largeSet = null;
-  	if(vector1.size() > vector2.size()){
-  		smallSet = vector2;
-  		largeSet = vector1;
-  	}else{
-  		smallSet = vector1;
-  		largeSet = vector2;
-  	}
-  	
-  	for(String term : smallSet.keySet()) {
-  		if(largeSet.containsKey(term)) {
-  			dotProduct = dotProduct + smallSet.get(term) * largeSet.get(term);
-  		}
-  	}
-  	
-  	return dotProduct;
-  }
-
   private HashMap<String, Double> addVectors(HashMap<String, Double> vector1, HashMap<String, Double> vector2) {
   	
   	HashMap<String, Double> sum = new HashMap<String, Double>();
@@ -411,15 +416,75 @@ public class WikiIndex {
   
   public void close() throws IOException {
   	
-  	indexReader.close();
+  	releaseReader(sharedPath);
 //  	indexSearcher.close();
   	standardAnalyzer.close();
   }
-}
 
-class Cache{
-	String t1 = null;
-	String t2 = null;
-	HashMap<String,Double> v1 = null;
-	HashMap<String,Double> v2 = null;
+  private static synchronized SharedReader acquireReader(String path) throws IOException {
+  	SharedReader sharedReader = sharedReaders.get(path);
+  	if(sharedReader == null) {
+  		IndexReader indexReader = IndexReader.open(FSDirectory.open(new File(path)));
+  		sharedReader = new SharedReader(indexReader, new IndexSearcher(indexReader));
+  		sharedReaders.put(path, sharedReader);
+  	}
+  	sharedReader.references++;
+  	return sharedReader;
+  }
+
+  private static synchronized void releaseReader(String path) throws IOException {
+  	SharedReader sharedReader = sharedReaders.get(path);
+  	if(sharedReader != null && --sharedReader.references == 0) {
+  		sharedReaders.remove(path);
+  		sharedReader.indexReader.close();
+  	}
+  }
+
+  /**
+   * An index reader and searcher, with the number of indexes using them.
+   */
+  private static final class SharedReader {
+  	private final IndexReader indexReader;
+  	private final IndexSearcher indexSearcher;
+  	private int references = 0;
+
+  	private SharedReader(IndexReader indexReader, IndexSearcher indexSearcher) {
+  		this.indexReader = indexReader;
+  		this.indexSearcher = indexSearcher;
+  	}
+  }
+
+  /**
+   * Least recently used tf-idf vectors of query texts, bounded by their total number of terms.
+   */
+  static final class VectorCache {
+  	private final int maxTerms;
+  	private final LinkedHashMap<String, TfIdfVector> vectors = new LinkedHashMap<String, TfIdfVector>(16, 0.75f, true);
+  	private long terms = 0;
+
+  	VectorCache(int maxTerms) {
+  		this.maxTerms = maxTerms;
+  	}
+
+  	synchronized TfIdfVector getVector(String queryText) {
+  		return vectors.get(queryText);
+  	}
+
+  	synchronized void putVector(String queryText, TfIdfVector vector) {
+  		int size = Math.max(vector.size(), 1);
+  		if(size > maxTerms) {
+  			return;
+  		}
+  		TfIdfVector previous = vectors.put(queryText, vector);
+  		if(previous != null) {
+  			terms -= Math.max(previous.size(), 1);
+  		}
+  		terms += size;
+  		Iterator<TfIdfVector> eldest = vectors.values().iterator();
+  		while(terms > maxTerms) {
+  			terms -= Math.max(eldest.next().size(), 1);
+  			eldest.remove();
+  		}
+  	}
+  }
 }
@@ -0,0 +1,82 @@
+package org.apache.ctakes.utils.distsem;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the most similar words found by scanning the matrix against a sort of the similarities of every word.
+ */
+public class WordEmbeddingsTest {
+
+  /**
+   * @return the other words sorted by their similarity to the word, most similar first
+   */
+  private static List<String> sortBySimilarity(WordEmbeddings embeddings, List<String> words, String word){
+    List<String> others = new ArrayList<>(words);
+    others.remove(word);
+    others.sort((w1, w2) -> Double.compare(embeddings.getSimilarity(word, w2), embeddings.getSimilarity(word, w1)));
+    return others;
+  }
+
+  /*
+   * The scan compares float similarities, so words with almost the same similarity can swap places.
+   */
+  private static void assertSimilarWords(WordEmbeddings embeddings, String word, List<String> expected,
+      List<String> actual){
+    assertEquals(expected.size(), actual.size());
+    for(int i = 0; i < expected.size(); i++){
+      assertEquals(embeddings.getSimilarity(word, expected.get(i)), embeddings.getSimilarity(word, actual.get(i)), 1e-5);
+    }
+  }
+
+  @Test
+  public void testSimilarWords() throws IOException{
+    // more words than a block of rows, and a dimensionality that is not a multiple of four
+    WordEmbeddings embeddings = WordVectorReaderTest.read(WordVectorReaderTest.createText(new Random(17), 1000, 51));
+    List<String> words = new ArrayList<>();
+    for(int i = 0; i < 1000; i++){
+      words.add("word" + i);
+    }
+    List<String> queryWords = Arrays.asList("word0", "word255", "word256", "word999", "word42");
+    for(int maxWords : new int[]{ 0, 1, 10, 300, 999, 2000 }){
+      List<List<String>> batched = embeddings.getSimilarWords(queryWords, maxWords);
+      assertEquals(queryWords.size(), batched.size());
+      for(int q = 0; q < queryWords.size(); q++){
+        String word = queryWords.get(q);
+        List<String> sorted = sortBySimilarity(embeddings, words, word);
+        List<String> expected = sorted.subList(0, Math.min(maxWords, sorted.size()));
+        assertSimilarWords(embeddings, word, expected, batched.get(q));
+        assertEquals(batched.get(q), embeddings.getSimilarWords(word, maxWords));
+      }
+    }
+  }
+
+  @Test
+  public void testSimilarity(){
+    WordEmbeddings embeddings = new WordEmbeddings(3);
+    embeddings.add("a 1 0 0");
+    embeddings.add("b 1 1 0");
+    embeddings.add("c -2 0 0");
+    embeddings.add("d 0 0 0");
+    assertEquals(4, embeddings.size());
+    assertEquals(Math.sqrt(0.5), embeddings.getSimilarity("a", "b"), 1e-12);
+    assertEquals(-1, embeddings.getSimilarity("a", "c"), 1e-12);
+    assertEquals(0, embeddings.getSimilarity("a", "d"), 0);
+    assertEquals(Arrays.asList("b", "d", "c"), embeddings.getSimilarWords("a", 3));
+    assertEquals(Arrays.asList("b", "d"), embeddings.getSimilarWords("a", 2));
+
+    // a word added again replaces its vector
+    embeddings.add("c 2 0 0");
+    assertEquals(4, embeddings.size());
+    assertEquals(1, embeddings.getSimilarity("a", "c"), 1e-12);
+    assertTrue(embeddings.getSimilarWords("a", 1).contains("c"));
+  }
+}
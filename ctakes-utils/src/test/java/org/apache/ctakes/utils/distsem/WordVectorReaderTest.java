@@ -0,0 +1,105 @@
+package org.apache.ctakes.utils.distsem;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that word vectors written in the binary format are read back as they were read from the text format.
+ */
+public class WordVectorReaderTest {
+
+  /**
+   * @return word vectors in the text format with values that are exact floats
+   */
+  static String createText(Random random, int numWords, int dim){
+    StringBuilder sb = new StringBuilder();
+    sb.append(numWords).append(' ').append(dim).append('\n');
+    for(int i = 0; i < numWords; i++){
+      sb.append("word").append(i);
+      for(int j = 0; j < dim; j++){
+        sb.append(' ').append((float) random.nextGaussian());
+      }
+      sb.append('\n');
+    }
+    return sb.toString();
+  }
+
+  static WordEmbeddings read(String text) throws IOException{
+    return WordVectorReader.getEmbeddings(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  public void testBinaryRoundTrip() throws IOException{
+    String text = createText(new Random(39), 700, 50);
+    WordEmbeddings embeddings = read(text);
+    assertEquals(700, embeddings.size());
+    assertEquals(50, embeddings.getDimensionality());
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    WordVectorWriter.write(embeddings, out);
+    WordEmbeddings binary = WordVectorReader.getEmbeddings(new ByteArrayInputStream(out.toByteArray()));
+    assertEquals(embeddings.size(), binary.size());
+    assertEquals(embeddings.getDimensionality(), binary.getDimensionality());
+
+    List<String> words = new ArrayList<>();
+    for(String line : text.split("\n")){
+      String[] values = line.split(" ");
+      if(values.length == 2){
+        continue;
+      }
+      String word = values[0];
+      words.add(word);
+      WordVector vector = binary.getVector(word);
+      assertEquals(50, vector.size());
+      for(int i = 0; i < vector.size(); i++){
+        assertEquals(Float.parseFloat(values[i + 1]), vector.getValue(i), 0);
+        assertEquals(embeddings.getVector(word).getValue(i), vector.getValue(i), 0);
+      }
+      assertEquals(embeddings.getVector(word).getLength(), vector.getLength(), 0);
+    }
+    assertEquals(embeddings.getSimilarity("word1", "word2"), binary.getSimilarity("word1", "word2"), 0);
+    assertEquals(embeddings.getSimilarWords(words.subList(0, 20), 10), binary.getSimilarWords(words.subList(0, 20), 10));
+    assertFalse(binary.containsKey("word700"));
+  }
+
+  @Test
+  public void testEmptyBinaryRoundTrip() throws IOException{
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    WordVectorWriter.write(read("0 3\n"), out);
+    WordEmbeddings binary = WordVectorReader.getEmbeddings(new ByteArrayInputStream(out.toByteArray()));
+    assertEquals(0, binary.size());
+    assertEquals(3, binary.getDimensionality());
+  }
+
+  @Test
+  public void testShortTextFile() throws IOException{
+    // shorter than the magic number of the binary format
+    WordEmbeddings embeddings = read("0 3");
+    assertEquals(0, embeddings.size());
+    assertEquals(3, embeddings.getDimensionality());
+
+    embeddings = read("1 1\na 2");
+    assertTrue(embeddings.containsKey("a"));
+    assertEquals(2, embeddings.getVector("a").getValue(0), 0);
+  }
+
+  @Test(expected = IOException.class)
+  public void testTruncatedBinaryFile() throws IOException{
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    WordVectorWriter.write(read(createText(new Random(3), 10, 4)), out);
+    byte[] bytes = out.toByteArray();
+    WordVectorReader.getEmbeddings(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length / 2)));
+  }
+}
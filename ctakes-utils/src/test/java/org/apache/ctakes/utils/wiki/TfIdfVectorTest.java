@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.utils.wiki;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * Checks the cosine similarity of sorted tf-idf vectors against the map lookups that WikiIndex used before.
+ */
+public class TfIdfVectorTest {
+
+	private static Map<String, Double> createVector(Random random, int numTerms) {
+		Map<String, Double> vector = new HashMap<String, Double>();
+		for(int i = 0; i < numTerms; i++) {
+			vector.put("t" + random.nextInt(200), random.nextDouble() * 5);
+		}
+		return vector;
+	}
+
+	private static TfIdfVector toTfIdfVector(Map<String, Double> vector) {
+		TreeMap<String, Double> sorted = new TreeMap<String, Double>(vector);
+		String[] terms = sorted.keySet().toArray(new String[sorted.size()]);
+		double[] weights = new double[terms.length];
+		for(int i = 0; i < terms.length; i++) {
+			weights[i] = sorted.get(terms[i]);
+		}
+		return new TfIdfVector(terms, weights);
+	}
+
+	private static double getCosineSimilarity(Map<String, Double> vector1, Map<String, Double> vector2) {
+		double dotProduct = 0;
+		for(String term : vector1.keySet()) {
+			if(vector2.containsKey(term)) {
+				dotProduct = dotProduct + vector1.get(term) * vector2.get(term);
+			}
+		}
+		return dotProduct / (getNorm(vector1) * getNorm(vector2));
+	}
+
+	private static double getNorm(Map<String, Double> vector) {
+		double sumOfSquares = 0;
+		for(double tfidf : vector.values()) {
+			sumOfSquares = sumOfSquares + tfidf*tfidf;
+		}
+		return ApproximateMath.asqrt(sumOfSquares);
+	}
+
+	@Test
+	public void testCosineSimilarity() {
+		Random random = new Random(40);
+		for(int i = 0; i < 500; i++) {
+			Map<String, Double> vector1 = createVector(random, 1 + random.nextInt(100));
+			Map<String, Double> vector2 = createVector(random, 1 + random.nextInt(100));
+			TfIdfVector tfIdfVector1 = toTfIdfVector(vector1);
+			TfIdfVector tfIdfVector2 = toTfIdfVector(vector2);
+			assertEquals(vector1.size(), tfIdfVector1.size());
+			double expected = getCosineSimilarity(vector1, vector2);
+			assertEquals(expected, tfIdfVector1.getCosineSimilarity(tfIdfVector2), 1e-12);
+			assertEquals(expected, tfIdfVector2.getCosineSimilarity(tfIdfVector1), 1e-12);
+		}
+	}
+
+	@Test
+	public void testNoCommonTerms() {
+		TfIdfVector vector1 = new TfIdfVector(new String[] { "a", "c", "e" }, new double[] { 1, 2, 3 });
+		TfIdfVector vector2 = new TfIdfVector(new String[] { "b", "d", "f" }, new double[] { 1, 2, 3 });
+		assertEquals(0, vector1.getCosineSimilarity(vector2), 0);
+		assertEquals(0, TfIdfVector.EMPTY.size());
+	}
+}
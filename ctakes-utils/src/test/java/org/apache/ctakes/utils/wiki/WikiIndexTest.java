@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.utils.wiki;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.similarities.DefaultSimilarity;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.Version;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that similarities computed with cached tf-idf vectors, with a cache small enough to evict vectors
+ * and without a cache are the same as similarities of tf-idf vectors formed from the term vectors of the hits.
+ */
+public class WikiIndexTest {
+
+	private static final String[] WORDS = { "heart", "disease", "aspirin", "pain", "chest", "liver", "transplant",
+			"dialysis", "kidney", "smoking", "lung", "cancer", "fever", "ibuprofen", "tylenol", "blood" };
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * @return directory of an index of articles with random texts, and a few redirects
+	 */
+	private File createIndex(Random random) throws IOException {
+		File indexDir = folder.newFolder("index");
+		FieldType textType = new FieldType(TextField.TYPE_STORED);
+		textType.setStoreTermVectors(true);
+		IndexWriter writer = new IndexWriter(FSDirectory.open(indexDir),
+				new IndexWriterConfig(Version.LUCENE_40, new StandardAnalyzer(Version.LUCENE_40)));
+		for(int i = 0; i < 60; i++) {
+			StringBuilder text = new StringBuilder();
+			for(int j = 5 + random.nextInt(30); j > 0; j--) {
+				text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+			}
+			Document doc = new Document();
+			doc.add(new TextField("title", "Article " + i, Field.Store.YES));
+			doc.add(new Field("text", text.toString(), textType));
+			writer.addDocument(doc);
+		}
+		for(int i = 0; i < 3; i++) {
+			Document doc = new Document();
+			doc.add(new TextField("title", "Redirect " + i, Field.Store.YES));
+			doc.add(new Field("text", WORDS[i] + " " + WORDS[i + 1], textType));
+			doc.add(new StoredField("redirect", "Article_" + (i * 7)));
+			writer.addDocument(doc);
+		}
+		writer.close();
+		return indexDir;
+	}
+
+	/**
+	 * Forms the tf-idf vector of the hits of a query in a map, as WikiIndex did before it cached sorted vectors.
+	 */
+	private static Map<String, Double> makeTfIdfVector(WikiIndex index, IndexReader reader, String queryText)
+			throws ParseException, IOException {
+		DefaultSimilarity similarity = new DefaultSimilarity();
+		Map<String, Integer> counts = new HashMap<String, Integer>();
+		for(Terms terms : index.getTermFreqVectors(queryText)) {
+			if(terms == null) {
+				continue;
+			}
+			TermsEnum termsEnum = terms.iterator(null);
+			BytesRef term;
+			while((term = termsEnum.next()) != null) {
+				String termStr = term.utf8ToString();
+				counts.put(termStr, counts.containsKey(termStr) ? counts.get(termStr) + 1 : 1);
+			}
+		}
+		Map<String, Double> vector = new HashMap<String, Double>();
+		for(Map.Entry<String, Integer> count : counts.entrySet()) {
+			double tf = similarity.tf((long)count.getValue());
+			double idf = similarity.idf(reader.docFreq(new Term("text", count.getKey())), reader.numDocs());
+			vector.put(count.getKey(), tf*idf);
+		}
+		return vector;
+	}
+
+	private static double getCosineSimilarity(Map<String, Double> vector1, Map<String, Double> vector2) {
+		if(vector1.isEmpty() || vector2.isEmpty()) {
+			return 0;
+		}
+		double dotProduct = 0;
+		double sumOfSquares1 = 0;
+		double sumOfSquares2 = 0;
+		for(Map.Entry<String, Double> entry : vector1.entrySet()) {
+			Double weight2 = vector2.get(entry.getKey());
+			if(weight2 != null) {
+				dotProduct = dotProduct + entry.getValue() * weight2;
+			}
+			sumOfSquares1 = sumOfSquares1 + entry.getValue() * entry.getValue();
+		}
+		for(double weight2 : vector2.values()) {
+			sumOfSquares2 = sumOfSquares2 + weight2 * weight2;
+		}
+		return dotProduct / (ApproximateMath.asqrt(sumOfSquares1) * ApproximateMath.asqrt(sumOfSquares2));
+	}
+
+	private static String createQuery(Random random) {
+		if(random.nextInt(10) == 0) {
+			return "unindexed";
+		}
+		String query = WORDS[random.nextInt(WORDS.length)];
+		return random.nextBoolean() ? query : query + " " + WORDS[random.nextInt(WORDS.length)];
+	}
+
+	private static WikiIndex openIndex(File indexDir, int maxCachedTerms) throws IOException {
+		WikiIndex index = new WikiIndex(5, indexDir.getPath(), "text");
+		index.setMaxCachedTerms(maxCachedTerms);
+		index.initialize();
+		return index;
+	}
+
+	@Test
+	public void testCachedSimilarities() throws Exception {
+		Random random = new Random(40);
+		File indexDir = createIndex(random);
+		WikiIndex cached = openIndex(indexDir, WikiIndex.defaultMaxCachedTerms);
+		WikiIndex evicting = openIndex(indexDir, 40);
+		WikiIndex uncached = openIndex(indexDir, 0);
+		IndexReader reader = IndexReader.open(FSDirectory.open(indexDir));
+
+		List<String> queryTexts1 = new ArrayList<String>();
+		List<String> queryTexts2 = new ArrayList<String>();
+		List<Double> expected = new ArrayList<Double>();
+		int numSimilar = 0;
+		for(int i = 0; i < 200; i++) {
+			String queryText1 = createQuery(random);
+			String queryText2 = createQuery(random);
+			double similarity = getCosineSimilarity(makeTfIdfVector(uncached, reader, queryText1),
+					makeTfIdfVector(uncached, reader, queryText2));
+			assertEquals(similarity, uncached.getCosineSimilarity(queryText1, queryText2), 1e-9);
+			assertEquals(similarity, cached.getCosineSimilarity(queryText1, queryText2), 1e-9);
+			assertEquals(similarity, evicting.getCosineSimilarity(queryText1, queryText2), 1e-9);
+			queryTexts1.add(queryText1);
+			queryTexts2.add(queryText2);
+			expected.add(similarity);
+			if(similarity > 0) {
+				numSimilar++;
+			}
+		}
+		assertTrue(numSimilar > 100);
+
+		// the cached vectors are used again
+		double[] similarities = cached.getCosineSimilarities(queryTexts1, queryTexts2);
+		double[] evictingSimilarities = evicting.getCosineSimilarities(queryTexts1, queryTexts2);
+		for(int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i), similarities[i], 1e-9);
+			assertEquals(expected.get(i), evictingSimilarities[i], 1e-9);
+			assertEquals(expected.get(i), cached.getCosineSimilarity(queryTexts1.get(i), queryTexts2.get(i)), 1e-9);
+		}
+
+		reader.close();
+		cached.close();
+		evicting.close();
+		uncached.close();
+	}
+
+	@Test
+	public void testVectorCache() {
+		WikiIndex.VectorCache cache = new WikiIndex.VectorCache(10);
+		TfIdfVector vector4 = new TfIdfVector(new String[] { "a", "b", "c", "d" }, new double[] { 1, 1, 1, 1 });
+		TfIdfVector vector5 = new TfIdfVector(new String[] { "a", "b", "c", "d", "e" }, new double[] { 1, 1, 1, 1, 1 });
+		cache.putVector("four", vector4);
+		cache.putVector("five", vector5);
+		// an empty vector counts as one term
+		cache.putVector("empty", TfIdfVector.EMPTY);
+		assertSame(vector4, cache.getVector("four"));
+		assertSame(vector5, cache.getVector("five"));
+		assertSame(TfIdfVector.EMPTY, cache.getVector("empty"));
+
+		// "five" is the least recently used, so it is evicted to make room
+		cache.getVector("four");
+		cache.putVector("another four", vector4);
+		assertNull(cache.getVector("five"));
+		assertSame(vector4, cache.getVector("four"));
+		assertSame(vector4, cache.getVector("another four"));
+		assertSame(TfIdfVector.EMPTY, cache.getVector("empty"));
+
+		// replacing a vector frees its terms
+		cache.putVector("four", TfIdfVector.EMPTY);
+		cache.putVector("empty", vector4);
+		assertSame(TfIdfVector.EMPTY, cache.getVector("four"));
+		assertSame(vector4, cache.getVector("another four"));
+		assertSame(vector4, cache.getVector("empty"));
+
+		// a vector with more terms than the cache holds is not cached, and evicts nothing
+		cache.putVector("big", new TfIdfVector(new String[11], new double[11]));
+		assertNull(cache.getVector("big"));
+		assertSame(vector4, cache.getVector("another four"));
+		assertSame(vector4, cache.getVector("empty"));
+		assertSame(TfIdfVector.EMPTY, cache.getVector("four"));
+
+		// evicts the least recently used until the new vector fits
+		cache.putVector("ten", new TfIdfVector(new String[10], new double[10]));
+		assertNull(cache.getVector("another four"));
+		assertNull(cache.getVector("empty"));
+		assertNull(cache.getVector("four"));
+		assertEquals(10, cache.getVector("ten").size());
+	}
+}
@@ -66,6 +66,19 @@ import java.util.Map;
  * defaults to org.apache.ctakes.ytex.uima.types.DocKey.
  * <li>keyNameToLowerCase convert the column names returned by
  * queryGetDocumentKeys to lower case, default true</li>
+ * <li>queryGetDocuments optional query to get a batch of documents given the
+ * keys of the batch. If set, the keys are streamed in batches instead of
+ * loaded up front, and the documents of the next batches are read in the
+ * background while the current documents are processed. The first column is
+ * the document text, the other columns must include the key columns. For
+ * each key column the query gets the batch's values as a list, for use in
+ * an <tt>in (:key)</tt> clause, and the smallest and largest values as
+ * <tt>:key_min</tt> and <tt>:key_max</tt> for a range.</li>
+ * <li>batchSize number of documents per queryGetDocuments call, default 100</li>
+ * <li>prefetchBatches number of batches read ahead, default 2</li>
+ * <li>keyFetchSize jdbc fetch size used to stream the document keys, defaults
+ * to batchSize. MySQL only streams the keys with useCursorFetch=true in the
+ * jdbc url.</li>
  * </ul>
  * 
  * @TODO more doc
@@ -87,6 +100,14 @@ public class DBCollectionReader extends CollectionReader_ImplBase {
 	 * the queyr to get a document given a key. set in config file
 	 */
 	protected String queryGetDocument;
+	/**
+	 * the query to get a batch of documents given the keys. set in config
+	 * file. if not set, documents are read one at a time
+	 */
+	protected String queryGetDocuments;
+	protected int batchSize = 100;
+	protected int prefetchBatches = 2;
+	protected int keyFetchSize = 0;
 	/**
 	 * the key type. if not set, will default to
 	 * org.apache.ctakes.ytex.uima.types.DocKey
@@ -108,12 +129,20 @@ public class DBCollectionReader extends CollectionReader_ImplBase {
 	}
 
 	List<Map<String, Object>> listDocumentIds;
+	DBDocumentPrefetcher prefetcher;
 	int i = 0;
 
 	@Override
 	public void initialize() throws ResourceInitializationException {
 		initializePreLoad();
-		loadDocumentIds();
+		if (isBatchMode())
+			startPrefetcher();
+		else
+			loadDocumentIds();
+	}
+
+	protected boolean isBatchMode() {
+		return queryGetDocuments != null && queryGetDocuments.length() > 0;
 	}
 
 	protected void initializePreLoad() throws ResourceInitializationException {
@@ -131,6 +160,24 @@ public class DBCollectionReader extends CollectionReader_ImplBase {
 				.getParameterValue("keyNameToLowerCase");
 		if (keyNameToLowerCase != null)
 			this.keyNameToLowerCase = keyNameToLowerCase.booleanValue();
+		this.queryGetDocuments = (String) paramSettings
+				.getParameterValue("queryGetDocuments");
+		Integer batchSize = (Integer) paramSettings
+				.getParameterValue("batchSize");
+		if (batchSize != null)
+			this.batchSize = batchSize.intValue();
+		Integer prefetchBatches = (Integer) paramSettings
+				.getParameterValue("prefetchBatches");
+		if (prefetchBatches != null)
+			this.prefetchBatches = prefetchBatches.intValue();
+		Integer keyFetchSize = (Integer) paramSettings
+				.getParameterValue("keyFetchSize");
+		this.keyFetchSize = keyFetchSize != null ? keyFetchSize.intValue()
+				: this.batchSize;
+		if (this.batchSize < 1 || this.prefetchBatches < 1)
+			throw new ResourceInitializationException(
+					new IllegalArgumentException(
+							"batchSize and prefetchBatches must be positive"));
 		String dbURL = (String) paramSettings.getParameterValue("dbURL");
 		String dbDriver = (String) paramSettings.getParameterValue("dbDriver");
 		initDB(dbDriver, dbURL);
@@ -183,6 +230,17 @@ public class DBCollectionReader extends CollectionReader_ImplBase {
 		}
 	}
 
+	protected void startPrefetcher() {
+		if (prefetcher == null) {
+			prefetcher = new DBDocumentPrefetcher(dataSource, txTemplate,
+					queryGetDocumentKeys, queryGetDocuments,
+					keyNameToLowerCase, batchSize, prefetchBatches,
+					keyFetchSize);
+			prefetcher.start();
+			i = 0;
+		}
+	}
+
 	@Override
 	public void getNext(final CAS aCAS) throws IOException, CollectionException {
 		try {
@@ -194,7 +252,16 @@ public class DBCollectionReader extends CollectionReader_ImplBase {
 
 	public void getNext(final JCas aCAS) throws IOException,
 			CollectionException {
-		if (i < listDocumentIds.size()) {
+		if (prefetcher != null) {
+			DBDocumentPrefetcher.Document document = prefetcher.next();
+			i++;
+			if (log.isInfoEnabled()) {
+				log.info("loading document with id = " + document.key);
+			}
+			if (document.text != null)
+				aCAS.setDocumentText(document.text);
+			addDocKey(aCAS, document.key);
+		} else if (i < listDocumentIds.size()) {
 			final Map<String, Object> id = listDocumentIds.get(i++);
 			if (log.isInfoEnabled()) {
 				log.info("loading document with id = " + id);
@@ -274,17 +341,28 @@ public class DBCollectionReader extends CollectionReader_ImplBase {
 
 	@Override
 	public Progress[] getProgress() {
+		if (prefetcher != null) {
+			// the number of documents is not known until all keys are read
+			return new Progress[] { new ProgressImpl(i, -1,
+					Progress.ENTITIES) };
+		}
 		return new Progress[] { new ProgressImpl(i, listDocumentIds.size(),
 				Progress.ENTITIES) };
 	}
 
 	@Override
 	public boolean hasNext() throws IOException, CollectionException {
+		if (prefetcher != null)
+			return prefetcher.hasNext();
 		return i < listDocumentIds.size();
 	}
 
 	@Override
 	public void close() throws IOException {
+		if (this.prefetcher != null) {
+			this.prefetcher.close();
+			this.prefetcher = null;
+		}
 		this.listDocumentIds = null;
 		this.i = 0;
 	}
@@ -0,0 +1,417 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.uima;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.uima.collection.CollectionException;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.lob.DefaultLobHandler;
+import org.springframework.jdbc.support.lob.LobHandler;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Reads the documents of a DBCollectionReader in batches, ahead of the
+ * pipeline.
+ * <p>
+ * One thread streams the document keys from queryGetDocumentKeys with a
+ * cursor and groups them into batches. Another thread fetches the documents
+ * of each batch with one queryGetDocuments round trip, and puts them on a
+ * bounded queue that {@link #next()} takes from. The key cursor and the
+ * document queries run on separate connections, so that drivers that do not
+ * allow other statements while a result set is streamed work too.
+ * <p>
+ * queryGetDocuments gets named parameters for each key column: the list of
+ * the batch's values for an <tt>in (:key)</tt> list, and the smallest and
+ * largest values as <tt>:key_min</tt> and <tt>:key_max</tt> for a range. The
+ * first column of its result set is the document text, and it must also
+ * return the key columns, so that documents can be matched to their keys.
+ * Rows that do not match a key of the batch are ignored.
+ */
+class DBDocumentPrefetcher {
+	private static final Log log = LogFactory
+			.getLog(DBDocumentPrefetcher.class);
+
+	/**
+	 * a document key with the document text, null if there is no document for
+	 * the key
+	 */
+	static class Document {
+		final Map<String, Object> key;
+		final String text;
+
+		Document(Map<String, Object> key, String text) {
+			this.key = key;
+			this.text = text;
+		}
+	}
+
+	private static final List<Map<String, Object>> END_OF_KEYS = Collections
+			.emptyList();
+	private static final Document END_OF_DOCUMENTS = new Document(null, null);
+
+	private final TransactionTemplate txTemplate;
+	private final JdbcTemplate keyJdbcTemplate;
+	private final NamedParameterJdbcTemplate namedJdbcTemplate;
+	private final String queryGetDocumentKeys;
+	private final String queryGetDocuments;
+	private final int batchSize;
+	private final boolean keyNameToLowerCase;
+	private final BlockingQueue<List<Map<String, Object>>> keyBatches;
+	private final BlockingQueue<Document> documents;
+	private final Thread keyThread;
+	private final Thread documentThread;
+	private volatile Throwable failure = null;
+	private volatile boolean closed = false;
+	private Document nextDocument = null;
+
+	/**
+	 * @param keyFetchSize
+	 *            jdbc fetch size of the key cursor
+	 * @param prefetchBatches
+	 *            number of batches read ahead
+	 */
+	DBDocumentPrefetcher(DataSource dataSource, TransactionTemplate txTemplate,
+			String queryGetDocumentKeys, String queryGetDocuments,
+			boolean keyNameToLowerCase, int batchSize, int prefetchBatches,
+			int keyFetchSize) {
+		this.txTemplate = txTemplate;
+		this.keyJdbcTemplate = new JdbcTemplate(dataSource);
+		this.keyJdbcTemplate.setFetchSize(keyFetchSize);
+		this.namedJdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+		this.queryGetDocumentKeys = queryGetDocumentKeys;
+		this.queryGetDocuments = queryGetDocuments;
+		this.keyNameToLowerCase = keyNameToLowerCase;
+		this.batchSize = batchSize;
+		this.keyBatches = new ArrayBlockingQueue<List<Map<String, Object>>>(
+				prefetchBatches);
+		this.documents = new ArrayBlockingQueue<Document>(prefetchBatches
+				* batchSize);
+		this.keyThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				readKeys();
+			}
+		}, "DBCollectionReader-keys");
+		this.documentThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				readDocuments();
+			}
+		}, "DBCollectionReader-documents");
+		keyThread.setDaemon(true);
+		documentThread.setDaemon(true);
+	}
+
+	void start() {
+		keyThread.start();
+		documentThread.start();
+	}
+
+	/**
+	 * wait for the next document
+	 * 
+	 * @return false once all documents have been read
+	 * @throws CollectionException
+	 *             if the documents could not be read
+	 */
+	boolean hasNext() throws CollectionException {
+		if (nextDocument == null) {
+			try {
+				nextDocument = documents.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CollectionException(e);
+			}
+		}
+		if (nextDocument == END_OF_DOCUMENTS && failure != null)
+			throw new CollectionException(failure);
+		return nextDocument != END_OF_DOCUMENTS;
+	}
+
+	Document next() throws CollectionException {
+		if (!hasNext())
+			throw new CollectionException("no documents to process",
+					new Object[] {});
+		Document document = nextDocument;
+		nextDocument = null;
+		return document;
+	}
+
+	/**
+	 * stop reading ahead; the key cursor is closed when its next row is read
+	 */
+	void close() {
+		closed = true;
+		keyThread.interrupt();
+		documentThread.interrupt();
+		keyBatches.clear();
+		documents.clear();
+	}
+
+	/**
+	 * groups the keys into batches as they are read
+	 */
+	private class KeyBatcher implements RowCallbackHandler {
+		// same key maps as queryForList
+		private final ColumnMapRowMapper rowMapper = new ColumnMapRowMapper();
+		private List<Map<String, Object>> batch = new ArrayList<Map<String, Object>>(
+				batchSize);
+		private int rowNum = 0;
+
+		@Override
+		public void processRow(ResultSet rs) throws SQLException {
+			if (closed)
+				throw new CancellationException();
+			batch.add(rowMapper.mapRow(rs, rowNum++));
+			if (batch.size() == batchSize)
+				flush();
+		}
+
+		private void flush() {
+			if (!batch.isEmpty()) {
+				put(keyBatches, batch);
+				batch = new ArrayList<Map<String, Object>>(batchSize);
+			}
+		}
+	}
+
+	private void readKeys() {
+		try {
+			txTemplate.execute(new TransactionCallback<Object>() {
+				@Override
+				public Object doInTransaction(TransactionStatus txStatus) {
+					KeyBatcher keyBatcher = new KeyBatcher();
+					keyJdbcTemplate.query(queryGetDocumentKeys, keyBatcher);
+					keyBatcher.flush();
+					return null;
+				}
+			});
+			put(keyBatches, END_OF_KEYS);
+		} catch (CancellationException e) {
+			// closed
+		} catch (RuntimeException e) {
+			fail(e);
+		} catch (Error e) {
+			fail(e);
+			throw e;
+		}
+	}
+
+	private void readDocuments() {
+		try {
+			List<Map<String, Object>> batch;
+			while ((batch = keyBatches.take()) != END_OF_KEYS) {
+				for (Document document : getDocuments(batch)) {
+					put(documents, document);
+				}
+			}
+			put(documents, END_OF_DOCUMENTS);
+		} catch (InterruptedException e) {
+			// closed
+		} catch (CancellationException e) {
+			// closed
+		} catch (RuntimeException e) {
+			fail(e);
+		} catch (Error e) {
+			fail(e);
+			throw e;
+		}
+	}
+
+	/**
+	 * keep the first failure, stop reading keys, and let the reader know
+	 */
+	private void fail(Throwable t) {
+		if (closed)
+			return;
+		log.error("error reading documents", t);
+		if (failure == null)
+			failure = t;
+		keyThread.interrupt();
+		// unblock the document thread if it waits for keys
+		keyBatches.clear();
+		keyBatches.offer(END_OF_KEYS);
+		if (Thread.currentThread() == documentThread) {
+			try {
+				put(documents, END_OF_DOCUMENTS);
+			} catch (CancellationException e) {
+				// closed
+			}
+		}
+	}
+
+	private static <T> void put(BlockingQueue<T> queue, T element) {
+		try {
+			queue.put(element);
+		} catch (InterruptedException e) {
+			throw new CancellationException();
+		}
+	}
+
+	/**
+	 * fetch the documents of the batch
+	 * 
+	 * @return the documents in the order of the keys
+	 */
+	private List<Document> getDocuments(List<Map<String, Object>> batch) {
+		// key names as passed to queryGetDocument
+		final List<String> keyNames = new ArrayList<String>();
+		for (String keyName : batch.get(0).keySet()) {
+			keyNames.add(this.keyNameToLowerCase ? keyName.toLowerCase()
+					: keyName);
+		}
+		final Map<String, Object> params = new HashMap<String, Object>();
+		for (int i = 0; i < keyNames.size(); i++) {
+			Set<Object> values = new LinkedHashSet<Object>();
+			for (Map<String, Object> key : batch) {
+				values.add(getKeyValues(key).get(i));
+			}
+			addKeyParams(params, keyNames.get(i), values);
+		}
+		final Map<List<Object>, String> texts = new HashMap<List<Object>, String>(
+				batch.size() * 2);
+		txTemplate.execute(new TransactionCallback<Object>() {
+			@Override
+			public Object doInTransaction(TransactionStatus txStatus) {
+				namedJdbcTemplate.query(queryGetDocuments, params,
+						new RowCallbackHandler() {
+							LobHandler lobHandler = new DefaultLobHandler();
+							int[] keyColumns = null;
+
+							@Override
+							public void processRow(ResultSet rs)
+									throws SQLException {
+								if (closed)
+									throw new CancellationException();
+								if (keyColumns == null)
+									keyColumns = getKeyColumns(
+											rs.getMetaData(), keyNames);
+								List<Object> docKey = new ArrayList<Object>(
+										keyColumns.length);
+								for (int keyColumn : keyColumns) {
+									docKey.add(normalizeKeyValue(rs
+											.getObject(keyColumn)));
+								}
+								if (texts.containsKey(docKey)) {
+									log.error("Multiple documents for document key: "
+											+ docKey);
+								} else {
+									texts.put(docKey,
+											lobHandler.getClobAsString(rs, 1));
+								}
+							}
+						});
+				return null;
+			}
+		});
+		List<Document> batchDocuments = new ArrayList<Document>(batch.size());
+		for (Map<String, Object> key : batch) {
+			List<Object> docKey = new ArrayList<Object>();
+			for (Object value : getKeyValues(key)) {
+				docKey.add(normalizeKeyValue(value));
+			}
+			batchDocuments.add(new Document(key, texts.get(docKey)));
+		}
+		return batchDocuments;
+	}
+
+	private static List<Object> getKeyValues(Map<String, Object> key) {
+		return new ArrayList<Object>(key.values());
+	}
+
+	/**
+	 * add the list of values, and the min and max if the values can be
+	 * compared
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static void addKeyParams(Map<String, Object> params,
+			String keyName, Set<Object> values) {
+		params.put(keyName, new ArrayList<Object>(values));
+		Comparable min = null;
+		Comparable max = null;
+		for (Object value : values) {
+			if (!(value instanceof Comparable)
+					|| (min != null && value.getClass() != min.getClass()))
+				return;
+			Comparable comparable = (Comparable) value;
+			if (min == null || comparable.compareTo(min) < 0)
+				min = comparable;
+			if (max == null || comparable.compareTo(max) > 0)
+				max = comparable;
+		}
+		params.put(keyName + "_min", min);
+		params.put(keyName + "_max", max);
+	}
+
+	/**
+	 * @return the indices of the key columns in the result set
+	 */
+	private static int[] getKeyColumns(ResultSetMetaData metaData,
+			List<String> keyNames) throws SQLException {
+		int[] keyColumns = new int[keyNames.size()];
+		for (int i = 0; i < keyNames.size(); i++) {
+			for (int column = metaData.getColumnCount(); column > 1; column--) {
+				if (keyNames.get(i).equalsIgnoreCase(
+						metaData.getColumnLabel(column)))
+					keyColumns[i] = column;
+			}
+			if (keyColumns[i] == 0)
+				throw new IllegalStateException("queryGetDocuments must return the key column "
+						+ keyNames.get(i));
+		}
+		return keyColumns;
+	}
+
+	/**
+	 * the key and document queries may return different types for the same
+	 * key, e.g. Integer and Long; compare numbers by value
+	 */
+	private static Object normalizeKeyValue(Object value) {
+		if (value instanceof Number) {
+			try {
+				return new BigDecimal(value.toString()).stripTrailingZeros();
+			} catch (NumberFormatException e) {
+				return value;
+			}
+		}
+		return value;
+	}
+}
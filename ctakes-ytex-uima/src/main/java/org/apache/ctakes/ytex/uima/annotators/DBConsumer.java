@@ -33,6 +33,7 @@ import org.apache.ctakes.ytex.uima.ApplicationContextHolder;
 import org.apache.ctakes.ytex.uima.mapper.DocumentMapperService;
 import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_component.JCasAnnotator_ImplBase;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.cas.impl.XmiCasSerializer;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ResourceInitializationException;
@@ -58,6 +59,8 @@ import org.xml.sax.SAXException;
  * <li>insertAnnotationContainmentLinks - boolean - should we store containment
  * links? defaults to true
  * </ul>
+ * The DocumentMapperService may write documents in batches; the documents
+ * still pending are written when the collection has been processed.
  * 
  * @author vijay
  * 
@@ -148,4 +151,14 @@ public class DBConsumer extends JCasAnnotator_ImplBase {
 		}
 	}
 
+	/**
+	 * write the documents still pending
+	 */
+	@Override
+	public void collectionProcessComplete()
+			throws AnalysisEngineProcessException {
+		documentMapperService.flush();
+		super.collectionProcessComplete();
+	}
+
 }
@@ -36,4 +36,9 @@ public interface DocumentMapperService {
 			boolean bStoreDocText, boolean bStoreCAS,
 			boolean bInsertAnnotationContainmentLinks, Set<String> typesToIgnore);
 
+	/**
+	 * Write the documents that have been saved and not written yet.
+	 */
+	public abstract void flush();
+
 }
\ No newline at end of file
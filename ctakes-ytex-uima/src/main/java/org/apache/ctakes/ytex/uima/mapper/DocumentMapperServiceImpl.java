@@ -19,6 +19,7 @@
 package org.apache.ctakes.ytex.uima.mapper;
 
 import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
@@ -32,14 +33,18 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.zip.GZIPOutputStream;
 
 import javax.sql.DataSource;
@@ -70,11 +75,16 @@ import org.apache.uima.util.XMLSerializer;
 import org.hibernate.Query;
 import org.hibernate.SessionFactory;
 import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IdentifierGenerator;
 import org.hibernate.jdbc.Work;
 import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlParameterValue;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.TransactionStatus;
@@ -94,12 +104,19 @@ import com.google.common.collect.SetMultimap;
 
 /**
  * Map document annotations to the database.
+ * <p>
+ * The rows of a document are extracted from the cas when it is saved, with
+ * document and annotation ids taken from the ranges preallocated by the
+ * hibernate id generators. The rows of documentBatchSize documents are then
+ * written together, each table with jdbc batches, in one transaction. With
+ * the default documentBatchSize of 1 every document is written when it is
+ * saved; with larger sizes the last documents are written by {@link #flush()}.
  * 
  * @author vijay
  * 
  */
 public class DocumentMapperServiceImpl implements DocumentMapperService,
-		InitializingBean {
+		InitializingBean, DisposableBean {
 	/**
 	 * holder for FeatureStruct attributes
 	 * 
@@ -187,9 +204,41 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 		}
 	}
 
+	/**
+	 * the rows of a document, extracted from the cas so that they can be
+	 * written after the cas has been reset. Nulls are bound as
+	 * {@link SqlParameterValue}s with the sql type of the column.
+	 */
+	private static class DocumentRows {
+		private List<Object[]> annoBaseRows = new ArrayList<Object[]>();
+		private int documentId;
+		private Object[] documentRow;
+		private String documentSql;
+		private boolean insertAnnotationContainmentLinks;
+		/**
+		 * rows of the annotation, feature structure and link tables, by insert
+		 * statement
+		 */
+		private Map<String, List<Object[]>> rows = new LinkedHashMap<String, List<Object[]>>();
+	}
+
 	private static final Log log = LogFactory
 			.getLog(DocumentMapperServiceImpl.class);
 
+	/**
+	 * cached for types that are not mapped, the map can't hold nulls
+	 */
+	private static final AnnoMappingInfo UNMAPPED = new AnnoMappingInfo();
+
+	private static final ChunkPreparedStatementSetter<Object[]> rowSetter = new ChunkPreparedStatementSetter<Object[]>() {
+
+		@Override
+		public void setValues(PreparedStatement ps, int idx, Object[] row)
+				throws SQLException {
+			setRowValues(ps, row);
+		}
+	};
+
 	private static Set<Integer> numericTypes = new HashSet<Integer>();
 	private static Set<Integer> stringTypes = new HashSet<Integer>();
 	/**
@@ -217,6 +266,13 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 
 	private CaseInsensitiveMap docTableCols = new CaseInsensitiveMap();
 
+	/**
+	 * id, doc_text, cas, analysis_batch, instance_id and instance_key columns
+	 */
+	private String[] documentColumns;
+
+	private int documentBatchSize = 1;
+
 	private String formattedTableName = null;
 
 	private JdbcTemplate jdbcTemplate;
@@ -224,25 +280,20 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 	private Map<String, AnnoMappingInfo> mapAnnoMappingInfo = new HashMap<String, AnnoMappingInfo>();
 	private SessionFactory sessionFactory;
 
-	private ThreadLocal<Map<String, AnnoMappingInfo>> tl_mapAnnoMappingInfo = new ThreadLocal<Map<String, AnnoMappingInfo>>() {
-
-		@Override
-		protected Map<String, AnnoMappingInfo> initialValue() {
-			return new HashMap<String, AnnoMappingInfo>();
-		}
-
-	};
+	/**
+	 * mapping info of the types seen so far, shared by all threads
+	 */
+	private ConcurrentMap<String, AnnoMappingInfo> mapTypeToMappingInfo = new ConcurrentHashMap<String, AnnoMappingInfo>();
 
 	/**
 	 * map of annotation to fields that need to be mapped
 	 */
-	private ThreadLocal<SetMultimap<String, String>> tl_mapFieldInfo = new ThreadLocal<SetMultimap<String, String>>() {
-		@Override
-		protected SetMultimap<String, String> initialValue() {
-			return HashMultimap.create();
-		}
+	private ConcurrentMap<String, Set<String>> mapFieldInfo = new ConcurrentHashMap<String, Set<String>>();
 
-	};
+	/**
+	 * documents saved and not written yet
+	 */
+	private List<DocumentRows> pendingDocuments = new ArrayList<DocumentRows>();
 	private PlatformTransactionManager transactionManager;
 	private Map<String, UimaType> uimaTypeMap = new HashMap<String, UimaType>();
 	private Properties ytexProperties;
@@ -407,12 +458,13 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 		return doc;
 	}
 
-	private void extractAndSaveDocKey(JCas jcas, Document doc) {
+	private void extractDocKey(JCas jcas, Document doc,
+			Map<String, Object> keyColumns) {
 		AnnotationIndex<Annotation> idx = jcas
 				.getAnnotationIndex(DocKey.typeIndexID);
 		FSIterator<Annotation> annoIterator = idx.iterator();
 		if (annoIterator.hasNext())
-			this.saveDocKey(doc, (DocKey) annoIterator.next());
+			this.extractDocKey(doc, (DocKey) annoIterator.next(), keyColumns);
 	}
 
 	/**
@@ -465,6 +517,10 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 		return batchSize;
 	}
 
+	public int getDocumentBatchSize() {
+		return documentBatchSize;
+	}
+
 	public DataSource getDataSource() {
 		return jdbcTemplate.getDataSource();
 	}
@@ -492,16 +548,22 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 	private AnnoMappingInfo getMapInfo(FeatureStructure fs) {
 		Type type = fs.getType();
 		String className = type.getName();
-		// if the key is there, then return it (may be null)
-		AnnoMappingInfo mapInfo = null;
-		if (this.tl_mapAnnoMappingInfo.get().containsKey(className)) {
-			mapInfo = this.tl_mapAnnoMappingInfo.get().get(className);
-		} else {
-			// load the mappinginfo, save in cache
-			mapInfo = initMapInfo(fs);
-			this.tl_mapAnnoMappingInfo.get().put(className, mapInfo);
+		// if the key is there, then return it (may be unmapped)
+		AnnoMappingInfo mapInfo = this.mapTypeToMappingInfo.get(className);
+		if (mapInfo == null) {
+			// look up the database metadata once for all threads
+			synchronized (this.mapTypeToMappingInfo) {
+				mapInfo = this.mapTypeToMappingInfo.get(className);
+				if (mapInfo == null) {
+					// load the mappinginfo, save in cache
+					mapInfo = initMapInfo(fs);
+					if (mapInfo == null)
+						mapInfo = UNMAPPED;
+					this.mapTypeToMappingInfo.put(className, mapInfo);
+				}
+			}
 		}
-		return mapInfo;
+		return mapInfo == UNMAPPED ? null : mapInfo;
 	}
 
 	public SessionFactory getSessionFactory() {
@@ -537,6 +599,13 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 		}
 		// this.formattedTableName = DBUtil.formatTableName(cm.getTableName());
 		this.formattedTableName = cm.getTableName();
+		this.documentColumns = new String[] {
+				cm.getIdentifierColumnNames()[0],
+				cm.getPropertyColumnNames("docText")[0],
+				cm.getPropertyColumnNames("cas")[0],
+				cm.getPropertyColumnNames("analysisBatch")[0],
+				cm.getPropertyColumnNames("instanceID")[0],
+				cm.getPropertyColumnNames("instanceKey")[0] };
 		log.info("document table name = " + formattedTableName);
 		final String query = "select * from " + formattedTableName
 				+ " where 1=2";
@@ -616,14 +685,15 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 		}
 		final List<Feature> features = type.getFeatures();
 		// get the non primitive fields
+		Set<String> fieldNames = new HashSet<String>();
 		for (Feature f : features) {
 			if (f.getRange().isArray()
 					&& !f.getRange().getComponentType().isPrimitive()) {
 				// add this field to the list of fields to store
-				this.tl_mapFieldInfo.get()
-						.put(type.getName(), f.getShortName());
+				fieldNames.add(f.getShortName());
 			}
 		}
+		this.mapFieldInfo.put(type.getName(), fieldNames);
 		this.sessionFactory.getCurrentSession().doWork(new Work() {
 			@Override
 			public void execute(Connection conn) throws SQLException {
@@ -852,74 +922,66 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 		return mapAnnoToId;
 	}
 
-	private BiMap<Annotation, Integer> saveAnnoBaseHib(JCas jcas,
-			Set<String> setTypesToIgnore, Document doc) {
+	/**
+	 * add the anno_base rows of the annotations that should be saved
+	 * 
+	 * @return map of annotation to anno_base_id
+	 */
+	private BiMap<Annotation, Integer> extractAnnoBase(JCas jcas,
+			Set<String> setTypesToIgnore, DocumentRows documentRows,
+			SessionImplementor session) {
 		if (log.isTraceEnabled())
-			log.trace("begin saveAnnoBaseHib");
+			log.trace("begin extractAnnoBase");
 		AnnotationIndex<Annotation> annoIdx = jcas
 				.getAnnotationIndex(Annotation.typeIndexID);
-		List<Annotation> listAnno = new ArrayList<Annotation>(annoIdx.size());
-		Map<Annotation, DocumentAnnotation> mapAnnoToHib = new HashMap<Annotation, DocumentAnnotation>();
+		BiMap<Annotation, Integer> mapAnnoToId = HashBiMap.create();
 		FSIterator<Annotation> annoIterator = annoIdx.iterator();
-		int count = 0;
-		// iterate over annotations and save them
+		// iterate over annotations and add them
 		while (annoIterator.hasNext()) {
 			Annotation anno = (Annotation) annoIterator.next();
 			String annoClass = anno.getClass().getName();
 			if (!setTypesToIgnore.contains(annoClass)
 					&& this.uimaTypeMap.containsKey(annoClass)) {
 				// should not ignore, and we know how to map this annotation
-				listAnno.add(anno);
-				DocumentAnnotation hibAnno = new DocumentAnnotation();
-				hibAnno.setDocument(doc);
-				hibAnno.setBegin(anno.getBegin());
-				hibAnno.setEnd(anno.getEnd());
-				hibAnno.setUimaType(uimaTypeMap.get(annoClass));
-				sessionFactory.getCurrentSession().save(hibAnno);
-				if (++count % batchSize == 0)
-					sessionFactory.getCurrentSession().flush();
-				doc.getDocumentAnnotations().add(hibAnno);
-				mapAnnoToHib.put(anno, hibAnno);
+				int annoId = nextId(DocumentAnnotation.class, session);
+				documentRows.annoBaseRows.add(new Object[] { annoId,
+						documentRows.documentId, anno.getBegin(),
+						anno.getEnd(),
+						uimaTypeMap.get(annoClass).getUimaTypeID() });
+				mapAnnoToId.put(anno, annoId);
 			}
 		}
-		sessionFactory.getCurrentSession().flush();
-		BiMap<Annotation, Integer> mapAnnoToId = HashBiMap.create();
-		for (Map.Entry<Annotation, DocumentAnnotation> e : mapAnnoToHib
-				.entrySet()) {
-			mapAnnoToId.put(e.getKey(), e.getValue().getDocumentAnnotationID());
-		}
 		if (log.isTraceEnabled())
-			log.trace("end saveAnnoBaseHib");
+			log.trace("end extractAnnoBase");
 		return mapAnnoToId;
 	}
 
 	/**
-	 * bind the variables to the prepared statement
+	 * get the values of the insert statement of the mapping info
 	 * 
 	 * @param type
 	 * @param mapInfo
-	 * @param ps
 	 * @param annoId
 	 * @param anno
-	 * @throws SQLException
+	 * @return row to bind with {@link #setRowValues}
 	 */
-	private void saveAnnoBindVariables(final Type type,
-			final AnnoMappingInfo mapInfo, PreparedStatement ps, int annoId,
-			FeatureStructure anno, final BiMap<Annotation, Integer> mapAnnoToId)
-			throws SQLException {
+	private Object[] getRowValues(final Type type,
+			final AnnoMappingInfo mapInfo, int annoId, FeatureStructure anno,
+			final BiMap<Annotation, Integer> mapAnnoToId) {
+		List<Object> row = new ArrayList<Object>(
+				mapInfo.getMapField().size() + 3);
 		// set anno_base_id
-		int argIdx = 1;
-		ps.setInt(argIdx++, annoId);
+		row.add(annoId);
 		if (mapInfo.getCoveredTextColumn() != null) {
 			String trunc = null;
 			if (anno instanceof Annotation) {
 				trunc = truncateString(((Annotation) anno).getCoveredText(),
 						mapInfo.getCoveredTextColumn().getSize());
 			}
-			ps.setString(argIdx++, trunc);
+			row.add(nullToSql(trunc, Types.VARCHAR));
 		}
 		if (!Strings.isNullOrEmpty(mapInfo.getUimaTypeIdColumnName())) {
-			ps.setInt(argIdx++, mapInfo.getUimaTypeId());
+			row.add(mapInfo.getUimaTypeId());
 		}
 		// iterate over fields
 		for (Map.Entry<String, ColumnMappingInfo> fieldEntry : mapInfo
@@ -930,10 +992,10 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 			if (fieldMapInfo.getConverter() != null) {
 				try {
 					String prop = anno.getFeatureValueAsString(feat);
-					ps.setObject(
-							argIdx,
+					row.add(nullToSql(
 							fieldMapInfo.getConverter().convert(
-									fieldMapInfo.getTargetType(), prop));
+									fieldMapInfo.getTargetType(), prop),
+							fieldMapInfo.getSqlType()));
 				} catch (Exception e) {
 					throw new RuntimeException(e);
 				}
@@ -942,7 +1004,7 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 				FeatureStructure fs = anno.getFeatureValue(feat);
 				if (fs == null) {
 					// feature is null - set the column to null
-					ps.setNull(argIdx, fieldMapInfo.getSqlType());
+					row.add(nullToSql(null, fieldMapInfo.getSqlType()));
 				} else {
 					if (fieldMapInfo.getJxpath() != null) {
 						// jxpath to pull out feature attribute
@@ -950,15 +1012,15 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 								fieldMapInfo.getJxpath(), fs);
 						if (o == null) {
 							// extracted value null - set column to null
-							ps.setNull(argIdx, fieldMapInfo.getSqlType());
+							row.add(nullToSql(null, fieldMapInfo.getSqlType()));
 						} else if (o instanceof String) {
 							// string - truncate as needed
 							String trunc = truncateString((String) o,
 									fieldMapInfo.getSize());
-							ps.setString(argIdx, trunc);
+							row.add(trunc);
 						} else {
 							// set value
-							ps.setObject(argIdx, o);
+							row.add(o);
 						}
 					} else {
 						// reference to another annotation - get the other
@@ -967,45 +1029,86 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 						if (fs instanceof Annotation) {
 							refAnnoId = mapAnnoToId.get(fs);
 						}
-						if (refAnnoId != null) {
-							ps.setInt(argIdx, refAnnoId);
-						} else {
-							ps.setNull(argIdx, Types.INTEGER);
-						}
+						row.add(nullToSql(refAnnoId, Types.INTEGER));
 					}
 				}
 			} else {
 				if ("uima.cas.Integer".equals(feat.getRange().getName())) {
-					ps.setInt(argIdx, anno.getIntValue(feat));
+					row.add(anno.getIntValue(feat));
 				} else if ("uima.cas.Short".equals(feat.getRange().getName())) {
-					ps.setShort(argIdx, anno.getShortValue(feat));
+					row.add(anno.getShortValue(feat));
 				} else if ("uima.cas.Long".equals(feat.getRange().getName())) {
-					ps.setLong(argIdx, anno.getLongValue(feat));
+					row.add(anno.getLongValue(feat));
 				} else if ("uima.cas.Float".equals(feat.getRange().getName())) {
-					ps.setFloat(argIdx, anno.getFloatValue(feat));
+					row.add(anno.getFloatValue(feat));
 				} else if ("uima.cas.Double".equals(feat.getRange().getName())) {
-					ps.setDouble(argIdx, anno.getDoubleValue(feat));
+					row.add(anno.getDoubleValue(feat));
 				} else if ("uima.cas.Byte".equals(feat.getRange().getName())) {
-					ps.setByte(argIdx, anno.getByteValue(feat));
+					row.add(anno.getByteValue(feat));
 				} else if ("uima.cas.Boolean".equals(feat.getRange().getName())) {
-					ps.setBoolean(argIdx, anno.getBooleanValue(feat));
+					row.add(anno.getBooleanValue(feat));
 				} else if ("uima.cas.String".equals(feat.getRange().getName())) {
 					String trunc = truncateString(anno.getStringValue(feat),
 							fieldMapInfo.getSize());
-					ps.setString(argIdx, trunc);
+					row.add(nullToSql(trunc, Types.VARCHAR));
+				} else {
+					// no binding for this type, leave the column null
+					row.add(nullToSql(null, fieldMapInfo.getSqlType()));
 				}
 			}
-			argIdx++;
 		}
+		return row.toArray();
+	}
+
+	/**
+	 * @return the value, or a null of the sql type
+	 */
+	private static Object nullToSql(Object value, int sqlType) {
+		return value != null ? value : new SqlParameterValue(sqlType, null);
 	}
 
 	/**
-	 * insert composite attributes.
+	 * bind the values of a row to the prepared statement
+	 */
+	private static void setRowValues(PreparedStatement ps, Object[] row)
+			throws SQLException {
+		for (int i = 0; i < row.length; i++) {
+			int argIdx = i + 1;
+			Object value = row[i];
+			if (value instanceof SqlParameterValue) {
+				ps.setNull(argIdx, ((SqlParameterValue) value).getSqlType());
+			} else if (value instanceof Integer) {
+				ps.setInt(argIdx, (Integer) value);
+			} else if (value instanceof Short) {
+				ps.setShort(argIdx, (Short) value);
+			} else if (value instanceof Long) {
+				ps.setLong(argIdx, (Long) value);
+			} else if (value instanceof Float) {
+				ps.setFloat(argIdx, (Float) value);
+			} else if (value instanceof Double) {
+				ps.setDouble(argIdx, (Double) value);
+			} else if (value instanceof Byte) {
+				ps.setByte(argIdx, (Byte) value);
+			} else if (value instanceof Boolean) {
+				ps.setBoolean(argIdx, (Boolean) value);
+			} else if (value instanceof String) {
+				ps.setString(argIdx, (String) value);
+			} else if (value instanceof byte[]) {
+				ps.setBytes(argIdx, (byte[]) value);
+			} else {
+				ps.setObject(argIdx, value);
+			}
+		}
+	}
+
+	/**
+	 * add the rows of composite attributes.
 	 * 
 	 * @param listFSA
 	 */
-	private void saveAnnoFS(final List<AnnoFSAttribute> listFSA,
-			final BiMap<Annotation, Integer> mapAnnoToId) {
+	private void extractAnnoFS(final List<AnnoFSAttribute> listFSA,
+			final BiMap<Annotation, Integer> mapAnnoToId,
+			DocumentRows documentRows) {
 		if (listFSA.size() == 0)
 			return;
 		FeatureStructure fs = listFSA.get(0).getFs();
@@ -1041,17 +1144,12 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 		// }
 		// });
 		// }
-		chunkedBatchUpdate(mapInfo.getSql(), listFSA,
-				new ChunkPreparedStatementSetter<AnnoFSAttribute>() {
-
-					@Override
-					public void setValues(PreparedStatement ps, int idx,
-							AnnoFSAttribute fsa) throws SQLException {
-						// todo pass array index for storage
-						saveAnnoBindVariables(type, mapInfo, ps,
-								fsa.getAnnoBaseId(), fsa.getFs(), mapAnnoToId);
-					}
-				});
+		for (AnnoFSAttribute fsa : listFSA) {
+			// todo pass array index for storage
+			addRow(documentRows.rows, mapInfo.getSql(),
+					getRowValues(type, mapInfo, fsa.getAnnoBaseId(),
+							fsa.getFs(), mapAnnoToId));
+		}
 	}
 
 	/**
@@ -1103,13 +1201,14 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 	}
 
 	/**
-	 * save annotation to annotation links (many-to-many relationships)
+	 * add annotation to annotation links (many-to-many relationships)
 	 * 
 	 * @param listAnnoLinks
 	 */
-	private void saveAnnoLinks(final List<AnnoLink> listAnnoLinks) {
+	private void extractAnnoLinks(final List<AnnoLink> listAnnoLinks,
+			DocumentRows documentRows) {
 		if (log.isTraceEnabled())
-			log.trace("begin saveAnnoLinks");
+			log.trace("begin extractAnnoLinks");
 		// jdbcTemplate
 		// .batchUpdate(
 		// "insert into "
@@ -1132,26 +1231,21 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 		// ps.setString(3, l.getFeature());
 		// }
 		// });
-		chunkedBatchUpdate(
-				"insert into "
-						+ this.getTablePrefix()
-						+ "anno_link(parent_anno_base_id, child_anno_base_id, feature) values (?, ?, ?)",
-				listAnnoLinks, new ChunkPreparedStatementSetter<AnnoLink>() {
-
-					@Override
-					public void setValues(PreparedStatement ps, int idx,
-							AnnoLink l) throws SQLException {
-						ps.setInt(1, l.getParentAnnoBaseId());
-						ps.setInt(2, l.getChildAnnoBaseId());
-						ps.setString(3, l.getFeature());
-					}
-				});
+		String sql = "insert into "
+				+ this.getTablePrefix()
+				+ "anno_link(parent_anno_base_id, child_anno_base_id, feature) values (?, ?, ?)";
+		for (AnnoLink l : listAnnoLinks) {
+			addRow(documentRows.rows, sql,
+					new Object[] { l.getParentAnnoBaseId(),
+							l.getChildAnnoBaseId(),
+							nullToSql(l.getFeature(), Types.VARCHAR) });
+		}
 		if (log.isTraceEnabled())
-			log.trace("end saveAnnoLinks");
+			log.trace("end extractAnnoLinks");
 	}
 
 	/**
-	 * save the annotation properties for a given type
+	 * add the rows of the annotation properties for a given type
 	 * 
 	 * @param mapIdToAnno
 	 *            map of all annoIDs to Annotation
@@ -1160,16 +1254,16 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 	 * @param listAnnoLinks
 	 *            annotation to annotation links to save
 	 */
-	private void saveAnnoPrimitive(
+	private void extractAnnoPrimitive(
 			final BiMap<Annotation, Integer> mapAnnoToId,
-			final Set<Integer> annoIds, final List<AnnoLink> listAnnoLinks) {
+			final Set<Integer> annoIds, final List<AnnoLink> listAnnoLinks,
+			DocumentRows documentRows) {
 		if (log.isTraceEnabled())
-			log.trace("begin saveAnnoPrimitive");
+			log.trace("begin extractAnnoPrimitive");
 		final BiMap<Integer, Annotation> mapIdToAnno = mapAnnoToId.inverse();
 		// nothing to do
 		if (annoIds.size() == 0)
 			return;
-		// covert to array for spring batch update
 		// final Integer[] annoIdArray = annoIds.toArray(new Integer[] {});
 		final List<Integer> annoIdList = new ArrayList<Integer>(annoIds);
 		// get mappinginfo
@@ -1178,83 +1272,71 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 		final Type type = t.getType();
 		final AnnoMappingInfo mapInfo = this.getMapInfo(t);
 		// get non primitive fields, insert them after inserting the annotation
-		final Set<String> fsNames = this.tl_mapFieldInfo.get().get(
-				type.getName());
+		final Set<String> fsNames = this.mapFieldInfo.containsKey(type
+				.getName()) ? this.mapFieldInfo.get(type.getName())
+				: new HashSet<String>();
 		final ListMultimap<String, AnnoFSAttribute> mapAnnoToFS = ArrayListMultimap
 				.create();
 		// don't know how to map this annotation
 		if (mapInfo == null)
 			return;
-		// jdbcTemplate.batchUpdate(mapInfo.getSql(),
-		// new BatchPreparedStatementSetter() {
-		//
-		// @Override
-		// public int getBatchSize() {
-		// return annoIdArray.length;
-		// }
-		this.chunkedBatchUpdate(mapInfo.getSql(), annoIdList,
-				new ChunkPreparedStatementSetter<Integer>() {
-
-					@Override
-					public void setValues(PreparedStatement ps, int idx,
-							Integer annoId) throws SQLException {
-						// get the entry
-						// int annoId = annoIdArray[idx];
-						Annotation anno = mapIdToAnno.get(annoId);
-						saveAnnoBindVariables(type, mapInfo, ps, annoId, anno,
-								mapAnnoToId);
-						// pull out the composite fields for storage
-						for (String fieldName : fsNames) {
-							Feature feat = type.getFeatureByBaseName(fieldName);
-							if (!feat.getRange().isPrimitive()) {
-								// handle arrays and lists
-								FeatureStructure fsCol = anno
-										.getFeatureValue(feat);
-								if (fsCol != null
-										&& (fsCol instanceof FSArray || fsCol instanceof FSList)) {
-									List<FeatureStructure> fsList = extractList(fsCol);
-									int i = 0;
-									for (FeatureStructure fs : fsList) {
-										if (fs instanceof Annotation) {
-											// annotations are linked via the
-											// anno_link table
-											Integer childAnnoId = mapAnnoToId
-													.get(fs);
-											if (childAnnoId != null) {
-												listAnnoLinks.add(new AnnoLink(
-														annoId, childAnnoId,
-														feat.getShortName()));
-											}
-										} else {
-											// featureStructs that are not
-											// annotations get stored in their
-											// own tables
-											// with a many to one relationship
-											// to the annotation
-											mapAnnoToFS.put(fs.getType()
-													.getName(),
-													new AnnoFSAttribute(annoId,
-															fs, i++));
-										}
-									}
+		for (Integer annoId : annoIdList) {
+			// get the entry
+			// int annoId = annoIdArray[idx];
+			Annotation anno = mapIdToAnno.get(annoId);
+			addRow(documentRows.rows, mapInfo.getSql(),
+					getRowValues(type, mapInfo, annoId, anno,
+							mapAnnoToId));
+			// pull out the composite fields for storage
+			for (String fieldName : fsNames) {
+				Feature feat = type.getFeatureByBaseName(fieldName);
+				if (!feat.getRange().isPrimitive()) {
+					// handle arrays and lists
+					FeatureStructure fsCol = anno
+							.getFeatureValue(feat);
+					if (fsCol != null
+							&& (fsCol instanceof FSArray || fsCol instanceof FSList)) {
+						List<FeatureStructure> fsList = extractList(fsCol);
+						int i = 0;
+						for (FeatureStructure fs : fsList) {
+							if (fs instanceof Annotation) {
+								// annotations are linked via the
+								// anno_link table
+								Integer childAnnoId = mapAnnoToId
+										.get(fs);
+								if (childAnnoId != null) {
+									listAnnoLinks.add(new AnnoLink(
+											annoId, childAnnoId,
+											feat.getShortName()));
 								}
 							} else {
-								// handle primitive attributes
-								mapAnnoToFS.put(
-										feat.getRange().getName(),
-										new AnnoFSAttribute(annoId, anno
-												.getFeatureValue(feat), null));
+								// featureStructs that are not
+								// annotations get stored in their
+								// own tables
+								// with a many to one relationship
+								// to the annotation
+								mapAnnoToFS.put(fs.getType()
+										.getName(),
+										new AnnoFSAttribute(annoId,
+												fs, i++));
 							}
 						}
 					}
+				} else {
+					// handle primitive attributes
+					mapAnnoToFS.put(
+							feat.getRange().getName(),
+							new AnnoFSAttribute(annoId, anno
+									.getFeatureValue(feat), null));
 				}
-
-		);
+			}
+		}
 		for (String fsType : mapAnnoToFS.keySet()) {
-			this.saveAnnoFS(mapAnnoToFS.get(fsType), mapAnnoToId);
+			this.extractAnnoFS(mapAnnoToFS.get(fsType), mapAnnoToId,
+					documentRows);
 		}
 		if (log.isTraceEnabled())
-			log.trace("end saveAnnoPrimitive");
+			log.trace("end extractAnnoPrimitive");
 	}
 
 	// private void saveAnnotations(JCas jcas, Set<String> setTypesToIgnore,
@@ -1281,15 +1363,12 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 	// saveAnnoLinks(listAnnoLinks);
 	// }
 
-	private void saveAnnotationsHib(JCas jcas,
-			boolean bInsertAnnotationContainmentLinks,
-			Set<String> setTypesToIgnore, Document doc) {
+	private void extractAnnotations(JCas jcas, Set<String> setTypesToIgnore,
+			DocumentRows documentRows, SessionImplementor session) {
 		if (log.isTraceEnabled())
-			log.trace("begin saveAnnotationsHib");
-		BiMap<Annotation, Integer> mapAnnoToId = saveAnnoBaseHib(jcas,
-				setTypesToIgnore, doc);
-		if (bInsertAnnotationContainmentLinks)
-			insertAnnotationContainmentLinks(doc.getDocumentID());
+			log.trace("begin extractAnnotations");
+		BiMap<Annotation, Integer> mapAnnoToId = extractAnnoBase(jcas,
+				setTypesToIgnore, documentRows, session);
 		// split the annotations up by type
 		// create a map of class name to anno id
 		SetMultimap<String, Integer> mapTypeToAnnoId = HashMultimap.create();
@@ -1301,36 +1380,33 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 		List<AnnoLink> listAnnoLinks = new ArrayList<AnnoLink>();
 		// save annotation properties
 		for (String annoClass : mapTypeToAnnoId.keySet()) {
-			saveAnnoPrimitive(mapAnnoToId, mapTypeToAnnoId.get(annoClass),
-					listAnnoLinks);
+			extractAnnoPrimitive(mapAnnoToId, mapTypeToAnnoId.get(annoClass),
+					listAnnoLinks, documentRows);
 		}
 		addAnnoLinks(jcas, mapAnnoToId, listAnnoLinks);
 		// saveMarkablePairs(jcas, mapAnnoToId, listAnnoLinks);
 		// saveCoref(jcas, mapAnnoToId, listAnnoLinks);
-		saveAnnoLinks(listAnnoLinks);
+		extractAnnoLinks(listAnnoLinks, documentRows);
 		if (log.isTraceEnabled())
-			log.trace("end saveAnnotationsHib");
+			log.trace("end extractAnnotations");
 	}
 
 	/**
-	 * update the document table - set key values from dockey for the give
-	 * document_id
+	 * get the document table key values from dockey for the given document
 	 * 
 	 * @param document
 	 *            document
 	 * @param dk
 	 *            key
+	 * @param keyColumns
+	 *            map of document table column to key value to populate
 	 */
-	private void saveDocKey(Document document, DocKey dk) {
+	private void extractDocKey(Document document, DocKey dk,
+			Map<String, Object> keyColumns) {
 		int documentId = document.getDocumentID();
 		FSArray fsa = dk.getKeyValuePairs();
 		if (fsa == null || fsa.size() == 0)
 			return;
-		// build query dynamically
-		StringBuilder queryBuilder = (new StringBuilder("update ")).append(
-				formattedTableName).append(" set ");
-		List<Object> args = new ArrayList<Object>();
-		boolean bFirstArg = true;
 		// iterate over key/value pairs
 		for (int i = 0; i < fsa.size(); i++) {
 			KeyValuePair kp = (KeyValuePair) fsa.get(i);
@@ -1342,30 +1418,24 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 				document.setInstanceKey(kp.getValueString());
 			} else if (this.docTableCols.containsKey(key)) {
 				// only attempt to map keys that correspond to valid columns
-				boolean badArg = false;
 				// verify that the value matches the datatype
 				// if valueString not null then assume integer
 				if (kp.getValueString() != null
 						&& stringTypes.contains(docTableCols.get(key))) {
-					args.add(kp.getValueString());
+					keyColumns.put(DBUtil.formatFieldName(key),
+							kp.getValueString());
 				} else if (numericTypes.contains(docTableCols.get(key))) {
-					args.add(kp.getValueLong());
+					keyColumns.put(DBUtil.formatFieldName(key),
+							kp.getValueLong());
 				} else {
 					// invalid type for argument
-					badArg = true;
-					log.warn("document_id: " + documentId
-							+ ", bad type for key=" + key + ", value="
-							+ kp.getValueString() == null ? kp.getValueLong()
-							: kp.getValueString());
-				}
-				if (!badArg) {
-					// update
-					if (!bFirstArg) {
-						queryBuilder.append(", ");
-					}
-					queryBuilder.append(DBUtil.formatFieldName(key));
-					queryBuilder.append("=? ");
-					bFirstArg = false;
+					log.warn("document_id: "
+							+ documentId
+							+ ", bad type for key="
+							+ key
+							+ ", value="
+							+ (kp.getValueString() == null ? kp
+									.getValueLong() : kp.getValueString()));
 				}
 			} else {
 				// don't know what to do with this key attribute
@@ -1373,24 +1443,48 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 						+ ", could not map key attribute " + kp.getKey());
 			}
 		}
-		if (args.size() > 0) {
-			// have something to update - add the where condition
-			queryBuilder.append(" where document_id = ?");
-			args.add(documentId);
-			String sql = queryBuilder.toString();
-			if (log.isDebugEnabled()) {
-				log.debug(sql);
-			}
-			jdbcTemplate.update(sql, args.toArray());
+	}
+
+	/**
+	 * set the document insert and its row, with the key values from dockey in
+	 * the corresponding document table columns
+	 */
+	private void extractDocument(JCas jcas, Document doc,
+			DocumentRows documentRows) {
+		Map<String, Object> keyColumns = new LinkedHashMap<String, Object>();
+		extractDocKey(jcas, doc, keyColumns);
+		StringBuilder queryBuilder = new StringBuilder("insert into ")
+				.append(formattedTableName).append(" (");
+		List<String> columns = new ArrayList<String>(
+				Arrays.asList(this.documentColumns));
+		columns.addAll(keyColumns.keySet());
+		for (int i = 0; i < columns.size(); i++) {
+			if (i > 0)
+				queryBuilder.append(", ");
+			queryBuilder.append(columns.get(i));
 		}
+		queryBuilder.append(") values (?")
+				.append(Strings.repeat(", ?", columns.size() - 1)).append(")");
+		documentRows.documentSql = queryBuilder.toString();
+		List<Object> row = new ArrayList<Object>(columns.size());
+		// bound like hibernate binds the id, text, binary, string and long
+		// properties
+		row.add(doc.getDocumentID());
+		row.add(nullToSql(doc.getDocText(), Types.LONGVARCHAR));
+		row.add(nullToSql(doc.getCas(), Types.VARBINARY));
+		row.add(nullToSql(doc.getAnalysisBatch(), Types.VARCHAR));
+		row.add(doc.getInstanceID());
+		row.add(nullToSql(doc.getInstanceKey(), Types.VARCHAR));
+		row.addAll(keyColumns.values());
+		documentRows.documentRow = row.toArray();
 	}
 
-	/*
-	 * (non-Javadoc)
+	/**
+	 * Extract the rows of the document and write them with the pending
+	 * documents once documentBatchSize documents are pending. The document id
+	 * is allocated before the document is written.
 	 * 
-	 * @see
-	 * ytex.dao.mapper.DocumentMapperService#saveDocument(org.apache.uima.jcas
-	 * .JCas, java.lang.String)
+	 * @see DocumentMapperService#saveDocument
 	 */
 	public Integer saveDocument(final JCas jcas, final String analysisBatch,
 			final boolean bStoreDocText, final boolean bStoreCAS,
@@ -1398,33 +1492,178 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 			final Set<String> setTypesToIgnore) {
 		if (log.isTraceEnabled())
 			log.trace("begin saveDocument");
-		// communicate options to mappers using thread local variable
-		final DefaultTransactionDefinition txDef = new DefaultTransactionDefinition(
-				TransactionDefinition.PROPAGATION_REQUIRES_NEW);
-		txDef.setIsolationLevel("orcl".equals(this.dbType) ? TransactionDefinition.ISOLATION_READ_COMMITTED
-				: TransactionDefinition.ISOLATION_READ_UNCOMMITTED);
-		final TransactionTemplate txTemplate = new TransactionTemplate(
-				this.getTransactionManager(), txDef);
-		final int documentId = txTemplate
-				.execute(new TransactionCallback<Integer>() {
+		// the session is needed for the id generators and column metadata
+		final DocumentRows documentRows = new TransactionTemplate(
+				this.getTransactionManager())
+				.execute(new TransactionCallback<DocumentRows>() {
 
 					@Override
-					public Integer doInTransaction(TransactionStatus arg0) {
+					public DocumentRows doInTransaction(TransactionStatus arg0) {
+						SessionImplementor session = (SessionImplementor) sessionFactory
+								.getCurrentSession();
 						Document doc = createDocument(jcas, analysisBatch,
 								bStoreDocText, bStoreCAS);
-						sessionFactory.getCurrentSession().save(doc);
-						// make sure the document has been saved
-						getSessionFactory().getCurrentSession().flush();
-						saveAnnotationsHib(jcas,
-								bInsertAnnotationContainmentLinks,
-								setTypesToIgnore, doc);
-						extractAndSaveDocKey(jcas, doc);
-						return doc.getDocumentID();
+						doc.setDocumentID(nextId(Document.class, session));
+						DocumentRows documentRows = new DocumentRows();
+						documentRows.documentId = doc.getDocumentID();
+						documentRows.insertAnnotationContainmentLinks = bInsertAnnotationContainmentLinks;
+						extractDocument(jcas, doc, documentRows);
+						extractAnnotations(jcas, setTypesToIgnore,
+								documentRows, session);
+						return documentRows;
 					}
 				});
+		List<DocumentRows> documents = null;
+		synchronized (this.pendingDocuments) {
+			this.pendingDocuments.add(documentRows);
+			if (this.pendingDocuments.size() >= this.documentBatchSize) {
+				documents = new ArrayList<DocumentRows>(this.pendingDocuments);
+				this.pendingDocuments.clear();
+			}
+		}
+		if (documents != null)
+			writeDocuments(documents);
 		if (log.isTraceEnabled())
 			log.trace("end saveDocument");
-		return documentId;
+		return documentRows.documentId;
+	}
+
+	/**
+	 * write the pending documents
+	 */
+	public void flush() {
+		List<DocumentRows> documents;
+		synchronized (this.pendingDocuments) {
+			documents = new ArrayList<DocumentRows>(this.pendingDocuments);
+			this.pendingDocuments.clear();
+		}
+		if (documents.size() > 0)
+			writeDocuments(documents);
+	}
+
+	/**
+	 * write the documents that are still pending when the context is closed
+	 */
+	@Override
+	public void destroy() {
+		flush();
+	}
+
+	/**
+	 * write the documents in one transaction. If the batch fails, every
+	 * document is written in its own transaction so that one bad document does
+	 * not lose the others; the ids of the documents that still fail are logged
+	 * and the first failure is rethrown.
+	 */
+	private void writeDocuments(final List<DocumentRows> documents) {
+		try {
+			writeRows(documents);
+		} catch (RuntimeException e) {
+			if (documents.size() == 1)
+				throw e;
+			log.warn("could not write a batch of " + documents.size()
+					+ " documents, writing them one at a time", e);
+			RuntimeException firstFailure = null;
+			List<Integer> failedIds = new ArrayList<Integer>();
+			for (DocumentRows documentRows : documents) {
+				try {
+					writeRows(Collections.singletonList(documentRows));
+				} catch (RuntimeException de) {
+					log.error("could not write document_id: "
+							+ documentRows.documentId, de);
+					failedIds.add(documentRows.documentId);
+					if (firstFailure == null)
+						firstFailure = de;
+				}
+			}
+			if (firstFailure != null) {
+				log.error("documents not written, document_id: " + failedIds);
+				throw firstFailure;
+			}
+		}
+	}
+
+	/**
+	 * write the rows of the documents in one transaction. The rows of each
+	 * table are written with chunked batch updates; the documents before the
+	 * annotations that refer to them.
+	 */
+	private void writeRows(final List<DocumentRows> documents) {
+		if (log.isTraceEnabled())
+			log.trace("begin writeRows, documents: " + documents.size());
+		final Map<String, List<Object[]>> documentTableRows = new LinkedHashMap<String, List<Object[]>>();
+		final List<Object[]> annoBaseRows = new ArrayList<Object[]>();
+		final Map<String, List<Object[]>> annoTableRows = new LinkedHashMap<String, List<Object[]>>();
+		for (DocumentRows documentRows : documents) {
+			addRow(documentTableRows, documentRows.documentSql,
+					documentRows.documentRow);
+			annoBaseRows.addAll(documentRows.annoBaseRows);
+			for (Map.Entry<String, List<Object[]>> rows : documentRows.rows
+					.entrySet()) {
+				for (Object[] row : rows.getValue()) {
+					addRow(annoTableRows, rows.getKey(), row);
+				}
+			}
+		}
+		final DefaultTransactionDefinition txDef = new DefaultTransactionDefinition(
+				TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		txDef.setIsolationLevel("orcl".equals(this.dbType) ? TransactionDefinition.ISOLATION_READ_COMMITTED
+				: TransactionDefinition.ISOLATION_READ_UNCOMMITTED);
+		final TransactionTemplate txTemplate = new TransactionTemplate(
+				this.getTransactionManager(), txDef);
+		txTemplate.execute(new TransactionCallback<Object>() {
+
+			@Override
+			public Object doInTransaction(TransactionStatus arg0) {
+				for (Map.Entry<String, List<Object[]>> rows : documentTableRows
+						.entrySet()) {
+					chunkedBatchUpdate(rows.getKey(), rows.getValue(),
+							rowSetter);
+				}
+				chunkedBatchUpdate(
+						"insert into "
+								+ getTablePrefix()
+								+ "anno_base (anno_base_id, document_id, span_begin, span_end, uima_type_id) values (?, ?, ?, ?, ?)",
+						annoBaseRows, rowSetter);
+				for (DocumentRows documentRows : documents) {
+					if (documentRows.insertAnnotationContainmentLinks)
+						insertAnnotationContainmentLinks(documentRows.documentId);
+				}
+				for (Map.Entry<String, List<Object[]>> rows : annoTableRows
+						.entrySet()) {
+					chunkedBatchUpdate(rows.getKey(), rows.getValue(),
+							rowSetter);
+				}
+				return null;
+			}
+		});
+		if (log.isTraceEnabled())
+			log.trace("end writeRows");
+	}
+
+	private static void addRow(Map<String, List<Object[]>> rows, String sql,
+			Object[] row) {
+		List<Object[]> sqlRows = rows.get(sql);
+		if (sqlRows == null) {
+			sqlRows = new ArrayList<Object[]>();
+			rows.put(sql, sqlRows);
+		}
+		sqlRows.add(row);
+	}
+
+	/**
+	 * get the next id from the hibernate id generator of the entity. The
+	 * generators hand out ids from preallocated ranges, so the database is only
+	 * hit once per range.
+	 */
+	private int nextId(Class<?> entityClass, SessionImplementor session) {
+		IdentifierGenerator generator = ((SessionFactoryImplementor) this.sessionFactory)
+				.getIdentifierGenerator(entityClass.getName());
+		Serializable id = generator.generate(session, null);
+		if (!(id instanceof Number))
+			throw new IllegalStateException(entityClass.getName()
+					+ " ids must be generated before insert, not " + id);
+		return ((Number) id).intValue();
 	}
 
 	/**
@@ -1443,6 +1682,15 @@ public class DocumentMapperServiceImpl implements DocumentMapperService,
 		this.batchSize = batchSize;
 	}
 
+	/**
+	 * @param documentBatchSize
+	 *            number of documents written together, 1 to write every
+	 *            document when it is saved
+	 */
+	public void setDocumentBatchSize(int documentBatchSize) {
+		this.documentBatchSize = documentBatchSize;
+	}
+
 	public void setDataSource(DataSource dataSource) {
 		this.dataSource = dataSource;
 		jdbcTemplate = new JdbcTemplate(dataSource);
@@ -40,6 +40,7 @@ import com.google.common.base.Strings;
 public class TestUtils {
 	static final String queryGetDocumentKeys = "select note_id instance_id from %s%s";
 	static final String queryGetDocument = "select note_text from %s%s where note_id = :instance_id";
+	static final String queryGetDocuments = "select note_text, note_id instance_id from %s%s where note_id in (:instance_id)";
 
 	public static void addDescriptor(AggregateBuilder builder, String path)
 			throws IOException, InvalidXMLException {
@@ -97,4 +98,28 @@ public class TestUtils {
 								DBUtil.formatTableName("fracture_demo")));
 		return colReader;
 	}
+
+	/**
+	 * reader for the fracture demo that reads documents in batches
+	 */
+	public static CollectionReader getFractureDemoBatchCollectionReader(
+			int batchSize) throws ResourceInitializationException {
+		CollectionReader colReader = CollectionReaderFactory
+				.createReader(
+						DBCollectionReader.class,
+						"queryGetDocumentKeys",
+						String.format(queryGetDocumentKeys,
+								DBUtil.getYTEXTablePrefix(),
+								DBUtil.formatTableName("fracture_demo")),
+						"queryGetDocument",
+						String.format(queryGetDocument,
+								DBUtil.getYTEXTablePrefix(),
+								DBUtil.formatTableName("fracture_demo")),
+						"queryGetDocuments",
+						String.format(queryGetDocuments,
+								DBUtil.getYTEXTablePrefix(),
+								DBUtil.formatTableName("fracture_demo")),
+						"batchSize", batchSize);
+		return colReader;
+	}
 }
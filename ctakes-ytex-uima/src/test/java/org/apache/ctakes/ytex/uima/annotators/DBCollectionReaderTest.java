@@ -19,6 +19,8 @@
 package org.apache.ctakes.ytex.uima.annotators;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.ctakes.ytex.uima.TestUtils;
 import org.apache.ctakes.ytex.uima.types.DocKey;
@@ -50,6 +52,27 @@ public class DBCollectionReaderTest {
 		Assert.assertTrue("should have read some documents", count > 0);
 	}
 
+	@Test
+	public void testBatch() throws IOException, UIMAException {
+		List<String> documents = readDocuments(TestUtils.getFractureDemoCollectionReader());
+		// a batch size that leaves a partial last batch
+		List<String> batchDocuments = readDocuments(TestUtils.getFractureDemoBatchCollectionReader(3));
+		Assert.assertEquals("batches should read the same documents", documents, batchDocuments);
+	}
+
+	private List<String> readDocuments(CollectionReader colReader) throws IOException, UIMAException {
+		List<String> documents = new ArrayList<String>();
+		JCas jcas = JCasFactory.createJCasFromPath("src/main/resources/org/apache/ctakes/ytex/types/TypeSystem.xml");
+		while(colReader.hasNext()) {
+			colReader.getNext(jcas.getCas());
+			Assert.assertTrue("document should have a dockey", jcas.getAnnotationIndex(DocKey.type).iterator().hasNext());
+			documents.add(jcas.getDocumentText());
+			jcas.reset();
+		}
+		colReader.close();
+		return documents;
+	}
+
 
 
 }
@@ -25,6 +25,7 @@ import javax.sql.DataSource;
 
 import org.apache.ctakes.ytex.uima.ApplicationContextHolder;
 import org.apache.ctakes.ytex.uima.TestUtils;
+import org.apache.ctakes.ytex.uima.mapper.DocumentMapperServiceImpl;
 import org.apache.ctakes.ytex.uima.types.DocKey;
 import org.apache.ctakes.ytex.uima.types.KeyValuePair;
 import org.apache.uima.UIMAException;
@@ -149,4 +150,91 @@ public class DBConsumerTest {
 		Assert.assertTrue(query, jt.queryForInt(query) > 1);
 	}
 
+	private static final String TEXT = "Title: US Abdomen\n\nDr. Doolitle asked patient\nto take a deep breath\nand exhale slowly.  Patient coughed.  Prescribed acetominophen";
+
+	/**
+	 * run the engine on a document with the specified instance_id key
+	 */
+	private static void processDocument(AnalysisEngine engine, long key)
+			throws UIMAException {
+		JCas jCas = engine.newJCas();
+		jCas.setDocumentText(TEXT);
+		DocKey docKey = new DocKey(jCas);
+		KeyValuePair kvp = new KeyValuePair(jCas);
+		kvp.setKey("instance_id");
+		kvp.setValueLong(key);
+		FSArray fsa = new FSArray(jCas, 1);
+		fsa.set(0, kvp);
+		docKey.setKeyValuePairs(fsa);
+		docKey.addToIndexes();
+		engine.process(jCas);
+	}
+
+	/**
+	 * @return the number of documents with the key and the number of their
+	 *         segment, sentence and token annotations
+	 */
+	private static int[] countRows(JdbcTemplate jt, String schemaPrefix,
+			long key) {
+		String[] annoTables = { "anno_segment", "anno_sentence", "anno_token" };
+		int[] counts = new int[annoTables.length + 1];
+		counts[0] = jt.queryForInt(String.format(
+				"select count(*) from %sdocument where instance_id=%s",
+				schemaPrefix, key));
+		for (int i = 0; i < annoTables.length; i++) {
+			counts[i + 1] = jt
+					.queryForInt(String
+							.format("select count(*) from %sdocument d inner join %sanno_base ab on ab.document_id = d.document_id inner join %s%s s on s.anno_base_id = ab.anno_base_id where d.instance_id=%s",
+									schemaPrefix, schemaPrefix, schemaPrefix,
+									annoTables[i], key));
+		}
+		return counts;
+	}
+
+	/**
+	 * Verify that documents written in batches have the same rows as documents
+	 * written one at a time, and that the documents still pending are written
+	 * when the collection has been processed.
+	 */
+	@Test
+	public void testProcessAndSaveDocBatch() throws UIMAException, IOException {
+		DocumentMapperServiceImpl documentMapperService = ctx.getBean(
+				"documentMapperService", DocumentMapperServiceImpl.class);
+		int documentBatchSize = documentMapperService.getDocumentBatchSize();
+		AnalysisEngine engine = TestUtils.createTokenizerAE(null);
+		DataSource ds = ctx.getBean(DataSource.class);
+		Properties ytexProperties = (Properties) ctx.getBean("ytexProperties");
+		String schema = ytexProperties.getProperty("db.schema");
+		String schemaPrefix = Strings.isNullOrEmpty(schema) ? "" : schema + ".";
+		JdbcTemplate jt = new JdbcTemplate(ds);
+		// keys that do not collide with testProcessAndSaveDoc
+		long key = System.currentTimeMillis() * 10;
+		try {
+			documentMapperService.setDocumentBatchSize(1);
+			processDocument(engine, key);
+			int[] expected = countRows(jt, schemaPrefix, key);
+			Assert.assertEquals(1, expected[0]);
+			Assert.assertTrue(expected[3] > 1);
+
+			documentMapperService.setDocumentBatchSize(3);
+			for (int i = 1; i <= 4; i++) {
+				processDocument(engine, key + i);
+			}
+			// the first 3 documents are written together
+			for (int i = 1; i <= 3; i++) {
+				Assert.assertArrayEquals(expected,
+						countRows(jt, schemaPrefix, key + i));
+			}
+			// the 4th is pending until the collection has been processed
+			Assert.assertEquals(0, countRows(jt, schemaPrefix, key + 4)[0]);
+			engine.collectionProcessComplete();
+			Assert.assertArrayEquals(expected,
+					countRows(jt, schemaPrefix, key + 4));
+		} finally {
+			documentMapperService.flush();
+			documentMapperService.setDocumentBatchSize(documentBatchSize);
+			engine.destroy();
+		}
+	}
+
 }
@@ -0,0 +1,363 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.web.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Immutable in-memory index of concept terms for type-ahead concept search.
+ * Searches return the same rows as the retrieveConceptByFword query, in term
+ * order.
+ * <p>
+ * Terms are sorted ignoring case. They are front coded in blocks of
+ * {@link #BLOCK_SIZE}: the first term of a block is kept whole, every other
+ * term is stored as the length of the prefix it shares with the previous term
+ * and its remaining characters. A search binary searches the first terms of
+ * the blocks, then decodes the terms that start with the searched text until
+ * enough matches are found.
+ * <p>
+ * Preferred terms of concepts are kept by concept id, so that a concept id can
+ * be mapped to a term without a query.
+ */
+public class ConceptPrefixIndex {
+	/**
+	 * Builds an index from concept terms read from the database.
+	 */
+	public static class Builder {
+		private final List<TermEntry> entries = new ArrayList<TermEntry>();
+		private final Map<String, String> preferredTerms = new HashMap<String, String>();
+
+		/**
+		 * add a term whose first word is the first word of the term
+		 *
+		 * @param conceptId
+		 * @param term
+		 */
+		public void addTerm(String conceptId, String term) {
+			addTerm(conceptId, term, null);
+		}
+
+		/**
+		 * @param conceptId
+		 * @param term
+		 * @param fword
+		 *            first word of the term as stored with it, null to use the
+		 *            first word of the term
+		 */
+		public void addTerm(String conceptId, String term, String fword) {
+			if (conceptId == null || term == null)
+				return;
+			if (term.length() > MAX_TERM_LENGTH)
+				term = term.substring(0, MAX_TERM_LENGTH);
+			if (fword == null)
+				fword = getFirstWord(term);
+			if (term.length() > 0)
+				entries.add(new TermEntry(term, conceptId, fword));
+		}
+
+		/**
+		 * @param conceptId
+		 * @param term
+		 *            preferred term of the concept
+		 */
+		public void addPreferredTerm(String conceptId, String term) {
+			if (term != null)
+				preferredTerms.put(conceptId, term);
+		}
+
+		public ConceptPrefixIndex build() {
+			Collections.sort(entries);
+			List<TermEntry> distinctEntries = new ArrayList<TermEntry>(
+					entries.size());
+			TermEntry previous = null;
+			for (TermEntry entry : entries) {
+				if (previous == null || previous.compareTo(entry) != 0) {
+					distinctEntries.add(entry);
+					previous = entry;
+				}
+			}
+			TreeSet<String> conceptIdSet = new TreeSet<String>(
+					preferredTerms.keySet());
+			TreeSet<String> fwordSet = new TreeSet<String>();
+			for (TermEntry entry : distinctEntries) {
+				conceptIdSet.add(entry.conceptId);
+				fwordSet.add(entry.fword);
+			}
+			return new ConceptPrefixIndex(distinctEntries,
+					conceptIdSet.toArray(new String[conceptIdSet.size()]),
+					fwordSet.toArray(new String[fwordSet.size()]),
+					preferredTerms);
+		}
+	}
+
+	private static class TermEntry implements Comparable<TermEntry> {
+		private final String key;
+		private final String term;
+		private final String conceptId;
+		private final String fword;
+
+		private TermEntry(String term, String conceptId, String fword) {
+			this.key = toKey(term);
+			this.term = term;
+			this.conceptId = conceptId;
+			this.fword = fword;
+		}
+
+		public int compareTo(TermEntry other) {
+			int cmp = key.compareTo(other.key);
+			if (cmp == 0)
+				cmp = term.compareTo(other.term);
+			if (cmp == 0)
+				cmp = conceptId.compareTo(other.conceptId);
+			return cmp != 0 ? cmp : fword.compareTo(other.fword);
+		}
+	}
+
+	/**
+	 * number of terms in a front coded block
+	 */
+	public static final int BLOCK_SIZE = 16;
+	/**
+	 * number of characters of a term returned as the text of a match, as in
+	 * the retrieveConceptByFword query
+	 */
+	private static final int TEXT_LENGTH = 30;
+	private static final int MAX_TERM_LENGTH = Character.MAX_VALUE;
+
+	/**
+	 * @param term
+	 * @return the term in lower case, character by character so that the key
+	 *         has the length of the term
+	 */
+	private static String toKey(String term) {
+		char[] key = new char[term.length()];
+		for (int i = 0; i < key.length; i++)
+			key[i] = Character.toLowerCase(term.charAt(i));
+		return new String(key);
+	}
+
+	/**
+	 * @param term
+	 * @return the first word of the term
+	 */
+	private static String getFirstWord(String term) {
+		String words[] = term.trim().split("\\s+");
+		return words[0];
+	}
+
+	private final int size;
+	private final int maxTermLength;
+	/**
+	 * front coded terms: shared prefix length, suffix length, suffix chars
+	 */
+	private final char[] termChars;
+	/**
+	 * offset in termChars of each block
+	 */
+	private final int[] blockOffsets;
+	/**
+	 * first term of each block in lower case
+	 */
+	private final String[] blockFirstKeys;
+	/**
+	 * index in conceptIds of the concept of each term
+	 */
+	private final int[] termConceptIndices;
+	/**
+	 * index in fwords of the first word of each term
+	 */
+	private final int[] termFwordIndices;
+	/**
+	 * sorted distinct concept ids
+	 */
+	private final String[] conceptIds;
+	/**
+	 * sorted distinct first words
+	 */
+	private final String[] fwords;
+	/**
+	 * preferred term of each concept id, null if there is none
+	 */
+	private final String[] preferredTerms;
+
+	private ConceptPrefixIndex(List<TermEntry> entries, String[] conceptIds,
+			String[] fwords, Map<String, String> preferredTermMap) {
+		this.size = entries.size();
+		this.conceptIds = conceptIds;
+		this.fwords = fwords;
+		this.preferredTerms = new String[conceptIds.length];
+		for (int i = 0; i < conceptIds.length; i++) {
+			this.preferredTerms[i] = preferredTermMap.get(conceptIds[i]);
+		}
+		int blockCount = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		this.blockOffsets = new int[blockCount];
+		this.blockFirstKeys = new String[blockCount];
+		this.termConceptIndices = new int[size];
+		this.termFwordIndices = new int[size];
+		StringBuilder chars = new StringBuilder();
+		String previousTerm = "";
+		int maxLength = 0;
+		for (int i = 0; i < size; i++) {
+			TermEntry entry = entries.get(i);
+			maxLength = Math.max(maxLength, entry.term.length());
+			int prefixLength = 0;
+			if (i % BLOCK_SIZE == 0) {
+				blockOffsets[i / BLOCK_SIZE] = chars.length();
+				blockFirstKeys[i / BLOCK_SIZE] = entry.key;
+			} else {
+				prefixLength = sharedPrefixLength(previousTerm, entry.term);
+			}
+			chars.append((char) prefixLength);
+			chars.append((char) (entry.term.length() - prefixLength));
+			chars.append(entry.term, prefixLength, entry.term.length());
+			termConceptIndices[i] = Arrays.binarySearch(conceptIds,
+					entry.conceptId);
+			termFwordIndices[i] = Arrays.binarySearch(fwords, entry.fword);
+			previousTerm = entry.term;
+		}
+		this.maxTermLength = maxLength;
+		this.termChars = new char[chars.length()];
+		chars.getChars(0, chars.length(), this.termChars, 0);
+	}
+
+	private static int sharedPrefixLength(String s1, String s2) {
+		int max = Math.min(s1.length(), s2.length());
+		int i = 0;
+		while (i < max && s1.charAt(i) == s2.charAt(i))
+			i++;
+		return i;
+	}
+
+	/**
+	 * @return number of indexed terms
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param conceptId
+	 * @return preferred term of the concept, null if it is not indexed
+	 */
+	public String getPreferredTerm(String conceptId) {
+		int index = Arrays.binarySearch(conceptIds, conceptId);
+		return index < 0 ? null : preferredTerms[index];
+	}
+
+	/**
+	 * get the concepts with a term that starts with the text and whose first
+	 * word is fword, like the retrieveConceptByFword query: matches are
+	 * returned in term order, ignoring case, and are distinct by first word,
+	 * concept and text.
+	 *
+	 * @param fword
+	 *            first word of the terms
+	 * @param text
+	 *            start of the terms
+	 * @param maxResults
+	 * @return matching concepts, text is the start of the term.
+	 */
+	public List<ConceptFirstWord> search(String fword, String text,
+			int maxResults) {
+		List<ConceptFirstWord> results = new ArrayList<ConceptFirstWord>();
+		if (text.length() == 0 || size == 0 || maxResults <= 0)
+			return results;
+		String prefix = toKey(text);
+		Set<String> rows = new HashSet<String>();
+		char[] term = new char[maxTermLength];
+		for (int block = getFirstBlock(prefix); block < blockFirstKeys.length; block++) {
+			if (blockFirstKeys[block].compareTo(prefix) > 0
+					&& !blockFirstKeys[block].startsWith(prefix))
+				break;
+			int offset = blockOffsets[block];
+			int end = Math.min(size, (block + 1) * BLOCK_SIZE);
+			for (int termIndex = block * BLOCK_SIZE; termIndex < end; termIndex++) {
+				int prefixLength = termChars[offset];
+				int suffixLength = termChars[offset + 1];
+				System.arraycopy(termChars, offset + 2, term, prefixLength,
+						suffixLength);
+				offset += 2 + suffixLength;
+				int termLength = prefixLength + suffixLength;
+				int cmp = comparePrefix(term, termLength, prefix);
+				if (cmp < 0)
+					continue;
+				if (cmp > 0)
+					return results;
+				String termFword = fwords[termFwordIndices[termIndex]];
+				if (!termFword.equalsIgnoreCase(fword))
+					continue;
+				ConceptFirstWord cfw = new ConceptFirstWord();
+				cfw.setConceptId(conceptIds[termConceptIndices[termIndex]]);
+				cfw.setFword(termFword);
+				cfw.setText(new String(term, 0, Math.min(termLength,
+						TEXT_LENGTH)));
+				// the query selects distinct rows
+				if (rows.add(cfw.getFword() + '\n' + cfw.getConceptId() + '\n'
+						+ cfw.getText())) {
+					results.add(cfw);
+					if (results.size() == maxResults)
+						return results;
+				}
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * @return index of the last block whose first term is before the prefix,
+	 *         or 0
+	 */
+	private int getFirstBlock(String prefix) {
+		int low = 0;
+		int high = blockFirstKeys.length - 1;
+		int firstBlock = 0;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (blockFirstKeys[mid].compareTo(prefix) < 0) {
+				firstBlock = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return firstBlock;
+	}
+
+	/**
+	 * @return 0 if the term starts with the prefix ignoring case, otherwise
+	 *         the term order relative to the prefix
+	 */
+	private static int comparePrefix(char[] term, int termLength, String prefix) {
+		int max = Math.min(termLength, prefix.length());
+		for (int i = 0; i < max; i++) {
+			char c = Character.toLowerCase(term[i]);
+			if (c != prefix.charAt(i))
+				return c - prefix.charAt(i);
+		}
+		return termLength < prefix.length() ? -1 : 0;
+	}
+}
@@ -25,17 +25,35 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.sql.DataSource;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.simple.SimpleJdbcTemplate;
 
+/**
+ * Concept search for the type-ahead concept lookup.
+ * <p>
+ * If the retrieveConceptPrefixIndex query is defined in the search
+ * properties, all concept terms are loaded in the background into a
+ * {@link ConceptPrefixIndex} when the service starts, and reloaded every
+ * conceptIndexRefreshMinutes if set. Searches are answered from the index once
+ * it is loaded, and with the retrieveConceptByFword query until then.
+ */
 public class ConceptSearchServiceImpl implements ConceptSearchService,
-		InitializingBean {
+		InitializingBean, DisposableBean {
 	public static class ConceptFirstWordRowMapper implements
 			RowMapper<ConceptFirstWord> {
 
@@ -50,6 +68,14 @@ public class ConceptSearchServiceImpl implements ConceptSearchService,
 
 	}
 
+	private static final Log log = LogFactory
+			.getLog(ConceptSearchServiceImpl.class);
+	private static final int INDEX_FETCH_SIZE = 10000;
+
+	private volatile ConceptPrefixIndex conceptIndex;
+	private int conceptIndexMaxResults;
+	private String conceptIndexQuery;
+	private ScheduledExecutorService conceptIndexExecutor;
 	private String conceptIdToTermQuery;
 	private Pattern conceptPattern;
 	private DataSource dataSource;
@@ -57,6 +83,7 @@ public class ConceptSearchServiceImpl implements ConceptSearchService,
 
 	private SimpleJdbcTemplate jdbcTemplate;
 
+	private String preferredTermQuery;
 	private Properties searchProperties;
 	private Properties ytexProperties;
 
@@ -67,6 +94,95 @@ public class ConceptSearchServiceImpl implements ConceptSearchService,
 				.getProperty("retrieveTermByConceptId"));
 		this.conceptPattern = Pattern.compile(searchProperties.getProperty(
 				"conceptIdPattern", "\\AC\\d{7}\\Z"));
+		String indexQuery = this.getSearchProperties().getProperty(
+				"retrieveConceptPrefixIndex");
+		if (indexQuery != null && indexQuery.trim().length() > 0) {
+			this.conceptIndexQuery = prepareQuery(indexQuery);
+			String termQuery = this.getSearchProperties().getProperty(
+					"retrieveConceptPreferredTerms");
+			if (termQuery != null && termQuery.trim().length() > 0)
+				this.preferredTermQuery = prepareQuery(termQuery);
+			this.conceptIndexMaxResults = Integer.parseInt(this
+					.getSearchProperties().getProperty(
+							"conceptIndexMaxResults", "30"));
+			int refreshMinutes = Integer.parseInt(this.getSearchProperties()
+					.getProperty("conceptIndexRefreshMinutes", "0"));
+			startConceptIndex(refreshMinutes);
+		}
+	}
+
+	public void destroy() throws Exception {
+		if (this.conceptIndexExecutor != null)
+			this.conceptIndexExecutor.shutdownNow();
+	}
+
+	/**
+	 * load the concept index in the background, and reload it periodically
+	 * if refreshMinutes is positive
+	 */
+	private void startConceptIndex(int refreshMinutes) {
+		this.conceptIndexExecutor = Executors
+				.newSingleThreadScheduledExecutor(new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "ConceptPrefixIndex");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		Runnable rebuild = new Runnable() {
+			public void run() {
+				try {
+					rebuildConceptIndex();
+				} catch (RuntimeException e) {
+					// keep the current index, try again on the next refresh
+					log.error("could not load concept prefix index", e);
+				}
+			}
+		};
+		if (refreshMinutes > 0) {
+			this.conceptIndexExecutor.scheduleWithFixedDelay(rebuild, 0,
+					refreshMinutes, TimeUnit.MINUTES);
+		} else {
+			this.conceptIndexExecutor.execute(rebuild);
+		}
+	}
+
+	/**
+	 * load all concept terms into a new index and replace the current index
+	 * with it. Searches keep using the current index while the new one is
+	 * loaded.
+	 */
+	public void rebuildConceptIndex() {
+		if (this.conceptIndexQuery == null)
+			return;
+		long start = System.currentTimeMillis();
+		final ConceptPrefixIndex.Builder builder = new ConceptPrefixIndex.Builder();
+		JdbcTemplate jdbc = new JdbcTemplate(this.dataSource);
+		jdbc.setFetchSize(INDEX_FETCH_SIZE);
+		// conceptId, term and an optional first word
+		jdbc.query(this.conceptIndexQuery, new RowCallbackHandler() {
+			public void processRow(ResultSet rs) throws SQLException {
+				if (rs.getMetaData().getColumnCount() > 2)
+					builder.addTerm(rs.getString(1), rs.getString(2),
+							rs.getString(3));
+				else
+					builder.addTerm(rs.getString(1), rs.getString(2));
+			}
+		});
+		if (this.preferredTermQuery != null) {
+			// conceptId and preferred term
+			jdbc.query(this.preferredTermQuery, new RowCallbackHandler() {
+				public void processRow(ResultSet rs) throws SQLException {
+					builder.addPreferredTerm(rs.getString(1), rs.getString(2));
+				}
+			});
+		}
+		ConceptPrefixIndex index = builder.build();
+		this.conceptIndex = index;
+		if (log.isInfoEnabled())
+			log.info("loaded concept prefix index with " + index.size()
+					+ " terms in " + (System.currentTimeMillis() - start)
+					+ " ms");
 	}
 
 	/*
@@ -86,6 +202,9 @@ public class ConceptSearchServiceImpl implements ConceptSearchService,
 			fword = words[0];
 			// nFWordLength = fword.length();
 		}
+		ConceptPrefixIndex index = this.conceptIndex;
+		if (index != null)
+			return index.search(fword, text, this.conceptIndexMaxResults);
 		// return this.jdbcTemplate.query(query, new
 		// UMLSFirstWordRowMapper(),
 		// new Object[] { fword.length(), fword, nTextLength, text });
@@ -131,6 +250,12 @@ public class ConceptSearchServiceImpl implements ConceptSearchService,
 	}
 
 	public String getTermByConceptId(String conceptId) {
+		ConceptPrefixIndex index = this.conceptIndex;
+		if (index != null) {
+			String term = index.getPreferredTerm(conceptId);
+			if (term != null)
+				return term;
+		}
 		Map<String, Object> args = new HashMap<String, Object>();
 		args.put("conceptId", conceptId);
 		return this.jdbcTemplate.queryForObject(this.conceptIdToTermQuery,
@@ -0,0 +1,217 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.web.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * compare searches of the index with the retrieveConceptByFword query, run
+ * over the same rows without a database.
+ */
+public class ConceptPrefixIndexTest {
+	private static final int MAX_RESULTS = 30;
+	private static final String[] WORDS = { "acute", "acid", "aspirin",
+			"asthma", "back", "backache", "chest", "chronic", "pain", "painful",
+			"renal", "x-ray" };
+
+	/**
+	 * a row of v_snomed_fword_lookup
+	 */
+	private static class Row {
+		private final String conceptId;
+		private final String fword;
+		private final String term;
+
+		private Row(String conceptId, String fword, String term) {
+			this.conceptId = conceptId;
+			this.fword = fword;
+			this.term = term;
+		}
+	}
+
+	/**
+	 * the old query: where fword = :fword and substring(tok_str, 1, :termlen)
+	 * = :term order by tok_str, distinct rows of fword, concept and the first
+	 * 30 characters of the term. Terms that only differ in case are ordered by
+	 * case, then by concept.
+	 */
+	private static List<String> query(List<Row> rows, String fword,
+			String text, int maxResults) {
+		List<Row> matches = new ArrayList<Row>();
+		for (Row row : rows) {
+			if (row.fword.equalsIgnoreCase(fword)
+					&& row.term.length() >= text.length()
+					&& row.term.substring(0, text.length()).equalsIgnoreCase(
+							text))
+				matches.add(row);
+		}
+		Collections.sort(matches, new Comparator<Row>() {
+			public int compare(Row r1, Row r2) {
+				int cmp = r1.term.toLowerCase().compareTo(
+						r2.term.toLowerCase());
+				if (cmp == 0)
+					cmp = r1.term.compareTo(r2.term);
+				return cmp != 0 ? cmp : r1.conceptId.compareTo(r2.conceptId);
+			}
+		});
+		Set<String> distinct = new HashSet<String>();
+		List<String> results = new ArrayList<String>();
+		for (Row row : matches) {
+			String result = row.fword + "|" + row.conceptId + "|"
+					+ row.term.substring(0, Math.min(30, row.term.length()));
+			if (distinct.add(result) && results.size() < maxResults)
+				results.add(result);
+		}
+		return results;
+	}
+
+	private static List<String> toStrings(List<ConceptFirstWord> results) {
+		List<String> strings = new ArrayList<String>(results.size());
+		for (ConceptFirstWord result : results) {
+			strings.add(result.getFword() + "|" + result.getConceptId() + "|"
+					+ result.getText());
+		}
+		return strings;
+	}
+
+	/**
+	 * search the index and the rows with the parameters of
+	 * ConceptSearchServiceImpl.getConceptByFirstWord
+	 */
+	private static void assertSameResults(ConceptPrefixIndex index,
+			List<Row> rows, String textStart, int maxResults) {
+		String words[] = textStart.toLowerCase().split("\\s+");
+		String fword = textStart.toLowerCase();
+		String text = textStart.toLowerCase();
+		if (words.length > 1)
+			fword = words[0];
+		assertEquals(textStart, query(rows, fword, text, maxResults),
+				toStrings(index.search(fword, text, maxResults)));
+	}
+
+	private static ConceptPrefixIndex build(List<Row> rows) {
+		ConceptPrefixIndex.Builder builder = new ConceptPrefixIndex.Builder();
+		for (Row row : rows)
+			builder.addTerm(row.conceptId, row.term, row.fword);
+		return builder.build();
+	}
+
+	private static List<Row> randomRows(Random random, int count) {
+		List<Row> rows = new ArrayList<Row>(count);
+		for (int i = 0; i < count; i++) {
+			StringBuilder term = new StringBuilder();
+			int words = 1 + random.nextInt(4);
+			for (int w = 0; w < words; w++) {
+				if (w > 0)
+					term.append(' ');
+				term.append(WORDS[random.nextInt(WORDS.length)]);
+			}
+			String fword = term.toString().split(" ")[0];
+			String conceptId = String.format("C%07d", random.nextInt(count / 2));
+			if (random.nextInt(10) == 0) {
+				// terms that only differ in case, and long terms that only
+				// differ after the returned text
+				rows.add(new Row(conceptId, fword, term.toString().toUpperCase()));
+				term.append(" of the left and right lower extremity");
+			}
+			rows.add(new Row(conceptId, fword, term.toString()));
+		}
+		// duplicate rows
+		rows.addAll(rows.subList(0, count / 10));
+		return rows;
+	}
+
+	@Test
+	public void testMatchesQuery() {
+		Random random = new Random(37);
+		List<Row> rows = randomRows(random, 5000);
+		ConceptPrefixIndex index = build(rows);
+		List<String> searches = new ArrayList<String>();
+		for (String word : WORDS) {
+			// the first word is matched whole, not as a prefix
+			searches.add(word);
+			searches.add(word.substring(0, 3));
+			searches.add(word.toUpperCase());
+			searches.add(word + " p");
+			searches.add(word + " pain ");
+			searches.add(word + "  pain");
+		}
+		for (int i = 0; i < 500; i++) {
+			String term = rows.get(random.nextInt(rows.size())).term;
+			searches.add(term.substring(0, 1 + random.nextInt(term.length())));
+		}
+		searches.add("zzz");
+		searches.add(" ");
+		for (String search : searches) {
+			assertSameResults(index, rows, search, MAX_RESULTS);
+			assertSameResults(index, rows, search, 3);
+			assertSameResults(index, rows, search, 1000);
+		}
+	}
+
+	@Test
+	public void testStoredFirstWord() {
+		List<Row> rows = new ArrayList<Row>();
+		rows.add(new Row("C0000002", "x-ray", "X-Ray of chest"));
+		rows.add(new Row("C0000001", "x-ray", "x-ray chest"));
+		rows.add(new Row("C0000003", "xray", "x-ray of back"));
+		rows.add(new Row("C0000004", "x", "x"));
+		ConceptPrefixIndex index = build(rows);
+		List<ConceptFirstWord> results = index.search("x-ray", "x-ray ", 30);
+		assertEquals(2, results.size());
+		assertEquals("C0000001", results.get(0).getConceptId());
+		assertEquals("x-ray", results.get(0).getFword());
+		assertEquals("x-ray chest", results.get(0).getText());
+		assertEquals("C0000002", results.get(1).getConceptId());
+		assertEquals("X-Ray of chest", results.get(1).getText());
+		assertEquals("C0000003", index.search("xray", "x-ray", 30).get(0)
+				.getConceptId());
+		assertEquals(0, index.search("x", "x-ray", 30).size());
+
+		// without a stored first word, the first word of the term is used
+		ConceptPrefixIndex.Builder builder = new ConceptPrefixIndex.Builder();
+		builder.addTerm("C0000002", "X-Ray  of chest");
+		results = builder.build().search("x-ray", "x-ray", 30);
+		assertEquals(1, results.size());
+		assertEquals("X-Ray", results.get(0).getFword());
+	}
+
+	@Test
+	public void testPreferredTerms() {
+		ConceptPrefixIndex.Builder builder = new ConceptPrefixIndex.Builder();
+		builder.addTerm("C0000001", "aspirin");
+		builder.addPreferredTerm("C0000001", "Aspirin");
+		builder.addPreferredTerm("C0000002", "Chest pain");
+		ConceptPrefixIndex index = builder.build();
+		assertEquals("Aspirin", index.getPreferredTerm("C0000001"));
+		assertEquals("Chest pain", index.getPreferredTerm("C0000002"));
+		assertNull(index.getPreferredTerm("C0000003"));
+	}
+}
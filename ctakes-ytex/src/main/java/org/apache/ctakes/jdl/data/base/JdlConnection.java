@@ -72,9 +72,28 @@ public class JdlConnection {
 	 *             exception
 	 */
 	private void openConnection() throws InstantiationException, IllegalAccessException, ClassNotFoundException, SQLException {
+		connection = createConnection();
+	}
+
+	/**
+	 * Attempts to establish a new connection, independent of the open
+	 * connection, for loaders that insert on several connections at once. The
+	 * caller closes the returned connection.
+	 * 
+	 * @return the new connection
+	 * @throws InstantiationException
+	 *             exception
+	 * @throws IllegalAccessException
+	 *             exception
+	 * @throws ClassNotFoundException
+	 *             exception
+	 * @throws SQLException
+	 *             exception
+	 */
+	public final Connection createConnection() throws InstantiationException, IllegalAccessException, ClassNotFoundException, SQLException {
 		// Class.forName(driver);
 		DriverManager.registerDriver((Driver) Class.forName(driver).newInstance());
-		connection = DriverManager.getConnection(url, user, password);
+		return DriverManager.getConnection(url, user, password);
 	}
 
 	/**
@@ -0,0 +1,347 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.jdl.data.loader;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import org.apache.commons.lang.BooleanUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ctakes.jdl.schema.xdl.CsvLoadType;
+import org.apache.ctakes.jdl.schema.xdl.CsvLoadType.Column;
+
+/**
+ * Loads a CSV file with the bulk load of the database instead of inserts:
+ * load data local infile on MySQL, a text table on HSQLDB. The database reads
+ * the file itself, so a bulk load differs from the parser in a few ways: skip
+ * counts physical lines, MySQL does not skip empty lines and only spaces are
+ * trimmed. Columns with a format or sequence need the parser, so files with
+ * such columns are loaded with inserts.
+ * <p>
+ * MySQL needs local infile enabled on the server and the driver
+ * (allowLoadLocalInfile=true). HSQLDB needs a file database and the
+ * textdb.allow_full_path system property.
+ * 
+ * @author mas
+ */
+final class CsvBulkLoader {
+	private static final Log log = LogFactory.getLog(CsvBulkLoader.class);
+	private final CsvLoadType loader;
+	private final File file;
+	private final char delimiter;
+	private final char encapsulator;
+	private final int skip;
+	private final Charset charset;
+
+	/**
+	 * @param loader
+	 *            the loader
+	 * @param file
+	 *            the file
+	 * @param delimiter
+	 *            the field delimiter
+	 * @param encapsulator
+	 *            the encapsulator, {@link CsvLoader#DISABLED} if none
+	 * @param skip
+	 *            the number of lines to skip
+	 * @param charset
+	 *            the charset of the file
+	 */
+	CsvBulkLoader(final CsvLoadType loader, final File file,
+			final char delimiter, final char encapsulator, final int skip,
+			final Charset charset) {
+		this.loader = loader;
+		this.file = file;
+		this.delimiter = delimiter;
+		this.encapsulator = encapsulator;
+		this.skip = skip;
+		this.charset = charset;
+	}
+
+	/**
+	 * @param connection
+	 *            the connection to load on
+	 * @param progress
+	 *            the progress to add loaded rows to
+	 * @return true if the file was loaded, false if the database or the
+	 *         columns have no bulk load
+	 * @throws SQLException
+	 *             if the bulk load failed; the load is rolled back
+	 * @throws IOException
+	 *             exception
+	 */
+	boolean load(final Connection connection, final LoadProgress progress)
+			throws SQLException, IOException {
+		for (Column column : loader.getColumn()) {
+			if (column.getSeq() != null
+					|| (column.getFormat() != null && column.getFormat()
+							.length() > 0)) {
+				log.info("column " + column.getName()
+						+ " has a format or sequence, no bulk load");
+				return false;
+			}
+		}
+		String product = connection.getMetaData().getDatabaseProductName();
+		if ("MySQL".equalsIgnoreCase(product)) {
+			execute(connection, getMySqlLoad(), progress);
+			return true;
+		} else if (product != null && product.startsWith("HSQL")) {
+			return loadHsql(connection, progress);
+		}
+		log.info(product + " has no bulk load");
+		return false;
+	}
+
+	/**
+	 * @return the load data statement
+	 * @throws IOException
+	 *             exception
+	 */
+	String getMySqlLoad() throws IOException {
+		StringBuilder sql = new StringBuilder("load data local infile ");
+		sql.append(quote(file.getAbsolutePath(), true));
+		sql.append(" into table ").append(loader.getTable());
+		String mysqlCharset = getMySqlCharset();
+		if (mysqlCharset != null)
+			sql.append(" character set ").append(mysqlCharset);
+		sql.append(" fields terminated by ").append(
+				quote(String.valueOf(delimiter), true));
+		if (encapsulator != CsvLoader.DISABLED)
+			sql.append(" optionally enclosed by ").append(
+					quote(String.valueOf(encapsulator), true));
+		sql.append(" escaped by ''");
+		byte[] firstLine = readFirstLine();
+		boolean crlf = firstLine.length > 0
+				&& firstLine[firstLine.length - 1] == '\r';
+		sql.append(" lines terminated by ").append(
+				crlf ? "'\\r\\n'" : "'\\n'");
+		if (skip > 0)
+			sql.append(" ignore ").append(skip).append(" lines");
+		sql.append(" (");
+		int fields = getFieldCount();
+		for (int f = 0; f < fields; f++) {
+			if (f > 0)
+				sql.append(", ");
+			sql.append("@f").append(f);
+		}
+		sql.append(") set ");
+		appendColumns(sql, "@f", true);
+		return sql.toString();
+	}
+
+	/**
+	 * load through a temporary text table on the file
+	 */
+	private boolean loadHsql(final Connection connection,
+			final LoadProgress progress) throws SQLException, IOException {
+		String url = connection.getMetaData().getURL();
+		if (encapsulator != CsvLoader.DISABLED || skip > 1 || url == null
+				|| url.contains(":mem:") || url.contains(":res:")) {
+			log.info("no text table for an encapsulator, more than one line to skip or a memory database");
+			return false;
+		}
+		byte[] firstLine = readFirstLine();
+		int fields = 1;
+		for (byte b : firstLine) {
+			if (b == delimiter)
+				fields++;
+		}
+		fields = Math.max(fields, getFieldCount());
+		String textTable = "jdl_" + Long.toHexString(System.nanoTime());
+		StringBuilder create = new StringBuilder("create text table ")
+				.append(textTable).append(" (");
+		for (int f = 0; f < fields; f++) {
+			if (f > 0)
+				create.append(", ");
+			create.append("f").append(f).append(" longvarchar");
+		}
+		create.append(")");
+		String source = file.getAbsolutePath() + ";fs="
+				+ getHsqlSeparator(delimiter) + ";ignore_first=" + (skip == 1)
+				+ ";encoding=" + charset.name() + ";quoted=false";
+		StringBuilder insert = new StringBuilder("insert into ")
+				.append(loader.getTable()).append(" (");
+		boolean first = true;
+		for (Column column : loader.getColumn()) {
+			if (BooleanUtils.isNotTrue(column.isSkip())) {
+				if (!first)
+					insert.append(",");
+				insert.append(column.getName());
+				first = false;
+			}
+		}
+		insert.append(") select ");
+		appendColumns(insert, "f", false);
+		insert.append(" from ").append(textTable);
+		Statement statement = connection.createStatement();
+		try {
+			statement.execute(create.toString());
+			try {
+				statement.execute("set table " + textTable + " source "
+						+ quote(source, false));
+				execute(connection, insert.toString(), progress);
+			} finally {
+				statement.execute("drop table " + textTable);
+			}
+		} finally {
+			statement.close();
+		}
+		return true;
+	}
+
+	/**
+	 * append the value of each inserted column: a constant or a trimmed field,
+	 * null if empty
+	 * 
+	 * @param assign
+	 *            true for column = value pairs, false for values only
+	 */
+	private void appendColumns(final StringBuilder sql, final String field,
+			final boolean assign) {
+		int cs = 0; // columns to skip
+		int ce = 0; // columns from external
+		int c = 0;
+		for (Column column : loader.getColumn()) {
+			if (BooleanUtils.isTrue(column.isSkip())) {
+				cs++;
+				continue;
+			}
+			if (c > 0)
+				sql.append(", ");
+			if (assign)
+				sql.append(column.getName()).append(" = ");
+			String constant = column.getConstant();
+			if (constant == null) {
+				sql.append("nullif(trim(").append(field).append(c + cs - ce)
+						.append("), '')");
+			} else {
+				sql.append(constant.length() == 0 ? "null" : quote(constant,
+						assign));
+				ce++;
+			}
+			c++;
+		}
+	}
+
+	/**
+	 * @return the number of fields read by the columns
+	 */
+	private int getFieldCount() {
+		int fields = 0;
+		for (Column column : loader.getColumn()) {
+			if (BooleanUtils.isTrue(column.isSkip())
+					|| column.getConstant() == null)
+				fields++;
+		}
+		return fields;
+	}
+
+	/**
+	 * @return the first line of the file with its carriage return, without
+	 *         the line feed
+	 */
+	private byte[] readFirstLine() throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		try {
+			byte[] buffer = new byte[8192];
+			int length = 0;
+			int b;
+			while ((b = in.read()) != -1 && b != '\n') {
+				if (length == buffer.length)
+					buffer = Arrays.copyOf(buffer, length * 2);
+				buffer[length++] = (byte) b;
+			}
+			return Arrays.copyOf(buffer, length);
+		} finally {
+			in.close();
+		}
+	}
+
+	private String getMySqlCharset() {
+		String name = charset.name();
+		if ("UTF-8".equals(name))
+			return "utf8";
+		if ("ISO-8859-1".equals(name) || "windows-1252".equals(name))
+			return "latin1";
+		if ("US-ASCII".equals(name))
+			return "ascii";
+		return null;
+	}
+
+	private static String getHsqlSeparator(final char separator) {
+		switch (separator) {
+		case '\t':
+			return "\\t";
+		case ';':
+			return "\\semi";
+		case ' ':
+			return "\\space";
+		case '\'':
+			return "\\apos";
+		case '"':
+			return "\\quote";
+		case '\\':
+			return "\\\\";
+		default:
+			return String.valueOf(separator);
+		}
+	}
+
+	/**
+	 * @param backslashEscapes
+	 *            true to escape backslashes, as MySQL string literals do
+	 * @return the sql string literal
+	 */
+	private static String quote(final String value,
+			final boolean backslashEscapes) {
+		String escaped = backslashEscapes ? value.replace("\\", "\\\\")
+				: value;
+		return "'" + escaped.replace("'", "''") + "'";
+	}
+
+	/**
+	 * execute the load in one transaction
+	 */
+	private static void execute(final Connection connection, final String sql,
+			final LoadProgress progress) throws SQLException {
+		if (log.isInfoEnabled())
+			log.info(sql);
+		connection.setAutoCommit(false);
+		Statement statement = connection.createStatement();
+		try {
+			int rows = statement.executeUpdate(sql);
+			connection.commit();
+			progress.add(rows);
+		} catch (SQLException e) {
+			connection.rollback();
+			throw e;
+		} finally {
+			statement.close();
+		}
+	}
+}
@@ -26,9 +26,11 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.lang.reflect.Constructor;
-import java.sql.PreparedStatement;
+import java.nio.charset.Charset;
+import java.sql.Connection;
 import java.sql.SQLException;
 import java.text.Format;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -45,16 +47,29 @@ import org.apache.ctakes.jdl.schema.xdl.CsvLoadType.Column;
 
 /**
  * Loader of CSV file.
+ * <p>
+ * With threads greater than 1, files without encapsulator are split in byte
+ * ranges loaded in parallel on a connection per thread (see
+ * {@link ParallelCsvLoader}). With bulk, the database bulk load is used if
+ * there is one (see {@link CsvBulkLoader}).
  * 
  * @author mas
  */
 public class CsvLoader extends Loader {
 	private CSVParser parser;
+	private Reader reader;
 	private CsvLoadType loader;
+	private File file;
+	private char delimiter;
+	private char encapsulator;
 	/**
 	 * copied from CSVStrategy
 	 */
 	static final char DISABLED = '\ufffe';
+	/**
+	 * rows per batch and transaction if the loader has no commit
+	 */
+	static final int DEFAULT_COMMIT = 1000;
 
 	static final Log log = LogFactory.getLog(CsvLoader.class);
 	private Map<String, Format> formatMap;
@@ -67,13 +82,12 @@ public class CsvLoader extends Loader {
 	 * @throws FileNotFoundException
 	 *             exception
 	 */
-	@SuppressWarnings({ "rawtypes", "unchecked" })
 	public CsvLoader(final CsvLoadType loader, final File file)
 			throws FileNotFoundException {
 		InputStream inputStrem = new FileInputStream(file);
-		Reader reader = new InputStreamReader(inputStrem);
-		char delimiter = CharUtils.toChar(loader.getDelimiter());
-		char encapsulator = (loader.getEncapsulator() == null || loader
+		reader = new InputStreamReader(inputStrem);
+		delimiter = CharUtils.toChar(loader.getDelimiter());
+		encapsulator = (loader.getEncapsulator() == null || loader
 				.getEncapsulator().length() == 0) ? CSVStrategy.ENCAPSULATOR_DISABLED
 				: CharUtils.toChar(loader.getEncapsulator());
 		log.info(String.format("delimiter %d encapsulator %d", (int)delimiter, (int)encapsulator));
@@ -81,20 +95,30 @@ public class CsvLoader extends Loader {
 				CSVStrategy.ESCAPE_DISABLED, true, true, false, true);
 		parser = new CSVParser(reader, strategy);
 		this.loader = loader;
-		formatMap = new HashMap<String, Format>();
+		this.file = file;
+		formatMap = createFormatMap();
+	}
+
+	/**
+	 * @return the formats of the columns by column name; formats are not
+	 *         thread safe, so each loader thread creates its own
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	final Map<String, Format> createFormatMap() {
+		Map<String, Format> formats = new HashMap<String, Format>();
 		try {
 			for (Column col : loader.getColumn()) {
 				if (col.getFormat() != null && col.getFormat().length() > 0) {
 					Class cf = Class.forName(col.getFormat());
 					Constructor ccf = cf.getConstructor(String.class);
-					this.formatMap.put(col.getName(),
+					formats.put(col.getName(),
 							(Format) ccf.newInstance(col.getPattern()));
 				}
 			}
 		} catch (Exception e) {
 			throw new RuntimeException("oops", e);
 		}
-
+		return formats;
 	}
 
 	/**
@@ -115,6 +139,57 @@ public class CsvLoader extends Loader {
 				+ StringUtils.removeEnd(values, ",") + ")";
 	}
 
+	/**
+	 * @param row
+	 *            the fields of the line
+	 * @param r
+	 *            the line number, counting non empty lines from 1
+	 * @param formatMap
+	 *            the formats of the calling thread
+	 * @return the parameters of the insert statement
+	 */
+	final Object[] getValues(final String[] row, final int r,
+			final Map<String, Format> formatMap) {
+		Object[] values = new Object[loader.getColumn().size()];
+		int cs = 0; // columns to skip
+		int ce = 0; // columns from external
+		int c = 0;
+		for (Column column : loader.getColumn()) {
+			if (BooleanUtils.isTrue(column.isSkip())) {
+				cs++;
+			} else {
+				c++;
+				Object value = column.getConstant();
+				ce++;
+				if (value == null) {
+					if (column.getSeq() != null) {
+						value = r + column.getSeq().intValue();
+					} else {
+						value = row[c + cs - ce];
+						ce--;
+					}
+				}
+				if (value == null
+						|| (value instanceof String && ((String) value)
+								.length() == 0)) {
+					value = null;
+				} else if (formatMap.containsKey(column.getName())) {
+					// if there is a formatter, parse the string
+					try {
+						value = formatMap.get(column.getName()).parseObject(
+								(String) value);
+					} catch (Exception e) {
+						log.error("Could not format '" + value + "' for column "
+								+ column.getName() + " on line " + r, e);
+						throw new RuntimeException(e);
+					}
+				}
+				values[c - 1] = value;
+			}
+		}
+		return c == values.length ? values : Arrays.copyOf(values, c);
+	}
+
 	/**
 	 * @param jdlConnection
 	 *            the jdlConnection to manage
@@ -124,108 +199,36 @@ public class CsvLoader extends Loader {
 		String sql = getSqlInsert(loader);
 		if (log.isInfoEnabled())
 			log.info(sql);
-		Number ncommit = loader.getCommit();
+		int commit = (loader.getCommit() == null) ? DEFAULT_COMMIT : loader
+				.getCommit().intValue();
+		int threads = (loader.getThreads() == null) ? 1 : loader.getThreads()
+				.intValue();
 		int rs = (loader.getSkip() == null) ? 0 : loader.getSkip().intValue();
-		PreparedStatement preparedStatement = null;
+		Charset charset = Charset.defaultCharset();
+		LoadProgress progress = new LoadProgress(loader.getTable());
 		try {
-			jdlConnection.setAutoCommit(false);
-			// String[][] values = parser.getAllValues();
-			preparedStatement = jdlConnection.getOpenConnection()
-					.prepareStatement(sql);
-			boolean leftoversToCommit = false;
-			// for (int r = rs; r < values.length; r++) {
-			String[] row = null;
-			int r = 0;
-			do {
-				row = parser.getLine();
-				if (row == null)
-					break;
-				if (r < rs) {
-					r++;
-					continue;
-				}
-				r++;
-				try {
-					int cs = 0; // columns to skip
-					int ce = 0; // columns from external
-					int c = 0;
-					// PreparedStatement preparedStatement = jdlConnection
-					// .getOpenConnection().prepareStatement(sql);
-					// if (ncommit == null) {
-					// jdlConnection.setAutoCommit(true);
-					// } else {
-					// jdlConnection.setAutoCommit(false);
-					// }
-					for (Column column : loader.getColumn()) {
-						if (BooleanUtils.isTrue(column.isSkip())) {
-							cs++;
-						} else {
-							c++;
-							Object value = column.getConstant();
-							ce++;
-							if (value == null) {
-								if (column.getSeq() != null) {
-									value = r + column.getSeq().intValue();
-								} else {
-									// value = values[r][c + cs - ce];
-									value = row[c + cs - ce];
-									ce--;
-								}
-							}
-							if (value == null
-									|| (value instanceof String && ((String) value)
-											.length() == 0))
-								preparedStatement.setObject(c, null);
-							else {
-								// if there is a formatter, parse the string
-								if (this.formatMap
-										.containsKey(column.getName())) {
-									try {
-										preparedStatement
-												.setObject(
-														c,
-														this.formatMap
-																.get(column
-																		.getName())
-																.parseObject(
-																		(String) value));
-									} catch (Exception e) {
-										System.err.println("Could not format '"
-												+ value + "' for column "
-												+ column.getName()
-												+ " on line " + r);
-										e.printStackTrace(System.err);
-										throw new RuntimeException(e);
-									}
-								} else {
-									preparedStatement.setObject(c, value);
-								}
-							}
-						}
-					}
-					preparedStatement.addBatch();
-					leftoversToCommit = true;
-					// preparedStatement.executeBatch();
-					// executeBatch(preparedStatement);
-					// if (!jdlConnection.isAutoCommit()
-					// && (r % ncommit.intValue() == 0)) {
-					if (r % ncommit.intValue() == 0) {
-						preparedStatement.executeBatch();
-						jdlConnection.commitConnection();
-						leftoversToCommit = false;
-						log.info("inserted " + ncommit.intValue() + " rows");
-					}
-				} catch (SQLException e) {
-					// e.printStackTrace();
-					throw new RuntimeException(e);
+			if (BooleanUtils.isTrue(loader.isBulk())
+					&& bulkInsert(jdlConnection, rs, charset, progress)) {
+				progress.done();
+				return;
+			}
+			if (threads > 1
+					&& ParallelCsvLoader.isSplittable(delimiter, encapsulator,
+							charset)) {
+				boolean numberLines = !formatMap.isEmpty();
+				for (Column column : loader.getColumn()) {
+					numberLines |= column.getSeq() != null;
 				}
-			} while (row != null);
-			if (leftoversToCommit) {
-				preparedStatement.executeBatch();
-				jdlConnection.commitConnection();
-				leftoversToCommit = false;
+				new ParallelCsvLoader(this, file, delimiter, charset, threads,
+						commit, rs, numberLines).load(jdlConnection, sql,
+						progress);
+			} else {
+				if (threads > 1)
+					log.info("encapsulated or multi-byte file, loading with one thread");
+				sequentialInsert(jdlConnection.getOpenConnection(), sql,
+						commit, rs, progress);
 			}
-			log.info("inserted " + (r - rs) + " rows total");
+			progress.done();
 		} catch (InstantiationException e) {
 			log.error("", e);
 		} catch (IllegalAccessException e) {
@@ -237,21 +240,51 @@ public class CsvLoader extends Loader {
 		} catch (SQLException e) {
 			throw new RuntimeException(e);
 		} finally {
-			if (preparedStatement != null) {
-				try {
-					preparedStatement.close();
-				} catch (Exception e) {
-				}
+			try {
+				reader.close();
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	/**
+	 * @return true if loaded, false if there is no bulk load for the database
+	 *         or the columns
+	 */
+	private boolean bulkInsert(final JdlConnection jdlConnection,
+			final int rs, final Charset charset, final LoadProgress progress)
+			throws InstantiationException, IllegalAccessException,
+			ClassNotFoundException, SQLException, IOException {
+		Connection connection = jdlConnection.getOpenConnection();
+		try {
+			return new CsvBulkLoader(loader, file, delimiter, encapsulator,
+					rs, charset).load(connection, progress);
+		} catch (SQLException e) {
+			throw new RuntimeException("bulk load of " + file
+					+ " failed; remove the bulk attribute to load with inserts",
+					e);
+		}
+	}
+
+	/**
+	 * parse the file and insert the rows on one connection
+	 */
+	private void sequentialInsert(final Connection connection,
+			final String sql, final int commit, final int rs,
+			final LoadProgress progress) throws SQLException, IOException {
+		RowBatchWriter writer = new RowBatchWriter(connection, sql, commit,
+				progress);
+		try {
+			String[] row;
+			int r = 0;
+			while ((row = parser.getLine()) != null) {
+				r++;
+				if (r > rs)
+					writer.write(getValues(row, r, formatMap));
 			}
+			writer.flush();
+		} finally {
+			writer.close();
 		}
-		// try {
-		// if (!jdlConnection.isAutoCommit()) {
-		// jdlConnection.commitConnection();
-		// }
-		// jdlConnection.closeConnection();
-		// } catch (SQLException e) {
-		// // TODO Auto-generated catch block
-		// e.printStackTrace();
-		// }
 	}
 }
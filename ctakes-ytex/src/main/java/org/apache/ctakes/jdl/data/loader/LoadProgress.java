@@ -0,0 +1,82 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.jdl.data.loader;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Counts the rows committed to a table by one or more threads and logs the
+ * throughput.
+ * 
+ * @author mas
+ */
+final class LoadProgress {
+	private static final Log log = LogFactory.getLog(LoadProgress.class);
+	private final String table;
+	private final long start = System.nanoTime();
+	private final AtomicLong rows = new AtomicLong();
+
+	/**
+	 * @param table
+	 *            the table loaded
+	 */
+	LoadProgress(final String table) {
+		this.table = table;
+	}
+
+	/**
+	 * @param count
+	 *            the number of rows committed
+	 */
+	void add(final long count) {
+		long total = rows.addAndGet(count);
+		if (log.isInfoEnabled())
+			log.info(String.format("%s: inserted %d rows, %.0f rows/s", table,
+					total, getRate(total)));
+	}
+
+	/**
+	 * @return the number of rows committed
+	 */
+	long getRows() {
+		return rows.get();
+	}
+
+	/**
+	 * log the total number of rows and the throughput of the load
+	 */
+	void done() {
+		long total = rows.get();
+		log.info(String.format(
+				"%s: inserted %d rows total in %.1f s, %.0f rows/s", table,
+				total, getSeconds(), getRate(total)));
+	}
+
+	private double getSeconds() {
+		return (System.nanoTime() - start) / 1e9;
+	}
+
+	private double getRate(final long total) {
+		double seconds = getSeconds();
+		return seconds > 0 ? total / seconds : 0;
+	}
+}
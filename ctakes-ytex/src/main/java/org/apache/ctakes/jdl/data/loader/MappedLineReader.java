@@ -0,0 +1,161 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.jdl.data.loader;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads the delimited lines of a byte range of a file mapped in memory,
+ * splitting fields on the delimiter byte without decoding whole lines. Fields
+ * are trimmed and empty lines are skipped, like the {@link CsvLoader} parser
+ * without an encapsulator. The charset must encode line feeds and the
+ * delimiter as single bytes that never occur inside other characters (ASCII
+ * compatible charsets such as UTF-8 and ISO-8859-1).
+ * 
+ * @author mas
+ */
+final class MappedLineReader {
+	private static final byte LF = '\n';
+	private static final byte CR = '\r';
+	private final MappedByteBuffer buffer;
+	private final byte delimiter;
+	private final Charset charset;
+	private final List<String> fields = new ArrayList<String>();
+	private byte[] line = new byte[1024];
+
+	/**
+	 * @param channel
+	 *            the file channel
+	 * @param start
+	 *            the first byte, at the start of a line
+	 * @param end
+	 *            the byte after the last line
+	 * @param delimiter
+	 *            the field delimiter
+	 * @param charset
+	 *            the charset of the file
+	 * @throws IOException
+	 *             exception
+	 */
+	MappedLineReader(final FileChannel channel, final long start,
+			final long end, final byte delimiter, final Charset charset)
+			throws IOException {
+		this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end
+				- start);
+		this.delimiter = delimiter;
+		this.charset = charset;
+	}
+
+	/**
+	 * @return the fields of the next non empty line, null at the end of the
+	 *         range
+	 */
+	String[] nextLine() {
+		int length;
+		do {
+			if (!buffer.hasRemaining())
+				return null;
+			length = readLine();
+		} while (length == 0);
+		fields.clear();
+		int start = 0;
+		for (int i = 0; i < length; i++) {
+			if (line[i] == delimiter) {
+				fields.add(decode(start, i));
+				start = i + 1;
+			}
+		}
+		fields.add(decode(start, length));
+		return fields.toArray(new String[fields.size()]);
+	}
+
+	/**
+	 * @return the number of non empty lines from the current position to the
+	 *         end of the range
+	 */
+	long countLines() {
+		long count = 0;
+		int length = 0;
+		for (int i = buffer.position(); i < buffer.limit(); i++) {
+			byte b = buffer.get(i);
+			if (b == LF) {
+				if (length > 0)
+					count++;
+				length = 0;
+			} else if (b != CR || (i + 1 < buffer.limit() && buffer.get(i + 1) != LF)) {
+				length++;
+			}
+		}
+		return length > 0 ? count + 1 : count;
+	}
+
+	/**
+	 * copy the next line without its line terminator to the line buffer
+	 * 
+	 * @return the length of the line
+	 */
+	private int readLine() {
+		int length = 0;
+		while (buffer.hasRemaining()) {
+			byte b = buffer.get();
+			if (b == LF)
+				break;
+			if (length == line.length)
+				line = Arrays.copyOf(line, length * 2);
+			line[length++] = b;
+		}
+		if (length > 0 && line[length - 1] == CR)
+			length--;
+		return length;
+	}
+
+	/**
+	 * @return the trimmed field between start and end of the line buffer
+	 */
+	private String decode(int start, int end) {
+		while (start < end && isAsciiWhitespace(line[start]))
+			start++;
+		while (end > start && isAsciiWhitespace(line[end - 1]))
+			end--;
+		if (start == end)
+			return "";
+		String field = new String(line, start, end - start, charset);
+		if (field.charAt(0) > 0x7f || field.charAt(field.length() - 1) > 0x7f) {
+			// non ascii whitespace, trimmed by the parser as well
+			int s = 0;
+			int e = field.length();
+			while (s < e && Character.isWhitespace(field.charAt(s)))
+				s++;
+			while (e > s && Character.isWhitespace(field.charAt(e - 1)))
+				e--;
+			field = field.substring(s, e);
+		}
+		return field;
+	}
+
+	private static boolean isAsciiWhitespace(final byte b) {
+		return (b >= 0x09 && b <= 0x0d) || (b >= 0x1c && b <= 0x20);
+	}
+}
@@ -0,0 +1,294 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.jdl.data.loader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.sql.Connection;
+import java.text.Format;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ctakes.jdl.data.base.JdlConnection;
+
+/**
+ * Loads a CSV file without encapsulator with several threads: the file is
+ * split in byte ranges at line starts, and each thread maps ranges in memory,
+ * parses them and inserts the rows with JDBC batches on its own connection.
+ * Rows are numbered like the sequential load, counting the lines of all
+ * ranges first when a column needs the line number.
+ * 
+ * @author mas
+ */
+final class ParallelCsvLoader {
+	private static final Log log = LogFactory.getLog(ParallelCsvLoader.class);
+	private static final long MIN_RANGE = 1L << 20;
+	private static final long MAX_RANGE = 256L << 20;
+	private final CsvLoader csvLoader;
+	private final File file;
+	private final byte delimiter;
+	private final Charset charset;
+	private final int threads;
+	private final int commit;
+	private final int skip;
+	private final boolean numberLines;
+
+	/**
+	 * @param csvLoader
+	 *            the loader converting lines to values
+	 * @param file
+	 *            the file
+	 * @param delimiter
+	 *            the field delimiter
+	 * @param charset
+	 *            the charset of the file
+	 * @param threads
+	 *            the number of threads and connections
+	 * @param commit
+	 *            the number of rows per batch and transaction
+	 * @param skip
+	 *            the number of lines to skip
+	 * @param numberLines
+	 *            true if the values depend on the line number
+	 */
+	ParallelCsvLoader(final CsvLoader csvLoader, final File file,
+			final char delimiter, final Charset charset, final int threads,
+			final int commit, final int skip, final boolean numberLines) {
+		this.csvLoader = csvLoader;
+		this.file = file;
+		this.delimiter = (byte) delimiter;
+		this.charset = charset;
+		this.threads = threads;
+		this.commit = commit;
+		this.skip = skip;
+		this.numberLines = numberLines || skip > 0;
+	}
+
+	/**
+	 * @param delimiter
+	 *            the field delimiter
+	 * @param encapsulator
+	 *            the encapsulator, {@link CsvLoader#DISABLED} if none
+	 * @param charset
+	 *            the charset of the file
+	 * @return true if the file can be split at line feed bytes: no
+	 *         encapsulator, and line feeds and delimiter are single bytes that
+	 *         do not occur inside other characters
+	 */
+	static boolean isSplittable(final char delimiter, final char encapsulator,
+			final Charset charset) {
+		if (encapsulator != CsvLoader.DISABLED || delimiter > 0x7f)
+			return false;
+		if (!"UTF-8".equals(charset.name())
+				&& charset.newEncoder().maxBytesPerChar() > 1)
+			return false;
+		return Arrays.equals(new byte[] { '\n', (byte) delimiter },
+				("\n" + delimiter).getBytes(charset));
+	}
+
+	/**
+	 * @param jdlConnection
+	 *            the connection parameters of the threads
+	 * @param sql
+	 *            the insert statement
+	 * @param progress
+	 *            the progress to add committed rows to
+	 * @throws IOException
+	 *             exception
+	 */
+	void load(final JdlConnection jdlConnection, final String sql,
+			final LoadProgress progress) throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			final FileChannel channel = randomAccessFile.getChannel();
+			final long[] bounds = split(channel);
+			final int ranges = bounds.length - 1;
+			log.info(String.format("loading %s in %d ranges with %d threads",
+					file, ranges, threads));
+			final int[] firstLines = new int[ranges];
+			if (numberLines) {
+				List<Callable<Long>> counts = new ArrayList<Callable<Long>>(
+						ranges);
+				for (int i = 0; i < ranges; i++) {
+					final long start = bounds[i];
+					final long end = bounds[i + 1];
+					counts.add(new Callable<Long>() {
+						@Override
+						public Long call() throws IOException {
+							return new MappedLineReader(channel, start, end,
+									delimiter, charset).countLines();
+						}
+					});
+				}
+				List<Long> lines = invokeAll(executor, counts);
+				for (int i = 1; i < ranges; i++) {
+					firstLines[i] = firstLines[i - 1]
+							+ lines.get(i - 1).intValue();
+				}
+			}
+			final AtomicInteger nextRange = new AtomicInteger();
+			final AtomicBoolean failed = new AtomicBoolean();
+			List<Callable<Void>> workers = new ArrayList<Callable<Void>>(
+					threads);
+			for (int t = 0; t < threads; t++) {
+				workers.add(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						Connection connection = jdlConnection
+								.createConnection();
+						try {
+							RowBatchWriter writer = new RowBatchWriter(
+									connection, sql, commit, progress);
+							try {
+								Map<String, Format> formatMap = csvLoader
+										.createFormatMap();
+								int range;
+								while (!failed.get()
+										&& (range = nextRange.getAndIncrement()) < ranges) {
+									MappedLineReader reader = new MappedLineReader(
+											channel, bounds[range],
+											bounds[range + 1], delimiter,
+											charset);
+									int r = firstLines[range];
+									String[] row;
+									while (!failed.get()
+											&& (row = reader.nextLine()) != null) {
+										r++;
+										if (r > skip)
+											writer.write(csvLoader.getValues(
+													row, r, formatMap));
+									}
+								}
+								writer.flush();
+							} catch (Exception e) {
+								failed.set(true);
+								writer.rollback();
+								throw e;
+							} finally {
+								writer.close();
+							}
+						} finally {
+							connection.close();
+						}
+						return null;
+					}
+				});
+			}
+			invokeAll(executor, workers);
+		} finally {
+			executor.shutdownNow();
+			randomAccessFile.close();
+		}
+	}
+
+	/**
+	 * @return the start of each range, followed by the file size
+	 */
+	private long[] split(final FileChannel channel) throws IOException {
+		long size = channel.size();
+		long ranges = Math.max(threads * 4L, (size + MAX_RANGE - 1)
+				/ MAX_RANGE);
+		ranges = Math.max(1, Math.min(ranges, size / MIN_RANGE));
+		List<Long> starts = new ArrayList<Long>();
+		starts.add(0L);
+		ByteBuffer scan = ByteBuffer.allocate(8192);
+		long last = 0;
+		for (long i = 1; i < ranges; i++) {
+			long start = getLineStart(channel, Math.max(size * i / ranges,
+					last), scan);
+			if (start > last && start < size) {
+				starts.add(start);
+				last = start;
+			}
+		}
+		long[] bounds = new long[starts.size() + 1];
+		for (int i = 0; i < starts.size(); i++) {
+			bounds[i] = starts.get(i);
+		}
+		bounds[starts.size()] = size;
+		return bounds;
+	}
+
+	/**
+	 * @return the start of the first line at or after position
+	 */
+	private static long getLineStart(final FileChannel channel,
+			final long position, final ByteBuffer scan) throws IOException {
+		if (position == 0)
+			return 0;
+		long p = position - 1;
+		while (true) {
+			scan.clear();
+			int n = channel.read(scan, p);
+			if (n <= 0)
+				return channel.size();
+			for (int i = 0; i < n; i++) {
+				if (scan.get(i) == '\n')
+					return p + i + 1;
+			}
+			p += n;
+		}
+	}
+
+	/**
+	 * run the tasks and wait for all of them
+	 * 
+	 * @return the results in task order
+	 * @throws RuntimeException
+	 *             wrapping the failure of the first failed task
+	 */
+	private static <T> List<T> invokeAll(final ExecutorService executor,
+			final List<Callable<T>> tasks) {
+		List<T> results = new ArrayList<T>(tasks.size());
+		try {
+			RuntimeException failure = null;
+			for (Future<T> future : executor.invokeAll(tasks)) {
+				try {
+					results.add(future.get());
+				} catch (ExecutionException e) {
+					if (failure == null)
+						failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e
+								.getCause() : new RuntimeException(e.getCause());
+				}
+			}
+			if (failure != null)
+				throw failure;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+		return results;
+	}
+}
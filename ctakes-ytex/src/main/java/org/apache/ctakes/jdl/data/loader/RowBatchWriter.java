@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.jdl.data.loader;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Inserts rows with JDBC batches on a connection, committing every commit
+ * rows. Not thread safe: each loader thread has its own writer and
+ * connection.
+ * 
+ * @author mas
+ */
+final class RowBatchWriter {
+	private static final Log log = LogFactory.getLog(RowBatchWriter.class);
+	private final Connection connection;
+	private final PreparedStatement preparedStatement;
+	private final int commit;
+	private final LoadProgress progress;
+	private int pending;
+
+	/**
+	 * @param connection
+	 *            the connection to insert on, switched to manual commit
+	 * @param sql
+	 *            the insert statement
+	 * @param commit
+	 *            the number of rows per batch and transaction
+	 * @param progress
+	 *            the progress to add committed rows to
+	 * @throws SQLException
+	 *             exception
+	 */
+	RowBatchWriter(final Connection connection, final String sql,
+			final int commit, final LoadProgress progress) throws SQLException {
+		this.connection = connection;
+		this.commit = commit;
+		this.progress = progress;
+		connection.setAutoCommit(false);
+		preparedStatement = connection.prepareStatement(sql);
+	}
+
+	/**
+	 * @param values
+	 *            the parameters of the insert statement
+	 * @throws SQLException
+	 *             exception
+	 */
+	void write(final Object[] values) throws SQLException {
+		for (int c = 0; c < values.length; c++) {
+			preparedStatement.setObject(c + 1, values[c]);
+		}
+		preparedStatement.addBatch();
+		if (++pending >= commit)
+			flush();
+	}
+
+	/**
+	 * execute and commit the pending rows
+	 * 
+	 * @throws SQLException
+	 *             exception
+	 */
+	void flush() throws SQLException {
+		if (pending > 0) {
+			preparedStatement.executeBatch();
+			connection.commit();
+			progress.add(pending);
+			pending = 0;
+		}
+	}
+
+	/**
+	 * roll back the pending rows after a failure
+	 */
+	void rollback() {
+		pending = 0;
+		try {
+			connection.rollback();
+		} catch (SQLException e) {
+			log.warn("rollback failed", e);
+		}
+	}
+
+	/**
+	 * close the statement; the connection stays open
+	 */
+	void close() {
+		try {
+			preparedStatement.close();
+		} catch (SQLException e) {
+			log.warn("close failed", e);
+		}
+	}
+}
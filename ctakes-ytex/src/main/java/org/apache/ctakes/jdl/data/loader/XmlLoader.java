@@ -18,9 +18,20 @@
  */
 package org.apache.ctakes.jdl.data.loader;
 
-import java.sql.PreparedStatement;
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 import org.apache.commons.jxpath.JXPathContext;
@@ -35,10 +46,17 @@ import org.w3c.dom.Node;
 
 /**
  * Loader of XML file.
+ * <p>
+ * Rows are inserted with JDBC batches. With threads greater than 1, the rows
+ * read from the document are queued to threads inserting on a connection each.
  * 
  * @author mas
  */
 public class XmlLoader extends Loader {
+	/**
+	 * marks the end of the rows for an insert thread
+	 */
+	private static final Object[] END = new Object[0];
 	private JXPathContext context;
 	private XmlLoadType loader;
 
@@ -75,63 +93,169 @@ public class XmlLoader extends Loader {
 	@Override
 	public final void dataInsert(final JdlConnection jdlConnection) {
 		String sql = getSqlInsert(loader);
-		Number ncommit = loader.getCommit();
-		int r = 0;
+		// without commit every row is committed
+		int commit = (loader.getCommit() == null) ? 1 : loader.getCommit().intValue();
+		int threads = (loader.getThreads() == null) ? 1 : loader.getThreads().intValue();
+		LoadProgress progress = new LoadProgress(loader.getTable());
 		try {
-			Iterator<?> iterator = context.iteratePointers(loader.getXroot());
-			while (iterator.hasNext()) {
+			if (threads > 1) {
+				parallelInsert(jdlConnection, sql, commit, threads, progress);
+			} else {
+				RowBatchWriter writer = new RowBatchWriter(jdlConnection.getOpenConnection(), sql, commit, progress);
+				try {
+					Iterator<Object[]> rows = iterateRows();
+					while (rows.hasNext()) {
+						writer.write(rows.next());
+					}
+					writer.flush();
+				} finally {
+					writer.close();
+				}
+			}
+			progress.done();
+		} catch (InstantiationException e) {
+			throw new RuntimeException(e);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		} catch (ClassNotFoundException e) {
+			throw new RuntimeException(e);
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * @return the values of the columns for each node of the root; xpath
+	 *         columns are evaluated once against the document
+	 */
+	private Iterator<Object[]> iterateRows() {
+		final List<Column> columns = loader.getColumn();
+		final Object[] xpathValues = new Object[columns.size()];
+		for (int c = 0; c < columns.size(); c++) {
+			Column column = columns.get(c);
+			if (column.getConstant() == null && column.getSeq() == null && column.getXpath() != null) {
+				xpathValues[c] = this.context.getValue(column.getXpath());
+			}
+		}
+		final Iterator<?> iterator = context.iteratePointers(loader.getXroot());
+		return new Iterator<Object[]>() {
+			private int r = 0;
+
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public Object[] next() {
 				r++;
 				NodePointer pointer = (NodePointer) iterator.next();
 				Node node = (Node) pointer.getNode();
 				JXPathContext context = JXPathContext.newContext(DomUtil.nodeToDocument(node));
-				try {
-					int c = 0;
-					PreparedStatement preparedStatement = jdlConnection.getOpenConnection().prepareStatement(sql);
-					if (ncommit == null) {
-						jdlConnection.setAutoCommit(true);
-					} else {
-						jdlConnection.setAutoCommit(false);
+				Object[] values = new Object[columns.size()];
+				for (int c = 0; c < columns.size(); c++) {
+					Column column = columns.get(c);
+					Object value = column.getConstant();
+					if (value == null) {
+						if (column.getSeq() != null) {
+							value = r + column.getSeq().intValue();
+						} else if (column.getXpath() != null) {
+							value = xpathValues[c];
+						} else {
+							value = context.getPointer(column.getXleaf()).getValue();
+						}
 					}
-					for (Column column : loader.getColumn()) {
-						c++;
-						Object value = column.getConstant();
-						if (value == null) {
-							if (column.getSeq() != null) {
-								value = r + column.getSeq().intValue();
-							} else if (column.getXpath() != null) {
-								value = this.context.getValue(column.getXpath());
-							} else {
-								value = context.getPointer(column.getXleaf()).getValue();
+					values[c] = value;
+				}
+				return values;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * read the rows on this thread and insert them with threads on their own
+	 * connections; the queue of rows is bounded, so reading waits for the
+	 * inserts
+	 */
+	private void parallelInsert(final JdlConnection jdlConnection, final String sql, final int commit,
+			final int threads, final LoadProgress progress) {
+		final BlockingQueue<Object[]> queue = new ArrayBlockingQueue<Object[]>(Math.max(commit, 64) * threads);
+		final AtomicBoolean failed = new AtomicBoolean();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Void>> futures = new ArrayList<Future<Void>>(threads);
+			for (int t = 0; t < threads; t++) {
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						Connection connection = jdlConnection.createConnection();
+						try {
+							RowBatchWriter writer = new RowBatchWriter(connection, sql, commit, progress);
+							try {
+								while (true) {
+									Object[] values = queue.poll(100, TimeUnit.MILLISECONDS);
+									if (values == END || (values == null && failed.get()))
+										break;
+									if (values != null)
+										writer.write(values);
+								}
+								writer.flush();
+							} catch (Exception e) {
+								failed.set(true);
+								writer.rollback();
+								throw e;
+							} finally {
+								writer.close();
 							}
+						} finally {
+							connection.close();
 						}
-						preparedStatement.setObject(c, value);
-					}
-					executeBatch(preparedStatement);
-					if (!jdlConnection.isAutoCommit() && (r % ncommit.intValue() == 0)) {
-						jdlConnection.commitConnection();
+						return null;
 					}
-				} catch (SQLException e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
+				}));
+			}
+			try {
+				Iterator<Object[]> rows = iterateRows();
+				while (rows.hasNext() && !failed.get()) {
+					offer(queue, rows.next(), failed);
 				}
+			} catch (RuntimeException e) {
+				failed.set(true);
+				throw e;
 			}
-		} catch (InstantiationException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		} catch (IllegalAccessException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		} catch (ClassNotFoundException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
-		try {
-			if (!jdlConnection.isAutoCommit()) {
-				jdlConnection.commitConnection();
+			for (int t = 0; t < threads; t++) {
+				offer(queue, END, failed);
 			}
-		} catch (SQLException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			RuntimeException failure = null;
+			for (Future<Void> future : futures) {
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					if (failure == null)
+						failure = new RuntimeException(e.getCause());
+				}
+			}
+			if (failure != null)
+				throw failure;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * queue the values unless an insert thread failed
+	 */
+	private static void offer(final BlockingQueue<Object[]> queue, final Object[] values, final AtomicBoolean failed)
+			throws InterruptedException {
+		while (!failed.get() && !queue.offer(values, 100, TimeUnit.MILLISECONDS)) {
 		}
 	}
 }
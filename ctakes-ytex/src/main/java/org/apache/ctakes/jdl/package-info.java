@@ -23,6 +23,7 @@
  * <li> support specification of tab as delimiter
  * <li> disable text encapsulators by defalt in CsvLoader
  * <li> change package names
+ * <li> parallel csv and xml loads on several connections, database bulk loads
  */
 package org.apache.ctakes.jdl;
 
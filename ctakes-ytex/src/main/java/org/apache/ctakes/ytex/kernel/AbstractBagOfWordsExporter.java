@@ -26,7 +26,9 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.HashMap;
 import java.util.InvalidPropertiesFormatException;
+import java.util.Map;
 import java.util.Properties;
 import java.util.SortedMap;
 import java.util.SortedSet;
@@ -100,11 +102,13 @@ public class AbstractBagOfWordsExporter {
 					}
 
 				}, new RowCallbackHandler() {
+					// the driver creates a string per row, keep one per word
+					Map<String, String> words = new HashMap<String, String>();
 
 					@Override
 					public void processRow(ResultSet rs) throws SQLException {
 						int instanceId = rs.getInt(1);
-						String word = rs.getString(2);
+						String word = internWord(words, rs.getString(2));
 						double wordValue = rs.getDouble(3);
 						addNumericWordToInstance(bagOfWordsData, instanceId,
 								word, wordValue);
@@ -116,6 +120,21 @@ public class AbstractBagOfWordsExporter {
 		});
 	}
 
+	/**
+	 * @return the string equal to word that was seen first, so that the
+	 *         instance maps share one string per word
+	 */
+	private static String internWord(Map<String, String> words, String word) {
+		if (word == null)
+			return null;
+		String internedWord = words.get(word);
+		if (internedWord == null) {
+			internedWord = word;
+			words.put(word, word);
+		}
+		return internedWord;
+	}
+
 	protected void addNumericWordToInstance(BagOfWordsData bagOfWordsData,
 			int instanceId, String word, double wordValue) {
 		// add the numeric word to the map of words for this document
@@ -191,12 +210,15 @@ public class AbstractBagOfWordsExporter {
 					}
 
 				}, new RowCallbackHandler() {
+					// the driver creates a string per row, keep one per word
+					// and value
+					Map<String, String> words = new HashMap<String, String>();
 
 					@Override
 					public void processRow(ResultSet rs) throws SQLException {
 						int instanceId = rs.getInt(1);
-						String word = rs.getString(2);
-						String wordValue = rs.getString(3);
+						String word = internWord(words, rs.getString(2));
+						String wordValue = internWord(words, rs.getString(3));
 						addNominalWordToInstance(bagOfWordsData, instanceId,
 								word, wordValue);
 					}
@@ -32,7 +32,8 @@ import java.util.TreeMap;
 
 import com.google.common.collect.BiMap;
 
-public abstract class BaseSparseDataFormatter implements SparseDataFormatter {
+public abstract class BaseSparseDataFormatter implements SparseDataFormatter,
+		Cloneable {
 	protected KernelUtil kernelUtil;
 
 	/**
@@ -145,23 +146,23 @@ public abstract class BaseSparseDataFormatter implements SparseDataFormatter {
 			Map<String, Map<String, Integer>> nominalAttributeMap,
 			long instanceId) {
 		SortedMap<Integer, Double> instanceValues = new TreeMap<Integer, Double>();
-		// get numeric values for instance
-		if (bagOfWordsData.getInstanceNumericWords().containsKey(instanceId)) {
-			for (Map.Entry<String, Double> numericValue : bagOfWordsData
-					.getInstanceNumericWords().get(instanceId).entrySet()) {
+		SparseData.SparseRow row = bagOfWordsData.getRow(instanceId);
+		if (row != null) {
+			// get numeric values for instance
+			for (int i = 0; i < row.getNumericCount(); i++) {
 				// look up index for attribute and put in map
-				instanceValues.put(
-						numericAttributeMap.get(numericValue.getKey()),
-						numericValue.getValue());
+				instanceValues.put(numericAttributeMap.get(bagOfWordsData
+						.getNumericWord(row.getNumericWordId(i))), row
+						.getNumericValue(i));
 			}
-		}
-		if (bagOfWordsData.getInstanceNominalWords().containsKey(instanceId)) {
-			for (Map.Entry<String, String> nominalValue : bagOfWordsData
-					.getInstanceNominalWords().get(instanceId).entrySet()) {
+			for (int i = 0; i < row.getNominalCount(); i++) {
 				// look up index for attribute and value and put in map
 				instanceValues.put(
-						nominalAttributeMap.get(nominalValue.getKey()).get(
-								nominalValue.getValue()), 1d);
+						nominalAttributeMap.get(
+								bagOfWordsData.getNominalWord(row
+										.getNominalWordId(i))).get(
+								bagOfWordsData.getNominalValue(row
+										.getNominalValueId(i))), 1d);
 			}
 		}
 		return instanceValues;
@@ -266,6 +267,26 @@ public abstract class BaseSparseDataFormatter implements SparseDataFormatter {
 				instanceLabel.getLabelToClassMap(), this.labelToClassIndexMap);
 	}
 
+	/**
+	 * copy of this formatter that exports a fold concurrently with the other
+	 * folds of the label. The copy shares the export and label state, and
+	 * gets its own attribute index maps. Subclasses with other state that is
+	 * modified per fold must override this.
+	 */
+	public BaseSparseDataFormatter copyForFold() {
+		try {
+			BaseSparseDataFormatter copy = (BaseSparseDataFormatter) super
+					.clone();
+			copy.numericAttributeMap = new HashMap<String, Integer>(
+					numericAttributeMap);
+			copy.nominalAttributeMap = new HashMap<String, Map<String, Integer>>(
+					nominalAttributeMap);
+			return copy;
+		} catch (CloneNotSupportedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
 	/**
 	 * add the 'unlabeled' class id to the classIndexMap if it isn't there
 	 * already
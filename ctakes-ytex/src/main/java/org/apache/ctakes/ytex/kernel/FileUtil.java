@@ -299,6 +299,12 @@ public class FileUtil {
 		return propValue != null ? propValue : defaultProp;
 	}
 
+	/**
+	 * property with the number of threads used by the kernel jobs, e.g. the
+	 * feature evaluation and the sparse data export
+	 */
+	public static final String THREADS_PROPERTY = "org.apache.ctakes.ytex.threads";
+
 	public static Integer getIntegerProperty(Properties props, String propKey,
 			Integer defaultProp) {
 		Integer propValue = null;
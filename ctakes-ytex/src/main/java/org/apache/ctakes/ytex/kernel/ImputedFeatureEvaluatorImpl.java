@@ -21,18 +21,23 @@ package org.apache.ctakes.ytex.kernel;
 import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
-import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.sql.DataSource;
 
@@ -89,19 +94,20 @@ import weka.core.ContingencyTables;
  * <li> {@link #evaluateCorpus(Parameters)} load instances, iterate through
  * labels
  * <li>
- * {@link #evaluateCorpusLabel(Parameters, ConceptGraph, InstanceData, String)}
+ * {@link #evaluateCorpusLabel(Parameters, ConceptGraph, InstanceData, String, ExecutorService)}
  * load concept - set[document] map for the specified label, iterate through
  * folds
  * <li>
- * {@link #evaluateCorpusFold(Parameters, Map, ConceptGraph, InstanceData, String, Map, int)}
+ * {@link #evaluateCorpusFold(Parameters, Map, ConceptGraph, InstanceData, String, Map, int, ExecutorService)}
  * create raw joint distribution of each concept, compute parent joint
  * distributions, assign children mutual info of parents
- * <li> {@link #completeJointDistroForFold(Map, Map, Set, Set, String)} computes
+ * <li> {@link #completeJointDistroForFold(Map, Map, Set, Set, String, ExecutorService)} computes
  * raw joint distribution of each concept
  * <li>
- * {@link #propagateJointDistribution(Map, Parameters, String, int, ConceptGraph, Map)}
- * recursively compute parent joint distribution by merging joint distro of
- * children.
+ * {@link #propagateJointDistribution(Map, Parameters, String, int, ConceptGraph, Map, ExecutorService)}
+ * compute parent joint distribution by merging joint distro of children.
+ * The concepts are merged bottom up, the concepts at the same height in
+ * parallel.
  * <li>{@link #storeChildConcepts(Parameters, String, int, ConceptGraph)} take
  * top ranked parent concepts, assign concepts in subtrees the mutual info of
  * parents. Only concepts that exist in the corpus are added (depends on
@@ -122,32 +128,55 @@ public class ImputedFeatureEvaluatorImpl implements ImputedFeatureEvaluator {
 	 */
 	public class ConceptInstanceMapExtractor implements RowCallbackHandler {
 		ConceptGraph cg;
-		Map<String, Map<String, Set<Long>>> conceptInstanceMap;
+		Map<String, Map<String, BitSet>> conceptInstanceMap;
+		InstanceIndex instanceIndex;
 
 		ConceptInstanceMapExtractor(
-				Map<String, Map<String, Set<Long>>> conceptInstanceMap,
-				ConceptGraph cg) {
+				Map<String, Map<String, BitSet>> conceptInstanceMap,
+				ConceptGraph cg, InstanceIndex instanceIndex) {
 			this.cg = cg;
 			this.conceptInstanceMap = conceptInstanceMap;
+			this.instanceIndex = instanceIndex;
 		}
 
 		public void processRow(ResultSet rs) throws SQLException {
 			String conceptId = rs.getString(1);
 			long instanceId = rs.getLong(2);
 			String x = rs.getString(3);
-			Map<String, Set<Long>> binInstanceMap = conceptInstanceMap
+			Map<String, BitSet> binInstanceMap = conceptInstanceMap
 					.get(conceptId);
 			if (binInstanceMap == null) {
 				// use the conceptId from the concept to save memory
-				binInstanceMap = new HashMap<String, Set<Long>>(2);
+				binInstanceMap = new HashMap<String, BitSet>(2);
 				conceptInstanceMap.put(conceptId, binInstanceMap);
 			}
-			Set<Long> instanceIds = binInstanceMap.get(x);
+			BitSet instanceIds = binInstanceMap.get(x);
 			if (instanceIds == null) {
-				instanceIds = new HashSet<Long>();
+				instanceIds = new BitSet();
 				binInstanceMap.put(x, instanceIds);
 			}
-			instanceIds.add(instanceId);
+			instanceIds.set(instanceIndex.getIndex(instanceId));
+		}
+	}
+
+	/**
+	 * map instance ids to dense indices, so that sets of instances can be kept
+	 * in bitsets. Instances get their index the first time they are seen.
+	 */
+	public static class InstanceIndex {
+		private Map<Long, Integer> instanceIndexMap = new HashMap<Long, Integer>();
+
+		public int getIndex(long instanceId) {
+			Integer index = instanceIndexMap.get(instanceId);
+			if (index == null) {
+				index = instanceIndexMap.size();
+				instanceIndexMap.put(instanceId, index);
+			}
+			return index;
+		}
+
+		public int size() {
+			return instanceIndexMap.size();
 		}
 	}
 
@@ -155,6 +184,9 @@ public class ImputedFeatureEvaluatorImpl implements ImputedFeatureEvaluator {
 	 * joint distribution of concept (x) and class (y). The bins for x and y are
 	 * predetermined. Typical levels for x are 0/1 (absent/present) and -1/0/1
 	 * (negated/not present/affirmed).
+	 * <p>
+	 * The cells hold the dense indices ({@link InstanceIndex}) of the instances
+	 * in bitsets, so merging tables is a bitwise and/or over the cells.
 	 * 
 	 * @author vijay
 	 * 
@@ -169,8 +201,8 @@ public class ImputedFeatureEvaluatorImpl implements ImputedFeatureEvaluator {
 		 * @param jointDistros
 		 *            list of joint distribution tables to merge
 		 * @param yMargin
-		 *            map of y val - instance id. this could be calculated on
-		 *            the fly, but we have this information already.
+		 *            map of y val - instance indices. this could be calculated
+		 *            on the fly, but we have this information already.
 		 * @param xMerge
 		 *            the x val that contains everything that doesn't land in
 		 *            any of the other bins.
@@ -178,43 +210,47 @@ public class ImputedFeatureEvaluatorImpl implements ImputedFeatureEvaluator {
 		 */
 		public static JointDistribution merge(
 				List<JointDistribution> jointDistros,
-				Map<String, Set<Long>> yMargin, String xMerge) {
+				Map<String, BitSet> yMargin, String xMerge) {
 			Set<String> xVals = jointDistros.get(0).xVals;
 			Set<String> yVals = jointDistros.get(0).yVals;
 			JointDistribution mergedDistro = new JointDistribution(xVals, yVals);
 			for (String y : yVals) {
 				// intersect all bins besides the merge bin
-				Set<Long> xMergedInst = mergedDistro.getInstances(xMerge, y);
+				BitSet xMergedInst = mergedDistro.getInstances(xMerge, y);
 				// everything comes into the merge bin
 				// we take out things that land in other bins
-				xMergedInst.addAll(yMargin.get(y));
+				BitSet yInst = yMargin.get(y);
+				if (yInst != null)
+					xMergedInst.or(yInst);
 				// iterate over other bins
 				for (String x : xVals) {
 					if (!x.equals(xMerge)) {
-						Set<Long> intersectIds = mergedDistro
-								.getInstances(x, y);
+						BitSet intersectIds = mergedDistro.getInstances(x, y);
 						boolean bFirstIter = true;
 						// iterate over all joint distribution tables
 						for (JointDistribution distro : jointDistros) {
 							if (bFirstIter) {
 								// 1st iter - add all
-								intersectIds.addAll(distro.getInstances(x, y));
+								intersectIds.or(distro.getInstances(x, y));
 								bFirstIter = false;
 							} else {
 								// subsequent iteration - intersect
-								intersectIds.retainAll(distro
-										.getInstances(x, y));
+								intersectIds.and(distro.getInstances(x, y));
 							}
 						}
 						// remove from the merge bin
-						xMergedInst.removeAll(intersectIds);
+						xMergedInst.andNot(intersectIds);
 					}
 				}
 			}
 			return mergedDistro;
 		}
 
-		protected double[][] contingencyTable;
+		/**
+		 * cell counts, calculated once and read by all the threads sharing
+		 * this distribution
+		 */
+		protected volatile double[][] contingencyTable;
 		/**
 		 * the entropy of X. Calculated once and returned as needed.
 		 */
@@ -224,10 +260,25 @@ public class ImputedFeatureEvaluatorImpl implements ImputedFeatureEvaluator {
 		 */
 		protected Double entropyXY = null;
 		/**
-		 * A y*x table where the cells hold the instance ids. We use the
-		 * instance ids instead of counts so we can merge the tables.
+		 * A y*x table where the cells hold the instance indices. We use the
+		 * instances instead of counts so we can merge the tables. Rows are in
+		 * the order of yBins, columns in the order of xBins.
 		 */
-		protected SortedMap<String, SortedMap<String, Set<Long>>> jointDistroTable;
+		protected BitSet[][] jointDistroTable;
+		/**
+		 * the values of X in the order of xVals, the columns of the table
+		 */
+		protected String[] xBins;
+		/**
+		 * the values of Y in the order of yVals, the rows of the table
+		 */
+		protected String[] yBins;
+		/**
+		 * the columns and rows by value, the entropies are summed in this
+		 * order
+		 */
+		protected int[] xSorted;
+		protected int[] ySorted;
 		/**
 		 * the possible values of X (e.g. concept)
 		 */
@@ -249,49 +300,40 @@ public class ImputedFeatureEvaluatorImpl implements ImputedFeatureEvaluator {
 		public JointDistribution(Set<String> xVals, Set<String> yVals) {
 			this.xVals = xVals;
 			this.yVals = yVals;
-			jointDistroTable = new TreeMap<String, SortedMap<String, Set<Long>>>();
-			for (String yVal : yVals) {
-				SortedMap<String, Set<Long>> yMap = new TreeMap<String, Set<Long>>();
-				jointDistroTable.put(yVal, yMap);
-				for (String xVal : xVals) {
-					yMap.put(xVal, new HashSet<Long>());
+			xBins = xVals.toArray(new String[xVals.size()]);
+			yBins = yVals.toArray(new String[yVals.size()]);
+			xSorted = sortedIndices(xBins);
+			ySorted = sortedIndices(yBins);
+			jointDistroTable = new BitSet[yBins.length][xBins.length];
+			for (int i = 0; i < yBins.length; i++) {
+				for (int j = 0; j < xBins.length; j++) {
+					jointDistroTable[i][j] = new BitSet();
 				}
 			}
 		}
 
 		public JointDistribution(Set<String> xVals, Set<String> yVals,
-				Map<String, Set<Long>> xMargin, Map<String, Set<Long>> yMargin,
+				Map<String, BitSet> xMargin, Map<String, BitSet> yMargin,
 				String xLeftover) {
-			this.xVals = xVals;
-			this.yVals = yVals;
-			jointDistroTable = new TreeMap<String, SortedMap<String, Set<Long>>>();
-			for (String yVal : yVals) {
-				SortedMap<String, Set<Long>> yMap = new TreeMap<String, Set<Long>>();
-				jointDistroTable.put(yVal, yMap);
-				for (String xVal : xVals) {
-					yMap.put(xVal, new HashSet<Long>());
-				}
-			}
-			for (Map.Entry<String, Set<Long>> yEntry : yMargin.entrySet()) {
+			this(xVals, yVals);
+			for (Map.Entry<String, BitSet> yEntry : yMargin.entrySet()) {
 				// iterate over 'rows' i.e. the class names
 				String yName = yEntry.getKey();
-				Set<Long> yInst = new HashSet<Long>(yEntry.getValue());
+				BitSet yInst = (BitSet) yEntry.getValue().clone();
 				// iterate over 'columns' i.e. the values of x
-				for (Map.Entry<String, Set<Long>> xEntry : xMargin.entrySet()) {
+				for (Map.Entry<String, BitSet> xEntry : xMargin.entrySet()) {
 					// copy the instances
-					Set<Long> foldXInst = jointDistroTable.get(yName).get(
-							xEntry.getKey());
-					foldXInst.addAll(xEntry.getValue());
+					BitSet foldXInst = getInstances(xEntry.getKey(), yName);
+					foldXInst.or(xEntry.getValue());
 					// keep only the ones that are in this fold
-					foldXInst.retainAll(yInst);
+					foldXInst.and(yInst);
 					// remove the instances for this value of x from the set of
 					// all instances
-					yInst.removeAll(foldXInst);
+					yInst.andNot(foldXInst);
 				}
-				if (yInst.size() > 0) {
+				if (!yInst.isEmpty()) {
 					// add the leftovers to the leftover bin
-					jointDistroTable.get(yEntry.getKey()).get(xLeftover)
-							.addAll(yInst);
+					getInstances(xLeftover, yName).or(yInst);
 				}
 			}
 
@@ -367,56 +409,70 @@ public class ImputedFeatureEvaluatorImpl implements ImputedFeatureEvaluator {
 
 		public double[][] getContingencyTable() {
 			if (contingencyTable == null) {
-				contingencyTable = new double[this.yVals.size()][this.xVals
-						.size()];
-				int i = 0;
-				for (String yVal : yVals) {
-					int j = 0;
-					for (String xVal : xVals) {
-						contingencyTable[i][j] = jointDistroTable.get(yVal)
-								.get(xVal).size();
-						j++;
+				// fill in a local table so that threads sharing this distro never
+				// see a partial table
+				double[][] table = new double[yBins.length][xBins.length];
+				for (int i = 0; i < yBins.length; i++) {
+					for (int j = 0; j < xBins.length; j++) {
+						table[i][j] = jointDistroTable[i][j].cardinality();
 					}
-					i++;
 				}
+				contingencyTable = table;
 			}
 			return contingencyTable;
 		}
 
+		private static int[] sortedIndices(String[] bins) {
+			TreeMap<String, Integer> binIndexMap = new TreeMap<String, Integer>();
+			for (int i = 0; i < bins.length; i++) {
+				binIndexMap.put(bins[i], i);
+			}
+			int[] indices = new int[bins.length];
+			int i = 0;
+			for (int index : binIndexMap.values()) {
+				indices[i++] = index;
+			}
+			return indices;
+		}
+
+		private static int indexOf(String[] bins, String bin) {
+			for (int i = 0; i < bins.length; i++) {
+				if (bins[i].equals(bin))
+					return i;
+			}
+			return -1;
+		}
+
 		public double getEntropyX() {
-			double probs[] = new double[xVals.size()];
-			Arrays.fill(probs, 0d);
 			if (entropyX == null) {
+				double[][] table = getContingencyTable();
+				double probs[] = new double[xBins.length];
 				double nTotal = 0;
-				for (Map<String, Set<Long>> xInstance : this.jointDistroTable
-						.values()) {
-					int i = 0;
-					for (Set<Long> instances : xInstance.values()) {
-						double nCell = (double) instances.size();
+				for (int i : ySorted) {
+					for (int j = 0; j < xSorted.length; j++) {
+						double nCell = table[i][xSorted[j]];
 						nTotal += nCell;
-						probs[i] += nCell;
-						i++;
+						probs[j] += nCell;
 					}
 				}
-				for (int i = 0; i < probs.length; i++)
-					probs[i] /= nTotal;
+				for (int j = 0; j < probs.length; j++)
+					probs[j] /= nTotal;
 				entropyX = entropy(probs);
 			}
 			return entropyX;
 		}
 
 		public double getEntropyXY() {
-			double probs[] = new double[xVals.size() * yVals.size()];
-			Arrays.fill(probs, 0d);
 			if (entropyXY == null) {
+				double[][] table = getContingencyTable();
+				double probs[] = new double[xBins.length * yBins.length];
 				double nTotal = 0;
-				int i = 0;
-				for (Map<String, Set<Long>> xInstance : this.jointDistroTable
-						.values()) {
-					for (Set<Long> instances : xInstance.values()) {
-						probs[i] = (double) instances.size();
-						nTotal += probs[i];
-						i++;
+				int k = 0;
+				for (int i : ySorted) {
+					for (int j : xSorted) {
+						probs[k] = table[i][j];
+						nTotal += probs[k];
+						k++;
 					}
 				}
 				for (int j = 0; j < probs.length; j++)
@@ -432,8 +488,14 @@ public class ImputedFeatureEvaluatorImpl implements ImputedFeatureEvaluator {
 							.entropyConditionedOnRows(getContingencyTable());
 		}
 
-		public Set<Long> getInstances(String x, String y) {
-			return jointDistroTable.get(y).get(x);
+		/**
+		 * @return the indices of the instances in the cell, null if x or y is
+		 *         not a bin of this table
+		 */
+		public BitSet getInstances(String x, String y) {
+			int i = indexOf(yBins, y);
+			int j = indexOf(xBins, x);
+			return i < 0 || j < 0 ? null : jointDistroTable[i][j];
 		}
 
 		public double getMutualInformation(double entropyY) {
@@ -447,20 +509,14 @@ public class ImputedFeatureEvaluatorImpl implements ImputedFeatureEvaluator {
 			StringBuilder b = new StringBuilder();
 			b.append(this.getClass().getCanonicalName());
 			b.append(" [jointDistro=(");
-			Iterator<Entry<String, SortedMap<String, Set<Long>>>> yIter = this.jointDistroTable
-					.entrySet().iterator();
-			while (yIter.hasNext()) {
-				Entry<String, SortedMap<String, Set<Long>>> yEntry = yIter
-						.next();
-				Iterator<Entry<String, Set<Long>>> xIter = yEntry.getValue()
-						.entrySet().iterator();
-				while (xIter.hasNext()) {
-					Entry<String, Set<Long>> xEntry = xIter.next();
-					b.append(xEntry.getValue().size());
-					if (xIter.hasNext())
+			for (int i = 0; i < ySorted.length; i++) {
+				for (int j = 0; j < xSorted.length; j++) {
+					b.append(jointDistroTable[ySorted[i]][xSorted[j]]
+							.cardinality());
+					if (j + 1 < xSorted.length)
 						b.append(", ");
 				}
-				if (yIter.hasNext())
+				if (i + 1 < ySorted.length)
 					b.append("| ");
 			}
 			b.append(")]");
@@ -492,6 +548,7 @@ public class ImputedFeatureEvaluatorImpl implements ImputedFeatureEvaluator {
 		String xLeftover;
 		String xMerge;
 		Set<String> xVals;
+		int threads;
 
 		public Parameters() {
 
@@ -520,6 +577,9 @@ public class ImputedFeatureEvaluatorImpl implements ImputedFeatureEvaluator {
 							"org.apache.ctakes.ytex.parentConceptTopThreshold", 25) : null;
 			imputeWeight = FileUtil.getDoubleProperty(props,
 					"org.apache.ctakes.ytex.imputeWeight", 1d);
+			threads = FileUtil.getIntegerProperty(props,
+					FileUtil.THREADS_PROPERTY, Runtime.getRuntime()
+							.availableProcessors());
 		}
 
 		public String getClassFeatureQuery() {
@@ -581,6 +641,10 @@ public class ImputedFeatureEvaluatorImpl implements ImputedFeatureEvaluator {
 		public Set<String> getxVals() {
 			return xVals;
 		}
+
+		public int getThreads() {
+			return threads;
+		}
 	}
 
 	// /**
@@ -715,86 +779,108 @@ public class ImputedFeatureEvaluatorImpl implements ImputedFeatureEvaluator {
 		}
 	}
 
+	/**
+	 * merge the joint distribution of the concept with the joint distributions
+	 * of its children. The children must already be in conceptJointDistroMap.
+	 * 
+	 * @return the merged joint distribution, null if neither the concept nor
+	 *         its children occur in the corpus
+	 */
 	private JointDistribution calcMergedJointDistribution(
-			Map<String, JointDistribution> conceptJointDistroMap,
-			Map<String, Integer> conceptDistMap, ConcRel cr,
+			Map<String, JointDistribution> conceptJointDistroMap, ConcRel cr,
 			Map<String, JointDistribution> rawJointDistroMap,
-			Map<String, Set<Long>> yMargin, String xMerge, double minInfo,
-			List<String> path) {
-		if (conceptJointDistroMap.containsKey(cr.getConceptID())) {
-			return conceptJointDistroMap.get(cr.getConceptID());
+			Map<String, BitSet> yMargin, String xMerge) {
+		List<JointDistribution> distroList = new ArrayList<JointDistribution>(
+				cr.getChildren().size() + 1);
+		// if this concept is in the raw joint distro map, add it to the
+		// list of joint distributions to merge
+		if (rawJointDistroMap.containsKey(cr.getConceptID())) {
+			distroList.add(rawJointDistroMap.get(cr.getConceptID()));
+		}
+		// get the joint distributions of children
+		for (ConcRel crc : cr.getChildren()) {
+			JointDistribution jdChild = conceptJointDistroMap.get(crc
+					.getConceptID());
+			if (jdChild != null) {
+				distroList.add(jdChild);
+			}
+		}
+		// merge the joint distributions
+		if (distroList.size() == 0) {
+			// no joint distros to merge - null
+			return null;
+		} else if (distroList.size() == 1) {
+			// only one joint distro - trivial merge
+			return distroList.get(0);
 		} else {
-			List<JointDistribution> distroList = new ArrayList<JointDistribution>(
-					cr.getChildren().size() + 1);
-			int distance = -1;
-			// if this concept is in the raw joint distro map, add it to the
-			// list of joint distributions to merge
-			if (rawJointDistroMap.containsKey(cr.getConceptID())) {
-				JointDistribution rawJointDistro = rawJointDistroMap.get(cr
-						.getConceptID());
-				distroList.add(rawJointDistro);
-				distance = 0;
+			// multiple joint distros - merge them into a new one
+			return JointDistribution.merge(distroList, yMargin, xMerge);
+		}
+	}
+
+	/**
+	 * group the concepts under the root by height: leaves are at height 0,
+	 * other concepts are one above their highest child. Every concept comes
+	 * after all its children, so the concepts of a height can be merged
+	 * independently of each other.
+	 * 
+	 * @return the concepts of each height, lowest first
+	 */
+	private List<List<ConcRel>> getConceptHeights(ConcRel root) {
+		List<List<ConcRel>> levels = new ArrayList<List<ConcRel>>();
+		Map<String, Integer> heightMap = new HashMap<String, Integer>();
+		Set<String> expanded = new HashSet<String>();
+		// depth first without recursion, the graph can be deep
+		Deque<ConcRel> stack = new ArrayDeque<ConcRel>();
+		stack.push(root);
+		while (!stack.isEmpty()) {
+			ConcRel cr = stack.peek();
+			if (heightMap.containsKey(cr.getConceptID())) {
+				stack.pop();
+				continue;
 			}
-			// get the joint distributions of children
-			for (ConcRel crc : cr.getChildren()) {
-				List<String> pathChild = new ArrayList<String>(path.size() + 1);
-				pathChild.addAll(path);
-				pathChild.add(crc.getConceptID());
-				// recurse - get joint distribution of children
-				JointDistribution jdChild = calcMergedJointDistribution(
-						conceptJointDistroMap, conceptDistMap, crc,
-						rawJointDistroMap, yMargin, xMerge, minInfo, pathChild);
-				if (jdChild != null) {
-					distroList.add(jdChild);
-					if (distance != 0) {
-						// look at children's distance from raw data, add 1
-						int distChild = conceptDistMap.get(crc.getConceptID());
-						if (distance == -1 || (distChild + 1) < distance) {
-							distance = distChild + 1;
-						}
+			if (expanded.add(cr.getConceptID())) {
+				boolean bLeaf = true;
+				for (ConcRel crc : cr.getChildren()) {
+					if (!heightMap.containsKey(crc.getConceptID())) {
+						if (expanded.contains(crc.getConceptID()))
+							throw new IllegalStateException(
+									"cycle in concept graph at "
+											+ crc.getConceptID());
+						stack.push(crc);
+						bLeaf = false;
 					}
 				}
+				if (!bLeaf)
+					continue;
 			}
-			// merge the joint distributions
-			JointDistribution mergedDistro;
-			if (distroList.size() > 0) {
-				if (distroList.size() == 1) {
-					// only one joint distro - trivial merge
-					mergedDistro = distroList.get(0);
-				} else {
-					// multiple joint distros - merge them into a new one
-					mergedDistro = JointDistribution.merge(distroList, yMargin,
-							xMerge);
-				}
-				// if (log.isDebugEnabled()) {
-				// log.debug("path = " + path + ", distroList = " + distroList
-				// + ", distro = " + mergedDistro);
-				// }
-			} else {
-				// no joint distros to merge - null
-				mergedDistro = null;
+			// all children done
+			stack.pop();
+			int height = 0;
+			for (ConcRel crc : cr.getChildren()) {
+				height = Math.max(height, heightMap.get(crc.getConceptID()) + 1);
 			}
-			// save this in the map
-			conceptJointDistroMap.put(cr.getConceptID(), mergedDistro);
-			if (distance > -1)
-				conceptDistMap.put(cr.getConceptID(), distance);
-			return mergedDistro;
+			heightMap.put(cr.getConceptID(), height);
+			while (levels.size() <= height)
+				levels.add(new ArrayList<ConcRel>());
+			levels.get(height).add(cr);
 		}
+		return levels;
 	}
 
 	/**
 	 * 
 	 */
-	private double calculateFoldEntropy(Map<String, Set<Long>> classCountMap) {
+	private double calculateFoldEntropy(Map<String, BitSet> classCountMap) {
 		int total = 0;
 		List<Double> classProbs = new ArrayList<Double>(classCountMap.size());
 		// calculate total number of instances in this fold
-		for (Set<Long> instances : classCountMap.values()) {
-			total += instances.size();
+		for (BitSet instances : classCountMap.values()) {
+			total += instances.cardinality();
 		}
 		// calculate per-class probability in this fold
-		for (Set<Long> instances : classCountMap.values()) {
-			classProbs.add((double) instances.size() / (double) total);
+		for (BitSet instances : classCountMap.values()) {
+			classProbs.add((double) instances.cardinality() / (double) total);
 		}
 		return entropy(classProbs);
 	}
@@ -809,22 +895,80 @@ public class ImputedFeatureEvaluatorImpl implements ImputedFeatureEvaluator {
 	 * @param xLeftover
 	 */
 	private Map<String, JointDistribution> completeJointDistroForFold(
-			Map<String, Map<String, Set<Long>>> conceptInstanceMap,
-			Map<String, Set<Long>> yMargin, Set<String> xVals,
-			Set<String> yVals, String xLeftover) {
-		//
+			Map<String, Map<String, BitSet>> conceptInstanceMap,
+			final Map<String, BitSet> yMargin, final Set<String> xVals,
+			final Set<String> yVals, final String xLeftover,
+			ExecutorService executor, int threads) {
+		final List<Map.Entry<String, Map<String, BitSet>>> conceptInstances = new ArrayList<Map.Entry<String, Map<String, BitSet>>>(
+				conceptInstanceMap.entrySet());
+		List<JointDistribution> distros = mapConcepts(executor, threads,
+				conceptInstances.size(), new ConceptMapper<JointDistribution>() {
+					public JointDistribution map(int i) {
+						return new JointDistribution(xVals, yVals,
+								conceptInstances.get(i).getValue(), yMargin,
+								xLeftover);
+					}
+				});
 		Map<String, JointDistribution> foldJointDistroMap = new HashMap<String, JointDistribution>(
 				conceptInstanceMap.size());
-		for (Map.Entry<String, Map<String, Set<Long>>> conceptInstance : conceptInstanceMap
-				.entrySet()) {
-			foldJointDistroMap.put(
-					conceptInstance.getKey(),
-					new JointDistribution(xVals, yVals, conceptInstance
-							.getValue(), yMargin, xLeftover));
+		for (int i = 0; i < conceptInstances.size(); i++) {
+			foldJointDistroMap.put(conceptInstances.get(i).getKey(),
+					distros.get(i));
 		}
 		return foldJointDistroMap;
 	}
 
+	/**
+	 * compute something for each concept of a list
+	 */
+	private interface ConceptMapper<T> {
+		T map(int i);
+	}
+
+	/**
+	 * apply the mapper to the indices 0 to size - 1, in slices run by the
+	 * executor
+	 * 
+	 * @param threads
+	 *            the number of threads of the executor
+	 * @return the results in index order
+	 */
+	private static <T> List<T> mapConcepts(ExecutorService executor,
+			int threads, int size, final ConceptMapper<T> mapper) {
+		final Object[] results = new Object[size];
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		// a few slices per thread so that slow slices even out
+		int sliceSize = Math.max(64, size / (Math.max(1, threads) * 4) + 1);
+		for (int start = 0; start < size; start += sliceSize) {
+			final int from = start;
+			final int to = Math.min(size, start + sliceSize);
+			tasks.add(new Callable<Object>() {
+				public Object call() {
+					for (int i = from; i < to; i++) {
+						results[i] = mapper.map(i);
+					}
+					return null;
+				}
+			});
+		}
+		try {
+			for (Future<Object> future : executor.invokeAll(tasks)) {
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					throw e.getCause() instanceof RuntimeException ? (RuntimeException) e
+							.getCause() : new RuntimeException(e.getCause());
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+		@SuppressWarnings("unchecked")
+		List<T> resultList = (List<T>) Arrays.asList(results);
+		return resultList;
+	}
+
 	/**
 	 * delete the feature evaluations before we insert them
 	 * 
@@ -861,8 +1005,14 @@ public class ImputedFeatureEvaluatorImpl implements ImputedFeatureEvaluator {
 				.getConceptGraphName());
 		InstanceData instanceData = kernelUtil.loadInstances(params
 				.getLabelQuery());
-		for (String label : instanceData.getLabelToInstanceMap().keySet()) {
-			evaluateCorpusLabel(params, cg, instanceData, label);
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1,
+				params.getThreads()));
+		try {
+			for (String label : instanceData.getLabelToInstanceMap().keySet()) {
+				evaluateCorpusLabel(params, cg, instanceData, label, executor);
+			}
+		} finally {
+			executor.shutdown();
 		}
 		return true;
 	}
@@ -878,9 +1028,10 @@ public class ImputedFeatureEvaluatorImpl implements ImputedFeatureEvaluator {
 	}
 
 	private void evaluateCorpusFold(Parameters params,
-			Map<String, Set<Long>> yMargin, ConceptGraph cg,
+			Map<String, BitSet> yMargin, ConceptGraph cg,
 			InstanceData instanceData, String label,
-			Map<String, Map<String, Set<Long>>> conceptInstanceMap, int foldId) {
+			Map<String, Map<String, BitSet>> conceptInstanceMap, int foldId,
+			ExecutorService executor) {
 		if (log.isInfoEnabled())
 			log.info("evaluateCorpusFold() label = " + label + ", fold = "
 					+ foldId);
@@ -893,14 +1044,14 @@ public class ImputedFeatureEvaluatorImpl implements ImputedFeatureEvaluator {
 				.completeJointDistroForFold(conceptInstanceMap, yMargin, params
 						.getxVals(),
 						instanceData.getLabelToClassMap().get(label), params
-								.getxLeftover());
+								.getxLeftover(), executor, params.getThreads());
 		List<FeatureRank> listRawRanks = new ArrayList<FeatureRank>(
 				rawJointDistro.size());
 		FeatureEvaluation feRaw = saveFeatureEvaluation(rawJointDistro, params,
-				label, foldId, yEntropy, "", listRawRanks);
+				label, foldId, yEntropy, "", listRawRanks, executor);
 		// propagate across graph and save
 		propagateJointDistribution(rawJointDistro, params, label, foldId, cg,
-				yMargin);
+				yMargin, executor);
 		// store children of top concepts
 		storeChildConcepts(listRawRanks, params, label, foldId, cg, true);
 		storeChildConcepts(listRawRanks, params, label, foldId, cg, false);
@@ -922,21 +1073,22 @@ public class ImputedFeatureEvaluatorImpl implements ImputedFeatureEvaluator {
 	 * @param parentConceptEvalThreshold
 	 */
 	private void evaluateCorpusLabel(Parameters params, ConceptGraph cg,
-			InstanceData instanceData, String label) {
+			InstanceData instanceData, String label, ExecutorService executor) {
 		if (log.isInfoEnabled())
 			log.info("evaluateCorpusLabel() label = " + label);
-		Map<String, Map<String, Set<Long>>> conceptInstanceMap = loadConceptInstanceMap(
-				params.getClassFeatureQuery(), cg, label);
+		InstanceIndex instanceIndex = new InstanceIndex();
+		Map<String, Map<String, BitSet>> conceptInstanceMap = loadConceptInstanceMap(
+				params.getClassFeatureQuery(), cg, label, instanceIndex);
 		for (int run : instanceData.getLabelToInstanceMap().get(label).keySet()) {
 			for (int fold : instanceData.getLabelToInstanceMap().get(label)
 					.get(run).keySet()) {
 				int foldId = this.getFoldId(params, label, run, fold);
 				// evaluate for the specified fold training set
 				// construct map of class - [instance ids]
-				Map<String, Set<Long>> yMargin = getFoldYMargin(instanceData,
-						label, run, fold);
+				Map<String, BitSet> yMargin = getFoldYMargin(instanceData,
+						label, run, fold, instanceIndex);
 				evaluateCorpusFold(params, yMargin, cg, instanceData, label,
-						conceptInstanceMap, foldId);
+						conceptInstanceMap, foldId, executor);
 			}
 		}
 	}
@@ -971,20 +1123,20 @@ public class ImputedFeatureEvaluatorImpl implements ImputedFeatureEvaluator {
 		return foldId;
 	}
 
-	private Map<String, Set<Long>> getFoldYMargin(InstanceData instanceData,
-			String label, int run, int fold) {
+	private Map<String, BitSet> getFoldYMargin(InstanceData instanceData,
+			String label, int run, int fold, InstanceIndex instanceIndex) {
 		Map<Long, String> instanceClassMap = instanceData
 				.getLabelToInstanceMap().get(label).get(run).get(fold)
 				.get(true);
-		Map<String, Set<Long>> yMargin = new HashMap<String, Set<Long>>();
+		Map<String, BitSet> yMargin = new HashMap<String, BitSet>();
 		for (Map.Entry<Long, String> instanceClass : instanceClassMap
 				.entrySet()) {
-			Set<Long> instanceIds = yMargin.get(instanceClass.getValue());
+			BitSet instanceIds = yMargin.get(instanceClass.getValue());
 			if (instanceIds == null) {
-				instanceIds = new HashSet<Long>();
+				instanceIds = new BitSet();
 				yMargin.put(instanceClass.getValue(), instanceIds);
 			}
-			instanceIds.add(instanceClass.getKey());
+			instanceIds.set(instanceIndex.getIndex(instanceClass.getKey()));
 		}
 		return yMargin;
 	}
@@ -1019,17 +1171,20 @@ public class ImputedFeatureEvaluatorImpl implements ImputedFeatureEvaluator {
 	 * @param classFeatureQuery
 	 * @param cg
 	 * @param label
+	 * @param instanceIndex
+	 *            assigns the indices of the instances in the bitsets
 	 * @return
 	 */
-	private Map<String, Map<String, Set<Long>>> loadConceptInstanceMap(
-			String classFeatureQuery, ConceptGraph cg, String label) {
-		Map<String, Map<String, Set<Long>>> conceptInstanceMap = new HashMap<String, Map<String, Set<Long>>>();
+	private Map<String, Map<String, BitSet>> loadConceptInstanceMap(
+			String classFeatureQuery, ConceptGraph cg, String label,
+			InstanceIndex instanceIndex) {
+		Map<String, Map<String, BitSet>> conceptInstanceMap = new HashMap<String, Map<String, BitSet>>();
 		Map<String, Object> args = new HashMap<String, Object>(1);
 		if (label != null && label.length() > 0) {
 			args.put("label", label);
 		}
 		ConceptInstanceMapExtractor ex = new ConceptInstanceMapExtractor(
-				conceptInstanceMap, cg);
+				conceptInstanceMap, cg, instanceIndex);
 		this.namedParamJdbcTemplate.query(classFeatureQuery, args, ex);
 		return conceptInstanceMap;
 	}
@@ -1046,46 +1201,66 @@ public class ImputedFeatureEvaluatorImpl implements ImputedFeatureEvaluator {
 	 * @param minInfo
 	 */
 	private FeatureEvaluation propagateJointDistribution(
-			Map<String, JointDistribution> rawJointDistroMap,
-			Parameters params, String label, int foldId, ConceptGraph cg,
-			Map<String, Set<Long>> yMargin) {
+			final Map<String, JointDistribution> rawJointDistroMap,
+			final Parameters params, String label, int foldId, ConceptGraph cg,
+			final Map<String, BitSet> yMargin, ExecutorService executor) {
 		// get the entropy of Y for this fold
 		double yEntropy = this.calculateFoldEntropy(yMargin);
 		// allocate a map to hold the results of the propagation across the
 		// concept graph
-		Map<String, JointDistribution> conceptJointDistroMap = new HashMap<String, JointDistribution>(
+		final Map<String, JointDistribution> conceptJointDistroMap = new HashMap<String, JointDistribution>(
 				cg.getConceptMap().size());
-		Map<String, Integer> conceptDistMap = new HashMap<String, Integer>();
-		// recurse
-		calcMergedJointDistribution(conceptJointDistroMap, conceptDistMap, cg
-				.getConceptMap().get(cg.getRoot()), rawJointDistroMap, yMargin,
-				params.getxMerge(), params.getMinInfo(),
-				Arrays.asList(new String[] { cg.getRoot() }));
+		// merge bottom up, the concepts of a height only read the merged
+		// distributions of lower concepts
+		for (final List<ConcRel> level : getConceptHeights(cg.getConceptMap()
+				.get(cg.getRoot()))) {
+			List<JointDistribution> merged = mapConcepts(executor,
+					params.getThreads(), level.size(), new ConceptMapper<JointDistribution>() {
+						public JointDistribution map(int i) {
+							return calcMergedJointDistribution(
+									conceptJointDistroMap, level.get(i),
+									rawJointDistroMap, yMargin,
+									params.getxMerge());
+						}
+					});
+			for (int i = 0; i < level.size(); i++) {
+				conceptJointDistroMap.put(level.get(i).getConceptID(),
+						merged.get(i));
+			}
+		}
 		List<FeatureRank> listPropRanks = new ArrayList<FeatureRank>(
 				conceptJointDistroMap.size());
 		return this.saveFeatureEvaluation(conceptJointDistroMap, params, label,
-				foldId, yEntropy, SUFFIX_PROP, listPropRanks);
+				foldId, yEntropy, SUFFIX_PROP, listPropRanks, executor);
 	}
 
-	private List<FeatureRank> rank(MeasureType measureType,
+	private List<FeatureRank> rank(final MeasureType measureType,
 			FeatureEvaluation fe,
-			Map<String, JointDistribution> rawJointDistro, double yEntropy,
-			List<FeatureRank> featureRankList) {
-		for (Map.Entry<String, JointDistribution> conceptJointDistro : rawJointDistro
-				.entrySet()) {
-			JointDistribution d = conceptJointDistro.getValue();
-			if (d != null) {
-				double evaluation;
-				if (MeasureType.MUTUALINFO.equals(measureType)) {
-					evaluation = d.getMutualInformation(yEntropy);
-				} else {
-					evaluation = d.getInfoGain();
-				}
-				if (evaluation > 1e-3) {
-					FeatureRank r = new FeatureRank(fe,
-							conceptJointDistro.getKey(), evaluation);
-					featureRankList.add(r);
-				}
+			Map<String, JointDistribution> rawJointDistro,
+			final double yEntropy, List<FeatureRank> featureRankList,
+			ExecutorService executor, int threads) {
+		final List<Map.Entry<String, JointDistribution>> conceptJointDistros = new ArrayList<Map.Entry<String, JointDistribution>>(
+				rawJointDistro.entrySet());
+		// evaluate the concepts in parallel
+		List<Double> evaluations = mapConcepts(executor, threads,
+				conceptJointDistros.size(), new ConceptMapper<Double>() {
+					public Double map(int i) {
+						JointDistribution d = conceptJointDistros.get(i)
+								.getValue();
+						if (d == null)
+							return null;
+						else if (MeasureType.MUTUALINFO.equals(measureType))
+							return d.getMutualInformation(yEntropy);
+						else
+							return d.getInfoGain();
+					}
+				});
+		for (int i = 0; i < conceptJointDistros.size(); i++) {
+			Double evaluation = evaluations.get(i);
+			if (evaluation != null && evaluation > 1e-3) {
+				FeatureRank r = new FeatureRank(fe, conceptJointDistros.get(i)
+						.getKey(), evaluation);
+				featureRankList.add(r);
 			}
 		}
 		return FeatureRank.sortFeatureRankList(featureRankList,
@@ -1095,13 +1270,13 @@ public class ImputedFeatureEvaluatorImpl implements ImputedFeatureEvaluator {
 	private FeatureEvaluation saveFeatureEvaluation(
 			Map<String, JointDistribution> rawJointDistro, Parameters params,
 			String label, int foldId, double yEntropy, String suffix,
-			List<FeatureRank> listRawRanks) {
+			List<FeatureRank> listRawRanks, ExecutorService executor) {
 		FeatureEvaluation fe = initFeatureEval(params, label, foldId, params
 				.getMeasure().getName() + suffix);
 		this.classifierEvaluationDao.saveFeatureEvaluation(
 				fe,
 				rank(params.getMeasure(), fe, rawJointDistro, yEntropy,
-						listRawRanks));
+						listRawRanks, executor, params.getThreads()));
 		return fe;
 	}
 
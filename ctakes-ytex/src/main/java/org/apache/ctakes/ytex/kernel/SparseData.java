@@ -18,7 +18,10 @@
  */
 package org.apache.ctakes.ytex.kernel;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.SortedSet;
@@ -28,6 +31,11 @@ import java.util.TreeSet;
 /**
  * Data structure populated by SparseDataExporter that has all the instance
  * attributes needed for exporting to various formats.
+ * <p>
+ * Attribute names and nominal values are interned to int ids, and the
+ * attributes of each instance are kept in a {@link SparseRow} of primitive
+ * arrays. For large corpora this takes a fraction of the heap that a map of
+ * attribute name - value per instance would.
  * 
  * @author vijay
  * 
@@ -38,13 +46,21 @@ public class SparseData {
 	 */
 	SortedSet<Long> instanceIds = new TreeSet<Long>();
 	/**
-	 * instance nominal attribute values
+	 * map of instance id to the instance's attributes
 	 */
-	Map<Long, SortedMap<String, String>> instanceNominalWords = new HashMap<Long, SortedMap<String, String>>();
+	Map<Long, SparseRow> instanceRows = new HashMap<Long, SparseRow>();
 	/**
-	 * map if instance id to map of attribute name - value pairs
+	 * numeric attribute name ids
 	 */
-	Map<Long, SortedMap<String, Double>> instanceNumericWords = new HashMap<Long, SortedMap<String, Double>>();
+	WordIndex numericWordIndex = new WordIndex();
+	/**
+	 * nominal attribute name ids
+	 */
+	WordIndex nominalWordIndex = new WordIndex();
+	/**
+	 * nominal attribute value ids
+	 */
+	WordIndex nominalValueIndex = new WordIndex();
 
 	/**
 	 * nominal attribute names and values
@@ -55,41 +71,195 @@ public class SparseData {
 	 * numeric attribute labels
 	 */
 	SortedSet<String> numericWords = new TreeSet<String>();
-	
-	
 
-	public SortedSet<Long> getInstanceIds() {
-		return instanceIds;
+	/**
+	 * add a numeric attribute value to the instance. replaces the value the
+	 * instance already has for the attribute.
+	 */
+	public void addNumericWord(long instanceId, String word, double wordValue) {
+		instanceIds.add(instanceId);
+		addNumericWordToRow(instanceId, word, wordValue);
 	}
 
-	public void setInstanceIds(SortedSet<Long> instanceIds) {
-		this.instanceIds = instanceIds;
+	/**
+	 * add a nominal attribute value to the instance. replaces the value the
+	 * instance already has for the attribute.
+	 */
+	public void addNominalWord(long instanceId, String word, String wordValue) {
+		instanceIds.add(instanceId);
+		addNominalWordToRow(instanceId, word, wordValue);
 	}
 
-	public Map<Long, SortedMap<String, String>> getInstanceNominalWords() {
-		return instanceNominalWords;
+	private void addNumericWordToRow(long instanceId, String word,
+			double wordValue) {
+		int wordId = numericWordIndex.getId(word);
+		getOrCreateRow(instanceId).addNumeric(wordId, wordValue);
+		numericWords.add(numericWordIndex.getWord(wordId));
+	}
+
+	private void addNominalWordToRow(long instanceId, String word,
+			String wordValue) {
+		int wordId = nominalWordIndex.getId(word);
+		int valueId = nominalValueIndex.getId(wordValue);
+		getOrCreateRow(instanceId).addNominal(wordId, valueId);
+		String internedWord = nominalWordIndex.getWord(wordId);
+		SortedSet<String> wordValueSet = nominalWordValueMap.get(internedWord);
+		if (wordValueSet == null) {
+			wordValueSet = new TreeSet<String>();
+			nominalWordValueMap.put(internedWord, wordValueSet);
+		}
+		wordValueSet.add(nominalValueIndex.getWord(valueId));
+	}
+
+	private SparseRow getOrCreateRow(long instanceId) {
+		SparseRow row = instanceRows.get(instanceId);
+		if (row == null) {
+			row = new SparseRow();
+			instanceRows.put(instanceId, row);
+		}
+		return row;
+	}
+
+	/**
+	 * @return the attributes of the instance, null if the instance has none.
+	 *         Ids in the row are resolved with {@link #getNumericWord(int)},
+	 *         {@link #getNominalWord(int)} and {@link #getNominalValue(int)}.
+	 */
+	public SparseRow getRow(long instanceId) {
+		SparseRow row = instanceRows.get(instanceId);
+		if (row != null)
+			row.compact();
+		return row;
+	}
+
+	public String getNumericWord(int wordId) {
+		return numericWordIndex.getWord(wordId);
+	}
+
+	public String getNominalWord(int wordId) {
+		return nominalWordIndex.getWord(wordId);
+	}
+
+	public String getNominalValue(int valueId) {
+		return nominalValueIndex.getWord(valueId);
+	}
+
+	/**
+	 * sort the rows and trim them to size. Called once all attributes have
+	 * been added; rows that are read before are compacted when read.
+	 */
+	public void compact() {
+		for (SparseRow row : instanceRows.values()) {
+			row.compact();
+		}
 	}
 
+	/**
+	 * @return map of instance id to the instance's numeric attribute name -
+	 *         value pairs, for the instances with numeric attributes. The maps
+	 *         are built from the rows on every call, so changing them does not
+	 *         change this data.
+	 */
 	public Map<Long, SortedMap<String, Double>> getInstanceNumericWords() {
+		Map<Long, SortedMap<String, Double>> instanceNumericWords = new HashMap<Long, SortedMap<String, Double>>(
+				instanceRows.size());
+		for (Map.Entry<Long, SparseRow> rowEntry : instanceRows.entrySet()) {
+			SparseRow row = rowEntry.getValue();
+			row.compact();
+			if (row.getNumericCount() > 0) {
+				SortedMap<String, Double> words = new TreeMap<String, Double>();
+				for (int i = 0; i < row.getNumericCount(); i++) {
+					words.put(getNumericWord(row.getNumericWordId(i)),
+							row.getNumericValue(i));
+				}
+				instanceNumericWords.put(rowEntry.getKey(), words);
+			}
+		}
 		return instanceNumericWords;
 	}
 
-	public SortedMap<String, SortedSet<String>> getNominalWordValueMap() {
-		return nominalWordValueMap;
+	/**
+	 * @return map of instance id to the instance's nominal attribute name -
+	 *         value pairs, for the instances with nominal attributes. The maps
+	 *         are built from the rows on every call, so changing them does not
+	 *         change this data.
+	 */
+	public Map<Long, SortedMap<String, String>> getInstanceNominalWords() {
+		Map<Long, SortedMap<String, String>> instanceNominalWords = new HashMap<Long, SortedMap<String, String>>(
+				instanceRows.size());
+		for (Map.Entry<Long, SparseRow> rowEntry : instanceRows.entrySet()) {
+			SparseRow row = rowEntry.getValue();
+			row.compact();
+			if (row.getNominalCount() > 0) {
+				SortedMap<String, String> words = new TreeMap<String, String>();
+				for (int i = 0; i < row.getNominalCount(); i++) {
+					words.put(getNominalWord(row.getNominalWordId(i)),
+							getNominalValue(row.getNominalValueId(i)));
+				}
+				instanceNominalWords.put(rowEntry.getKey(), words);
+			}
+		}
+		return instanceNominalWords;
 	}
 
-	public SortedSet<String> getNumericWords() {
-		return numericWords;
+	/**
+	 * pass the numeric attributes to the decorator as maps, and replace the
+	 * numeric attributes with the decorated ones.
+	 */
+	public void decorateNumericInstanceWords(BagOfWordsDecorator bDecorator) {
+		Map<Long, SortedMap<String, Double>> instanceNumericWords = getInstanceNumericWords();
+		bDecorator.decorateNumericInstanceWords(instanceNumericWords,
+				numericWords);
+		for (SparseRow row : instanceRows.values()) {
+			row.clearNumeric();
+		}
+		for (Map.Entry<Long, SortedMap<String, Double>> instanceWords : instanceNumericWords
+				.entrySet()) {
+			for (Map.Entry<String, Double> word : instanceWords.getValue()
+					.entrySet()) {
+				addNumericWordToRow(instanceWords.getKey(), word.getKey(),
+						word.getValue());
+			}
+		}
+		compact();
 	}
 
-	public void setInstanceNominalWords(
-			Map<Long, SortedMap<String, String>> instanceNominalWords) {
-		this.instanceNominalWords = instanceNominalWords;
+	/**
+	 * pass the nominal attributes to the decorator as maps, and replace the
+	 * nominal attributes with the decorated ones.
+	 */
+	public void decorateNominalInstanceWords(BagOfWordsDecorator bDecorator) {
+		Map<Long, SortedMap<String, String>> instanceNominalWords = getInstanceNominalWords();
+		bDecorator.decorateNominalInstanceWords(instanceNominalWords,
+				nominalWordValueMap);
+		for (SparseRow row : instanceRows.values()) {
+			row.clearNominal();
+		}
+		for (Map.Entry<Long, SortedMap<String, String>> instanceWords : instanceNominalWords
+				.entrySet()) {
+			for (Map.Entry<String, String> word : instanceWords.getValue()
+					.entrySet()) {
+				addNominalWordToRow(instanceWords.getKey(), word.getKey(),
+						word.getValue());
+			}
+		}
+		compact();
 	}
 
-	public void setInstanceNumericWords(
-			Map<Long, SortedMap<String, Double>> instanceNumericWords) {
-		this.instanceNumericWords = instanceNumericWords;
+	public SortedSet<Long> getInstanceIds() {
+		return instanceIds;
+	}
+
+	public void setInstanceIds(SortedSet<Long> instanceIds) {
+		this.instanceIds = instanceIds;
+	}
+
+	public SortedMap<String, SortedSet<String>> getNominalWordValueMap() {
+		return nominalWordValueMap;
+	}
+
+	public SortedSet<String> getNumericWords() {
+		return numericWords;
 	}
 
 	public void setNominalWordValueMap(
@@ -101,4 +271,159 @@ public class SparseData {
 		this.numericWords = numericWords;
 	}
 
+	/**
+	 * the attributes of an instance: numeric attribute ids with their values,
+	 * and nominal attribute ids with their value ids. Rows returned by
+	 * {@link SparseData#getRow(long)} are compacted: the attributes are sorted
+	 * by id, each attribute appears once, and the row is not modified
+	 * anymore, so it can be read by several threads.
+	 */
+	public static final class SparseRow {
+		private static final int[] NO_IDS = new int[0];
+		private static final double[] NO_VALUES = new double[0];
+
+		private int[] numericWordIds = NO_IDS;
+		private double[] numericValues = NO_VALUES;
+		private int numericCount = 0;
+		private int[] nominalWordIds = NO_IDS;
+		private int[] nominalValueIds = NO_IDS;
+		private int nominalCount = 0;
+		private boolean compact = true;
+
+		private synchronized void addNumeric(int wordId, double value) {
+			if (numericCount == numericWordIds.length) {
+				int capacity = Math.max(4, numericCount * 2);
+				numericWordIds = Arrays.copyOf(numericWordIds, capacity);
+				numericValues = Arrays.copyOf(numericValues, capacity);
+			}
+			numericWordIds[numericCount] = wordId;
+			numericValues[numericCount] = value;
+			numericCount++;
+			compact = false;
+		}
+
+		private synchronized void addNominal(int wordId, int valueId) {
+			if (nominalCount == nominalWordIds.length) {
+				int capacity = Math.max(4, nominalCount * 2);
+				nominalWordIds = Arrays.copyOf(nominalWordIds, capacity);
+				nominalValueIds = Arrays.copyOf(nominalValueIds, capacity);
+			}
+			nominalWordIds[nominalCount] = wordId;
+			nominalValueIds[nominalCount] = valueId;
+			nominalCount++;
+			compact = false;
+		}
+
+		private synchronized void clearNumeric() {
+			numericWordIds = NO_IDS;
+			numericValues = NO_VALUES;
+			numericCount = 0;
+		}
+
+		private synchronized void clearNominal() {
+			nominalWordIds = NO_IDS;
+			nominalValueIds = NO_IDS;
+			nominalCount = 0;
+		}
+
+		/**
+		 * sort by attribute id, keep the last value added for an attribute,
+		 * and trim the arrays
+		 */
+		private synchronized void compact() {
+			if (compact)
+				return;
+			int[] order = sortedLastPositions(numericWordIds, numericCount);
+			int[] wordIds = new int[order.length];
+			double[] values = new double[order.length];
+			for (int i = 0; i < order.length; i++) {
+				wordIds[i] = numericWordIds[order[i]];
+				values[i] = numericValues[order[i]];
+			}
+			numericWordIds = wordIds;
+			numericValues = values;
+			numericCount = order.length;
+			order = sortedLastPositions(nominalWordIds, nominalCount);
+			wordIds = new int[order.length];
+			int[] valueIds = new int[order.length];
+			for (int i = 0; i < order.length; i++) {
+				wordIds[i] = nominalWordIds[order[i]];
+				valueIds[i] = nominalValueIds[order[i]];
+			}
+			nominalWordIds = wordIds;
+			nominalValueIds = valueIds;
+			nominalCount = order.length;
+			compact = true;
+		}
+
+		/**
+		 * @return positions of the distinct ids in id order, the last
+		 *         position for an id that was added more than once
+		 */
+		private static int[] sortedLastPositions(int[] ids, int count) {
+			long[] idPositions = new long[count];
+			for (int i = 0; i < count; i++) {
+				idPositions[i] = ((long) ids[i] << 32) | i;
+			}
+			Arrays.sort(idPositions);
+			int[] positions = new int[count];
+			int distinct = 0;
+			for (int i = 0; i < count; i++) {
+				int position = (int) idPositions[i];
+				if (distinct > 0
+						&& ids[positions[distinct - 1]] == (int) (idPositions[i] >>> 32))
+					positions[distinct - 1] = position;
+				else
+					positions[distinct++] = position;
+			}
+			return Arrays.copyOf(positions, distinct);
+		}
+
+		public int getNumericCount() {
+			return numericCount;
+		}
+
+		public int getNumericWordId(int i) {
+			return numericWordIds[i];
+		}
+
+		public double getNumericValue(int i) {
+			return numericValues[i];
+		}
+
+		public int getNominalCount() {
+			return nominalCount;
+		}
+
+		public int getNominalWordId(int i) {
+			return nominalWordIds[i];
+		}
+
+		public int getNominalValueId(int i) {
+			return nominalValueIds[i];
+		}
+	}
+
+	/**
+	 * interns strings to ids assigned in the order the strings are first seen
+	 */
+	static final class WordIndex {
+		private final Map<String, Integer> wordIds = new HashMap<String, Integer>();
+		private final List<String> words = new ArrayList<String>();
+
+		int getId(String word) {
+			Integer id = wordIds.get(word);
+			if (id == null) {
+				id = words.size();
+				words.add(word);
+				wordIds.put(word, id);
+			}
+			return id;
+		}
+
+		String getWord(int id) {
+			return words.get(id);
+		}
+	}
+
 }
@@ -21,14 +21,21 @@ package org.apache.ctakes.ytex.kernel;
 import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.InvalidPropertiesFormatException;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.SortedMap;
-import java.util.SortedSet;
-import java.util.TreeMap;
-import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.sql.DataSource;
 
@@ -110,41 +117,12 @@ public class SparseDataExporterImpl implements SparseDataExporter {
 
 	protected void addNominalWordToInstance(SparseData sparseData,
 			long instanceId, String word, String wordValue) {
-		// add the instance id to the set of instance ids if necessary
-		if (!sparseData.getInstanceIds().contains(instanceId))
-			sparseData.getInstanceIds().add(instanceId);
-		SortedMap<String, String> instanceWords = sparseData
-				.getInstanceNominalWords().get(instanceId);
-		SortedSet<String> wordValueSet = sparseData.getNominalWordValueMap()
-				.get(word);
-		if (instanceWords == null) {
-			instanceWords = new TreeMap<String, String>();
-			sparseData.getInstanceNominalWords().put(instanceId, instanceWords);
-		}
-		if (wordValueSet == null) {
-			wordValueSet = new TreeSet<String>();
-			sparseData.getNominalWordValueMap().put(word, wordValueSet);
-		}
-		// add the word-value for the instance
-		instanceWords.put(word, wordValue);
-		// add the value to the set of valid values
-		wordValueSet.add(wordValue);
+		sparseData.addNominalWord(instanceId, word, wordValue);
 	}
 
 	protected void addNumericWordToInstance(SparseData sparseData,
 			long instanceId, String word, double wordValue) {
-		// add the instance id to the set of instance ids if necessary
-		if (!sparseData.getInstanceIds().contains(instanceId))
-			sparseData.getInstanceIds().add(instanceId);
-		// add the numeric word to the map of words for this document
-		SortedMap<String, Double> words = sparseData.getInstanceNumericWords()
-				.get(instanceId);
-		if (words == null) {
-			words = new TreeMap<String, Double>();
-			sparseData.getInstanceNumericWords().put(instanceId, words);
-		}
-		words.put(word, wordValue);
-		sparseData.getNumericWords().add(word);
+		sparseData.addNumericWord(instanceId, word, wordValue);
 	}
 
 	/*
@@ -153,9 +131,9 @@ public class SparseDataExporterImpl implements SparseDataExporter {
 	 * @see org.apache.ctakes.ytex.kernel.SparseDataExporter#exportData(org.apache.ctakes.ytex.kernel.SparseData,
 	 * org.apache.ctakes.ytex.kernel.SparseDataFormatter, java.util.Properties)
 	 */
-	public void exportData(InstanceData instanceLabel,
-			SparseDataFormatter formatter, Properties properties,
-			BagOfWordsDecorator bDecorator) throws IOException {
+	public void exportData(final InstanceData instanceLabel,
+			SparseDataFormatter formatter, final Properties properties,
+			final BagOfWordsDecorator bDecorator) throws IOException {
 		String scope = properties.getProperty("scope", null);
 		SparseData sparseData = null;
 		if (scope == null) {
@@ -167,49 +145,134 @@ public class SparseDataExporterImpl implements SparseDataExporter {
 					bDecorator, null, null, null);
 		}
 		formatter.initializeExport(instanceLabel, properties, sparseData);
-		for (String label : instanceLabel.getLabelToInstanceMap().keySet()) {
-			if ("label".equals(scope)) {
+		// with the threads property, folds are exported in parallel by
+		// copies of the formatter
+		int threads = FileUtil.getIntegerProperty(properties,
+				FileUtil.THREADS_PROPERTY, 1);
+		ExecutorService executor = null;
+		if (threads > 1 && formatter instanceof BaseSparseDataFormatter)
+			executor = Executors.newFixedThreadPool(threads);
+		try {
+			for (final String label : instanceLabel.getLabelToInstanceMap()
+					.keySet()) {
+				if ("label".equals(scope)) {
+					sparseData = this.loadData(instanceLabel,
+							properties.getProperty("numericWordQuery"),
+							properties.getProperty("nominalWordQuery"),
+							properties.getProperty("prepareScript"),
+							properties.getProperty("prepareScriptDelimiter",
+									";"), bDecorator, label, null, null);
+				}
+				formatter.initializeLabel(label, instanceLabel
+						.getLabelToInstanceMap().get(label), properties,
+						sparseData);
+				List<int[]> runFolds = new ArrayList<int[]>();
+				for (int run : instanceLabel.getLabelToInstanceMap()
+						.get(label).keySet()) {
+					for (int fold : instanceLabel.getLabelToInstanceMap()
+							.get(label).get(run).keySet()) {
+						runFolds.add(new int[] { run, fold });
+					}
+				}
+				if (executor == null) {
+					for (int[] runFold : runFolds) {
+						exportFold(instanceLabel, formatter, properties,
+								bDecorator, sparseData, label, runFold[0],
+								runFold[1]);
+					}
+				} else {
+					exportFolds(executor, threads, instanceLabel,
+							(BaseSparseDataFormatter) formatter, properties,
+							bDecorator, sparseData, label, runFolds);
+				}
+				formatter.clearLabel();
+			}
+		} finally {
+			if (executor != null)
+				executor.shutdown();
+		}
+	}
+
+	/**
+	 * export the train/test sets of a fold. For fold scope, the fold data is
+	 * loaded here, one fold at a time.
+	 */
+	private void exportFold(InstanceData instanceLabel,
+			SparseDataFormatter formatter, Properties properties,
+			BagOfWordsDecorator bDecorator, SparseData sparseData,
+			String label, int run, int fold) throws IOException {
+		if (log.isInfoEnabled() && (label.length() > 0 || run > 0 || fold > 0))
+			log.info("exporting, label " + label + " run " + run + " fold "
+					+ fold);
+		if ("fold".equals(properties.getProperty("scope", null))) {
+			// the prepare script may fill tables shared by the folds
+			synchronized (this) {
 				sparseData = this.loadData(instanceLabel,
 						properties.getProperty("numericWordQuery"),
 						properties.getProperty("nominalWordQuery"),
 						properties.getProperty("prepareScript"),
 						properties.getProperty("prepareScriptDelimiter", ";"),
-						bDecorator, label, null, null);
+						bDecorator, label, fold, run);
 			}
-			formatter
-					.initializeLabel(label, instanceLabel
-							.getLabelToInstanceMap().get(label), properties,
-							sparseData);
-			for (int run : instanceLabel.getLabelToInstanceMap().get(label)
-					.keySet()) {
-				for (int fold : instanceLabel.getLabelToInstanceMap()
-						.get(label).get(run).keySet()) {
-					if (log.isInfoEnabled()
-							&& (label.length() > 0 || run > 0 || fold > 0))
-						log.info("exporting, label " + label + " run " + run
-								+ " fold " + fold);
-					if ("fold".equals(scope)) {
-						sparseData = this.loadData(instanceLabel, properties
-								.getProperty("numericWordQuery"), properties
-								.getProperty("nominalWordQuery"), properties
-								.getProperty("prepareScript"), properties
-								.getProperty("prepareScriptDelimiter", ";"),
-								bDecorator, label, fold, run);
-					}
-					formatter.initializeFold(sparseData, label, run, fold,
-							instanceLabel.getLabelToInstanceMap().get(label)
-									.get(run).get(fold));
-					for (boolean train : instanceLabel.getLabelToInstanceMap()
-							.get(label).get(run).get(fold).keySet()) {
-						formatter.exportFold(sparseData, instanceLabel
-								.getLabelToInstanceMap().get(label).get(run)
-								.get(fold).get(train), train, label,
-								0 == run ? null : run, 0 == fold ? null : fold);
-					}
-					formatter.clearFold();
+		}
+		SortedMap<Boolean, SortedMap<Long, String>> foldInstanceLabelMap = instanceLabel
+				.getLabelToInstanceMap().get(label).get(run).get(fold);
+		formatter.initializeFold(sparseData, label, run, fold,
+				foldInstanceLabelMap);
+		for (boolean train : foldInstanceLabelMap.keySet()) {
+			formatter.exportFold(sparseData, foldInstanceLabelMap.get(train),
+					train, label, 0 == run ? null : run, 0 == fold ? null
+							: fold);
+		}
+		formatter.clearFold();
+	}
+
+	/**
+	 * export the folds of a label with the executor, each with its own copy of
+	 * the formatter. At most threads folds are submitted at a time, so no more
+	 * than threads fold formatters and, for fold scope, fold data are held at
+	 * once.
+	 */
+	private void exportFolds(ExecutorService executor, int threads,
+			final InstanceData instanceLabel,
+			BaseSparseDataFormatter formatter, final Properties properties,
+			final BagOfWordsDecorator bDecorator, final SparseData sparseData,
+			final String label, List<int[]> runFolds) throws IOException {
+		CompletionService<Object> completionService = new ExecutorCompletionService<Object>(
+				executor);
+		Iterator<int[]> runFoldIter = runFolds.iterator();
+		int inFlight = 0;
+		try {
+			while (inFlight > 0 || runFoldIter.hasNext()) {
+				while (inFlight < threads && runFoldIter.hasNext()) {
+					final int[] runFold = runFoldIter.next();
+					final SparseDataFormatter foldFormatter = formatter
+							.copyForFold();
+					completionService.submit(new Callable<Object>() {
+						@Override
+						public Object call() throws IOException {
+							exportFold(instanceLabel, foldFormatter,
+									properties, bDecorator, sparseData, label,
+									runFold[0], runFold[1]);
+							return null;
+						}
+					});
+					inFlight++;
+				}
+				Future<Object> future = completionService.take();
+				inFlight--;
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof IOException)
+						throw (IOException) e.getCause();
+					throw e.getCause() instanceof RuntimeException ? (RuntimeException) e
+							.getCause() : new RuntimeException(e.getCause());
 				}
 			}
-			formatter.clearLabel();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
 		}
 	}
 
@@ -424,18 +487,15 @@ public class SparseDataExporterImpl implements SparseDataExporter {
 					prepareScript, prepareScriptDelimiter, sparseData, params);
 		// added to support adding gram matrix index in GramMatrixExporter
 		if (bDecorator != null)
-			bDecorator.decorateNumericInstanceWords(
-					sparseData.getInstanceNumericWords(),
-					sparseData.getNumericWords());
+			sparseData.decorateNumericInstanceWords(bDecorator);
 		// load nominal attributes
 		if (instanceNominalWordQuery != null
 				&& instanceNominalWordQuery.trim().length() > 0)
 			this.getNominalInstanceWords(instanceNominalWordQuery,
 					prepareScript, prepareScriptDelimiter, sparseData, params);
 		if (bDecorator != null)
-			bDecorator.decorateNominalInstanceWords(
-					sparseData.getInstanceNominalWords(),
-					sparseData.getNominalWordValueMap());
+			sparseData.decorateNominalInstanceWords(bDecorator);
+		sparseData.compact();
 		return sparseData;
 	}
 
@@ -107,27 +107,26 @@ public class WekaFormatterFactory implements SparseDataFormatterFactory {
 				Attribute classAttr = instances.attribute(CLASS);
 				wekaInstance.setValue(classAttr.index(),
 						classAttr.indexOfValue(entry.getValue()));
-				// set numeric words
-				if (bagOfWordsData.getInstanceNumericWords()
-						.get(entry.getKey()) != null) {
-					for (Map.Entry<String, Double> word : bagOfWordsData
-							.getInstanceNumericWords().get(entry.getKey())
-							.entrySet()) {
-						Attribute wordAttr = instances.attribute(word.getKey());
-						wekaInstance.setValue(wordAttr.index(), word.getValue()
-								.doubleValue());
+				SparseData.SparseRow row = bagOfWordsData.getRow(entry.getKey());
+				if (row != null) {
+					// set numeric words
+					for (int i = 0; i < row.getNumericCount(); i++) {
+						Attribute wordAttr = instances.attribute(bagOfWordsData
+								.getNumericWord(row.getNumericWordId(i)));
+						wekaInstance.setValue(wordAttr.index(),
+								row.getNumericValue(i));
 					}
-				}
-				// set nominal words
-				if (bagOfWordsData.getInstanceNominalWords()
-						.get(entry.getKey()) != null) {
-					for (Map.Entry<String, String> word : bagOfWordsData
-							.getInstanceNominalWords().get(entry.getKey())
-							.entrySet()) {
-						Attribute wordAttr = instances.attribute(word.getKey());
-						int valueIndex = wordAttr.indexOfValue(word.getValue());
+					// set nominal words
+					for (int i = 0; i < row.getNominalCount(); i++) {
+						String word = bagOfWordsData.getNominalWord(row
+								.getNominalWordId(i));
+						String wordValue = bagOfWordsData.getNominalValue(row
+								.getNominalValueId(i));
+						Attribute wordAttr = instances.attribute(word);
+						int valueIndex = wordAttr.indexOfValue(wordValue);
 						if (valueIndex == -1) {
-							throw new IOException("oops! " + word);
+							throw new IOException("oops! " + word + "="
+									+ wordValue);
 						}
 						wekaInstance.setValue(wordAttr.index(), valueIndex);
 					}
@@ -140,6 +139,19 @@ public class WekaFormatterFactory implements SparseDataFormatterFactory {
 		public void clearFold() {
 		}
 
+		/**
+		 * the copy gets its own attributes, weka sets the attribute indices
+		 * when the instances are created
+		 */
+		@Override
+		public BaseSparseDataFormatter copyForFold() {
+			WekaFormatter copy = (WekaFormatter) super.copyForFold();
+			if (wekaAttributes != null)
+				copy.wekaAttributes = (FastVector) wekaAttributes
+						.copyElements();
+			return copy;
+		}
+
 		@Override
 		public void clearLabel() {
 		}
@@ -0,0 +1,181 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.jdl.data.loader;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVStrategy;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Compares the lines read from byte ranges of a file with the lines of the
+ * sequential parser of {@link CsvLoader}.
+ */
+public class MappedLineReaderTest {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final String TEXT = "id|name|code\n"
+			+ "1| Once Upon A Time In America |1984\r\n"
+			+ "\n"
+			+ "2|The Mission|\n"
+			+ "3||1988\r\n"
+			+ "\r\n"
+			+ "4|Caf\u00e9 \u00e0 l'op\u00e9ra|1990|\n"
+			+ "5|\u4e2d\u6587|1991\n"
+			+ "\n"
+			+ "\n"
+			+ "6|last line without line feed|1992";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * @return the lines of the sequential parser
+	 */
+	private static List<List<String>> parse(final String text, final char delimiter)
+			throws IOException {
+		CSVStrategy strategy = new CSVStrategy(delimiter,
+				CSVStrategy.ENCAPSULATOR_DISABLED, CSVStrategy.COMMENTS_DISABLED,
+				CSVStrategy.ESCAPE_DISABLED, true, true, false, true);
+		CSVParser parser = new CSVParser(new StringReader(text), strategy);
+		List<List<String>> lines = new ArrayList<List<String>>();
+		String[] line;
+		while ((line = parser.getLine()) != null)
+			lines.add(Arrays.asList(line));
+		return lines;
+	}
+
+	/**
+	 * @return the byte offsets of the line starts after the first line
+	 */
+	private static List<Long> getLineStarts(final byte[] bytes) {
+		List<Long> starts = new ArrayList<Long>();
+		for (int i = 0; i < bytes.length - 1; i++) {
+			if (bytes[i] == '\n')
+				starts.add((long) i + 1);
+		}
+		return starts;
+	}
+
+	/**
+	 * read the ranges between the bounds one after the other
+	 */
+	private static List<List<String>> read(final FileChannel channel,
+			final long[] bounds, final char delimiter) throws IOException {
+		List<List<String>> lines = new ArrayList<List<String>>();
+		long count = 0;
+		for (int i = 0; i < bounds.length - 1; i++) {
+			count += new MappedLineReader(channel, bounds[i], bounds[i + 1],
+					(byte) delimiter, UTF8).countLines();
+			MappedLineReader reader = new MappedLineReader(channel, bounds[i],
+					bounds[i + 1], (byte) delimiter, UTF8);
+			String[] line;
+			while ((line = reader.nextLine()) != null)
+				lines.add(Arrays.asList(line));
+		}
+		assertEquals(lines.size(), count);
+		return lines;
+	}
+
+	private File write(final String text) throws IOException {
+		File file = folder.newFile();
+		Files.write(file.toPath(), text.getBytes(UTF8));
+		return file;
+	}
+
+	@Test
+	public void testSplitAtEveryLine() throws IOException {
+		List<List<String>> expected = parse(TEXT, '|');
+		File file = write(TEXT);
+		byte[] bytes = TEXT.getBytes(UTF8);
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = randomAccessFile.getChannel();
+			assertEquals(expected,
+					read(channel, new long[] { 0, bytes.length }, '|'));
+			// two ranges, split at each line start
+			for (long start : getLineStarts(bytes)) {
+				assertEquals("split at " + start, expected, read(channel,
+						new long[] { 0, start, bytes.length }, '|'));
+			}
+			// a range per line
+			List<Long> starts = getLineStarts(bytes);
+			long[] bounds = new long[starts.size() + 2];
+			for (int i = 0; i < starts.size(); i++)
+				bounds[i + 1] = starts.get(i);
+			bounds[bounds.length - 1] = bytes.length;
+			assertEquals(expected, read(channel, bounds, '|'));
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	@Test
+	public void testRandomSplits() throws IOException {
+		Random random = new Random(7);
+		StringBuilder text = new StringBuilder();
+		String[] values = { "", " a ", "bb", "\u00e9t\u00e9", "c c", "12345" };
+		for (int l = 0; l < 2000; l++) {
+			int fields = 1 + random.nextInt(5);
+			for (int f = 0; f < fields; f++) {
+				if (f > 0)
+					text.append(',');
+				text.append(values[random.nextInt(values.length)]);
+			}
+			// an empty line now and then, with both line terminators
+			if (random.nextInt(10) == 0)
+				text.append('\n');
+			text.append(random.nextBoolean() ? "\n" : "\r\n");
+		}
+		List<List<String>> expected = parse(text.toString(), ',');
+		File file = write(text.toString());
+		byte[] bytes = text.toString().getBytes(UTF8);
+		List<Long> starts = getLineStarts(bytes);
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = randomAccessFile.getChannel();
+			for (int iter = 0; iter < 50; iter++) {
+				int ranges = 1 + random.nextInt(8);
+				long[] bounds = new long[ranges + 1];
+				for (int i = 1; i < ranges; i++) {
+					bounds[i] = starts.get(random.nextInt(starts.size()));
+				}
+				bounds[ranges] = bytes.length;
+				Arrays.sort(bounds);
+				assertEquals(expected, read(channel, bounds, ','));
+			}
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+}
@@ -0,0 +1,315 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.jdl.data.loader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+
+import javax.xml.bind.JAXBException;
+
+import org.apache.ctakes.jdl.data.base.JdlConnection;
+import org.apache.ctakes.jdl.data.xml.jaxb.ObjectFactoryUtil;
+import org.apache.ctakes.jdl.schema.xdl.CsvLoadType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Loads the same files with one and with several threads, without a
+ * database: the JDBC driver of the test records the committed rows of each
+ * connection.
+ */
+public class ParallelCsvLoaderTest {
+	private static final String URL = "jdbc:recording:";
+	/**
+	 * the index of the line number in the inserted rows
+	 */
+	private static final int LINE = 3;
+	private static final String LOAD = "<load><csv table=\"tab_test\" skip=\"1\" commit=\"500\" threads=\"%d\" delimiter=\"|\">"
+			+ "<column name=\"void\" skip=\"true\" />"
+			+ "<column name=\"id\" />"
+			+ "<column name=\"name\" />"
+			+ "<column name=\"amount\" format=\"java.text.DecimalFormat\" pattern=\"#0.00\" />"
+			+ "<column name=\"line\"><seq>0</seq></column>"
+			+ "<column name=\"descr\"><constant>Ennio Morricone</constant></column>"
+			+ "</csv></load>";
+	private static final String CONN = "<conn><jdbc><driver>%s</driver><url>%s</url>"
+			+ "<username>sa</username><password></password></jdbc></conn>";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * JDBC driver keeping the committed rows of each connection by url
+	 */
+	public static class RecordingDriver implements Driver {
+		private static final ConcurrentMap<String, List<List<List<Object>>>> COMMITTED = new ConcurrentHashMap<String, List<List<List<Object>>>>();
+
+		/**
+		 * @return the committed rows of each connection to the url
+		 */
+		static List<List<List<Object>>> getCommitted(final String url) {
+			List<List<List<Object>>> committed = COMMITTED.get(url);
+			return committed == null ? Collections
+					.<List<List<Object>>> emptyList() : committed;
+		}
+
+		@Override
+		public Connection connect(final String url, final Properties info)
+				throws SQLException {
+			if (!acceptsURL(url))
+				return null;
+			List<List<List<Object>>> connections = Collections
+					.synchronizedList(new ArrayList<List<List<Object>>>());
+			List<List<List<Object>>> previous = COMMITTED.putIfAbsent(url, connections);
+			List<List<Object>> committed = new ArrayList<List<Object>>();
+			(previous == null ? connections : previous).add(committed);
+			return (Connection) Proxy.newProxyInstance(
+					Connection.class.getClassLoader(),
+					new Class[] { Connection.class },
+					new RecordingConnection(committed));
+		}
+
+		@Override
+		public boolean acceptsURL(final String url) {
+			return url.startsWith(URL);
+		}
+
+		@Override
+		public DriverPropertyInfo[] getPropertyInfo(final String url,
+				final Properties info) {
+			return new DriverPropertyInfo[0];
+		}
+
+		@Override
+		public int getMajorVersion() {
+			return 1;
+		}
+
+		@Override
+		public int getMinorVersion() {
+			return 0;
+		}
+
+		@Override
+		public boolean jdbcCompliant() {
+			return false;
+		}
+
+		@Override
+		public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+			throw new SQLFeatureNotSupportedException();
+		}
+	}
+
+	/**
+	 * connection without auto commit, supporting the batches of
+	 * {@link RowBatchWriter}
+	 */
+	private static class RecordingConnection implements InvocationHandler {
+		private final List<List<Object>> committed;
+		private final List<List<Object>> executed = new ArrayList<List<Object>>();
+		private boolean closed;
+
+		RecordingConnection(final List<List<Object>> committed) {
+			this.committed = committed;
+		}
+
+		@Override
+		public Object invoke(final Object proxy, final Method method,
+				final Object[] args) {
+			String name = method.getName();
+			if (name.equals("setAutoCommit")) {
+				return null;
+			} else if (name.equals("getAutoCommit")) {
+				return false;
+			} else if (name.equals("isClosed")) {
+				return closed;
+			} else if (name.equals("close")) {
+				closed = true;
+				return null;
+			} else if (name.equals("commit")) {
+				committed.addAll(executed);
+				executed.clear();
+				return null;
+			} else if (name.equals("rollback")) {
+				executed.clear();
+				return null;
+			} else if (name.equals("prepareStatement")) {
+				return Proxy.newProxyInstance(
+						PreparedStatement.class.getClassLoader(),
+						new Class[] { PreparedStatement.class },
+						new RecordingStatement(executed));
+			}
+			throw new UnsupportedOperationException(name);
+		}
+	}
+
+	private static class RecordingStatement implements InvocationHandler {
+		private final List<List<Object>> executed;
+		private final Map<Integer, Object> parameters = new TreeMap<Integer, Object>();
+		private final List<List<Object>> batch = new ArrayList<List<Object>>();
+
+		RecordingStatement(final List<List<Object>> executed) {
+			this.executed = executed;
+		}
+
+		@Override
+		public Object invoke(final Object proxy, final Method method,
+				final Object[] args) {
+			String name = method.getName();
+			if (name.equals("setObject")) {
+				parameters.put((Integer) args[0], args[1]);
+				return null;
+			} else if (name.equals("addBatch")) {
+				batch.add(new ArrayList<Object>(parameters.values()));
+				parameters.clear();
+				return null;
+			} else if (name.equals("executeBatch")) {
+				int[] counts = new int[batch.size()];
+				Arrays.fill(counts, 1);
+				executed.addAll(batch);
+				batch.clear();
+				return counts;
+			} else if (name.equals("close")) {
+				return null;
+			}
+			throw new UnsupportedOperationException(name);
+		}
+	}
+
+	/**
+	 * write a header and lines with both line terminators and empty lines,
+	 * several megabytes so that the file is split in several ranges
+	 */
+	private File writeFile(final int lines, final int badLine)
+			throws IOException {
+		File file = folder.newFile();
+		Writer writer = Files.newBufferedWriter(file.toPath(),
+				Charset.defaultCharset());
+		try {
+			writer.write("void|id|name|amount\n");
+			for (int i = 1; i <= lines; i++) {
+				if (i % 97 == 0)
+					writer.write("\n");
+				writer.write("x|" + i + "| name of row " + i
+						+ " in the parallel load test |"
+						+ (i == badLine ? "oops" : (i % 1000) + "." + (i % 100)));
+				writer.write(i % 3 == 0 ? "\r\n" : "\n");
+			}
+		} finally {
+			writer.close();
+		}
+		return file;
+	}
+
+	/**
+	 * @return the committed rows of each connection
+	 */
+	private static List<List<List<Object>>> load(final File file,
+			final int threads, final String url) throws JAXBException,
+			IOException {
+		CsvLoadType loadType = ObjectFactoryUtil.getLoadTypeByStrXml(
+				String.format(LOAD, threads)).getCsv();
+		JdlConnection jdlConnection = new JdlConnection(
+				ObjectFactoryUtil.getJdbcTypeByStrXml(String.format(CONN,
+						RecordingDriver.class.getName(), url)));
+		new CsvLoader(loadType, file).dataInsert(jdlConnection);
+		return RecordingDriver.getCommitted(url);
+	}
+
+	private static List<List<Object>> sortByLine(
+			final List<List<List<Object>>> connections) {
+		List<List<Object>> rows = new ArrayList<List<Object>>();
+		for (List<List<Object>> committed : connections)
+			rows.addAll(committed);
+		Collections.sort(rows, new Comparator<List<Object>>() {
+			@Override
+			public int compare(final List<Object> o1, final List<Object> o2) {
+				return ((Integer) o1.get(LINE)).compareTo((Integer) o2
+						.get(LINE));
+			}
+		});
+		return rows;
+	}
+
+	@Test
+	public void testParallelLoadMatchesSequential() throws Exception {
+		int lines = 100000;
+		File file = writeFile(lines, 0);
+		List<List<List<Object>>> sequential = load(file, 1, URL
+				+ "sequential");
+		assertEquals(1, sequential.size());
+		List<List<Object>> expected = sequential.get(0);
+		assertEquals(lines, expected.size());
+		assertEquals(Arrays.<Object> asList("1", "name of row 1 in the parallel load test",
+				1.1d, 2, "Ennio Morricone"), expected.get(0));
+
+		List<List<List<Object>>> parallel = load(file, 4, URL + "parallel");
+		assertEquals(4, parallel.size());
+		int loading = 0;
+		for (List<List<Object>> committed : parallel) {
+			if (!committed.isEmpty())
+				loading++;
+			// each thread loads its ranges in file order
+			for (int r = 1; r < committed.size(); r++) {
+				assertTrue((Integer) committed.get(r - 1).get(LINE) < (Integer) committed
+						.get(r).get(LINE));
+			}
+		}
+		assertTrue(loading > 1);
+		assertEquals(expected, sortByLine(parallel));
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testFormatErrorFailsSequentialLoad() throws Exception {
+		load(writeFile(1000, 500), 1, URL + "sequentialError");
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testFormatErrorFailsParallelLoad() throws Exception {
+		load(writeFile(100000, 75000), 4, URL + "parallelError");
+	}
+}
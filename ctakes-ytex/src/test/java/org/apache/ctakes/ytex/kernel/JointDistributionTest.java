@@ -0,0 +1,292 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.kernel;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.ctakes.ytex.kernel.ImputedFeatureEvaluatorImpl.JointDistribution;
+import org.junit.Test;
+
+/**
+ * compare the bitset joint distributions with the instance sets they replaced,
+ * without a database.
+ */
+public class JointDistributionTest {
+	private static final double DELTA = 1e-9;
+	private static final Set<String> X_VALS = new LinkedHashSet<String>(
+			Arrays.asList("-1", "0", "1"));
+	private static final Set<String> Y_VALS = new LinkedHashSet<String>(
+			Arrays.asList("neg", "pos", "unk"));
+	private static final String X_LEFTOVER = "0";
+	private static final String X_MERGE = "1";
+
+	private final Random random = new Random(17);
+
+	private static BitSet toBitSet(Set<Integer> instances) {
+		BitSet bits = new BitSet();
+		for (int instance : instances)
+			bits.set(instance);
+		return bits;
+	}
+
+	private static Set<Integer> toSet(BitSet bits) {
+		Set<Integer> instances = new HashSet<Integer>();
+		for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1))
+			instances.add(i);
+		return instances;
+	}
+
+	private static Map<String, BitSet> toBitSets(Map<String, Set<Integer>> sets) {
+		Map<String, BitSet> bits = new LinkedHashMap<String, BitSet>();
+		for (Map.Entry<String, Set<Integer>> entry : sets.entrySet())
+			bits.put(entry.getKey(), toBitSet(entry.getValue()));
+		return bits;
+	}
+
+	/**
+	 * @return a random class for each of the instances of a fold
+	 */
+	private Map<String, Set<Integer>> randomYMargin(int nInstances) {
+		Map<String, Set<Integer>> yMargin = new LinkedHashMap<String, Set<Integer>>();
+		for (String y : Y_VALS)
+			yMargin.put(y, new HashSet<Integer>());
+		for (int i = 0; i < nInstances; i++) {
+			// leave some instances out of the fold
+			if (random.nextInt(5) > 0)
+				yMargin.get(new ArrayList<String>(Y_VALS).get(random
+						.nextInt(Y_VALS.size()))).add(i);
+		}
+		return yMargin;
+	}
+
+	/**
+	 * @return the instances of a concept for the non leftover values of x
+	 */
+	private Map<String, Set<Integer>> randomXMargin(int nInstances) {
+		Map<String, Set<Integer>> xMargin = new LinkedHashMap<String, Set<Integer>>();
+		xMargin.put("-1", new HashSet<Integer>());
+		xMargin.put("1", new HashSet<Integer>());
+		for (int i = 0; i < nInstances; i++) {
+			int r = random.nextInt(6);
+			if (r == 0)
+				xMargin.get("-1").add(i);
+			else if (r < 3)
+				xMargin.get("1").add(i);
+		}
+		return xMargin;
+	}
+
+	/**
+	 * the fold table as it was built with instance sets: y -> x -> instances
+	 */
+	private static Map<String, Map<String, Set<Integer>>> completeSets(
+			Map<String, Set<Integer>> xMargin, Map<String, Set<Integer>> yMargin) {
+		Map<String, Map<String, Set<Integer>>> table = emptySets();
+		for (Map.Entry<String, Set<Integer>> yEntry : yMargin.entrySet()) {
+			Set<Integer> yInst = new HashSet<Integer>(yEntry.getValue());
+			for (Map.Entry<String, Set<Integer>> xEntry : xMargin.entrySet()) {
+				Set<Integer> foldXInst = table.get(yEntry.getKey()).get(
+						xEntry.getKey());
+				foldXInst.addAll(xEntry.getValue());
+				foldXInst.retainAll(yInst);
+				yInst.removeAll(foldXInst);
+			}
+			table.get(yEntry.getKey()).get(X_LEFTOVER).addAll(yInst);
+		}
+		return table;
+	}
+
+	/**
+	 * the merged table as it was built with instance sets
+	 */
+	private static Map<String, Map<String, Set<Integer>>> mergeSets(
+			List<Map<String, Map<String, Set<Integer>>>> tables,
+			Map<String, Set<Integer>> yMargin) {
+		Map<String, Map<String, Set<Integer>>> merged = emptySets();
+		for (String y : Y_VALS) {
+			Set<Integer> xMergedInst = merged.get(y).get(X_MERGE);
+			xMergedInst.addAll(yMargin.get(y));
+			for (String x : X_VALS) {
+				if (!x.equals(X_MERGE)) {
+					Set<Integer> intersectIds = merged.get(y).get(x);
+					intersectIds.addAll(tables.get(0).get(y).get(x));
+					for (Map<String, Map<String, Set<Integer>>> table : tables)
+						intersectIds.retainAll(table.get(y).get(x));
+					xMergedInst.removeAll(intersectIds);
+				}
+			}
+		}
+		return merged;
+	}
+
+	private static Map<String, Map<String, Set<Integer>>> emptySets() {
+		Map<String, Map<String, Set<Integer>>> table = new HashMap<String, Map<String, Set<Integer>>>();
+		for (String y : Y_VALS) {
+			Map<String, Set<Integer>> row = new HashMap<String, Set<Integer>>();
+			for (String x : X_VALS)
+				row.put(x, new HashSet<Integer>());
+			table.put(y, row);
+		}
+		return table;
+	}
+
+	private static void assertSameCells(
+			Map<String, Map<String, Set<Integer>>> expected,
+			JointDistribution distro) {
+		for (String y : Y_VALS) {
+			for (String x : X_VALS) {
+				assertEquals(y + "," + x, expected.get(y).get(x),
+						toSet(distro.getInstances(x, y)));
+			}
+		}
+	}
+
+	private static double log2(double value) {
+		return Math.log(value) / Math.log(2);
+	}
+
+	/**
+	 * @return the entropy of the counts, in bits
+	 */
+	private static double entropy(double[] counts) {
+		double total = 0;
+		for (double count : counts)
+			total += count;
+		double entropy = 0;
+		for (double count : counts) {
+			if (count > 0)
+				entropy -= count / total * log2(count / total);
+		}
+		return entropy;
+	}
+
+	private static void assertEntropies(
+			Map<String, Map<String, Set<Integer>>> expected,
+			JointDistribution distro) {
+		double[] xCounts = new double[X_VALS.size()];
+		double[] yCounts = new double[Y_VALS.size()];
+		double[] xyCounts = new double[X_VALS.size() * Y_VALS.size()];
+		int i = 0;
+		for (String y : Y_VALS) {
+			int j = 0;
+			for (String x : X_VALS) {
+				int count = expected.get(y).get(x).size();
+				xCounts[j] += count;
+				yCounts[i] += count;
+				xyCounts[i * X_VALS.size() + j] = count;
+				j++;
+			}
+			i++;
+		}
+		double entropyX = entropy(xCounts);
+		double entropyY = entropy(yCounts);
+		double entropyXY = entropy(xyCounts);
+		assertEquals(entropyX, distro.getEntropyX(), DELTA);
+		assertEquals(entropyXY, distro.getEntropyXY(), DELTA);
+		double mutualInfo = entropyX + entropyY - entropyXY;
+		assertEquals(mutualInfo, distro.getMutualInformation(entropyY), DELTA);
+		// the info gain of x given y is the mutual information
+		assertEquals(mutualInfo, distro.getInfoGain(), DELTA);
+	}
+
+	@Test
+	public void testFoldDistribution() {
+		for (int iter = 0; iter < 20; iter++) {
+			int nInstances = 20 + random.nextInt(300);
+			Map<String, Set<Integer>> yMargin = randomYMargin(nInstances);
+			Map<String, Set<Integer>> xMargin = randomXMargin(nInstances);
+			Map<String, Map<String, Set<Integer>>> expected = completeSets(
+					xMargin, yMargin);
+			JointDistribution distro = new JointDistribution(X_VALS, Y_VALS,
+					toBitSets(xMargin), toBitSets(yMargin), X_LEFTOVER);
+			assertSameCells(expected, distro);
+			assertEntropies(expected, distro);
+		}
+	}
+
+	@Test
+	public void testMerge() {
+		for (int iter = 0; iter < 20; iter++) {
+			int nInstances = 20 + random.nextInt(300);
+			Map<String, Set<Integer>> yMargin = randomYMargin(nInstances);
+			List<Map<String, Map<String, Set<Integer>>>> childSets = new ArrayList<Map<String, Map<String, Set<Integer>>>>();
+			List<JointDistribution> children = new ArrayList<JointDistribution>();
+			for (int c = 1 + random.nextInt(4); c > 0; c--) {
+				Map<String, Set<Integer>> xMargin = randomXMargin(nInstances);
+				childSets.add(completeSets(xMargin, yMargin));
+				children.add(new JointDistribution(X_VALS, Y_VALS,
+						toBitSets(xMargin), toBitSets(yMargin), X_LEFTOVER));
+			}
+			Map<String, Map<String, Set<Integer>>> expected = mergeSets(
+					childSets, yMargin);
+			JointDistribution merged = JointDistribution.merge(children,
+					toBitSets(yMargin), X_MERGE);
+			assertSameCells(expected, merged);
+			assertEntropies(expected, merged);
+			// merging must not change the children
+			for (int c = 0; c < children.size(); c++)
+				assertSameCells(childSets.get(c), children.get(c));
+		}
+	}
+
+	@Test
+	public void testSharedContingencyTable() throws Exception {
+		Map<String, Set<Integer>> yMargin = randomYMargin(1000);
+		final JointDistribution distro = new JointDistribution(X_VALS, Y_VALS,
+				toBitSets(randomXMargin(1000)), toBitSets(yMargin), X_LEFTOVER);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Callable<double[][]>> tasks = new ArrayList<Callable<double[][]>>();
+			for (int i = 0; i < 8; i++) {
+				tasks.add(new Callable<double[][]>() {
+					public double[][] call() {
+						return distro.getContingencyTable();
+					}
+				});
+			}
+			double[][] table = distro.getContingencyTable();
+			for (Future<double[][]> future : executor.invokeAll(tasks)) {
+				double[][] shared = future.get();
+				for (int i = 0; i < table.length; i++)
+					assertArrayEquals(table[i], shared[i], 0d);
+			}
+			assertSame(table, distro.getContingencyTable());
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
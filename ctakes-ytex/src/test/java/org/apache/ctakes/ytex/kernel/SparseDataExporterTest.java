@@ -0,0 +1,356 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ctakes.ytex.kernel;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.ctakes.ytex.kernel.SparseData.SparseRow;
+import org.apache.ctakes.ytex.libsvm.LibSVMFormatterFactory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * compare the folds exported with several threads to the folds exported one
+ * after the other, and check the compaction of the sparse rows, without a
+ * database.
+ */
+public class SparseDataExporterTest {
+	private static final String LABEL = "label1";
+	private static final int RUNS = 2;
+	private static final int FOLDS = 3;
+	private static final int INSTANCES = 60;
+	private static final String[] CLASSES = { "neg", "pos" };
+	private static final String[] NUMERIC_WORDS = { "age", "C0004057",
+			"C0008031", "C0030193", "C0043299" };
+	private static final String[] NOMINAL_WORDS = { "gender", "section" };
+	private static final String[][] NOMINAL_VALUES = { { "F", "M" },
+			{ "hpi", "plan", "ros" } };
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * exporter that generates the instance attributes instead of querying
+	 * them. For fold scope, only the instances of the fold get attributes.
+	 */
+	private static class GeneratedDataExporter extends SparseDataExporterImpl {
+		private final InstanceData instanceData;
+
+		GeneratedDataExporter(InstanceData instanceData) {
+			this.instanceData = instanceData;
+			this.setKernelUtil(new KernelUtilImpl());
+		}
+
+		@Override
+		protected SparseData loadData(InstanceData instanceLabel,
+				String instanceNumericWordQuery,
+				String instanceNominalWordQuery, String prepareScript,
+				String prepareScriptDelimiter, BagOfWordsDecorator bDecorator,
+				String label, Integer fold, Integer run) {
+			SortedSet<Long> instanceIds = instanceData.getAllInstanceIds(
+					label, run == null ? 0 : run, fold == null ? 0 : fold);
+			SparseData sparseData = new SparseData();
+			for (long instanceId : instanceIds) {
+				addWords(sparseData, instanceId);
+			}
+			sparseData.compact();
+			return sparseData;
+		}
+	}
+
+	/**
+	 * the same attributes for an instance on every call, some of them added
+	 * twice
+	 */
+	private static void addWords(SparseData sparseData, long instanceId) {
+		Random random = new Random(instanceId);
+		for (String word : NUMERIC_WORDS) {
+			if (random.nextInt(3) > 0)
+				sparseData.addNumericWord(instanceId, word,
+						random.nextInt(10) + 1);
+		}
+		for (int i = 0; i < NOMINAL_WORDS.length; i++) {
+			if (random.nextInt(3) > 0)
+				sparseData.addNominalWord(instanceId, NOMINAL_WORDS[i],
+						NOMINAL_VALUES[i][random
+								.nextInt(NOMINAL_VALUES[i].length)]);
+		}
+		if (random.nextBoolean())
+			sparseData.addNumericWord(instanceId, NUMERIC_WORDS[0], 99);
+	}
+
+	/**
+	 * one label, RUNS runs of FOLDS folds. An instance is in the test set of
+	 * one fold of each run, and in the train set of the other folds.
+	 */
+	private static InstanceData createInstanceData() {
+		InstanceData instanceData = new InstanceData();
+		instanceData.getLabelToClassMap().put(LABEL,
+				new TreeSet<String>(Arrays.asList(CLASSES)));
+		SortedMap<Integer, SortedMap<Integer, SortedMap<Boolean, SortedMap<Long, String>>>> runMap = new TreeMap<Integer, SortedMap<Integer, SortedMap<Boolean, SortedMap<Long, String>>>>();
+		Random random = new Random(11);
+		for (int run = 1; run <= RUNS; run++) {
+			SortedMap<Integer, SortedMap<Boolean, SortedMap<Long, String>>> foldMap = new TreeMap<Integer, SortedMap<Boolean, SortedMap<Long, String>>>();
+			for (int fold = 1; fold <= FOLDS; fold++) {
+				SortedMap<Boolean, SortedMap<Long, String>> trainTestMap = new TreeMap<Boolean, SortedMap<Long, String>>();
+				trainTestMap.put(true, new TreeMap<Long, String>());
+				trainTestMap.put(false, new TreeMap<Long, String>());
+				foldMap.put(fold, trainTestMap);
+			}
+			for (long instanceId = 1; instanceId <= INSTANCES; instanceId++) {
+				String className = CLASSES[(int) (instanceId % CLASSES.length)];
+				int testFold = 1 + random.nextInt(FOLDS);
+				for (int fold = 1; fold <= FOLDS; fold++) {
+					foldMap.get(fold).get(fold != testFold)
+							.put(instanceId, className);
+				}
+			}
+			runMap.put(run, foldMap);
+		}
+		instanceData.getLabelToInstanceMap().put(LABEL, runMap);
+		return instanceData;
+	}
+
+	private File export(InstanceData instanceData, String scope, int threads)
+			throws IOException {
+		File outdir = folder.newFolder(scope + threads);
+		Properties properties = new Properties();
+		properties.setProperty("outdir", outdir.getAbsolutePath());
+		if (scope.length() > 0)
+			properties.setProperty("scope", scope);
+		properties.setProperty(FileUtil.THREADS_PROPERTY,
+				Integer.toString(threads));
+		new GeneratedDataExporter(instanceData).exportData(instanceData,
+				new LibSVMFormatterFactory.LibSVMFormatter(
+						new KernelUtilImpl()), properties, null);
+		return outdir;
+	}
+
+	private static Properties loadProperties(File file) throws IOException {
+		Properties properties = new Properties();
+		Reader reader = new FileReader(file);
+		try {
+			properties.load(reader);
+		} finally {
+			reader.close();
+		}
+		return properties;
+	}
+
+	/**
+	 * the files must be the same, except for the date the class id file was
+	 * written
+	 */
+	private static void assertSameFiles(File expectedDir, File actualDir)
+			throws IOException {
+		String[] expectedNames = expectedDir.list();
+		String[] actualNames = actualDir.list();
+		Arrays.sort(expectedNames);
+		Arrays.sort(actualNames);
+		assertArrayEquals(expectedNames, actualNames);
+		for (String name : expectedNames) {
+			File expected = new File(expectedDir, name);
+			File actual = new File(actualDir, name);
+			if (name.endsWith(".properties")) {
+				assertEquals(name, loadProperties(expected),
+						loadProperties(actual));
+			} else {
+				assertEquals(name,
+						new String(Files.readAllBytes(expected.toPath()),
+								"UTF-8"), new String(Files.readAllBytes(actual
+								.toPath()), "UTF-8"));
+			}
+		}
+	}
+
+	@Test
+	public void testThreadedExportMatchesSerial() throws IOException {
+		InstanceData instanceData = createInstanceData();
+		File serial = export(instanceData, "", 1);
+		// the class ids, and attribute names, train/test data and ids per
+		// fold
+		assertEquals(1 + RUNS * FOLDS * 5, serial.list().length);
+		assertSameFiles(serial, export(instanceData, "", 4));
+		// fewer threads than folds
+		assertSameFiles(serial, export(instanceData, "", 2));
+	}
+
+	@Test
+	public void testThreadedFoldScopeMatchesSerial() throws IOException {
+		InstanceData instanceData = createInstanceData();
+		File serial = export(instanceData, "fold", 1);
+		assertSameFiles(serial, export(instanceData, "fold", 4));
+		assertSameFiles(serial, export(instanceData, "fold", 2));
+	}
+
+	@Test
+	public void testCompactKeepsLastValue() {
+		SparseData sparseData = new SparseData();
+		sparseData.addNumericWord(1, "b", 1);
+		sparseData.addNumericWord(1, "a", 2);
+		sparseData.addNumericWord(1, "b", 3);
+		sparseData.addNominalWord(1, "y", "v1");
+		sparseData.addNominalWord(1, "x", "v2");
+		sparseData.addNominalWord(1, "y", "v3");
+		sparseData.addNominalWord(1, "y", "v4");
+		sparseData.compact();
+		SparseRow row = sparseData.getRow(1);
+		assertEquals(2, row.getNumericCount());
+		assertEquals(2, row.getNominalCount());
+		SortedMap<String, Double> numeric = new TreeMap<String, Double>();
+		numeric.put("a", 2d);
+		numeric.put("b", 3d);
+		assertEquals(numeric, sparseData.getInstanceNumericWords().get(1L));
+		SortedMap<String, String> nominal = new TreeMap<String, String>();
+		nominal.put("x", "v2");
+		nominal.put("y", "v4");
+		assertEquals(nominal, sparseData.getInstanceNominalWords().get(1L));
+		// values added after compaction replace the compacted ones
+		sparseData.addNumericWord(1, "a", 4);
+		numeric.put("a", 4d);
+		assertEquals(numeric, sparseData.getInstanceNumericWords().get(1L));
+		assertNull(sparseData.getRow(2));
+	}
+
+	@Test
+	public void testCompactSortsIds() {
+		SparseData sparseData = new SparseData();
+		Random random = new Random(5);
+		for (int i = 0; i < 500; i++) {
+			sparseData.addNumericWord(1, "w" + random.nextInt(100),
+					random.nextDouble());
+			sparseData.addNominalWord(1, "n" + random.nextInt(50),
+					"v" + random.nextInt(3));
+		}
+		SparseRow row = sparseData.getRow(1);
+		for (int i = 1; i < row.getNumericCount(); i++)
+			assertTrue(row.getNumericWordId(i - 1) < row.getNumericWordId(i));
+		for (int i = 1; i < row.getNominalCount(); i++)
+			assertTrue(row.getNominalWordId(i - 1) < row.getNominalWordId(i));
+		assertEquals(sparseData.getNumericWords().size(),
+				row.getNumericCount());
+		assertEquals(sparseData.getNominalWordValueMap().size(),
+				row.getNominalCount());
+	}
+
+	@Test
+	public void testInstanceWordsMatchInput() {
+		SparseData sparseData = new SparseData();
+		Map<Long, SortedMap<String, Double>> numeric = new HashMap<Long, SortedMap<String, Double>>();
+		Map<Long, SortedMap<String, String>> nominal = new HashMap<Long, SortedMap<String, String>>();
+		Random random = new Random(3);
+		for (long instanceId = 1; instanceId <= 100; instanceId++) {
+			for (int i = random.nextInt(20); i > 0; i--) {
+				String word = "w" + random.nextInt(30);
+				double value = random.nextInt(5);
+				sparseData.addNumericWord(instanceId, word, value);
+				if (!numeric.containsKey(instanceId))
+					numeric.put(instanceId, new TreeMap<String, Double>());
+				numeric.get(instanceId).put(word, value);
+			}
+			for (int i = random.nextInt(5); i > 0; i--) {
+				String word = "n" + random.nextInt(10);
+				String value = "v" + random.nextInt(4);
+				sparseData.addNominalWord(instanceId, word, value);
+				if (!nominal.containsKey(instanceId))
+					nominal.put(instanceId, new TreeMap<String, String>());
+				nominal.get(instanceId).put(word, value);
+			}
+		}
+		sparseData.compact();
+		assertEquals(numeric, sparseData.getInstanceNumericWords());
+		assertEquals(nominal, sparseData.getInstanceNominalWords());
+		// the maps are copies
+		sparseData.getInstanceNumericWords().clear();
+		assertEquals(numeric, sparseData.getInstanceNumericWords());
+	}
+
+	@Test
+	public void testDecorateRoundTrip() {
+		SparseData sparseData = new SparseData();
+		for (long instanceId = 1; instanceId <= 20; instanceId++)
+			addWords(sparseData, instanceId);
+		sparseData.compact();
+		final Map<Long, SortedMap<String, Double>> numeric = sparseData
+				.getInstanceNumericWords();
+		final Map<Long, SortedMap<String, String>> nominal = sparseData
+				.getInstanceNominalWords();
+		BagOfWordsDecorator decorator = new BagOfWordsDecorator() {
+			@Override
+			public void decorateNumericInstanceWords(
+					Map<Long, SortedMap<String, Double>> instanceNumericWords,
+					SortedSet<String> numericWords) {
+				assertEquals(numeric, instanceNumericWords);
+				// add an attribute to every instance, as the gram matrix
+				// exporter adds the instance index
+				for (long instanceId = 1; instanceId <= 20; instanceId++) {
+					if (!instanceNumericWords.containsKey(instanceId))
+						instanceNumericWords.put(instanceId,
+								new TreeMap<String, Double>());
+					instanceNumericWords.get(instanceId).put("index",
+							(double) instanceId);
+				}
+				numericWords.add("index");
+			}
+
+			@Override
+			public void decorateNominalInstanceWords(
+					Map<Long, SortedMap<String, String>> instanceNominalWords,
+					Map<String, SortedSet<String>> nominalWordValueMap) {
+				assertEquals(nominal, instanceNominalWords);
+			}
+		};
+		sparseData.decorateNumericInstanceWords(decorator);
+		sparseData.decorateNominalInstanceWords(decorator);
+		assertEquals(nominal, sparseData.getInstanceNominalWords());
+		Map<Long, SortedMap<String, Double>> decorated = sparseData
+				.getInstanceNumericWords();
+		assertEquals(20, decorated.size());
+		for (Map.Entry<Long, SortedMap<String, Double>> entry : decorated
+				.entrySet()) {
+			assertEquals((double) entry.getKey(),
+					entry.getValue().remove("index"), 0d);
+			if (numeric.containsKey(entry.getKey()))
+				assertEquals(numeric.get(entry.getKey()), entry.getValue());
+			else
+				assertTrue(entry.getValue().isEmpty());
+		}
+		assertFalse(sparseData.getNumericWords().isEmpty());
+	}
+}